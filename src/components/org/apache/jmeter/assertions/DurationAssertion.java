@@ -22,6 +22,7 @@ import java.io.Serializable;
 import java.text.MessageFormat;
 
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleResultConsumer;
 import org.apache.jmeter.testelement.AbstractScopedAssertion;
 import org.apache.jmeter.util.JMeterUtils;
 
@@ -30,12 +31,30 @@ import org.apache.jmeter.util.JMeterUtils;
  * is larger than the timeframe the Assertion is considered a failure.
  * 
  */
-public class DurationAssertion extends AbstractScopedAssertion implements Serializable, Assertion {
+public class DurationAssertion extends AbstractScopedAssertion implements Serializable, Assertion, SampleResultConsumer {
     private static final long serialVersionUID = 240L;
 
     /** Key for storing assertion-information in the jmx-file. */
     public static final String DURATION_KEY = "DurationAssertion.duration"; // $NON-NLS-1$
 
+    /**
+     * {@inheritDoc}
+     * @since 3.1
+     */
+    @Override
+    public boolean needsResponseData() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 3.1
+     */
+    @Override
+    public boolean retainsSampleResults() {
+        return false;
+    }
+
     /**
      * Returns the result of the Assertion. Here it checks whether the Sample
      * took to long to be considered successful. If so an AssertionResult
@@ -24,6 +24,7 @@ import java.util.ArrayList;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleResultConsumer;
 import org.apache.jmeter.testelement.AbstractScopedAssertion;
 import org.apache.jmeter.testelement.property.CollectionProperty;
 import org.apache.jmeter.testelement.property.IntegerProperty;
@@ -44,7 +45,7 @@ import org.apache.oro.text.regex.Perl5Matcher;
 /**
  * Test element to handle Response Assertions, @see AssertionGui
  */
-public class ResponseAssertion extends AbstractScopedAssertion implements Serializable, Assertion {
+public class ResponseAssertion extends AbstractScopedAssertion implements Serializable, Assertion, SampleResultConsumer {
     private static final Logger log = LoggingManager.getLoggerForClass();
 
     private static final long serialVersionUID = 240L;
@@ -71,6 +72,26 @@ public class ResponseAssertion extends AbstractScopedAssertion implements Serial
 
     private static final String TEST_TYPE = "Assertion.test_type"; // $NON-NLS-1$
 
+    /**
+     * {@inheritDoc}
+     * Only the URL, response code, message and headers fields are tested without it.
+     * @since 3.1
+     */
+    @Override
+    public boolean needsResponseData() {
+        return !(isTestFieldURL() || isTestFieldResponseCode()
+                || isTestFieldResponseMessage() || isTestFieldResponseHeaders());
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 3.1
+     */
+    @Override
+    public boolean retainsSampleResults() {
+        return false;
+    }
+
     /*
      * Mask values for TEST_TYPE TODO: remove either MATCH or CONTAINS - they
      * are mutually exclusive
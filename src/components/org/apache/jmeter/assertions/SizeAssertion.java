@@ -22,6 +22,7 @@ import java.io.Serializable;
 import java.text.MessageFormat;
 
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleResultConsumer;
 import org.apache.jmeter.testelement.AbstractScopedAssertion;
 import org.apache.jmeter.testelement.property.IntegerProperty;
 import org.apache.jmeter.util.JMeterUtils;
@@ -32,7 +33,7 @@ import org.apache.jmeter.util.JMeterUtils;
  * Checks if the results of a Sample matches a particular size.
  * 
  */
-public class SizeAssertion extends AbstractScopedAssertion implements Serializable, Assertion {
+public class SizeAssertion extends AbstractScopedAssertion implements Serializable, Assertion, SampleResultConsumer {
 
     private static final long serialVersionUID = 241L;
 
@@ -66,6 +67,25 @@ public class SizeAssertion extends AbstractScopedAssertion implements Serializab
 
     private static final String RESPONSE_MESSAGE = "SizeAssertion.response_message"; // $NON-NLS-1$
 
+    /**
+     * {@inheritDoc}
+     * The sizes of the response are set even when its data is not kept.
+     * @since 3.1
+     */
+    @Override
+    public boolean needsResponseData() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 3.1
+     */
+    @Override
+    public boolean retainsSampleResults() {
+        return false;
+    }
+
     /**
      * Returns the result of the Assertion. 
      * Here it checks the Sample responseData length.
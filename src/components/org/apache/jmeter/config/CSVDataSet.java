@@ -29,11 +29,13 @@ import org.apache.jmeter.engine.event.LoopIterationListener;
 import org.apache.jmeter.engine.util.NoConfigMerge;
 import org.apache.jmeter.save.CSVSaveService;
 import org.apache.jmeter.services.FileServer;
+import org.apache.jmeter.services.SharedDataSet;
 import org.apache.jmeter.testbeans.TestBean;
 import org.apache.jmeter.testbeans.gui.GenericTestBeanCustomizer;
 import org.apache.jmeter.testelement.property.JMeterProperty;
 import org.apache.jmeter.testelement.property.StringProperty;
 import org.apache.jmeter.threads.JMeterContext;
+import org.apache.jmeter.threads.AbstractThreadGroup;
 import org.apache.jmeter.threads.JMeterVariables;
 import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.logging.LoggingManager;
@@ -65,6 +67,17 @@ import org.apache.log.Logger;
  * Or the user can provide their own suffix, in which case the file is shared between all
  * threads with the same suffix.
  *
+ * The loadMode can be set to:
+ * <ul>
+ * <li>Read from file - default, lines are read through the FileServer as they are needed</li>
+ * <li>Load in memory - the file is read once into a {@link SharedDataSet},
+ * threads share its rows according to the shareMode without any locking</li>
+ * <li>Load in memory, one slice per thread - each thread of a thread group reads
+ * its own disjoint slice of the rows, the shareMode is ignored</li>
+ * </ul>
+ * When the file is loaded in memory, the JMeter properties csvdataset.node.index and
+ * csvdataset.node.count can be used to only keep a slice of the file on each JMeter instance.
+ *
  */
 public class CSVDataSet extends ConfigTestElement 
     implements TestBean, LoopIterationListener, NoConfigMerge {
@@ -94,6 +107,12 @@ public class CSVDataSet extends ConfigTestElement
     private transient String alias;
 
     private transient String shareMode;
+
+    private transient String loadMode;
+
+    private transient SharedDataSet dataSet;
+
+    private transient SharedDataSet.Cursor cursor;
     
     private boolean firstLineIsNames = false;
 
@@ -128,8 +147,8 @@ public class CSVDataSet extends ConfigTestElement
                                 if (log.isDebugEnabled()) {
                                     log.debug("Converted " + propName + "=" + propValue + " to " + resKey  + " using Locale: " + rb.getLocale());
                                 }
-                                ((StringProperty) property).setValue(resKey); // reset the value
-                                super.setProperty(property);
+                                // don't modify the property, it may be shared by running elements
+                                super.setProperty(new StringProperty(propName, resKey));
                                 return;                                        
                             }
                         }
@@ -174,7 +193,10 @@ public class CSVDataSet extends ConfigTestElement
                     break;
             }
             final String names = getVariableNames();
-            if (names == null || names.length()==0) {
+            int loadModeInt = CSVDataSetBeanInfo.getLoadModeAsInt(getLoadMode());
+            if (loadModeInt != CSVDataSetBeanInfo.LOAD_STREAM) {
+                loadDataSet(server, _fileName, delim, names, loadModeInt == CSVDataSetBeanInfo.LOAD_PARTITION, context);
+            } else if (names == null || names.length()==0) {
                 String header = server.reserveFile(_fileName, getFileEncoding(), alias, true);
                 try {
                     vars = CSVSaveService.csvSplitString(header, delim.charAt(0));
@@ -190,6 +212,18 @@ public class CSVDataSet extends ConfigTestElement
            
         // TODO: fetch this once as per vars above?
         JMeterVariables threadVars = context.getVariables();
+        if (cursor != null) {
+            int row = cursor.nextRow(recycle);
+            if (row >= 0) {
+                int columns = Math.min(vars.length, dataSet.getColumnCount(row));
+                for (int a = 0; a < columns; a++) {
+                    threadVars.put(vars[a], dataSet.getValue(row, a));
+                }
+            } else {
+                endOfFile(threadVars);
+            }
+            return;
+        }
         String[] lineValues = {};
         try {
             if (getQuotedData()) {
@@ -205,13 +239,59 @@ public class CSVDataSet extends ConfigTestElement
             log.error(e.toString());
         }
         if (lineValues.length == 0) {// i.e. EOF
-            if (getStopThread()) {
-                throw new JMeterStopThreadException("End of file detected");
-            }
-            for (String var :vars) {
-                threadVars.put(var, EOFVALUE);
+            endOfFile(threadVars);
+        }
+    }
+
+    private void endOfFile(JMeterVariables threadVars) {
+        if (getStopThread()) {
+            throw new JMeterStopThreadException("End of file detected");
+        }
+        for (String var :vars) {
+            threadVars.put(var, EOFVALUE);
+        }
+    }
+
+    /**
+     * Get the in-memory copy of the file and the cursor this thread reads it with.
+     * Only called once per thread, the rows are then read without taking any lock.
+     */
+    private void loadDataSet(FileServer server, String _fileName, String delim, String names,
+            boolean partitioned, JMeterContext context) {
+        boolean hasHeader = names == null || names.length()==0;
+        int nodeCount = JMeterUtils.getPropDefault("csvdataset.node.count", 1); // $NON-NLS-1$
+        int nodeIndex = JMeterUtils.getPropDefault("csvdataset.node.index", 0); // $NON-NLS-1$
+        if (nodeCount < 1 || nodeIndex < 0 || nodeIndex >= nodeCount) {
+            log.warn("Ignoring invalid csvdataset.node.index=" + nodeIndex + " csvdataset.node.count=" + nodeCount);
+            nodeCount = 1;
+            nodeIndex = 0;
+        }
+        SharedDataSet data;
+        try {
+            data = server.getSharedDataSet(_fileName, getFileEncoding(),
+                    getQuotedData() ? delim.substring(0, 1) : delim, getQuotedData(), hasHeader, nodeIndex, nodeCount);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not load file " + _fileName, e);
+        }
+        if (hasHeader) {
+            try {
+                vars = CSVSaveService.csvSplitString(data.getHeader(), delim.charAt(0));
+                firstLineIsNames = true;
+            } catch (IOException e) {
+                log.warn("Could not split CSV header line",e);
+                vars = new String[0];
             }
+        } else {
+            vars = JOrphanUtils.split(names, ","); // $NON-NLS-1$
+        }
+        if (partitioned) {
+            AbstractThreadGroup group = context.getThreadGroup();
+            int threads = group == null ? 1 : Math.max(1, group.getNumThreads());
+            cursor = new SharedDataSet.Cursor(data, context.getThreadNum() % threads, threads);
+        } else {
+            cursor = data.getCursor(alias);
         }
+        dataSet = data;
     }
 
     /**
@@ -298,4 +378,20 @@ public class CSVDataSet extends ConfigTestElement
     public void setShareMode(String value) {
         this.shareMode = value;
     }
+
+    /**
+     * @return the loading mode, one of the loadMode resource keys
+     * @since 3.1
+     */
+    public String getLoadMode() {
+        return loadMode;
+    }
+
+    /**
+     * @param value the loading mode, one of the loadMode resource keys
+     * @since 3.1
+     */
+    public void setLoadMode(String value) {
+        this.loadMode = value;
+    }
 }
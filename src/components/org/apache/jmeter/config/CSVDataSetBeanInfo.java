@@ -34,6 +34,7 @@ public class CSVDataSetBeanInfo extends BeanInfoSupport {
     private static final String STOPTHREAD = "stopThread";           //$NON-NLS-1$
     private static final String QUOTED_DATA = "quotedData";          //$NON-NLS-1$
     private static final String SHAREMODE = "shareMode";             //$NON-NLS-1$
+    private static final String LOADMODE = "loadMode";               //$NON-NLS-1$
 
     // Access needed from CSVDataSet
     static final String[] SHARE_TAGS = new String[3];
@@ -48,11 +49,22 @@ public class CSVDataSetBeanInfo extends BeanInfoSupport {
         SHARE_TAGS[SHARE_THREAD] = "shareMode.thread"; //$NON-NLS-1$        
     }
 
+    static final String[] LOAD_TAGS = new String[3];
+    static final int LOAD_STREAM    = 0;
+    static final int LOAD_MEMORY    = 1;
+    static final int LOAD_PARTITION = 2;
+
+    static {
+        LOAD_TAGS[LOAD_STREAM]    = "loadMode.stream"; //$NON-NLS-1$
+        LOAD_TAGS[LOAD_MEMORY]    = "loadMode.memory"; //$NON-NLS-1$
+        LOAD_TAGS[LOAD_PARTITION] = "loadMode.partition"; //$NON-NLS-1$
+    }
+
     public CSVDataSetBeanInfo() {
         super(CSVDataSet.class);
 
         createPropertyGroup("csv_data",             //$NON-NLS-1$
-                new String[] { FILENAME, FILE_ENCODING, VARIABLE_NAMES, DELIMITER, QUOTED_DATA, RECYCLE, STOPTHREAD, SHAREMODE });
+                new String[] { FILENAME, FILE_ENCODING, VARIABLE_NAMES, DELIMITER, QUOTED_DATA, RECYCLE, STOPTHREAD, SHAREMODE, LOADMODE });
 
         PropertyDescriptor p = property(FILENAME);
         p.setValue(NOT_UNDEFINED, Boolean.TRUE);
@@ -93,6 +105,14 @@ public class CSVDataSetBeanInfo extends BeanInfoSupport {
         p.setValue(NOT_OTHER, Boolean.FALSE);
         p.setValue(NOT_EXPRESSION, Boolean.FALSE);
         p.setValue(TAGS, SHARE_TAGS);
+
+        p = property(LOADMODE, TypeEditor.ComboStringEditor);
+        p.setValue(RESOURCE_BUNDLE, getBeanDescriptor().getValue(RESOURCE_BUNDLE));
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, LOAD_TAGS[LOAD_STREAM]);
+        p.setValue(NOT_OTHER, Boolean.TRUE);
+        p.setValue(NOT_EXPRESSION, Boolean.TRUE);
+        p.setValue(TAGS, LOAD_TAGS);
     }
 
     public static int getShareModeAsInt(String mode) {
@@ -106,4 +126,16 @@ public class CSVDataSetBeanInfo extends BeanInfoSupport {
         }
         return -1;
     }
+
+    public static int getLoadModeAsInt(String mode) {
+        if (mode == null || mode.length() == 0){
+            return LOAD_STREAM; // default (e.g. if test plan does not have definition)
+        }
+        for (int i = 0; i < LOAD_TAGS.length; i++) {
+            if (LOAD_TAGS[i].equals(mode)) {
+                return i;
+            }
+        }
+        return LOAD_STREAM;
+    }
 }
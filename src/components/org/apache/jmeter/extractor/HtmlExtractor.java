@@ -28,8 +28,10 @@ import org.apache.jmeter.processor.PostProcessor;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.testelement.AbstractScopedTestElement;
 import org.apache.jmeter.testelement.property.IntegerProperty;
+import org.apache.jmeter.threads.IndexedVariableNames;
 import org.apache.jmeter.threads.JMeterContext;
 import org.apache.jmeter.threads.JMeterVariables;
+import org.apache.jmeter.threads.VariableName;
 import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
@@ -78,6 +80,13 @@ public class HtmlExtractor extends AbstractScopedTestElement implements PostProc
     
     private Extractor extractor;
 
+    // Names of the variables set for the current reference name, built once
+    private transient IndexedVariableNames matchNames;
+
+    private transient VariableName refVariable;
+
+    private transient VariableName matchNrVariable;
+
     /**
      * Parses the response data using CSS/JQuery expressions and saving the results
      * into variables for use later in the test.
@@ -97,22 +106,27 @@ public class HtmlExtractor extends AbstractScopedTestElement implements PostProc
         JMeterVariables vars = context.getVariables();
         
         String refName = getRefName();
+        if (matchNames == null || !matchNames.getBaseName().equals(refName)) {
+            matchNames = new IndexedVariableNames(refName, UNDERSCORE);
+            refVariable = new VariableName(refName);
+            matchNrVariable = new VariableName(refName + REF_MATCH_NR);
+        }
         String expression = getExpression();
         String attribute = getAttribute();
         int matchNumber = getMatchNumber();
         final String defaultValue = getDefaultValue();
         
         if (defaultValue.length() > 0){// Only replace default if it is provided
-            vars.put(refName, defaultValue);
+            vars.put(refVariable, defaultValue);
         }
         
         try {            
             List<String> matches = 
                     extractMatchingStrings(vars, expression, attribute, matchNumber, previousResult);
             int prevCount = 0;
-            String prevString = vars.get(refName + REF_MATCH_NR);
+            String prevString = vars.get(matchNrVariable);
             if (prevString != null) {
-                vars.remove(refName + REF_MATCH_NR);// ensure old value is not left defined
+                vars.remove(matchNrVariable);// ensure old value is not left defined
                 try {
                     prevCount = Integer.parseInt(prevString);
                 } catch (NumberFormatException e1) {
@@ -124,24 +138,22 @@ public class HtmlExtractor extends AbstractScopedTestElement implements PostProc
             if (matchNumber >= 0) {// Original match behaviour
                 match = getCorrectMatch(matches, matchNumber);
                 if (match != null) {
-                    vars.put(refName, match);
+                    vars.put(refVariable, match);
                 } 
             } else // < 0 means we save all the matches
             {
                 matchCount = matches.size();
-                vars.put(refName + REF_MATCH_NR, Integer.toString(matchCount));// Save the count
+                vars.put(matchNrVariable, Integer.toString(matchCount));// Save the count
                 for (int i = 1; i <= matchCount; i++) {
                     match = getCorrectMatch(matches, i);
                     if (match != null) {
-                        final String refName_n = new StringBuilder(refName).append(UNDERSCORE).append(i).toString();
-                        vars.put(refName_n, match);
+                        vars.put(matchNames.get(i), match);
                     }
                 }
             }
             // Remove any left-over variables
             for (int i = matchCount + 1; i <= prevCount; i++) {
-                final String refName_n = new StringBuilder(refName).append(UNDERSCORE).append(i).toString();
-                vars.remove(refName_n);
+                vars.remove(matchNames.get(i));
             }
         } catch (RuntimeException e) {
             log.warn(getName()+":Error while generating result " + e);
@@ -26,10 +26,13 @@ import java.util.List;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.jmeter.processor.PostProcessor;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleResultConsumer;
 import org.apache.jmeter.testelement.AbstractScopedTestElement;
 import org.apache.jmeter.testelement.property.IntegerProperty;
+import org.apache.jmeter.threads.IndexedVariableNames;
 import org.apache.jmeter.threads.JMeterContext;
 import org.apache.jmeter.threads.JMeterVariables;
+import org.apache.jmeter.threads.VariableName;
 import org.apache.jmeter.util.Document;
 import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.logging.LoggingManager;
@@ -44,7 +47,7 @@ import org.apache.oro.text.regex.Perl5Matcher;
 
 // @see org.apache.jmeter.extractor.TestRegexExtractor for unit tests
 
-public class RegexExtractor extends AbstractScopedTestElement implements PostProcessor, Serializable {
+public class RegexExtractor extends AbstractScopedTestElement implements PostProcessor, Serializable, SampleResultConsumer {
 
     private static final long serialVersionUID = 241L;
 
@@ -87,10 +90,34 @@ public class RegexExtractor extends AbstractScopedTestElement implements PostPro
 
     private static final String UNDERSCORE = "_";  // $NON-NLS-1$
 
+    private static final String GROUP_SUFFIX = "_g";  // $NON-NLS-1$
+
     private static final boolean DEFAULT_VALUE_FOR_DEFAULT_EMPTY_VALUE = false;
 
     private transient List<Object> template;
 
+    // Names of the variables set for the current reference name
+    private transient RefNames refNames;
+
+    /**
+     * {@inheritDoc}
+     * Only the headers, URL, response code and message are matched without it.
+     * @since 3.1
+     */
+    @Override
+    public boolean needsResponseData() {
+        return !(useHeaders() || useRequestHeaders() || useUrl() || useCode() || useMessage());
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 3.1
+     */
+    @Override
+    public boolean retainsSampleResults() {
+        return false;
+    }
+
     /**
      * Parses the response data using regular expressions and saving the results
      * into variables for use later in the test.
@@ -110,11 +137,14 @@ public class RegexExtractor extends AbstractScopedTestElement implements PostPro
         // Fetch some variables
         JMeterVariables vars = context.getVariables();
         String refName = getRefName();
+        if (refNames == null || !refNames.refName.equals(refName)) {
+            refNames = new RefNames(refName);
+        }
         int matchNumber = getMatchNumber();
 
         final String defaultValue = getDefaultValue();
         if (defaultValue.length() > 0 || isEmptyDefaultValue()) {// Only replace default if it is provided or empty default value is explicitly requested
-            vars.put(refName, defaultValue);
+            vars.put(refNames.ref, defaultValue);
         }
         
         Perl5Matcher matcher = JMeterUtils.getMatcher();
@@ -124,9 +154,9 @@ public class RegexExtractor extends AbstractScopedTestElement implements PostPro
             pattern = JMeterUtils.getPatternCache().getPattern(regex, Perl5Compiler.READ_ONLY_MASK);
             List<MatchResult> matches = processMatches(pattern, regex, previousResult, matchNumber, vars);
             int prevCount = 0;
-            String prevString = vars.get(refName + REF_MATCH_NR);
+            String prevString = vars.get(refNames.matchNr);
             if (prevString != null) {
-                vars.remove(refName + REF_MATCH_NR);// ensure old value is not left defined
+                vars.remove(refNames.matchNr);// ensure old value is not left defined
                 try {
                     prevCount = Integer.parseInt(prevString);
                 } catch (NumberFormatException e1) {
@@ -139,31 +169,29 @@ public class RegexExtractor extends AbstractScopedTestElement implements PostPro
                 if (matchNumber >= 0) {// Original match behaviour
                     match = getCorrectMatch(matches, matchNumber);
                     if (match != null) {
-                        vars.put(refName, generateResult(match));
-                        saveGroups(vars, refName, match);
+                        vars.put(refNames.ref, generateResult(match));
+                        saveGroups(vars, refNames.groups, match);
                     } else {
                         // refname has already been set to the default (if present)
-                        removeGroups(vars, refName);
+                        removeGroups(vars, refNames.groups);
                     }
                 } else // < 0 means we save all the matches
                 {
-                    removeGroups(vars, refName); // remove any single matches
+                    removeGroups(vars, refNames.groups); // remove any single matches
                     matchCount = matches.size();
-                    vars.put(refName + REF_MATCH_NR, Integer.toString(matchCount));// Save the count
+                    vars.put(refNames.matchNr, Integer.toString(matchCount));// Save the count
                     for (int i = 1; i <= matchCount; i++) {
                         match = getCorrectMatch(matches, i);
                         if (match != null) {
-                            final String refName_n = new StringBuilder(refName).append(UNDERSCORE).append(i).toString();
-                            vars.put(refName_n, generateResult(match));
-                            saveGroups(vars, refName_n, match);
+                            vars.put(refNames.matches.get(i), generateResult(match));
+                            saveGroups(vars, refNames.getMatchGroups(i), match);
                         }
                     }
                 }
                 // Remove any left-over variables
                 for (int i = matchCount + 1; i <= prevCount; i++) {
-                    final String refName_n = new StringBuilder(refName).append(UNDERSCORE).append(i).toString();
-                    vars.remove(refName_n);
-                    removeGroups(vars, refName_n);
+                    vars.remove(refNames.matches.get(i));
+                    removeGroups(vars, refNames.getMatchGroups(i));
                 }
             } catch (RuntimeException e) {
                 log.warn("Error while generating result");
@@ -243,12 +271,8 @@ public class RegexExtractor extends AbstractScopedTestElement implements PostPro
      * basename_gn, where n=0...# of groups<br/>
      * basename_g = number of groups (apart from g0)
      */
-    private void saveGroups(JMeterVariables vars, String basename, MatchResult match) {
-        StringBuilder buf = new StringBuilder();
-        buf.append(basename);
-        buf.append("_g"); // $NON-NLS-1$
-        int pfxlen=buf.length();
-        String prevString=vars.get(buf.toString());
+    private void saveGroups(JMeterVariables vars, GroupNames names, MatchResult match) {
+        String prevString=vars.get(names.count);
         int previous=0;
         if (prevString!=null){
             try {
@@ -260,15 +284,11 @@ public class RegexExtractor extends AbstractScopedTestElement implements PostPro
         //Note: match.groups() includes group 0
         final int groups = match.groups();
         for (int x = 0; x < groups; x++) {
-            buf.append(x);
-            vars.put(buf.toString(), match.group(x));
-            buf.setLength(pfxlen);
+            vars.put(names.groups.get(x), match.group(x));
         }
-        vars.put(buf.toString(), Integer.toString(groups-1));
+        vars.put(names.count, Integer.toString(groups-1));
         for (int i = groups; i <= previous; i++){
-            buf.append(i);
-            vars.remove(buf.toString());// remove the remaining _gn vars
-            buf.setLength(pfxlen);
+            vars.remove(names.groups.get(i));// remove the remaining _gn vars
         }
     }
 
@@ -277,23 +297,77 @@ public class RegexExtractor extends AbstractScopedTestElement implements PostPro
      * basename_gn, where n=0...# of groups<br/>
      * basename_g = number of groups (apart from g0)
      */
-    private void removeGroups(JMeterVariables vars, String basename) {
-        StringBuilder buf = new StringBuilder();
-        buf.append(basename);
-        buf.append("_g"); // $NON-NLS-1$
-        int pfxlen=buf.length();
+    private void removeGroups(JMeterVariables vars, GroupNames names) {
         // How many groups are there?
         int groups;
         try {
-            groups=Integer.parseInt(vars.get(buf.toString()));
+            groups=Integer.parseInt(vars.get(names.count));
         } catch (NumberFormatException e) {
             groups=0;
         }
-        vars.remove(buf.toString());// Remove the group count
+        vars.remove(names.count);// Remove the group count
         for (int i = 0; i <= groups; i++) {
-            buf.append(i);
-            vars.remove(buf.toString());// remove the g0,g1...gn vars
-            buf.setLength(pfxlen);
+            vars.remove(names.groups.get(i));// remove the g0,g1...gn vars
+        }
+    }
+
+    /**
+     * Names of the variables holding the groups of a match:
+     * basename_g and basename_g0, basename_g1...
+     */
+    private static final class GroupNames {
+        private final VariableName count;
+
+        private final IndexedVariableNames groups;
+
+        /**
+         * @param basename reference name or name of a match
+         * @param register false to give the names no slot, for the groups of a match of large index
+         */
+        GroupNames(String basename, boolean register) {
+            String prefix = basename + GROUP_SUFFIX;
+            count = new VariableName(prefix, register);
+            groups = new IndexedVariableNames(prefix, "", register); // $NON-NLS-1$
+        }
+    }
+
+    /**
+     * Names of the variables set for a reference name, built once rather than for each sample
+     */
+    private static final class RefNames {
+        // Names of the groups of further matches are built when needed
+        private static final int MAX_CACHED_MATCH_GROUPS = 100;
+
+        private final String refName;
+
+        private final VariableName ref;
+
+        private final VariableName matchNr;
+
+        private final IndexedVariableNames matches;
+
+        private final GroupNames groups;
+
+        // Groups of refName_n, at index n-1
+        private final List<GroupNames> matchGroups = new ArrayList<>();
+
+        RefNames(String refName) {
+            this.refName = refName;
+            ref = new VariableName(refName);
+            matchNr = new VariableName(refName + REF_MATCH_NR);
+            matches = new IndexedVariableNames(refName, UNDERSCORE);
+            groups = new GroupNames(refName, true);
+        }
+
+        GroupNames getMatchGroups(int n) {
+            if (n > MAX_CACHED_MATCH_GROUPS) {
+                return new GroupNames(matches.get(n).getName(), false);
+            }
+            while (matchGroups.size() < n) {
+                int index = matchGroups.size() + 1;
+                matchGroups.add(new GroupNames(matches.get(index).getName(), matches.isRegistered(index)));
+            }
+            return matchGroups.get(n - 1);
         }
     }
 
@@ -32,8 +32,10 @@ import org.apache.jmeter.processor.PostProcessor;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.testelement.AbstractScopedTestElement;
 import org.apache.jmeter.testelement.property.BooleanProperty;
+import org.apache.jmeter.threads.IndexedVariableNames;
 import org.apache.jmeter.threads.JMeterContext;
 import org.apache.jmeter.threads.JMeterVariables;
+import org.apache.jmeter.threads.VariableName;
 import org.apache.jmeter.util.TidyException;
 import org.apache.jmeter.util.XPathUtil;
 import org.apache.jorphan.logging.LoggingManager;
@@ -90,14 +92,12 @@ public class XPathExtractor extends AbstractScopedTestElement implements
     private static final String FRAGMENT        = "XPathExtractor.fragment"; // $NON-NLS-1$
     //- JMX file attributes
 
+    // Names of the variables set for the current reference name, built once
+    private transient IndexedVariableNames matchNames;
 
-    private String concat(String s1,String s2){
-        return new StringBuilder(s1).append("_").append(s2).toString(); // $NON-NLS-1$
-    }
+    private transient VariableName refVariable;
 
-    private String concat(String s1, int i){
-        return new StringBuilder(s1).append("_").append(i).toString(); // $NON-NLS-1$
-    }
+    private transient VariableName matchNrVariable;
 
     /**
      * Do the job - extract value from (X)HTML response using XPath Query.
@@ -113,16 +113,20 @@ public class XPathExtractor extends AbstractScopedTestElement implements
         }
         JMeterVariables vars = context.getVariables();
         String refName = getRefName();
-        vars.put(refName, getDefaultValue());
-        final String matchNR = concat(refName,MATCH_NR);
+        if (matchNames == null || !matchNames.getBaseName().equals(refName)) {
+            matchNames = new IndexedVariableNames(refName, "_"); // $NON-NLS-1$
+            refVariable = new VariableName(refName);
+            matchNrVariable = new VariableName(refName + "_" + MATCH_NR); // $NON-NLS-1$
+        }
+        vars.put(refVariable, getDefaultValue());
         int prevCount=0; // number of previous matches
         try {
-            prevCount=Integer.parseInt(vars.get(matchNR));
+            prevCount=Integer.parseInt(vars.get(matchNrVariable));
         } catch (NumberFormatException e) {
             // ignored
         }
-        vars.put(matchNR, "0"); // In case parse fails // $NON-NLS-1$
-        vars.remove(concat(refName,"1")); // In case parse fails // $NON-NLS-1$
+        vars.put(matchNrVariable, "0"); // In case parse fails // $NON-NLS-1$
+        vars.remove(matchNames.get(1)); // In case parse fails
 
         List<String> matches = new ArrayList<>();
         try{
@@ -144,23 +148,23 @@ public class XPathExtractor extends AbstractScopedTestElement implements
                 }
             }
             final int matchCount = matches.size();
-            vars.put(matchNR, String.valueOf(matchCount));
+            vars.put(matchNrVariable, String.valueOf(matchCount));
             if (matchCount > 0){
                 String value = matches.get(0);
                 if (value != null) {
-                    vars.put(refName, value);
+                    vars.put(refVariable, value);
                 }
                 for(int i=0; i < matchCount; i++){
                     value = matches.get(i);
                     if (value != null) {
-                        vars.put(concat(refName,i+1),matches.get(i));
+                        vars.put(matchNames.get(i+1),matches.get(i));
                     }
                 }
             }
-            vars.remove(concat(refName,matchCount+1)); // Just in case
+            vars.remove(matchNames.get(matchCount+1)); // Just in case
             // Clear any other remaining variables
             for(int i=matchCount+2; i <= prevCount; i++) {
-                vars.remove(concat(refName,i));
+                vars.remove(matchNames.get(i));
             }
         }catch(IOException e){// e.g. DTD not reachable
             final String errorMessage = "IOException on ("+getXPathQuery()+")";
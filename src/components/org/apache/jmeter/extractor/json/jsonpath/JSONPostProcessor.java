@@ -26,8 +26,10 @@ import org.apache.jmeter.processor.PostProcessor;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.testelement.AbstractScopedTestElement;
 import org.apache.jmeter.testelement.ThreadListener;
+import org.apache.jmeter.threads.IndexedVariableNames;
 import org.apache.jmeter.threads.JMeterContext;
 import org.apache.jmeter.threads.JMeterVariables;
+import org.apache.jmeter.threads.VariableName;
 import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.jorphan.util.JOrphanUtils;
@@ -61,6 +63,45 @@ public class JSONPostProcessor extends AbstractScopedTestElement implements Seri
         }
     };
 
+    // Reference names property the variable names were built for
+    private transient String cachedRefNames;
+
+    private transient RefNames[] refNamesVariables;
+
+    /**
+     * Names of the variables set for a reference name, built once rather than for each sample
+     */
+    private static final class RefNames {
+        private final VariableName ref;
+
+        private final VariableName matchNr;
+
+        private final VariableName all;
+
+        private final IndexedVariableNames matches;
+
+        RefNames(String refName) {
+            ref = new VariableName(refName);
+            matchNr = new VariableName(refName + REF_MATCH_NR);
+            all = new VariableName(refName + ALL_SUFFIX);
+            matches = new IndexedVariableNames(refName, "_"); //$NON-NLS-1$
+        }
+    }
+
+    private RefNames[] getRefNamesVariables() {
+        String rawRefNames = getRefNames();
+        if (refNamesVariables == null || !rawRefNames.equals(cachedRefNames)) {
+            String[] refNames = rawRefNames.split(SEPARATOR);
+            RefNames[] variables = new RefNames[refNames.length];
+            for (int i = 0; i < refNames.length; i++) {
+                variables[i] = new RefNames(refNames[i].trim());
+            }
+            refNamesVariables = variables;
+            cachedRefNames = rawRefNames;
+        }
+        return refNamesVariables;
+    }
+
     @Override
     public void process() {
         JMeterContext context = getThreadContext();
@@ -81,7 +122,7 @@ public class JSONPostProcessor extends AbstractScopedTestElement implements Seri
                 log.debug("JSON Extractor " + getName() + " working on Response:" + jsonResponse);
             }
         }
-        String[] refNames = getRefNames().split(SEPARATOR);
+        RefNames[] refNames = getRefNamesVariables();
         String[] jsonPathExpressions = getJsonPathExpressions().split(SEPARATOR);
         String[] defaultValues = getDefaultValues().split(SEPARATOR);
         int[] matchNumbers = getMatchNumbersAsInt(defaultValues.length);
@@ -97,23 +138,23 @@ public class JSONPostProcessor extends AbstractScopedTestElement implements Seri
 
         for (int i = 0; i < jsonPathExpressions.length; i++) {
             int matchNumber = matchNumbers[i];
-            String currentRefName = refNames[i].trim();
+            RefNames currentRefName = refNames[i];
             String currentJsonPath = jsonPathExpressions[i].trim();
             try {
                 if (jsonResponse.isEmpty()) {
-                    vars.put(currentRefName, defaultValues[i]);
+                    vars.put(currentRefName.ref, defaultValues[i]);
                 } else {
 
                     List<Object> extractedValues = localMatcher.get()
                             .extractWithJsonPath(jsonResponse, currentJsonPath);
                     // if no values extracted, default value added
                     if (extractedValues.isEmpty()) {
-                        vars.put(currentRefName, defaultValues[i]);
-                        vars.put(currentRefName + REF_MATCH_NR, "0"); //$NON-NLS-1$
+                        vars.put(currentRefName.ref, defaultValues[i]);
+                        vars.put(currentRefName.matchNr, "0"); //$NON-NLS-1$
                         if (matchNumber < 0 && getComputeConcatenation()) {
                             log.debug("No value extracted, storing empty in:" //$NON-NLS-1$
-                                    + currentRefName + ALL_SUFFIX);
-                            vars.put(currentRefName + ALL_SUFFIX, "");
+                                    + currentRefName.all);
+                            vars.put(currentRefName.all, "");
                         }
                     } else {
                         // if more than one value extracted, suffix with "_index"
@@ -126,7 +167,7 @@ public class JSONPostProcessor extends AbstractScopedTestElement implements Seri
                                                 ? extractedValues.size() * 20
                                                 : 1);
                                 for (Object stringExtracted : extractedValues) {
-                                    vars.put(currentRefName + "_" + index, 
+                                    vars.put(currentRefName.matches.get(index), 
                                             stringExtracted != null ? stringExtracted.toString() : ""); //$NON-NLS-1$
                                     if (getComputeConcatenation()) {
                                         concat.append(stringExtracted)
@@ -136,13 +177,13 @@ public class JSONPostProcessor extends AbstractScopedTestElement implements Seri
                                 }
                                 if (getComputeConcatenation()) {
                                     concat.setLength(concat.length() - 1);
-                                    vars.put(currentRefName + ALL_SUFFIX, concat.toString());
+                                    vars.put(currentRefName.all, concat.toString());
                                 }
                             } else if (matchNumber == 0) {
                                 // Random extraction
                                 int matchSize = extractedValues.size();
                                 Object obj = extractedValues.get(JMeterUtils.getRandomInt(matchSize));
-                                vars.put(currentRefName, 
+                                vars.put(currentRefName.ref, 
                                         obj != null ? obj.toString() : ""); //$NON-NLS-1$
                             } else {
                                 // extract at position
@@ -153,10 +194,10 @@ public class JSONPostProcessor extends AbstractScopedTestElement implements Seri
                                                 + extractedValues.size()
                                                 + "), default value will be used");
                                     }
-                                    vars.put(currentRefName, defaultValues[i]);
+                                    vars.put(currentRefName.ref, defaultValues[i]);
                                 } else {
                                     Object obj = extractedValues.get(matchNumber - 1);
-                                    vars.put(currentRefName, 
+                                    vars.put(currentRefName.ref, 
                                             obj != null ? obj.toString() : ""); //$NON-NLS-1$
                                 }
                             }
@@ -165,13 +206,13 @@ public class JSONPostProcessor extends AbstractScopedTestElement implements Seri
                             Object obj = extractedValues.get(0);
                             String objAsString = 
                                     obj != null ? obj.toString() : ""; //$NON-NLS-1$
-                            vars.put(currentRefName, 
+                            vars.put(currentRefName.ref, 
                                     objAsString); 
                             if (matchNumber < 0 && getComputeConcatenation()) {
-                                vars.put(currentRefName + ALL_SUFFIX, objAsString);
+                                vars.put(currentRefName.all, objAsString);
                             }
                         }
-                        vars.put(currentRefName + REF_MATCH_NR, Integer.toString(extractedValues.size()));
+                        vars.put(currentRefName.matchNr, Integer.toString(extractedValues.size()));
                     }
                 }
             } catch (Exception e) {
@@ -182,7 +223,7 @@ public class JSONPostProcessor extends AbstractScopedTestElement implements Seri
                     log.error("Error processing JSON content in "+ getName()+", message:"+e.getLocalizedMessage());
                     
                 }
-                vars.put(currentRefName, defaultValues[i]);
+                vars.put(currentRefName.ref, defaultValues[i]);
             }
         }
     }
@@ -25,6 +25,7 @@ import java.util.LinkedList;
 import org.apache.jmeter.engine.event.LoopIterationEvent;
 import org.apache.jmeter.engine.event.LoopIterationListener;
 import org.apache.jmeter.processor.PreProcessor;
+import org.apache.jmeter.samplers.SampleResultConsumer;
 import org.apache.jmeter.testelement.AbstractTestElement;
 import org.apache.jmeter.testelement.TestElement;
 import org.apache.jmeter.testelement.property.BooleanProperty;
@@ -34,7 +35,8 @@ import org.apache.jmeter.threads.JMeterVariables;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
 
-public class UserParameters extends AbstractTestElement implements Serializable, PreProcessor, LoopIterationListener {
+public class UserParameters extends AbstractTestElement implements Serializable, PreProcessor, LoopIterationListener,
+        SampleResultConsumer {
     private static final Logger log = LoggingManager.getLoggerForClass();
 
     private static final long serialVersionUID = 233L;
@@ -92,6 +94,24 @@ public class UserParameters extends AbstractTestElement implements Serializable,
         setProperty(list);
     }
 
+    /**
+     * {@inheritDoc}
+     * @since 3.1
+     */
+    @Override
+    public boolean needsResponseData() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 3.1
+     */
+    @Override
+    public boolean retainsSampleResults() {
+        return false;
+    }
+
     /**
      * The thread list is a list of lists. Each list within the parent list is a
      * collection of values for a simulated user. As many different sets of
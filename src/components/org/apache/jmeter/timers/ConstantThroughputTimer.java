@@ -25,6 +25,7 @@ import java.util.ResourceBundle;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+import org.apache.jmeter.engine.ThroughputBudget;
 import org.apache.jmeter.testbeans.TestBean;
 import org.apache.jmeter.testbeans.gui.GenericTestBeanCustomizer;
 import org.apache.jmeter.testelement.AbstractTestElement;
@@ -45,6 +46,7 @@ import org.apache.log.Logger;
  * There are two different ways of pacing the requests:
  * - delay each thread according to when it last ran
  * - delay each thread according to when any thread last ran
+ * - delay each thread according to a budget shared by all the servers of a distributed test
  */
 public class ConstantThroughputTimer extends AbstractTestElement implements Timer, TestStateListener, TestBean {
     private static final long serialVersionUID = 3;
@@ -66,6 +68,7 @@ public class ConstantThroughputTimer extends AbstractTestElement implements Time
         AllActiveThreadsInCurrentThreadGroup("calcMode.3"),
         AllActiveThreads_Shared("calcMode.4"),
         AllActiveThreadsInCurrentThreadGroup_Shared("calcMode.5"),
+        AllActiveThreadsInAllServers_Shared("calcMode.6"),
         ;
 
         private final String propertyName; // The property name to be used to look up the display string
@@ -141,6 +144,16 @@ public class ConstantThroughputTimer extends AbstractTestElement implements Time
      */
     @Override
     public long delay() {
+        if (mode == Mode.AllActiveThreadsInAllServers_Shared) {
+            // Timers with the same name share the budget, the servers share its throughput
+            long delay = ThroughputBudget.getBudget(getName(), getThroughput()).delay();
+            if (delay < 0) {
+                // Behind schedule, the sample should have started that long ago
+                setIntendedStartTime(System.currentTimeMillis() + delay);
+                return 0;
+            }
+            return delay;
+        }
         long currentTime = System.currentTimeMillis();
 
         /*
@@ -150,6 +163,9 @@ public class ConstantThroughputTimer extends AbstractTestElement implements Time
         long currentTarget = previousTime  + calculateDelay();
         if (currentTime > currentTarget) {
             // We're behind schedule -- try to catch up:
+            if (previousTime > 0 && !isShared()) {
+                setIntendedStartTime(currentTarget);
+            }
             previousTime = currentTime; // assume the sample will run immediately
             return 0;
         }
@@ -218,6 +234,9 @@ public class ConstantThroughputTimer extends AbstractTestElement implements Time
         //Multiple threads don't update the scheduled time simultaneously
         synchronized (info.MUTEX) {
             final long nextRequstTime = info.lastScheduledTime + milliSecPerRequest;
+            if (info.lastScheduledTime > 0 && nextRequstTime < now) {
+                setIntendedStartTime(nextRequstTime);
+            }
             info.lastScheduledTime = Math.max(now, nextRequstTime);
             calculatedDelay = info.lastScheduledTime - now;
         }
@@ -225,11 +244,25 @@ public class ConstantThroughputTimer extends AbstractTestElement implements Time
         return Math.max(calculatedDelay, 0);
     }
 
+    private boolean isShared() {
+        return mode == Mode.AllActiveThreads_Shared
+                || mode == Mode.AllActiveThreadsInCurrentThreadGroup_Shared;
+    }
+
+    /**
+     * Record the time at which the sample should have started, so that its
+     * response time can be corrected for the time it spent behind schedule.
+     */
+    private static void setIntendedStartTime(long time) {
+        JMeterContextService.getContext().setIntendedStartTime(time);
+    }
+
     private void reset() {
         synchronized (allThreadsInfo.MUTEX) {
             allThreadsInfo.lastScheduledTime = 0;
         }
         threadGroupsInfoMap.clear();
+        ThroughputBudget.reset();
         // no need to sync as one per instance
         previousTime = 0;
     }
@@ -301,7 +334,7 @@ public class ConstantThroughputTimer extends AbstractTestElement implements Time
      */
     @Override
     public void testEnded() {
-        //NOOP
+        ThroughputBudget.reset();
     }
 
     /**
@@ -317,7 +350,7 @@ public class ConstantThroughputTimer extends AbstractTestElement implements Time
      */
     @Override
     public void testEnded(String host) {
-        //NOOP
+        testEnded();
     }
     
     // For access from test code
@@ -22,6 +22,7 @@ import org.apache.jmeter.gui.UnsharedComponent;
 import org.apache.jmeter.samplers.SampleEvent;
 import org.apache.jmeter.samplers.SampleListener;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleResultConsumer;
 import org.apache.jmeter.testbeans.TestBean;
 import org.apache.jmeter.util.BeanShellInterpreter;
 import org.apache.jmeter.util.BeanShellTestElement;
@@ -30,7 +31,8 @@ import org.apache.jorphan.util.JMeterException;
 import org.apache.log.Logger;
 
 public class BeanShellListener extends BeanShellTestElement
-    implements Cloneable, SampleListener, TestBean, Visualizer, UnsharedComponent  {
+    implements Cloneable, SampleListener, TestBean, Visualizer, UnsharedComponent,
+    SampleResultConsumer {
     // N.B. Needs to implement Visualizer so that TestBeanGUI can find the correct GUI class
     // TODO - remove UnsharedComponent ? Probably does not make sense for a TestBean.
 
@@ -46,6 +48,26 @@ public class BeanShellListener extends BeanShellTestElement
         return INIT_FILE;
     }
 
+    /**
+     * {@inheritDoc}
+     * The script may use the response data.
+     * @since 3.1
+     */
+    @Override
+    public boolean needsResponseData() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The script may keep a reference to the results.
+     * @since 3.1
+     */
+    @Override
+    public boolean retainsSampleResults() {
+        return true;
+    }
+
     @Override
     public void sampleOccurred(SampleEvent se) {
         final BeanShellInterpreter bshInterpreter = getBeanShellInterpreter();
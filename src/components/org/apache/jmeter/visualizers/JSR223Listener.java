@@ -27,19 +27,40 @@ import javax.script.ScriptException;
 import org.apache.jmeter.samplers.SampleEvent;
 import org.apache.jmeter.samplers.SampleListener;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleResultConsumer;
 import org.apache.jmeter.testbeans.TestBean;
 import org.apache.jmeter.util.JSR223TestElement;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
 
 public class JSR223Listener extends JSR223TestElement
-    implements Cloneable, SampleListener, TestBean, Visualizer {
+    implements Cloneable, SampleListener, TestBean, Visualizer, SampleResultConsumer {
 // N.B. Needs to implement Visualizer so that TestBeanGUI can find the correct GUI class
 
     private static final Logger log = LoggingManager.getLoggerForClass();
 
     private static final long serialVersionUID = 234L;
 
+    /**
+     * {@inheritDoc}
+     * The script may use the response data.
+     * @since 3.1
+     */
+    @Override
+    public boolean needsResponseData() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The script may keep a reference to the results.
+     * @since 3.1
+     */
+    @Override
+    public boolean retainsSampleResults() {
+        return true;
+    }
+
     @Override
     public void sampleOccurred(SampleEvent event) {
         try {
@@ -60,6 +60,7 @@ import org.apache.jmeter.JMeter;
 import org.apache.jmeter.assertions.AssertionResult;
 import org.apache.jmeter.gui.util.VerticalPanel;
 import org.apache.jmeter.samplers.Clearable;
+import org.apache.jmeter.samplers.ResponseDataPrefixConsumer;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jmeter.visualizers.gui.AbstractVisualizer;
@@ -71,7 +72,7 @@ import org.apache.log.Logger;
  *
  */
 public class ViewResultsFullVisualizer extends AbstractVisualizer
-implements ActionListener, TreeSelectionListener, Clearable, ItemListener {
+implements ActionListener, TreeSelectionListener, Clearable, ItemListener, ResponseDataPrefixConsumer {
 
     private static final long serialVersionUID = 7338676747296593842L;
 
@@ -218,6 +219,27 @@ implements ActionListener, TreeSelectionListener, Clearable, ItemListener {
         return "view_results_tree_title"; // $NON-NLS-1$
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public boolean needsResponseData() {
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean retainsSampleResults() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * One more byte than displayed is kept, so that the response is still reported as too large
+     */
+    @Override
+    public int getResponseDataMaxSize() {
+        return MAX_DISPLAY_SIZE > 0 ? MAX_DISPLAY_SIZE + 1 : 0;
+    }
+
     /**
      * Initialize this visualizer
      */
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.visualizers.backend;
+
+import java.util.List;
+
+/**
+ * A {@link BackendListenerClient} that only needs per-label statistics.
+ * <p>
+ * The {@link BackendListener} does not queue the samples of such a client:
+ * sampler threads add them to accumulators of their own, which are merged
+ * every {@link #getAggregationInterval()} milliseconds and handed to
+ * {@link #handleAggregates(List, BackendListenerContext)}.
+ * {@link #handleSampleResults(List, BackendListenerContext)} is then not called.
+ * {@link #createSampleResult(BackendListenerContext, org.apache.jmeter.samplers.SampleResult)}
+ * is still called by sampler threads and may return null to ignore a sample.
+ * @since 3.1
+ */
+public interface AggregatingBackendListenerClient extends BackendListenerClient {
+
+    /**
+     * Called after {@link #setupTest(BackendListenerContext)}
+     *
+     * @return the time between two calls of
+     *         {@link #handleAggregates(List, BackendListenerContext)} in
+     *         milliseconds
+     */
+    long getAggregationInterval();
+
+    /**
+     * Handle the statistics of an interval. Called once per interval, with an
+     * empty list if no sample occurred, and once more at the end of the test.
+     *
+     * @param aggregates
+     *            statistics of each label that had samples during the interval
+     * @param context
+     *            the context to run with. This provides access to
+     *            initialization parameters.
+     */
+    void handleAggregates(List<SampleAggregate> aggregates, BackendListenerContext context);
+}
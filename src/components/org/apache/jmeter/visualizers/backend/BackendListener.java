@@ -26,6 +26,7 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.LockSupport;
 
@@ -35,20 +36,28 @@ import org.apache.jmeter.samplers.Remoteable;
 import org.apache.jmeter.samplers.SampleEvent;
 import org.apache.jmeter.samplers.SampleListener;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleResultConsumer;
 import org.apache.jmeter.testelement.AbstractTestElement;
 import org.apache.jmeter.testelement.TestElement;
 import org.apache.jmeter.testelement.TestStateListener;
 import org.apache.jmeter.testelement.property.TestElementProperty;
+import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jmeter.visualizers.backend.graphite.GraphiteBackendListenerClient;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
 
 /**
  * Async Listener that delegates SampleResult handling to implementations of {@link BackendListenerClient}
+ * <p>
+ * Samples are queued and handed in batches to the client by a worker thread, unless the
+ * client is an {@link AggregatingBackendListenerClient}: samples are then aggregated by
+ * the sampler threads themselves and the worker thread hands the merged statistics to
+ * the client at each interval.
  * @since 2.13
  */
 public class BackendListener extends AbstractTestElement
-    implements Serializable, SampleListener, TestStateListener, NoThreadClone, Remoteable  {
+    implements Serializable, SampleListener, TestStateListener, NoThreadClone, Remoteable,
+    SampleResultConsumer {
 
     /**
      * 
@@ -61,6 +70,8 @@ public class BackendListener extends AbstractTestElement
         // @GuardedBy("LOCK")
         private int instanceCount; // number of active tests
         private CountDownLatch latch;
+        private SampleAggregator aggregator; // only set for AggregatingBackendListenerClient
+        private CountDownLatch endOfTest; // only set for AggregatingBackendListenerClient
     }
 
     /**
@@ -98,6 +109,10 @@ public class BackendListener extends AbstractTestElement
 
     public static final String DEFAULT_QUEUE_SIZE = "5000";
 
+    // Significant bits kept for the response times of aggregated samples
+    private static final int AGGREGATION_PRECISION =
+            JMeterUtils.getPropDefault("backend_metrics_precision", 6); //$NON-NLS-1$
+
     // Create unique object as marker for end of queue
     private transient static final SampleResult FINAL_SAMPLE_RESULT = new SampleResult();
 
@@ -147,6 +162,26 @@ public class BackendListener extends AbstractTestElement
         return null;
     }
 
+    /**
+     * {@inheritDoc}
+     * Clients which receive the results themselves may need it.
+     * @since 3.1
+     */
+    @Override
+    public boolean needsResponseData() {
+        return isQueued();
+    }
+
+    /**
+     * {@inheritDoc}
+     * The results queued for clients which receive them are kept until they are handled.
+     * @since 3.1
+     */
+    @Override
+    public boolean retainsSampleResults() {
+        return isQueued();
+    }
+
     /**
      * Generate a String identifier of this instance for debugging purposes.
      *
@@ -178,6 +213,10 @@ public class BackendListener extends AbstractTestElement
             }
             return;
         }
+        if (listenerClientData.aggregator != null) {
+            listenerClientData.aggregator.add(sr);
+            return;
+        }
         try {
             if (!listenerClientData.queue.offer(sr)){ // we failed to add the element first time
                 listenerClientData.queueWaits.incrementAndGet();
@@ -191,6 +230,14 @@ public class BackendListener extends AbstractTestElement
         }
     }
 
+    /**
+     * @return true unless the samples are aggregated for an {@link AggregatingBackendListenerClient}
+     */
+    private boolean isQueued() {
+        ListenerClientData clientData = listenerClientData;
+        return clientData == null || clientData.aggregator == null;
+    }
+
     /**
      * Thread that dequeus data from queue to send it to {@link BackendListenerClient}
      */
@@ -255,6 +302,59 @@ public class BackendListener extends AbstractTestElement
         }
     }
 
+    /**
+     * Thread that hands the aggregated samples to an {@link AggregatingBackendListenerClient} at each interval
+     */
+    private static final class AggregationWorker extends Thread {
+
+        private final ListenerClientData listenerClientData;
+        private final BackendListenerContext context;
+        private final AggregatingBackendListenerClient backendListenerClient;
+        private AggregationWorker(AggregatingBackendListenerClient backendListenerClient, Arguments arguments,
+                ListenerClientData listenerClientData){
+            this.listenerClientData = listenerClientData;
+            // Allow BackendListenerClient implementations to get access to test element name
+            arguments.addArgument(TestElement.NAME, getName());
+            context = new BackendListenerContext(arguments);
+            this.backendListenerClient = backendListenerClient;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long interval = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, backendListenerClient.getAggregationInterval()));
+                long next = System.nanoTime() + interval;
+                try {
+                    boolean endOfLoop = false;
+                    while (!endOfLoop) {
+                        endOfLoop = listenerClientData.endOfTest.await(
+                                Math.max(0L, next - System.nanoTime()), TimeUnit.NANOSECONDS);
+                        next += interval;
+                        long now = System.nanoTime();
+                        if (next - now < 0) { // we are late, don't try to catch up
+                            next = now + interval;
+                        }
+                        sendAggregates();
+                    }
+                } catch (InterruptedException e) {
+                    // We may have been interrupted
+                    sendAggregates();
+                }
+                LOGGER.info("Worker ended");
+            } finally {
+                listenerClientData.latch.countDown();
+            }
+        }
+
+        private void sendAggregates() {
+            try {
+                backendListenerClient.handleAggregates(listenerClientData.aggregator.collect(), context);
+            } catch (RuntimeException e) {
+                LOGGER.error("Error handling aggregated samples", e);
+            }
+        }
+    }
+
     /**
      * Send sampleResults to {@link BackendListenerClient}
      * @param backendListenerClient {@link BackendListenerClient}
@@ -330,16 +430,26 @@ public class BackendListener extends AbstractTestElement
                 listenerClientData.queueWaitTime = new AtomicLong(0L);
                 listenerClientData.latch = new CountDownLatch(1);
                 listenerClientData.client = backendListenerClient;
-                LOGGER.info(getName()+":Starting worker with class:"+clientClass +" and queue capacity:"+getQueueSize());
-                Worker worker = new Worker(backendListenerClient, (Arguments) getArguments().clone(), listenerClientData);
+                Thread worker;
+                if (backendListenerClient instanceof AggregatingBackendListenerClient) {
+                    listenerClientData.aggregator = new SampleAggregator(AGGREGATION_PRECISION);
+                    listenerClientData.endOfTest = new CountDownLatch(1);
+                    LOGGER.info(getName()+":Starting aggregating worker with class:"+clientClass);
+                    worker = new AggregationWorker((AggregatingBackendListenerClient) backendListenerClient,
+                            (Arguments) getArguments().clone(), listenerClientData);
+                } else {
+                    LOGGER.info(getName()+":Starting worker with class:"+clientClass +" and queue capacity:"+getQueueSize());
+                    worker = new Worker(backendListenerClient, (Arguments) getArguments().clone(), listenerClientData);
+                }
                 worker.setDaemon(true);
-                worker.start();
-                LOGGER.info(getName()+": Started  worker with class:"+clientClass);
                 try {
                     backendListenerClient.setupTest(context);
                 } catch (Exception e) {
                     throw new java.lang.IllegalStateException("Failed calling setupTest", e);
                 }
+                // started once the client is set up, as the aggregation interval may depend on its parameters
+                worker.start();
+                LOGGER.info(getName()+": Started  worker with class:"+clientClass);
                 queuesByTestElementName.put(myName, listenerClientData);
             }
             listenerClientData.instanceCount++;
@@ -367,10 +477,14 @@ public class BackendListener extends AbstractTestElement
                 return;
             }
         }
-        try {
-            listenerClientData.queue.put(FINAL_SAMPLE_RESULT);
-        } catch (Exception ex) {
-            LOGGER.warn("testEnded() with exception:"+ex.getMessage(), ex);
+        if (listenerClientData.endOfTest != null) {
+            listenerClientData.endOfTest.countDown();
+        } else {
+            try {
+                listenerClientData.queue.put(FINAL_SAMPLE_RESULT);
+            } catch (Exception ex) {
+                LOGGER.warn("testEnded() with exception:"+ex.getMessage(), ex);
+            }
         }
         if (listenerClientData.queueWaits.get() > 0) {
             LOGGER.warn("QueueWaits: "+listenerClientData.queueWaits+"; QueueWaitTime: "+listenerClientData.queueWaitTime+
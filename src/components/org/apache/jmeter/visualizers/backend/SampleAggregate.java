@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.visualizers.backend;
+
+import org.apache.jorphan.math.LogLinearHistogram;
+
+/**
+ * Statistics of the samples of one label during one aggregation interval,
+ * handed to {@link AggregatingBackendListenerClient}s.
+ * Counts follow {@link SamplerMetric#add(org.apache.jmeter.samplers.SampleResult)}.
+ * @since 3.1
+ */
+public final class SampleAggregate {
+    private final String label;
+    private final int successes;
+    private final int failures;
+    private final int hits;
+    private final LogLinearHistogram.Snapshot okTimes;
+    private final LogLinearHistogram.Snapshot koTimes;
+    private final long okTotalTime;
+    private final long koTotalTime;
+
+    /**
+     * @param label sample label
+     * @param successes number of successful samples
+     * @param failures number of failed samples
+     * @param hits number of hits, including sub-results
+     * @param okTimes elapsed times of successful samples
+     * @param koTimes elapsed times of failed samples
+     * @param okTotalTime sum of the elapsed times of successful samples
+     * @param koTotalTime sum of the elapsed times of failed samples
+     */
+    public SampleAggregate(String label, int successes, int failures, int hits,
+            LogLinearHistogram.Snapshot okTimes, LogLinearHistogram.Snapshot koTimes,
+            long okTotalTime, long koTotalTime) {
+        this.label = label;
+        this.successes = successes;
+        this.failures = failures;
+        this.hits = hits;
+        this.okTimes = okTimes;
+        this.koTimes = koTimes;
+        this.okTotalTime = okTotalTime;
+        this.koTotalTime = koTotalTime;
+    }
+
+    /**
+     * @return the sample label
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return number of successful requests
+     */
+    public int getSuccesses() {
+        return successes;
+    }
+
+    /**
+     * @return number of failed requests
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return number of hits to the server, sub-results included
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return elapsed times of successful samples
+     */
+    public LogLinearHistogram.Snapshot getOkTimes() {
+        return okTimes;
+    }
+
+    /**
+     * @return elapsed times of failed samples
+     */
+    public LogLinearHistogram.Snapshot getKoTimes() {
+        return koTimes;
+    }
+
+    /**
+     * @return elapsed times of all samples
+     */
+    public LogLinearHistogram.Snapshot getAllTimes() {
+        return okTimes.merge(koTimes);
+    }
+
+    /**
+     * @return sum of the elapsed times of successful samples
+     */
+    public long getOkTotalTime() {
+        return okTotalTime;
+    }
+
+    /**
+     * @return sum of the elapsed times of failed samples
+     */
+    public long getKoTotalTime() {
+        return koTotalTime;
+    }
+}
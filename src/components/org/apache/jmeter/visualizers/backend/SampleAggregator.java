@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.visualizers.backend;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.jmeter.samplers.HistogramSampleResult;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jorphan.math.LogLinearHistogram;
+
+/**
+ * Aggregates samples per label for an {@link AggregatingBackendListenerClient}.
+ * <p>
+ * Each sampler thread adds its samples to accumulators of its own, guarded by a
+ * lock which is only contended once per interval, when {@link #collect()} swaps
+ * them with a spare set and merges them. Nothing is allocated per sample once a
+ * thread has seen a label. {@link #collect()} must only be called by one thread.
+ * @since 3.1
+ */
+final class SampleAggregator {
+
+    private final int precision;
+
+    private final List<ThreadAccumulator> accumulators = new CopyOnWriteArrayList<>();
+
+    private final ThreadLocal<ThreadAccumulator> threadAccumulator = new ThreadLocal<ThreadAccumulator>() {
+        @Override
+        protected ThreadAccumulator initialValue() {
+            ThreadAccumulator accumulator = new ThreadAccumulator(Thread.currentThread());
+            accumulators.add(accumulator);
+            return accumulator;
+        }
+    };
+
+    // Only used by the collecting thread
+    private final Map<String, LabelTotals> totals = new LinkedHashMap<>();
+
+    /**
+     * @param precision precision of the histograms of elapsed times
+     */
+    SampleAggregator(int precision) {
+        this.precision = precision;
+    }
+
+    /**
+     * Add a sample to the accumulators of the current thread
+     * @param result the sample
+     */
+    void add(SampleResult result) {
+        threadAccumulator.get().add(result);
+    }
+
+    /**
+     * Merge the samples added since the previous call
+     * @return statistics of each label that had samples
+     */
+    List<SampleAggregate> collect() {
+        for (ThreadAccumulator accumulator : accumulators) {
+            // A thread which ended before the swap cannot add anything afterwards
+            boolean ended = !accumulator.thread.isAlive();
+            for (Map.Entry<String, LabelAccumulator> entry : accumulator.swap().entrySet()) {
+                LabelAccumulator labelAccumulator = entry.getValue();
+                if (labelAccumulator.isEmpty()) {
+                    continue;
+                }
+                LabelTotals labelTotals = totals.get(entry.getKey());
+                if (labelTotals == null) {
+                    labelTotals = new LabelTotals(precision);
+                    totals.put(entry.getKey(), labelTotals);
+                }
+                labelTotals.add(labelAccumulator);
+                labelAccumulator.reset();
+            }
+            if (ended) {
+                accumulators.remove(accumulator);
+            }
+        }
+        List<SampleAggregate> aggregates = new ArrayList<>(totals.size());
+        for (Map.Entry<String, LabelTotals> entry : totals.entrySet()) {
+            LabelTotals labelTotals = entry.getValue();
+            if (!labelTotals.isEmpty()) {
+                aggregates.add(labelTotals.toAggregate(entry.getKey()));
+                labelTotals.reset();
+            }
+        }
+        return aggregates;
+    }
+
+    /**
+     * Accumulators of one sampler thread.
+     * The thread updates the active set, the collector merges the spare one.
+     */
+    private final class ThreadAccumulator {
+        private final Thread thread;
+
+        //@GuardedBy("this")
+        private Map<String, LabelAccumulator> active = new HashMap<>();
+
+        // Only used by the collecting thread
+        private Map<String, LabelAccumulator> spare = new HashMap<>();
+
+        ThreadAccumulator(Thread thread) {
+            this.thread = thread;
+        }
+
+        synchronized void add(SampleResult result) {
+            String label = result.getSampleLabel();
+            LabelAccumulator accumulator = active.get(label);
+            if (accumulator == null) {
+                accumulator = new LabelAccumulator(precision);
+                active.put(label, accumulator);
+            }
+            accumulator.add(result);
+        }
+
+        /**
+         * @return the accumulators filled since the previous swap, to be reset by the caller
+         */
+        Map<String, LabelAccumulator> swap() {
+            Map<String, LabelAccumulator> filled;
+            synchronized (this) {
+                filled = active;
+                active = spare;
+            }
+            spare = filled;
+            return filled;
+        }
+    }
+
+    /**
+     * Primitive counters of one label in one thread
+     */
+    private static final class LabelAccumulator {
+        private int successes;
+        private int failures;
+        private int hits;
+        private final LogLinearHistogram.Recorder okTimes;
+        private final LogLinearHistogram.Recorder koTimes;
+
+        LabelAccumulator(int precision) {
+            okTimes = new LogLinearHistogram.Recorder(precision);
+            koTimes = new LogLinearHistogram.Recorder(precision);
+        }
+
+        void add(SampleResult result) {
+            if (result instanceof HistogramSampleResult) {
+                HistogramSampleResult histogramResult = (HistogramSampleResult) result;
+                successes += (int) histogramResult.getOkTimes().getTotalCount();
+                failures += (int) histogramResult.getKoTimes().getTotalCount();
+                okTimes.add(histogramResult.getOkTimes());
+                koTimes.add(histogramResult.getKoTimes());
+                hits += histogramResult.getHits();
+                return;
+            }
+            if (result.isSuccessful()) {
+                successes += result.getSampleCount() - result.getErrorCount();
+                okTimes.recordValue(result.getTime());
+            } else {
+                failures += result.getErrorCount();
+                koTimes.recordValue(result.getTime());
+            }
+            hits += SamplerMetric.countHits(result);
+        }
+
+        boolean isEmpty() {
+            return okTimes.getTotalCount() == 0 && koTimes.getTotalCount() == 0;
+        }
+
+        void reset() {
+            successes = 0;
+            failures = 0;
+            hits = 0;
+            okTimes.reset();
+            koTimes.reset();
+        }
+    }
+
+    /**
+     * Merged counters of one label
+     */
+    private static final class LabelTotals {
+        private int successes;
+        private int failures;
+        private int hits;
+        private long okTotalTime;
+        private long koTotalTime;
+        private final LogLinearHistogram okTimes;
+        private final LogLinearHistogram koTimes;
+
+        LabelTotals(int precision) {
+            okTimes = new LogLinearHistogram(precision);
+            koTimes = new LogLinearHistogram(precision);
+        }
+
+        void add(LabelAccumulator accumulator) {
+            successes += accumulator.successes;
+            failures += accumulator.failures;
+            hits += accumulator.hits;
+            okTotalTime += accumulator.okTimes.getSum();
+            koTotalTime += accumulator.koTimes.getSum();
+            okTimes.add(accumulator.okTimes);
+            koTimes.add(accumulator.koTimes);
+        }
+
+        boolean isEmpty() {
+            return okTimes.getTotalCount() == 0 && koTimes.getTotalCount() == 0;
+        }
+
+        SampleAggregate toAggregate(String label) {
+            return new SampleAggregate(label, successes, failures, hits,
+                    okTimes.snapshot(), koTimes.snapshot(), okTotalTime, koTotalTime);
+        }
+
+        void reset() {
+            successes = 0;
+            failures = 0;
+            hits = 0;
+            okTotalTime = 0;
+            koTotalTime = 0;
+            okTimes.reset();
+            koTimes.reset();
+        }
+    }
+}
@@ -20,8 +20,10 @@ package org.apache.jmeter.visualizers.backend;
 
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.jmeter.control.TransactionController;
+import org.apache.jmeter.samplers.HistogramSampleResult;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.math.LogLinearHistogram;
 
 /**
  * Sampler metric
@@ -39,6 +41,13 @@ public class SamplerMetric {
     // Response times for All samples
     // Limit to sliding window of SLIDING_WINDOW_SIZE values 
     private DescriptiveStatistics allResponsesStats = new DescriptiveStatistics(SLIDING_WINDOW_SIZE);
+    // Response times of the current time slot, used instead of the sliding windows
+    // once a SampleAggregate has been added; created on first use
+    private LogLinearHistogram okHistogram;
+    private LogLinearHistogram koHistogram;
+    private LogLinearHistogram allHistogram;
+    private long okTotalTime;
+    private long koTotalTime;
     private int successes;
     private int failures;
     private int hits;
@@ -53,6 +62,10 @@ public class SamplerMetric {
      * @param result {@link SampleResult} to be used
      */
     public synchronized void add(SampleResult result) {
+        if (result instanceof HistogramSampleResult) {
+            addHistograms((HistogramSampleResult) result);
+            return;
+        }
         if(result.isSuccessful()) {
             successes+=result.getSampleCount()-result.getErrorCount();
         } else {
@@ -67,21 +80,85 @@ public class SamplerMetric {
         }else {
             koResponsesStats.addValue(time);
         }
-        addHits(result);
+        hits += countHits(result);
+    }
+
+    /**
+     * Add the statistics of an interval. Once called, response times only
+     * cover the current time slot instead of a sliding window of samples.
+     * @param aggregate {@link SampleAggregate} to be used
+     * @since 3.1
+     */
+    public synchronized void add(SampleAggregate aggregate) {
+        if (allHistogram == null) {
+            int precision = aggregate.getOkTimes().getPrecision();
+            okHistogram = new LogLinearHistogram(precision);
+            koHistogram = new LogLinearHistogram(precision);
+            allHistogram = new LogLinearHistogram(precision);
+        }
+        successes += aggregate.getSuccesses();
+        failures += aggregate.getFailures();
+        hits += aggregate.getHits();
+        okHistogram.add(aggregate.getOkTimes());
+        koHistogram.add(aggregate.getKoTimes());
+        allHistogram.add(aggregate.getOkTimes());
+        allHistogram.add(aggregate.getKoTimes());
+        okTotalTime += aggregate.getOkTotalTime();
+        koTotalTime += aggregate.getKoTotalTime();
+    }
+
+    /**
+     * Add the histograms of a result aggregated by a remote server, like
+     * {@link #add(SampleAggregate)} response times then cover the current time slot.
+     */
+    private void addHistograms(HistogramSampleResult result) {
+        LogLinearHistogram.Recorder okTimes = result.getOkTimes();
+        LogLinearHistogram.Recorder koTimes = result.getKoTimes();
+        if (allHistogram == null) {
+            int precision = okTimes.getPrecision();
+            okHistogram = new LogLinearHistogram(precision);
+            koHistogram = new LogLinearHistogram(precision);
+            allHistogram = new LogLinearHistogram(precision);
+        }
+        successes += (int) okTimes.getTotalCount();
+        failures += (int) koTimes.getTotalCount();
+        hits += result.getHits();
+        okHistogram.add(okTimes);
+        koHistogram.add(koTimes);
+        allHistogram.add(okTimes);
+        allHistogram.add(koTimes);
+        okTotalTime += okTimes.getSum();
+        koTotalTime += koTimes.getSum();
     }
 
     /**
      * Compute hits from res
      * @param res {@link SampleResult}
+     * @return number of hits of the result and its sub-results
      */
-    private void addHits(SampleResult res) {     
-        SampleResult[] subResults = res.getSubResults();
-        if (!TransactionController.isFromTransactionController(res)) {
-            hits += 1;                 
-        }
-        for (SampleResult subResult : subResults) {
-            addHits(subResult);
+    static int countHits(SampleResult res) {
+        int count = TransactionController.isFromTransactionController(res) ? 0 : 1;
+        for (SampleResult subResult : res.getSubResults()) {
+            count += countHits(subResult);
         }
+        return count;
+    }
+
+    private static double getMin(LogLinearHistogram histogram) {
+        return histogram.getTotalCount() == 0 ? Double.NaN : histogram.getMin();
+    }
+
+    private static double getMax(LogLinearHistogram histogram) {
+        return histogram.getTotalCount() == 0 ? Double.NaN : histogram.getMax();
+    }
+
+    private static double getMean(LogLinearHistogram histogram, long totalTime) {
+        long count = histogram.getTotalCount();
+        return count == 0 ? Double.NaN : (double) totalTime / count;
+    }
+
+    private static double getPercentile(LogLinearHistogram histogram, double percentile) {
+        return histogram.getTotalCount() == 0 ? Double.NaN : histogram.getValueAtPercent(percentile / 100);
     }
     
     /**
@@ -93,6 +170,13 @@ public class SamplerMetric {
         successes = 0;
         failures = 0;
         hits = 0;
+        if (allHistogram != null) {
+            okHistogram.reset();
+            koHistogram.reset();
+            allHistogram.reset();
+            okTotalTime = 0;
+            koTotalTime = 0;
+        }
     }
 
     /**
@@ -129,6 +213,9 @@ public class SamplerMetric {
      *         been added yet
      */
     public double getOkMaxTime() {
+        if (allHistogram != null) {
+            return getMax(okHistogram);
+        }
         return okResponsesStats.getMax();
     }
 
@@ -139,6 +226,9 @@ public class SamplerMetric {
      *         added yet
      */
     public double getOkMinTime() {
+        if (allHistogram != null) {
+            return getMin(okHistogram);
+        }
         return okResponsesStats.getMin();
     }
     
@@ -148,6 +238,9 @@ public class SamplerMetric {
      * @return The arithmetic mean of the stored values
      */
     public double getOkMean() {
+        if (allHistogram != null) {
+            return getMean(okHistogram, okTotalTime);
+        }
         return okResponsesStats.getMean();
     }
     
@@ -160,6 +253,9 @@ public class SamplerMetric {
      *         values.
      */
     public double getOkPercentile(double percentile) {
+        if (allHistogram != null) {
+            return getPercentile(okHistogram, percentile);
+        }
         return okResponsesStats.getPercentile(percentile);
     }
 
@@ -170,6 +266,9 @@ public class SamplerMetric {
      *         been added yet
      */
     public double getKoMaxTime() {
+        if (allHistogram != null) {
+            return getMax(koHistogram);
+        }
         return koResponsesStats.getMax();
     }
 
@@ -180,6 +279,9 @@ public class SamplerMetric {
      *         added yet
      */
     public double getKoMinTime() {
+        if (allHistogram != null) {
+            return getMin(koHistogram);
+        }
         return koResponsesStats.getMin();
     }
     
@@ -189,6 +291,9 @@ public class SamplerMetric {
      * @return The arithmetic mean of the stored values
      */
     public double getKoMean() {
+        if (allHistogram != null) {
+            return getMean(koHistogram, koTotalTime);
+        }
         return koResponsesStats.getMean();
     }
     
@@ -201,6 +306,9 @@ public class SamplerMetric {
      *         values.
      */
     public double getKoPercentile(double percentile) {
+        if (allHistogram != null) {
+            return getPercentile(koHistogram, percentile);
+        }
         return koResponsesStats.getPercentile(percentile);
     }
     
@@ -211,6 +319,9 @@ public class SamplerMetric {
      *         been added yet
      */
     public double getAllMaxTime() {
+        if (allHistogram != null) {
+            return getMax(allHistogram);
+        }
         return allResponsesStats.getMax();
     }
 
@@ -221,6 +332,9 @@ public class SamplerMetric {
      *         added yet
      */
     public double getAllMinTime() {
+        if (allHistogram != null) {
+            return getMin(allHistogram);
+        }
         return allResponsesStats.getMin();
     }
     
@@ -230,6 +344,9 @@ public class SamplerMetric {
      * @return The arithmetic mean of the stored values
      */
     public double getAllMean() {
+        if (allHistogram != null) {
+            return getMean(allHistogram, okTotalTime + koTotalTime);
+        }
         return allResponsesStats.getMean();
     }
     
@@ -242,6 +359,9 @@ public class SamplerMetric {
      *         values.
      */
     public double getAllPercentile(double percentile) {
+        if (allHistogram != null) {
+            return getPercentile(allHistogram, percentile);
+        }
         return allResponsesStats.getPercentile(percentile);
     }
 
@@ -46,6 +46,15 @@ public class UserMetric {
         usersStats.addValue(JMeterContextService.getThreadCounts().activeThreads);
     }
     
+    /**
+     * Record the current number of active threads, used instead of
+     * {@link #add(SampleResult)} when samples are aggregated
+     * @since 3.1
+     */
+    public synchronized void addActiveThreads() {
+        usersStats.addValue(JMeterContextService.getThreadCounts().activeThreads);
+    }
+
     /**
      * Reset metric except for percentile related data
      */
@@ -25,9 +25,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -36,17 +33,24 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.jmeter.config.Arguments;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.visualizers.backend.AbstractBackendListenerClient;
+import org.apache.jmeter.visualizers.backend.AggregatingBackendListenerClient;
 import org.apache.jmeter.visualizers.backend.BackendListenerContext;
+import org.apache.jmeter.visualizers.backend.SampleAggregate;
 import org.apache.jmeter.visualizers.backend.SamplerMetric;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
 
 /**
  * Graphite based Listener using Pickle Protocol
+ * <p>
+ * Samples are aggregated by the sampler threads, metrics are sent each second
+ * when the {@link org.apache.jmeter.visualizers.backend.BackendListener BackendListener}
+ * hands over the aggregates of the last second.
  * @see <a href="http://graphite.readthedocs.org/en/latest/overview.html">Graphite Overview</a>
  * @since 2.13
  */
-public class GraphiteBackendListenerClient extends AbstractBackendListenerClient implements Runnable {
+public class GraphiteBackendListenerClient extends AbstractBackendListenerClient
+        implements AggregatingBackendListenerClient, Runnable {
 
     //+ Argument names
     // These are stored in the JMX file, so DO NOT CHANGE ANY VALUES 
@@ -104,8 +108,8 @@ public class GraphiteBackendListenerClient extends AbstractBackendListenerClient
 
     private static final String METRIC_ALL_HITS_COUNT        = METRIC_HITS_PREFIX+METRIC_SEPARATOR+METRIC_COUNT;
 
-    private static final long ONE_SECOND = 1L;
-    private static final int MAX_POOL_SIZE = 1;
+    // Don't change this as metrics are per second
+    private static final long ONE_SECOND_MS = 1000L;
     private static final String DEFAULT_PERCENTILES = "90;95;99";
     private static final String SEPARATOR = ";"; //$NON-NLS-1$
     private static final Object LOCK = new Object();
@@ -123,9 +127,6 @@ public class GraphiteBackendListenerClient extends AbstractBackendListenerClient
     
 
     private GraphiteMetricsSender graphiteMetricsManager;
-
-    private ScheduledExecutorService scheduler;
-    private ScheduledFuture<?> timerHandle;
     
     private Pattern pattern;
 
@@ -224,6 +225,10 @@ public class GraphiteBackendListenerClient extends AbstractBackendListenerClient
         this.samplersList = samplersList;
     }
 
+    /**
+     * Not called by the BackendListener, which hands aggregates to this client.
+     * The metrics of the samples are sent with the next aggregates or when {@link #run()} is called.
+     */
     @Override
     public void handleSampleResults(List<SampleResult> sampleResults,
             BackendListenerContext context) {
@@ -250,6 +255,43 @@ public class GraphiteBackendListenerClient extends AbstractBackendListenerClient
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * @since 3.1
+     */
+    @Override
+    public long getAggregationInterval() {
+        return ONE_SECOND_MS;
+    }
+
+    /**
+     * Add the aggregates of the last second to the metrics and send them
+     * @since 3.1
+     */
+    @Override
+    public void handleAggregates(List<SampleAggregate> aggregates, BackendListenerContext context) {
+        boolean samplersToFilterMatch;
+        synchronized (LOCK) {
+            getUserMetrics().addActiveThreads();
+            SamplerMetric cumulatedMetrics = getSamplerMetric(CUMULATED_METRICS);
+            for (SampleAggregate aggregate : aggregates) {
+                if(!summaryOnly) {
+                    if (useRegexpForSamplersList) {
+                        Matcher matcher = pattern.matcher(aggregate.getLabel());
+                        samplersToFilterMatch = matcher.matches();
+                    } else {
+                        samplersToFilterMatch = samplersToFilter.contains(aggregate.getLabel()); 
+                    }
+                    if (samplersToFilterMatch) {
+                        getSamplerMetric(aggregate.getLabel()).add(aggregate);
+                    }
+                }
+                cumulatedMetrics.add(aggregate);
+            }
+        }
+        sendMetrics();
+    }
+
     @Override
     public void setupTest(BackendListenerContext context) throws Exception {
         String graphiteMetricsSenderClass = context.getParameter(GRAPHITE_METRICS_SENDER);
@@ -297,27 +339,14 @@ public class GraphiteBackendListenerClient extends AbstractBackendListenerClient
             samplersToFilter = new HashSet<>();
             Collections.addAll(samplersToFilter, samplers);
         }
-        scheduler = Executors.newScheduledThreadPool(MAX_POOL_SIZE);
-        // Don't change this as metrics are per second
-        this.timerHandle = scheduler.scheduleAtFixedRate(this, ONE_SECOND, ONE_SECOND, TimeUnit.SECONDS);
     }
 
     @Override
     public void teardownTest(BackendListenerContext context) throws Exception {
-        boolean cancelState = timerHandle.cancel(false);
-        if(LOGGER.isDebugEnabled()) {
-            LOGGER.debug("Canceled state:"+cancelState);
+        // The last set of data has been sent by the final handleAggregates call
+        if (samplersToFilter != null) {
+            samplersToFilter.clear();
         }
-        scheduler.shutdown();
-        try {
-            scheduler.awaitTermination(30, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-            LOGGER.error("Error waiting for end of scheduler");
-        }
-        // Send last set of data before ending
-        sendMetrics();
-        
-        samplersToFilter.clear();
         graphiteMetricsManager.destroy();
         super.teardownTest(context);
     }
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.visualizers.backend.influxdb;
+
+/**
+ * Base class for {@link InfluxdbMetricsSender}
+ * @since 3.1
+ */
+abstract class AbstractInfluxdbMetricsSender implements InfluxdbMetricsSender {
+
+    /**
+     * Escapes the characters that are reserved in tag keys, tag values and field keys:
+     * <ul>
+     * <li>',' by '\,'</li>
+     * <li>'=' by '\='</li>
+     * <li>' ' by '\ '</li>
+     * </ul>
+     *
+     * @param s
+     *            text to be escaped
+     * @return the escaped text
+     */
+    static String tagToStringValue(String s) {
+        return escape(s, true);
+    }
+
+    /**
+     * Escapes the characters that are reserved in measurement names,
+     * that is ',' and ' '
+     *
+     * @param s
+     *            text to be escaped
+     * @return the escaped text
+     */
+    static String measurementToStringValue(String s) {
+        return escape(s, false);
+    }
+
+    private static String escape(String s, boolean escapeEquals) {
+        StringBuilder sb = null;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ',' || c == ' ' || (escapeEquals && c == '=')) {
+                if (sb == null) {
+                    sb = new StringBuilder(s.length() + 8);
+                    sb.append(s, 0, i);
+                }
+                sb.append('\\');
+            }
+            if (sb != null) {
+                sb.append(c);
+            }
+        }
+        return sb == null ? s : sb.toString();
+    }
+}
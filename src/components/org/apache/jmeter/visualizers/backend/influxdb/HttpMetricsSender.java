@@ -0,0 +1,328 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.visualizers.backend.influxdb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.apache.log.Logger;
+
+/**
+ * Sends the points to InfluxDB over HTTP.
+ * <p>
+ * Points are grouped in batches of up to <code>backend_influxdb.batch_size</code> points
+ * or <code>backend_influxdb.batch_delay</code> milliseconds.
+ * Full batches are handed over to a bounded queue read by a single sender thread,
+ * which posts them gzipped and retries with an exponential backoff.
+ * Callers never block: points that cannot be queued or sent are dropped and counted.
+ * @since 3.1
+ */
+class HttpMetricsSender extends AbstractInfluxdbMetricsSender {
+    private static final Logger LOG = LoggingManager.getLoggerForClass();
+
+    private static final int DEFAULT_BATCH_SIZE =
+            JMeterUtils.getPropDefault("backend_influxdb.batch_size", 1000); //$NON-NLS-1$
+    private static final long DEFAULT_BATCH_DELAY =
+            JMeterUtils.getPropDefault("backend_influxdb.batch_delay", 1000L); //$NON-NLS-1$
+    private static final int DEFAULT_QUEUE_SIZE =
+            JMeterUtils.getPropDefault("backend_influxdb.queue_size", 100); //$NON-NLS-1$
+    private static final int DEFAULT_MAX_RETRIES =
+            JMeterUtils.getPropDefault("backend_influxdb.max_retries", 3); //$NON-NLS-1$
+    private static final int DEFAULT_TIMEOUT =
+            JMeterUtils.getPropDefault("backend_influxdb.timeout", 5000); //$NON-NLS-1$
+
+    // First delay before retrying a batch, doubled at each attempt
+    private static final long RETRY_DELAY_MS = 100L;
+    // Maximum time destroy waits for the queued batches to be sent
+    private static final long DESTROY_TIMEOUT_MS = 30000L;
+
+    private final int batchSize;
+    private final long batchDelay;
+    private final int maxRetries;
+    private final int timeout;
+
+    private final Object lock = new Object();
+    private List<String> pending; // guarded by lock
+    private long pendingSince; // guarded by lock
+
+    private final BlockingQueue<List<String>> queue;
+    private final AtomicLong sentPoints = new AtomicLong();
+    private final AtomicLong droppedPoints = new AtomicLong();
+    private final AtomicLong sentBatches = new AtomicLong();
+
+    private URL url;
+    private Thread senderThread;
+    private volatile boolean running;
+
+    HttpMetricsSender() {
+        this(DEFAULT_BATCH_SIZE, DEFAULT_BATCH_DELAY, DEFAULT_QUEUE_SIZE, DEFAULT_MAX_RETRIES, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param batchSize maximum number of points in a batch
+     * @param batchDelay maximum time in milliseconds a point waits in the current batch
+     * @param queueSize maximum number of batches waiting to be sent
+     * @param maxRetries number of retries of a batch which could not be sent
+     * @param timeout connect and read timeout in milliseconds
+     */
+    HttpMetricsSender(int batchSize, long batchDelay, int queueSize, int maxRetries, int timeout) {
+        super();
+        this.batchSize = Math.max(1, batchSize);
+        this.batchDelay = Math.max(1L, batchDelay);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.timeout = timeout;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.pending = new ArrayList<>(this.batchSize);
+    }
+
+    @Override
+    public void setup(String influxdbUrl) throws Exception {
+        url = new URL(influxdbUrl);
+        running = true;
+        senderThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sendBatches();
+            }
+        }, "InfluxdbMetricsSender"); //$NON-NLS-1$
+        senderThread.setDaemon(true);
+        senderThread.start();
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Created HttpMetricsSender with url:" + influxdbUrl + ", batchSize:" + batchSize
+                    + ", batchDelay:" + batchDelay + ", queueSize:" + (queue.remainingCapacity() + queue.size()));
+        }
+    }
+
+    @Override
+    public void addMetric(String measurement, String tags, String fields) {
+        StringBuilder sb = new StringBuilder(measurement.length() + tags.length() + fields.length() + 24);
+        sb.append(measurement);
+        if (tags.length() > 0) {
+            sb.append(',').append(tags);
+        }
+        sb.append(' ').append(fields).append(' ')
+            .append(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()));
+        List<String> batch = null;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                pendingSince = System.currentTimeMillis();
+            }
+            pending.add(sb.toString());
+            if (pending.size() >= batchSize) {
+                batch = takePending();
+            }
+        }
+        if (batch != null) {
+            enqueue(batch);
+        }
+    }
+
+    @Override
+    public void writeAndSendMetrics() {
+        List<String> batch = takeDuePending();
+        if (batch != null) {
+            enqueue(batch);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        List<String> batch;
+        synchronized (lock) {
+            batch = pending.isEmpty() ? null : takePending();
+        }
+        if (batch != null) {
+            enqueue(batch);
+        }
+        running = false;
+        if (senderThread != null) {
+            try {
+                senderThread.join(DESTROY_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (senderThread.isAlive()) {
+                LOG.warn("Timeout waiting for the metrics to be sent to InfluxDB");
+                senderThread.interrupt();
+            }
+        }
+        List<List<String>> unsent = new ArrayList<>();
+        queue.drainTo(unsent);
+        for (List<String> points : unsent) {
+            droppedPoints.addAndGet(points.size());
+        }
+        LOG.info("Sent " + sentPoints.get() + " points in " + sentBatches.get()
+                + " batches to InfluxDB, dropped " + droppedPoints.get() + " points");
+    }
+
+    /**
+     * @return number of points accepted by InfluxDB
+     */
+    long getSentPoints() {
+        return sentPoints.get();
+    }
+
+    /**
+     * @return number of points dropped because the queue was full or InfluxDB could not be reached
+     */
+    long getDroppedPoints() {
+        return droppedPoints.get();
+    }
+
+    /**
+     * @return number of batches accepted by InfluxDB
+     */
+    long getSentBatches() {
+        return sentBatches.get();
+    }
+
+    private List<String> takePending() {
+        List<String> batch = pending;
+        pending = new ArrayList<>(batchSize);
+        return batch;
+    }
+
+    private List<String> takeDuePending() {
+        synchronized (lock) {
+            if (!pending.isEmpty() && System.currentTimeMillis() - pendingSince >= batchDelay) {
+                return takePending();
+            }
+        }
+        return null;
+    }
+
+    private void enqueue(List<String> batch) {
+        if (!queue.offer(batch)) {
+            long dropped = droppedPoints.addAndGet(batch.size());
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("InfluxDB sender queue is full, dropped " + batch.size() + " points, "
+                        + dropped + " points dropped so far");
+            }
+        }
+    }
+
+    private void sendBatches() {
+        while (running || !queue.isEmpty()) {
+            try {
+                List<String> batch = queue.poll(batchDelay, TimeUnit.MILLISECONDS);
+                if (batch == null) {
+                    batch = takeDuePending();
+                }
+                if (batch != null) {
+                    send(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void send(List<String> batch) throws InterruptedException {
+        byte[] payload;
+        try {
+            payload = toPayload(batch);
+        } catch (IOException e) {
+            LOG.error("Error compressing " + batch.size() + " points", e);
+            droppedPoints.addAndGet(batch.size());
+            return;
+        }
+        long retryDelay = RETRY_DELAY_MS;
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            if (attempt > 0) {
+                Thread.sleep(retryDelay);
+                retryDelay *= 2;
+            }
+            try {
+                int status = post(payload);
+                if (status >= 200 && status < 300) {
+                    sentPoints.addAndGet(batch.size());
+                    sentBatches.incrementAndGet();
+                    return;
+                }
+                if (status >= 400 && status < 500) {
+                    // Retrying a rejected batch would be rejected again
+                    LOG.error("InfluxDB rejected " + batch.size() + " points with status " + status);
+                    break;
+                }
+                LOG.warn("Error writing to InfluxDB, status:" + status + ", attempt:" + (attempt + 1));
+            } catch (IOException e) {
+                LOG.warn("Error writing to InfluxDB:" + e.getMessage() + ", attempt:" + (attempt + 1));
+            }
+        }
+        droppedPoints.addAndGet(batch.size());
+    }
+
+    private int post(byte[] payload) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setConnectTimeout(timeout);
+        conn.setReadTimeout(timeout);
+        conn.setDoOutput(true);
+        conn.setRequestMethod("POST"); //$NON-NLS-1$
+        conn.setRequestProperty("Content-Type", "text/plain; charset=utf-8"); //$NON-NLS-1$ //$NON-NLS-2$
+        conn.setRequestProperty("Content-Encoding", "gzip"); //$NON-NLS-1$ //$NON-NLS-2$
+        conn.setFixedLengthStreamingMode(payload.length);
+        try (OutputStream out = conn.getOutputStream()) {
+            out.write(payload);
+        }
+        int status = conn.getResponseCode();
+        // Read the response fully so that the connection can be reused
+        InputStream in = status < 400 ? conn.getInputStream() : conn.getErrorStream();
+        if (in != null) {
+            try {
+                byte[] buffer = new byte[1024];
+                while (in.read(buffer) != -1) { // NOSONAR
+                    // discard
+                }
+            } finally {
+                JOrphanUtils.closeQuietly(in);
+            }
+        }
+        return status;
+    }
+
+    /**
+     * @param batch points in line protocol
+     * @return the gzipped points, one per line
+     * @throws IOException if compression fails
+     */
+    static byte[] toPayload(List<String> batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(batch.size() * 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            for (String line : batch) {
+                gzip.write(line.getBytes(CHARSET_NAME));
+                gzip.write('\n');
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.visualizers.backend.influxdb;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jmeter.config.Arguments;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jmeter.visualizers.backend.AbstractBackendListenerClient;
+import org.apache.jmeter.visualizers.backend.AggregatingBackendListenerClient;
+import org.apache.jmeter.visualizers.backend.BackendListenerContext;
+import org.apache.jmeter.visualizers.backend.SampleAggregate;
+import org.apache.jmeter.visualizers.backend.SamplerMetric;
+import org.apache.jmeter.visualizers.backend.UserMetric;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * InfluxDB based Listener using the line protocol over HTTP
+ * <p>
+ * Samples are aggregated by the sampler threads, metrics are computed for each
+ * interval of <code>backend_influxdb.send_interval</code> milliseconds and handed
+ * over to an {@link InfluxdbMetricsSender} which batches and sends them asynchronously.
+ * @since 3.1
+ */
+public class InfluxdbBackendListenerClient extends AbstractBackendListenerClient
+        implements AggregatingBackendListenerClient {
+
+    //+ Argument names
+    // These are stored in the JMX file, so DO NOT CHANGE ANY VALUES
+    private static final String INFLUXDB_METRICS_SENDER = "influxdbMetricsSender"; //$NON-NLS-1$
+    private static final String INFLUXDB_URL = "influxdbUrl"; //$NON-NLS-1$
+    private static final String APPLICATION = "application"; //$NON-NLS-1$
+    private static final String MEASUREMENT = "measurement"; //$NON-NLS-1$
+    private static final String SUMMARY_ONLY = "summaryOnly"; //$NON-NLS-1$
+    private static final String SAMPLERS_REGEX = "samplersRegex"; //$NON-NLS-1$
+    private static final String PERCENTILES = "percentiles"; //$NON-NLS-1$
+    //- Argument names
+
+    private static final Logger LOGGER = LoggingManager.getLoggerForClass();
+
+    private static final long SEND_INTERVAL =
+            JMeterUtils.getPropDefault("backend_influxdb.send_interval", 5000L); //$NON-NLS-1$
+
+    private static final String DEFAULT_INFLUXDB_URL = "http://host_to_change:8086/write?db=jmeter"; //$NON-NLS-1$
+    private static final String DEFAULT_APPLICATION = "application name"; //$NON-NLS-1$
+    private static final String DEFAULT_MEASUREMENT = "jmeter"; //$NON-NLS-1$
+    private static final String DEFAULT_SAMPLERS_REGEX = ".*"; //$NON-NLS-1$
+    private static final String DEFAULT_PERCENTILES = "90;95;99"; //$NON-NLS-1$
+    private static final String SEPARATOR = ";"; //$NON-NLS-1$
+
+    private static final String CUMULATED_METRICS = "__cumulated__"; //$NON-NLS-1$
+
+    // Tags
+    private static final String TAG_APPLICATION = "application="; //$NON-NLS-1$
+    private static final String TAG_TRANSACTION = ",transaction="; //$NON-NLS-1$
+    private static final String TAG_STATUS = ",status="; //$NON-NLS-1$
+    private static final String TRANSACTION_ALL = "all"; //$NON-NLS-1$
+    private static final String TRANSACTION_INTERNAL = "internal"; //$NON-NLS-1$
+    private static final String STATUS_OK = "ok"; //$NON-NLS-1$
+    private static final String STATUS_KO = "ko"; //$NON-NLS-1$
+    private static final String STATUS_ALL = "all"; //$NON-NLS-1$
+
+    // Fields
+    private static final String METRIC_COUNT = "count="; //$NON-NLS-1$
+    private static final String METRIC_COUNT_ERROR = ",countError="; //$NON-NLS-1$
+    private static final String METRIC_HIT = ",hit="; //$NON-NLS-1$
+    private static final String METRIC_AVG = ",avg="; //$NON-NLS-1$
+    private static final String METRIC_MIN = ",min="; //$NON-NLS-1$
+    private static final String METRIC_MAX = ",max="; //$NON-NLS-1$
+    private static final String METRIC_PERCENTILE_PREFIX = ",pct"; //$NON-NLS-1$
+
+    // User Metrics
+    private static final String METRIC_MIN_ACTIVE_THREADS = "minAT="; //$NON-NLS-1$
+    private static final String METRIC_MAX_ACTIVE_THREADS = ",maxAT="; //$NON-NLS-1$
+    private static final String METRIC_MEAN_ACTIVE_THREADS = ",meanAT="; //$NON-NLS-1$
+    private static final String METRIC_STARTED_THREADS = ",startedT="; //$NON-NLS-1$
+    private static final String METRIC_FINISHED_THREADS = ",endedT="; //$NON-NLS-1$
+
+    private static final Object LOCK = new Object();
+
+    private boolean summaryOnly;
+    private String measurement;
+    private String applicationTag;
+    private Pattern samplersToFilter;
+    // Field key prefix (",pct90") => percentile value
+    private Map<String, Float> percentiles;
+
+    private InfluxdbMetricsSender influxdbMetricsManager;
+
+    public InfluxdbBackendListenerClient() {
+        super();
+    }
+
+    /**
+     * Send metrics to InfluxDB
+     */
+    protected void sendMetrics() {
+        synchronized (LOCK) {
+            for (Map.Entry<String, SamplerMetric> entry : getMetricsPerSampler().entrySet()) {
+                final String key = entry.getKey();
+                final SamplerMetric metric = entry.getValue();
+                if (key.equals(CUMULATED_METRICS)) {
+                    addMetrics(TRANSACTION_ALL, metric);
+                } else {
+                    addMetrics(AbstractInfluxdbMetricsSender.tagToStringValue(key), metric);
+                }
+                // We are computing on interval basis so cleanup
+                metric.resetForTimeInterval();
+            }
+            UserMetric userMetrics = getUserMetrics();
+            StringBuilder field = new StringBuilder(80);
+            field.append(METRIC_MIN_ACTIVE_THREADS).append(userMetrics.getMinActiveThreads()).append('i')
+                .append(METRIC_MAX_ACTIVE_THREADS).append(userMetrics.getMaxActiveThreads()).append('i')
+                .append(METRIC_MEAN_ACTIVE_THREADS).append(userMetrics.getMeanActiveThreads()).append('i')
+                .append(METRIC_STARTED_THREADS).append(userMetrics.getStartedThreads()).append('i')
+                .append(METRIC_FINISHED_THREADS).append(userMetrics.getFinishedThreads()).append('i');
+            influxdbMetricsManager.addMetric(measurement,
+                    applicationTag + TAG_TRANSACTION + TRANSACTION_INTERNAL, field.toString());
+        }
+        influxdbMetricsManager.writeAndSendMetrics();
+    }
+
+    /**
+     * Add request metrics to metrics manager.
+     * Note if total number of requests is 0, no response time metrics are sent.
+     * @param transaction escaped name of the transaction
+     * @param metric {@link SamplerMetric}
+     */
+    private void addMetrics(String transaction, SamplerMetric metric) {
+        if (metric.getTotal() <= 0) {
+            return;
+        }
+        String tags = applicationTag + TAG_TRANSACTION + transaction + TAG_STATUS;
+        StringBuilder field = new StringBuilder(120);
+        field.append(METRIC_COUNT).append(metric.getTotal()).append('i')
+            .append(METRIC_COUNT_ERROR).append(metric.getFailures()).append('i')
+            .append(METRIC_HIT).append(metric.getHits()).append('i');
+        appendTimes(field, metric.getAllMean(), metric.getAllMinTime(), metric.getAllMaxTime());
+        for (Map.Entry<String, Float> entry : percentiles.entrySet()) {
+            appendDouble(field, entry.getKey(), metric.getAllPercentile(entry.getValue().floatValue()));
+        }
+        influxdbMetricsManager.addMetric(measurement, tags + STATUS_ALL, field.toString());
+        if (metric.getSuccesses() > 0) {
+            field.setLength(0);
+            field.append(METRIC_COUNT).append(metric.getSuccesses()).append('i');
+            appendTimes(field, metric.getOkMean(), metric.getOkMinTime(), metric.getOkMaxTime());
+            for (Map.Entry<String, Float> entry : percentiles.entrySet()) {
+                appendDouble(field, entry.getKey(), metric.getOkPercentile(entry.getValue().floatValue()));
+            }
+            influxdbMetricsManager.addMetric(measurement, tags + STATUS_OK, field.toString());
+        }
+        if (metric.getFailures() > 0) {
+            field.setLength(0);
+            field.append(METRIC_COUNT).append(metric.getFailures()).append('i');
+            appendTimes(field, metric.getKoMean(), metric.getKoMinTime(), metric.getKoMaxTime());
+            for (Map.Entry<String, Float> entry : percentiles.entrySet()) {
+                appendDouble(field, entry.getKey(), metric.getKoPercentile(entry.getValue().floatValue()));
+            }
+            influxdbMetricsManager.addMetric(measurement, tags + STATUS_KO, field.toString());
+        }
+    }
+
+    private static void appendTimes(StringBuilder field, double avg, double min, double max) {
+        appendDouble(field, METRIC_AVG, avg);
+        appendDouble(field, METRIC_MIN, min);
+        appendDouble(field, METRIC_MAX, max);
+    }
+
+    // InfluxDB does not accept NaN nor infinite values
+    private static void appendDouble(StringBuilder field, String key, double value) {
+        if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+            field.append(key).append(value);
+        }
+    }
+
+    /**
+     * Not called by the BackendListener, which hands aggregates to this client.
+     * The metrics of the samples are sent with the next aggregates.
+     */
+    @Override
+    public void handleSampleResults(List<SampleResult> sampleResults,
+            BackendListenerContext context) {
+        synchronized (LOCK) {
+            SamplerMetric cumulatedMetrics = getSamplerMetric(CUMULATED_METRICS);
+            for (SampleResult sampleResult : sampleResults) {
+                getUserMetrics().add(sampleResult);
+                if (!summaryOnly && samplersToFilter.matcher(sampleResult.getSampleLabel()).matches()) {
+                    getSamplerMetric(sampleResult.getSampleLabel()).add(sampleResult);
+                }
+                cumulatedMetrics.add(sampleResult);
+            }
+        }
+    }
+
+    @Override
+    public long getAggregationInterval() {
+        return SEND_INTERVAL;
+    }
+
+    /**
+     * Add the aggregates of the last interval to the metrics and send them
+     */
+    @Override
+    public void handleAggregates(List<SampleAggregate> aggregates, BackendListenerContext context) {
+        synchronized (LOCK) {
+            getUserMetrics().addActiveThreads();
+            SamplerMetric cumulatedMetrics = getSamplerMetric(CUMULATED_METRICS);
+            for (SampleAggregate aggregate : aggregates) {
+                if (!summaryOnly && samplersToFilter.matcher(aggregate.getLabel()).matches()) {
+                    getSamplerMetric(aggregate.getLabel()).add(aggregate);
+                }
+                cumulatedMetrics.add(aggregate);
+            }
+        }
+        sendMetrics();
+    }
+
+    @Override
+    public void setupTest(BackendListenerContext context) throws Exception {
+        String influxdbMetricsSenderClass = context.getParameter(INFLUXDB_METRICS_SENDER);
+        String influxdbUrl = context.getParameter(INFLUXDB_URL);
+        summaryOnly = context.getBooleanParameter(SUMMARY_ONLY, false);
+        samplersToFilter = Pattern.compile(context.getParameter(SAMPLERS_REGEX, DEFAULT_SAMPLERS_REGEX));
+        measurement = AbstractInfluxdbMetricsSender.measurementToStringValue(
+                context.getParameter(MEASUREMENT, DEFAULT_MEASUREMENT));
+        applicationTag = TAG_APPLICATION + AbstractInfluxdbMetricsSender.tagToStringValue(
+                context.getParameter(APPLICATION, DEFAULT_APPLICATION));
+        String[] percentilesStringArray = context.getParameter(PERCENTILES, DEFAULT_PERCENTILES).split(SEPARATOR);
+        percentiles = new LinkedHashMap<>(percentilesStringArray.length);
+        DecimalFormat decimalFormat = new DecimalFormat("0.##", new DecimalFormatSymbols(Locale.ROOT)); //$NON-NLS-1$
+        for (String percentilesString : percentilesStringArray) {
+            if (!StringUtils.isEmpty(percentilesString.trim())) {
+                try {
+                    Float percentileValue = Float.valueOf(percentilesString.trim());
+                    percentiles.put(METRIC_PERCENTILE_PREFIX + decimalFormat.format(percentileValue),
+                            percentileValue);
+                } catch (Exception e) {
+                    LOGGER.error("Error parsing percentile:'" + percentilesString + "'", e);
+                }
+            }
+        }
+        Class<?> clazz = Class.forName(influxdbMetricsSenderClass);
+        this.influxdbMetricsManager = (InfluxdbMetricsSender) clazz.newInstance();
+        influxdbMetricsManager.setup(influxdbUrl);
+    }
+
+    @Override
+    public void teardownTest(BackendListenerContext context) throws Exception {
+        // The last set of data has been handed over by the final handleAggregates call
+        influxdbMetricsManager.destroy();
+        super.teardownTest(context);
+    }
+
+    @Override
+    public Arguments getDefaultParameters() {
+        Arguments arguments = new Arguments();
+        arguments.addArgument(INFLUXDB_METRICS_SENDER, HttpMetricsSender.class.getName());
+        arguments.addArgument(INFLUXDB_URL, DEFAULT_INFLUXDB_URL);
+        arguments.addArgument(APPLICATION, DEFAULT_APPLICATION);
+        arguments.addArgument(MEASUREMENT, DEFAULT_MEASUREMENT);
+        arguments.addArgument(SUMMARY_ONLY, "false"); //$NON-NLS-1$
+        arguments.addArgument(SAMPLERS_REGEX, DEFAULT_SAMPLERS_REGEX);
+        arguments.addArgument(PERCENTILES, DEFAULT_PERCENTILES);
+        return arguments;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.visualizers.backend.influxdb;
+
+/**
+ * Sends metrics to InfluxDB using the line protocol
+ * @see <a href="https://docs.influxdata.com/influxdb/v1.0/write_protocols/line_protocol_reference/">Line Protocol</a>
+ * @since 3.1
+ */
+interface InfluxdbMetricsSender {
+
+    String CHARSET_NAME = "UTF-8"; //$NON-NLS-1$
+
+    /**
+     * Add a point to the current batch, timestamped with the current time.
+     * Must not block the caller.
+     * @param measurement name of the measurement, escaped
+     * @param tags comma separated key=value tags, escaped, may be empty
+     * @param fields comma separated key=value fields
+     */
+    void addMetric(String measurement, String tags, String fields);
+
+    /**
+     * @param influxdbUrl URL of the InfluxDB write endpoint, including the database parameter
+     * @throws Exception if the URL is not valid
+     */
+    void setup(String influxdbUrl) throws Exception;
+
+    /**
+     * Hand over the current batch to the sender if its batch delay has elapsed
+     */
+    void writeAndSendMetrics();
+
+    /**
+     * Send the pending points and destroy sender
+     */
+    void destroy();
+
+}
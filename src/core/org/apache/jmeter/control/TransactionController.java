@@ -306,6 +306,10 @@ public class TransactionController extends GenericController implements SampleLi
             // TODO Should this be at warn level ?
             log.warn("Could not fetch SamplePackage");
         } else {
+            long startDelay = threadContext.getStartDelay();
+            if (startDelay > 0) {
+                res.setIntendedStartTime(res.getStartTime() - startDelay);
+            }
             SampleEvent event = new SampleEvent(res, threadContext.getThreadGroup().getName(),threadVars, true);
             // We must set res to null now, before sending the event for the transaction,
             // so that we can ignore that event in our sampleOccured method
@@ -48,6 +48,12 @@ public class ClientJMeterEngine implements JMeterEngine {
 
     private final String host;
 
+    private static final int CLOCK_SAMPLES = 5;
+
+    private boolean prepared;
+
+    private long clockOffset;
+
     private static RemoteJMeterEngine getEngine(String h) throws MalformedURLException, RemoteException,
             NotBoundException {
        final String name = "//" + h + "/" + RemoteJMeterEngineImpl.JMETER_ENGINE_RMI_NAME; // $NON-NLS-1$ $NON-NLS-2$
@@ -105,6 +111,17 @@ public class ClientJMeterEngine implements JMeterEngine {
 
     @Override
     public void runTest() throws JMeterEngineException {
+        startTest(0, null);
+    }
+
+    /**
+     * Send the test and the properties to the server, without starting it.
+     * Also measures the offset of the clock of the server.
+     *
+     * @throws JMeterEngineException if the test could not be sent
+     * @since 3.1
+     */
+    public void prepareTest() throws JMeterEngineException {
         log.info("running clientengine run method");
         
         // See https://bz.apache.org/bugzilla/show_bug.cgi?id=55510
@@ -143,9 +160,9 @@ public class ClientJMeterEngine implements JMeterEngine {
             } catch (RemoteException e) {
                 log.warn("Could not set properties: " + e.toString());
             }
-            methodName="rrunTest()";
-            remote.rrunTest();
-            log.info("sent run command to "+ host);
+            methodName="rgetCurrentTime()";
+            clockOffset = measureClockOffset();
+            prepared = true;
         } catch (IllegalStateException ex) {
             log.error("Error in "+methodName+" method "+ex); // $NON-NLS-1$ $NON-NLS-2$
             tidyRMI(log);
@@ -157,6 +174,67 @@ public class ClientJMeterEngine implements JMeterEngine {
         }
     }
 
+    /**
+     * Start the test, preparing it first if needed
+     *
+     * @param startTime time of the client clock in milliseconds at which the thread groups
+     *  of the server start, 0 to start them immediately
+     * @param coordinator coordinator of the client, may be null
+     * @throws JMeterEngineException if the test could not be started
+     * @since 3.1
+     */
+    public void startTest(long startTime, RemoteCoordinator coordinator) throws JMeterEngineException {
+        if (!prepared) {
+            prepareTest();
+        }
+        prepared = false;
+        try {
+            remote.rrunTest(startTime > 0 ? startTime + clockOffset : 0, coordinator);
+            log.info("sent run command to "+ host);
+        } catch (IllegalStateException ex) {
+            log.error("Error in rrunTest() method "+ex); // $NON-NLS-1$
+            tidyRMI(log);
+            throw ex; // Don't wrap this error - display it as is
+        } catch (Exception ex) {
+            log.error("Error in rrunTest() method "+ex); // $NON-NLS-1$
+            tidyRMI(log);
+            throw new JMeterEngineException("Error in rrunTest() method "+ex, ex); // $NON-NLS-1$
+        }
+    }
+
+    /**
+     * Estimate the offset of the clock of the server from the round trips with the
+     * shortest delay, assuming the server reads its clock half way through.
+     *
+     * @return server time minus client time, in milliseconds
+     * @throws RemoteException if the server could not be reached
+     */
+    private long measureClockOffset() throws RemoteException {
+        long bestRoundTrip = Long.MAX_VALUE;
+        long offset = 0;
+        for (int i = 0; i < CLOCK_SAMPLES; i++) {
+            long before = System.currentTimeMillis();
+            long beforeNs = System.nanoTime();
+            long serverTime = remote.rgetCurrentTime();
+            long roundTrip = System.nanoTime() - beforeNs;
+            if (roundTrip < bestRoundTrip) {
+                bestRoundTrip = roundTrip;
+                offset = serverTime - (before + roundTrip / 2000000L);
+            }
+        }
+        log.info("Clock offset of " + host + ": " + offset + " ms, round trip: "
+                + bestRoundTrip / 1000 + " us");
+        return offset;
+    }
+
+    /**
+     * @return offset of the clock of the server measured by {@link #prepareTest()}, in milliseconds
+     * @since 3.1
+     */
+    public long getClockOffset() {
+        return clockOffset;
+    }
+
     /**
      * Tidy up RMI access to allow JMeter client to exit.
      * Currently just interrups the "RMI Reaper" thread.
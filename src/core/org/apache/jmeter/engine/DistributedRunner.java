@@ -50,11 +50,13 @@ public class DistributedRunner {
     public static final String RETRIES_NUMBER = "client.tries"; // $NON-NLS-1$
     public static final String RETRIES_DELAY = "client.retries_delay"; // $NON-NLS-1$
     public static final String CONTINUE_ON_FAIL = "client.continue_on_fail"; // $NON-NLS-1$
+    public static final String START_DELAY = "client.start_delay"; // $NON-NLS-1$
 
     private final Properties remoteProps;
     private final boolean continueOnFail;
     private final int retriesDelay;
     private final int retriesNumber;
+    private final int startDelay;
     private PrintStream stdout = new PrintStream(new SilentOutputStream());
     private PrintStream stderr = new PrintStream(new SilentOutputStream());
     private final Map<String, JMeterEngine> engines = new HashMap<>();
@@ -69,6 +71,7 @@ public class DistributedRunner {
         retriesNumber = JMeterUtils.getPropDefault(RETRIES_NUMBER, 1);
         continueOnFail = JMeterUtils.getPropDefault(CONTINUE_ON_FAIL, false);
         retriesDelay = JMeterUtils.getPropDefault(RETRIES_DELAY, 5000);
+        startDelay = JMeterUtils.getPropDefault(START_DELAY, 0);
     }
 
     public void init(List<String> addresses, HashTree tree) {
@@ -124,14 +127,42 @@ public class DistributedRunner {
      */
     public void start(List<String> addresses) {
         println("Starting remote engines");
-        long now = System.currentTimeMillis();
-        println("Starting the test @ " + new Date(now) + " (" + now + ")");
+        List<String> active = new LinkedList<>();
         for (String address : addresses) {
+            if (engines.containsKey(address)) {
+                active.add(address);
+            } else {
+                log.warn("Host not found in list of active engines: " + address);
+            }
+        }
+        RemoteCoordinator coordinator = getCoordinator(active.size());
+        long startTime = 0;
+        if (startDelay > 0) {
+            // Send the test to all the engines first so they can start together
+            List<String> prepared = new LinkedList<>();
+            for (String address : active) {
+                JMeterEngine engine = engines.get(address);
+                try {
+                    if (engine instanceof ClientJMeterEngine) {
+                        ((ClientJMeterEngine) engine).prepareTest();
+                    }
+                    prepared.add(address);
+                } catch (IllegalStateException | JMeterEngineException e) {
+                    JMeterUtils.reportErrorToUser(e.getMessage(), JMeterUtils.getResString("remote_error_starting")); // $NON-NLS-1$
+                }
+            }
+            active = prepared;
+            startTime = System.currentTimeMillis() + startDelay;
+        }
+        long now = startTime > 0 ? startTime : System.currentTimeMillis();
+        println("Starting the test @ " + new Date(now) + " (" + now + ")");
+        for (String address : active) {
+            JMeterEngine engine = engines.get(address);
             try {
-                if (engines.containsKey(address)) {
-                    engines.get(address).runTest();
+                if (engine instanceof ClientJMeterEngine) {
+                    ((ClientJMeterEngine) engine).startTest(startTime, coordinator);
                 } else {
-                    log.warn("Host not found in list of active engines: " + address);
+                    engine.runTest();
                 }
             } catch (IllegalStateException | JMeterEngineException e) {
                 JMeterUtils.reportErrorToUser(e.getMessage(), JMeterUtils.getResString("remote_error_starting")); // $NON-NLS-1$
@@ -140,6 +171,27 @@ public class DistributedRunner {
         println("Remote engines have been started");
     }
 
+    /**
+     * @param servers number of servers about to run the test
+     * @return the coordinator shared by the servers, null if none of the engines is remote
+     *  or if it could not be exported
+     */
+    private RemoteCoordinator getCoordinator(int servers) {
+        for (JMeterEngine engine : engines.values()) {
+            if (engine instanceof ClientJMeterEngine) {
+                try {
+                    RemoteCoordinatorImpl coordinator = RemoteCoordinatorImpl.getInstance();
+                    coordinator.testStarted(servers);
+                    return coordinator;
+                } catch (RemoteException e) {
+                    log.warn("Could not export coordinator, throughput budgets won't be shared: " + e.toString());
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Start all engines that were previously initiated
      */
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.engine;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Services of the client coordinating the servers of a distributed test,
+ * see {@link RemoteCoordinatorImpl}
+ * @since 3.1
+ */
+public interface RemoteCoordinator extends Remote {
+
+    /**
+     * Report the throughput achieved by a server for a budget shared by all
+     * the servers, and get the throughput the server should now achieve.
+     *
+     * @param budget name of the budget
+     * @param server identifier of the server
+     * @param totalRate throughput to achieve by all the servers together, in samples per minute
+     * @param achievedRate throughput achieved by the server since its previous report,
+     *  in samples per minute, negative for its first report
+     * @return the throughput the server should achieve, in samples per minute
+     * @throws RemoteException if the report could not be sent
+     */
+    double rreportThroughput(String budget, String server, double totalRate, double achievedRate)
+            throws RemoteException;
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.engine;
+
+import java.rmi.RemoteException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Coordination service hosted by the client of a distributed test.
+ * <p>
+ * It shares throughput budgets between the servers: each server reports the
+ * throughput it achieved for a budget every few seconds (see {@link ThroughputBudget})
+ * and gets its new target. Servers which fall behind their target keep the throughput
+ * they achieved, plus some headroom to catch up, and the other servers share the rest,
+ * so the servers together achieve the total throughput as long as some of them can.
+ * @since 3.1
+ */
+public final class RemoteCoordinatorImpl extends java.rmi.server.UnicastRemoteObject implements RemoteCoordinator {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final int DEFAULT_LOCAL_PORT =
+        JMeterUtils.getPropDefault("client.rmi.localport", 0); // $NON-NLS-1$
+
+    private static RemoteCoordinatorImpl instance;
+
+    //@GuardedBy("this")
+    private final Map<String, Budget> budgets = new HashMap<>();
+
+    //@GuardedBy("this")
+    private int serverCount = 1;
+
+    private RemoteCoordinatorImpl() throws RemoteException {
+        super(DEFAULT_LOCAL_PORT);
+    }
+
+    /**
+     * @return the coordinator of the client, exported on the first call
+     * @throws RemoteException if the coordinator could not be exported
+     */
+    public static synchronized RemoteCoordinatorImpl getInstance() throws RemoteException {
+        if (instance == null) {
+            instance = new RemoteCoordinatorImpl();
+        }
+        return instance;
+    }
+
+    /**
+     * Forget the budgets of the previous test
+     * @param servers number of servers running the test
+     */
+    public synchronized void testStarted(int servers) {
+        budgets.clear();
+        serverCount = Math.max(1, servers);
+    }
+
+    @Override
+    public synchronized double rreportThroughput(String budgetName, String server, double totalRate,
+            double achievedRate) {
+        Budget budget = budgets.get(budgetName);
+        if (budget == null) {
+            budget = new Budget(serverCount);
+            budgets.put(budgetName, budget);
+        }
+        double target = budget.report(server, totalRate, achievedRate);
+        if (log.isDebugEnabled()) {
+            log.debug("Throughput of " + budgetName + " on " + server + ": " + achievedRate
+                    + "/min, new target: " + target + "/min");
+        }
+        return target;
+    }
+
+    /**
+     * Targets of the servers sharing a budget
+     */
+    static final class Budget {
+        /** A server achieving less than this ratio of its target is behind */
+        static final double BEHIND_RATIO = 0.95;
+
+        /** Headroom given to servers which are behind, must be above 1 / BEHIND_RATIO - 1 */
+        static final double HEADROOM = 0.1;
+
+        /** Smallest target, relative to an even share */
+        private static final double MIN_SHARE = 0.01;
+
+        private final int expectedServers;
+
+        private final Map<String, Share> shares = new HashMap<>();
+
+        Budget(int expectedServers) {
+            this.expectedServers = expectedServers;
+        }
+
+        /**
+         * @param server identifier of the server
+         * @param totalRate throughput to achieve by all the servers
+         * @param achievedRate throughput achieved by the server, negative if unknown
+         * @return the new target of the server
+         */
+        double report(String server, double totalRate, double achievedRate) {
+            Share share = shares.get(server);
+            if (share == null) {
+                share = new Share();
+                shares.put(server, share);
+            }
+            int servers = Math.max(expectedServers, shares.size());
+            double evenShare = totalRate / servers;
+            if (achievedRate < 0 || share.target <= 0) {
+                share.target = evenShare;
+                return share.target;
+            }
+            share.achieved = achievedRate;
+            share.behind = achievedRate < share.target * BEHIND_RATIO;
+            if (share.behind) {
+                share.target = Math.min(evenShare, achievedRate * (1 + HEADROOM));
+            } else {
+                // Servers behind only provide what they achieved, the others share the rest
+                double rest = totalRate;
+                int others = servers;
+                for (Share s : shares.values()) {
+                    if (s.behind) {
+                        rest -= s.achieved;
+                        others--;
+                    }
+                }
+                share.target = rest / others;
+            }
+            share.target = Math.max(share.target, evenShare * MIN_SHARE);
+            return share.target;
+        }
+    }
+
+    private static final class Share {
+        private double target;
+        private double achieved;
+        private boolean behind;
+    }
+}
@@ -33,6 +33,25 @@ public interface RemoteJMeterEngine extends Remote {
 
     void rrunTest() throws RemoteException, JMeterEngineException;
 
+    /**
+     * Run the test, coordinated by the client
+     *
+     * @param startTime time of the server clock in milliseconds at which the thread groups start,
+     *  0 to start them immediately
+     * @param coordinator coordinator of the client, may be null
+     * @throws RemoteException if the call failed
+     * @throws JMeterEngineException if the test could not be started
+     * @since 3.1
+     */
+    void rrunTest(long startTime, RemoteCoordinator coordinator) throws RemoteException, JMeterEngineException;
+
+    /**
+     * @return current time of the server clock in milliseconds, used to measure its offset
+     * @throws RemoteException if the call failed
+     * @since 3.1
+     */
+    long rgetCurrentTime() throws RemoteException;
+
     void rstopTest(boolean now) throws RemoteException;
 
     void rreset() throws RemoteException;
@@ -26,6 +26,7 @@ import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.ServerNotActiveException;
+import java.util.Date;
 import java.util.Properties;
 
 import org.apache.jmeter.services.FileServer;
@@ -44,7 +45,7 @@ public final class RemoteJMeterEngineImpl extends java.rmi.server.UnicastRemoteO
 
     static final String JMETER_ENGINE_RMI_NAME = "JMeterEngine"; // $NON-NLS-1$
 
-    private transient JMeterEngine backingEngine;
+    private transient StandardJMeterEngine backingEngine;
     
     private transient Thread ownerThread;
 
@@ -166,6 +167,26 @@ public final class RemoteJMeterEngineImpl extends java.rmi.server.UnicastRemoteO
         backingEngine.runTest();
     }
 
+    @Override
+    public void rrunTest(long startTime, RemoteCoordinator coordinator)
+            throws RemoteException, JMeterEngineException, IllegalStateException {
+        if (startTime > 0) {
+            log.info("Running test, thread groups start at " + new Date(startTime)
+                    + " (in " + (startTime - System.currentTimeMillis()) + " ms)");
+        } else {
+            log.info("Running test");
+        }
+        checkOwner("runTest");
+        ThroughputBudget.setCoordinator(coordinator);
+        backingEngine.setStartTime(startTime);
+        backingEngine.runTest();
+    }
+
+    @Override
+    public long rgetCurrentTime() {
+        return System.currentTimeMillis();
+    }
+
     @Override
     public void rreset() throws RemoteException, IllegalStateException {
         // Mail on userlist reported NPE here - looks like only happens if there are network errors, but check anyway
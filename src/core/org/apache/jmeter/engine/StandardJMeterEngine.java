@@ -96,6 +96,9 @@ public class StandardJMeterEngine implements JMeterEngine, Runnable {
     /** tearDown Thread Groups run after shutdown of main threads */
     private volatile boolean tearDownOnShutdown = false;
 
+    /** Time in ms at which the main thread groups start, 0 to start them immediately */
+    private volatile long startTime = 0;
+
     private HashTree test;
 
     private final String host;
@@ -376,7 +379,9 @@ public class StandardJMeterEngine implements JMeterEngine, Runnable {
          * early in the test can impair results for short tests.
          */
         JMeterUtils.helpGC();
-        
+
+        waitForStartTime();
+
         JMeterContextService.getContext().setSamplingStarted(true);
         boolean mainGroups = running; // still running at this point, i.e. setUp was not cancelled
         while (running && iter.hasNext()) {// for each thread group
@@ -556,6 +561,27 @@ public class StandardJMeterEngine implements JMeterEngine, Runnable {
         }
     }
 
+    /**
+     * Set the time at which the main thread groups start, used to start
+     * the servers of a distributed test together.
+     * @param startTime time in milliseconds, 0 to start them immediately
+     * @since 3.1
+     */
+    public void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    private void waitForStartTime() {
+        long delay = startTime - System.currentTimeMillis();
+        if (startTime > 0 && delay < 0) {
+            log.warn("Starting thread groups " + (-delay) + " ms after the scheduled start time");
+        }
+        while (running && delay > 0) {
+            pause(Math.min(delay, 1000L)); // check regularly whether the test was stopped
+            delay = startTime - System.currentTimeMillis();
+        }
+    }
+
     private void pause(long ms){
         try {
             TimeUnit.MILLISECONDS.sleep(ms);
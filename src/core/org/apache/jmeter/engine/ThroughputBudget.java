@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.engine;
+
+import java.lang.management.ManagementFactory;
+import java.rmi.RemoteException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Throughput shared by the threads of this JMeter instance and, in a distributed
+ * test, by all the servers.
+ * <p>
+ * Samples are paced with a sub-millisecond schedule. When the test is coordinated by
+ * a client (see {@link RemoteCoordinator}), the throughput achieved by this server is
+ * reported every <code>throughput.budget.interval</code> milliseconds and the client
+ * returns the share of the total throughput this server should achieve; otherwise
+ * this server is the only one and targets the total throughput.
+ * @since 3.1
+ */
+public final class ThroughputBudget {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final long REPORT_INTERVAL =
+            JMeterUtils.getPropDefault("throughput.budget.interval", 5000L); // $NON-NLS-1$
+
+    private static final double NANOS_PER_MIN = 60e9;
+
+    private static final String SERVER_ID = ManagementFactory.getRuntimeMXBean().getName();
+
+    private static final ConcurrentMap<String, ThroughputBudget> budgets = new ConcurrentHashMap<>();
+
+    // Set by the server when a client starts a test
+    private static volatile RemoteCoordinator coordinator;
+
+    //@GuardedBy("ThroughputBudget.class")
+    private static Reporter reporter;
+
+    private final String name;
+
+    // samples per minute
+    private volatile double totalRate;
+
+    private volatile double rate;
+
+    private final Object lock = new Object();
+
+    //@GuardedBy("lock")
+    private long nextTime = Long.MIN_VALUE; // ns
+
+    //@GuardedBy("lock")
+    private long scheduled;
+
+    //@GuardedBy("lock")
+    private long reportTime;
+
+    private ThroughputBudget(String name, double totalRate) {
+        this.name = name;
+        this.totalRate = totalRate;
+        this.rate = totalRate;
+        this.reportTime = System.nanoTime();
+    }
+
+    /**
+     * Set the coordinator of the test about to run
+     * @param remoteCoordinator coordinator of the client, null if none
+     */
+    static void setCoordinator(RemoteCoordinator remoteCoordinator) {
+        coordinator = remoteCoordinator;
+    }
+
+    /**
+     * Get the budget of a name, created on first use
+     * @param name name of the budget, shared by all the servers
+     * @param totalRate throughput to achieve by all the servers together, in samples per minute
+     * @return the budget
+     */
+    public static ThroughputBudget getBudget(String name, double totalRate) {
+        ThroughputBudget budget = budgets.get(name);
+        if (budget == null) {
+            budget = new ThroughputBudget(name, totalRate);
+            ThroughputBudget previous = budgets.putIfAbsent(name, budget);
+            if (previous != null) {
+                budget = previous;
+            } else {
+                budget.register();
+            }
+        }
+        budget.totalRate = totalRate; // may vary during a test
+        if (coordinator == null) {
+            budget.rate = totalRate; // not shared with other servers
+        }
+        return budget;
+    }
+
+    private void register() {
+        RemoteCoordinator remote = coordinator;
+        if (remote == null) {
+            return;
+        }
+        try {
+            rate = remote.rreportThroughput(name, SERVER_ID, totalRate, -1);
+            log.info("Throughput budget " + name + ": " + rate + "/min of " + totalRate + "/min");
+        } catch (RemoteException e) {
+            log.warn("Could not register throughput budget " + name + ", using the total throughput", e);
+        }
+        startReporter();
+    }
+
+    private static synchronized void startReporter() {
+        if (reporter == null) {
+            reporter = new Reporter();
+            reporter.setDaemon(true);
+            reporter.start();
+        }
+    }
+
+    /**
+     * Forget the budgets of the previous test and stop reporting
+     */
+    public static void reset() {
+        synchronized (ThroughputBudget.class) {
+            if (reporter != null) {
+                reporter.interrupt();
+                reporter = null;
+            }
+        }
+        budgets.clear();
+    }
+
+    /**
+     * Schedule a sample
+     * @return delay in milliseconds before the sample should start,
+     * negative if the sample is already late by that much
+     */
+    public long delay() {
+        long now = System.nanoTime();
+        double currentRate = rate;
+        long scheduledTime;
+        synchronized (lock) {
+            scheduled++;
+            if (currentRate <= 0) {
+                return 0; // no throughput to pace
+            }
+            long interval = (long) (NANOS_PER_MIN / currentRate);
+            if (nextTime == Long.MIN_VALUE) {
+                nextTime = now;
+            }
+            scheduledTime = nextTime;
+            if (nextTime < now) {
+                nextTime = now; // behind schedule, do not try to catch up
+            }
+            nextTime += interval;
+        }
+        return (scheduledTime - now) / 1000000L;
+    }
+
+    /**
+     * @return throughput this server should achieve, in samples per minute
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    private void report(RemoteCoordinator remote) {
+        long now = System.nanoTime();
+        long count;
+        long elapsed;
+        synchronized (lock) {
+            count = scheduled;
+            elapsed = now - reportTime;
+            scheduled = 0;
+            reportTime = now;
+        }
+        if (elapsed <= 0) {
+            return;
+        }
+        double achieved = count * NANOS_PER_MIN / elapsed;
+        try {
+            rate = remote.rreportThroughput(name, SERVER_ID, totalRate, achieved);
+            if (log.isDebugEnabled()) {
+                log.debug("Throughput budget " + name + ": achieved " + achieved + "/min, new target " + rate + "/min");
+            }
+        } catch (RemoteException e) {
+            log.warn("Could not report throughput of budget " + name + ", keeping target " + rate + "/min", e);
+        }
+    }
+
+    /**
+     * Reports the throughput of all the budgets at each interval
+     */
+    private static class Reporter extends Thread {
+        Reporter() {
+            super("ThroughputBudget-Reporter"); // $NON-NLS-1$
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                try {
+                    Thread.sleep(REPORT_INTERVAL);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                RemoteCoordinator remote = coordinator;
+                if (remote != null) {
+                    for (ThroughputBudget budget : budgets.values()) {
+                        budget.report(remote);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -21,6 +21,7 @@ package org.apache.jmeter.engine;
 import java.util.LinkedList;
 
 import org.apache.jmeter.engine.util.NoThreadClone;
+import org.apache.jmeter.testelement.AbstractTestElement;
 import org.apache.jmeter.testelement.TestElement;
 import org.apache.jorphan.collections.HashTree;
 import org.apache.jorphan.collections.HashTreeTraverser;
@@ -74,6 +75,11 @@ public class TreeCloner implements HashTreeTraverser {
           && (!honourNoThreadClone || !(node instanceof NoThreadClone))
         ) {
             node = ((TestElement) node).clone();
+            if (honourNoThreadClone && node instanceof AbstractTestElement
+                    && ((TestElement) node).isRunningVersion()) {
+                // Running clone for a single thread
+                ((AbstractTestElement) node).setThreadConfined();
+            }
             newTree.add(objects, node);
         } else {
             newTree.add(objects, node);
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.engine.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jmeter.functions.Function;
+import org.apache.jmeter.functions.InvalidVariableException;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.Sampler;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Compiled form of a string holding function and variable references,
+ * executed by {@link CompoundVariable}.
+ * <p>
+ * Adjacent constant parts, including the results of folded
+ * {@link org.apache.jmeter.functions.PureFunction PureFunction} calls, are
+ * joined when compiling, and the result of a template without any variable
+ * or function is computed once. Instances are immutable; those without
+ * function calls hold no state and can be shared by all the
+ * CompoundVariables compiled from the same string.
+ * @since 3.1
+ */
+final class CompiledTemplate {
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    // Extra capacity for the values of variables and functions
+    private static final int DYNAMIC_PART_SIZE = 16;
+
+    /** Each part is a String, a {@link SimpleVariable} or a {@link Function} */
+    private final Object[] parts;
+
+    /** Function or variable references found when parsing, before folding */
+    private final boolean hasFunction;
+
+    /** Holds at least one Function call */
+    private final boolean hasFunctionCall;
+
+    /** The value when there is no variable or function left, else null */
+    private final String constant;
+
+    private final int estimatedLength;
+
+    private CompiledTemplate(Object[] parts, boolean hasFunction, boolean hasFunctionCall, String constant,
+            int estimatedLength) {
+        this.parts = parts;
+        this.hasFunction = hasFunction;
+        this.hasFunctionCall = hasFunctionCall;
+        this.constant = constant;
+        this.estimatedLength = estimatedLength;
+    }
+
+    /**
+     * @param components as returned by {@link FunctionParser#compileString(String)}
+     * @return the compiled template
+     */
+    static CompiledTemplate compile(List<Object> components) {
+        boolean hasFunction = components.size() > 1 || !(components.get(0) instanceof String);
+        List<Object> parts = new ArrayList<>(components.size());
+        StringBuilder text = new StringBuilder();
+        boolean hasFunctionCall = false;
+        int estimatedLength = 0;
+        for (Object item : components) {
+            if (item instanceof Function || item instanceof SimpleVariable) {
+                if (text.length() > 0) {
+                    parts.add(text.toString());
+                    text.setLength(0);
+                }
+                parts.add(item);
+                hasFunctionCall |= item instanceof Function;
+                estimatedLength += DYNAMIC_PART_SIZE;
+            } else {
+                // Plain text or folded function
+                String value = String.valueOf(item);
+                text.append(value);
+                estimatedLength += value.length();
+            }
+        }
+        if (parts.isEmpty()) {
+            return new CompiledTemplate(new Object[0], hasFunction, false, text.toString(), text.length());
+        }
+        if (text.length() > 0) {
+            parts.add(text.toString());
+        }
+        return new CompiledTemplate(parts.toArray(), hasFunction, hasFunctionCall, null, estimatedLength);
+    }
+
+    /**
+     * @return true if the parsed string held function or variable references
+     */
+    boolean hasFunction() {
+        return hasFunction;
+    }
+
+    /**
+     * @return true if the template holds stateful Function instances, so it
+     *  must not be shared by other CompoundVariables
+     */
+    boolean hasFunctionCall() {
+        return hasFunctionCall;
+    }
+
+    /**
+     * @return true if the result depends on variables or functions
+     */
+    boolean isDynamic() {
+        return constant == null;
+    }
+
+    /**
+     * @return the value of a template which is not dynamic, null otherwise
+     */
+    String getConstant() {
+        return constant;
+    }
+
+    /**
+     * @param previousResult the previous {@link SampleResult}
+     * @param currentSampler the current {@link Sampler}
+     * @return the value of the template
+     */
+    String execute(SampleResult previousResult, Sampler currentSampler) {
+        if (constant != null) {
+            return constant;
+        }
+        StringBuilder results = new StringBuilder(estimatedLength);
+        JMeterVariables vars = null;
+        boolean varsResolved = false;
+        for (Object item : parts) {
+            if (item instanceof String) {
+                results.append(item);
+            } else if (item instanceof SimpleVariable) {
+                if (!varsResolved) {
+                    // Functions don't replace the variables of the thread, so look them up once
+                    vars = JMeterContextService.getContext().getVariables();
+                    varsResolved = true;
+                }
+                results.append(((SimpleVariable) item).toString(vars));
+            } else {
+                try {
+                    results.append(((Function) item).execute(previousResult, currentSampler));
+                } catch (InvalidVariableException e) {
+                    // TODO should level be more than debug ?
+                    if(log.isDebugEnabled()) {
+                        log.debug("Invalid variable:"+item, e);
+                    }
+                }
+            }
+        }
+        return results.toString();
+    }
+}
@@ -23,6 +23,8 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.jmeter.functions.Function;
 import org.apache.jmeter.functions.InvalidVariableException;
@@ -49,11 +51,17 @@ public class CompoundVariable implements Function {
     // Created during class init; not modified thereafter 
     private static final Map<String, Class<? extends Function>> functions = new HashMap<>();
 
-    private boolean hasFunction, isDynamic;
+    /*
+     * Templates without function calls hold no state, so they are shared
+     * by all the instances compiled from the same string.
+     * The cache is bounded as strings may also be compiled while running.
+     */
+    private static final int TEMPLATE_CACHE_SIZE =
+        JMeterUtils.getPropDefault("function.template_cache_size", 5000); // $NON-NLS-1$
 
-    private String permanentResults;
+    private static final ConcurrentMap<String, CompiledTemplate> templateCache = new ConcurrentHashMap<>();
 
-    private LinkedList<Object> compiledComponents = new LinkedList<>();
+    private CompiledTemplate template;
 
     static {
         try {
@@ -94,7 +102,7 @@ public class CompoundVariable implements Function {
     }
 
     public CompoundVariable() {
-        hasFunction = false;
+        super();
     }
 
     public CompoundVariable(String parameters) {
@@ -110,13 +118,16 @@ public class CompoundVariable implements Function {
     }
 
     public String execute() {
-        if (isDynamic || permanentResults == null) {
+        if (template == null) {
+            return ""; // $NON-NLS-1$
+        }
+        if (template.isDynamic()) {
             JMeterContext context = JMeterContextService.getContext();
             SampleResult previousResult = context.getPreviousResult();
             Sampler currentSampler = context.getCurrentSampler();
-            return execute(previousResult, currentSampler);
+            return template.execute(previousResult, currentSampler);
         }
-        return permanentResults; // $NON-NLS-1$
+        return template.getConstant();
     }
 
     /**
@@ -131,40 +142,16 @@ public class CompoundVariable implements Function {
     /** {@inheritDoc} */
     @Override
     public String execute(SampleResult previousResult, Sampler currentSampler) {
-        if (compiledComponents == null || compiledComponents.size() == 0) {
+        if (template == null) {
             return ""; // $NON-NLS-1$
         }
-        
-        StringBuilder results = new StringBuilder();
-        for (Object item : compiledComponents) {
-            if (item instanceof Function) {
-                try {
-                    results.append(((Function) item).execute(previousResult, currentSampler));
-                } catch (InvalidVariableException e) {
-                    // TODO should level be more than debug ?
-                    if(log.isDebugEnabled()) {
-                        log.debug("Invalid variable:"+item, e);
-                    }
-                }
-            } else if (item instanceof SimpleVariable) {
-                results.append(((SimpleVariable) item).toString());
-            } else {
-                results.append(item);
-            }
-        }
-        if (!isDynamic) {
-            permanentResults = results.toString();
-        }
-        return results.toString();
+        return template.execute(previousResult, currentSampler);
     }
 
-    @SuppressWarnings("unchecked") // clone will produce correct type
     public CompoundVariable getFunction() {
         CompoundVariable func = new CompoundVariable();
-        func.compiledComponents = (LinkedList<Object>) compiledComponents.clone();
+        func.template = template;
         func.rawParameters = rawParameters;
-        func.hasFunction = hasFunction;
-        func.isDynamic = isDynamic;
         return func;
     }
 
@@ -175,31 +162,32 @@ public class CompoundVariable implements Function {
     }
 
     public void clear() {
-        // TODO should this also clear isDynamic, rawParameters, permanentResults?
-        hasFunction = false;
-        compiledComponents.clear();
+        // TODO should this also clear rawParameters?
+        template = null;
     }
 
     public void setParameters(String parameters) throws InvalidVariableException {
         this.rawParameters = parameters;
+        template = null;
         if (parameters == null || parameters.length() == 0) {
             return;
         }
-
-        compiledComponents = functionParser.compileString(parameters);
-        if (compiledComponents.size() > 1 || !(compiledComponents.get(0) instanceof String)) {
-            hasFunction = true;
-        }
-        permanentResults = null; // To be calculated and cached on first execution
-        isDynamic = false;
-        for (Object item : compiledComponents) {
-            if (item instanceof Function || item instanceof SimpleVariable) {
-                isDynamic = true;
-                break;
+        template = templateCache.get(parameters);
+        if (template == null) {
+            template = CompiledTemplate.compile(functionParser.compileString(parameters));
+            if (!template.hasFunctionCall() && templateCache.size() < TEMPLATE_CACHE_SIZE) {
+                templateCache.putIfAbsent(parameters, template);
             }
         }
     }
 
+    /**
+     * @return true if the value depends on variables or functions
+     */
+    boolean isDynamic() {
+        return template != null && template.isDynamic();
+    }
+
     static Object getNamedFunction(String functionName) throws InvalidVariableException {
         if (functions.containsKey(functionName)) {
             try {
@@ -223,7 +211,7 @@ public class CompoundVariable implements Function {
     }
 
     public boolean hasFunction() {
-        return hasFunction;
+        return template != null && template.hasFunction();
     }
 
     // Dummy methods needed by Function interface
@@ -23,13 +23,14 @@ import org.apache.jmeter.threads.TestCompiler;
 
 /**
  * Interface that gives a hint about the merge policy to apply between Samplers and Config elements
- * @see TestCompiler#configureWithConfigElements
+ * @see TestCompiler#configureSampler(org.apache.jmeter.samplers.Sampler)
  * @since 2.7 
  */
 public interface ConfigMergabilityIndicator {
 
     /**
-     * Does configElement apply to Sampler 
+     * Does configElement apply to Sampler.
+     * Called once per thread when its test tree is compiled, so the answer must not change while running.
      * @param configElement {@link ConfigTestElement}
      * @return boolean
      */
@@ -24,10 +24,12 @@ package org.apache.jmeter.engine.util;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.LinkedList;
+import java.util.List;
 
 import org.apache.jmeter.engine.StandardJMeterEngine;
 import org.apache.jmeter.functions.Function;
 import org.apache.jmeter.functions.InvalidVariableException;
+import org.apache.jmeter.functions.PureFunction;
 import org.apache.jmeter.testelement.TestStateListener;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
@@ -111,7 +113,8 @@ class FunctionParser {
      * '}' - end of function call
      *
      * @param reader points to input after the "${"
-     * @return the function or variable object (or a String)
+     * @return the function or variable object (or a String), or a {@link FoldedFunction}
+     * if the function is a {@link PureFunction} with constant parameters
      * @throws InvalidVariableException when evaluation of variables fail
      */
     Object makeFunction(StringReader reader) throws InvalidVariableException {
@@ -131,7 +134,8 @@ class FunctionParser {
                     String funcName = buffer.toString();
                     function = CompoundVariable.getNamedFunction(funcName);
                     if (function instanceof Function) {
-                        ((Function) function).setParameters(parseParams(reader));
+                        LinkedList<CompoundVariable> parameters = parseParams(reader);
+                        ((Function) function).setParameters(parameters);
                         if (reader.read(current) == 0 || current[0] != '}') {
                             reader.reset();// set to start of string
                             char []cb = new char[100];
@@ -142,14 +146,16 @@ class FunctionParser {
                         if (function instanceof TestStateListener) {
                             StandardJMeterEngine.register((TestStateListener) function);
                         }
-                        return function;
+                        return fold((Function) function, parameters);
                     } else { // Function does not exist, so treat as per missing variable
                         buffer.append(current[0]);
                     }
                 } else if (current[0] == '}') {// variable, or function with no parameter list
                     function = CompoundVariable.getNamedFunction(buffer.toString());
                     if (function instanceof Function){// ensure that setParameters() is called.
-                        ((Function) function).setParameters(new LinkedList<CompoundVariable>());
+                        LinkedList<CompoundVariable> parameters = new LinkedList<>();
+                        ((Function) function).setParameters(parameters);
+                        function = fold((Function) function, parameters);
                     }
                     buffer.setLength(0);
                     return function;
@@ -166,6 +172,51 @@ class FunctionParser {
         return buffer.toString();
     }
 
+    /**
+     * Evaluate a call to a {@link PureFunction} whose parameters are constant.
+     *
+     * @param function the function, with its parameters set
+     * @param parameters the parameters of the call
+     * @return a {@link FoldedFunction} holding the result, or the function
+     *  if it must be called at each execution
+     */
+    private static Object fold(Function function, List<CompoundVariable> parameters) {
+        if (!(function instanceof PureFunction)) {
+            return function;
+        }
+        for (CompoundVariable parameter : parameters) {
+            if (parameter.isDynamic()) {
+                return function;
+            }
+        }
+        try {
+            return new FoldedFunction(function.execute(null, null));
+        } catch (InvalidVariableException | RuntimeException e) {
+            // left to fail when executed, as it did before folding
+            if (log.isDebugEnabled()) {
+                log.debug("Could not evaluate " + function.getReferenceKey() + " when compiling", e);
+            }
+            return function;
+        }
+    }
+
+    /**
+     * Result of a {@link PureFunction} call, evaluated when compiling.
+     * Unlike a plain String, it still counts as a function for {@link CompoundVariable#hasFunction()}.
+     */
+    static final class FoldedFunction {
+        private final String value;
+
+        FoldedFunction(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+
     /**
      * Compile a String into a list of parameters, each made into a
      * CompoundVariable.
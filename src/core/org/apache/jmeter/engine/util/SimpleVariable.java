@@ -21,13 +21,17 @@ package org.apache.jmeter.engine.util;
 import org.apache.jmeter.threads.JMeterContext;
 import org.apache.jmeter.threads.JMeterContextService;
 import org.apache.jmeter.threads.JMeterVariables;
+import org.apache.jmeter.threads.VariableName;
 
 public class SimpleVariable {
 
     private String name;
 
+    // Bound when the variable is compiled, so that the lookup uses its slot
+    private VariableName variableName;
+
     public SimpleVariable(String name) {
-        this.name = name;
+        setName(name);
     }
 
     public SimpleVariable() {
@@ -40,6 +44,7 @@ public class SimpleVariable {
 
     public void setName(String name) {
         this.name = name;
+        this.variableName = name == null ? null : new VariableName(name);
     }
 
     /**
@@ -47,11 +52,18 @@ public class SimpleVariable {
      */
     @Override
     public String toString() {
+        return toString(getVariables());
+    }
+
+    /**
+     * @param vars variables of the current thread, may be null
+     * @return the value of the variable, or its reference if it is not defined
+     */
+    String toString(JMeterVariables vars) {
         String ret = null;
-        JMeterVariables vars = getVariables();
 
-        if (vars != null) {
-            ret = vars.get(name);
+        if (vars != null && variableName != null) {
+            ret = vars.get(variableName);
         }
 
         if (ret == null) {
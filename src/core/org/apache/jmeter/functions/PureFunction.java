@@ -0,0 +1,34 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.functions;
+
+/**
+ * Implement this method-less interface to indicate that a {@link Function}
+ * result only depends on its parameters: it does not read variables,
+ * properties, the sampler or the previous result, has no side effect and
+ * keeps no state between calls.
+ * <p>
+ * A call to such a function whose parameters are all constant is evaluated
+ * once when it is compiled, and replaced by its result.
+ *
+ * @see org.apache.jmeter.engine.util.CompoundVariable
+ * @since 3.1
+ */
+public interface PureFunction {
+}
@@ -70,6 +70,11 @@ public class ReportGeneratorConfiguration {
     private static final String REPORT_GENERATOR_KEY_REPORT_TITLE = REPORT_GENERATOR_KEY_PREFIX
             + KEY_DELIMITER + "report_title";
 
+    // Parallel threads
+    private static final String REPORT_GENERATOR_KEY_PARALLEL_THREADS = REPORT_GENERATOR_KEY_PREFIX
+            + KEY_DELIMITER + "parallel_threads";
+    private static final Integer REPORT_GENERATOR_KEY_PARALLEL_THREADS_DEFAULT = Integer.valueOf(1);
+
     private static final String LOAD_EXPORTER_FMT = "Load configuration for exporter \"%s\"";
     private static final String LOAD_GRAPH_FMT = "Load configuration for graph \"%s\"";
     private static final String INVALID_KEY_FMT = "Invalid property \"%s\", skip it.";
@@ -264,6 +269,7 @@ public class ReportGeneratorConfiguration {
     private File tempDirectory;
     private long apdexSatisfiedThreshold;
     private long apdexToleratedThreshold;
+    private int parallelThreads = 1;
     private Pattern filteredSamplesPattern;
     private Map<String, ExporterConfiguration> exportConfigurations = new HashMap<>();
     private Map<String, GraphConfiguration> graphConfigurations = new HashMap<>();
@@ -306,6 +312,25 @@ public class ReportGeneratorConfiguration {
         this.tempDirectory = tempDirectory;
     }
 
+    /**
+     * Gets the number of threads used to parse and aggregate samples.
+     *
+     * @return the number of threads, 1 if generation is not parallel
+     */
+    public final int getParallelThreads() {
+        return parallelThreads;
+    }
+
+    /**
+     * Sets the number of threads used to parse and aggregate samples.
+     *
+     * @param parallelThreads
+     *            the number of threads, 1 to disable parallel generation
+     */
+    public final void setParallelThreads(int parallelThreads) {
+        this.parallelThreads = parallelThreads;
+    }
+
     /**
      * Gets the apdex satisfied threshold.
      *
@@ -613,6 +638,13 @@ public class ReportGeneratorConfiguration {
                 REPORT_GENERATOR_KEY_REPORT_TITLE, String.class);
         configuration.setReportTitle(reportTitle);
 
+        // Load parallel threads
+        final int parallelThreads = getRequiredProperty(props,
+                REPORT_GENERATOR_KEY_PARALLEL_THREADS,
+                REPORT_GENERATOR_KEY_PARALLEL_THREADS_DEFAULT,
+                int.class).intValue();
+        configuration.setParallelThreads(parallelThreads);
+
         // Find graph identifiers and load a configuration for each
         final Map<String, GraphConfiguration> graphConfigurations = configuration
                 .getGraphConfigurations();
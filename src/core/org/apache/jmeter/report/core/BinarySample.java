@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import org.apache.jmeter.save.BinaryResultReader;
+import org.apache.jmeter.save.CSVSaveService;
+
+/**
+ * Sample read from a block of a binary result file.
+ * <p>
+ * Numbers and booleans are read from the decoded columns of the block and
+ * strings are shared between the samples of the block.
+ * </p>
+ *
+ * @since 3.1
+ */
+final class BinarySample extends Sample {
+
+    private final SampleColumns columns;
+
+    private final BinaryResultReader.Block block;
+
+    private final int index;
+
+    BinarySample(long row, SampleMetadata metadata, SampleColumns columns,
+            BinaryResultReader.Block block, int index) {
+        super(row, metadata, columns.storesStartTimeStamp);
+        this.columns = columns;
+        this.block = block;
+        this.index = index;
+    }
+
+    @Override
+    public String getData(int column) {
+        return block.getString(column, index);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < columns.count; i++) {
+            if (i > 0) {
+                builder.append(columns.separator);
+            }
+            builder.append(getData(i));
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public long getTimestamp() {
+        return columns.timestamp < 0 ? super.getTimestamp()
+                : block.getLong(columns.timestamp, index);
+    }
+
+    @Override
+    public long getElapsedTime() {
+        return columns.elapsed < 0 ? super.getElapsedTime()
+                : block.getLong(columns.elapsed, index);
+    }
+
+    @Override
+    public long getLatency() {
+        return columns.latency < 0 ? super.getLatency()
+                : block.getLong(columns.latency, index);
+    }
+
+    @Override
+    public long getIntendedStartTime() {
+        return columns.intendedStartTime < 0 ? super.getIntendedStartTime()
+                : block.getLong(columns.intendedStartTime, index);
+    }
+
+    @Override
+    public int getSentBytes() {
+        return getInt(columns.bytes, CSVSaveService.CSV_BYTES);
+    }
+
+    @Override
+    public int getGroupThreads() {
+        return getInt(columns.groupThreads, CSVSaveService.CSV_THREAD_COUNT1);
+    }
+
+    @Override
+    public int getAllThreads() {
+        return getInt(columns.allThreads, CSVSaveService.CSV_THREAD_COUNT2);
+    }
+
+    private int getInt(int column, String fieldName) {
+        if (column >= 0) {
+            long value = block.getLong(column, index);
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                return (int) value;
+            }
+        }
+        // slow path reports the error
+        return getData(int.class, fieldName).intValue();
+    }
+
+    @Override
+    public String getName() {
+        return columns.label < 0 ? super.getName()
+                : block.getString(columns.label, index);
+    }
+
+    @Override
+    public boolean getSuccess() {
+        return columns.success < 0 ? super.getSuccess()
+                : block.getBoolean(columns.success, index);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.jmeter.save.BinaryResultReader;
+import org.apache.jmeter.util.JMeterUtils;
+
+/**
+ * Reader class for binary result files, the counterpart of
+ * {@link CsvSampleReader}.
+ *
+ * @see org.apache.jmeter.save.BinarySaveService
+ * @since 3.1
+ */
+public class BinarySampleReader implements Closeable {
+
+    private static final char DEFAULT_SEPARATOR =
+            JMeterUtils.getPropDefault("jmeter.save.saveservice.default_delimiter", ",").charAt(0); //$NON-NLS-1$ //$NON-NLS-2$
+
+    private final File file;
+
+    private final BinaryResultReader reader;
+
+    private final SampleMetadata metadata;
+
+    private final String[] columnNames;
+
+    private final SampleColumns columns;
+
+    private BinaryResultReader.Block block;
+
+    private int index;
+
+    private long row;
+
+    /**
+     * Instantiates a new binary sample reader.
+     *
+     * @param inputFile
+     *            the input file (must not be {@code null})
+     */
+    public BinarySampleReader(File inputFile) {
+        if (!(inputFile.isFile() && inputFile.canRead())) {
+            throw new IllegalArgumentException(inputFile.getAbsolutePath()
+                    + " does not exist or is not readable");
+        }
+        this.file = inputFile;
+        try {
+            this.reader = new BinaryResultReader(new FileInputStream(file));
+            this.block = reader.readBlock();
+        } catch (IOException ex) {
+            close();
+            throw new SampleException("Could not read " + file.getAbsolutePath(), ex);
+        }
+        if (block == null) {
+            close();
+            throw new IllegalArgumentException("File is empty");
+        }
+        this.columnNames = block.getColumnNames();
+        this.metadata = new SampleMetadata(DEFAULT_SEPARATOR, columnNames);
+        this.columns = new SampleColumns(metadata,
+                JMeterUtils.getPropDefault("sampleresult.timestamp.start", false)); //$NON-NLS-1$
+    }
+
+    /**
+     * Gets the metadata.
+     *
+     * @return the metadata
+     */
+    public SampleMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Gets next sample from the file.
+     *
+     * @return the sample, null if there is no more sample
+     */
+    public Sample readSample() {
+        while (block != null && index >= block.getRowCount()) {
+            try {
+                block = reader.readBlock();
+            } catch (IOException ex) {
+                throw new SampleException("Could not read sample <" + row + ">", ex);
+            }
+            index = 0;
+            if (block != null && !Arrays.equals(columnNames, block.getColumnNames())) {
+                throw new SampleException("Columns of " + file.getAbsolutePath()
+                        + " change after sample <" + row + ">, found "
+                        + Arrays.toString(block.getColumnNames()));
+            }
+        }
+        if (block == null) {
+            return null;
+        }
+        return new BinarySample(row++, metadata, columns, block, index++);
+    }
+
+    /**
+     * Close the reader.
+     */
+    @Override
+    public void close() {
+        if (reader != null) {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jmeter.save.CSVSaveService;
+
+/**
+ * Splits a CSV results file into byte ranges made of whole sample rows, so
+ * that each range can be parsed independently by a {@link CsvSampleReader}.
+ * <p>
+ * Rows are delimited as {@link CSVSaveService#csvReadFile} does: a row ends
+ * with a line break that is not inside a quoted field. The file is scanned
+ * once, byte per byte, which is much cheaper than parsing it.
+ * </p>
+ * 
+ * @since 3.1
+ */
+public final class CsvFilePartitioner {
+
+    private static final int BUF_SIZE = 65536;
+
+    private CsvFilePartitioner() {
+        super();
+    }
+
+    /**
+     * Computes the boundaries of the partitions of the specified file.
+     * <p>
+     * The first line of the file is always skipped, as {@link CsvSampleReader}
+     * does when it reads the metadata.
+     * </p>
+     *
+     * @param file
+     *            the CSV file
+     * @param partitionSize
+     *            the approximate size in bytes of each partition
+     * @return offsets of the partitions: partition <code>i</code> starts at
+     *         offset <code>i</code> and ends before offset <code>i+1</code>;
+     *         the array holds at least the start and the end of the data
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static long[] partition(File file, long partitionSize)
+            throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        try (InputStream in = new BufferedInputStream(
+                new FileInputStream(file), BUF_SIZE)) {
+            long position = 0;
+            int ch;
+            // Skip first line like BufferedReader#readLine
+            while ((ch = in.read()) != -1) {
+                position++;
+                if (ch == '\n') {
+                    break;
+                }
+                if (ch == '\r') {
+                    in.mark(1);
+                    if (in.read() == '\n') {
+                        position++;
+                    } else {
+                        in.reset();
+                    }
+                    break;
+                }
+            }
+            offsets.add(Long.valueOf(position));
+            long nextTarget = position + partitionSize;
+            boolean quoted = false;
+            while ((ch = in.read()) != -1) {
+                position++;
+                if (ch == CSVSaveService.QUOTING_CHAR) {
+                    quoted = !quoted;
+                } else if (!quoted && (ch == '\n' || ch == '\r')) {
+                    if (ch == '\r') {
+                        in.mark(1);
+                        if (in.read() == '\n') {
+                            position++;
+                        } else {
+                            in.reset();
+                        }
+                    }
+                    if (position >= nextTarget) {
+                        offsets.add(Long.valueOf(position));
+                        nextTarget = position + partitionSize;
+                    }
+                }
+            }
+            long last = offsets.get(offsets.size() - 1).longValue();
+            if (position > last || offsets.size() == 1) {
+                offsets.add(Long.valueOf(position));
+            }
+        }
+        long[] result = new long[offsets.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = offsets.get(i).longValue();
+        }
+        return result;
+    }
+}
@@ -21,11 +21,11 @@ import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
 
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.jmeter.samplers.SampleSaveConfiguration;
 import org.apache.jmeter.save.CSVSaveService;
 import org.apache.jmeter.util.JMeterUtils;
@@ -38,6 +38,11 @@ import org.apache.log.Logger;
  * <p>
  * Handles {@link SampleMetadata} reading and sample extraction.
  * </p>
+ * <p>
+ * When the file is memory-mapped, rows are scanned directly on the bytes of
+ * the file and samples only decode the fields they are asked for, see
+ * <code>jmeter.reportgenerator.memory_mapped_reader</code>.
+ * </p>
  * 
  * @since 3.0
  */
@@ -51,10 +56,18 @@ public class CsvSampleReader implements Closeable{
     private static final char DEFAULT_SEPARATOR =
             JMeterUtils.getPropDefault("jmeter.save.saveservice.default_delimiter", ",").charAt(0); //$NON-NLS-1$ //$NON-NLS-2$
 
+    private static final boolean DEFAULT_MEMORY_MAPPED =
+            JMeterUtils.getPropDefault("jmeter.reportgenerator.memory_mapped_reader", false); //$NON-NLS-1$
+
     private File file;
 
     private BufferedReader reader;
 
+    /** set instead of reader when the file is memory-mapped */
+    private MappedCsvFile mappedFile;
+
+    private SampleColumns mappedColumns;
+
     private char separator;
 
     private long row;
@@ -80,6 +93,26 @@ public class CsvSampleReader implements Closeable{
         this(inputFile, null, separator, useSaveSampleCfg);
     }
 
+    /**
+     * Instantiates a new csv sample reader.
+     *
+     * @param inputFile
+     *            the input file (must not be {@code null})
+     * @param separator
+     *            the separator
+     * @param useSaveSampleCfg
+     *            indicates whether the reader uses jmeter
+     *            SampleSaveConfiguration to define metadata
+     * @param memoryMapped
+     *            indicates whether the file is memory-mapped instead of read
+     *            through a {@link BufferedReader}
+     * @since 3.1
+     */
+    public CsvSampleReader(File inputFile, char separator,
+            boolean useSaveSampleCfg, boolean memoryMapped) {
+        this(inputFile, null, separator, useSaveSampleCfg, 0L, -1L, memoryMapped);
+    }
+
     /**
      * Instantiates a new csv sample reader.
      *
@@ -92,17 +125,51 @@ public class CsvSampleReader implements Closeable{
         this(inputFile, metadata, DEFAULT_SEPARATOR, false);
     }
 
+    /**
+     * Instantiates a new csv sample reader on a part of a file.
+     * <p>
+     * The range must start at the beginning of a sample row and end at the
+     * end of a row, see {@link CsvFilePartitioner}.
+     * </p>
+     *
+     * @param inputFile
+     *            the input file (must not be {@code null})
+     * @param metadata
+     *            the metadata (must not be {@code null})
+     * @param startOffset
+     *            offset in bytes of the first row to read
+     * @param endOffset
+     *            offset in bytes following the last row to read
+     * @since 3.1
+     */
+    public CsvSampleReader(File inputFile, SampleMetadata metadata,
+            long startOffset, long endOffset) {
+        this(inputFile, metadata, DEFAULT_SEPARATOR, false, startOffset, endOffset,
+                DEFAULT_MEMORY_MAPPED);
+    }
+
     private CsvSampleReader(File inputFile, SampleMetadata metadata,
             char separator, boolean useSaveSampleCfg) {
+        this(inputFile, metadata, separator, useSaveSampleCfg, 0L, -1L,
+                DEFAULT_MEMORY_MAPPED);
+    }
+
+    private CsvSampleReader(File inputFile, SampleMetadata metadata,
+            char separator, boolean useSaveSampleCfg, long startOffset, long endOffset,
+            boolean memoryMapped) {
         if (!(inputFile.isFile() && inputFile.canRead())) {
             throw new IllegalArgumentException(inputFile.getAbsolutePath()
                     + " does not exist or is not readable");
         }
         this.file = inputFile;
         try {
-            this.reader = new BufferedReader(new InputStreamReader(
-                    new FileInputStream(file), CHARSET), BUF_SIZE);
-        } catch (FileNotFoundException | UnsupportedEncodingException ex) {
+            if (memoryMapped) {
+                this.mappedFile = new MappedCsvFile(file, startOffset, endOffset);
+            } else {
+                this.reader = new BufferedReader(new InputStreamReader(
+                        openStream(file, startOffset, endOffset), CHARSET), BUF_SIZE);
+            }
+        } catch (IOException ex) { // FileNotFoundException, UnsupportedEncodingException
             throw new SampleException("Could not create file reader !", ex);
         }
         if (metadata == null) {
@@ -112,15 +179,38 @@ public class CsvSampleReader implements Closeable{
         }
         this.columnCount = this.metadata.getColumnCount();
         this.separator = this.metadata.getSeparator();
+        if (memoryMapped) {
+            this.mappedColumns = new SampleColumns(this.metadata,
+                    JMeterUtils.getPropDefault("sampleresult.timestamp.start", false)); //$NON-NLS-1$
+        }
         this.row = 0;
         this.lastSampleRead = nextSample();
     }
 
+    /**
+     * Open the file, restricted to the range if endOffset is not negative.
+     * As the file is read as ISO-8859-1, byte offsets are also char offsets.
+     */
+    private static InputStream openStream(File file, long startOffset, long endOffset)
+            throws IOException {
+        FileInputStream fis = new FileInputStream(file);
+        if (endOffset < 0) {
+            return fis;
+        }
+        try {
+            fis.getChannel().position(startOffset);
+        } catch (IOException ex) {
+            JOrphanUtils.closeQuietly(fis);
+            throw ex;
+        }
+        return new BoundedInputStream(fis, endOffset - startOffset);
+    }
+
     private SampleMetadata readMetadata(char separator, boolean useSaveSampleCfg) {
         try {
             SampleMetadata result;
             // Read first line
-            String line = reader.readLine();
+            String line = mappedFile != null ? mappedFile.readLine() : reader.readLine();
             if(line == null) {
                 throw new IllegalArgumentException("File is empty");
             }
@@ -157,6 +247,9 @@ public class CsvSampleReader implements Closeable{
     }
 
     private Sample nextSample() {
+        if (mappedFile != null) {
+            return nextMappedSample();
+        }
         String[] data;
         try {
             data = CSVSaveService.csvReadFile(reader, separator);
@@ -174,6 +267,27 @@ public class CsvSampleReader implements Closeable{
         }
     }
 
+    private Sample nextMappedSample() {
+        try {
+            int[] bounds = new int[2 * columnCount];
+            int count = mappedFile.nextRow(separator, bounds);
+            if (count == 0) {
+                return null;
+            }
+            if (count != columnCount) {
+                throw new SampleException("Mismatch between expected number of columns:"+columnCount+" and columns in CSV file:"+count+
+                        ", check your jmeter.save.saveservice.* configuration");
+            }
+            int label = mappedColumns.label;
+            String name = label < 0 ? null
+                    : mappedFile.intern(bounds[2 * label], bounds[2 * label + 1]);
+            return new MappedSample(row, metadata, mappedColumns,
+                    mappedFile.getBuffer(), bounds, name);
+        } catch (IOException e) {
+            throw new SampleException("Could not read sample <" + row + ">", e);
+        }
+    }
+
     /**
      * Gets next sample from the file.
      *
@@ -209,5 +323,6 @@ public class CsvSampleReader implements Closeable{
     @Override
     public void close() {
         JOrphanUtils.closeQuietly(reader);
+        JOrphanUtils.closeQuietly(mappedFile);
     }
 }
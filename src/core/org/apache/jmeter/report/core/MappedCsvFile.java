@@ -0,0 +1,445 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jmeter.save.CSVSaveService;
+import org.apache.jorphan.util.JOrphanUtils;
+
+/**
+ * Scans the rows of an ISO-8859-1 CSV file directly on memory-mapped bytes.
+ * <p>
+ * Rows are split as {@link CSVSaveService#csvReadFile} does, but fields are
+ * only located: their bounds are recorded and their values decoded on demand
+ * by {@link MappedSample}. The file is mapped by windows so files larger than
+ * 2GB can be read; buffers of previous windows stay valid as long as samples
+ * reference them.
+ * </p>
+ * <p>
+ * Instances must be used by a single thread, samples can then be read from any
+ * thread.
+ * </p>
+ *
+ * @since 3.1
+ */
+final class MappedCsvFile implements Closeable {
+
+    private static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /** Bounds the memory used by interned labels if labels are all distinct */
+    private static final int MAX_INTERNED_LABELS = 10000;
+
+    private static final int INITIAL = 0;
+    private static final int PLAIN = 1;
+    private static final int QUOTED = 2;
+    private static final int EMBEDDED_QUOTE = 3;
+
+    private final RandomAccessFile file;
+
+    private final FileChannel channel;
+
+    /** offset following the last byte to read */
+    private final long dataEnd;
+
+    private int windowSize;
+
+    /** offset in the file of the first byte of the window */
+    private long windowStart;
+
+    private ByteBuffer window;
+
+    /** position in the window of the next row */
+    private int position;
+
+    private final Map<LabelKey, String> labels = new HashMap<>();
+
+    private final LabelKey probe = new LabelKey();
+
+    /**
+     * @param inputFile
+     *            the file to read
+     * @param startOffset
+     *            offset of the first byte to read
+     * @param endOffset
+     *            offset following the last byte to read, negative to read
+     *            until the end of the file
+     * @throws IOException
+     *             if the file cannot be opened or mapped
+     */
+    MappedCsvFile(File inputFile, long startOffset, long endOffset)
+            throws IOException {
+        this(inputFile, startOffset, endOffset, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param inputFile
+     *            the file to read
+     * @param startOffset
+     *            offset of the first byte to read
+     * @param endOffset
+     *            offset following the last byte to read, negative to read
+     *            until the end of the file
+     * @param windowSize
+     *            initial size in bytes of the mapped windows
+     * @throws IOException
+     *             if the file cannot be opened or mapped
+     */
+    MappedCsvFile(File inputFile, long startOffset, long endOffset,
+            int windowSize) throws IOException {
+        this.windowSize = windowSize;
+        this.file = new RandomAccessFile(inputFile, "r"); // $NON-NLS-1$
+        try {
+            this.channel = file.getChannel();
+            this.dataEnd = endOffset < 0 ? channel.size() : endOffset;
+            map(startOffset);
+        } catch (IOException | RuntimeException ex) {
+            JOrphanUtils.closeQuietly(file);
+            throw ex;
+        }
+    }
+
+    private void map(long start) throws IOException {
+        long size = Math.min(dataEnd - start, windowSize);
+        if (size <= 0) {
+            window = ByteBuffer.allocate(0);
+        } else {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        }
+        windowStart = start;
+        position = 0;
+    }
+
+    /**
+     * Map the window again from the current row, when the row does not end
+     * in the current window.
+     */
+    private void remap() throws IOException {
+        if (position == 0) {
+            if (windowSize == Integer.MAX_VALUE) {
+                throw new IOException("Row at offset " + windowStart
+                        + " is longer than " + Integer.MAX_VALUE + " bytes");
+            }
+            // the row is larger than the window
+            windowSize = (int) Math.min(Integer.MAX_VALUE, 2L * windowSize);
+        }
+        map(windowStart + position);
+    }
+
+    private boolean isLastWindow() {
+        return windowStart + window.limit() >= dataEnd;
+    }
+
+    /**
+     * @return the buffer holding the row scanned by the last call to
+     *         {@link #nextRow(char, int[])}
+     */
+    ByteBuffer getBuffer() {
+        return window;
+    }
+
+    /**
+     * Reads the next line like {@link java.io.BufferedReader#readLine()}.
+     *
+     * @return the line without its terminator, null if there is no more data
+     * @throws IOException
+     *             if the file cannot be mapped
+     */
+    String readLine() throws IOException {
+        while (true) {
+            int limit = window.limit();
+            if (position >= limit && isLastWindow()) {
+                return null;
+            }
+            int p = position;
+            while (p < limit) {
+                byte b = window.get(p);
+                if (b == '\n' || b == '\r') {
+                    break;
+                }
+                p++;
+            }
+            if (p < limit) {
+                int next = p + 1;
+                if (window.get(p) == '\r') {
+                    if (next < limit) {
+                        if (window.get(next) == '\n') {
+                            next++;
+                        }
+                    } else if (!isLastWindow()) {
+                        remap();
+                        continue;
+                    }
+                }
+                String line = decode(window, position, p);
+                position = next;
+                return line;
+            }
+            if (isLastWindow()) {
+                String line = decode(window, position, p);
+                position = p;
+                return line;
+            }
+            remap();
+        }
+    }
+
+    /**
+     * Locates the fields of the next row.
+     *
+     * @param separator
+     *            the field separator
+     * @param bounds
+     *            receives the start and the end in the buffer of each field;
+     *            fields that do not fit are counted but not recorded
+     * @return the number of fields of the row, 0 if there is no more row
+     * @throws IOException
+     *             if the row is not valid CSV or the file cannot be mapped
+     */
+    int nextRow(char separator, int[] bounds) throws IOException {
+        while (true) {
+            if (position >= window.limit() && isLastWindow()) {
+                return 0;
+            }
+            int count = scanRow(separator, bounds);
+            if (count >= 0) {
+                return count;
+            }
+            remap();
+        }
+    }
+
+    /**
+     * @return the number of fields, -1 if the row does not end in the window
+     */
+    private int scanRow(char separator, int[] bounds) throws IOException {
+        final ByteBuffer buf = window;
+        final int limit = buf.limit();
+        final int maxFields = bounds.length / 2;
+        int state = INITIAL;
+        int count = 0;
+        int fieldStart = position;
+        int p = position;
+        while (p < limit) {
+            int ch = buf.get(p) & 0xFF;
+            boolean endOfField = false;
+            switch (state) {
+            case INITIAL:
+                if (ch == CSVSaveService.QUOTING_CHAR) {
+                    state = QUOTED;
+                } else if (isDelimOrEOL(separator, ch)) {
+                    endOfField = true;
+                } else {
+                    state = PLAIN;
+                }
+                break;
+            case PLAIN:
+                if (ch == CSVSaveService.QUOTING_CHAR) {
+                    throw new IOException("Cannot have quote-char in plain field:["
+                            + decode(buf, fieldStart, p + 1) + "]");
+                } else if (isDelimOrEOL(separator, ch)) {
+                    endOfField = true;
+                }
+                break;
+            case QUOTED:
+                if (ch == CSVSaveService.QUOTING_CHAR) {
+                    state = EMBEDDED_QUOTE;
+                }
+                break;
+            case EMBEDDED_QUOTE:
+                if (ch == CSVSaveService.QUOTING_CHAR) {
+                    state = QUOTED;
+                } else if (isDelimOrEOL(separator, ch)) {
+                    endOfField = true;
+                } else {
+                    throw new IOException("Cannot have single quote-char in quoted field:["
+                            + decode(buf, fieldStart, p) + "]");
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unexpected state " + state);
+            }
+            p++;
+            if (endOfField) {
+                if (count < maxFields) {
+                    bounds[2 * count] = fieldStart;
+                    bounds[2 * count + 1] = p - 1;
+                }
+                count++;
+                fieldStart = p;
+                state = INITIAL;
+                if (ch == '\n' || ch == '\r') {
+                    if (ch == '\r') {
+                        // Remove following \n if present
+                        if (p < limit) {
+                            if (buf.get(p) == '\n') {
+                                p++;
+                            }
+                        } else if (!isLastWindow()) {
+                            return -1;
+                        }
+                    }
+                    position = p;
+                    return count;
+                }
+            }
+        }
+        if (!isLastWindow()) {
+            return -1;
+        }
+        // End of data, collect any remaining field
+        if (state == QUOTED) {
+            throw new IOException("Missing trailing quote-char in quoted field:["
+                    + decode(buf, fieldStart, p) + "]");
+        }
+        if (p > position) {
+            if (count < maxFields) {
+                bounds[2 * count] = fieldStart;
+                bounds[2 * count + 1] = p;
+            }
+            count++;
+        }
+        position = p;
+        return count;
+    }
+
+    private static boolean isDelimOrEOL(char delim, int ch) {
+        return ch == delim || ch == '\n' || ch == '\r';
+    }
+
+    /**
+     * Gets the value of a field of the last scanned row, sharing a single
+     * instance between rows with the same value.
+     *
+     * @param start
+     *            start of the field in the buffer
+     * @param end
+     *            end of the field in the buffer
+     * @return the value of the field
+     */
+    String intern(int start, int end) {
+        probe.set(window, start, end);
+        String label = labels.get(probe);
+        if (label == null) {
+            label = decode(window, start, end);
+            if (labels.size() < MAX_INTERNED_LABELS) {
+                labels.put(probe.copy(), label);
+            }
+        }
+        return label;
+    }
+
+    /**
+     * Decodes a field, removing its quotes if it is quoted.
+     *
+     * @param buf
+     *            the buffer holding the field
+     * @param start
+     *            start of the field in the buffer
+     * @param end
+     *            end of the field in the buffer
+     * @return the value of the field
+     */
+    static String decode(ByteBuffer buf, int start, int end) {
+        char[] chars = new char[end - start];
+        int length = 0;
+        if (end > start && buf.get(start) == CSVSaveService.QUOTING_CHAR) {
+            for (int i = start + 1; i < end - 1; i++) {
+                char ch = (char) (buf.get(i) & 0xFF);
+                chars[length++] = ch;
+                if (ch == CSVSaveService.QUOTING_CHAR) {
+                    i++; // skip the doubled quote
+                }
+            }
+        } else {
+            for (int i = start; i < end; i++) {
+                chars[length++] = (char) (buf.get(i) & 0xFF);
+            }
+        }
+        return new String(chars, 0, length);
+    }
+
+    @Override
+    public void close() {
+        JOrphanUtils.closeQuietly(file);
+    }
+
+    /**
+     * Label bytes used as a map key, mutable so lookups do not allocate
+     */
+    private static final class LabelKey {
+        private byte[] bytes = new byte[64];
+        private int length;
+        private int hash;
+
+        void set(ByteBuffer buf, int start, int end) {
+            length = end - start;
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, 2 * bytes.length)];
+            }
+            int h = 1;
+            for (int i = 0; i < length; i++) {
+                byte b = buf.get(start + i);
+                bytes[i] = b;
+                h = 31 * h + b;
+            }
+            hash = h;
+        }
+
+        LabelKey copy() {
+            LabelKey key = new LabelKey();
+            key.bytes = Arrays.copyOf(bytes, length);
+            key.length = length;
+            key.hash = hash;
+            return key;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof LabelKey)) {
+                return false;
+            }
+            LabelKey other = (LabelKey) obj;
+            if (length != other.length || hash != other.hash) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != other.bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import java.nio.ByteBuffer;
+
+import org.apache.jmeter.save.CSVSaveService;
+
+/**
+ * Sample whose fields are read on demand from the bytes of a
+ * {@link MappedCsvFile}.
+ * <p>
+ * Numeric and boolean fields are parsed directly from the bytes and strings
+ * are only built when requested, except the label which is shared between
+ * samples.
+ * </p>
+ *
+ * @since 3.1
+ */
+final class MappedSample extends Sample {
+
+    private final SampleColumns columns;
+
+    private final ByteBuffer buffer;
+
+    /** start and end in the buffer of each field */
+    private final int[] bounds;
+
+    private final String name;
+
+    MappedSample(long row, SampleMetadata metadata, SampleColumns columns,
+            ByteBuffer buffer, int[] bounds, String name) {
+        super(row, metadata, columns.storesStartTimeStamp);
+        this.columns = columns;
+        this.buffer = buffer;
+        this.bounds = bounds;
+        this.name = name;
+    }
+
+    @Override
+    public String getData(int index) {
+        return MappedCsvFile.decode(buffer, bounds[2 * index],
+                bounds[2 * index + 1]);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < columns.count; i++) {
+            if (i > 0) {
+                builder.append(columns.separator);
+            }
+            builder.append(getData(i));
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public long getTimestamp() {
+        return getLong(columns.timestamp, CSVSaveService.TIME_STAMP);
+    }
+
+    @Override
+    public long getElapsedTime() {
+        return getLong(columns.elapsed, CSVSaveService.CSV_ELAPSED);
+    }
+
+    @Override
+    public long getLatency() {
+        return getLong(columns.latency, CSVSaveService.CSV_LATENCY);
+    }
+
+    @Override
+    public long getIntendedStartTime() {
+        return getLong(columns.intendedStartTime, CSVSaveService.CSV_INTENDED_START_TIME);
+    }
+
+    @Override
+    public int getSentBytes() {
+        return getInt(columns.bytes, CSVSaveService.CSV_BYTES);
+    }
+
+    @Override
+    public int getGroupThreads() {
+        return getInt(columns.groupThreads, CSVSaveService.CSV_THREAD_COUNT1);
+    }
+
+    @Override
+    public int getAllThreads() {
+        return getInt(columns.allThreads, CSVSaveService.CSV_THREAD_COUNT2);
+    }
+
+    @Override
+    public String getName() {
+        return name != null ? name : super.getName();
+    }
+
+    @Override
+    public boolean getSuccess() {
+        int index = columns.success;
+        if (index < 0) {
+            return super.getSuccess();
+        }
+        // same as Boolean#valueOf(String)
+        int start = bounds[2 * index];
+        return bounds[2 * index + 1] - start == 4
+                && toLowerCase(buffer.get(start)) == 't'
+                && toLowerCase(buffer.get(start + 1)) == 'r'
+                && toLowerCase(buffer.get(start + 2)) == 'u'
+                && toLowerCase(buffer.get(start + 3)) == 'e';
+    }
+
+    private static int toLowerCase(byte b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+    }
+
+    private int getInt(int index, String fieldName) {
+        if (index >= 0) {
+            long value = parseLong(index);
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                return (int) value;
+            }
+        }
+        // slow path reports the error
+        return getData(int.class, fieldName).intValue();
+    }
+
+    private long getLong(int index, String fieldName) {
+        if (index >= 0) {
+            long value = parseLong(index);
+            if (value != Long.MIN_VALUE) {
+                return value;
+            }
+        }
+        // slow path reports the error
+        return getData(long.class, fieldName).longValue();
+    }
+
+    /**
+     * Parses plain decimal fields short enough not to overflow.
+     *
+     * @return the value of the field, {@link Long#MIN_VALUE} if it must be
+     *         parsed from its string value
+     */
+    private long parseLong(int index) {
+        int p = bounds[2 * index];
+        int end = bounds[2 * index + 1];
+        if (end - p <= 0 || end - p > 18) {
+            return Long.MIN_VALUE;
+        }
+        boolean negative = false;
+        byte b = buffer.get(p);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            p++;
+            if (p == end) {
+                return Long.MIN_VALUE;
+            }
+        }
+        long value = 0;
+        for (; p < end; p++) {
+            b = buffer.get(p);
+            if (b < '0' || b > '9') {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return negative ? -value : value;
+    }
+}
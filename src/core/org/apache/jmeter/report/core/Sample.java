@@ -59,6 +59,26 @@ public class Sample {
         this.storesStartTimeStamp = JMeterUtils.getPropDefault("sampleresult.timestamp.start", false);
     }
 
+    /**
+     * Build a sample whose data is provided by the subclass, which must
+     * override {@link #getData(int)} and {@link #toString()}
+     * 
+     * @param row
+     *            the row number in the CSV source from which this sample is
+     *            built
+     * @param metadata
+     *            The sample metadata (contains column names)
+     * @param storesStartTimeStamp
+     *            the value of the sampleresult.timestamp.start property
+     * @since 3.1
+     */
+    protected Sample(long row, SampleMetadata metadata, boolean storesStartTimeStamp) {
+        this.row = row;
+        this.metadata = metadata;
+        this.data = null;
+        this.storesStartTimeStamp = storesStartTimeStamp;
+    }
+
     /**
      * @return the row number from the CSV source from which this sample has
      *         been built.
@@ -86,7 +106,7 @@ public class Sample {
      * @return the data of the column
      */
     public String getData(String name) {
-        return data[metadata.ensureIndexOf(name)];
+        return getData(metadata.ensureIndexOf(name));
     }
 
     /**
@@ -101,10 +121,11 @@ public class Sample {
      * @return the converted value of the data
      */
     public <TData> TData getData(Class<TData> clazz, int index, String fieldName) {
+        String value = getData(index);
         try {
-            return Converters.convert(clazz, data[index]);
+            return Converters.convert(clazz, value);
         } catch (ConvertException ex) {
-            throw new SampleException(ERROR_ON_SAMPLE + (row+1) + " converting field:"+fieldName+" at column:"+index+" to:"+clazz.getName()+", fieldValue:'"+data[index]+"'", ex);
+            throw new SampleException(ERROR_ON_SAMPLE + (row+1) + " converting field:"+fieldName+" at column:"+index+" to:"+clazz.getName()+", fieldValue:'"+value+"'", ex);
         }
     }
 
@@ -190,6 +211,34 @@ public class Sample {
         return storesStartTimeStamp ? getTimestamp() + getElapsedTime() : getTimestamp();
     }
 
+    /**
+     * Gets the time at which the sample should have started, as recorded by
+     * the timers or the thread group which scheduled it.
+     *
+     * @return the intended start time, 0 if the sample started on time
+     * @since 3.1
+     */
+    public long getIntendedStartTime() {
+        return getData(long.class, CSVSaveService.CSV_INTENDED_START_TIME).longValue();
+    }
+
+    /**
+     * Gets the elapsed time measured from the intended start time, which
+     * includes the time the sample waited behind its schedule.
+     *
+     * @return the corrected elapsed time, the elapsed time if the sample
+     *         started on time
+     * @since 3.1
+     */
+    public long getCorrectedElapsedTime() {
+        long elapsedTime = getElapsedTime();
+        long intendedStartTime = getIntendedStartTime();
+        if (intendedStartTime <= 0) {
+            return elapsedTime;
+        }
+        return Math.max(elapsedTime, getEndTime() - intendedStartTime);
+    }
+
     /**
      * Gets the response code stored in the sample.
      *
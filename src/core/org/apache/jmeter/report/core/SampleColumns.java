@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import org.apache.jmeter.save.CSVSaveService;
+
+/**
+ * Indexes of the columns that samples read without building strings,
+ * resolved once per file.
+ *
+ * @since 3.1
+ */
+final class SampleColumns {
+    final int count;
+    final char separator;
+    final boolean storesStartTimeStamp;
+    final int timestamp;
+    final int elapsed;
+    final int label;
+    final int latency;
+    final int success;
+    final int bytes;
+    final int groupThreads;
+    final int allThreads;
+    final int intendedStartTime;
+
+    SampleColumns(SampleMetadata metadata, boolean storesStartTimeStamp) {
+        this.count = metadata.getColumnCount();
+        this.separator = metadata.getSeparator();
+        this.storesStartTimeStamp = storesStartTimeStamp;
+        this.timestamp = metadata.indexOf(CSVSaveService.TIME_STAMP);
+        this.elapsed = metadata.indexOf(CSVSaveService.CSV_ELAPSED);
+        this.label = metadata.indexOf(CSVSaveService.LABEL);
+        this.latency = metadata.indexOf(CSVSaveService.CSV_LATENCY);
+        this.success = metadata.indexOf(CSVSaveService.SUCCESSFUL);
+        this.bytes = metadata.indexOf(CSVSaveService.CSV_BYTES);
+        this.groupThreads = metadata.indexOf(CSVSaveService.CSV_THREAD_COUNT1);
+        this.allThreads = metadata.indexOf(CSVSaveService.CSV_THREAD_COUNT2);
+        this.intendedStartTime = metadata.indexOf(CSVSaveService.CSV_INTENDED_START_TIME);
+    }
+}
@@ -130,6 +130,9 @@ public class SampleMetadata {
         if (saveConfig.saveConnectTime()) {
             configuredColumns.add(CSVSaveService.CSV_CONNECT_TIME);
         }
+        if (saveConfig.saveIntendedStartTime()) {
+            configuredColumns.add(CSVSaveService.CSV_INTENDED_START_TIME);
+        }
         initialize(saveConfig.getDelimiter().charAt(0), configuredColumns);
     }
 
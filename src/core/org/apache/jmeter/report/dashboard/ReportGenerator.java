@@ -24,10 +24,13 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.jmeter.report.config.ConfigurationException;
 import org.apache.jmeter.report.config.ExporterConfiguration;
 import org.apache.jmeter.report.config.GraphConfiguration;
@@ -41,9 +44,12 @@ import org.apache.jmeter.report.core.SamplePredicate;
 import org.apache.jmeter.report.core.SampleSelector;
 import org.apache.jmeter.report.core.StringConverter;
 import org.apache.jmeter.report.processor.AbstractSampleConsumer;
+import org.apache.jmeter.report.processor.AbstractSampleSource;
 import org.apache.jmeter.report.processor.AggregateConsumer;
 import org.apache.jmeter.report.processor.ApdexSummaryConsumer;
 import org.apache.jmeter.report.processor.ApdexThresholdsInfo;
+import org.apache.jmeter.report.processor.AsyncSampleConsumer;
+import org.apache.jmeter.report.processor.BinaryFileSampleSource;
 import org.apache.jmeter.report.processor.CsvFileSampleSource;
 import org.apache.jmeter.report.processor.ErrorsSummaryConsumer;
 import org.apache.jmeter.report.processor.FilterConsumer;
@@ -51,12 +57,13 @@ import org.apache.jmeter.report.processor.MaxAggregator;
 import org.apache.jmeter.report.processor.MinAggregator;
 import org.apache.jmeter.report.processor.NormalizerSampleConsumer;
 import org.apache.jmeter.report.processor.RequestsSummaryConsumer;
+import org.apache.jmeter.report.processor.SampleConsumer;
 import org.apache.jmeter.report.processor.SampleContext;
-import org.apache.jmeter.report.processor.SampleSource;
 import org.apache.jmeter.report.processor.StatisticsSummaryConsumer;
 import org.apache.jmeter.report.processor.ThresholdSelector;
 import org.apache.jmeter.report.processor.graph.AbstractGraphConsumer;
 import org.apache.jmeter.reporters.ResultCollector;
+import org.apache.jmeter.save.BinarySaveService;
 import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
@@ -72,9 +79,12 @@ public class ReportGenerator {
 
     private static final Logger LOG = LoggingManager.getLoggerForClass();
 
+    private static final String OUTPUT_FORMAT = JMeterUtils.getPropDefault(
+            "jmeter.save.saveservice.output_format", "csv");
+
     private static final boolean CSV_OUTPUT_FORMAT = "csv"
-            .equalsIgnoreCase(JMeterUtils.getPropDefault(
-                    "jmeter.save.saveservice.output_format", "csv"));
+            .equalsIgnoreCase(OUTPUT_FORMAT)
+            || BinarySaveService.BINARY.equalsIgnoreCase(OUTPUT_FORMAT);
 
     private static final char CSV_DEFAULT_SEPARATOR =
             JMeterUtils.getPropDefault("jmeter.save.saveservice.default_delimiter", ",").charAt(0); //$NON-NLS-1$ //$NON-NLS-2$
@@ -103,6 +113,11 @@ public class ReportGenerator {
      */
     private final ResultCollector resultCollector;
 
+    /**
+     * Threads parsing the samples and running the consumers in parallel mode
+     */
+    private ExecutorService executor;
+
     /**
      * Instantiates a new report generator.
      *
@@ -116,7 +131,7 @@ public class ReportGenerator {
             throws ConfigurationException {
         if (!CSV_OUTPUT_FORMAT) {
             throw new IllegalArgumentException(
-                    "Report generation requires csv output format, check 'jmeter.save.saveservice.output_format' property");
+                    "Report generation requires csv or binary output format, check 'jmeter.save.saveservice.output_format' property");
         }
 
         LOG.info("ReportGenerator will use for Parsing the separator:'"+CSV_DEFAULT_SEPARATOR+"'");
@@ -202,12 +217,33 @@ public class ReportGenerator {
         File tmpDir = configuration.getTempDirectory();
         boolean tmpDirCreated = createTempDir(tmpDir);
 
+        if (isParallel()) {
+            LOG.info("Samples will be parsed and aggregated using "
+                    + configuration.getParallelThreads() + " threads");
+            executor = Executors.newFixedThreadPool(
+                    configuration.getParallelThreads(),
+                    new BasicThreadFactory.Builder()
+                            .namingPattern("ReportGenerator-%d") // $NON-NLS-1$
+                            .daemon(true).build());
+        }
+
         // Build consumers chain
         SampleContext sampleContext = new SampleContext();
         sampleContext.setWorkingDirectory(tmpDir);
-        SampleSource source = new CsvFileSampleSource(testFile, JMeterUtils
-                .getPropDefault("jmeter.save.saveservice.default_delimiter",
-                        ",").charAt(0));
+        AbstractSampleSource source;
+        if (BinarySaveService.isBinaryFile(testFile)) {
+            LOG.info("Reading samples from binary file " + testFile);
+            source = new BinaryFileSampleSource(testFile);
+        } else {
+            CsvFileSampleSource csvSource = new CsvFileSampleSource(testFile, JMeterUtils
+                    .getPropDefault("jmeter.save.saveservice.default_delimiter",
+                            ",").charAt(0));
+            if (isParallel()) {
+                csvSource.setParallelThreads(configuration.getParallelThreads());
+                csvSource.setExecutor(executor);
+            }
+            source = csvSource;
+        }
         source.setSampleContext(sampleContext);
 
         NormalizerSampleConsumer normalizer = new NormalizerSampleConsumer();
@@ -243,6 +279,11 @@ public class ReportGenerator {
             source.run();
         } catch (SampleException ex) {
             throw new GenerationException("Error while processing samples:"+ex.getMessage(), ex);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
         }
         LOG.debug("End of samples processing");
 
@@ -324,7 +365,7 @@ public class ReportGenerator {
             AbstractSampleConsumer entryPoint = graphConfiguration
                     .excludesControllers() ? excludeControllerFilter
                     : nameFilter;
-            entryPoint.addSampleConsumer(graph);
+            entryPoint.addSampleConsumer(makeAsyncIfParallel(graph));
         } catch (ClassNotFoundException | IllegalAccessException
                 | InstantiationException | ClassCastException ex) {
             String error = String.format(INVALID_CLASS_FMT, className);
@@ -358,6 +399,24 @@ public class ReportGenerator {
         }
     }
 
+    private boolean isParallel() {
+        return configuration.getParallelThreads() > 1;
+    }
+
+    /**
+     * In parallel mode, let the consumer process samples on the threads of
+     * the report generator, shared with the other consumers and the parsing
+     * of the results file. Samples are still consumed in the order of the
+     * results file, so results are the same as in serial mode.
+     */
+    private SampleConsumer makeAsyncIfParallel(AbstractSampleConsumer consumer) {
+        if (isParallel()) {
+            return new AsyncSampleConsumer(consumer, consumer.getName(),
+                    executor);
+        }
+        return consumer;
+    }
+
     private ErrorsSummaryConsumer createErrorsSummaryConsumer() {
         ErrorsSummaryConsumer errorsSummaryConsumer = new ErrorsSummaryConsumer();
         errorsSummaryConsumer.setName(ERRORS_SUMMARY_CONSUMER_NAME);
@@ -371,7 +430,7 @@ public class ReportGenerator {
         excludeControllerFilter
                 .setSamplePredicate(new ControllerSamplePredicate());
         excludeControllerFilter.setReverseFilter(true);
-        excludeControllerFilter.addSampleConsumer(createErrorsSummaryConsumer());
+        excludeControllerFilter.addSampleConsumer(makeAsyncIfParallel(createErrorsSummaryConsumer()));
         return excludeControllerFilter;
     }
 
@@ -423,9 +482,9 @@ public class ReportGenerator {
                         || filteredSamplesPattern.matcher(sample.getName()).matches();
             }
         });
-        nameFilter.addSampleConsumer(createApdexSummaryConsumer());
-        nameFilter.addSampleConsumer(createRequestsSummaryConsumer());
-        nameFilter.addSampleConsumer(createStatisticsSummaryConsumer());
+        nameFilter.addSampleConsumer(makeAsyncIfParallel(createApdexSummaryConsumer()));
+        nameFilter.addSampleConsumer(makeAsyncIfParallel(createRequestsSummaryConsumer()));
+        nameFilter.addSampleConsumer(makeAsyncIfParallel(createStatisticsSummaryConsumer()));
         return nameFilter;
     }
 
@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.processor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.jmeter.report.core.Sample;
+import org.apache.jmeter.report.core.SampleException;
+import org.apache.jmeter.report.core.SampleMetadata;
+
+/**
+ * The class AsyncSampleConsumer lets a consumer process its samples on the
+ * threads of an executor, which may be shared by several consumers so that
+ * the number of threads does not depend on the number of consumers.
+ * <p>
+ * Samples are handed over in batches, in the order they are received, and
+ * the batches of a consumer are processed one at a time, so the wrapped
+ * consumer sees exactly the same samples as if it were called directly. All
+ * other calls, including {@link #startConsuming()} and
+ * {@link #stopConsuming()}, are made on the calling thread, the latter once
+ * all pending samples have been consumed; so results are written to the
+ * {@link SampleContext} by the calling thread.
+ * </p>
+ * 
+ * @since 3.1
+ */
+public class AsyncSampleConsumer implements SampleConsumer {
+
+    private static final int BATCH_SIZE = 1024;
+
+    private static final int QUEUE_SIZE = 16;
+
+    /** Marks the end of the samples */
+    private static final Batch END = new Batch(0);
+
+    private final SampleConsumer consumer;
+
+    private final String name;
+
+    private final Executor executor;
+
+    // true while a task consuming the batches is submitted or running
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final Runnable consumeTask = new Runnable() {
+        @Override
+        public void run() {
+            consumeBatches();
+        }
+    };
+
+    private BlockingQueue<Batch> queue;
+
+    private Batch current;
+
+    // Released once the end of the samples is reached or the consumer failed
+    private CountDownLatch done;
+
+    private volatile Throwable failure;
+
+    /**
+     * Instantiates a new asynchronous consumer.
+     *
+     * @param consumer
+     *            the consumer to run on the executor (must not be
+     *            {@code null})
+     * @param name
+     *            the name of the consumer, used in error messages
+     * @param executor
+     *            the executor running the consumer, whose tasks must not
+     *            wait for each other (must not be {@code null})
+     */
+    public AsyncSampleConsumer(SampleConsumer consumer, String name,
+            Executor executor) {
+        Validate.notNull(consumer, "consumer must not be null");
+        Validate.notNull(executor, "executor must not be null");
+        this.consumer = consumer;
+        this.name = name;
+        this.executor = executor;
+    }
+
+    /**
+     * Gets the wrapped consumer.
+     *
+     * @return the consumer
+     */
+    public final SampleConsumer getConsumer() {
+        return consumer;
+    }
+
+    @Override
+    public SampleContext getSampleContext() {
+        return consumer.getSampleContext();
+    }
+
+    @Override
+    public void setSampleContext(SampleContext ctx) {
+        consumer.setSampleContext(ctx);
+    }
+
+    @Override
+    public void setChannelAttribute(int channel, String key, Object value) {
+        consumer.setChannelAttribute(channel, key, value);
+    }
+
+    @Override
+    public Object getChannelAttribute(int channel, String key) {
+        return consumer.getChannelAttribute(channel, key);
+    }
+
+    @Override
+    public void setConsumedMetadata(SampleMetadata sampleMetadata, int channel) {
+        consumer.setConsumedMetadata(sampleMetadata, channel);
+    }
+
+    @Override
+    public void startConsuming() {
+        consumer.startConsuming();
+        failure = null;
+        scheduled.set(false);
+        queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        current = new Batch(BATCH_SIZE);
+        done = new CountDownLatch(1);
+    }
+
+    @Override
+    public void consume(Sample s, int channel) {
+        checkFailure();
+        current.add(s, channel);
+        if (current.isFull()) {
+            put(current);
+            current = new Batch(BATCH_SIZE);
+        }
+    }
+
+    @Override
+    public void stopConsuming() {
+        if (!current.isEmpty()) {
+            put(current);
+        }
+        current = null;
+        put(END);
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SampleException("Interrupted while waiting for "
+                    + name, e);
+        }
+        done = null;
+        queue = null;
+        checkFailure();
+        consumer.stopConsuming();
+    }
+
+    private void put(Batch batch) {
+        try {
+            while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SampleException("Interrupted while feeding " + name, e);
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(consumeTask);
+        }
+    }
+
+    private void checkFailure() {
+        Throwable t = failure;
+        if (t != null) {
+            if (t instanceof SampleException) {
+                throw (SampleException) t;
+            }
+            throw new SampleException("Consumer " + name
+                    + " failed with message :" + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * Consume at most a queue of batches, then leave the thread to other
+     * consumers
+     */
+    private void consumeBatches() {
+        try {
+            Batch batch;
+            for (int n = 0; n < QUEUE_SIZE && (batch = queue.poll()) != null; n++) {
+                if (batch == END) {
+                    done.countDown();
+                    return;
+                }
+                for (int i = 0; i < batch.size; i++) {
+                    consumer.consume(batch.samples[i], batch.channels[i]);
+                }
+            }
+        } catch (Throwable t) { // reported to the producing thread
+            failure = t;
+            done.countDown();
+            return;
+        }
+        scheduled.set(false);
+        // A batch may have been queued before the flag was reset
+        if (!queue.isEmpty()) {
+            schedule();
+        }
+    }
+
+    /**
+     * Samples handed over to the consumer thread
+     */
+    private static final class Batch {
+        private final Sample[] samples;
+        private final int[] channels;
+        private int size;
+
+        Batch(int capacity) {
+            samples = new Sample[capacity];
+            channels = new int[capacity];
+        }
+
+        void add(Sample sample, int channel) {
+            samples[size] = sample;
+            channels[size] = channel;
+            size++;
+        }
+
+        boolean isFull() {
+            return size == samples.length;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
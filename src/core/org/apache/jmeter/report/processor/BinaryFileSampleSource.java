@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.processor;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.jmeter.report.core.BinarySampleReader;
+import org.apache.jmeter.report.core.Sample;
+import org.apache.jmeter.report.core.TimeHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read a binary result file and write its samples to all the registered
+ * <code>SampleConsumer</code>s on channel 0.
+ *
+ * @see org.apache.jmeter.save.BinarySaveService
+ * @since 3.1
+ */
+public class BinaryFileSampleSource extends AbstractSampleSource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BinaryFileSampleSource.class);
+
+    private final File inputFile;
+
+    private final BinarySampleReader reader;
+
+    private final ForwardingSampleProducer producer = new ForwardingSampleProducer();
+
+    /**
+     * Build a sample source from the specified binary result file.
+     *
+     * @param inputFile
+     *            The input sample file (must not be {@code null})
+     */
+    public BinaryFileSampleSource(File inputFile) {
+        this.inputFile = inputFile;
+        this.reader = new BinarySampleReader(inputFile);
+    }
+
+    @Override
+    public void setSampleConsumers(List<SampleConsumer> consumers) {
+        producer.setSampleConsumers(consumers);
+    }
+
+    @Override
+    public void addSampleConsumer(SampleConsumer consumer) {
+        producer.addSampleConsumer(consumer);
+    }
+
+    @Override
+    public void removeSampleConsumer(SampleConsumer consumer) {
+        producer.removeSampleConsumer(consumer);
+    }
+
+    /**
+     * Read all samples of the input file and produce them on channel 0.
+     */
+    @Override
+    public void run() {
+        SampleContext context = getSampleContext();
+        Validate.validState(context != null, "Set a sample context before producing samples.");
+
+        long sampleCount = 0;
+        long start = System.currentTimeMillis();
+        producer.setSampleContext(context);
+        producer.setProducedMetadata(reader.getMetadata(), 0);
+        producer.setChannelAttribute(0, CsvFileSampleSource.SOURCE_FILE_ATTRIBUTE,
+                inputFile);
+        producer.startProducing();
+        try {
+            Sample s = null;
+            while ((s = reader.readSample()) != null) {
+                producer.produce(s, 0);
+                sampleCount++;
+            }
+        } finally {
+            producer.stopProducing();
+            reader.close();
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info("run(): " + sampleCount + " samples produced in "
+                    + TimeHelper.time(System.currentTimeMillis() - start)
+                    + " on channel 0");
+        }
+    }
+}
@@ -19,12 +19,21 @@ package org.apache.jmeter.report.processor;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import org.apache.commons.lang3.Validate;
+import org.apache.jmeter.report.core.CsvFilePartitioner;
 import org.apache.jmeter.report.core.CsvSampleReader;
 import org.apache.jmeter.report.core.Sample;
 import org.apache.jmeter.report.core.SampleException;
@@ -59,6 +68,11 @@ import org.slf4j.LoggerFactory;
  * <li>If the input file is named <code>results.csv</code> then it will
  * be produced on the channel 0.</li>
  * </ul>
+ * If more than one parallel thread is set, each file is split into
+ * partitions of whole rows that are parsed concurrently; samples are still
+ * produced in the order of the file, so consumers get the same samples as
+ * with a single thread. The partitions are parsed by a pool of that many
+ * threads, or by the executor set with {@link #setExecutor(ExecutorService)}.<br>
  *
  * @since 3.0
  */
@@ -76,7 +90,19 @@ public class CsvFileSampleSource extends AbstractSampleSource {
     private CsvSampleReader[] csvReaders;
 
     /** mock producer to produce samples to its consumers */
-    private PrivateProducer producer;
+    private ForwardingSampleProducer producer;
+
+    /** smallest partition size in bytes when parsing in parallel */
+    private static final long MIN_PARTITION_SIZE = 64 * 1024L;
+
+    /** largest partition size in bytes, bounds the memory used by parsed partitions */
+    private static final long MAX_PARTITION_SIZE = 1024 * 1024L;
+
+    /** number of threads parsing the input files */
+    private int parallelThreads = 1;
+
+    /** executor parsing the partitions, null to use a pool of parallelThreads */
+    private ExecutorService executor;
 
     /**
      * Build a sample source from the specified input file and character
@@ -126,7 +152,7 @@ public class CsvFileSampleSource extends AbstractSampleSource {
             csvReaders[k] = new CsvSampleReader(input, separator, true);
             inputFiles[k] = secondaryInputs[k - 1];
         }
-        producer = new PrivateProducer();
+        producer = new ForwardingSampleProducer();
     }
 
     private static String getFileRootName(String fName) {
@@ -148,6 +174,38 @@ public class CsvFileSampleSource extends AbstractSampleSource {
         return "";
     }
 
+    /**
+     * Gets the number of threads used to parse input files.
+     *
+     * @return the number of threads
+     */
+    public final int getParallelThreads() {
+        return parallelThreads;
+    }
+
+    /**
+     * Sets the number of threads used to parse input files, 1 to parse them
+     * in the producing thread.
+     *
+     * @param parallelThreads
+     *            the number of threads
+     */
+    public final void setParallelThreads(int parallelThreads) {
+        this.parallelThreads = Math.max(1, parallelThreads);
+    }
+
+    /**
+     * Sets the executor parsing the partitions when more than one parallel
+     * thread is set, e.g. to share its threads with the consumers.
+     *
+     * @param executor
+     *            the executor, {@code null} to parse using a pool of
+     *            {@link #getParallelThreads()} threads
+     */
+    public final void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
     /**
      * Get the current time in milliseconds
      */
@@ -184,10 +242,16 @@ public class CsvFileSampleSource extends AbstractSampleSource {
                     inputFiles[i]);
             producer.startProducing();
             try {
-                Sample s = null;
-                while ((s = csvReader.readSample()) != null) {
-                    producer.produce(s, i);
-                    sampleCount++;
+                if (parallelThreads > 1) {
+                    csvReader.close(); // only its metadata is needed
+                    sampleCount = producePartitions(inputFiles[i],
+                            csvReader.getMetadata(), i);
+                } else {
+                    Sample s = null;
+                    while ((s = csvReader.readSample()) != null) {
+                        producer.produce(s, i);
+                        sampleCount++;
+                    }
                 }
             } finally {
                 producer.stopProducing();
@@ -200,6 +264,89 @@ public class CsvFileSampleSource extends AbstractSampleSource {
         }
     }
 
+    /**
+     * Parse the partitions of the file concurrently and produce their samples
+     * in the order of the file.
+     * 
+     * @return the number of samples produced
+     */
+    private long producePartitions(final File file,
+            final SampleMetadata metadata, int channel) {
+        long[] offsets;
+        try {
+            long partitionSize = Math.max(MIN_PARTITION_SIZE, Math.min(
+                    MAX_PARTITION_SIZE, file.length() / parallelThreads));
+            offsets = CsvFilePartitioner.partition(file, partitionSize);
+        } catch (IOException e) {
+            throw new SampleException("Could not split input file "
+                    + file.getAbsolutePath(), e);
+        }
+        long sampleCount = 0;
+        int partitionCount = offsets.length - 1;
+        int maxPending = 2 * parallelThreads; // bounds memory used
+        ExecutorService partitionExecutor = executor != null ? executor
+                : Executors.newFixedThreadPool(parallelThreads);
+        Deque<Future<List<Sample>>> pending = new ArrayDeque<>();
+        try {
+            int next = 0;
+            while (next < partitionCount || !pending.isEmpty()) {
+                while (next < partitionCount && pending.size() < maxPending) {
+                    final long start = offsets[next];
+                    final long end = offsets[next + 1];
+                    pending.addLast(partitionExecutor.submit(new Callable<List<Sample>>() {
+                        @Override
+                        public List<Sample> call() {
+                            return readPartition(file, metadata, start, end);
+                        }
+                    }));
+                    next++;
+                }
+                for (Sample s : pending.removeFirst().get()) {
+                    producer.produce(s, channel);
+                    sampleCount++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SampleException("Interrupted while reading "
+                    + file.getAbsolutePath(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SampleException) {
+                throw (SampleException) cause;
+            }
+            throw new SampleException("Could not read input file "
+                    + file.getAbsolutePath(), cause);
+        } finally {
+            if (partitionExecutor != executor) {
+                partitionExecutor.shutdownNow();
+            } else {
+                for (Future<List<Sample>> future : pending) {
+                    future.cancel(true);
+                }
+            }
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("producePartitions(): " + partitionCount
+                    + " partitions read using " + parallelThreads
+                    + " threads on channel " + channel);
+        }
+        return sampleCount;
+    }
+
+    private static List<Sample> readPartition(File file,
+            SampleMetadata metadata, long start, long end) {
+        List<Sample> samples = new ArrayList<>();
+        try (CsvSampleReader reader = new CsvSampleReader(file, metadata,
+                start, end)) {
+            Sample s = null;
+            while ((s = reader.readSample()) != null) {
+                samples.add(s);
+            }
+        }
+        return samples;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -246,111 +393,4 @@ public class CsvFileSampleSource extends AbstractSampleSource {
         produce();
     }
 
-    private class PrivateProducer extends AbstractSampleProcessor implements
-            SampleProducer {
-
-        private List<SampleConsumer> sampleConsumers = new ArrayList<>();
-
-        /**
-         * Set the consumers for the samples that are to be consumed
-         *
-         * @param consumers
-         *            list of consumers for the samples (must not be
-         *            {@code null})
-         */
-        public void setSampleConsumers(List<SampleConsumer> consumers) {
-            Validate.notNull(consumers, "consumers must not be null");
-
-            this.sampleConsumers = consumers;
-        }
-
-        public void addSampleConsumer(SampleConsumer consumer) {
-            if (consumer == null) {
-                return;
-            }
-            this.sampleConsumers.add(consumer);
-        }
-
-        public void removeSampleConsumer(SampleConsumer consumer) {
-            if (consumer == null) {
-                return;
-            }
-            this.sampleConsumers.remove(consumer);
-        }
-
-        @Override
-        public void setSampleContext(SampleContext context) {
-            for (SampleConsumer consumer : this.sampleConsumers) {
-                try {
-                    consumer.setSampleContext(context);
-                } catch (Exception e) {
-                    throw new SampleException("Consumer failed with message :"
-                            + e.getMessage(), e);
-                }
-            }
-        }
-
-        @Override
-        public void setProducedMetadata(SampleMetadata metadata, int channel) {
-            for (SampleConsumer consumer : this.sampleConsumers) {
-                try {
-                    consumer.setConsumedMetadata(metadata, channel);
-                } catch (Exception e) {
-                    throw new SampleException("Consumer failed with message :"
-                            + e.getMessage(), e);
-                }
-            }
-        }
-
-        @Override
-        public void setChannelAttribute(int channel, String key, Object value) {
-            super.setChannelAttribute(channel, key, value);
-            // propagate to this mock producer's consumers
-            for (SampleConsumer consumer : this.sampleConsumers) {
-                try {
-                    consumer.setChannelAttribute(channel, key, value);
-                } catch (Exception e) {
-                    throw new SampleException("Consumer failed with message :"
-                            + e.getMessage(), e);
-                }
-            }
-        }
-
-        @Override
-        public void startProducing() {
-            for (SampleConsumer consumer : this.sampleConsumers) {
-                try {
-                    consumer.startConsuming();
-                } catch (Exception e) {
-                    throw new SampleException("Consumer failed with message :"
-                            + e.getMessage(), e);
-                }
-            }
-        }
-
-        @Override
-        public void produce(Sample s, int channel) {
-            for (SampleConsumer consumer : this.sampleConsumers) {
-                try {
-                    consumer.consume(s, channel);
-                } catch (Exception e) {
-                    throw new SampleException("Consumer failed with message :"
-                            + e.getMessage(), e);
-                }
-            }
-        }
-
-        @Override
-        public void stopProducing() {
-            for (SampleConsumer consumer : this.sampleConsumers) {
-                try {
-                    consumer.stopConsuming();
-                } catch (Exception e) {
-                    throw new SampleException("Consumer failed with message :"
-                            + e.getMessage(), e);
-                }
-            }
-        }
-    }
-
 }
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.processor;
+
+import org.apache.jmeter.report.config.ReportGeneratorConfiguration;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.math.LogLinearHistogram;
+
+/**
+ * The class HistogramPercentileAggregator is used to get percentile from
+ * samples using a fixed size histogram.
+ * <p>
+ * Unlike {@link PercentileAggregator}, memory does not depend on the number
+ * of samples and no sample is discarded; values are rounded to the nearest
+ * long and reported within a relative error of
+ * 2<sup>-(precision-1)</sup>. Aggregators with the same precision can be
+ * merged, e.g. after aggregating partitions of the samples separately.
+ *
+ * @since 3.1
+ */
+public class HistogramPercentileAggregator implements Aggregator {
+
+    /** Precision in bits of the histograms used by the report generator */
+    public static final int DEFAULT_PRECISION = JMeterUtils.getPropDefault(
+            ReportGeneratorConfiguration.REPORT_GENERATOR_KEY_PREFIX
+                    + ReportGeneratorConfiguration.KEY_DELIMITER
+                    + "statistic_histogram_precision", LogLinearHistogram.DEFAULT_PRECISION);
+
+    private final LogLinearHistogram histogram;
+    private final double percentileIndex;
+
+    /**
+     * Instantiates a new histogram percentile aggregator with
+     * {@link #DEFAULT_PRECISION}.
+     *
+     * @param index
+     *            the index of the percentile
+     */
+    public HistogramPercentileAggregator(double index) {
+        this(index, DEFAULT_PRECISION);
+    }
+
+    /**
+     * Instantiates a new histogram percentile aggregator.
+     *
+     * @param index
+     *            the index of the percentile
+     * @param precision
+     *            the number of significant bits kept for each value
+     */
+    public HistogramPercentileAggregator(double index, int precision) {
+        histogram = new LogLinearHistogram(precision);
+        percentileIndex = index;
+    }
+
+    /**
+     * Instantiates a new histogram percentile aggregator reading another
+     * percentile from the histogram of an existing aggregator, so several
+     * percentiles of the same values take the memory of a single histogram.
+     * The values added to either aggregator are aggregated by both, so they
+     * must be added only once.
+     *
+     * @param index
+     *            the index of the percentile
+     * @param shared
+     *            the aggregator whose histogram is shared
+     */
+    public HistogramPercentileAggregator(double index,
+            HistogramPercentileAggregator shared) {
+        histogram = shared.histogram;
+        percentileIndex = index;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.jmeter.report.processor.Aggregator#getCount()
+     */
+    @Override
+    public long getCount() {
+        return histogram.getTotalCount();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.jmeter.report.processor.Aggregator#getResult()
+     */
+    @Override
+    public double getResult() {
+        if (histogram.getTotalCount() == 0) {
+            return Double.NaN; // Same as DescriptiveStatistics
+        }
+        return histogram.getValueAtPercent(percentileIndex / 100);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.jmeter.report.processor.Aggregator#addValue(double)
+     */
+    @Override
+    public void addValue(double value) {
+        histogram.recordValue(Math.round(value));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.jmeter.report.processor.Aggregator#reset()
+     */
+    @Override
+    public void reset() {
+        histogram.reset();
+    }
+
+    /**
+     * Adds the values aggregated by another aggregator to this one.
+     *
+     * @param other
+     *            the aggregator to merge, must have the same precision
+     */
+    public void merge(HistogramPercentileAggregator other) {
+        histogram.add(other.histogram.snapshot());
+    }
+
+    /**
+     * Gets the percentile index.
+     *
+     * @return the percentile index
+     */
+    public final double getPercentileIndex() {
+        return percentileIndex;
+    }
+}
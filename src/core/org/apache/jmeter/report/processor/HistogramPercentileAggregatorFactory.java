@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.processor;
+
+/**
+ * A factory for creating HistogramPercentileAggregator.
+ *
+ * @since 3.1
+ */
+public class HistogramPercentileAggregatorFactory extends AbstractAggregatorFactory {
+
+    private double percentileIndex;
+
+    private int precision = HistogramPercentileAggregator.DEFAULT_PRECISION;
+
+    /**
+     * Gets the percentile index.
+     *
+     * @return the percentile index
+     */
+    public final double getPercentileIndex() {
+        return percentileIndex;
+    }
+
+    /**
+     * Sets the percentile index.
+     *
+     * @param percentileIndex
+     *            the index of the percentile to set
+     */
+    public void setPercentileIndex(double percentileIndex) {
+        this.percentileIndex = percentileIndex;
+    }
+
+    /**
+     * Gets the precision of the histograms.
+     *
+     * @return the number of significant bits kept for each value
+     */
+    public final int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Sets the precision of the histograms.
+     *
+     * @param precision
+     *            the number of significant bits kept for each value
+     */
+    public void setPrecision(int precision) {
+        this.precision = precision;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.AbstractAggregatorFactory#createAggregator
+     * ()
+     */
+    @Override
+    protected Aggregator createAggregator() {
+        return new HistogramPercentileAggregator(percentileIndex, precision);
+    }
+
+}
@@ -18,7 +18,6 @@
 package org.apache.jmeter.report.processor;
 
 import java.text.SimpleDateFormat;
-import java.util.Date;
 
 import org.apache.jmeter.report.core.Sample;
 import org.apache.jmeter.report.core.SampleException;
@@ -32,6 +31,10 @@ import org.apache.log.Logger;
 /**
  * Consume samples using the JMeter timestamp property (defaulting to {@link SampleSaveConfiguration#MILLISECONDS}) and reproduce them as a long
  * value (for faster treatment later in the consuming chain).
+ * <p>
+ * Rows standing for several samples, saved with a sample count by the Statistical and Histogram
+ * remote modes, are reproduced as that many samples sharing their elapsed time, latency and
+ * connect time, the first ones being the failed samples.
  * 
  * @since 3.0
  */
@@ -64,10 +67,26 @@ public class NormalizerSampleConsumer extends AbstractSampleConsumer {
 
     private SampleMetadata sampleMetadata;
 
+    /**
+     * indexes of the columns of rows standing for several samples, -1 if not saved
+     */
+    private int sampleCount;
+    private int errorCount;
+    private int elapsed;
+    private int latency;
+    private int connect;
+    private int success;
+
     @Override
     public void startConsuming() {
         sampleMetadata = getConsumedMetadata(0);
         timestamp = sampleMetadata.ensureIndexOf(CSVSaveService.TIME_STAMP);
+        sampleCount = sampleMetadata.indexOf(CSVSaveService.CSV_SAMPLE_COUNT);
+        errorCount = sampleMetadata.indexOf(CSVSaveService.CSV_ERROR_COUNT);
+        elapsed = sampleMetadata.indexOf(CSVSaveService.CSV_ELAPSED);
+        latency = sampleMetadata.indexOf(CSVSaveService.CSV_LATENCY);
+        connect = sampleMetadata.indexOf(CSVSaveService.CSV_CONNECT_TIME);
+        success = sampleMetadata.indexOf(CSVSaveService.SUCCESSFUL);
         super.setProducedMetadata(sampleMetadata, 0);
         startProducing();
     }
@@ -93,20 +112,27 @@ public class NormalizerSampleConsumer extends AbstractSampleConsumer {
 
     @Override
     public void consume(Sample s, int channel) {
-        Date date = null;
-        try {
-            String tStr = s.getData(timestamp);
-            if(isMillisFormat) {
-                date = new Date(Long.parseLong(tStr));
-            } else {
-                date = dateFormat.parse(tStr);                    
+        if (sampleCount >= 0) {
+            int count = Integer.parseInt(s.getData(sampleCount));
+            if (count > 1) {
+                expand(s, count);
+                return;
             }
-        } catch (Exception e) {
-            throw new SampleException(String.format(
-                    PARSE_TIMESTAMP_EXCEPTION_MESSAGE, s.getData(timestamp),
-                    TIMESTAMP_FORMAT, s.toString()), e);
         }
-        long time = date.getTime();
+        if(isMillisFormat) {
+            // Time stamp is already normalized, keep the sample as is
+            // so lazily parsed samples are not turned into strings
+            try {
+                s.getTimestamp();
+            } catch (Exception e) {
+                throw new SampleException(String.format(
+                        PARSE_TIMESTAMP_EXCEPTION_MESSAGE, s.getData(timestamp),
+                        TIMESTAMP_FORMAT, s.toString()), e);
+            }
+            super.produce(s, 0);
+            return;
+        }
+        long time = parseTime(s);
         int cc = sampleMetadata.getColumnCount();
         String[] data = new String[cc];
         for (int i = 0; i < cc; i++) {
@@ -120,6 +146,57 @@ public class NormalizerSampleConsumer extends AbstractSampleConsumer {
         super.produce(rewrited, 0);
     }
 
+    /**
+     * Produce the samples a row stands for
+     * @param s the row
+     * @param count number of samples of the row
+     */
+    private void expand(Sample s, int count) {
+        int failures = errorCount >= 0 ? Integer.parseInt(s.getData(errorCount)) : 0;
+        String time = isMillisFormat ? s.getData(timestamp) : Long.toString(parseTime(s));
+        int cc = sampleMetadata.getColumnCount();
+        for (int n = 0; n < count; n++) {
+            String[] data = new String[cc];
+            for (int i = 0; i < cc; i++) {
+                data[i] = s.getData(i);
+            }
+            data[timestamp] = time;
+            data[sampleCount] = "1"; // $NON-NLS-1$
+            if (errorCount >= 0) {
+                data[errorCount] = n < failures ? "1" : "0"; // $NON-NLS-1$ // $NON-NLS-2$
+            }
+            if (success >= 0) {
+                data[success] = Boolean.toString(n >= failures);
+            }
+            share(s, data, elapsed, n, count);
+            share(s, data, latency, n, count);
+            share(s, data, connect, n, count);
+            super.produce(new Sample(s.getSampleRow(), sampleMetadata, data), 0);
+        }
+    }
+
+    /**
+     * Set the share of the n-th sample of a column holding the total of count samples
+     */
+    private static void share(Sample s, String[] data, int index, int n, int count) {
+        if (index >= 0) {
+            long total = Long.parseLong(s.getData(index));
+            // Spread the remainder so the shares add up to the total
+            long value = total / count + (n < total % count ? 1 : 0);
+            data[index] = Long.toString(value);
+        }
+    }
+
+    private long parseTime(Sample s) {
+        try {
+            return dateFormat.parse(s.getData(timestamp)).getTime();
+        } catch (Exception e) {
+            throw new SampleException(String.format(
+                    PARSE_TIMESTAMP_EXCEPTION_MESSAGE, s.getData(timestamp),
+                    TIMESTAMP_FORMAT, s.toString()), e);
+        }
+    }
+
     @Override
     public void stopConsuming() {
         super.stopProducing();
@@ -17,13 +17,31 @@
  */
 package org.apache.jmeter.report.processor;
 
+import org.apache.jmeter.report.config.ReportGeneratorConfiguration;
+import org.apache.jmeter.util.JMeterUtils;
+
 /**
  * A factory for creating PercentileAggregator objects.
+ * <p>
+ * If the property <code>jmeter.reportgenerator.statistic_mode</code> is
+ * <code>histogram</code>, {@link HistogramPercentileAggregator} are created
+ * instead.
  *
  * @since 3.0
  */
 public class PercentileAggregatorFactory extends AbstractAggregatorFactory {
 
+    /** Percentiles are computed on a sliding window of samples */
+    public static final String STATISTIC_MODE_WINDOW = "window";
+
+    /** Percentiles are computed on a fixed size histogram of all samples */
+    public static final String STATISTIC_MODE_HISTOGRAM = "histogram";
+
+    private static final String STATISTIC_MODE = JMeterUtils.getPropDefault(
+            ReportGeneratorConfiguration.REPORT_GENERATOR_KEY_PREFIX
+                    + ReportGeneratorConfiguration.KEY_DELIMITER
+                    + "statistic_mode", STATISTIC_MODE_WINDOW);
+
     private double percentileIndex;
 
     /**
@@ -54,7 +72,34 @@ public class PercentileAggregatorFactory extends AbstractAggregatorFactory {
      */
     @Override
     protected Aggregator createAggregator() {
-        return new PercentileAggregator(percentileIndex);
+        return createPercentileAggregator(percentileIndex);
+    }
+
+    /**
+     * Checks whether percentiles are computed on histograms.
+     *
+     * @return true if property
+     *         <code>jmeter.reportgenerator.statistic_mode</code> is
+     *         <code>histogram</code>
+     */
+    public static boolean isHistogramMode() {
+        return STATISTIC_MODE_HISTOGRAM.equalsIgnoreCase(STATISTIC_MODE.trim());
+    }
+
+    /**
+     * Creates a percentile aggregator depending on
+     * <code>jmeter.reportgenerator.statistic_mode</code>.
+     *
+     * @param index
+     *            the index of the percentile
+     * @return a {@link HistogramPercentileAggregator} in histogram mode, a
+     *         {@link PercentileAggregator} otherwise
+     */
+    public static Aggregator createPercentileAggregator(double index) {
+        if (isHistogramMode()) {
+            return new HistogramPercentileAggregator(index);
+        }
+        return new PercentileAggregator(index);
     }
 
 }
@@ -18,6 +18,7 @@
 package org.apache.jmeter.report.processor;
 
 import org.apache.jmeter.report.core.Sample;
+import org.apache.jmeter.save.CSVSaveService;
 import org.apache.jmeter.util.JMeterUtils;
 
 /**
@@ -25,6 +26,11 @@ import org.apache.jmeter.util.JMeterUtils;
  * The class ErrorSummaryConsumer provides a consumer that calculates error
  * statistics.
  * </p>
+ * <p>
+ * When the samples record their intended start time, the percentiles and the
+ * max of the elapsed times measured from the intended start times are added
+ * after the raw ones.
+ * </p>
  * 
  * @since 3.0
  */
@@ -39,6 +45,9 @@ public class StatisticsSummaryConsumer extends
     private static final int PERCENTILE_INDEX3 = JMeterUtils.getPropDefault(
         "aggregate_rpt_pct3", 99);
 
+    // true if the samples record their intended start time
+    private boolean correctedTimes;
+
     /**
      * Instantiates a new statistics summary consumer.
      */
@@ -46,6 +55,25 @@ public class StatisticsSummaryConsumer extends
         super(true);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.AbstractSummaryConsumer#startConsuming
+     * ()
+     */
+    @Override
+    public void startConsuming() {
+        correctedTimes = false;
+        int channelCount = getConsumedChannelCount();
+        for (int i = 0; i < channelCount; i++) {
+            if (getConsumedMetadata(i).indexOf(CSVSaveService.CSV_INTENDED_START_TIME) >= 0) {
+                correctedTimes = true;
+            }
+        }
+        super.startConsuming();
+    }
+
     void aggregateSample(Sample sample, StatisticsSummaryData data) {
         data.incTotal();
         data.incBytes(sample.getSentBytes());
@@ -55,13 +83,17 @@ public class StatisticsSummaryConsumer extends
         }
 
         long elapsedTime = sample.getElapsedTime();
-        data.getPercentile1().addValue(elapsedTime);
-        data.getPercentile2().addValue(elapsedTime);
-        data.getPercentile3().addValue(elapsedTime);
+        data.addPercentileValue(elapsedTime);
 
         data.setMin(elapsedTime);
         data.setMax(elapsedTime);
 
+        if (data.hasCorrectedTimes()) {
+            long correctedTime = sample.getCorrectedElapsedTime();
+            data.addCorrectedPercentileValue(correctedTime);
+            data.setCorrectedMax(correctedTime);
+        }
+
         data.setFirstTime(sample.getStartTime());
 
         data.setEndTime(sample.getEndTime());
@@ -81,14 +113,14 @@ public class StatisticsSummaryConsumer extends
         StatisticsSummaryData overallData = overallInfo.getData();
         if (overallData == null) {
             overallData = new StatisticsSummaryData(PERCENTILE_INDEX1,
-                            PERCENTILE_INDEX2, PERCENTILE_INDEX3);
+                            PERCENTILE_INDEX2, PERCENTILE_INDEX3, correctedTimes);
             overallInfo.setData(overallData);
             }
 
         StatisticsSummaryData data = info.getData();
         if (data == null) {
             data = new StatisticsSummaryData(PERCENTILE_INDEX1,
-                        PERCENTILE_INDEX2, PERCENTILE_INDEX3);
+                        PERCENTILE_INDEX2, PERCENTILE_INDEX3, correctedTimes);
             info.setData(data);
         }
 
@@ -121,6 +153,12 @@ public class StatisticsSummaryConsumer extends
         result.addResult(new ValueResultData(Double.valueOf(data.getKBytesPerSecond())));
         result.addResult(new ValueResultData(Long.valueOf(data.getMin())));
         result.addResult(new ValueResultData(Long.valueOf(data.getMax())));
+        if (data.hasCorrectedTimes()) {
+            result.addResult(new ValueResultData(Double.valueOf(data.getCorrectedPercentile1().getResult())));
+            result.addResult(new ValueResultData(Double.valueOf(data.getCorrectedPercentile2().getResult())));
+            result.addResult(new ValueResultData(Double.valueOf(data.getCorrectedPercentile3().getResult())));
+            result.addResult(new ValueResultData(Long.valueOf(data.getCorrectedMax())));
+        }
         return result;
     }
 
@@ -170,6 +208,21 @@ public class StatisticsSummaryConsumer extends
         titles.addResult(new ValueResultData(JMeterUtils.getResString("reportgenerator_summary_statistics_kbytes")));
         titles.addResult(new ValueResultData(JMeterUtils.getResString("reportgenerator_summary_statistics_min")));
         titles.addResult(new ValueResultData(JMeterUtils.getResString("reportgenerator_summary_statistics_max")));
+        if (correctedTimes) {
+            titles.addResult(new ValueResultData(
+                String.format(
+                    JMeterUtils.getResString("reportgenerator_summary_statistics_corrected_percentile_fmt"),
+                    Integer.valueOf(PERCENTILE_INDEX1))));
+            titles.addResult(new ValueResultData(
+                String.format(
+                    JMeterUtils.getResString("reportgenerator_summary_statistics_corrected_percentile_fmt"),
+                    Integer.valueOf(PERCENTILE_INDEX2))));
+            titles.addResult(new ValueResultData(
+                String.format(
+                    JMeterUtils.getResString("reportgenerator_summary_statistics_corrected_percentile_fmt"),
+                    Integer.valueOf(PERCENTILE_INDEX3))));
+            titles.addResult(new ValueResultData(JMeterUtils.getResString("reportgenerator_summary_statistics_corrected_max")));
+        }
         return titles;
     }
 
@@ -31,11 +31,18 @@ public class StatisticsSummaryData {
     private long bytes = 0L;
     private long errors = 0L;
     private long total = 0L;
-    private final PercentileAggregator percentile1;
-    private final PercentileAggregator percentile2;
-    private final PercentileAggregator percentile3;
+    private final Aggregator percentile1;
+    private final Aggregator percentile2;
+    private final Aggregator percentile3;
     private long min = Long.MAX_VALUE;
     private long max = Long.MIN_VALUE;
+    // Elapsed times measured from the intended start times, null if not recorded
+    private final Aggregator correctedPercentile1;
+    private final Aggregator correctedPercentile2;
+    private final Aggregator correctedPercentile3;
+    private long correctedMax = Long.MIN_VALUE;
+    // true if the percentiles of the same values share a single histogram
+    private final boolean sharedPercentiles;
 
     public long getElapsedTime() {
         return endTime - firstTime;
@@ -161,7 +168,7 @@ public class StatisticsSummaryData {
     /**
      * @return the percentile1
      */
-    public final PercentileAggregator getPercentile1() {
+    public final Aggregator getPercentile1() {
         return percentile1;
     }
 
@@ -170,7 +177,7 @@ public class StatisticsSummaryData {
      *
      * @return the percentile2
      */
-    public final PercentileAggregator getPercentile2() {
+    public final Aggregator getPercentile2() {
         return percentile2;
     }
 
@@ -179,18 +186,139 @@ public class StatisticsSummaryData {
      *
      * @return the percentile3
      */
-    public final PercentileAggregator getPercentile3() {
+    public final Aggregator getPercentile3() {
         return percentile3;
     }
 
+    /**
+     * Checks whether the elapsed times corrected with the intended start times
+     * of the samples are computed.
+     *
+     * @return true if the corrected percentiles and max are available
+     * @since 3.1
+     */
+    public final boolean hasCorrectedTimes() {
+        return correctedPercentile1 != null;
+    }
+
+    /**
+     * @return the corrected max
+     * @since 3.1
+     */
+    public final long getCorrectedMax() {
+        return correctedMax;
+    }
+
+    /**
+     * @param correctedMax
+     *            the corrected max to set
+     * @since 3.1
+     */
+    public final void setCorrectedMax(long correctedMax) {
+        this.correctedMax = Math.max(this.correctedMax, correctedMax);
+    }
+
+    /**
+     * Adds an elapsed time to the percentiles.
+     *
+     * @param elapsedTime
+     *            the elapsed time of a sample
+     * @since 3.1
+     */
+    public void addPercentileValue(long elapsedTime) {
+        addValue(percentile1, percentile2, percentile3, elapsedTime);
+    }
+
+    /**
+     * Adds a corrected elapsed time to the corrected percentiles, which must
+     * be computed.
+     *
+     * @param correctedTime
+     *            the elapsed time of a sample measured from its intended start
+     *            time
+     * @since 3.1
+     */
+    public void addCorrectedPercentileValue(long correctedTime) {
+        addValue(correctedPercentile1, correctedPercentile2,
+                correctedPercentile3, correctedTime);
+    }
+
+    private void addValue(Aggregator aggregator1, Aggregator aggregator2,
+            Aggregator aggregator3, long value) {
+        aggregator1.addValue(value);
+        if (!sharedPercentiles) {
+            aggregator2.addValue(value);
+            aggregator3.addValue(value);
+        }
+    }
+
+    /**
+     * @return the percentile1 of the corrected elapsed times, null if not computed
+     * @since 3.1
+     */
+    public final Aggregator getCorrectedPercentile1() {
+        return correctedPercentile1;
+    }
+
+    /**
+     * @return the percentile2 of the corrected elapsed times, null if not computed
+     * @since 3.1
+     */
+    public final Aggregator getCorrectedPercentile2() {
+        return correctedPercentile2;
+    }
+
+    /**
+     * @return the percentile3 of the corrected elapsed times, null if not computed
+     * @since 3.1
+     */
+    public final Aggregator getCorrectedPercentile3() {
+        return correctedPercentile3;
+    }
+
     /**
      * Instantiates a new statistics info.
      */
     public StatisticsSummaryData(long percentileIndex1, long percentileIndex2,
             long percentileIndex3) {
-        percentile1 = new PercentileAggregator(percentileIndex1);
-        percentile2 = new PercentileAggregator(percentileIndex2);
-        percentile3 = new PercentileAggregator(percentileIndex3);
+        this(percentileIndex1, percentileIndex2, percentileIndex3, false);
+    }
+
+    /**
+     * Instantiates a new statistics info.
+     * <p>
+     * In histogram mode, the three percentiles are read from a single
+     * histogram, and so are the corrected ones.
+     *
+     * @param correctedTimes
+     *            true to also compute the percentiles and max of the elapsed
+     *            times measured from the intended start times
+     * @since 3.1
+     */
+    public StatisticsSummaryData(long percentileIndex1, long percentileIndex2,
+            long percentileIndex3, boolean correctedTimes) {
+        sharedPercentiles = PercentileAggregatorFactory.isHistogramMode();
+        percentile1 = PercentileAggregatorFactory.createPercentileAggregator(percentileIndex1);
+        percentile2 = createPercentileAggregator(percentileIndex2, percentile1);
+        percentile3 = createPercentileAggregator(percentileIndex3, percentile1);
+        if (correctedTimes) {
+            correctedPercentile1 = PercentileAggregatorFactory.createPercentileAggregator(percentileIndex1);
+            correctedPercentile2 = createPercentileAggregator(percentileIndex2, correctedPercentile1);
+            correctedPercentile3 = createPercentileAggregator(percentileIndex3, correctedPercentile1);
+        } else {
+            correctedPercentile1 = null;
+            correctedPercentile2 = null;
+            correctedPercentile3 = null;
+        }
+    }
+
+    private Aggregator createPercentileAggregator(long percentileIndex,
+            Aggregator first) {
+        if (sharedPercentiles) {
+            return new HistogramPercentileAggregator(percentileIndex,
+                    (HistogramPercentileAggregator) first);
+        }
+        return PercentileAggregatorFactory.createPercentileAggregator(percentileIndex);
     }
 
     /**
@@ -452,6 +452,27 @@ public abstract class AbstractGraphConsumer extends AbstractSampleConsumer {
         return result;
     }
 
+    /**
+     * Gets the key of the value a series gets from a sample. By default, all
+     * the series of a sample share the key given by the keys selector;
+     * consumers whose series are plotted against different keys override
+     * this.
+     *
+     * @param groupName
+     *            the name of the group of the series
+     * @param seriesName
+     *            the name of the series
+     * @param sample
+     *            the sample
+     * @param key
+     *            the key given by the keys selector
+     * @return the key of the value of the series
+     * @since 3.1
+     */
+    protected Double selectKey(String groupName, String seriesName, Sample sample, Double key) {
+        return key;
+    }
+
     /**
      * Inherited classes can add properties to the result
      *
@@ -516,11 +537,12 @@ public abstract class AbstractGraphConsumer extends AbstractSampleConsumer {
                 // Get the value to aggregate and dispatch it to the groupData
                 double value = groupInfo.getValueSelector().select(seriesName,
                         sample);
+                Double seriesKey = selectKey(entryGroup.getKey(), seriesName, sample, key);
 
-                aggregateValue(factory, seriesData, key, value);
+                aggregateValue(factory, seriesData, seriesKey, value);
                 if (overallSeries) {
                     SeriesData overallData = groupData.getOverallSeries();
-                    aggregateValue(factory, overallData, key, value);
+                    aggregateValue(factory, overallData, seriesKey, value);
                 }
 
             }
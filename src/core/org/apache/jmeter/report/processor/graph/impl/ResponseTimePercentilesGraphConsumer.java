@@ -17,25 +17,56 @@
  */
 package org.apache.jmeter.report.processor.graph.impl;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.jmeter.report.core.Sample;
+import org.apache.jmeter.report.processor.HistogramPercentileAggregator;
 import org.apache.jmeter.report.processor.MapResultData;
+import org.apache.jmeter.report.processor.PercentileAggregatorFactory;
 import org.apache.jmeter.report.processor.SumAggregatorFactory;
 import org.apache.jmeter.report.processor.graph.AbstractGraphConsumer;
 import org.apache.jmeter.report.processor.graph.CountValueSelector;
 import org.apache.jmeter.report.processor.graph.GraphKeysSelector;
+import org.apache.jmeter.report.processor.graph.GroupData;
 import org.apache.jmeter.report.processor.graph.GroupInfo;
 import org.apache.jmeter.report.processor.graph.NameSeriesSelector;
+import org.apache.jmeter.report.processor.graph.SeriesData;
+import org.apache.jmeter.save.CSVSaveService;
+import org.apache.jorphan.math.LogLinearHistogram;
 
 /**
  * The Class ResponseTimePercentilesGraphConsumer.
+ * <p>
+ * In histogram statistic mode (see {@link PercentileAggregatorFactory}),
+ * elapsed times are grouped in the buckets of a {@link LogLinearHistogram}, so
+ * the number of points kept does not grow with the number of distinct elapsed
+ * times.
+ * <p>
+ * When the samples record their intended start time, each sample name also
+ * has a series of the elapsed times measured from the intended start times,
+ * named after {@link #CORRECTED_SERIES_FORMAT}. These series are kept in their
+ * own group, so they are not mistaken for the series of a sample whose name
+ * ends like the format; should their names clash, the format is applied again.
  *
  * @since 3.0
  */
 public class ResponseTimePercentilesGraphConsumer extends AbstractGraphConsumer {
 
+    /** The format of the name of the series of the corrected elapsed times. */
+    public static final String CORRECTED_SERIES_FORMAT = "%s-Corrected";
+
+    // Group of the series of the corrected elapsed times, named after the samples until they are stored
+    private static final String CORRECTED_GROUP = "Corrected"; // $NON-NLS-1$
+
+    // true if the samples record their intended start time
+    private boolean correctedTimes;
+
     /**
      * Instantiates a new response time percentiles graph consumer.
      */
@@ -51,6 +82,17 @@ public class ResponseTimePercentilesGraphConsumer extends AbstractGraphConsumer
      */
     @Override
     protected final GraphKeysSelector createKeysSelector() {
+        if (PercentileAggregatorFactory.isHistogramMode()) {
+            return new GraphKeysSelector() {
+
+                @Override
+                public Double select(Sample sample) {
+                    return Double.valueOf(LogLinearHistogram.getEquivalentValue(
+                            sample.getElapsedTime(),
+                            HistogramPercentileAggregator.DEFAULT_PRECISION));
+                }
+            };
+        }
         return new GraphKeysSelector() {
 
             @Override
@@ -60,6 +102,27 @@ public class ResponseTimePercentilesGraphConsumer extends AbstractGraphConsumer
         };
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.jmeter.report.processor.graph.AbstractGraphConsumer#
+     * selectKey(java.lang.String, java.lang.String,
+     * org.apache.jmeter.report.core.Sample,
+     * java.lang.Double)
+     */
+    @Override
+    protected Double selectKey(String groupName, String seriesName, Sample sample, Double key) {
+        if (!CORRECTED_GROUP.equals(groupName)) {
+            return key;
+        }
+        long correctedTime = sample.getCorrectedElapsedTime();
+        if (PercentileAggregatorFactory.isHistogramMode()) {
+            return Double.valueOf(LogLinearHistogram.getEquivalentValue(
+                    correctedTime, HistogramPercentileAggregator.DEFAULT_PRECISION));
+        }
+        return Double.valueOf(correctedTime);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -68,12 +131,24 @@ public class ResponseTimePercentilesGraphConsumer extends AbstractGraphConsumer
      */
     @Override
     protected Map<String, GroupInfo> createGroupInfos() {
-        HashMap<String, GroupInfo> groupInfos = new HashMap<>(1);
+        HashMap<String, GroupInfo> groupInfos = new HashMap<>(2);
 
         groupInfos.put(AbstractGraphConsumer.DEFAULT_GROUP, new GroupInfo(
                 new SumAggregatorFactory(), new NameSeriesSelector(),
                 new CountValueSelector(), false, false));
 
+        groupInfos.put(CORRECTED_GROUP, new GroupInfo(
+                new SumAggregatorFactory(), new NameSeriesSelector() {
+
+                    @Override
+                    public Iterable<String> select(Sample sample) {
+                        if (!correctedTimes) {
+                            return Collections.emptyList();
+                        }
+                        return Arrays.asList(sample.getName());
+                    }
+                }, new CountValueSelector(), false, false));
+
         return groupInfos;
     }
 
@@ -87,4 +162,49 @@ public class ResponseTimePercentilesGraphConsumer extends AbstractGraphConsumer
     protected void initializeExtraResults(MapResultData parentResult) {
         // do nothing
     }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.graph.AbstractGraphConsumer#startConsuming
+     * ()
+     */
+    @Override
+    public void startConsuming() {
+        correctedTimes = false;
+        int channelCount = getConsumedChannelCount();
+        for (int i = 0; i < channelCount; i++) {
+            if (getConsumedMetadata(i).indexOf(CSVSaveService.CSV_INTENDED_START_TIME) >= 0) {
+                correctedTimes = true;
+            }
+        }
+        super.startConsuming();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.graph.AbstractGraphConsumer#stopConsuming
+     * ()
+     */
+    @Override
+    public void stopConsuming() {
+        // Name the corrected series, unlike the series of the samples
+        GroupData correctedData = getGroupInfos().get(CORRECTED_GROUP).getGroupData();
+        Set<String> names = new HashSet<>(getGroupInfos()
+                .get(AbstractGraphConsumer.DEFAULT_GROUP).getGroupData()
+                .getSeriesInfo().keySet());
+        Map<String, SeriesData> corrected = new TreeMap<>(correctedData.getSeriesInfo());
+        correctedData.getSeriesInfo().clear();
+        for (Map.Entry<String, SeriesData> entry : corrected.entrySet()) {
+            String name = String.format(CORRECTED_SERIES_FORMAT, entry.getKey());
+            while (!names.add(name)) {
+                name = String.format(CORRECTED_SERIES_FORMAT, name);
+            }
+            correctedData.getSeriesInfo().put(name, entry.getValue());
+        }
+        super.stopConsuming();
+    }
 }
@@ -0,0 +1,443 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.reporters;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleSaveConfiguration;
+import org.apache.jmeter.save.BinaryResultWriter;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.collections.ConcurrentRingBuffer;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.apache.log.Logger;
+
+/**
+ * Writes the samples of a results file from a dedicated thread.
+ * <p>
+ * Sampler threads hand off samples to a bounded lock-free ring buffer and go
+ * on; the writer thread formats them in batches and flushes the file whenever
+ * it has caught up. When the buffer is full, the
+ * <code>jmeter.save.saveservice.async.overflow</code> property decides what
+ * sampler threads do:
+ * <ul>
+ * <li><code>block</code> - wait for the writer thread to make room (default),
+ * no sample is lost</li>
+ * <li><code>drop</code> - discard the sample, the number of discarded samples
+ * is logged at the end of the test</li>
+ * <li><code>spill</code> - serialize the sample to a temporary file next to
+ * the results file, replayed by the writer thread once it has caught up.
+ * Spilled samples may be written after samples submitted later</li>
+ * </ul>
+ * The sample results must not be modified once handed off, which is the case
+ * of the samples produced by JMeter.
+ *
+ * @since 3.1
+ */
+final class AsyncResultWriter {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    /** Sampler threads wait when the buffer is full */
+    static final String OVERFLOW_BLOCK = "block"; // $NON-NLS-1$
+
+    /** Samples are discarded when the buffer is full */
+    static final String OVERFLOW_DROP = "drop"; // $NON-NLS-1$
+
+    /** Samples are written to a temporary file when the buffer is full */
+    static final String OVERFLOW_SPILL = "spill"; // $NON-NLS-1$
+
+    static final int QUEUE_SIZE =
+            JMeterUtils.getPropDefault("jmeter.save.saveservice.async.queue_size", 65536); // $NON-NLS-1$
+
+    static final String OVERFLOW =
+            JMeterUtils.getPropDefault("jmeter.save.saveservice.async.overflow", OVERFLOW_BLOCK); // $NON-NLS-1$
+
+    private static final boolean SAVING_AUTOFLUSH =
+            JMeterUtils.getPropDefault("jmeter.save.saveservice.autoflush", false); //$NON-NLS-1$
+
+    /** Maximum number of samples written between two checks of the spill file */
+    private static final int BATCH_SIZE = 1024;
+
+    /** How long the writer thread sleeps when it has nothing to write */
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /** How long a sampler thread waits for room in the buffer before retrying */
+    private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /** Number of spilled samples after which the object stream is reset, so it does not keep them */
+    private static final int SPILL_RESET_INTERVAL = 1000;
+
+    private final String filename;
+
+    private final PrintWriter out;
+
+    private final BinaryResultWriter binaryOut;
+
+    private final ConcurrentRingBuffer<Record> buffer;
+
+    private final String overflow;
+
+    private final SpillFile spillFile;
+
+    private final Thread thread;
+
+    private final AtomicLong submitted = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicBoolean overflowLogged = new AtomicBoolean();
+
+    /** number of samples written and flushed, only updated by the writer thread */
+    private volatile long flushed;
+
+    private volatile boolean flushRequested;
+
+    private volatile boolean sleeping;
+
+    private volatile boolean closed;
+
+    /**
+     * @param filename
+     *            name of the results file, used for logging and to locate
+     *            spill files
+     * @param out
+     *            writer of a CSV or XML file, null for a binary file
+     * @param binaryOut
+     *            writer of a binary file, null for a CSV or XML file
+     * @param queueSize
+     *            number of samples held by the buffer
+     * @param overflow
+     *            what to do when the buffer is full, one of
+     *            {@link #OVERFLOW_BLOCK}, {@link #OVERFLOW_DROP} or
+     *            {@link #OVERFLOW_SPILL}
+     */
+    AsyncResultWriter(String filename, PrintWriter out, BinaryResultWriter binaryOut,
+            int queueSize, String overflow) {
+        this.filename = filename;
+        this.out = out;
+        this.binaryOut = binaryOut;
+        this.buffer = new ConcurrentRingBuffer<>(queueSize);
+        if (OVERFLOW_DROP.equalsIgnoreCase(overflow)) {
+            this.overflow = OVERFLOW_DROP;
+        } else if (OVERFLOW_SPILL.equalsIgnoreCase(overflow)) {
+            this.overflow = OVERFLOW_SPILL;
+        } else {
+            if (!OVERFLOW_BLOCK.equalsIgnoreCase(overflow)) {
+                log.warn("Unknown overflow mode '" + overflow + "', using " + OVERFLOW_BLOCK);
+            }
+            this.overflow = OVERFLOW_BLOCK;
+        }
+        this.spillFile = OVERFLOW_SPILL.equals(this.overflow)
+                ? new SpillFile(new File(filename).getAbsoluteFile().getParentFile())
+                : null;
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "ResultCollector writer " + filename); // $NON-NLS-1$
+        // the shutdown hook flushes the buffer, the thread must not prevent the JVM from exiting
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Writing results to " + filename + " asynchronously, buffer size:"
+                + buffer.capacity() + ", overflow:" + this.overflow);
+    }
+
+    /**
+     * Hand off a sample to the writer thread
+     *
+     * @param event
+     *            the sample
+     * @param config
+     *            the configuration of the listener saving the sample
+     */
+    void add(SampleEvent event, SampleSaveConfiguration config) {
+        if (closed) {
+            log.debug("Sample received after the end of the test, not saved in " + filename);
+            return;
+        }
+        Record record = new Record(event, config);
+        if (buffer.offer(record)) {
+            submitted.incrementAndGet();
+            wakeUpWriter();
+            return;
+        }
+        logOverflow();
+        if (OVERFLOW_DROP.equals(overflow)) {
+            dropped.incrementAndGet();
+        } else if (OVERFLOW_SPILL.equals(overflow)) {
+            try {
+                spillFile.append(record);
+                submitted.incrementAndGet();
+            } catch (IOException e) {
+                dropped.incrementAndGet();
+                log.error("Error trying to spill a sample of " + filename, e);
+            }
+        } else {
+            while (!buffer.offer(record)) {
+                if (closed || !thread.isAlive()) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                wakeUpWriter();
+                LockSupport.parkNanos(this, FULL_WAIT_NANOS);
+            }
+            submitted.incrementAndGet();
+            wakeUpWriter();
+        }
+    }
+
+    private void logOverflow() {
+        if (overflowLogged.compareAndSet(false, true)) {
+            log.warn("Results buffer of " + filename + " is full, samples are "
+                    + (OVERFLOW_DROP.equals(overflow) ? "dropped"
+                    : OVERFLOW_SPILL.equals(overflow) ? "spilled to disk"
+                    : "waiting")
+                    + ", consider increasing jmeter.save.saveservice.async.queue_size");
+        }
+    }
+
+    private void wakeUpWriter() {
+        if (sleeping) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Wait until the samples handed off before the call are written and
+     * flushed
+     *
+     * @param timeoutMillis
+     *            maximum time to wait in milliseconds
+     * @return true if the samples were flushed in time
+     */
+    boolean flush(long timeoutMillis) {
+        long target = submitted.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (flushed < target) {
+            if (!thread.isAlive() || System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            flushRequested = true;
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(this, FULL_WAIT_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Write all pending samples and stop the writer thread. The underlying
+     * writers are flushed but not closed.
+     */
+    void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while writing the last samples of " + filename);
+        }
+        long lost = dropped.get();
+        if (lost > 0) {
+            log.warn(lost + " samples were not saved in " + filename
+                    + " as the results buffer was full");
+        }
+    }
+
+    /**
+     * @return the number of samples that could not be saved
+     */
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void writeLoop() {
+        List<Record> batch = new ArrayList<>(BATCH_SIZE);
+        long written = 0;
+        while (true) {
+            batch.clear();
+            if (buffer.drainTo(batch, BATCH_SIZE) > 0) {
+                for (Record record : batch) {
+                    write(record.event, record.config);
+                }
+                written += batch.size();
+                if (SAVING_AUTOFLUSH || flushRequested) {
+                    flushRequested = false;
+                    flushOutput();
+                    flushed = written;
+                }
+                continue;
+            }
+            if (spillFile != null && spillFile.hasRecords()) {
+                written += spillFile.replay();
+                continue;
+            }
+            if (!buffer.isEmpty()) {
+                Thread.yield(); // a producer claimed a slot but has not yet filled it
+                continue;
+            }
+            if (flushed != written) {
+                flushRequested = false;
+                flushOutput();
+                flushed = written;
+            }
+            if (closed) {
+                return;
+            }
+            sleeping = true;
+            if (buffer.isEmpty() && !closed) {
+                LockSupport.parkNanos(this, IDLE_WAIT_NANOS);
+            }
+            sleeping = false;
+        }
+    }
+
+    private void write(SampleEvent event, SampleSaveConfiguration config) {
+        try {
+            ResultCollector.writeSample(event, config, out, binaryOut);
+        } catch (Exception err) {
+            log.error("Error trying to record a sample", err); // should throw exception back to caller
+        }
+    }
+
+    private void flushOutput() {
+        if (binaryOut != null) {
+            try {
+                binaryOut.flush();
+            } catch (IOException e) {
+                log.warn("Problem flushing " + filename, e);
+            }
+        } else {
+            out.flush();
+        }
+    }
+
+    /**
+     * Sample handed off by a sampler thread, along with the configuration of
+     * the listener as it may be shared by several listeners
+     */
+    private static final class Record {
+        private final SampleEvent event;
+        private final SampleSaveConfiguration config;
+
+        Record(SampleEvent event, SampleSaveConfiguration config) {
+            this.event = event;
+            this.config = config;
+        }
+    }
+
+    /**
+     * Samples that did not fit in the buffer, serialized to a temporary file
+     * by sampler threads and replayed by the writer thread
+     */
+    private final class SpillFile {
+        private final File directory;
+
+        //@GuardedBy("this")
+        private File file;
+
+        //@GuardedBy("this")
+        private ObjectOutputStream stream;
+
+        //@GuardedBy("this")
+        private int count;
+
+        private volatile boolean hasRecords;
+
+        SpillFile(File directory) {
+            this.directory = directory;
+        }
+
+        boolean hasRecords() {
+            return hasRecords;
+        }
+
+        synchronized void append(Record record) throws IOException {
+            if (stream == null) {
+                file = File.createTempFile("jmeter-results-", ".spill", directory); // $NON-NLS-1$ // $NON-NLS-2$
+                file.deleteOnExit();
+                stream = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+                log.info("Spilling samples of " + filename + " to " + file);
+            }
+            stream.writeObject(record.event);
+            stream.writeObject(record.config);
+            count++;
+            if (count % SPILL_RESET_INTERVAL == 0) {
+                stream.reset();
+            }
+            hasRecords = true;
+        }
+
+        /**
+         * Write the spilled samples, sampler threads spill further samples to
+         * a new file meanwhile
+         *
+         * @return the number of replayed samples, including those that could
+         *         not be read back
+         */
+        int replay() {
+            File toRead;
+            int toReadCount;
+            synchronized (this) {
+                toRead = file;
+                toReadCount = count;
+                JOrphanUtils.closeQuietly(stream);
+                file = null;
+                stream = null;
+                count = 0;
+                hasRecords = false;
+            }
+            if (toRead == null) {
+                return 0;
+            }
+            int read = 0;
+            try (ObjectInputStream in = new ObjectInputStream(
+                    new BufferedInputStream(new FileInputStream(toRead)))) {
+                for (; read < toReadCount; read++) {
+                    SampleEvent event = (SampleEvent) in.readObject();
+                    SampleSaveConfiguration config = (SampleSaveConfiguration) in.readObject();
+                    write(event, config);
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                dropped.addAndGet(toReadCount - read);
+                log.error("Error reading samples spilled to " + toRead, e);
+            }
+            if (!toRead.delete()) {
+                log.warn("Could not delete " + toRead);
+            }
+            return toReadCount;
+        }
+    }
+}
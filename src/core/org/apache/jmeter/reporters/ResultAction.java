@@ -23,6 +23,7 @@ import java.io.Serializable;
 import org.apache.jmeter.samplers.SampleEvent;
 import org.apache.jmeter.samplers.SampleListener;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleResultConsumer;
 import org.apache.jmeter.testelement.OnErrorTestElement;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
@@ -31,7 +32,7 @@ import org.apache.log.Logger;
  * ResultAction - take action based on the status of the last Result
  *
  */
-public class ResultAction extends OnErrorTestElement implements Serializable, SampleListener {
+public class ResultAction extends OnErrorTestElement implements Serializable, SampleListener, SampleResultConsumer {
 
     private static final long serialVersionUID = 240L;
 
@@ -50,6 +51,24 @@ public class ResultAction extends OnErrorTestElement implements Serializable, Sa
         // "+Thread.currentThread().getName());
     }
 
+    /**
+     * {@inheritDoc}
+     * @since 3.1
+     */
+    @Override
+    public boolean needsResponseData() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 3.1
+     */
+    @Override
+    public boolean retainsSampleResults() {
+        return false;
+    }
+
     /**
      * Examine the sample(s) and take appropriate action
      *
@@ -37,15 +37,20 @@ import java.util.Map;
 import org.apache.jmeter.engine.util.NoThreadClone;
 import org.apache.jmeter.gui.GuiPackage;
 import org.apache.jmeter.samplers.Clearable;
+import org.apache.jmeter.samplers.HistogramSampleResult;
 import org.apache.jmeter.samplers.Remoteable;
 import org.apache.jmeter.samplers.SampleEvent;
 import org.apache.jmeter.samplers.SampleListener;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.ResponseDataPrefixConsumer;
 import org.apache.jmeter.samplers.SampleSaveConfiguration;
+import org.apache.jmeter.save.BinaryResultWriter;
+import org.apache.jmeter.save.BinarySaveService;
 import org.apache.jmeter.save.CSVSaveService;
 import org.apache.jmeter.save.SaveService;
 import org.apache.jmeter.services.FileServer;
 import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.TestPlan;
 import org.apache.jmeter.testelement.TestStateListener;
 import org.apache.jmeter.testelement.property.BooleanProperty;
 import org.apache.jmeter.testelement.property.ObjectProperty;
@@ -63,7 +68,7 @@ import com.thoughtworks.xstream.converters.ConversionException;
  * The class must be thread-safe because it is shared between threads (NoThreadClone).
  */
 public class ResultCollector extends AbstractListenerElement implements SampleListener, Clearable, Serializable,
-        TestStateListener, Remoteable, NoThreadClone {
+        TestStateListener, Remoteable, NoThreadClone, ResponseDataPrefixConsumer {
 
     private static final Logger log = LoggingManager.getLoggerForClass();
 
@@ -96,6 +101,12 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
     /** AutoFlush on each line */
     private static final boolean SAVING_AUTOFLUSH = JMeterUtils.getPropDefault("jmeter.save.saveservice.autoflush", false); //$NON-NLS-1$
 
+    /** Write samples from a dedicated thread, see {@link AsyncResultWriter} */
+    private static final boolean SAVING_ASYNC = JMeterUtils.getPropDefault("jmeter.save.saveservice.async", false); //$NON-NLS-1$
+
+    /** How long the shutdown hook waits for asynchronous writers to catch up */
+    private static final long ASYNC_SHUTDOWN_TIMEOUT = 10000L;
+
     // Static variables
 
     // Lock used to guard static mutable variables
@@ -116,10 +127,20 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
      * them. This means one cannot use the saved PrintWriter or use getSaveConfig()
      */
     private static class FileEntry{
-        final PrintWriter pw;
+        final PrintWriter pw; // null for binary files
+        final BinaryResultWriter binary; // null for CSV and XML files
+        final AsyncResultWriter async; // null unless samples are written asynchronously
         final SampleSaveConfiguration config;
-        FileEntry(PrintWriter _pw, SampleSaveConfiguration _config){
+        FileEntry(PrintWriter _pw, AsyncResultWriter _async, SampleSaveConfiguration _config){
             pw =_pw;
+            binary = null;
+            async = _async;
+            config = _config;
+        }
+        FileEntry(BinaryResultWriter _binary, AsyncResultWriter _async, SampleSaveConfiguration _config){
+            pw = null;
+            binary = _binary;
+            async = _async;
             config = _config;
         }
     }
@@ -137,6 +158,10 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
 
     private transient volatile PrintWriter out;
 
+    private transient volatile BinaryResultWriter binaryOut;
+
+    private transient volatile AsyncResultWriter asyncOut;
+
     private volatile boolean inTest = false;
 
     private volatile boolean isStats = false;
@@ -354,6 +379,7 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
      * <ul>
      *   <li>XStream format</li>
      *   <li>CSV format</li>
+     *   <li>Binary format</li>
      * </ul>
      *
      */
@@ -365,7 +391,16 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         boolean parsedOK = false;
         String filename = getFilename();
         File file = new File(filename);
-        if (file.exists()) {
+        if (BinarySaveService.isBinaryFile(file)) {
+            try {
+                BinarySaveService.processSamples(filename, visualizer, this);
+            } catch (IOException | JMeterError | RuntimeException e) {
+                log.warn("Problem reading binary JTL file: "+file, e);
+                GuiPackage.showErrorMessage(
+                        "Error loading results file - see log file",
+                        "Result file loader");
+            }
+        } else if (file.exists()) {
             BufferedReader dataReader = null;
             BufferedInputStream bufferedInputStream = null;
             try {
@@ -457,22 +492,12 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
             } else {
                 trimmed = new File(filename).exists();
             }
-            // Find the name of the directory containing the file
-            // and create it - if there is one
-            File pdir = new File(filename).getParentFile();
-            if (pdir != null) {
-                // returns false if directory already exists, so need to check again
-                if(pdir.mkdirs()){
-                    log.info("Folder "+pdir.getAbsolutePath()+" was created");
-                } // else if might have been created by another process so not a problem
-                if (!pdir.exists()){
-                    log.warn("Error creating directories for "+pdir.toString());
-                }
-            }
+            createParentFolder(filename);
+            // the asynchronous writer flushes batches of lines itself
             writer = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(filename,
-                    trimmed)), SaveService.getFileEncoding("UTF-8")), SAVING_AUTOFLUSH); // $NON-NLS-1$
+                    trimmed)), SaveService.getFileEncoding("UTF-8")), SAVING_AUTOFLUSH && !SAVING_ASYNC); // $NON-NLS-1$
             log.debug("Opened file: "+filename);
-            files.put(filename, new FileEntry(writer, saveConfig));
+            files.put(filename, new FileEntry(writer, createAsyncWriter(filename, writer, null), saveConfig));
         } else {
             writer = fe.pw;
         }
@@ -482,6 +507,63 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         return writer;
     }
 
+    private static BinaryResultWriter getBinaryWriter(String filename, SampleSaveConfiguration saveConfig)
+            throws IOException {
+        if (filename == null || filename.length() == 0) {
+            return null;
+        }
+        filename = FileServer.resolveBaseRelativeName(filename);
+        FileEntry fe = files.get(filename);
+        if (fe != null) {
+            if (fe.binary == null) {
+                throw new IOException(filename + " is already used by a listener saving results as CSV or XML");
+            }
+            return fe.binary;
+        }
+        File file = new File(filename);
+        boolean append = file.length() > 0;
+        if (append && !BinarySaveService.isBinaryFile(file)) {
+            throw new IOException(filename + " exists and is not a binary results file");
+        }
+        createParentFolder(filename);
+        BinaryResultWriter writer = new BinaryResultWriter(new BufferedOutputStream(
+                new FileOutputStream(filename, append)), saveConfig, !append);
+        log.debug("Opened binary file: "+filename);
+        files.put(filename, new FileEntry(writer, createAsyncWriter(filename, null, writer), saveConfig));
+        return writer;
+    }
+
+    private static AsyncResultWriter createAsyncWriter(String filename, PrintWriter writer,
+            BinaryResultWriter binaryWriter) {
+        if (!SAVING_ASYNC) {
+            return null;
+        }
+        return new AsyncResultWriter(filename, writer, binaryWriter,
+                AsyncResultWriter.QUEUE_SIZE, AsyncResultWriter.OVERFLOW);
+    }
+
+    private static AsyncResultWriter getAsyncWriter(String filename) {
+        FileEntry fe = files.get(FileServer.resolveBaseRelativeName(filename));
+        return fe == null ? null : fe.async;
+    }
+
+    /**
+     * Find the name of the directory containing the file
+     * and create it - if there is one
+     */
+    private static void createParentFolder(String filename) {
+        File pdir = new File(filename).getParentFile();
+        if (pdir != null) {
+            // returns false if directory already exists, so need to check again
+            if(pdir.mkdirs()){
+                log.info("Folder "+pdir.getAbsolutePath()+" was created");
+            } // else if might have been created by another process so not a problem
+            if (!pdir.exists()){
+                log.warn("Error creating directories for "+pdir.toString());
+            }
+        }
+    }
+
     // returns false if the file did not contain the terminator
     private static boolean trimLastLine(String filename) {
         RandomAccessFile raf = null;
@@ -549,18 +631,16 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
 
         if (isSampleWanted(result.isSuccessful())) {
             sendToVisualizer(result);
-            if (out != null && !isResultMarked(result) && !this.isStats) {
+            if ((out != null || binaryOut != null) && !isResultMarked(result) && !this.isStats) {
                 SampleSaveConfiguration config = getSaveConfig();
-                result.setSaveConfig(config);
-                try {
-                    if (config.saveAsXml()) {
-                        SaveService.saveSampleResult(event, out);
-                    } else { // !saveAsXml
-                        String savee = CSVSaveService.resultToDelimitedString(event);
-                        out.println(savee);
+                if (result instanceof HistogramSampleResult) {
+                    // Save the distribution of the elapsed times
+                    for (SampleResult bucketResult : ((HistogramSampleResult) result).getBucketResults()) {
+                        recordSample(new SampleEvent(bucketResult, event.getThreadGroup(), event.getHostname()),
+                                config);
                     }
-                } catch (Exception err) {
-                    log.error("Error trying to record a sample", err); // should throw exception back to caller
+                } else {
+                    recordSample(event, config);
                 }
             }
         }
@@ -570,6 +650,93 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         }
     }
 
+    private void recordSample(SampleEvent event, SampleSaveConfiguration config) {
+        event.getResult().setSaveConfig(config);
+        AsyncResultWriter async = asyncOut;
+        if (async != null) {
+            async.add(event, config);
+        } else {
+            try {
+                writeSample(event, config, out, binaryOut);
+            } catch (Exception err) {
+                log.error("Error trying to record a sample", err); // should throw exception back to caller
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * The visualizers and the XML files saving the response data need it.
+     * @since 3.1
+     */
+    @Override
+    public boolean needsResponseData() {
+        return getVisualizer() != null || savesResponseData();
+    }
+
+    /**
+     * @return <code>true</code> if the response data of some samples may be
+     * saved, see {@link SampleSaveConfiguration#saveResponseData(SampleResult)}
+     */
+    private boolean savesResponseData() {
+        SampleSaveConfiguration config = getSaveConfig();
+        return config.saveResponseData() || config.isResponseDataOnError()
+                || TestPlan.getFunctionalMode();
+    }
+
+    /**
+     * {@inheritDoc}
+     * The XML files saving the response data need all of it,
+     * visualizers may only display its start.
+     * @since 3.1
+     */
+    @Override
+    public int getResponseDataMaxSize() {
+        if (savesResponseData()) {
+            return 0;
+        }
+        Visualizer visualizer = getVisualizer();
+        if (visualizer instanceof ResponseDataPrefixConsumer) {
+            return ((ResponseDataPrefixConsumer) visualizer).getResponseDataMaxSize();
+        }
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The visualizers and the asynchronous writers keep the results.
+     * @since 3.1
+     */
+    @Override
+    public boolean retainsSampleResults() {
+        return getVisualizer() != null || asyncOut != null;
+    }
+
+    /**
+     * Format and write a sample to a results file
+     *
+     * @param event the sample
+     * @param config the configuration of the listener saving the sample
+     * @param out writer of a CSV or XML file, null for a binary file
+     * @param binaryOut writer of a binary file, null for a CSV or XML file
+     * @throws Exception when the sample cannot be formatted or written
+     */
+    static void writeSample(SampleEvent event, SampleSaveConfiguration config,
+            PrintWriter out, BinaryResultWriter binaryOut) throws Exception {
+        // The result may be shared by several listeners, possibly writing it from other threads
+        if (binaryOut != null) {
+            binaryOut.write(event, config);
+            if (SAVING_AUTOFLUSH && !SAVING_ASYNC) {
+                binaryOut.flush();
+            }
+        } else if (config.saveAsXml()) {
+            SaveService.saveSampleResult(event, config, out);
+        } else { // !saveAsXml
+            String savee = CSVSaveService.resultToDelimitedString(event, config, config.getDelimiter());
+            out.println(savee);
+        }
+    }
+
     protected final void sendToVisualizer(SampleResult r) {
         if (getVisualizer() != null) {
             getVisualizer().add(r);
@@ -603,13 +770,25 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
 
         String filename = getFilename();
         if (filename != null) {
-            if (out == null) {
+            SampleSaveConfiguration saveConfig = getSaveConfig();
+            if (saveConfig.isBinaryOutput() && !saveConfig.saveAsXml()) {
+                if (binaryOut == null) {
+                    try {
+                        binaryOut = getBinaryWriter(filename, saveConfig);
+                    } catch (FileNotFoundException e) {
+                        binaryOut = null;
+                    }
+                }
+            } else if (out == null) {
                 try {
-                    out = getFileWriter(filename, getSaveConfig());
+                    out = getFileWriter(filename, saveConfig);
                 } catch (FileNotFoundException e) {
                     out = null;
                 }
             }
+            if (out != null || binaryOut != null) {
+                asyncOut = getAsyncWriter(filename);
+            }
         }
     }
 
@@ -617,10 +796,22 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
      * Flush PrintWriter to synchronize file contents
      */
     public void flushFile() {
+        AsyncResultWriter async = asyncOut;
+        if (async != null && !async.flush(ASYNC_SHUTDOWN_TIMEOUT)) {
+            log.warn("Timed out waiting for pending samples to be written to " + getFilename());
+        }
         if (out != null) {
             log.info("forced flush through ResultCollector#flushFile");
             out.flush();
         }
+        if (binaryOut != null) {
+            log.info("forced flush through ResultCollector#flushFile");
+            try {
+                binaryOut.flush();
+            } catch (IOException e) {
+                log.warn("Problem flushing binary results file", e);
+            }
+        }
     }
 
     /**
@@ -630,6 +821,17 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         for(Map.Entry<String,ResultCollector.FileEntry> me : files.entrySet()){
             log.debug("Flushing: "+me.getKey());
             FileEntry fe = me.getValue();
+            if (fe.async != null && !fe.async.flush(ASYNC_SHUTDOWN_TIMEOUT)) {
+                log.warn("Timed out waiting for pending samples to be written to " + me.getKey());
+            }
+            if (fe.binary != null) {
+                try {
+                    fe.binary.flush();
+                } catch (IOException e) {
+                    log.warn("Problem detected during use of "+me.getKey(), e);
+                }
+                continue;
+            }
             fe.pw.flush();
             if (fe.pw.checkError()){
                 log.warn("Problem detected during use of "+me.getKey());
@@ -641,6 +843,17 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         for(Map.Entry<String,ResultCollector.FileEntry> me : files.entrySet()){
             log.debug("Closing: "+me.getKey());
             FileEntry fe = me.getValue();
+            if (fe.async != null) {
+                fe.async.close(); // writes all pending samples
+            }
+            if (fe.binary != null) {
+                try {
+                    fe.binary.close();
+                } catch (IOException e) {
+                    log.warn("Problem detected during use of "+me.getKey(), e);
+                }
+                continue;
+            }
             writeFileEnd(fe.pw, fe.config);
             fe.pw.close();
             if (fe.pw.checkError()){
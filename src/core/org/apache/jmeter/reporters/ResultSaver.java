@@ -30,6 +30,7 @@ import java.util.Date;
 import org.apache.jmeter.samplers.SampleEvent;
 import org.apache.jmeter.samplers.SampleListener;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleResultConsumer;
 import org.apache.jmeter.services.FileServer;
 import org.apache.jmeter.testelement.AbstractTestElement;
 import org.apache.jmeter.threads.JMeterContextService;
@@ -45,7 +46,7 @@ import org.apache.log.Logger;
  *
  */
 // TODO - perhaps save other items such as headers?
-public class ResultSaver extends AbstractTestElement implements Serializable, SampleListener {
+public class ResultSaver extends AbstractTestElement implements Serializable, SampleListener, SampleResultConsumer {
     private static final Logger log = LoggingManager.getLoggerForClass();
 
     private static final long serialVersionUID = 240L;
@@ -130,6 +131,25 @@ public class ResultSaver extends AbstractTestElement implements Serializable, Sa
         super.clear();
     }
 
+    /**
+     * {@inheritDoc}
+     * The response data is saved to files.
+     * @since 3.1
+     */
+    @Override
+    public boolean needsResponseData() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @since 3.1
+     */
+    @Override
+    public boolean retainsSampleResults() {
+        return false;
+    }
+
     /**
      * Saves the sample result (and any sub results) in files
      *
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.samplers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jmeter.control.TransactionController;
+import org.apache.jorphan.math.LogLinearHistogram;
+
+/**
+ * Aggregates sample results for use by the Histogram remote mode.
+ * Besides the counters of a {@link StatisticalSampleResult}, it keeps the
+ * distribution of the elapsed times of the successful and failed samples, so the
+ * results of several servers can be merged without losing percentiles.
+ * Samples are aggregated by the key defined by getKey() and by time bucket.
+ * @since 3.1
+ */
+public class HistogramSampleResult extends StatisticalSampleResult {
+
+    private static final long serialVersionUID = 1L;
+
+    private final LogLinearHistogram.Recorder okTimes;
+
+    private final LogLinearHistogram.Recorder koTimes;
+
+    private int hits;
+
+    /**
+     * Create a histogram sample result from an ordinary sample result.
+     *
+     * @param res the sample result
+     * @param precision precision of the histograms of elapsed times
+     */
+    public HistogramSampleResult(SampleResult res, int precision) {
+        super(res);
+        okTimes = new LogLinearHistogram.Recorder(precision);
+        koTimes = new LogLinearHistogram.Recorder(precision);
+    }
+
+    @Override
+    public void add(SampleResult res) {
+        super.add(res);
+        if (res.isSuccessful()) {
+            okTimes.recordValue(res.getTime());
+        } else {
+            koTimes.recordValue(res.getTime());
+        }
+        hits += countHits(res);
+    }
+
+    private static int countHits(SampleResult res) {
+        int count = TransactionController.isFromTransactionController(res) ? 0 : 1;
+        for (SampleResult subResult : res.getSubResults()) {
+            count += countHits(subResult);
+        }
+        return count;
+    }
+
+    /**
+     * @return elapsed times of the successful samples
+     */
+    public LogLinearHistogram.Recorder getOkTimes() {
+        return okTimes;
+    }
+
+    /**
+     * @return elapsed times of the failed samples
+     */
+    public LogLinearHistogram.Recorder getKoTimes() {
+        return koTimes;
+    }
+
+    /**
+     * @return number of hits to the server, sub-results included
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return smallest elapsed time of the samples
+     */
+    public long getMinTime() {
+        return Math.min(okTimes.getMin(), koTimes.getMin());
+    }
+
+    /**
+     * @return largest elapsed time of the samples
+     */
+    public long getMaxTime() {
+        return Math.max(okTimes.getMax(), koTimes.getMax());
+    }
+
+    /**
+     * Split this result into one {@link StatisticalSampleResult} per non-empty
+     * histogram bucket, whose elapsed time is the sum of the elapsed times of
+     * its samples, so a result file keeps the distribution of elapsed times.
+     * Latency, connect time and bytes are shared in proportion to the number of samples.
+     *
+     * @return the results of the buckets, successful ones first
+     */
+    public List<SampleResult> getBucketResults() {
+        List<SampleResult> results = new ArrayList<>();
+        addBucketResults(results, okTimes, false);
+        addBucketResults(results, koTimes, true);
+        return results;
+    }
+
+    private void addBucketResults(List<SampleResult> results, LogLinearHistogram.Recorder times,
+            boolean failed) {
+        long total = okTimes.getTotalCount() + koTimes.getTotalCount();
+        for (int i = 0; i < times.getBucketCount(); i++) {
+            long count = times.getCountAt(i);
+            if (count == 0) {
+                continue;
+            }
+            StatisticalSampleResult result = new StatisticalSampleResult(this, (int) count,
+                    failed ? (int) count : 0, times.getValueAt(i) * count);
+            result.setLatency(getLatency() * count / total);
+            result.setConnectTime(getConnectTime() * count / total);
+            result.setBytes((int) (getBytes() * count / total));
+            results.add(result);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.samplers;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.math.LogLinearHistogram;
+import org.apache.log.Logger;
+
+/**
+ * Aggregates the samples of the server into {@link HistogramSampleResult}s,
+ * one per key (see {@link StatisticalSampleResult#getKey(SampleEvent, boolean)})
+ * and time bucket of <code>histogram.sender.interval</code> milliseconds, which
+ * are sent to the client once their bucket is over.
+ * <p>
+ * The number of results the client receives only depends on the number of keys,
+ * not on the number of samples, and listeners merge the histograms of all the
+ * servers, so counts and percentiles stay correct.
+ * @since 3.1
+ */
+public class HistogramSampleSender extends AbstractSampleSender implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final long DEFAULT_INTERVAL = 1000L; // ms
+
+    private static final int PRECISION = LogLinearHistogram.DEFAULT_PRECISION;
+
+    private static final long serverConfiguredInterval =
+            JMeterUtils.getPropDefault("histogram.sender.interval", DEFAULT_INTERVAL); // $NON-NLS-1$
+
+    private static final boolean serverConfiguredKeyOnThreadName =
+            JMeterUtils.getPropDefault("key_on_threadname", false); // $NON-NLS-1$
+
+    private final long clientConfiguredInterval =
+            JMeterUtils.getPropDefault("histogram.sender.interval", DEFAULT_INTERVAL); // $NON-NLS-1$
+
+    private final boolean clientConfiguredKeyOnThreadName =
+            JMeterUtils.getPropDefault("key_on_threadname", false); // $NON-NLS-1$
+
+    private final RemoteSampleListener listener;
+
+    // Settings and buckets are created by the server in readResolve
+    private transient long interval;
+
+    private transient boolean keyOnThreadName;
+
+    // Start time of the bucket => key => event holding the HistogramSampleResult
+    //@GuardedBy("buckets")
+    private transient TreeMap<Long, Map<String, SampleEvent>> buckets;
+
+    private transient Flusher flusher;
+
+    /**
+     * @deprecated only for use by test code
+     */
+    @Deprecated
+    public HistogramSampleSender() {
+        this(null);
+        log.warn("Constructor only intended for use in testing"); // $NON-NLS-1$
+    }
+
+    /**
+     * Constructor, only called by client code.
+     *
+     * @param listener that the List of sample events will be sent to.
+     */
+    HistogramSampleSender(RemoteSampleListener listener) {
+        this.listener = listener;
+        log.info("Using HistogramSampleSender for this test run, interval: " + clientConfiguredInterval
+                + " ms. Key uses ThreadName: " + clientConfiguredKeyOnThreadName); // client log file
+    }
+
+    /**
+     * Processed by the RMI server code; acts as testStarted().
+     *
+     * @return this
+     * @throws ObjectStreamException never
+     */
+    private Object readResolve() throws ObjectStreamException {
+        interval = isClientConfigured() ? clientConfiguredInterval : serverConfiguredInterval;
+        keyOnThreadName = isClientConfigured() ? clientConfiguredKeyOnThreadName : serverConfiguredKeyOnThreadName;
+        if (interval <= 0) {
+            log.warn("Invalid histogram.sender.interval " + interval + ", using " + DEFAULT_INTERVAL);
+            interval = DEFAULT_INTERVAL;
+        }
+        log.info("Using HistogramSampleSender for this run."
+                + (isClientConfigured() ? " Client config: " : " Server config: ")
+                + " interval: " + interval
+                + " ms. Key uses ThreadName: " + keyOnThreadName); // server log file
+        buckets = new TreeMap<>();
+        flusher = new Flusher();
+        flusher.setDaemon(true);
+        flusher.start();
+        return this;
+    }
+
+    /**
+     * Adds the sample to the histogram of its key in the bucket holding its end time.
+     *
+     * @param e a Sample Event
+     */
+    @Override
+    public void sampleOccurred(SampleEvent e) {
+        SampleResult result = e.getResult();
+        long endTime = result.getEndTime();
+        Long bucket = Long.valueOf(endTime - endTime % interval);
+        String key = StatisticalSampleResult.getKey(e, keyOnThreadName);
+        synchronized (buckets) {
+            Map<String, SampleEvent> events = buckets.get(bucket);
+            if (events == null) {
+                events = new HashMap<>();
+                buckets.put(bucket, events);
+            }
+            SampleEvent event = events.get(key);
+            if (event == null) {
+                event = new SampleEvent(new HistogramSampleResult(result, PRECISION), e.getThreadGroup());
+                events.put(key, event);
+            }
+            ((HistogramSampleResult) event.getResult()).add(result);
+        }
+    }
+
+    /**
+     * Sends the buckets ended by a time.
+     *
+     * @param time time in milliseconds
+     * @throws RemoteException if the results could not be sent
+     */
+    private void sendBuckets(long time) throws RemoteException {
+        List<SampleEvent> events = new ArrayList<>();
+        synchronized (buckets) {
+            Iterator<Map.Entry<Long, Map<String, SampleEvent>>> it = buckets.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Long, Map<String, SampleEvent>> entry = it.next();
+                if (entry.getKey().longValue() + interval > time) {
+                    break;
+                }
+                events.addAll(entry.getValue().values());
+                it.remove();
+            }
+        }
+        // Sampling threads do not wait for the client
+        if (!events.isEmpty()) {
+            listener.processBatch(events);
+        }
+    }
+
+    /**
+     * Sends the remaining buckets and informs the listener that the test ended.
+     *
+     * @param host the hostname that the test has ended on.
+     */
+    @Override
+    public void testEnded(String host) {
+        log.info("Test Ended on " + host);
+        flusher.interrupt();
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            log.warn("Interrupted while waiting for the results to be sent");
+            Thread.currentThread().interrupt();
+        }
+        try {
+            sendBuckets(Long.MAX_VALUE);
+            listener.testEnded(host);
+        } catch (RemoteException err) {
+            log.warn("testEnded(hostname)", err);
+        }
+    }
+
+    /**
+     * Sends each bucket once it is over, leaving half an interval for
+     * the samples which ended in it to be reported.
+     */
+    private class Flusher extends Thread {
+
+        Flusher() {
+            super("HistogramSampleSender-Flusher"); // $NON-NLS-1$
+        }
+
+        @Override
+        public void run() {
+            long delay = interval / 2;
+            while (!isInterrupted()) {
+                long now = System.currentTimeMillis();
+                try {
+                    Thread.sleep(now - now % interval + interval + delay - now);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    sendBuckets(System.currentTimeMillis() - delay);
+                } catch (RemoteException err) {
+                    log.warn("Failed to send histograms", err);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.samplers;
+
+/**
+ * Implemented by the {@link SampleResultConsumer}s which only use the start of the response data,
+ * for instance to display it.
+ * <p>
+ * When property <code>sampleresult.lightweight</code> is <code>true</code>, samplers reading
+ * a response only keep the largest prefix needed by the elements in their scope, the size of
+ * the result still being the size of the whole response.
+ * @since 3.1
+ */
+public interface ResponseDataPrefixConsumer extends SampleResultConsumer {
+
+    /**
+     * Only called if {@link #needsResponseData()} returns <code>true</code>.
+     * @return the number of leading bytes of the response data which are used,
+     *         0 or less if the whole response data is used
+     */
+    int getResponseDataMaxSize();
+}
@@ -125,6 +125,30 @@ public class SampleEvent implements Serializable {
        this(result, threadGroup, hostname, false);
     }
     
+    /**
+     * Only intended for use when receiving results from a remote engine.
+     *
+     * @param result
+     *            The SampleResult to be associated with this event
+     * @param threadGroup
+     *            The name of the thread, the {@link SampleResult} was recorded
+     * @param hostname
+     *            The name of the host, for which the {@link SampleResult} was
+     *            recorded
+     * @param values
+     *            the values of the variables saved with the sample
+     * @param isTransactionSampleEvent
+     *            Flag whether this event is an transaction sample event
+     */
+    SampleEvent(SampleResult result, String threadGroup, String hostname, String[] values,
+            boolean isTransactionSampleEvent) {
+        this.result = result;
+        this.threadGroup = threadGroup;
+        this.hostname = hostname;
+        this.values = values;
+        this.isTransactionSampleEvent = isTransactionSampleEvent;
+    }
+
     private SampleEvent(SampleResult result, String threadGroup, String hostname, boolean isTransactionSampleEvent) {
         this.result = result;
         this.threadGroup = threadGroup;
@@ -0,0 +1,472 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.samplers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.jmeter.assertions.AssertionResult;
+import org.apache.jmeter.save.BinarySaveService;
+
+/**
+ * Binary encoding of the {@link SampleEvent}s streamed by {@link StreamSampleSender}
+ * to {@link StreamSampleReceiver}.
+ * <p>
+ * A stream starts with a magic number, a version byte and the identifier of the stream.
+ * It is then made of frames, a type byte followed by the length and the content of the frame:
+ * </p>
+ * <ul>
+ * <li>a batch, <code>'B'</code>, or a compressed batch, <code>'Z'</code>, holds a number of events.
+ * Fields are written one after the other, numbers as variable length integers and time stamps as deltas.
+ * Labels, thread names and other recurring strings are written once per stream, then referenced
+ * by their index in the dictionary of the stream. Compressed batches are deflated with a
+ * compressor shared by the whole stream, so they benefit from the data of the previous batches</li>
+ * <li>the end of the stream, <code>'E'</code>, has no content</li>
+ * </ul>
+ * <p>
+ * In the other direction, the receiver grants credits, <code>'C'</code> followed by a number of events,
+ * and acknowledges the end of the stream, <code>'E'</code>. The sender only sends as many events
+ * as it has been granted credits.
+ * </p>
+ * <p>
+ * As with the <code>Stripped</code> modes, only failed samples carry their response data and headers.
+ * HTTP specific fields (method, cookies, query string, redirect location) are not sent.
+ * </p>
+ * @since 3.1
+ */
+final class SampleEventStreamCodec {
+
+    static final byte[] MAGIC = { 'J', 'M', 'S', 'S' };
+
+    static final byte VERSION = 2;
+
+    static final byte BATCH = 'B';
+
+    static final byte COMPRESSED_BATCH = 'Z';
+
+    static final byte END = 'E';
+
+    static final byte CREDIT = 'C';
+
+    // Flags of the results
+    private static final int SUCCESS = 1;
+
+    private static final int STOP_THREAD = 1 << 1;
+
+    private static final int STOP_TEST = 1 << 2;
+
+    private static final int STOP_TEST_NOW = 1 << 3;
+
+    private static final int START_NEXT_THREAD_LOOP = 1 << 4;
+
+    private static final int MONITOR = 1 << 5;
+
+    private static final int RESPONSE_DATA = 1 << 6;
+
+    private static final int INTENDED_START = 1 << 7;
+
+    // Encoding of the strings referenced through the dictionary
+    private static final int WORD_NULL = 0;
+
+    private static final int WORD_NEW = 1;
+
+    private static final int WORD_LITERAL = 2;
+
+    private static final int WORD_INDEX = 3;
+
+    private SampleEventStreamCodec() {
+        // Not intended to be instantiated
+    }
+
+    /**
+     * Encodes the events of a stream, not thread-safe
+     */
+    static final class Encoder {
+
+        private final Map<String, Integer> dictionary = new HashMap<>();
+
+        private final int maxDictionarySize;
+
+        private final Deflater deflater;
+
+        private final ByteArrayOutputStream batchBuffer = new ByteArrayOutputStream(8192);
+
+        private final DataOutputStream batchOut = new DataOutputStream(batchBuffer);
+
+        private final ByteArrayOutputStream compressedBuffer;
+
+        private final byte[] deflateBuffer;
+
+        private long lastTimeStamp;
+
+        /**
+         * @param compress true to deflate the batches
+         * @param maxDictionarySize maximum number of strings in the dictionary,
+         *            strings are written as they are once it is full
+         */
+        Encoder(boolean compress, int maxDictionarySize) {
+            this.maxDictionarySize = maxDictionarySize;
+            if (compress) {
+                deflater = new Deflater(Deflater.BEST_SPEED);
+                compressedBuffer = new ByteArrayOutputStream(8192);
+                deflateBuffer = new byte[8192];
+            } else {
+                deflater = null;
+                compressedBuffer = null;
+                deflateBuffer = null;
+            }
+        }
+
+        /**
+         * Write a batch frame
+         * @param out where to write the frame
+         * @param events the events of the batch
+         * @throws IOException when writing fails
+         */
+        void writeBatch(DataOutputStream out, List<SampleEvent> events) throws IOException {
+            batchBuffer.reset();
+            BinarySaveService.writeVarLong(batchOut, events.size());
+            for (SampleEvent event : events) {
+                writeEvent(batchOut, event);
+            }
+            batchOut.flush();
+            if (deflater == null) {
+                out.writeByte(BATCH);
+                BinarySaveService.writeVarLong(out, batchBuffer.size());
+                batchBuffer.writeTo(out);
+                return;
+            }
+            compressedBuffer.reset();
+            deflater.setInput(batchBuffer.toByteArray());
+            int count;
+            do {
+                count = deflater.deflate(deflateBuffer, 0, deflateBuffer.length, Deflater.SYNC_FLUSH);
+                compressedBuffer.write(deflateBuffer, 0, count);
+            } while (count == deflateBuffer.length);
+            out.writeByte(COMPRESSED_BATCH);
+            BinarySaveService.writeVarLong(out, compressedBuffer.size());
+            compressedBuffer.writeTo(out);
+        }
+
+        /**
+         * Release the compressor
+         */
+        void close() {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+
+        private void writeEvent(DataOutput out, SampleEvent event) throws IOException {
+            writeWord(out, event.getThreadGroup());
+            writeWord(out, event.getHostname());
+            out.writeBoolean(event.isTransactionSampleEvent());
+            int varCount = SampleEvent.getVarCount();
+            BinarySaveService.writeVarLong(out, varCount);
+            for (int i = 0; i < varCount; i++) {
+                writeText(out, event.getVarValue(i));
+            }
+            writeResult(out, event.getResult());
+        }
+
+        private void writeResult(DataOutput out, SampleResult result) throws IOException {
+            boolean withData = !result.isSuccessful();
+            int flags = (result.isSuccessful() ? SUCCESS : 0)
+                    | (result.isStopThread() ? STOP_THREAD : 0)
+                    | (result.isStopTest() ? STOP_TEST : 0)
+                    | (result.isStopTestNow() ? STOP_TEST_NOW : 0)
+                    | (result.isStartNextThreadLoop() ? START_NEXT_THREAD_LOOP : 0)
+                    | (result.isMonitor() ? MONITOR : 0)
+                    | (withData ? RESPONSE_DATA : 0)
+                    | (result.getIntendedStartTime() > 0 ? INTENDED_START : 0);
+            BinarySaveService.writeVarLong(out, flags);
+
+            long timeStamp = result.getTimeStamp();
+            BinarySaveService.writeVarLong(out, timeStamp - lastTimeStamp);
+            lastTimeStamp = timeStamp;
+            BinarySaveService.writeVarLong(out, result.getStartTime() - timeStamp);
+            BinarySaveService.writeVarLong(out, result.getEndTime() - timeStamp);
+            BinarySaveService.writeVarLong(out, result.getTime());
+            BinarySaveService.writeVarLong(out, result.getIdleTime());
+            BinarySaveService.writeVarLong(out, result.getLatency());
+            BinarySaveService.writeVarLong(out, result.getConnectTime());
+            if (result.getIntendedStartTime() > 0) {
+                BinarySaveService.writeVarLong(out, result.getStartTime() - result.getIntendedStartTime());
+            }
+
+            writeWord(out, result.getSampleLabel());
+            writeWord(out, result.getThreadName());
+            writeWord(out, result.getResponseCode());
+            writeWord(out, result.getResponseMessage());
+            writeWord(out, result.getDataType());
+            writeWord(out, result.getDataEncodingNoDefault());
+            writeWord(out, result.getContentType());
+            writeWord(out, result.getResultFileName());
+            URL url = result.getURL();
+            writeWord(out, url == null ? null : url.toExternalForm());
+
+            BinarySaveService.writeVarLong(out, result.getBytes());
+            BinarySaveService.writeVarLong(out, result.getHeadersSize());
+            BinarySaveService.writeVarLong(out, result.getBodySize());
+            BinarySaveService.writeVarLong(out, result.getSampleCount());
+            BinarySaveService.writeVarLong(out, result.getGroupThreads());
+            BinarySaveService.writeVarLong(out, result.getAllThreads());
+
+            if (withData) {
+                byte[] data = result.getResponseData();
+                BinarySaveService.writeVarLong(out, data.length);
+                out.write(data);
+                writeText(out, result.getResponseHeaders());
+                writeText(out, result.getRequestHeaders());
+                writeText(out, result.getSamplerData());
+            }
+
+            AssertionResult[] assertionResults = result.getAssertionResults();
+            BinarySaveService.writeVarLong(out, assertionResults.length);
+            for (AssertionResult assertionResult : assertionResults) {
+                writeWord(out, assertionResult.getName());
+                out.writeBoolean(assertionResult.isFailure());
+                out.writeBoolean(assertionResult.isError());
+                writeText(out, assertionResult.getFailureMessage());
+            }
+
+            SampleResult[] subResults = result.getSubResults();
+            BinarySaveService.writeVarLong(out, subResults.length);
+            for (SampleResult subResult : subResults) {
+                writeResult(out, subResult);
+            }
+        }
+
+        private void writeWord(DataOutput out, String word) throws IOException {
+            if (word == null) {
+                BinarySaveService.writeVarLong(out, WORD_NULL);
+                return;
+            }
+            Integer index = dictionary.get(word);
+            if (index != null) {
+                BinarySaveService.writeVarLong(out, WORD_INDEX + index.longValue());
+            } else if (dictionary.size() < maxDictionarySize) {
+                dictionary.put(word, Integer.valueOf(dictionary.size()));
+                BinarySaveService.writeVarLong(out, WORD_NEW);
+                BinarySaveService.writeString(out, word);
+            } else {
+                BinarySaveService.writeVarLong(out, WORD_LITERAL);
+                BinarySaveService.writeString(out, word);
+            }
+        }
+    }
+
+    /**
+     * Decodes the events of a stream, not thread-safe
+     */
+    static final class Decoder {
+
+        private final List<String> dictionary = new ArrayList<>();
+
+        private Inflater inflater;
+
+        private byte[] inflateBuffer;
+
+        private long lastTimeStamp;
+
+        /**
+         * Read the content of a batch frame
+         * @param in where to read the frame from, positioned after its type
+         * @param compressed true if the type of the frame is {@link SampleEventStreamCodec#COMPRESSED_BATCH}
+         * @return the events of the batch
+         * @throws IOException when reading fails or the frame is malformed
+         */
+        List<SampleEvent> readBatch(DataInputStream in, boolean compressed) throws IOException {
+            byte[] frame = new byte[readLength(in)];
+            in.readFully(frame);
+            DataInputStream batchIn = new DataInputStream(new ByteArrayInputStream(
+                    compressed ? inflate(frame) : frame));
+            int count = readLength(batchIn);
+            List<SampleEvent> events = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                events.add(readEvent(batchIn));
+            }
+            return events;
+        }
+
+        /**
+         * Release the decompressor
+         */
+        void close() {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+
+        private byte[] inflate(byte[] frame) throws IOException {
+            if (inflater == null) {
+                inflater = new Inflater();
+                inflateBuffer = new byte[8192];
+            }
+            inflater.setInput(frame);
+            ByteArrayOutputStream batch = new ByteArrayOutputStream(frame.length * 4);
+            try {
+                int count;
+                while ((count = inflater.inflate(inflateBuffer)) > 0) {
+                    batch.write(inflateBuffer, 0, count);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Malformed compressed batch", e);
+            }
+            return batch.toByteArray();
+        }
+
+        private SampleEvent readEvent(DataInput in) throws IOException {
+            String threadGroup = readWord(in);
+            String hostname = readWord(in);
+            boolean transaction = in.readBoolean();
+            String[] values = new String[readLength(in)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = readText(in);
+            }
+            SampleResult result = readResult(in);
+            return new SampleEvent(result, threadGroup, hostname, values, transaction);
+        }
+
+        private SampleResult readResult(DataInput in) throws IOException {
+            int flags = (int) BinarySaveService.readVarLong(in);
+            SampleResult result = new SampleResult();
+            result.setSuccessful((flags & SUCCESS) != 0);
+            result.setStopThread((flags & STOP_THREAD) != 0);
+            result.setStopTest((flags & STOP_TEST) != 0);
+            result.setStopTestNow((flags & STOP_TEST_NOW) != 0);
+            result.setStartNextThreadLoop((flags & START_NEXT_THREAD_LOOP) != 0);
+            result.setMonitor((flags & MONITOR) != 0);
+
+            long timeStamp = lastTimeStamp + BinarySaveService.readVarLong(in);
+            lastTimeStamp = timeStamp;
+            long start = timeStamp + BinarySaveService.readVarLong(in);
+            long end = timeStamp + BinarySaveService.readVarLong(in);
+            long elapsed = BinarySaveService.readVarLong(in);
+            long idle = BinarySaveService.readVarLong(in);
+            result.restoreTimes(timeStamp, start, end, elapsed, idle);
+            result.setLatency(BinarySaveService.readVarLong(in));
+            result.setConnectTime(BinarySaveService.readVarLong(in));
+            if ((flags & INTENDED_START) != 0) {
+                result.setIntendedStartTime(start - BinarySaveService.readVarLong(in));
+            }
+
+            result.setSampleLabel(readWord(in));
+            result.setThreadName(readWord(in));
+            result.setResponseCode(readWord(in));
+            result.setResponseMessage(readWord(in));
+            result.setDataType(readWord(in));
+            result.setDataEncoding(readWord(in));
+            result.setContentType(readWord(in));
+            result.setResultFileName(readWord(in));
+            String url = readWord(in);
+            if (url != null) {
+                try {
+                    result.setURL(new URL(url));
+                } catch (MalformedURLException e) {
+                    throw new IOException("Malformed URL " + url, e);
+                }
+            }
+
+            result.setBytes((int) BinarySaveService.readVarLong(in));
+            result.setHeadersSize((int) BinarySaveService.readVarLong(in));
+            result.setBodySize((int) BinarySaveService.readVarLong(in));
+            result.setSampleCount((int) BinarySaveService.readVarLong(in));
+            result.setGroupThreads((int) BinarySaveService.readVarLong(in));
+            result.setAllThreads((int) BinarySaveService.readVarLong(in));
+
+            if ((flags & RESPONSE_DATA) != 0) {
+                byte[] data = new byte[readLength(in)];
+                in.readFully(data);
+                result.setResponseData(data);
+                result.setResponseHeaders(readText(in));
+                result.setRequestHeaders(readText(in));
+                result.setSamplerData(readText(in));
+            }
+
+            int assertionCount = readLength(in);
+            for (int i = 0; i < assertionCount; i++) {
+                AssertionResult assertionResult = new AssertionResult(readWord(in));
+                assertionResult.setFailure(in.readBoolean());
+                assertionResult.setError(in.readBoolean());
+                assertionResult.setFailureMessage(readText(in));
+                result.addAssertionResult(assertionResult);
+            }
+
+            int subResultCount = readLength(in);
+            for (int i = 0; i < subResultCount; i++) {
+                result.storeSubResult(readResult(in));
+            }
+            return result;
+        }
+
+        private String readWord(DataInput in) throws IOException {
+            long code = BinarySaveService.readVarLong(in);
+            if (code == WORD_NULL) {
+                return null;
+            }
+            if (code == WORD_NEW) {
+                String word = BinarySaveService.readString(in);
+                dictionary.add(word);
+                return word;
+            }
+            if (code == WORD_LITERAL) {
+                return BinarySaveService.readString(in);
+            }
+            long index = code - WORD_INDEX;
+            if (index < 0 || index >= dictionary.size()) {
+                throw new IOException("Unknown dictionary index " + index);
+            }
+            return dictionary.get((int) index);
+        }
+    }
+
+    private static void writeText(DataOutput out, String text) throws IOException {
+        out.writeBoolean(text != null);
+        if (text != null) {
+            BinarySaveService.writeString(out, text);
+        }
+    }
+
+    private static String readText(DataInput in) throws IOException {
+        return in.readBoolean() ? BinarySaveService.readString(in) : null;
+    }
+
+    private static int readLength(DataInput in) throws IOException {
+        long length = BinarySaveService.readVarLong(in);
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("Malformed length " + length);
+        }
+        return (int) length;
+    }
+}
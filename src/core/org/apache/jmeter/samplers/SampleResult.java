@@ -22,6 +22,7 @@ import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -153,6 +154,8 @@ public class SampleResult implements Serializable, Cloneable, Searchable {
 
     private long idleTime = 0;// Allow for non-sample time
 
+    private long intendedStartTime = 0;// 0 if the sample started on time
+
     /** Start of pause (if any) */
     private long pauseTime = 0;
 
@@ -175,8 +178,9 @@ public class SampleResult implements Serializable, Cloneable, Searchable {
     /** files that this sample has been saved in */
     /** In Non GUI mode and when best config is used, size never exceeds 1, 
      * but as a compromise set it to 3 
+     * Created by the first call to markFile, as most results are never marked
      */
-    private final Set<String> files = new HashSet<>(3);
+    private Set<String> files;
 
     private String dataEncoding;// (is this really the character set?) e.g.
                                 // ISO-8895-1, UTF-8
@@ -255,7 +259,7 @@ public class SampleResult implements Serializable, Cloneable, Searchable {
     }
 
 
-    private final long nanoTimeOffset;
+    private long nanoTimeOffset; // only changed by recycle()
 
     // Allow testcode access to the settings
     final boolean useNanoTime;
@@ -308,9 +312,10 @@ public class SampleResult implements Serializable, Cloneable, Searchable {
         dataEncoding = res.dataEncoding;//OK
         dataType = res.dataType;//OK
         endTime = res.endTime;//OK
-        // files is created automatically, and applies per instance
+        // files is created on demand, and applies per instance
         groupThreads = res.groupThreads;//OK
         idleTime = res.idleTime;
+        intendedStartTime = res.intendedStartTime;
         isMonitor = res.isMonitor;
         label = res.label;//OK
         latency = res.latency;
@@ -340,6 +345,61 @@ public class SampleResult implements Serializable, Cloneable, Searchable {
         timeStamp = res.timeStamp;
     }
 
+    /**
+     * Reset this result to the state of a newly created result, so that the
+     * thread which created it can use it for another sample.
+     * <p>
+     * Only called by the thread once no element references the result any more,
+     * see {@link SampleResultConsumer}.
+     * Subclasses adding fields must override it and call this implementation.
+     * @since 3.1
+     */
+    public void recycle() {
+        saveConfig = null;
+        parent = null;
+        responseData = EMPTY_BA;
+        responseDataAsString = null;
+        responseCode = "";
+        label = "";
+        resultFileName = "";
+        samplerData = null;
+        threadName = "";
+        responseMessage = "";
+        responseHeaders = "";
+        contentType = "";
+        requestHeaders = "";
+        timeStamp = 0;
+        startTime = 0;
+        endTime = 0;
+        idleTime = 0;
+        intendedStartTime = 0;
+        pauseTime = 0;
+        assertionResults = null;
+        subResults = null;
+        dataType = "";
+        success = false;
+        synchronized (this) {
+            files = null;
+        }
+        dataEncoding = null;
+        elapsedTime = 0;
+        latency = 0;
+        connectTime = 0;
+        startNextThreadLoop = false;
+        stopThread = false;
+        stopTest = false;
+        stopTestNow = false;
+        isMonitor = false;
+        sampleCount = 1;
+        bytes = 0;
+        headersSize = 0;
+        bodySize = 0;
+        groupThreads = 0;
+        allThreads = 0;
+        location = null;
+        nanoTimeOffset = initOffset();
+    }
+
     public boolean isStampedAtStart() {
         return startTimeStamp;
     }
@@ -468,6 +528,23 @@ public class SampleResult implements Serializable, Cloneable, Searchable {
         stampAndTime(stamp, elapsed);
     }
 
+    /**
+     * Restore the times of a sample received from a remote engine, without recomputing them.
+     *
+     * @param stamp time stamp in milliseconds
+     * @param start start time in milliseconds, 0 if not set
+     * @param end end time in milliseconds, 0 if not set
+     * @param elapsed elapsed time in milliseconds
+     * @param idle idle time in milliseconds
+     */
+    void restoreTimes(long stamp, long start, long end, long elapsed, long idle) {
+        timeStamp = stamp;
+        startTime = start;
+        endTime = end;
+        elapsedTime = elapsed;
+        idleTime = idle;
+    }
+
     /**
      * Set the "marked" flag to show that the result has been written to the file.
      *
@@ -475,6 +552,9 @@ public class SampleResult implements Serializable, Cloneable, Searchable {
      * @return <code>true</code> if the result was previously marked
      */
     public synchronized boolean markFile(String filename) {
+        if (files == null) {
+            files = new HashSet<>(3);
+        }
         return !files.add(filename);
     }
 
@@ -725,6 +805,17 @@ public class SampleResult implements Serializable, Cloneable, Searchable {
         return responseData;
     }
 
+    /**
+     * Gets a read-only view of the responseData, without copying it
+     *
+     * @return the responseData value as a read-only {@link ByteBuffer} (cannot be null)
+     * @see #getResponseData()
+     * @since 3.1
+     */
+    public ByteBuffer getResponseDataAsByteBuffer() {
+        return ByteBuffer.wrap(responseData).asReadOnlyBuffer();
+    }
+
     /**
      * Gets the responseData of the SampleResult object as a String
      *
@@ -1010,6 +1101,27 @@ public class SampleResult implements Serializable, Cloneable, Searchable {
         return idleTime;
     }
 
+    /**
+     * When the sample started later than its schedule, e.g. because the previous
+     * sample of an open workload took longer than the interval between arrivals,
+     * the response time as seen by a user is the time elapsed since the intended start.
+     *
+     * @return the time at which the sample should have started, 0 if it started on time
+     * @since 3.1
+     */
+    public long getIntendedStartTime() {
+        return intendedStartTime;
+    }
+
+    /**
+     * @param intendedStartTime the time at which the sample should have started, 0 if it started on time
+     * @see #getIntendedStartTime()
+     * @since 3.1
+     */
+    public void setIntendedStartTime(long intendedStartTime) {
+        this.intendedStartTime = intendedStartTime;
+    }
+
     /**
      * @return the end time
      */
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.samplers;
+
+/**
+ * Implemented by the assertions, post-processors and sample listeners which
+ * declare how they use the results of the samplers in their scope.
+ * <p>
+ * When property <code>sampleresult.lightweight</code> is <code>true</code>:
+ * <ul>
+ * <li>samplers only keep the response data when an element in their scope needs it.
+ * Assertions and post-processors which do not implement this interface are assumed to need it,
+ * sample listeners are assumed not to need it.</li>
+ * <li>a result is reused for a later sample of the same thread when no element in the scope
+ * of its sampler retains it. Elements which do not implement this interface are assumed to retain it.</li>
+ * </ul>
+ * The answers must not change once the test has started.
+ * @since 3.1
+ */
+public interface SampleResultConsumer {
+
+    /**
+     * @return <code>true</code> if the response data of the results must be kept
+     */
+    boolean needsResponseData();
+
+    /**
+     * @return <code>true</code> if the results (or their sub-results) are referenced
+     *         after the element has processed them
+     */
+    boolean retainsSampleResults();
+}
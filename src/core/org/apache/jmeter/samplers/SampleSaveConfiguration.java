@@ -83,6 +83,9 @@ public class SampleSaveConfiguration implements Cloneable, Serializable {
     /** Indicates that the results file should be in CSV format. * */
     private static final String CSV = "csv"; // $NON_NLS-1$
 
+    /** Indicates that the results file should be in binary format. * */
+    private static final String BINARY = "binary"; // $NON_NLS-1$
+
     /** Indicates that the results should be stored in a database. * */
     //NOTUSED private static final String DATABASE = "db"; // $NON_NLS-1$
 
@@ -219,6 +222,8 @@ public class SampleSaveConfiguration implements Cloneable, Serializable {
     private static final String SAVE_SAMPLE_COUNT    = "jmeter.save.saveservice.sample_count"; // $NON_NLS-1$
 
     private static final String SAVE_IDLE_TIME       = "jmeter.save.saveservice.idle_time"; // $NON_NLS-1$
+
+    private static final String SAVE_INTENDED_START_TIME = "jmeter.save.saveservice.intended_start_time"; // $NON_NLS-1$
     // N.B. Remember to update the equals and hashCode methods when adding new variables.
 
     // Initialise values from properties
@@ -240,6 +245,8 @@ public class SampleSaveConfiguration implements Cloneable, Serializable {
 
     private boolean idleTime = _idleTime;
 
+    private boolean intendedStartTime = _intendedStartTime;
+
     // Does not appear to be used (yet)
     private int assertionsResultsToSave = _assertionsResultsToSave;
 
@@ -298,6 +305,10 @@ public class SampleSaveConfiguration implements Cloneable, Serializable {
 
     private static final boolean _idleTime;
 
+    private static final boolean _intendedStartTime;
+
+    private static final boolean _binary;
+
     private static final String DEFAULT_DELIMITER = ","; // $NON_NLS-1$
 
     /**
@@ -395,11 +406,16 @@ public class SampleSaveConfiguration implements Cloneable, Serializable {
 
         if (XML.equals(howToSave)) {
             _xml = true;
+            _binary = false;
+        } else if (BINARY.equals(howToSave)) {
+            _xml = false;
+            _binary = true;
         } else {
             if (!CSV.equals(howToSave)) {
                 log.warn(OUTPUT_FORMAT_PROP + " has unexepected value: '" + howToSave + "' - assuming 'csv' format");
             }
             _xml = false;
+            _binary = false;
         }
 
         _threadCounts=TRUE.equalsIgnoreCase(props.getProperty(SAVE_THREAD_COUNTS, TRUE));
@@ -407,11 +423,16 @@ public class SampleSaveConfiguration implements Cloneable, Serializable {
         _sampleCount=TRUE.equalsIgnoreCase(props.getProperty(SAVE_SAMPLE_COUNT, FALSE));
 
         _idleTime=TRUE.equalsIgnoreCase(props.getProperty(SAVE_IDLE_TIME, TRUE));
+
+        _intendedStartTime=TRUE.equalsIgnoreCase(props.getProperty(SAVE_INTENDED_START_TIME, FALSE));
     }
 
     // Don't save this, as not settable via GUI
     private String delimiter = _delimiter;
 
+    // Don't save this, as not settable via GUI
+    private boolean binary = _binary;
+
     // Don't save this - only needed for processing CSV headers currently
     private transient int varCount = 0;
 
@@ -490,6 +511,7 @@ public class SampleSaveConfiguration implements Cloneable, Serializable {
         "ResponseData", // XML
         "Subresults", // XML
         "Assertions", // XML
+        "IntendedStartTime",
     }));
     
     public SampleSaveConfiguration() {
@@ -511,6 +533,7 @@ public class SampleSaveConfiguration implements Cloneable, Serializable {
         fileName = value;
         hostname = value;
         idleTime = value;
+        intendedStartTime = value;
         label = value;
         latency = value;
         message = value;
@@ -577,6 +600,7 @@ public class SampleSaveConfiguration implements Cloneable, Serializable {
             s.responseData == responseData &&
             s.samplerData == samplerData &&
             s.xml == xml &&
+            s.binary == binary &&
             s.fieldNames == fieldNames &&
             s.responseHeaders == responseHeaders &&
             s.requestHeaders == requestHeaders &&
@@ -590,6 +614,7 @@ public class SampleSaveConfiguration implements Cloneable, Serializable {
             s.hostname == hostname &&
             s.sampleCount == sampleCount &&
             s.idleTime == idleTime &&
+            s.intendedStartTime == intendedStartTime &&
             s.threadCounts == threadCounts;
 
         boolean stringValues = false;
@@ -623,6 +648,7 @@ public class SampleSaveConfiguration implements Cloneable, Serializable {
         hash = 31 * hash + (responseData ? 1 : 0);
         hash = 31 * hash + (samplerData ? 1 : 0);
         hash = 31 * hash + (xml ? 1 : 0);
+        hash = 31 * hash + (binary ? 1 : 0);
         hash = 31 * hash + (fieldNames ? 1 : 0);
         hash = 31 * hash + (responseHeaders ? 1 : 0);
         hash = 31 * hash + (requestHeaders ? 1 : 0);
@@ -639,6 +665,7 @@ public class SampleSaveConfiguration implements Cloneable, Serializable {
         hash = 31 * hash + (formatter != null  ? formatter.hashCode() : 0);
         hash = 31 * hash + (sampleCount ? 1 : 0);
         hash = 31 * hash + (idleTime ? 1 : 0);
+        hash = 31 * hash + (intendedStartTime ? 1 : 0);
 
         return hash;
     }
@@ -738,6 +765,16 @@ public class SampleSaveConfiguration implements Cloneable, Serializable {
         this.responseData = responseData;
     }
 
+    /**
+     * Not one of the {@link #SAVE_CONFIG_NAMES}, it is only set by the
+     * <code>jmeter.save.saveservice.response_data.on_error</code> property.
+     * @return <code>true</code> if the response data of failed samples is saved
+     * @since 3.1
+     */
+    public boolean isResponseDataOnError() {
+        return responseDataOnError;
+    }
+
     public boolean saveSamplerData(SampleResult res) {
         return samplerData || TestPlan.getFunctionalMode() // as per 2.0 branch
                 || (responseDataOnError && !res.isSuccessful());
@@ -800,6 +837,19 @@ public class SampleSaveConfiguration implements Cloneable, Serializable {
         this.xml = xml;
     }
 
+    /**
+     * Results are saved in the binary format when
+     * <code>jmeter.save.saveservice.output_format</code> is <code>binary</code>.
+     * This is not settable via the GUI, so it is not named like the other
+     * save options.
+     *
+     * @return true if results are saved in the binary format
+     * @since 3.1
+     */
+    public boolean isBinaryOutput() {
+        return binary;
+    }
+
     public boolean saveFieldNames() {
         return fieldNames;
     }
@@ -920,4 +970,20 @@ public class SampleSaveConfiguration implements Cloneable, Serializable {
     public void setIdleTime(boolean save) {
         idleTime = save;
     }
+
+    /**
+     * @return true if the time at which samples should have started is saved
+     * @since 3.1
+     */
+    public boolean saveIntendedStartTime() {
+        return intendedStartTime;
+    }
+
+    /**
+     * @param save true to save the time at which samples should have started
+     * @since 3.1
+     */
+    public void setIntendedStartTime(boolean save) {
+        intendedStartTime = save;
+    }
 }
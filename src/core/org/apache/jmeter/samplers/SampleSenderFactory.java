@@ -48,6 +48,10 @@ public class SampleSenderFactory {
 
     private static final String MODE_STRIPPED_DISKSTORE = "StrippedDiskStore"; // $NON-NLS-1$
 
+    private static final String MODE_STREAM = "Stream"; // $NON-NLS-1$
+
+    private static final String MODE_HISTOGRAM = "Histogram"; // $NON-NLS-1$
+
     /**
      * Checks for the Jmeter property mode and returns the required class.
      *
@@ -89,6 +93,10 @@ public class SampleSenderFactory {
             return new DiskStoreSampleSender(listener);
         } else if(type.equalsIgnoreCase(MODE_STRIPPED_DISKSTORE)){
             return new DataStrippingSampleSender(new DiskStoreSampleSender(listener));
+        } else if(type.equalsIgnoreCase(MODE_STREAM)){
+            return new StreamSampleSender(listener);
+        } else if(type.equalsIgnoreCase(MODE_HISTOGRAM)){
+            return new HistogramSampleSender(listener);
         } else {
             // should be a user provided class name
             SampleSender s = null;
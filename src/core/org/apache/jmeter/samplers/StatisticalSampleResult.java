@@ -68,6 +68,26 @@ public class StatisticalSampleResult extends SampleResult implements
         elapsed = 0;
     }
 
+    /**
+     * Create a statistical sample result standing for some of the samples of another one,
+     * with the same key and times.
+     *
+     * @param res the sample result whose samples are split
+     * @param sampleCount number of samples
+     * @param errorCount number of failed samples
+     * @param elapsed sum of the elapsed times of the samples
+     */
+    StatisticalSampleResult(StatisticalSampleResult res, int sampleCount, int errorCount, long elapsed) {
+        setSampleLabel(res.getSampleLabel());
+        setThreadName(res.getThreadName());
+        setStartTime(res.getStartTime());
+        setEndTime(res.getEndTime());
+        setSuccessful(errorCount == 0);
+        setSampleCount(sampleCount);
+        this.errorCount = errorCount;
+        this.elapsed = elapsed;
+    }
+
     public void add(SampleResult res) {
         // Add Sample Counter
         setSampleCount(getSampleCount() + res.getSampleCount());
@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.samplers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.RemoteException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.apache.log.Logger;
+
+/**
+ * Receives on the client the samples streamed by the {@link StreamSampleSender}s of the servers,
+ * see {@link SampleEventStreamCodec} for the protocol.
+ * <p>
+ * A single socket is opened by the client, on port <code>stream.receiver.port</code>
+ * (any free port by default). Each sender registers the listener it sends samples to and
+ * gets a random identifier, which the server presents when it connects back.
+ * @since 3.1
+ */
+final class StreamSampleReceiver {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final int PORT = JMeterUtils.getPropDefault("stream.receiver.port", 0); // $NON-NLS-1$
+
+    /** Number of samples a server may send before the client processed them */
+    private static final int CREDITS = JMeterUtils.getPropDefault("stream.receiver.credits", 10000); // $NON-NLS-1$
+
+    private static StreamSampleReceiver instance;
+
+    private final ServerSocket serverSocket;
+
+    private final String host;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final ConcurrentMap<Long, RemoteSampleListener> listeners = new ConcurrentHashMap<>();
+
+    private StreamSampleReceiver() throws IOException {
+        serverSocket = new ServerSocket(PORT);
+        host = getAdvertisedHost();
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "StreamSampleReceiver-" + serverSocket.getLocalPort()); // $NON-NLS-1$
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("Receiving streamed samples on " + host + ":" + serverSocket.getLocalPort()); // $NON-NLS-1$
+    }
+
+    /**
+     * @return the receiver of the client, started on first call
+     * @throws IOException if the socket of the receiver cannot be opened
+     */
+    static synchronized StreamSampleReceiver getInstance() throws IOException {
+        if (instance == null) {
+            instance = new StreamSampleReceiver();
+        }
+        return instance;
+    }
+
+    // The servers connect back to the client the same way as they call its RMI listeners
+    private static String getAdvertisedHost() throws IOException {
+        String host = JMeterUtils.getPropDefault("stream.receiver.host", // $NON-NLS-1$
+                System.getProperty("java.rmi.server.hostname")); // $NON-NLS-1$
+        if (host == null || host.trim().length() == 0) {
+            host = InetAddress.getLocalHost().getHostAddress();
+        }
+        return host.trim();
+    }
+
+    /**
+     * @return the host the servers connect to
+     */
+    String getHost() {
+        return host;
+    }
+
+    /**
+     * @return the port the servers connect to
+     */
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Register the listener of a stream
+     * @param listener listener receiving the samples of the stream
+     * @return identifier of the stream
+     */
+    long register(RemoteSampleListener listener) {
+        while (true) {
+            long streamId = random.nextLong();
+            if (listeners.putIfAbsent(Long.valueOf(streamId), listener) == null) {
+                return streamId;
+            }
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                Thread reader = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        receive(socket);
+                    }
+                }, "StreamSampleReceiver-" + socket.getRemoteSocketAddress()); // $NON-NLS-1$
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                log.error("Failed to accept a connection", e);
+            }
+        }
+    }
+
+    private void receive(Socket socket) {
+        Long streamId = null;
+        SampleEventStreamCodec.Decoder decoder = new SampleEventStreamCodec.Decoder();
+        try {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            byte[] magic = new byte[SampleEventStreamCodec.MAGIC.length];
+            in.readFully(magic);
+            byte version = in.readByte();
+            if (!Arrays.equals(magic, SampleEventStreamCodec.MAGIC) || version != SampleEventStreamCodec.VERSION) {
+                log.warn("Ignoring connection from " + socket.getRemoteSocketAddress() + ": unsupported protocol");
+                return;
+            }
+            streamId = Long.valueOf(in.readLong());
+            RemoteSampleListener listener = listeners.get(streamId);
+            if (listener == null) {
+                log.warn("Ignoring connection from " + socket.getRemoteSocketAddress() + ": unknown stream");
+                streamId = null;
+                return;
+            }
+            log.info("Receiving samples from " + socket.getRemoteSocketAddress());
+            grant(out, CREDITS);
+            while (true) {
+                byte type = in.readByte();
+                if (type == SampleEventStreamCodec.END) {
+                    out.writeByte(SampleEventStreamCodec.END);
+                    out.flush();
+                    log.info("Received all samples from " + socket.getRemoteSocketAddress());
+                    return;
+                }
+                if (type != SampleEventStreamCodec.BATCH && type != SampleEventStreamCodec.COMPRESSED_BATCH) {
+                    throw new IOException("Unknown frame type " + type);
+                }
+                List<SampleEvent> events = decoder.readBatch(in, type == SampleEventStreamCodec.COMPRESSED_BATCH);
+                try {
+                    listener.processBatch(events);
+                } catch (RemoteException e) { // the listener is local, should not happen
+                    log.error("Failed to process samples", e);
+                }
+                grant(out, events.size());
+            }
+        } catch (IOException e) {
+            log.error("Failed to receive samples from " + socket.getRemoteSocketAddress(), e);
+        } finally {
+            if (streamId != null) {
+                listeners.remove(streamId);
+            }
+            decoder.close();
+            JOrphanUtils.closeQuietly(socket);
+        }
+    }
+
+    private static void grant(DataOutputStream out, int credits) throws IOException {
+        out.writeByte(SampleEventStreamCodec.CREDIT);
+        out.writeInt(credits);
+        out.flush();
+    }
+}
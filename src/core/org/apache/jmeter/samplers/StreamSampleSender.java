@@ -0,0 +1,316 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.samplers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.util.JMeterError;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.apache.log.Logger;
+
+/**
+ * Sends samples in a separate Thread, streaming them to the client over a socket
+ * in a compact binary encoding, see {@link SampleEventStreamCodec}.
+ * <p>
+ * RMI is only used for the test events. The server only sends as many samples as the client
+ * granted, so when the client cannot keep up the queue fills up and the sampling threads wait.
+ * If the server cannot connect to the client or the connection fails, the samples are sent
+ * in batches through RMI.
+ * @since 3.1
+ */
+public class StreamSampleSender extends AbstractSampleSender implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    // Create unique object as marker for end of queue
+    private transient static final SampleEvent FINAL_EVENT = new SampleEvent();
+
+    private static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private static final int MAX_DICTIONARY_SIZE = 65536;
+
+    private static final int CONNECT_TIMEOUT = 10000; // ms
+
+    private static final int serverConfiguredCapacity =
+            JMeterUtils.getPropDefault("stream.sender.queue_size", DEFAULT_QUEUE_SIZE); // $NON-NLS-1$
+
+    private static final boolean serverConfiguredCompression =
+            JMeterUtils.getPropDefault("stream.sender.compress", true); // $NON-NLS-1$
+
+    private final int clientConfiguredCapacity =
+            JMeterUtils.getPropDefault("stream.sender.queue_size", DEFAULT_QUEUE_SIZE); // $NON-NLS-1$
+
+    private final boolean clientConfiguredCompression =
+            JMeterUtils.getPropDefault("stream.sender.compress", true); // $NON-NLS-1$
+
+    // created by client
+    private final RemoteSampleListener listener;
+
+    private final String receiverHost; // null if the client could not start its receiver
+
+    private final int receiverPort;
+
+    private final long streamId;
+
+    private transient BlockingQueue<SampleEvent> queue; // created by server in readResolve method
+
+    private transient Worker worker;
+
+    /**
+     * Processed by the RMI server code.
+     *
+     * @return this
+     * @throws ObjectStreamException never
+     */
+    private Object readResolve() throws ObjectStreamException {
+        int capacity = isClientConfigured() ? clientConfiguredCapacity : serverConfiguredCapacity;
+        boolean compress = isClientConfigured() ? clientConfiguredCompression : serverConfiguredCompression;
+        log.info("Using stream queue size (stream.sender.queue_size): " + capacity
+                + ", compression (stream.sender.compress): " + compress); // server log file
+        queue = new ArrayBlockingQueue<>(capacity);
+        worker = new Worker(queue, listener, receiverHost, receiverPort, streamId, compress);
+        worker.setDaemon(true);
+        worker.start();
+        return this;
+    }
+
+    // Created by SampleSenderFactory
+    protected StreamSampleSender(RemoteSampleListener listener) {
+        this.listener = listener;
+        String host = null;
+        int port = 0;
+        long id = 0;
+        try {
+            StreamSampleReceiver receiver = StreamSampleReceiver.getInstance();
+            host = receiver.getHost();
+            port = receiver.getPort();
+            id = receiver.register(listener);
+        } catch (IOException e) {
+            log.error("Could not start to receive streamed samples, samples will be sent through RMI", e);
+        }
+        receiverHost = host;
+        receiverPort = port;
+        streamId = id;
+        log.info("Using Stream Remote Sampler for this test run, queue size " + clientConfiguredCapacity); // client log file
+    }
+
+    @Override
+    public void testEnded(String host) {
+        log.debug("Test Ended on " + host);
+        try {
+            queue.put(FINAL_EVENT);
+            // The client must have received all the samples before being told the test ended
+            worker.join();
+        } catch (InterruptedException e) {
+            log.warn("Interrupted while waiting for the samples to be sent");
+            Thread.currentThread().interrupt();
+        }
+        try {
+            listener.testEnded(host);
+        } catch (Exception ex) {
+            log.warn("testEnded(host)" + ex);
+        }
+    }
+
+    @Override
+    public void sampleOccurred(SampleEvent e) {
+        try {
+            queue.put(e);
+        } catch (Exception err) {
+            log.error("sampleOccurred; failed to queue the sample", err);
+        }
+    }
+
+    // package protected to allow access from test code
+    static class Worker extends Thread {
+
+        private final BlockingQueue<SampleEvent> queue;
+
+        private final RemoteSampleListener listener;
+
+        private final String host;
+
+        private final int port;
+
+        private final long streamId;
+
+        private final SampleEventStreamCodec.Encoder encoder;
+
+        private Socket socket;
+
+        private DataInputStream in;
+
+        private DataOutputStream out;
+
+        private int credits;
+
+        Worker(BlockingQueue<SampleEvent> queue, RemoteSampleListener listener,
+                String host, int port, long streamId, boolean compress) {
+            super("StreamSampleSender"); // $NON-NLS-1$
+            this.queue = queue;
+            this.listener = listener;
+            this.host = host;
+            this.port = port;
+            this.streamId = streamId;
+            this.encoder = new SampleEventStreamCodec.Encoder(compress, MAX_DICTIONARY_SIZE);
+        }
+
+        @Override
+        public void run() {
+            try {
+                connect();
+                List<SampleEvent> batch = new ArrayList<>();
+                boolean eof = false;
+                while (!eof) {
+                    SampleEvent e = queue.take();
+                    while (e != null) { // try to process as many as possible
+                        if (e == FINAL_EVENT) {
+                            eof = true;
+                            break;
+                        }
+                        batch.add(e);
+                        e = batch.size() < MAX_BATCH_SIZE ? queue.poll() : null;
+                    }
+                    if (!batch.isEmpty()) {
+                        send(batch);
+                        batch.clear();
+                    }
+                }
+                end();
+            } catch (InterruptedException e) {
+                // NOOP
+            } finally {
+                encoder.close();
+                JOrphanUtils.closeQuietly(socket);
+            }
+            log.debug("Worker ended");
+        }
+
+        private void connect() {
+            if (host == null) {
+                return;
+            }
+            try {
+                socket = new Socket();
+                socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+                socket.setTcpNoDelay(true);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out.write(SampleEventStreamCodec.MAGIC);
+                out.writeByte(SampleEventStreamCodec.VERSION);
+                out.writeLong(streamId);
+                out.flush();
+                log.info("Streaming samples to " + host + ":" + port);
+            } catch (IOException e) {
+                log.error("Could not connect to " + host + ":" + port + ", samples will be sent through RMI", e);
+                fail();
+            }
+        }
+
+        private void send(List<SampleEvent> batch) {
+            int offset = 0; // events already received by the client
+            if (out != null) {
+                try {
+                    while (offset < batch.size()) {
+                        readCredits(credits == 0);
+                        int count = Math.min(credits, batch.size() - offset);
+                        encoder.writeBatch(out, batch.subList(offset, offset + count));
+                        out.flush();
+                        credits -= count;
+                        offset += count;
+                    }
+                    return;
+                } catch (IOException e) {
+                    log.error("Failed to stream samples, samples will be sent through RMI", e);
+                    fail();
+                }
+            }
+            try {
+                // copied as the sub list is not serializable
+                listener.processBatch(offset == 0 ? batch : new ArrayList<>(batch.subList(offset, batch.size())));
+            } catch (RemoteException err) {
+                if (err.getCause() instanceof java.net.ConnectException){
+                    throw new JMeterError("Could not return sample",err);
+                }
+                log.error("Failed to return sample", err);
+            }
+        }
+
+        /**
+         * Read the credits granted by the client
+         * @param wait true to wait for credits, false to only read those already received
+         */
+        private void readCredits(boolean wait) throws IOException {
+            while (wait || in.available() > 0) {
+                byte type = in.readByte();
+                if (type != SampleEventStreamCodec.CREDIT) {
+                    throw new IOException("Unexpected frame type " + type);
+                }
+                credits += in.readInt();
+                wait = credits == 0;
+            }
+        }
+
+        private void end() {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.writeByte(SampleEventStreamCodec.END);
+                out.flush();
+                // Wait for the client to have processed all the samples
+                byte type;
+                while ((type = in.readByte()) == SampleEventStreamCodec.CREDIT) {
+                    in.readInt();
+                }
+                if (type != SampleEventStreamCodec.END) {
+                    throw new IOException("Unexpected frame type " + type);
+                }
+            } catch (IOException e) {
+                log.error("Failed to end the stream of samples", e);
+            }
+        }
+
+        private void fail() {
+            JOrphanUtils.closeQuietly(socket);
+            socket = null;
+            in = null;
+            out = null;
+        }
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.save;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.apache.log.Logger;
+
+/**
+ * Reads a binary result file block by block, see {@link BinarySaveService}
+ * for the format.
+ * <p>
+ * A block that was not completely written, for instance because JMeter was
+ * killed, ends the file.
+ * </p>
+ *
+ * @since 3.1
+ */
+public class BinaryResultReader implements Closeable {
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final int BUF_SIZE = 65536;
+
+    private final DataInputStream in;
+
+    private String[] columnNames;
+
+    private byte[] types;
+
+    /**
+     * @param in
+     *            stream positioned at the start of a binary result file
+     * @throws IOException
+     *             if the stream is not a binary result file
+     */
+    public BinaryResultReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in instanceof BufferedInputStream ? in
+                : new BufferedInputStream(in, BUF_SIZE));
+        try {
+            BinarySaveService.readFileStart(this.in);
+        } catch (IOException e) {
+            JOrphanUtils.closeQuietly(this.in);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the next block of samples
+     *
+     * @return the block, null at the end of the file
+     * @throws IOException
+     *             when the file cannot be read or is corrupted
+     */
+    public Block readBlock() throws IOException {
+        try {
+            while (true) {
+                int record = in.read();
+                if (record == -1) {
+                    return null;
+                }
+                if (record == BinarySaveService.HEADER_RECORD) {
+                    readHeader();
+                } else if (record == BinarySaveService.BLOCK_RECORD) {
+                    return decodeBlock();
+                } else {
+                    throw new IOException("Unexpected record type " + record);
+                }
+            }
+        } catch (EOFException e) {
+            log.warn("Binary result file ends with an incomplete block, it was ignored");
+            return null;
+        }
+    }
+
+    private void readHeader() throws IOException {
+        int count = (int) BinarySaveService.readVarLong(in);
+        String[] names = new String[count];
+        byte[] columnTypes = new byte[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = BinarySaveService.readString(in);
+            columnTypes[i] = in.readByte();
+        }
+        columnNames = names;
+        types = columnTypes;
+    }
+
+    private Block decodeBlock() throws IOException {
+        if (columnNames == null) {
+            throw new IOException("Block found before the column names");
+        }
+        int length = in.readInt();
+        int rowCount = in.readInt();
+        long minTimeStamp = in.readLong();
+        long maxTimeStamp = in.readLong();
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+        Block block = new Block(columnNames, types, rowCount, minTimeStamp, maxTimeStamp);
+        for (int col = 0; col < columnNames.length; col++) {
+            switch (types[col]) {
+            case BinarySaveService.TYPE_TIMESTAMP:
+                long[] timeStamps = new long[rowCount];
+                long previous = minTimeStamp;
+                for (int row = 0; row < rowCount; row++) {
+                    previous += BinarySaveService.readVarLong(data);
+                    timeStamps[row] = previous;
+                }
+                block.longs[col] = timeStamps;
+                break;
+            case BinarySaveService.TYPE_LONG:
+                long[] values = new long[rowCount];
+                for (int row = 0; row < rowCount; row++) {
+                    values[row] = BinarySaveService.readVarLong(data);
+                }
+                block.longs[col] = values;
+                break;
+            case BinarySaveService.TYPE_BOOLEAN:
+                boolean[] booleans = new boolean[rowCount];
+                int bits = 0;
+                for (int row = 0; row < rowCount; row++) {
+                    if ((row & 7) == 0) {
+                        bits = data.readUnsignedByte();
+                    }
+                    booleans[row] = (bits & (1 << (row & 7))) != 0;
+                }
+                block.booleans[col] = booleans;
+                break;
+            case BinarySaveService.TYPE_STRING:
+                int size = (int) BinarySaveService.readVarLong(data);
+                String[] dictionary = new String[size];
+                for (int i = 0; i < size; i++) {
+                    dictionary[i] = BinarySaveService.readString(data);
+                }
+                block.dictionaries[col] = dictionary;
+                if (size > 1) {
+                    int[] indexes = new int[rowCount];
+                    for (int row = 0; row < rowCount; row++) {
+                        indexes[row] = (int) BinarySaveService.readVarLong(data);
+                    }
+                    block.indexes[col] = indexes;
+                }
+                break;
+            default:
+                throw new IOException("Unknown type " + types[col]
+                        + " for column " + columnNames[col]);
+            }
+        }
+        return block;
+    }
+
+    @Override
+    public void close() {
+        JOrphanUtils.closeQuietly(in);
+    }
+
+    /**
+     * Lists the blocks of a binary result file without decoding their samples
+     *
+     * @param file
+     *            the binary result file
+     * @return the blocks of the file, in the order of the file
+     * @throws IOException
+     *             when the file cannot be read or is corrupted
+     */
+    public static List<BlockInfo> readIndex(File file) throws IOException {
+        List<BlockInfo> index = new ArrayList<>();
+        try (BinaryResultReader reader = new BinaryResultReader(new FileInputStream(file))) {
+            DataInputStream in = reader.in;
+            try {
+                while (true) {
+                    int record = in.read();
+                    if (record == -1) {
+                        break;
+                    }
+                    if (record == BinarySaveService.HEADER_RECORD) {
+                        reader.readHeader();
+                    } else if (record == BinarySaveService.BLOCK_RECORD) {
+                        int length = in.readInt();
+                        int rowCount = in.readInt();
+                        long minTimeStamp = in.readLong();
+                        long maxTimeStamp = in.readLong();
+                        int skipped = 0;
+                        while (skipped < length) {
+                            int n = in.skipBytes(length - skipped);
+                            if (n <= 0) {
+                                throw new EOFException();
+                            }
+                            skipped += n;
+                        }
+                        index.add(new BlockInfo(rowCount, minTimeStamp, maxTimeStamp));
+                    } else {
+                        throw new IOException("Unexpected record type " + record);
+                    }
+                }
+            } catch (EOFException e) {
+                log.warn(file + " ends with an incomplete block, it was ignored");
+            }
+        }
+        return Collections.unmodifiableList(index);
+    }
+
+    /**
+     * Summary of a block, read without decoding its samples
+     */
+    public static final class BlockInfo {
+        private final int rowCount;
+        private final long minTimeStamp;
+        private final long maxTimeStamp;
+
+        BlockInfo(int rowCount, long minTimeStamp, long maxTimeStamp) {
+            this.rowCount = rowCount;
+            this.minTimeStamp = minTimeStamp;
+            this.maxTimeStamp = maxTimeStamp;
+        }
+
+        /**
+         * @return the number of samples of the block
+         */
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * @return the lowest time stamp of the samples of the block
+         */
+        public long getMinTimeStamp() {
+            return minTimeStamp;
+        }
+
+        /**
+         * @return the highest time stamp of the samples of the block
+         */
+        public long getMaxTimeStamp() {
+            return maxTimeStamp;
+        }
+    }
+
+    /**
+     * Decoded samples of a block, stored by column.
+     * Strings are shared between the samples of the block.
+     */
+    public static final class Block {
+        private final String[] columnNames;
+        private final byte[] types;
+        private final int rowCount;
+        private final long minTimeStamp;
+        private final long maxTimeStamp;
+        final long[][] longs;
+        final boolean[][] booleans;
+        final String[][] dictionaries;
+        final int[][] indexes;
+
+        Block(String[] columnNames, byte[] types, int rowCount,
+                long minTimeStamp, long maxTimeStamp) {
+            this.columnNames = columnNames;
+            this.types = types;
+            this.rowCount = rowCount;
+            this.minTimeStamp = minTimeStamp;
+            this.maxTimeStamp = maxTimeStamp;
+            this.longs = new long[columnNames.length][];
+            this.booleans = new boolean[columnNames.length][];
+            this.dictionaries = new String[columnNames.length][];
+            this.indexes = new int[columnNames.length][];
+        }
+
+        /**
+         * @return the names of the columns, as in a CSV header
+         */
+        public String[] getColumnNames() {
+            return columnNames.clone();
+        }
+
+        /**
+         * @param name
+         *            the name of a column
+         * @return the index of the column, -1 if there is no such column
+         */
+        public int indexOf(String name) {
+            for (int i = 0; i < columnNames.length; i++) {
+                if (columnNames[i].equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return the number of samples of the block
+         */
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * @return the lowest time stamp of the samples of the block
+         */
+        public long getMinTimeStamp() {
+            return minTimeStamp;
+        }
+
+        /**
+         * @return the highest time stamp of the samples of the block
+         */
+        public long getMaxTimeStamp() {
+            return maxTimeStamp;
+        }
+
+        /**
+         * @param column
+         *            index of a numeric or time stamp column
+         * @param row
+         *            index of the sample in the block
+         * @return the value
+         */
+        public long getLong(int column, int row) {
+            long[] values = longs[column];
+            if (values == null) {
+                return Long.parseLong(getString(column, row));
+            }
+            return values[row];
+        }
+
+        /**
+         * @param column
+         *            index of a boolean column
+         * @param row
+         *            index of the sample in the block
+         * @return the value
+         */
+        public boolean getBoolean(int column, int row) {
+            boolean[] values = booleans[column];
+            if (values == null) {
+                return Boolean.parseBoolean(getString(column, row));
+            }
+            return values[row];
+        }
+
+        /**
+         * @param column
+         *            index of a column
+         * @param row
+         *            index of the sample in the block
+         * @return the value as it would be saved in a CSV file
+         */
+        public String getString(int column, int row) {
+            switch (types[column]) {
+            case BinarySaveService.TYPE_TIMESTAMP:
+            case BinarySaveService.TYPE_LONG:
+                return Long.toString(longs[column][row]);
+            case BinarySaveService.TYPE_BOOLEAN:
+                return Boolean.toString(booleans[column][row]);
+            default:
+                int[] columnIndexes = indexes[column];
+                String[] dictionary = dictionaries[column];
+                return columnIndexes == null ? dictionary[0]
+                        : dictionary[columnIndexes[row]];
+            }
+        }
+
+        /**
+         * @param row
+         *            index of the sample in the block
+         * @return the values of the sample as they would be saved in a CSV
+         *         file
+         */
+        public String[] getRow(int row) {
+            String[] values = new String[columnNames.length];
+            for (int col = 0; col < values.length; col++) {
+                values[col] = getString(col, row);
+            }
+            return values;
+        }
+    }
+}
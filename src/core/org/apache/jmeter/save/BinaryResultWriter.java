@@ -0,0 +1,555 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.save;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jmeter.assertions.AssertionResult;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleSaveConfiguration;
+import org.apache.jmeter.util.JMeterUtils;
+
+/**
+ * Writes samples to a binary result file, see {@link BinarySaveService} for
+ * the format.
+ * <p>
+ * Samples are buffered column by column and written a block at a time, when
+ * the block is full or when the writer is flushed. Writing is thread-safe.
+ * </p>
+ *
+ * @since 3.1
+ */
+public class BinaryResultWriter implements Closeable, Flushable {
+
+    private static final int DEFAULT_BLOCK_SIZE =
+            JMeterUtils.getPropDefault("jmeter.save.saveservice.binary.block_size", 4096); // $NON-NLS-1$
+
+    private final DataOutputStream out;
+
+    private final String[] columnNames;
+
+    private final Column[] columns;
+
+    /** index of the time stamp column, -1 if none */
+    private final int timeStampColumn;
+
+    private final int blockSize;
+
+    private final ByteArrayOutputStream blockBuffer = new ByteArrayOutputStream(8192);
+
+    private final DataOutputStream blockOut = new DataOutputStream(blockBuffer);
+
+    private int rowCount;
+
+    /**
+     * Creates a writer for the columns saved by a configuration
+     *
+     * @param out
+     *            stream to write to, should be buffered
+     * @param saveConfig
+     *            configuration defining the saved columns
+     * @param newFile
+     *            true if the stream is at the start of the file, false if
+     *            samples are appended to an existing binary file
+     * @throws IOException
+     *             when the header cannot be written
+     */
+    public BinaryResultWriter(OutputStream out, SampleSaveConfiguration saveConfig,
+            boolean newFile) throws IOException {
+        this(out, CSVSaveService.printableFieldNamesToString(saveConfig)
+                .split("\\Q" + saveConfig.getDelimiter()), newFile); // $NON-NLS-1$
+    }
+
+    /**
+     * Creates a writer for columns with CSV names
+     *
+     * @param out
+     *            stream to write to, should be buffered
+     * @param columnNames
+     *            names of the columns, as in a CSV header
+     * @param newFile
+     *            true if the stream is at the start of the file, false if
+     *            samples are appended to an existing binary file
+     * @throws IOException
+     *             when the header cannot be written
+     */
+    public BinaryResultWriter(OutputStream out, String[] columnNames,
+            boolean newFile) throws IOException {
+        this(out, columnNames, newFile, DEFAULT_BLOCK_SIZE);
+    }
+
+    BinaryResultWriter(OutputStream out, String[] columnNames,
+            boolean newFile, int blockSize) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.columnNames = columnNames.clone();
+        this.blockSize = Math.max(1, blockSize);
+        this.columns = new Column[columnNames.length];
+        int timeStamp = -1;
+        for (int i = 0; i < columnNames.length; i++) {
+            byte type = BinarySaveService.getColumnType(columnNames[i]);
+            switch (type) {
+            case BinarySaveService.TYPE_TIMESTAMP:
+                timeStamp = i;
+                columns[i] = new LongColumn(type, blockSize);
+                break;
+            case BinarySaveService.TYPE_LONG:
+                columns[i] = new LongColumn(type, blockSize);
+                break;
+            case BinarySaveService.TYPE_BOOLEAN:
+                columns[i] = new BooleanColumn(blockSize);
+                break;
+            default:
+                columns[i] = new StringColumn(blockSize);
+                break;
+            }
+        }
+        this.timeStampColumn = timeStamp;
+        if (newFile) {
+            this.out.write(BinarySaveService.MAGIC);
+            this.out.writeByte(BinarySaveService.VERSION);
+        }
+        writeHeader();
+    }
+
+    private void writeHeader() throws IOException {
+        out.writeByte(BinarySaveService.HEADER_RECORD);
+        BinarySaveService.writeVarLong(out, columns.length);
+        for (int i = 0; i < columns.length; i++) {
+            BinarySaveService.writeString(out, columnNames[i]);
+            out.writeByte(columns[i].type);
+        }
+    }
+
+    /**
+     * @return the names of the columns
+     */
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+    /**
+     * Saves a sample, in the same columns as
+     * {@link CSVSaveService#resultToDelimitedString(SampleEvent)}
+     *
+     * @param event
+     *            the sample event, whose save configuration must be the one
+     *            used to create this writer
+     * @throws IOException
+     *             when the block cannot be written
+     */
+    public void write(SampleEvent event) throws IOException {
+        write(event, event.getResult().getSaveConfig());
+    }
+
+    /**
+     * Saves a sample, in the same columns as
+     * {@link CSVSaveService#resultToDelimitedString(SampleEvent, SampleSaveConfiguration, String)}
+     *
+     * @param event
+     *            the sample event
+     * @param saveConfig
+     *            the save configuration used to create this writer, rather
+     *            than the one of the result
+     * @throws IOException
+     *             when the block cannot be written
+     * @since 3.1
+     */
+    public synchronized void write(SampleEvent event, SampleSaveConfiguration saveConfig) throws IOException {
+        SampleResult sample = event.getResult();
+        int c = 0;
+        if (saveConfig.saveTimestamp()) {
+            columns[c++].add(sample.getTimeStamp());
+        }
+        if (saveConfig.saveTime()) {
+            columns[c++].add(sample.getTime());
+        }
+        if (saveConfig.saveLabel()) {
+            columns[c++].add(sample.getSampleLabel());
+        }
+        if (saveConfig.saveCode()) {
+            columns[c++].add(sample.getResponseCode());
+        }
+        if (saveConfig.saveMessage()) {
+            columns[c++].add(sample.getResponseMessage());
+        }
+        if (saveConfig.saveThreadName()) {
+            columns[c++].add(sample.getThreadName());
+        }
+        if (saveConfig.saveDataType()) {
+            columns[c++].add(sample.getDataType());
+        }
+        if (saveConfig.saveSuccess()) {
+            columns[c++].add(sample.isSuccessful());
+        }
+        if (saveConfig.saveAssertionResultsFailureMessage()) {
+            columns[c++].add(getFailureMessage(sample));
+        }
+        if (saveConfig.saveBytes()) {
+            columns[c++].add(sample.getBytes());
+        }
+        if (saveConfig.saveThreadCounts()) {
+            columns[c++].add(sample.getGroupThreads());
+            columns[c++].add(sample.getAllThreads());
+        }
+        if (saveConfig.saveUrl()) {
+            columns[c++].add(String.valueOf(sample.getURL()));
+        }
+        if (saveConfig.saveFileName()) {
+            columns[c++].add(sample.getResultFileName());
+        }
+        if (saveConfig.saveLatency()) {
+            columns[c++].add(sample.getLatency());
+        }
+        if (saveConfig.saveEncoding()) {
+            columns[c++].add(sample.getDataEncodingWithDefault());
+        }
+        if (saveConfig.saveSampleCount()) {
+            columns[c++].add(sample.getSampleCount());
+            columns[c++].add(sample.getErrorCount());
+        }
+        if (saveConfig.saveHostname()) {
+            columns[c++].add(event.getHostname());
+        }
+        if (saveConfig.saveIdleTime()) {
+            columns[c++].add(sample.getIdleTime());
+        }
+        if (saveConfig.saveConnectTime()) {
+            columns[c++].add(sample.getConnectTime());
+        }
+        if (saveConfig.saveIntendedStartTime()) {
+            columns[c++].add(sample.getIntendedStartTime());
+        }
+        for (int i = 0; i < SampleEvent.getVarCount(); i++) {
+            columns[c++].add(event.getVarValue(i));
+        }
+        endRow();
+    }
+
+    private static String getFailureMessage(SampleResult sample) {
+        AssertionResult[] results = sample.getAssertionResults();
+        if (results != null) {
+            // Find the first non-null message
+            for (AssertionResult result : results) {
+                String message = result.getFailureMessage();
+                if (message != null) {
+                    return message;
+                }
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Saves a sample read from a CSV file
+     *
+     * @param values
+     *            the values of the columns, as saved in a CSV file
+     * @throws IOException
+     *             when a value does not match the type of its column or the
+     *             block cannot be written
+     */
+    public synchronized void write(String[] values) throws IOException {
+        if (values.length != columns.length) {
+            throw new IOException("Expected " + columns.length + " columns, found "
+                    + values.length + ": " + Arrays.toString(values));
+        }
+        for (int i = 0; i < values.length; i++) {
+            Column column = columns[i];
+            if (column instanceof LongColumn) {
+                try {
+                    column.add(Long.parseLong(values[i]));
+                } catch (NumberFormatException e) {
+                    for (int j = 0; j < i; j++) {
+                        columns[j].removeLast();
+                    }
+                    throw new IOException("Column " + columnNames[i]
+                            + " must hold a number, found: " + values[i], e);
+                }
+            } else if (column instanceof BooleanColumn) {
+                column.add(Boolean.parseBoolean(values[i]));
+            } else {
+                column.add(values[i]);
+            }
+        }
+        endRow();
+    }
+
+    private void endRow() throws IOException {
+        rowCount++;
+        if (rowCount >= blockSize) {
+            writeBlock();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (rowCount == 0) {
+            return;
+        }
+        long minTimeStamp = 0;
+        long maxTimeStamp = 0;
+        if (timeStampColumn >= 0) {
+            LongColumn timeStamps = (LongColumn) columns[timeStampColumn];
+            minTimeStamp = timeStamps.min();
+            maxTimeStamp = timeStamps.max();
+        }
+        blockBuffer.reset();
+        for (Column column : columns) {
+            column.encode(blockOut, minTimeStamp);
+            column.reset();
+        }
+        out.writeByte(BinarySaveService.BLOCK_RECORD);
+        out.writeInt(blockBuffer.size());
+        out.writeInt(rowCount);
+        out.writeLong(minTimeStamp);
+        out.writeLong(maxTimeStamp);
+        blockBuffer.writeTo(out);
+        rowCount = 0;
+    }
+
+    /**
+     * Writes the buffered samples as a block and flushes the stream
+     *
+     * @throws IOException
+     *             when the block cannot be written
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        writeBlock();
+        out.flush();
+    }
+
+    /**
+     * Writes the buffered samples and closes the stream
+     *
+     * @throws IOException
+     *             when the block cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            writeBlock();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Values of a column for the current block
+     */
+    private abstract static class Column {
+        final byte type;
+
+        Column(byte type) {
+            this.type = type;
+        }
+
+        void add(long value) {
+            add(Long.toString(value));
+        }
+
+        void add(boolean value) {
+            add(Boolean.toString(value));
+        }
+
+        abstract void add(String value);
+
+        abstract void removeLast();
+
+        abstract void encode(DataOutputStream out, long minTimeStamp) throws IOException;
+
+        abstract void reset();
+    }
+
+    private static final class LongColumn extends Column {
+        private long[] values;
+        private int size;
+
+        LongColumn(byte type, int capacity) {
+            super(type);
+            values = new long[capacity];
+        }
+
+        @Override
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            values[size++] = value;
+        }
+
+        @Override
+        void add(String value) {
+            add(Long.parseLong(value));
+        }
+
+        @Override
+        void removeLast() {
+            size--;
+        }
+
+        long min() {
+            long min = Long.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                min = Math.min(min, values[i]);
+            }
+            return min;
+        }
+
+        long max() {
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < size; i++) {
+                max = Math.max(max, values[i]);
+            }
+            return max;
+        }
+
+        @Override
+        void encode(DataOutputStream out, long minTimeStamp) throws IOException {
+            if (type == BinarySaveService.TYPE_TIMESTAMP) {
+                long previous = minTimeStamp;
+                for (int i = 0; i < size; i++) {
+                    BinarySaveService.writeVarLong(out, values[i] - previous);
+                    previous = values[i];
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    BinarySaveService.writeVarLong(out, values[i]);
+                }
+            }
+        }
+
+        @Override
+        void reset() {
+            size = 0;
+        }
+    }
+
+    private static final class BooleanColumn extends Column {
+        private boolean[] values;
+        private int size;
+
+        BooleanColumn(int capacity) {
+            super(BinarySaveService.TYPE_BOOLEAN);
+            values = new boolean[capacity];
+        }
+
+        @Override
+        void add(boolean value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            values[size++] = value;
+        }
+
+        @Override
+        void add(String value) {
+            add(Boolean.parseBoolean(value));
+        }
+
+        @Override
+        void removeLast() {
+            size--;
+        }
+
+        @Override
+        void encode(DataOutputStream out, long minTimeStamp) throws IOException {
+            int bits = 0;
+            for (int i = 0; i < size; i++) {
+                if (values[i]) {
+                    bits |= 1 << (i & 7);
+                }
+                if ((i & 7) == 7) {
+                    out.writeByte(bits);
+                    bits = 0;
+                }
+            }
+            if ((size & 7) != 0) {
+                out.writeByte(bits);
+            }
+        }
+
+        @Override
+        void reset() {
+            size = 0;
+        }
+    }
+
+    private static final class StringColumn extends Column {
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final List<String> entries = new ArrayList<>();
+        private int[] indexes;
+        private int size;
+
+        StringColumn(int capacity) {
+            super(BinarySaveService.TYPE_STRING);
+            indexes = new int[capacity];
+        }
+
+        @Override
+        void add(String value) {
+            String key = String.valueOf(value);
+            Integer index = dictionary.get(key);
+            if (index == null) {
+                index = Integer.valueOf(entries.size());
+                dictionary.put(key, index);
+                entries.add(key);
+            }
+            if (size == indexes.length) {
+                indexes = Arrays.copyOf(indexes, 2 * size);
+            }
+            indexes[size++] = index.intValue();
+        }
+
+        @Override
+        void removeLast() {
+            // the value stays in the dictionary, which is harmless
+            size--;
+        }
+
+        @Override
+        void encode(DataOutputStream out, long minTimeStamp) throws IOException {
+            BinarySaveService.writeVarLong(out, entries.size());
+            for (String entry : entries) {
+                BinarySaveService.writeString(out, entry);
+            }
+            if (entries.size() > 1) {
+                for (int i = 0; i < size; i++) {
+                    BinarySaveService.writeVarLong(out, indexes[i]);
+                }
+            }
+        }
+
+        @Override
+        void reset() {
+            dictionary.clear();
+            entries.clear();
+            size = 0;
+        }
+    }
+}
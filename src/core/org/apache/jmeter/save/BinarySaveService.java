@@ -0,0 +1,442 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.save;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.commons.lang3.CharUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jmeter.reporters.ResultCollector;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleSaveConfiguration;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jmeter.visualizers.Visualizer;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * This class provides a means for saving/reading test results in a compact,
+ * column oriented binary format, and for converting them from and to CSV.
+ * <p>
+ * The file holds the same columns as the CSV format, with the same names, and
+ * is made of records following a magic number and a version byte:
+ * </p>
+ * <ul>
+ * <li>a header record, <code>'H'</code>, gives the names and types of the
+ * columns of the blocks following it. A header is written each time a file is
+ * opened, so results can be appended to an existing file</li>
+ * <li>a block record, <code>'B'</code>, holds up to
+ * <code>jmeter.save.saveservice.binary.block_size</code> samples. It starts
+ * with its length, its number of samples and the lowest and highest time
+ * stamps of its samples, so files can be indexed without decoding samples
+ * (see {@link BinaryResultReader#readIndex(File)}). Samples are then stored
+ * column after column: time stamps as deltas, other numbers as variable length
+ * integers, booleans as bits and strings through a dictionary of the block,
+ * so each distinct label or thread name is stored once per block</li>
+ * </ul>
+ * <p>
+ * Time stamps are always stored in milliseconds, whatever the
+ * <code>jmeter.save.saveservice.timestamp_format</code> property.
+ * </p>
+ *
+ * @since 3.1
+ */
+// For unit tests, @see TestBinarySaveService
+public final class BinarySaveService {
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    /** Value of the jmeter.save.saveservice.output_format property for binary files */
+    public static final String BINARY = "binary"; // $NON-NLS-1$
+
+    /** Magic number of binary result files */
+    static final byte[] MAGIC = { 'J', 'T', 'L', 'B' };
+
+    static final byte VERSION = 1;
+
+    static final byte HEADER_RECORD = 'H';
+
+    static final byte BLOCK_RECORD = 'B';
+
+    /** Column of strings, encoded through a dictionary */
+    static final byte TYPE_STRING = 0;
+
+    /** Column of numbers */
+    static final byte TYPE_LONG = 1;
+
+    /** Column of time stamps, encoded as deltas */
+    static final byte TYPE_TIMESTAMP = 2;
+
+    /** Column of booleans */
+    static final byte TYPE_BOOLEAN = 3;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private BinarySaveService() {
+    }
+
+    /**
+     * Gets the type of a column from its name
+     *
+     * @param columnName
+     *            name of the column, as in the CSV header
+     * @return type of the column
+     */
+    static byte getColumnType(String columnName) {
+        switch (columnName) {
+        case CSVSaveService.TIME_STAMP:
+            return TYPE_TIMESTAMP;
+        case CSVSaveService.SUCCESSFUL:
+            return TYPE_BOOLEAN;
+        case CSVSaveService.CSV_ELAPSED:
+        case CSVSaveService.CSV_BYTES:
+        case CSVSaveService.CSV_THREAD_COUNT1:
+        case CSVSaveService.CSV_THREAD_COUNT2:
+        case CSVSaveService.CSV_LATENCY:
+        case CSVSaveService.CSV_SAMPLE_COUNT:
+        case CSVSaveService.CSV_ERROR_COUNT:
+        case CSVSaveService.CSV_IDLETIME:
+        case CSVSaveService.CSV_CONNECT_TIME:
+        case CSVSaveService.CSV_INTENDED_START_TIME:
+            return TYPE_LONG;
+        default:
+            return TYPE_STRING;
+        }
+    }
+
+    /**
+     * Checks whether a file is a binary result file
+     *
+     * @param file
+     *            the file to check
+     * @return true if the file starts with the magic number of binary result
+     *         files
+     */
+    public static boolean isBinaryFile(File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] magic = new byte[MAGIC.length];
+            int read = 0;
+            int count;
+            while (read < magic.length
+                    && (count = in.read(magic, read, magic.length - read)) > 0) {
+                read += count;
+            }
+            return read == magic.length && Arrays.equals(magic, MAGIC);
+        } catch (IOException e) {
+            log.warn("Could not read " + file + ": " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Read Samples from a binary file.
+     *
+     * @param filename
+     *            input file
+     * @param visualizer
+     *            where to send the results
+     * @param resultCollector
+     *            the parent collector
+     * @throws IOException
+     *             when the file referenced by <code>filename</code> can't be
+     *             read correctly
+     */
+    public static void processSamples(String filename, Visualizer visualizer,
+            ResultCollector resultCollector) throws IOException {
+        final boolean errorsOnly = resultCollector.isErrorLogging();
+        final boolean successOnly = resultCollector.isSuccessOnlyLogging();
+        try (BinaryResultReader reader = new BinaryResultReader(
+                new FileInputStream(filename))) {
+            BinaryResultReader.Block block;
+            String[] columnNames = null;
+            SampleSaveConfiguration saveConfig = null;
+            long lineNumber = 0;
+            while ((block = reader.readBlock()) != null) {
+                if (!Arrays.equals(columnNames, block.getColumnNames())) {
+                    columnNames = block.getColumnNames();
+                    saveConfig = getSampleSaveConfiguration(columnNames, filename);
+                }
+                for (int row = 0; row < block.getRowCount(); row++) {
+                    lineNumber++;
+                    SampleEvent event = CSVSaveService.makeResultFromDelimitedString(
+                            block.getRow(row), saveConfig, lineNumber);
+                    if (event != null && ResultCollector.isSampleWanted(
+                            event.getResult().isSuccessful(), errorsOnly, successOnly)) {
+                        visualizer.add(event.getResult());
+                    }
+                }
+            }
+        }
+    }
+
+    private static SampleSaveConfiguration getSampleSaveConfiguration(
+            String[] columnNames, String filename) throws IOException {
+        String delimiter = SampleSaveConfiguration.staticConfig().getDelimiter();
+        SampleSaveConfiguration saveConfig = CSVSaveService.getSampleSaveConfiguration(
+                StringUtils.join(columnNames, delimiter), filename);
+        if (saveConfig == null) {
+            throw new IOException(filename + ": unknown columns "
+                    + Arrays.toString(columnNames));
+        }
+        saveConfig.setFormatter(null); // time stamps are stored in milliseconds
+        return saveConfig;
+    }
+
+    /**
+     * Converts a CSV result file with a header line into a binary result file.
+     * Time stamps must be saved in milliseconds.
+     *
+     * @param csvFile
+     *            the CSV file to read
+     * @param binaryFile
+     *            the binary file to write, replaced if it exists
+     * @return the number of converted samples
+     * @throws IOException
+     *             when a file cannot be read or written, or the CSV file is
+     *             not valid
+     */
+    public static long csvToBinary(File csvFile, File binaryFile) throws IOException {
+        long count = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(csvFile), SaveService.getFileEncoding("UTF-8")))) { // $NON-NLS-1$
+            String header = reader.readLine();
+            if (header == null) {
+                throw new IOException(csvFile + ": unable to read header line");
+            }
+            SampleSaveConfiguration saveConfig = CSVSaveService
+                    .getSampleSaveConfiguration(header, csvFile.getName());
+            if (saveConfig == null) {
+                throw new IOException(csvFile + " does not have a valid header line");
+            }
+            String delimiter = saveConfig.getDelimiter();
+            try (BinaryResultWriter writer = new BinaryResultWriter(
+                    new BufferedOutputStream(new FileOutputStream(binaryFile)),
+                    header.split("\\Q" + delimiter), true)) { // $NON-NLS-1$
+                String[] parts;
+                while ((parts = CSVSaveService.csvReadFile(reader, delimiter.charAt(0))).length != 0) {
+                    writer.write(parts);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Converts a binary result file into a CSV result file with a header line,
+     * using the default delimiter.
+     *
+     * @param binaryFile
+     *            the binary file to read
+     * @param csvFile
+     *            the CSV file to write, replaced if it exists
+     * @return the number of converted samples
+     * @throws IOException
+     *             when a file cannot be read or written
+     */
+    public static long binaryToCsv(File binaryFile, File csvFile) throws IOException {
+        long count = 0;
+        String delimiter = SampleSaveConfiguration.staticConfig().getDelimiter();
+        char[] specials = new char[] { delimiter.charAt(0),
+                CSVSaveService.QUOTING_CHAR, CharUtils.CR, CharUtils.LF };
+        try (BinaryResultReader reader = new BinaryResultReader(
+                    new FileInputStream(binaryFile));
+                Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(csvFile), SaveService.getFileEncoding("UTF-8")))) { // $NON-NLS-1$
+            BinaryResultReader.Block block;
+            String[] columnNames = null;
+            while ((block = reader.readBlock()) != null) {
+                if (columnNames == null) {
+                    columnNames = block.getColumnNames();
+                    writer.write(StringUtils.join(columnNames, delimiter));
+                    writer.write('\n');
+                } else if (!Arrays.equals(columnNames, block.getColumnNames())) {
+                    throw new IOException(binaryFile
+                            + " holds samples with different columns, which cannot be saved in a single CSV file");
+                }
+                for (int row = 0; row < block.getRowCount(); row++) {
+                    for (int col = 0; col < columnNames.length; col++) {
+                        if (col > 0) {
+                            writer.write(delimiter);
+                        }
+                        writer.write(CSVSaveService.quoteDelimiters(
+                                block.getString(col, row), specials));
+                    }
+                    writer.write('\n');
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    // =================================== Encoding helpers
+
+    /**
+     * Writes a long as a zig-zag encoded variable length integer, small
+     * absolute values taking less bytes
+     *
+     * @param out
+     *            where to write the value
+     * @param value
+     *            the value to write
+     * @throws IOException
+     *             when writing fails
+     */
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    /**
+     * Reads a long written by {@link #writeVarLong(DataOutput, long)}
+     *
+     * @param in
+     *            where to read the value from
+     * @return the value
+     * @throws IOException
+     *             when reading fails or the value is malformed
+     */
+    public static long readVarLong(DataInput in) throws IOException {
+        long v = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new IOException("Malformed variable length integer");
+            }
+        }
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * Writes a string as its length followed by its UTF-8 bytes
+     *
+     * @param out
+     *            where to write the string
+     * @param value
+     *            the string to write, not null
+     * @throws IOException
+     *             when writing fails
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutput, String)}
+     *
+     * @param in
+     *            where to read the string from
+     * @return the string
+     * @throws IOException
+     *             when reading fails or the string is malformed
+     */
+    public static String readString(DataInput in) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("Malformed string length " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Converts result files between CSV and binary formats.
+     * <p>
+     * Usage: <code>BinarySaveService -toBinary|-toCsv inputFile outputFile</code>
+     * </p>
+     *
+     * @param args
+     *            command line arguments
+     * @throws IOException
+     *             when a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.out.println("Usage: " + BinarySaveService.class.getName()
+                    + " -toBinary|-toCsv inputFile outputFile");
+            return;
+        }
+        // properties are read from ${jmeter.home}/bin, defaulting to the working directory
+        String home = System.getProperty("jmeter.home", "."); // $NON-NLS-1$ // $NON-NLS-2$
+        JMeterUtils.setJMeterHome(home);
+        JMeterUtils.loadJMeterProperties(home + File.separator + "bin" // $NON-NLS-1$
+                + File.separator + "jmeter.properties"); // $NON-NLS-1$
+        File input = new File(args[1]);
+        File output = new File(args[2]);
+        long count;
+        if ("-toBinary".equals(args[0])) { // $NON-NLS-1$
+            count = csvToBinary(input, output);
+        } else if ("-toCsv".equals(args[0])) { // $NON-NLS-1$
+            count = binaryToCsv(input, output);
+        } else {
+            throw new IllegalArgumentException("Unknown option " + args[0]);
+        }
+        System.out.println(count + " samples written to " + output);
+    }
+
+    /**
+     * @param in
+     *            stream positioned on a binary result file
+     * @throws IOException
+     *             if the stream does not start with the magic number or has
+     *             an unsupported version
+     */
+    static void readFileStart(DataInputStream in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a binary result file");
+        }
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary result file version " + version);
+        }
+    }
+}
@@ -91,6 +91,7 @@ public final class CSVSaveService {
     public static final String CSV_ENCODING = "Encoding"; // $NON-NLS-1$
     public static final String CSV_HOSTNAME = "Hostname"; // $NON-NLS-1$
     public static final String CSV_IDLETIME = "IdleTime"; // $NON-NLS-1$
+    public static final String CSV_INTENDED_START_TIME = "IntendedStartTime"; // $NON-NLS-1$
 
     // Used to enclose variable name labels, to distinguish from any of the
     // above labels
@@ -190,7 +191,7 @@ public final class CSVSaveService {
      * 
      * @throws JMeterError
      */
-    private static SampleEvent makeResultFromDelimitedString(
+    static SampleEvent makeResultFromDelimitedString(
             final String[] parts, 
             final SampleSaveConfiguration saveConfig, // may be updated
             final long lineNumber) {
@@ -357,6 +358,12 @@ public final class CSVSaveService {
                 result.setConnectTime(Long.parseLong(text));
             }
 
+            if (saveConfig.saveIntendedStartTime()) {
+                field = CSV_INTENDED_START_TIME;
+                text = parts[i++];
+                result.setIntendedStartTime(Long.parseLong(text));
+            }
+
             if (i + saveConfig.getVarCount() < parts.length) {
                 log.warn("Line: " + lineNumber + ". Found " + parts.length
                         + " fields, expected " + i
@@ -495,6 +502,11 @@ public final class CSVSaveService {
             text.append(delim);
         }
 
+        if (saveConfig.saveIntendedStartTime()) {
+            text.append(CSV_INTENDED_START_TIME);
+            text.append(delim);
+        }
+
         for (int i = 0; i < SampleEvent.getVarCount(); i++) {
             text.append(VARIABLE_NAME_QUOTE_CHAR);
             text.append(SampleEvent.getVarName(i));
@@ -549,6 +561,7 @@ public final class CSVSaveService {
         headerLabelMethods.put(CSV_HOSTNAME, new Functor("setHostname"));
         headerLabelMethods.put(CSV_IDLETIME, new Functor("setIdleTime"));
         headerLabelMethods.put(CSV_CONNECT_TIME, new Functor("setConnectTime"));
+        headerLabelMethods.put(CSV_INTENDED_START_TIME, new Functor("setIntendedStartTime"));
     }
 
     /**
@@ -856,10 +869,28 @@ public final class CSVSaveService {
      */
     public static String resultToDelimitedString(SampleEvent event,
             final String delimiter) {
+        return resultToDelimitedString(event, event.getResult().getSaveConfig(), delimiter);
+    }
+
+    /**
+     * Convert a result into a string, where the fields of the result are
+     * separated by a specified String.
+     * 
+     * @param event
+     *            the sample event to be converted
+     * @param saveConfig
+     *            the configuration telling which fields to save, rather
+     *            than the one of the result
+     * @param delimiter
+     *            the separation string
+     * @return the separated value representation of the result
+     * @since 3.1
+     */
+    public static String resultToDelimitedString(SampleEvent event,
+            SampleSaveConfiguration saveConfig, final String delimiter) {
         StringQuoter text = new StringQuoter(delimiter.charAt(0));
 
         SampleResult sample = event.getResult();
-        SampleSaveConfiguration saveConfig = sample.getSaveConfig();
 
         if (saveConfig.saveTimestamp()) {
             if (saveConfig.printMilliseconds()) {
@@ -963,6 +994,10 @@ public final class CSVSaveService {
             text.append(sample.getConnectTime());
         }
 
+        if (saveConfig.saveIntendedStartTime()) {
+            text.append(sample.getIntendedStartTime());
+        }
+
         for (int i = 0; i < SampleEvent.getVarCount(); i++) {
             text.append(event.getVarValue(i));
         }
@@ -42,6 +42,7 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.jmeter.reporters.ResultCollectorHelper;
 import org.apache.jmeter.samplers.SampleEvent;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleSaveConfiguration;
 import org.apache.jmeter.testelement.TestElement;
 import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jmeter.util.NameUpdater;
@@ -73,6 +74,7 @@ public class SaveService {
 
     // Names of DataHolder entries for JTL processing
     public static final String SAMPLE_EVENT_OBJECT = "SampleEvent"; // $NON-NLS-1$
+    public static final String SAVE_CONFIG_OBJECT = "SampleSaveConfiguration"; // $NON-NLS-1$
     public static final String RESULTCOLLECTOR_HELPER_OBJECT = "ResultCollectorHelper"; // $NON-NLS-1$
 
     // Names of DataHolder entries for JMX processing
@@ -154,7 +156,7 @@ public class SaveService {
     private static String fileVersion = ""; // computed from saveservice.properties file// $NON-NLS-1$
     // Must match the sha1 checksum of the file saveservice.properties (without newline character),
     // used to ensure saveservice.properties and SaveService are updated simultaneously
-    static final String FILEVERSION = "2e0ec2b2360e52cd5de4e0f20fa51c1809f6895c"; // Expected value $NON-NLS-1$
+    static final String FILEVERSION = "58d1ebc86f429318a8118e75ade08e35a08895bc"; // Expected value $NON-NLS-1$
 
     private static String fileEncoding = ""; // read from properties file// $NON-NLS-1$
 
@@ -333,10 +335,27 @@ public class SaveService {
      * @param writer output stream which must be created using {@link #getFileEncoding(String)}
      * @throws IOException when writing data to output fails
      */
-    // Used by ResultCollector.sampleOccurred(SampleEvent event)
-    public synchronized static void saveSampleResult(SampleEvent evt, Writer writer) throws IOException {
+    public static void saveSampleResult(SampleEvent evt, Writer writer) throws IOException {
+        saveSampleResult(evt, null, writer);
+    }
+
+    /**
+     * Save a sampleResult to an XML output file using XStream.
+     *
+     * @param evt sampleResult wrapped in a sampleEvent
+     * @param config configuration telling what to save, null to use the one of the sample result
+     * @param writer output stream which must be created using {@link #getFileEncoding(String)}
+     * @throws IOException when writing data to output fails
+     * @since 3.1
+     */
+    // Used by ResultCollector.writeSample(SampleEvent event, ...)
+    public synchronized static void saveSampleResult(SampleEvent evt, SampleSaveConfiguration config, Writer writer)
+            throws IOException {
         DataHolder dh = JTLSAVER.newDataHolder();
         dh.put(SAMPLE_EVENT_OBJECT, evt);
+        if (config != null) {
+            dh.put(SAVE_CONFIG_OBJECT, config);
+        }
         // This is effectively the same as saver.toXML(Object, Writer) except we get to provide the DataHolder
         // Don't know why there is no method for this in the XStream class
         try {
@@ -90,6 +90,7 @@ public class SampleResultConverter extends AbstractCollectionConverter {
     private static final String ATT_SAMPLE_COUNT      = "sc"; //$NON-NLS-1$
     private static final String ATT_TIME              = "t";  //$NON-NLS-1$
     private static final String ATT_IDLETIME          = "it"; //$NON-NLS-1$
+    private static final String ATT_INTENDED_START    = "ist"; //$NON-NLS-1$
     private static final String ATT_THREADNAME        = "tn"; //$NON-NLS-1$
     private static final String ATT_TIME_STAMP        = "ts"; //$NON-NLS-1$
 
@@ -113,7 +114,7 @@ public class SampleResultConverter extends AbstractCollectionConverter {
     @Override
     public void marshal(Object obj, HierarchicalStreamWriter writer, MarshallingContext context) {
         SampleResult res = (SampleResult) obj;
-        SampleSaveConfiguration save = res.getSaveConfig();
+        SampleSaveConfiguration save = getSaveConfig(context, res);
         setAttributes(writer, context, res, save);
         saveAssertions(writer, context, res, save);
         saveSubResults(writer, context, res, save);
@@ -123,6 +124,22 @@ public class SampleResultConverter extends AbstractCollectionConverter {
         saveSamplerData(writer, context, res, save);
     }
 
+    /**
+     * @param context
+     *            context for xstream, which may hold the configuration
+     *            of the listener saving the sample
+     * @param res
+     *            sample to be saved
+     * @return the configuration of the listener if the context holds it, else
+     *         the one of the sample, so that a sample shared by several
+     *         listeners is not modified
+     * @since 3.1
+     */
+    protected static SampleSaveConfiguration getSaveConfig(MarshallingContext context, SampleResult res) {
+        SampleSaveConfiguration save = (SampleSaveConfiguration) context.get(SaveService.SAVE_CONFIG_OBJECT);
+        return save != null ? save : res.getSaveConfig();
+    }
+
     /**
      * Save the data of the sample result to a stream
      *
@@ -240,7 +257,9 @@ public class SampleResultConverter extends AbstractCollectionConverter {
         if (save.saveSubresults()) {
             SampleResult[] subResults = res.getSubResults();
             for (SampleResult subResult : subResults) {
-                subResult.setSaveConfig(save);
+                if (context.get(SaveService.SAVE_CONFIG_OBJECT) == null) {
+                    subResult.setSaveConfig(save);
+                }
                 writeItem(subResult, context, writer);
             }
         }
@@ -294,6 +313,9 @@ public class SampleResultConverter extends AbstractCollectionConverter {
         if (save.saveConnectTime()) {
             writer.addAttribute(ATT_CONNECT_TIME, Long.toString(res.getConnectTime()));
         }
+        if (save.saveIntendedStartTime()) {
+            writer.addAttribute(ATT_INTENDED_START, Long.toString(res.getIntendedStartTime()));
+        }
         if (save.saveTimestamp()) {
             writer.addAttribute(ATT_TIME_STAMP, Long.toString(res.getTimeStamp()));
         }
@@ -445,6 +467,7 @@ public class SampleResultConverter extends AbstractCollectionConverter {
         res.setIdleTime(Converter.getLong(reader.getAttribute(ATT_IDLETIME)));
         res.setLatency(Converter.getLong(reader.getAttribute(ATT_LATENCY)));
         res.setConnectTime(Converter.getLong(reader.getAttribute(ATT_CONNECT_TIME)));
+        res.setIntendedStartTime(Converter.getLong(reader.getAttribute(ATT_INTENDED_START)));
         res.setBytes(Converter.getInt(reader.getAttribute(ATT_BYTES)));
         res.setSampleCount(Converter.getInt(reader.getAttribute(ATT_SAMPLE_COUNT),1)); // default is 1
         res.setErrorCount(Converter.getInt(reader.getAttribute(ATT_ERROR_COUNT),0)); // default is 0
@@ -62,10 +62,12 @@ public class SampleSaveConfigurationConverter  extends ReflectionConverter {
     private static final String NODE_SAMPLE_COUNT = "sampleCount"; // $NON-NLS-1$
     private static final String NODE_IDLE_TIME = "idleTime"; // $NON-NLS-1$
     private static final String NODE_CONNECT_TIME = "connectTime"; // $NON-NLS-1$
+    private static final String NODE_INTENDED_START_TIME = "intendedStartTime"; // $NON-NLS-1$
 
     // Additional member names which are currently not written out
     private static final String NODE_DELIMITER = "delimiter"; // $NON-NLS-1$
     private static final String NODE_PRINTMS = "printMilliseconds"; // $NON-NLS-1$
+    private static final String NODE_BINARY = "binary"; // $NON-NLS-1$
 
 
     static class MyWrapper extends MapperWrapper{
@@ -91,10 +93,12 @@ public class SampleSaveConfigurationConverter  extends ReflectionConverter {
             if (fieldName.equals(NODE_SAMPLE_COUNT)) { return false; }
             if (fieldName.equals(NODE_IDLE_TIME)) { return false; }
             if (fieldName.equals(NODE_CONNECT_TIME)) { return false; }
+            if (fieldName.equals(NODE_INTENDED_START_TIME)) { return false; }
 
             // These fields are not currently saved or restored
             if (fieldName.equals(NODE_DELIMITER)) { return false; }
             if (fieldName.equals(NODE_PRINTMS)) { return false; }
+            if (fieldName.equals(NODE_BINARY)) { return false; }
             return true;
         }
     }
@@ -136,6 +140,7 @@ public class SampleSaveConfigurationConverter  extends ReflectionConverter {
         createNode(writer,prop.saveSampleCount(),NODE_SAMPLE_COUNT);
         createNode(writer,prop.saveIdleTime(),NODE_IDLE_TIME);
         createNode(writer, prop.saveConnectTime(), NODE_CONNECT_TIME);
+        createNode(writer, prop.saveIntendedStartTime(), NODE_INTENDED_START_TIME);
     }
 
     // Helper method to simplify marshall routine. Save if and only if true.
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.jorphan.collections.ConcurrentRingBuffer;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Appends strings to a file from a dedicated thread, used by {@link FileServer#write(String, String)}.
+ * <p>
+ * Callers hand off their value to a bounded lock-free buffer and go on; they only
+ * wait when the buffer is full. The writer thread flushes the file whenever it has
+ * caught up. An error raised by the writer thread is reported to the next caller.
+ * @since 3.1
+ */
+final class AsyncFileAppender implements Closeable {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final int QUEUE_SIZE = 8192;
+
+    private static final int BATCH_SIZE = 256;
+
+    /** How long the writer thread sleeps when it has nothing to write */
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /** How long a caller waits for room in the buffer before retrying */
+    private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final String name;
+
+    private final Writer writer;
+
+    private final ConcurrentRingBuffer<String> buffer = new ConcurrentRingBuffer<>(QUEUE_SIZE);
+
+    private final Thread thread;
+
+    private volatile IOException error;
+
+    private volatile boolean sleeping;
+
+    private volatile boolean closed;
+
+    /**
+     * @param name name of the file, used for logging and to name the thread
+     * @param writer where to write the values, closed by {@link #close()}
+     */
+    AsyncFileAppender(String name, Writer writer) {
+        this.name = name;
+        this.writer = writer;
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "FileServer writer " + name); // $NON-NLS-1$
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Hand off a value to the writer thread
+     *
+     * @param value the value to append
+     * @throws IOException if an earlier write failed or the appender is closed
+     */
+    void append(String value) throws IOException {
+        checkError();
+        while (!buffer.offer(value)) {
+            if (closed || !thread.isAlive()) {
+                throw new IOException("File " + name + " is closed");
+            }
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(this, FULL_WAIT_NANOS);
+            checkError();
+        }
+        if (sleeping) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void checkError() throws IOException {
+        IOException e = error;
+        if (e != null) {
+            throw new IOException("Could not write to " + name, e);
+        }
+        if (closed) {
+            throw new IOException("File " + name + " is closed");
+        }
+    }
+
+    /**
+     * Write all pending values, stop the writer thread and close the writer
+     *
+     * @throws IOException if a write failed or the writer could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while writing the last values of " + name);
+        }
+        writer.close();
+        IOException e = error;
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    private void writeLoop() {
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        boolean dirty = false;
+        while (true) {
+            batch.clear();
+            if (buffer.drainTo(batch, BATCH_SIZE) > 0) {
+                write(batch);
+                dirty = true;
+                continue;
+            }
+            if (!buffer.isEmpty()) {
+                Thread.yield(); // a caller claimed a slot but has not yet filled it
+                continue;
+            }
+            if (dirty) {
+                dirty = false;
+                try {
+                    writer.flush();
+                } catch (IOException e) {
+                    failed(e);
+                }
+            }
+            if (closed) {
+                return;
+            }
+            sleeping = true;
+            if (buffer.isEmpty() && !closed) {
+                LockSupport.parkNanos(this, IDLE_WAIT_NANOS);
+            }
+            sleeping = false;
+        }
+    }
+
+    private void write(List<String> batch) {
+        if (error != null) {
+            return; // discard, the error has been reported
+        }
+        try {
+            for (String value : batch) {
+                writer.write(value);
+            }
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    private void failed(IOException e) {
+        if (error == null) {
+            log.error("Error writing to " + name, e);
+            error = e;
+        }
+    }
+}
@@ -35,6 +35,8 @@ import java.io.Reader;
 import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ThreadLocalRandom;
 
 import org.apache.commons.collections.ArrayStack;
@@ -57,6 +59,10 @@ import org.apache.log.Logger;
  * sent via rmi to remote servers (currently, one must make sure the remote
  * server has all support files in a relative-same location) and to package up
  * test plans to execute on unknown boxes that only have Java installed.
+ * <p>
+ * Each file entry has its own lock, so threads only wait for each other when
+ * they use the same file (or alias). Values written to a file are handed off
+ * to a writer thread, see {@link #write(String, String)}.
  */
 public class FileServer {
 
@@ -75,11 +81,16 @@ public class FileServer {
         JMeterUtils.getPropDefault("jmeter.save.saveservice.base_prefix", // $NON-NLS-1$
                 BASE_PREFIX_DEFAULT);
 
-    //@GuardedBy("this")
-    private File base;
+    // volatile as it is read without lock to resolve file names
+    //@GuardedBy("this") for updates
+    private volatile File base;
+
+    // Each entry is guarded by its own monitor
+    private final ConcurrentMap<String, FileEntry> files = new ConcurrentHashMap<>();
 
-    //@GuardedBy("this") NOTE this also guards against possible window in checkForOpenFiles()
-    private final Map<String, FileEntry> files = new HashMap<>();
+    // Data sets loaded in memory, keyed on the file and the way it is parsed
+    //@GuardedBy("this")
+    private final Map<String, SharedDataSet> dataSets = new HashMap<>();
 
     private static final FileServer server = new FileServer();
 
@@ -165,8 +176,9 @@ public class FileServer {
     /**
      * Check if there are entries in use.
      * <p>
-     * Caller must ensure that access to the files map is single-threaded as
+     * Caller must ensure that no file is being reserved concurrently as
      * there is a window between checking the files Map and clearing it.
+     * The base is only changed while no test is running.
      * 
      * @throws IllegalStateException if there are any entries still in use
      */
@@ -258,7 +270,7 @@ public class FileServer {
      * @throws EOFException if eof reached
      * @throws IllegalArgumentException if header could not be read or filename is null or empty
      */
-    public synchronized String reserveFile(String filename, String charsetName, String alias, boolean hasHeader) {
+    public String reserveFile(String filename, String charsetName, String alias, boolean hasHeader) {
         if (filename == null || filename.isEmpty()){
             throw new IllegalArgumentException("Filename must not be null or empty");
         }
@@ -267,14 +279,21 @@ public class FileServer {
         }
         FileEntry fileEntry = files.get(alias);
         if (fileEntry == null) {
-            fileEntry = new FileEntry(resolveFileFromPath(filename), null, charsetName);
-            if (filename.equals(alias)){
-                log.info("Stored: "+filename);
-            } else {
-                log.info("Stored: "+filename+" Alias: "+alias);
+            FileEntry newEntry = new FileEntry(resolveFileFromPath(filename), null, charsetName, hasHeader);
+            fileEntry = files.putIfAbsent(alias, newEntry);
+            if (fileEntry == null) {
+                fileEntry = newEntry;
+                if (filename.equals(alias)){
+                    log.info("Stored: "+filename);
+                } else {
+                    log.info("Stored: "+filename+" Alias: "+alias);
+                }
             }
-            files.put(alias, fileEntry);
-            if (hasHeader) {
+        }
+        synchronized (fileEntry) {
+            // the header is read by the first caller, others wait for it
+            if (fileEntry.hasHeader && !fileEntry.headerRead) {
+                fileEntry.headerRead = true;
                 try {
                     fileEntry.headerLine = readLine(alias, false);
                     if (fileEntry.headerLine == null) {
@@ -284,12 +303,12 @@ public class FileServer {
                     fileEntry.exception = e;
                 }
             }
+            if (hasHeader && fileEntry.headerLine == null) {
+                throw new IllegalArgumentException("Could not read file header line for file " + filename,
+                        fileEntry.exception);
+            }
+            return fileEntry.headerLine;
         }
-        if (hasHeader && fileEntry.headerLine == null) {
-            throw new IllegalArgumentException("Could not read file header line for file " + filename,
-                    fileEntry.exception);
-        }
-        return fileEntry.headerLine;
     }
 
     /**
@@ -339,10 +358,11 @@ public class FileServer {
      * @return String containing the next line in the file (null if EOF reached and not recycle)
      * @throws IOException when reading of the file fails, or the file was not reserved properly
      */
-    public synchronized String readLine(String filename, boolean recycle, 
+    public String readLine(String filename, boolean recycle, 
             boolean firstLineIsNames) throws IOException {
-        FileEntry fileEntry = files.get(filename);
-        if (fileEntry != null) {
+        FileEntry fileEntry = getEntry(filename);
+        synchronized (fileEntry) {
+            checkNotRemoved(filename, fileEntry);
             if (fileEntry.inputOutputObject == null) {
                 fileEntry.inputOutputObject = createBufferedReader(fileEntry);
             } else if (!(fileEntry.inputOutputObject instanceof Reader)) {
@@ -363,7 +383,25 @@ public class FileServer {
             if (log.isDebugEnabled()) { log.debug("Read:"+line); }
             return line;
         }
-        throw new IOException("File never reserved: "+filename);
+    }
+
+    private FileEntry getEntry(String alias) throws IOException {
+        FileEntry fileEntry = files.get(alias);
+        if (fileEntry == null) {
+            throw new IOException("File never reserved: "+alias);
+        }
+        return fileEntry;
+    }
+
+    /**
+     * The entry may have been removed by {@link #closeFiles()} after it was looked up;
+     * it must not be opened again as nothing would close it.
+     * Caller must hold the entry monitor.
+     */
+    private static void checkNotRemoved(String alias, FileEntry fileEntry) throws IOException {
+        if (fileEntry.removed) {
+            throw new IOException("File never reserved: "+alias);
+        }
     }
 
     /**
@@ -375,46 +413,88 @@ public class FileServer {
      * @return the parsed line, will be empty if the file is at EOF
      * @throws IOException when reading of the aliased file fails, or the file was not reserved properly
      */
-    public synchronized String[] getParsedLine(String alias, boolean recycle, boolean firstLineIsNames, char delim) throws IOException {
-        BufferedReader reader = getReader(alias, recycle, firstLineIsNames);
-        return CSVSaveService.csvReadFile(reader, delim);
+    public String[] getParsedLine(String alias, boolean recycle, boolean firstLineIsNames, char delim) throws IOException {
+        FileEntry fileEntry = getEntry(alias);
+        synchronized (fileEntry) {
+            checkNotRemoved(alias, fileEntry);
+            BufferedReader reader = getReader(alias, fileEntry, recycle, firstLineIsNames);
+            return CSVSaveService.csvReadFile(reader, delim);
+        }
     }
 
-    private BufferedReader getReader(String alias, boolean recycle, boolean firstLineIsNames) throws IOException {
-        FileEntry fileEntry = files.get(alias);
-        if (fileEntry != null) {
-            BufferedReader reader;
-            if (fileEntry.inputOutputObject == null) {
-                reader = createBufferedReader(fileEntry);
-                fileEntry.inputOutputObject = reader;
-                if (firstLineIsNames) {
-                    // read first line and forget
-                    reader.readLine();
-                }                
-            } else if (!(fileEntry.inputOutputObject instanceof Reader)) {
-                throw new IOException("File " + alias + " already in use");
-            } else {
-                reader = (BufferedReader) fileEntry.inputOutputObject;
-                if (recycle) { // need to check if we are at EOF already
-                    reader.mark(1);
-                    int peek = reader.read();
-                    if (peek == -1) { // already at EOF
-                        reader.close();
-                        reader = createBufferedReader(fileEntry);
-                        fileEntry.inputOutputObject = reader;
-                        if (firstLineIsNames) {
-                            // read first line and forget
-                            reader.readLine();
-                        }                
-                    } else { // OK, we still have some data, restore it
-                        reader.reset();
-                    }
+    // Caller must hold the entry monitor
+    private BufferedReader getReader(String alias, FileEntry fileEntry, boolean recycle, boolean firstLineIsNames) throws IOException {
+        BufferedReader reader;
+        if (fileEntry.inputOutputObject == null) {
+            reader = createBufferedReader(fileEntry);
+            fileEntry.inputOutputObject = reader;
+            if (firstLineIsNames) {
+                // read first line and forget
+                reader.readLine();
+            }                
+        } else if (!(fileEntry.inputOutputObject instanceof Reader)) {
+            throw new IOException("File " + alias + " already in use");
+        } else {
+            reader = (BufferedReader) fileEntry.inputOutputObject;
+            if (recycle) { // need to check if we are at EOF already
+                reader.mark(1);
+                int peek = reader.read();
+                if (peek == -1) { // already at EOF
+                    reader.close();
+                    reader = createBufferedReader(fileEntry);
+                    fileEntry.inputOutputObject = reader;
+                    if (firstLineIsNames) {
+                        // read first line and forget
+                        reader.readLine();
+                    }                
+                } else { // OK, we still have some data, restore it
+                    reader.reset();
                 }
             }
-            return reader;
-        } else {
-            throw new IOException("File never reserved: "+alias);
         }
+        return reader;
+    }
+
+    /**
+     * Get the in-memory copy of a delimited file, loading it on first use.
+     * The copy is shared by all callers using the same parameters until {@link #closeFiles()} is called.
+     *
+     * @param filename - relative (to base) or absolute file name (must not be null or empty)
+     * @param charsetName - the character set encoding to use for the file (may be null)
+     * @param delim the delimiter; only its first character is used when quoted is true
+     * @param quoted whether values may be quoted
+     * @param hasHeader whether the first line holds the column names
+     * @param slice index of the slice of rows to keep, between 0 and sliceCount - 1
+     * @param sliceCount number of slices the rows are split in, 1 to keep all the rows
+     * @return the data set
+     * @throws IOException when reading of the file fails
+     * @throws IllegalArgumentException if the file cannot be read or the header line is missing
+     * @see SharedDataSet#load(BufferedReader, String, boolean, boolean, int, int)
+     * @since 3.1
+     */
+    public synchronized SharedDataSet getSharedDataSet(String filename, String charsetName, String delim,
+            boolean quoted, boolean hasHeader, int slice, int sliceCount) throws IOException {
+        if (filename == null || filename.isEmpty()){
+            throw new IllegalArgumentException("Filename must not be null or empty");
+        }
+        File file = resolveFileFromPath(filename);
+        String key = file.getAbsolutePath() + "|" + charsetName + "|" + delim + "|" + quoted // $NON-NLS-1$ // $NON-NLS-2$ // $NON-NLS-3$
+                + "|" + hasHeader + "|" + slice + "/" + sliceCount; // $NON-NLS-1$ // $NON-NLS-2$ // $NON-NLS-3$
+        SharedDataSet dataSet = dataSets.get(key);
+        if (dataSet == null) {
+            BufferedReader reader = createBufferedReader(new FileEntry(file, null, charsetName));
+            try {
+                dataSet = SharedDataSet.load(reader, delim, quoted, hasHeader, slice, sliceCount);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Could not load file " + filename + ": " + e.getMessage(), e);
+            } finally {
+                JOrphanUtils.closeQuietly(reader);
+            }
+            log.info("Loaded: " + filename + " rows: " + dataSet.getRowCount()
+                    + (sliceCount > 1 ? " slice: " + slice + "/" + sliceCount : ""));
+            dataSets.put(key, dataSet);
+        }
+        return dataSet;
     }
 
     private BufferedReader createBufferedReader(FileEntry fileEntry) throws IOException {
@@ -433,19 +513,29 @@ public class FileServer {
         return new BufferedReader(isr);
     }
 
-    public synchronized void write(String filename, String value) throws IOException {
-        FileEntry fileEntry = files.get(filename);
-        if (fileEntry != null) {
+    /**
+     * Append a value to the named file.
+     * The value is written by a writer thread dedicated to the file, so this method does
+     * not wait for the disk. The file is flushed as soon as the writer thread has caught up,
+     * and closed by {@link #closeFile(String)} or {@link #closeFiles()}.
+     *
+     * @param filename the filename or alias that was used to reserve the file
+     * @param value the value to append
+     * @throws IOException when the file could not be opened, is being read, was not
+     * reserved properly, or when writing an earlier value failed
+     */
+    public void write(String filename, String value) throws IOException {
+        FileEntry fileEntry = getEntry(filename);
+        synchronized (fileEntry) {
+            checkNotRemoved(filename, fileEntry);
             if (fileEntry.inputOutputObject == null) {
-                fileEntry.inputOutputObject = createBufferedWriter(fileEntry);
-            } else if (!(fileEntry.inputOutputObject instanceof Writer)) {
+                fileEntry.inputOutputObject = new AsyncFileAppender(filename, createBufferedWriter(fileEntry));
+            } else if (!(fileEntry.inputOutputObject instanceof AsyncFileAppender)) {
                 throw new IOException("File " + filename + " already in use");
             }
-            BufferedWriter writer = (BufferedWriter) fileEntry.inputOutputObject;
+            AsyncFileAppender appender = (AsyncFileAppender) fileEntry.inputOutputObject;
             if (log.isDebugEnabled()) { log.debug("Write:"+value); }
-            writer.write(value);
-        } else {
-            throw new IOException("File never reserved: "+filename);
+            appender.append(value);
         }
     }
 
@@ -464,25 +554,36 @@ public class FileServer {
 
     public synchronized void closeFiles() throws IOException {
         for (Map.Entry<String, FileEntry> me : files.entrySet()) {
-            closeFile(me.getKey(),me.getValue() );
+            FileEntry fileEntry = me.getValue();
+            synchronized (fileEntry) {
+                fileEntry.removed = true;
+                files.remove(me.getKey(), fileEntry);
+                closeFile(me.getKey(), fileEntry);
+            }
         }
-        files.clear();
+        dataSets.clear();
     }
 
     /**
      * @param name the name or alias of the file to be closed
      * @throws IOException when closing of the aliased file fails
      */
-    public synchronized void closeFile(String name) throws IOException {
+    public void closeFile(String name) throws IOException {
         FileEntry fileEntry = files.get(name);
-        closeFile(name, fileEntry);
+        if (fileEntry != null) {
+            synchronized (fileEntry) {
+                closeFile(name, fileEntry);
+            }
+        }
     }
 
+    // Caller must hold the entry monitor
     private void closeFile(String name, FileEntry fileEntry) throws IOException {
-        if (fileEntry != null && fileEntry.inputOutputObject != null) {
+        if (fileEntry.inputOutputObject != null) {
             log.info("Close: "+name);
-            fileEntry.inputOutputObject.close();
+            Closeable closeable = fileEntry.inputOutputObject;
             fileEntry.inputOutputObject = null;
+            closeable.close();
         }
     }
 
@@ -536,15 +637,27 @@ public class FileServer {
     }
 
     private static class FileEntry{
+        //@GuardedBy("this")
         private String headerLine;
+        //@GuardedBy("this")
         private Throwable exception;
+        //@GuardedBy("this")
+        private boolean headerRead;
+        //@GuardedBy("this")
+        private boolean removed;
+        private final boolean hasHeader;
         private final File file;
-        private Closeable inputOutputObject; 
+        //@GuardedBy("this") for updates, volatile as filesOpen() reads it without lock
+        private volatile Closeable inputOutputObject; 
         private final String charSetEncoding;
         FileEntry(File f, Closeable o, String e){
+            this(f, o, e, false);
+        }
+        FileEntry(File f, Closeable o, String e, boolean hasHeader){
             file=f;
             inputOutputObject=o;
             charSetEncoding=e;
+            this.hasHeader=hasHeader;
         }
     }
     
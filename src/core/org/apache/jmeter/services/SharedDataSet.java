@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jmeter.save.CSVSaveService;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.apache.log.Logger;
+
+/**
+ * Immutable in-memory copy of a delimited file, shared by all the threads reading it.
+ * <p>
+ * The file is parsed once and its values are kept in a single flat array indexed
+ * by row offsets; equal values are stored only once. Rows are handed out by
+ * {@link Cursor}s which only use an atomic counter, so readers never block each other.
+ * <p>
+ * A data set may only hold a slice of the file: with <code>sliceCount</code> n and
+ * <code>slice</code> k only rows k, k+n, k+2n... are kept, so that several
+ * JMeter instances can read disjoint parts of the same file.
+ * @since 3.1
+ */
+public final class SharedDataSet {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private final String header;
+
+    /** all values, row after row */
+    private final String[] values;
+
+    /** row i holds values[rowStart[i]] to values[rowStart[i+1]-1] */
+    private final int[] rowStart;
+
+    private final ConcurrentMap<String, Cursor> cursors = new ConcurrentHashMap<>();
+
+    private SharedDataSet(String header, String[] values, int[] rowStart) {
+        this.header = header;
+        this.values = values;
+        this.rowStart = rowStart;
+    }
+
+    /**
+     * Read all the rows of a file
+     *
+     * @param reader reader on the file, not closed by this method
+     * @param delim the delimiter; only its first character is used when quoted is true
+     * @param quoted whether values may be quoted
+     * @param hasHeader whether the first line holds the column names
+     * @param slice index of the slice to keep, between 0 and sliceCount - 1
+     * @param sliceCount number of slices the file is split in, 1 to keep all the rows
+     * @return the data set
+     * @throws IOException when reading the file fails; a malformed quoted row ends the data instead
+     * @throws IllegalArgumentException if the header line is expected but the file is empty
+     */
+    public static SharedDataSet load(BufferedReader reader, String delim, boolean quoted,
+            boolean hasHeader, int slice, int sliceCount) throws IOException {
+        if (sliceCount < 1 || slice < 0 || slice >= sliceCount) {
+            throw new IllegalArgumentException("Invalid slice " + slice + " of " + sliceCount);
+        }
+        String header = null;
+        if (hasHeader) {
+            header = reader.readLine();
+            if (header == null) {
+                throw new IllegalArgumentException("Could not read file header line, file is empty");
+            }
+        }
+        List<String> allValues = new ArrayList<>();
+        int[] starts = new int[64];
+        int rows = 0;
+        Map<String, String> distinct = new HashMap<>();
+        char delimChar = delim.charAt(0);
+        for (int line = 0;; line++) {
+            String[] row;
+            if (quoted) {
+                try {
+                    row = CSVSaveService.csvReadFile(reader, delimChar);
+                } catch (IOException e) { // treat the same as EOF, as when reading line by line
+                    log.error("Stopped loading at row " + line + ": " + e.toString());
+                    break;
+                }
+                if (row.length == 0) {
+                    break;
+                }
+            } else {
+                String text = reader.readLine();
+                if (text == null) {
+                    break;
+                }
+                row = JOrphanUtils.split(text, delim, false);
+            }
+            if (line % sliceCount != slice) {
+                continue;
+            }
+            if (rows + 1 >= starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+            }
+            starts[rows++] = allValues.size();
+            for (String value : row) {
+                String shared = distinct.get(value);
+                if (shared == null) {
+                    distinct.put(value, value);
+                    shared = value;
+                }
+                allValues.add(shared);
+            }
+        }
+        starts[rows] = allValues.size();
+        return new SharedDataSet(header, allValues.toArray(new String[allValues.size()]),
+                Arrays.copyOf(starts, rows + 1));
+    }
+
+    /**
+     * @return the header line, <code>null</code> if the file was loaded without header
+     */
+    public String getHeader() {
+        return header;
+    }
+
+    /**
+     * @return number of rows held
+     */
+    public int getRowCount() {
+        return rowStart.length - 1;
+    }
+
+    /**
+     * @param row row index
+     * @return number of values in the row
+     */
+    public int getColumnCount(int row) {
+        return rowStart[row + 1] - rowStart[row];
+    }
+
+    /**
+     * @param row row index
+     * @param column column index, lower than {@link #getColumnCount(int)}
+     * @return the value
+     */
+    public String getValue(int row, int column) {
+        return values[rowStart[row] + column];
+    }
+
+    /**
+     * Get the cursor registered under a name, creating it if needed.
+     * All the callers using the same name read the rows in turn.
+     *
+     * @param name name of the cursor
+     * @return the cursor, reading all the rows
+     */
+    public Cursor getCursor(String name) {
+        Cursor cursor = cursors.get(name);
+        if (cursor == null) {
+            cursor = new Cursor(this, 0, 1);
+            Cursor previous = cursors.putIfAbsent(name, cursor);
+            if (previous != null) {
+                cursor = previous;
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * Position in a data set, may be used concurrently by several threads.
+     * A cursor can be restricted to a partition of the rows: with
+     * <code>partitionCount</code> n and <code>partition</code> k it only reads
+     * rows k, k+n, k+2n...
+     */
+    public static final class Cursor {
+        private final SharedDataSet dataSet;
+        private final int partition;
+        private final int partitionCount;
+        private final int partitionSize;
+        private final AtomicLong position = new AtomicLong();
+
+        /**
+         * @param dataSet the data set to read
+         * @param partition index of the partition to read, between 0 and partitionCount - 1
+         * @param partitionCount number of partitions, 1 to read all the rows
+         */
+        public Cursor(SharedDataSet dataSet, int partition, int partitionCount) {
+            if (partitionCount < 1 || partition < 0 || partition >= partitionCount) {
+                throw new IllegalArgumentException("Invalid partition " + partition + " of " + partitionCount);
+            }
+            this.dataSet = dataSet;
+            this.partition = partition;
+            this.partitionCount = partitionCount;
+            int rows = dataSet.getRowCount();
+            this.partitionSize = partition < rows ? (rows - partition + partitionCount - 1) / partitionCount : 0;
+        }
+
+        /**
+         * @param recycle whether to restart from the first row after the last one
+         * @return index of the next row in the data set, -1 at end of data
+         */
+        public int nextRow(boolean recycle) {
+            if (partitionSize == 0) {
+                return -1;
+            }
+            long next = position.getAndIncrement();
+            if (next >= partitionSize) {
+                if (!recycle) {
+                    return -1;
+                }
+                next %= partitionSize;
+            }
+            return partition + (int) next * partitionCount;
+        }
+    }
+}
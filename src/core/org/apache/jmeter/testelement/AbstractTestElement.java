@@ -29,6 +29,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.jmeter.gui.Searchable;
+import org.apache.jmeter.testelement.property.AbstractProperty;
 import org.apache.jmeter.testelement.property.BooleanProperty;
 import org.apache.jmeter.testelement.property.CollectionProperty;
 import org.apache.jmeter.testelement.property.IntegerProperty;
@@ -53,7 +54,8 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
 
     private static final Logger log = LoggingManager.getLoggerForClass();
 
-    private final Map<String, JMeterProperty> propMap =
+    // Not synchronized any more once confined to a single thread, see setThreadConfined()
+    private Map<String, JMeterProperty> propMap =
         Collections.synchronizedMap(new LinkedHashMap<String, JMeterProperty>());
 
     /**
@@ -75,7 +77,7 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
 
             PropertyIterator iter = propertyIterator();
             while (iter.hasNext()) {
-                clonedElement.setProperty(iter.next().clone());
+                clonedElement.setProperty(cloneProperty(iter.next()));
             }
             clonedElement.setRunningVersion(runningVersion);
             return clonedElement;
@@ -84,6 +86,50 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
         }
     }
 
+    /**
+     * Running elements share the properties which cannot change with their clones,
+     * those are only copied if one of the owners modifies them.
+     *
+     * @param prop {@link JMeterProperty} to clone
+     * @return the property to put in the cloned element
+     */
+    private JMeterProperty cloneProperty(JMeterProperty prop) {
+        if (runningVersion && prop instanceof AbstractProperty && ((AbstractProperty) prop).isShareable()) {
+            ((AbstractProperty) prop).markShared();
+            return prop;
+        }
+        return prop.clone();
+    }
+
+    private static boolean isShared(JMeterProperty prop) {
+        return prop instanceof AbstractProperty && ((AbstractProperty) prop).isShared();
+    }
+
+    /**
+     * Get a property that can be modified, replacing a shared property by a private copy.
+     *
+     * @param prop {@link JMeterProperty} held by this element
+     * @return prop or its copy now held by this element
+     */
+    private JMeterProperty getWritableProperty(JMeterProperty prop) {
+        if (isShared(prop)) {
+            JMeterProperty copy = prop.clone();
+            propMap.put(copy.getName(), copy);
+            return copy;
+        }
+        return prop;
+    }
+
+    /**
+     * Called once this element is only used by a single thread, for instance
+     * when it has been cloned for a thread by {@link org.apache.jmeter.engine.TreeCloner TreeCloner}.
+     * Property access then no longer needs to be synchronized.
+     * @since 3.1
+     */
+    public void setThreadConfined() {
+        propMap = new LinkedHashMap<>(propMap);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -338,10 +384,11 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
     @Override
     public void setProperty(JMeterProperty property) {
         if (isRunningVersion()) {
-            if (getProperty(property.getName()) instanceof NullProperty) {
+            JMeterProperty prop = getProperty(property.getName());
+            if (prop instanceof NullProperty) {
                 addProperty(property);
             } else {
-                getProperty(property.getName()).setObjectValue(property.getObjectValue());
+                getWritableProperty(prop).setObjectValue(property.getObjectValue());
             }
         } else {
             propMap.put(property.getName(), property);
@@ -484,7 +531,12 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
         this.runningVersion = runningVersion;
         PropertyIterator iter = propertyIterator();
         while (iter.hasNext()) {
-            iter.next().setRunningVersion(runningVersion);
+            JMeterProperty prop = iter.next();
+            if (!isShared(prop)) {
+                prop.setRunningVersion(runningVersion);
+            } else if (prop.isRunningVersion() != runningVersion) {
+                getWritableProperty(prop).setRunningVersion(runningVersion);
+            }
         }
     }
 
@@ -500,7 +552,7 @@ public abstract class AbstractTestElement implements TestElement, Serializable,
             if (isTemporary(prop)) {
                 iter.remove();
                 clearTemporary(prop);
-            } else {
+            } else if (!isShared(prop)) {
                 prop.recoverRunningVersion(this);
             }
         }
@@ -35,6 +35,9 @@ public abstract class AbstractProperty implements JMeterProperty {
 
     private transient boolean runningVersion = false;
 
+    // Set once the property is referenced by the running clones of several threads
+    private transient boolean shared = false;
+
     public AbstractProperty(String name) {
         if (name == null) {
             throw new IllegalArgumentException("Name cannot be null");
@@ -81,6 +84,40 @@ public abstract class AbstractProperty implements JMeterProperty {
         this.runningVersion = runningVersion;
     }
 
+    /**
+     * Can running test elements share this property with the clones they
+     * make for other threads, instead of copying it?
+     * <p>
+     * Only properties whose whole state is immutable once running, and which
+     * don't evaluate functions, may return true.
+     *
+     * @return false by default
+     * @since 3.1
+     */
+    public boolean isShareable() {
+        return false;
+    }
+
+    /**
+     * @return true if several running test elements hold this instance,
+     *  in which case it must be cloned before being modified
+     * @see #markShared()
+     * @since 3.1
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * Mark this property as held by several running test elements.
+     * A shared property is never modified in place, its owners replace it
+     * with a {@link #clone()} before writing to it.
+     * @since 3.1
+     */
+    public void markShared() {
+        shared = true;
+    }
+
     protected PropertyIterator getIterator(Collection<JMeterProperty> values) {
         return new PropertyIteratorImpl(values);
     }
@@ -92,6 +129,7 @@ public abstract class AbstractProperty implements JMeterProperty {
             AbstractProperty prop = (AbstractProperty) super.clone();
             prop.name = name;
             prop.runningVersion = runningVersion;
+            prop.shared = false;
             return prop;
         } catch (CloneNotSupportedException e) {
             throw new AssertionError(e); // clone should never return null
@@ -64,6 +64,11 @@ public class BooleanProperty extends AbstractProperty {
         return Boolean.valueOf(value);
     }
 
+    @Override
+    public boolean isShareable() {
+        return getClass() == BooleanProperty.class;
+    }
+
     @Override
     public BooleanProperty clone() {
         BooleanProperty prop = (BooleanProperty) super.clone();
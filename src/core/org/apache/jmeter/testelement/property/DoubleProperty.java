@@ -74,6 +74,14 @@ public class DoubleProperty extends NumberProperty {
         return Double.valueOf(value);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isShareable() {
+        return getClass() == DoubleProperty.class;
+    }
+
     /**
      * {@inheritDoc}
      */
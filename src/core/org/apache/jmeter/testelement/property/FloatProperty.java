@@ -91,6 +91,14 @@ public class FloatProperty extends NumberProperty {
         return Float.valueOf(value);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isShareable() {
+        return getClass() == FloatProperty.class;
+    }
+
     /**
      * {@inheritDoc}
      */
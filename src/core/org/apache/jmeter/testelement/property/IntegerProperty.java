@@ -96,6 +96,14 @@ public class IntegerProperty extends NumberProperty {
         return Integer.valueOf(value);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isShareable() {
+        return getClass() == IntegerProperty.class;
+    }
+
     /**
      * {@inheritDoc}
      */
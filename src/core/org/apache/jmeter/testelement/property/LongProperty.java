@@ -92,6 +92,14 @@ public class LongProperty extends NumberProperty {
         return Long.valueOf(value);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isShareable() {
+        return getClass() == LongProperty.class;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -76,6 +76,14 @@ public class StringProperty extends AbstractProperty {
         return value;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isShareable() {
+        return getClass() == StringProperty.class;
+    }
+
     /**
      * {@inheritDoc}
      */
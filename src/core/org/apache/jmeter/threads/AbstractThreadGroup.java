@@ -73,6 +73,9 @@ public abstract class AbstractThreadGroup extends AbstractTestElement
 
     public static final String MAIN_CONTROLLER = "ThreadGroup.main_controller";
 
+    /** Execution mode of the threads, see {@link JMeterThreadFactory} */
+    public static final String THREAD_MODE = "ThreadGroup.thread_mode";
+
     private final AtomicInteger numberOfThreads = new AtomicInteger(0); // Number of active threads in this group
 
     /** {@inheritDoc} */
@@ -209,6 +212,33 @@ public abstract class AbstractThreadGroup extends AbstractTestElement
         return this.getPropertyAsInt(AbstractThreadGroup.NUM_THREADS);
     }
 
+    /**
+     * Set the execution mode used to run the threads of this group
+     *
+     * @param mode
+     *            one of {@link JMeterThreadFactory#MODE_PLATFORM}, {@link JMeterThreadFactory#MODE_VIRTUAL},
+     *            the name of a {@link java.util.concurrent.ThreadFactory} class, or empty to use the default
+     */
+    public void setThreadMode(String mode) {
+        setProperty(THREAD_MODE, mode, "");
+    }
+
+    /**
+     * Get the execution mode used to run the threads of this group
+     *
+     * @return the execution mode, empty if the default (property <code>jmeterthread.mode</code>) applies
+     */
+    public String getThreadMode() {
+        return getPropertyAsString(THREAD_MODE);
+    }
+
+    /**
+     * @return the {@link JMeterThreadFactory} used to create the threads of this group
+     */
+    protected JMeterThreadFactory getThreadFactory() {
+        return JMeterThreadFactory.getFactory(getThreadMode());
+    }
+
     /**
      * Check if a sampler error should cause thread to start next loop.
      *
@@ -0,0 +1,494 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.jmeter.control.LoopController;
+import org.apache.jmeter.engine.StandardJMeterEngine;
+import org.apache.jmeter.engine.TreeCloner;
+import org.apache.jmeter.engine.event.LoopIterationEvent;
+import org.apache.jmeter.engine.event.LoopIterationListener;
+import org.apache.jmeter.testelement.property.BooleanProperty;
+import org.apache.jmeter.testelement.property.IntegerProperty;
+import org.apache.jmeter.testelement.property.LongProperty;
+import org.apache.jmeter.testelement.property.StringProperty;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.collections.ListedHashTree;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.util.JMeterStopThreadException;
+import org.apache.log.Logger;
+
+/**
+ * Thread Group starting iterations at the rate of a profile (open workload model),
+ * whatever the response times.
+ * <p>
+ * A dispatcher thread starts a new thread whenever an iteration is due and no thread
+ * is free to run it, up to the number of threads of the group. Free threads take the next
+ * iteration of the schedule and wait until it is due, so an iteration starts late only
+ * when all the threads are busy. The delay between the scheduled start of an iteration
+ * and its actual start is recorded by the samples, see
+ * {@link org.apache.jmeter.samplers.SampleResult#getIntendedStartTime()}.
+ * <p>
+ * The group stops once the duration has elapsed and the last iteration has completed.
+ * <p>
+ * This class is intended to be ThreadSafe.
+ * @since 3.1
+ */
+public class ArrivalRateThreadGroup extends AbstractThreadGroup {
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final long WAIT_TO_DIE = JMeterUtils.getPropDefault("jmeterengine.threadstop.wait", 5 * 1000); // 5 seconds
+
+    /** How often waiting threads check for shutdown, in ms */
+    private static final long WAIT_GRANULARITY = 100;
+
+    //+ JMX entries - do not change the string values
+
+    /** Shape of the rate profile, one of the PROFILE_ values */
+    public static final String PROFILE = "ArrivalRateThreadGroup.profile";
+
+    /** Arrivals per second at the start */
+    public static final String START_RATE = "ArrivalRateThreadGroup.start_rate";
+
+    /** Arrivals per second at the end, used by the ramp and step profiles */
+    public static final String END_RATE = "ArrivalRateThreadGroup.end_rate";
+
+    /** Number of steps of the step profile */
+    public static final String STEPS = "ArrivalRateThreadGroup.steps";
+
+    /** Duration of the profile in seconds */
+    public static final String DURATION = "ArrivalRateThreadGroup.duration";
+
+    /** Whether the arrivals are random (Poisson) instead of evenly spaced */
+    public static final String RANDOM_ARRIVALS = "ArrivalRateThreadGroup.random_arrivals";
+
+    /** Constant rate */
+    public static final String PROFILE_CONSTANT = "constant";
+
+    /** Rate increasing (or decreasing) linearly from the start rate to the end rate */
+    public static final String PROFILE_RAMP = "ramp";
+
+    /** Rate increasing (or decreasing) by steps of equal duration from the start rate to the end rate */
+    public static final String PROFILE_STEP = "step";
+
+    //- JMX entries
+
+    // Shared by the clones of the group, which run the iterations
+    private transient JMeterThreadFactory threadFactory;
+
+    private transient Thread dispatcher;
+
+    // Created by start(), the group may have been deserialized by a server
+    private transient Object lock;
+
+    //@GuardedBy("lock")
+    private transient ArrivalSchedule schedule;
+
+    private transient long startNanos;
+
+    // First iteration of the threads started by the dispatcher
+    private final Map<JMeterThread, Long> firstArrivals = new ConcurrentHashMap<>();
+
+    // List of active threads
+    private final Map<JMeterThread, Thread> allThreads = new ConcurrentHashMap<>();
+
+    /**
+     * Is test (still) running?
+     */
+    private volatile boolean running = false;
+
+    /**
+     * No-arg constructor.
+     */
+    public ArrivalRateThreadGroup() {
+    }
+
+    public void setProfile(String profile) {
+        setProperty(new StringProperty(PROFILE, profile));
+    }
+
+    /**
+     * @return the shape of the rate profile, {@link #PROFILE_CONSTANT} if not set
+     */
+    public String getProfile() {
+        return getPropertyAsString(PROFILE, PROFILE_CONSTANT);
+    }
+
+    /**
+     * @param rate arrivals per second at the start
+     */
+    public void setStartRate(double rate) {
+        setProperty(START_RATE, Double.toString(rate));
+    }
+
+    public double getStartRate() {
+        return getPropertyAsDouble(START_RATE);
+    }
+
+    /**
+     * @param rate arrivals per second at the end
+     */
+    public void setEndRate(double rate) {
+        setProperty(END_RATE, Double.toString(rate));
+    }
+
+    public double getEndRate() {
+        return getPropertyAsDouble(END_RATE);
+    }
+
+    public void setSteps(int steps) {
+        setProperty(new IntegerProperty(STEPS, steps));
+    }
+
+    public int getSteps() {
+        return getPropertyAsInt(STEPS, 1);
+    }
+
+    /**
+     * @param duration duration of the profile in seconds
+     */
+    public void setDuration(long duration) {
+        setProperty(new LongProperty(DURATION, duration));
+    }
+
+    public long getDuration() {
+        return getPropertyAsLong(DURATION);
+    }
+
+    public void setRandomArrivals(boolean random) {
+        setProperty(new BooleanProperty(RANDOM_ARRIVALS, random));
+    }
+
+    public boolean getRandomArrivals() {
+        return getPropertyAsBoolean(RANDOM_ARRIVALS);
+    }
+
+    /**
+     * The iterations of the group are paced by the schedule, so they loop forever.
+     */
+    @Override
+    public void setSamplerController(LoopController c) {
+        super.setSamplerController(c);
+        c.setLoops(LoopController.INFINITE_LOOP_COUNT);
+    }
+
+    /**
+     * Called by each thread on its clone of the group
+     */
+    @Override
+    public void initialize() {
+        super.initialize();
+        addIterationListener(new ArrivalListener());
+    }
+
+    @Override
+    public void start(int groupCount, ListenerNotifier notifier, ListedHashTree threadGroupTree, StandardJMeterEngine engine) {
+        lock = new Object();
+        running = true;
+        threadFactory = getThreadFactory();
+        long duration = getDuration();
+        String profile = getProfile();
+        log.info("Starting thread group number " + groupCount
+                + " profile " + profile
+                + " rate " + getStartRate() + (PROFILE_CONSTANT.equals(profile) ? "" : " to " + getEndRate())
+                + "/s duration " + duration
+                + " randomArrivals=" + getRandomArrivals()
+                + " maxThreads " + getNumThreads()
+                + " threadMode=" + threadFactory.getMode());
+        if (duration <= 0) {
+            log.warn("Thread group " + getName() + " has no duration, no iteration will start");
+            return;
+        }
+        synchronized (lock) {
+            schedule = new ArrivalSchedule(profile, getStartRate(), getEndRate(), getSteps(), duration,
+                    getRandomArrivals() ? new Random() : null);
+            startNanos = System.nanoTime();
+        }
+        dispatcher = new Thread(new Dispatcher(groupCount, notifier, threadGroupTree, engine), getName()+"-Dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        log.info("Started thread group number "+groupCount);
+    }
+
+    /**
+     * Take the next iteration of the schedule and wait until it is due
+     * @param context context of the thread running the iteration
+     * @throws JMeterStopThreadException if there are no more iterations
+     */
+    void awaitArrival(JMeterContext context) {
+        Long first = firstArrivals.remove(context.getThread());
+        long arrival;
+        if (first != null) {
+            arrival = first.longValue();
+        } else {
+            synchronized (lock) {
+                arrival = schedule.take();
+                lock.notifyAll(); // wake up the dispatcher, this iteration is taken care of
+            }
+        }
+        if (arrival < 0) {
+            throw new JMeterStopThreadException("End of the schedule of " + getName());
+        }
+        long due = startNanos + arrival;
+        long now;
+        while (running && (now = System.nanoTime()) < due) {
+            LockSupport.parkNanos(Math.min(due - now, TimeUnit.MILLISECONDS.toNanos(WAIT_GRANULARITY)));
+            if (Thread.interrupted()) {
+                break; // the thread is being stopped, it won't sample if so
+            }
+        }
+        if (!running) {
+            throw new JMeterStopThreadException("Thread group " + getName() + " stopped");
+        }
+        context.setStartDelay(Math.max(0, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - due)));
+    }
+
+    /**
+     * Register Thread when it starts
+     * @param jMeterThread {@link JMeterThread}
+     * @param newThread Thread
+     */
+    private void registerStartedThread(JMeterThread jMeterThread, Thread newThread) {
+        allThreads.put(jMeterThread, newThread);
+    }
+
+    private JMeterThread makeThread(int groupCount,
+            ListenerNotifier notifier, ListedHashTree threadGroupTree,
+            StandardJMeterEngine engine, int i,
+            JMeterContext context) { // N.B. Context needs to be fetched in the correct thread
+        final JMeterThread jmeterThread = new JMeterThread(cloneTree(threadGroupTree), this, notifier);
+        jmeterThread.setThreadNum(i);
+        jmeterThread.setThreadGroup(this);
+        jmeterThread.setInitialContext(context);
+        final String threadName = getName() + " " + (groupCount) + "-" + (i + 1);
+        jmeterThread.setThreadName(threadName);
+        jmeterThread.setEngine(engine);
+        jmeterThread.setOnErrorStopTest(getOnErrorStopTest());
+        jmeterThread.setOnErrorStopTestNow(getOnErrorStopTestNow());
+        jmeterThread.setOnErrorStopThread(getOnErrorStopThread());
+        jmeterThread.setOnErrorStartNextLoop(getOnErrorStartNextLoop());
+        return jmeterThread;
+    }
+
+    /**
+     * Stop thread called threadName:
+     * <ol>
+     *  <li>stop JMeter thread</li>
+     *  <li>interrupt JMeter thread</li>
+     *  <li>interrupt underlying thread</li>
+     * </ol>
+     * @param threadName String thread name
+     * @param now boolean for stop
+     * @return true if thread stopped
+     */
+    @Override
+    public boolean stopThread(String threadName, boolean now) {
+        for(Entry<JMeterThread, Thread> entry : allThreads.entrySet()) {
+            JMeterThread thrd = entry.getKey();
+            if (thrd.getThreadName().equals(threadName)) {
+                stopThread(thrd, entry.getValue(), now);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void stopThread(JMeterThread thrd, Thread t, boolean interrupt) {
+        thrd.stop();
+        thrd.interrupt(); // interrupt sampler if possible
+        if (interrupt && t != null) {
+            t.interrupt(); // also interrupt JVM thread
+        }
+    }
+
+    /**
+     * Called by JMeterThread when it finishes
+     */
+    @Override
+    public void threadFinished(JMeterThread thread) {
+        log.debug("Ending thread " + thread.getThreadName());
+        allThreads.remove(thread);
+        firstArrivals.remove(thread);
+    }
+
+    @Override
+    public void tellThreadsToStop() {
+        stopDispatcher();
+        for (Entry<JMeterThread, Thread> entry : allThreads.entrySet()) {
+            stopThread(entry.getKey(), entry.getValue(), true);
+        }
+    }
+
+    @Override
+    public void stop() {
+        stopDispatcher();
+        for (JMeterThread item : allThreads.keySet()) {
+            item.stop();
+        }
+    }
+
+    private void stopDispatcher() {
+        running = false;
+        Object dispatcherLock = lock;
+        if (dispatcherLock != null) {
+            synchronized (dispatcherLock) {
+                dispatcherLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return number of active threads
+     */
+    @Override
+    public int numberOfActiveThreads() {
+        return allThreads.size();
+    }
+
+    /**
+     * @return boolean true if all threads stopped
+     */
+    @Override
+    public boolean verifyThreadsStopped() {
+        boolean stoppedAll = verifyThreadStopped(dispatcher);
+        for (Thread t : allThreads.values()) {
+            stoppedAll = stoppedAll && verifyThreadStopped(t);
+        }
+        return stoppedAll;
+    }
+
+    private boolean verifyThreadStopped(Thread thread) {
+        boolean stopped = true;
+        if (thread != null && thread.isAlive()) {
+            try {
+                thread.join(WAIT_TO_DIE);
+            } catch (InterruptedException e) {
+            }
+            if (thread.isAlive()) {
+                stopped = false;
+                log.warn("Thread won't exit: " + thread.getName());
+            }
+        }
+        return stopped;
+    }
+
+    /**
+     * Wait for all Group Threads to stop, once the dispatcher has stopped starting new ones
+     */
+    @Override
+    public void waitThreadsStopped() {
+        waitThreadStopped(dispatcher);
+        for (Thread t : allThreads.values()) {
+            waitThreadStopped(t);
+        }
+    }
+
+    private void waitThreadStopped(Thread thread) {
+        if (thread != null) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join(WAIT_TO_DIE);
+                } catch (InterruptedException e) {
+                }
+            }
+        }
+    }
+
+    private ListedHashTree cloneTree(ListedHashTree tree) {
+        TreeCloner cloner = new TreeCloner(true);
+        tree.traverse(cloner);
+        return cloner.getClonedTree();
+    }
+
+    /**
+     * Waits for the next iteration of the clone of the group run by a thread
+     */
+    private static class ArrivalListener implements LoopIterationListener {
+        @Override
+        public void iterationStart(LoopIterationEvent iterEvent) {
+            JMeterContext context = JMeterContextService.getContext();
+            ((ArrivalRateThreadGroup) context.getThreadGroup()).awaitArrival(context);
+        }
+    }
+
+    /**
+     * Starts a thread for each iteration due which no thread has taken
+     */
+    private class Dispatcher implements Runnable {
+
+        private final int groupCount;
+        private final ListenerNotifier notifier;
+        private final ListedHashTree threadGroupTree;
+        private final StandardJMeterEngine engine;
+        private final JMeterContext context;
+
+        Dispatcher(int groupCount, ListenerNotifier notifier, ListedHashTree threadGroupTree, StandardJMeterEngine engine) {
+            this.groupCount = groupCount;
+            this.notifier = notifier;
+            this.threadGroupTree = threadGroupTree;
+            this.engine = engine;
+            // Store context from Root Thread to pass it to created threads
+            this.context = JMeterContextService.getContext();
+        }
+
+        @Override
+        public void run() {
+            // Copy in Dispatcher thread context from calling Thread
+            JMeterContextService.getContext().setVariables(this.context.getVariables());
+            final int maxThreads = getNumThreads();
+            int started = 0;
+            try {
+                while (running) {
+                    long arrival;
+                    synchronized (lock) {
+                        arrival = schedule.peek();
+                        if (arrival < 0) {
+                            break; // the threads will stop when they find no more iterations
+                        }
+                        long togo = startNanos + arrival - System.nanoTime();
+                        if (togo > 0 || allThreads.size() >= maxThreads) {
+                            // Not due yet, or wait for a thread to be free
+                            long wait = togo > 0 ? TimeUnit.NANOSECONDS.toMillis(togo) + 1 : WAIT_GRANULARITY;
+                            lock.wait(Math.min(wait, WAIT_GRANULARITY));
+                            continue;
+                        }
+                        arrival = schedule.take();
+                    }
+                    // Due and no free thread to take it
+                    JMeterThread jmThread = makeThread(groupCount, notifier, threadGroupTree, engine, started++, context);
+                    firstArrivals.put(jmThread, Long.valueOf(arrival));
+                    Thread newThread = threadFactory.newThread(jmThread, jmThread.getThreadName());
+                    registerStartedThread(jmThread, newThread);
+                    newThread.start();
+                }
+            } catch (InterruptedException e) {
+                log.debug("Dispatcher of " + getName() + " interrupted");
+            }
+            log.info("Dispatcher of " + getName() + " started " + started + " threads");
+        }
+    }
+}
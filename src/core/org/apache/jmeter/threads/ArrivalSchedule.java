@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads;
+
+import java.util.Random;
+
+/**
+ * Arrival times of the iterations of an {@link ArrivalRateThreadGroup}.
+ * <p>
+ * The rate profile gives the number of arrivals expected since the start, N(t).
+ * The n-th arrival happens when N(t) reaches n, or, for random arrivals, when it reaches
+ * the sum of n exponentially distributed increments, which gives Poisson arrivals
+ * following the rate profile.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class ArrivalSchedule {
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final String profile;
+
+    private final double startRate; // per second
+
+    private final double endRate; // per second
+
+    private final int steps;
+
+    private final double duration; // seconds
+
+    private final Random random; // null for even arrivals
+
+    private double count; // expected arrivals at the next arrival
+
+    private long next; // ns, negative once the schedule is over
+
+    /**
+     * @param profile one of {@link ArrivalRateThreadGroup#PROFILE_CONSTANT}, {@link ArrivalRateThreadGroup#PROFILE_RAMP}
+     *  or {@link ArrivalRateThreadGroup#PROFILE_STEP}
+     * @param startRate arrivals per second at the start
+     * @param endRate arrivals per second at the end, ignored by the constant profile
+     * @param steps number of steps of the step profile
+     * @param durationSeconds duration of the schedule in seconds
+     * @param random source of the random arrivals, <code>null</code> for evenly spaced arrivals
+     */
+    ArrivalSchedule(String profile, double startRate, double endRate, int steps, double durationSeconds, Random random) {
+        this.profile = profile;
+        this.startRate = Math.max(0, startRate);
+        this.endRate = ArrivalRateThreadGroup.PROFILE_CONSTANT.equals(profile) ? this.startRate : Math.max(0, endRate);
+        this.steps = Math.max(1, steps);
+        this.duration = durationSeconds;
+        this.random = random;
+        this.count = random == null ? 0 : nextIncrement();
+        this.next = timeOf(count);
+    }
+
+    /**
+     * @return time of the next arrival in nanoseconds since the start, negative if there are no more arrivals
+     */
+    long peek() {
+        return next;
+    }
+
+    /**
+     * Take the next arrival
+     * @return time of the arrival in nanoseconds since the start, negative if there are no more arrivals
+     */
+    long take() {
+        long arrival = next;
+        if (arrival >= 0) {
+            count += random == null ? 1 : nextIncrement();
+            next = timeOf(count);
+        }
+        return arrival;
+    }
+
+    private double nextIncrement() {
+        return -Math.log(1 - random.nextDouble()); // exponential with mean 1
+    }
+
+    /**
+     * @param expected number of arrivals
+     * @return time in ns at which the rate profile reaches this number of arrivals, -1 if not before the end
+     */
+    private long timeOf(double expected) {
+        double time;
+        if (ArrivalRateThreadGroup.PROFILE_STEP.equals(profile)) {
+            time = stepTimeOf(expected);
+        } else {
+            time = rampTimeOf(expected);
+        }
+        if (time < 0 || time >= duration) {
+            return -1;
+        }
+        return (long) (time * NANOS_PER_SECOND);
+    }
+
+    // N(t) = startRate * t + (endRate - startRate) * t^2 / (2 * duration)
+    private double rampTimeOf(double expected) {
+        if (expected <= 0) {
+            return 0;
+        }
+        double a = (endRate - startRate) / (2 * duration);
+        double discriminant = startRate * startRate + 4 * a * expected;
+        if (discriminant < 0) {
+            return -1; // a decreasing rate never reaches it
+        }
+        double denominator = startRate + Math.sqrt(discriminant);
+        if (denominator <= 0) {
+            return -1;
+        }
+        return 2 * expected / denominator; // stable form of the root of a t^2 + startRate t - expected
+    }
+
+    private double stepTimeOf(double expected) {
+        double stepDuration = duration / steps;
+        double reached = 0;
+        for (int i = 0; i < steps; i++) {
+            double rate = steps == 1 ? startRate : startRate + (endRate - startRate) * i / (steps - 1);
+            double stepArrivals = rate * stepDuration;
+            if (rate > 0 && reached + stepArrivals > expected) {
+                return i * stepDuration + (expected - reached) / rate;
+            }
+            reached += stepArrivals;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads;
+
+import java.util.Arrays;
+
+/**
+ * Variable names made of a base name, a separator and an index, such as the
+ * <code>refName_1</code>, <code>refName_2</code>... variables set by extractors.
+ * Each name is built once, then reused for every sample.
+ * <p>
+ * Not thread-safe: intended to be held by a test element cloned for each thread.
+ * @since 3.1
+ */
+public final class IndexedVariableNames {
+
+    // Larger indexes get no slot, so that long lists of matches don't fill the symbol table
+    private static final int MAX_INDEX_WITH_SLOT = 20;
+
+    // Names of larger indexes are built on each call rather than kept by every thread
+    private static final int MAX_CACHED_INDEX = 100;
+
+    private final String baseName;
+
+    private final String prefix;
+
+    private final boolean register;
+
+    private VariableName[] names = new VariableName[MAX_INDEX_WITH_SLOT + 1];
+
+    /**
+     * @param baseName the base name, e.g. the reference name of an extractor
+     * @param separator inserted between the base name and the index
+     */
+    public IndexedVariableNames(String baseName, String separator) {
+        this(baseName, separator, true);
+    }
+
+    /**
+     * @param baseName the base name, e.g. the reference name of an extractor
+     * @param separator inserted between the base name and the index
+     * @param register false to give no slot to any of the names,
+     * e.g. when the base name is itself one of a large index
+     */
+    public IndexedVariableNames(String baseName, String separator, boolean register) {
+        this.baseName = baseName;
+        this.prefix = baseName + separator;
+        this.register = register;
+    }
+
+    /**
+     * @return the base name
+     */
+    public String getBaseName() {
+        return baseName;
+    }
+
+    /**
+     * @param index the index, not negative
+     * @return the name of the variable for the index
+     */
+    public VariableName get(int index) {
+        if (index > MAX_CACHED_INDEX) {
+            return new VariableName(prefix + index, false);
+        }
+        if (index >= names.length) {
+            names = Arrays.copyOf(names, Math.min(Math.max(index + 1, names.length * 2), MAX_CACHED_INDEX + 1));
+        }
+        VariableName name = names[index];
+        if (name == null) {
+            name = new VariableName(prefix + index, isRegistered(index));
+            names[index] = name;
+        }
+        return name;
+    }
+
+    /**
+     * @param index the index, not negative
+     * @return true if the name of the index is given a slot,
+     * so should be the names derived from it
+     */
+    public boolean isRegistered(int index) {
+        return register && index <= MAX_INDEX_WITH_SLOT;
+    }
+}
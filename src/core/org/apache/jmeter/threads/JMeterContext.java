@@ -54,6 +54,19 @@ public class JMeterContext {
 
     private ConcurrentHashMap<String, Object> samplerContext = new ConcurrentHashMap<>(5);
 
+    private boolean responseDataNeeded = true;
+
+    private int responseDataMaxSize;
+
+    // Result no longer referenced, which the next sampler of the thread may reuse
+    private SampleResult recycledResult;
+
+    // Delay of the samples of the thread behind their schedule, in ms
+    private long startDelay;
+
+    // Time at which the timers wanted the next sample to start, 0 if on time
+    private long intendedStartTime;
+
     JMeterContext() {
         clear0();
     }
@@ -71,6 +84,11 @@ public class JMeterContext {
         threadNum = 0;
         thread = null;
         samplerContext.clear();
+        responseDataNeeded = true;
+        responseDataMaxSize = 0;
+        recycledResult = null;
+        startDelay = 0;
+        intendedStartTime = 0;
     }
 
     /**
@@ -191,6 +209,110 @@ public class JMeterContext {
         samplerContext.clear();
     }
 
+    /**
+     * Samplers may count the bytes of the response without keeping its data when it is not needed.
+     * @return <code>false</code> if no element in the scope of the current sampler needs the response data
+     * @see org.apache.jmeter.samplers.SampleResultConsumer
+     * @since 3.1
+     */
+    public boolean isResponseDataNeeded() {
+        return responseDataNeeded;
+    }
+
+    /**
+     * @param responseDataNeeded whether an element in the scope of the current sampler needs the response data
+     * @since 3.1
+     */
+    public void setResponseDataNeeded(boolean responseDataNeeded) {
+        this.responseDataNeeded = responseDataNeeded;
+    }
+
+    /**
+     * Only meaningful if {@link #isResponseDataNeeded()} returns <code>true</code>.
+     * @return the number of leading bytes of the response data which are needed
+     *         by the elements in the scope of the current sampler, 0 if all of it is needed
+     * @see org.apache.jmeter.samplers.ResponseDataPrefixConsumer
+     * @since 3.1
+     */
+    public int getResponseDataMaxSize() {
+        return responseDataMaxSize;
+    }
+
+    /**
+     * @param responseDataMaxSize number of leading bytes of the response data needed, 0 for all of it
+     * @since 3.1
+     */
+    public void setResponseDataMaxSize(int responseDataMaxSize) {
+        this.responseDataMaxSize = responseDataMaxSize;
+    }
+
+    /**
+     * Hand over a result which is no longer referenced, so that a later sampler
+     * of this thread can reuse it.
+     * @param result the result to reuse
+     * @since 3.1
+     */
+    public void recycleSampleResult(SampleResult result) {
+        this.recycledResult = result;
+    }
+
+    /**
+     * Take the result handed over by {@link #recycleSampleResult(SampleResult)},
+     * reset to the state of a new result.
+     * @param <T> type of the result
+     * @param type exact class of the result the sampler needs
+     * @return the recycled result or <code>null</code> if there is none of this class
+     * @since 3.1
+     */
+    public <T extends SampleResult> T takeRecycledResult(Class<T> type) {
+        SampleResult result = recycledResult;
+        if (result == null || result.getClass() != type) {
+            return null;
+        }
+        recycledResult = null;
+        result.recycle();
+        return type.cast(result);
+    }
+
+    /**
+     * Record how late the samples of the thread start compared to their schedule,
+     * e.g. when the previous iteration took longer than the thread group allows.
+     * The following samples record the time at which they should have started,
+     * see {@link SampleResult#getIntendedStartTime()}.
+     * @param startDelay delay in milliseconds, 0 if the samples are on time
+     * @since 3.1
+     */
+    public void setStartDelay(long startDelay) {
+        this.startDelay = startDelay;
+    }
+
+    /**
+     * @return delay in milliseconds of the samples of the thread behind their schedule
+     * @since 3.1
+     */
+    public long getStartDelay() {
+        return startDelay;
+    }
+
+    /**
+     * Record the time at which the next sample should have started, for use by
+     * timers which find the thread behind their schedule. The value only applies
+     * to the sample which follows the timers, see {@link SampleResult#getIntendedStartTime()}.
+     * @param intendedStartTime time in milliseconds, 0 if the sample is on time
+     * @since 3.1
+     */
+    public void setIntendedStartTime(long intendedStartTime) {
+        this.intendedStartTime = intendedStartTime;
+    }
+
+    /**
+     * @return time at which the timers wanted the next sample to start, 0 if it is on time
+     * @since 3.1
+     */
+    public long getIntendedStartTime() {
+        return intendedStartTime;
+    }
+
     /**
      * Sampler context is cleaned up as soon as Post-Processor have ended
      * @return Context to use within PostProcessors to cache data
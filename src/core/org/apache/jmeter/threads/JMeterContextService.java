@@ -88,12 +88,15 @@ public final class JMeterContextService {
      * Method is called by the JMeterEngine class when a test run is started.
      * Zeroes numberOfActiveThreads.
      * Saves current time in a field and in the JMeter property "TESTSTART.MS"
+     * Starts a new symbol table for the {@link VariableName}s.
      */
     public static synchronized void startTest() {
         if (testStart == 0) {
             numberOfActiveThreads = 0;
             testStart = System.currentTimeMillis();
             JMeterUtils.setProperty("TESTSTART.MS",Long.toString(testStart));// $NON-NLS-1$
+            // The names of the previous runs no longer need a slot
+            VariableName.resetSymbolTable();
         }
     }
 
@@ -18,7 +18,6 @@
 
 package org.apache.jmeter.threads;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -39,6 +38,7 @@ import org.apache.jmeter.samplers.SampleEvent;
 import org.apache.jmeter.samplers.SampleListener;
 import org.apache.jmeter.samplers.SampleMonitor;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleResultConsumer;
 import org.apache.jmeter.samplers.Sampler;
 import org.apache.jmeter.testbeans.TestBeanHelper;
 import org.apache.jmeter.testelement.AbstractScopedAssertion;
@@ -71,6 +71,10 @@ public class JMeterThread implements Runnable, Interruptible {
 
     private static final String TRUE = Boolean.toString(true); // i.e. "true"
 
+    /** Keep the response data only when needed and reuse results, see {@link SampleResultConsumer} */
+    private static final boolean LIGHTWEIGHT_RESULTS =
+            JMeterUtils.getPropDefault("sampleresult.lightweight", false); // $NON-NLS-1$
+
     /** How often to check for shutdown during ramp-up, default 1000ms */
     private static final int RAMPUP_GRANULARITY =
             JMeterUtils.getPropDefault("jmeterthread.rampup.granularity", 1000); // $NON-NLS-1$
@@ -88,12 +92,21 @@ public class JMeterThread implements Runnable, Interruptible {
     // Note: this is only used to implement TestIterationListener#testIterationStart
     // Since this is a frequent event, it makes sense to create the list once rather than scanning each time
     // The memory used will be released when the thread finishes
-    private final Collection<TestIterationListener> testIterationStartListeners;
+    private final TestIterationListener[] testIterationStartListeners;
 
-    private final Collection<SampleMonitor> sampleMonitors;
+    private final SampleMonitor[] sampleMonitors;
 
     private final ListenerNotifier notifier;
 
+    /**
+     * Lightweight results are disabled when a pre-processor may use the previous result,
+     * as it belongs to the scope of another sampler
+     */
+    private final boolean lightweightResults;
+
+    // Previous result of the thread, to be reused once it is no longer the previous result
+    private SampleResult recyclableResult;
+
     /*
      * The following variables are set by StandardJMeterEngine.
      * This is done before start() is called, so the values will be published to the thread safely
@@ -143,14 +156,32 @@ public class JMeterThread implements Runnable, Interruptible {
         threadGroupLoopController = (Controller) testTree.getArray()[0];
         SearchByClass<TestIterationListener> threadListenerSearcher = new SearchByClass<>(TestIterationListener.class); // TL - IS
         test.traverse(threadListenerSearcher);
-        testIterationStartListeners = threadListenerSearcher.getSearchResults();
+        Collection<TestIterationListener> iterationListeners = threadListenerSearcher.getSearchResults();
+        testIterationStartListeners = iterationListeners.toArray(new TestIterationListener[iterationListeners.size()]);
         SearchByClass<SampleMonitor> sampleMonitorSearcher = new SearchByClass<>(SampleMonitor.class);
         test.traverse(sampleMonitorSearcher);
-        sampleMonitors = sampleMonitorSearcher.getSearchResults();
+        Collection<SampleMonitor> monitors = sampleMonitorSearcher.getSearchResults();
+        sampleMonitors = monitors.toArray(new SampleMonitor[monitors.size()]);
+        lightweightResults = LIGHTWEIGHT_RESULTS && !usesPreviousResult(test);
         notifier = note;
         running = true;
     }
 
+    private static boolean usesPreviousResult(HashTree test) {
+        SearchByClass<PreProcessor> preProcessorSearcher = new SearchByClass<>(PreProcessor.class);
+        test.traverse(preProcessorSearcher);
+        for (PreProcessor preProcessor : preProcessorSearcher.getSearchResults()) {
+            if (!(preProcessor instanceof SampleResultConsumer)
+                    || ((SampleResultConsumer) preProcessor).needsResponseData()
+                    || ((SampleResultConsumer) preProcessor).retainsSampleResults()) {
+                log.info("Lightweight results disabled as " + preProcessor.getClass().getName()
+                        + " may use the previous result");
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void setInitialContext(JMeterContext context) {
         threadVars.putAll(context.getVariables());
     }
@@ -318,12 +349,16 @@ public class JMeterThread implements Runnable, Interruptible {
         if(realSampler == null) {
             throw new IllegalStateException("Got null subSampler calling findRealSampler for:"+sam.getName()+", sam:"+sam);
         }
-        // Find parent controllers of current sampler
-        FindTestElementsUpToRootTraverser pathToRootTraverser = new FindTestElementsUpToRootTraverser(realSampler);
-        testTree.traverse(pathToRootTraverser);
+        // Find parent controllers of current sampler, compiled when the thread started
+        Controller[] controllersToReinit = compiler.getControllersToRoot(realSampler);
+        if (controllersToReinit == null) {
+            FindTestElementsUpToRootTraverser pathToRootTraverser = new FindTestElementsUpToRootTraverser(realSampler);
+            testTree.traverse(pathToRootTraverser);
+            List<Controller> controllersToRoot = pathToRootTraverser.getControllersToRoot();
+            controllersToReinit = controllersToRoot.toArray(new Controller[controllersToRoot.size()]);
+        }
         
         // Trigger end of loop condition on all parent controllers of current sampler
-        List<Controller> controllersToReinit = pathToRootTraverser.getControllersToRoot();
         for (Controller parentController : controllersToReinit) {
             if(parentController instanceof AbstractThreadGroup) {
                 AbstractThreadGroup tg = (AbstractThreadGroup) parentController;
@@ -442,12 +477,13 @@ public class JMeterThread implements Runnable, Interruptible {
         threadContext.setCurrentSampler(current);
         // Get the sampler ready to sample
         SamplePackage pack = compiler.configureSampler(current);
-        runPreProcessors(pack.getPreProcessors());
+        runPreProcessors(pack.getPreProcessorArray());
 
         // Hack: save the package for any transaction controllers
         threadVars.putObject(PACKAGE_OBJECT, pack);
 
-        delay(pack.getTimers());
+        threadContext.setIntendedStartTime(0);
+        delay(pack.getTimerArray());
         Sampler sampler = pack.getSampler();
         sampler.setThreadContext(threadContext);
         // TODO should this set the thread names for all the subsamples?
@@ -460,6 +496,9 @@ public class JMeterThread implements Runnable, Interruptible {
         for(SampleMonitor monitor : sampleMonitors) {
             monitor.sampleStarting(sampler);
         }
+        if (lightweightResults) {
+            setResponseDataNeeds(threadContext, pack, transactionPack);
+        }
         SampleResult result = null;
         try {
             result = sampler.sample(null); // TODO: remove this useless Entry parameter
@@ -477,6 +516,16 @@ public class JMeterThread implements Runnable, Interruptible {
             result.setGroupThreads(nbActiveThreadsInThreadGroup);
             result.setAllThreads(nbTotalActiveThreads);
             result.setThreadName(threadName);
+            // The earliest of the schedules of the thread group and of the timers applies
+            long startTime = result.getStartTime();
+            long intendedStartTime = threadContext.getIntendedStartTime();
+            long startDelay = threadContext.getStartDelay();
+            if (startDelay > 0 && (intendedStartTime == 0 || startTime - startDelay < intendedStartTime)) {
+                intendedStartTime = startTime - startDelay;
+            }
+            if (intendedStartTime > 0 && intendedStartTime < startTime) {
+                result.setIntendedStartTime(intendedStartTime);
+            }
             SampleResult[] subResults = result.getSubResults();
             if(subResults != null) {
                 for (SampleResult subResult : subResults) {
@@ -485,16 +534,20 @@ public class JMeterThread implements Runnable, Interruptible {
                     subResult.setThreadName(threadName);
                 }
             }
-            threadContext.setPreviousResult(result);
-            runPostProcessors(pack.getPostProcessors());
-            checkAssertions(pack.getAssertions(), result, threadContext);
+            setPreviousResult(threadContext, result);
+            runPostProcessors(pack.getPostProcessorArray());
+            checkAssertions(pack.getAssertionArray(), result, threadContext);
             // Do not send subsamples to listeners which receive the transaction sample
-            List<SampleListener> sampleListeners = getSampleListeners(pack, transactionPack, transactionSampler);
+            SampleListener[] sampleListeners = transactionSampler != null
+                    ? pack.getSampleListenersOutside(transactionPack)
+                    : pack.getSampleListenerArray();
             notifyListeners(sampleListeners, result);
             compiler.done(pack);
             // Add the result as subsample of transaction if we are in a transaction
             if(transactionSampler != null) {
                 transactionSampler.addSubSamplerResult(result);
+            } else if (lightweightResults && !pack.isSampleResultRetained()) {
+                recyclableResult = result;
             }
 
             // Check if thread or test should be stopped
@@ -515,6 +568,40 @@ public class JMeterThread implements Runnable, Interruptible {
         }
     }
 
+    /**
+     * Tell the sampler how much of the response data the elements in its scope use
+     * @param threadContext {@link JMeterContext}
+     * @param pack {@link SamplePackage} of the sampler
+     * @param transactionPack {@link SamplePackage} of the parent transaction, may be null
+     */
+    private static void setResponseDataNeeds(JMeterContext threadContext, SamplePackage pack,
+            SamplePackage transactionPack) {
+        boolean needed = pack.isResponseDataNeeded();
+        int maxSize = needed ? pack.getResponseDataMaxSize() : -1;
+        // A parent transaction sample holds this result as sub-result
+        if (transactionPack != null && transactionPack.isResponseDataNeeded()) {
+            needed = true;
+            maxSize = SamplePackage.combineResponseDataMaxSizes(maxSize, transactionPack.getResponseDataMaxSize());
+        }
+        threadContext.setResponseDataNeeded(needed);
+        threadContext.setResponseDataMaxSize(Math.max(maxSize, 0));
+    }
+
+    /*
+     * The result replaced as previous result is no longer referenced
+     * if nothing retained it, so the next sampler can reuse it
+     */
+    private void setPreviousResult(JMeterContext threadContext, SampleResult result) {
+        SampleResult previousResult = threadContext.getPreviousResult();
+        threadContext.setPreviousResult(result);
+        if (recyclableResult != null) {
+            if (recyclableResult == previousResult && previousResult != result) {
+                threadContext.recycleSampleResult(previousResult);
+            }
+            recyclableResult = null;
+        }
+    }
+
     private SampleResult doEndTransactionSampler(
                             TransactionSampler transactionSampler, 
                             Sampler parent,
@@ -526,51 +613,21 @@ public class JMeterThread implements Runnable, Interruptible {
         transactionResult.setThreadName(threadName);
         transactionResult.setGroupThreads(threadGroup.getNumberOfThreads());
         transactionResult.setAllThreads(JMeterContextService.getNumberOfThreads());
+        long startDelay = threadContext.getStartDelay();
+        if (startDelay > 0) {
+            transactionResult.setIntendedStartTime(transactionResult.getStartTime() - startDelay);
+        }
 
         // Check assertions for the transaction sample
-        checkAssertions(transactionPack.getAssertions(), transactionResult, threadContext);
+        checkAssertions(transactionPack.getAssertionArray(), transactionResult, threadContext);
         // Notify listeners with the transaction sample result
         if (!(parent instanceof TransactionSampler)) {
-            notifyListeners(transactionPack.getSampleListeners(), transactionResult);
+            notifyListeners(transactionPack.getSampleListenerArray(), transactionResult);
         }
         compiler.done(transactionPack);
         return transactionResult;
     }
 
-    /**
-     * Get the SampleListeners for the sampler. Listeners who receive transaction sample
-     * will not be in this list.
-     *
-     * @param samplePack
-     * @param transactionPack
-     * @param transactionSampler
-     * @return the listeners who should receive the sample result
-     */
-    private List<SampleListener> getSampleListeners(SamplePackage samplePack, SamplePackage transactionPack, TransactionSampler transactionSampler) {
-        List<SampleListener> sampleListeners = samplePack.getSampleListeners();
-        // Do not send subsamples to listeners which receive the transaction sample
-        if(transactionSampler != null) {
-            List<SampleListener> onlySubSamplerListeners = new ArrayList<>();
-            List<SampleListener> transListeners = transactionPack.getSampleListeners();
-            for(SampleListener listener : sampleListeners) {
-                // Check if this instance is present in transaction listener list
-                boolean found = false;
-                for(SampleListener trans : transListeners) {
-                    // Check for the same instance
-                    if(trans == listener) {
-                        found = true;
-                        break;
-                    }
-                }
-                if(!found) {
-                    onlySubSamplerListeners.add(listener);
-                }
-            }
-            sampleListeners = onlySubSamplerListeners;
-        }
-        return sampleListeners;
-    }
-
     /**
      * @param threadContext
      * @return the iteration listener 
@@ -716,7 +773,7 @@ public class JMeterThread implements Runnable, Interruptible {
         log.info("Stop Thread detected by thread: " + threadName);
     }
 
-    private void checkAssertions(List<Assertion> assertions, SampleResult parent, JMeterContext threadContext) {
+    private void checkAssertions(Assertion[] assertions, SampleResult parent, JMeterContext threadContext) {
         for (Assertion assertion : assertions) {
             TestBeanHelper.prepare((TestElement) assertion);
             if (assertion instanceof AbstractScopedAssertion){
@@ -770,14 +827,14 @@ public class JMeterThread implements Runnable, Interruptible {
         result.addAssertionResult(assertionResult);
     }
 
-    private void runPostProcessors(List<PostProcessor> extractors) {
+    private void runPostProcessors(PostProcessor[] extractors) {
         for (PostProcessor ex : extractors) {
             TestBeanHelper.prepare((TestElement) ex);
             ex.process();
         }
     }
 
-    private void runPreProcessors(List<PreProcessor> preProcessors) {
+    private void runPreProcessors(PreProcessor[] preProcessors) {
         for (PreProcessor ex : preProcessors) {
             if (log.isDebugEnabled()) {
                 log.debug("Running preprocessor: " + ((AbstractTestElement) ex).getName());
@@ -787,7 +844,7 @@ public class JMeterThread implements Runnable, Interruptible {
         }
     }
 
-    private void delay(List<Timer> timers) {
+    private void delay(Timer[] timers) {
         long sum = 0;
         for (Timer timer : timers) {
             TestBeanHelper.prepare((TestElement) timer);
@@ -804,17 +861,19 @@ public class JMeterThread implements Runnable, Interruptible {
 
     void notifyTestListeners() {
         threadVars.incIteration();
+        if (testIterationStartListeners.length == 0) {
+            return;
+        }
+        LoopIterationEvent event = new LoopIterationEvent(threadGroupLoopController, threadVars.getIteration());
         for (TestIterationListener listener : testIterationStartListeners) {
+            listener.testIterationStart(event);
             if (listener instanceof TestElement) {
-                listener.testIterationStart(new LoopIterationEvent(threadGroupLoopController, threadVars.getIteration()));
                 ((TestElement) listener).recoverRunningVersion();
-            } else {
-                listener.testIterationStart(new LoopIterationEvent(threadGroupLoopController, threadVars.getIteration()));
             }
         }
     }
 
-    private void notifyListeners(List<SampleListener> listeners, SampleResult result) {
+    private void notifyListeners(SampleListener[] listeners, SampleResult result) {
         SampleEvent event = new SampleEvent(result, threadGroup.getName(), threadVars);
         notifier.notifyListeners(event, listeners);
 
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Creates the JVM threads that run {@link JMeterThread} instances.
+ * <p>
+ * The execution mode is chosen per Thread Group (see {@link AbstractThreadGroup#getThreadMode()})
+ * or globally through the <code>jmeterthread.mode</code> property:
+ * <ul>
+ * <li><code>platform</code> - one platform thread per user (default), optionally
+ * with a reduced stack size (<code>jmeterthread.stack_size</code>)</li>
+ * <li><code>virtual</code> - one virtual thread per user; requires a JVM that provides
+ * <code>Thread.ofVirtual()</code>, falls back to platform threads otherwise</li>
+ * <li>any other value is taken as the name of a class implementing {@link ThreadFactory}
+ * with a public no-arg constructor</li>
+ * </ul>
+ * Whatever the mode, the factory must return an unstarted {@link Thread}, as the Thread Group
+ * relies on it to interrupt, join and check the liveness of its users.
+ * @since 3.1
+ */
+public abstract class JMeterThreadFactory implements ThreadFactory {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    /** One platform thread per user */
+    public static final String MODE_PLATFORM = "platform"; // $NON-NLS-1$
+
+    /** One virtual thread per user */
+    public static final String MODE_VIRTUAL = "virtual"; // $NON-NLS-1$
+
+    /** Default execution mode, used when the Thread Group does not define one */
+    public static final String DEFAULT_MODE =
+            JMeterUtils.getPropDefault("jmeterthread.mode", MODE_PLATFORM); // $NON-NLS-1$
+
+    /** Stack size in bytes for platform threads, 0 means JVM default */
+    private static final long STACK_SIZE =
+            JMeterUtils.getPropDefault("jmeterthread.stack_size", 0L); // $NON-NLS-1$
+
+    private static final JMeterThreadFactory PLATFORM_FACTORY = new PlatformThreadFactory(STACK_SIZE);
+
+    /**
+     * Create a new thread, not yet started, that will run the runnable
+     * @param runnable {@link Runnable} to run, usually a {@link JMeterThread}
+     * @param name thread name
+     * @return unstarted {@link Thread}
+     */
+    public abstract Thread newThread(Runnable runnable, String name);
+
+    /**
+     * @return the name of the execution mode of this factory
+     */
+    public abstract String getMode();
+
+    /** {@inheritDoc} */
+    @Override
+    public Thread newThread(Runnable runnable) {
+        return newThread(runnable, null);
+    }
+
+    /**
+     * Get the factory for an execution mode.
+     * Unknown or unusable modes are reported and replaced by platform threads.
+     *
+     * @param mode execution mode or name of a {@link ThreadFactory} class, may be empty to use the default mode
+     * @return {@link JMeterThreadFactory}, never null
+     */
+    public static JMeterThreadFactory getFactory(String mode) {
+        String actualMode = StringUtils.isBlank(mode) ? DEFAULT_MODE : mode.trim();
+        if (MODE_PLATFORM.equalsIgnoreCase(actualMode)) {
+            return PLATFORM_FACTORY;
+        }
+        if (MODE_VIRTUAL.equalsIgnoreCase(actualMode)) {
+            return VirtualThreadFactoryHolder.INSTANCE;
+        }
+        try {
+            Object factory = Class.forName(actualMode).newInstance();
+            if (factory instanceof ThreadFactory) {
+                return new DelegatingThreadFactory((ThreadFactory) factory, actualMode);
+            }
+            log.error("Class " + actualMode + " does not implement " + ThreadFactory.class.getName()
+                    + ", using " + MODE_PLATFORM + " threads");
+        } catch (Exception e) { // ClassNotFoundException, InstantiationException, IllegalAccessException
+            log.error("Unknown thread mode '" + actualMode + "', using " + MODE_PLATFORM + " threads", e);
+        }
+        return PLATFORM_FACTORY;
+    }
+
+    /**
+     * Creates one platform thread per call
+     */
+    static final class PlatformThreadFactory extends JMeterThreadFactory {
+        private final long stackSize;
+
+        PlatformThreadFactory(long stackSize) {
+            this.stackSize = stackSize;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable, String name) {
+            Thread thread = new Thread(null, runnable,
+                    name != null ? name : "JMeterThread", stackSize); // $NON-NLS-1$
+            thread.setDaemon(false);
+            return thread;
+        }
+
+        @Override
+        public String getMode() {
+            return MODE_PLATFORM;
+        }
+    }
+
+    /**
+     * Creates virtual threads through reflection, so JMeter can still be built and run on
+     * JVMs that predate them.
+     */
+    static final class VirtualThreadFactory extends JMeterThreadFactory {
+        private final Object builder;
+        private final Method unstarted;
+
+        private VirtualThreadFactory(Object builder, Method unstarted) {
+            this.builder = builder;
+            this.unstarted = unstarted;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable, String name) {
+            try {
+                Thread thread = (Thread) unstarted.invoke(builder, runnable);
+                if (name != null) {
+                    thread.setName(name);
+                }
+                return thread;
+            } catch (Exception e) { // IllegalAccessException, InvocationTargetException
+                throw new IllegalStateException("Could not create virtual thread " + name, e);
+            }
+        }
+
+        @Override
+        public String getMode() {
+            return MODE_VIRTUAL;
+        }
+    }
+
+    /**
+     * Lazily checks whether the running JVM supports virtual threads
+     */
+    private static final class VirtualThreadFactoryHolder {
+        private static final JMeterThreadFactory INSTANCE = create();
+
+        private static JMeterThreadFactory create() {
+            try {
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null); // $NON-NLS-1$
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder"); // $NON-NLS-1$
+                Method unstarted = builderClass.getMethod("unstarted", Runnable.class); // $NON-NLS-1$
+                return new VirtualThreadFactory(builder, unstarted);
+            } catch (Exception e) { // NoSuchMethodException, ClassNotFoundException, ...
+                log.warn("Virtual threads are not available in Java " + System.getProperty("java.version") // $NON-NLS-1$
+                        + ", using " + MODE_PLATFORM + " threads");
+                return PLATFORM_FACTORY;
+            }
+        }
+    }
+
+    /**
+     * Wraps a user supplied {@link ThreadFactory}
+     */
+    static final class DelegatingThreadFactory extends JMeterThreadFactory {
+        private final ThreadFactory delegate;
+        private final String mode;
+
+        DelegatingThreadFactory(ThreadFactory delegate, String mode) {
+            this.delegate = delegate;
+            this.mode = mode;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable, String name) {
+            Thread thread = delegate.newThread(runnable);
+            if (name != null) {
+                thread.setName(name);
+            }
+            return thread;
+        }
+
+        @Override
+        public String getMode() {
+            return mode;
+        }
+    }
+}
@@ -18,6 +18,7 @@
 
 package org.apache.jmeter.threads;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -30,10 +31,30 @@ import org.apache.jmeter.util.JMeterUtils;
 /**
  * Class which defines JMeter variables.
  * These are similar to properties, but they are local to a single thread.
+ * <p>
+ * All the variables are found by name in a map. Those whose name has a slot
+ * in the {@link VariableName} symbol table have their value stored in an
+ * array indexed by that slot, and a marker of the slot in the map, so access
+ * through a {@link VariableName} avoids hashing the name while access by name
+ * costs a single lookup.
  */
 public class JMeterVariables {
+    // Stands for a variable explicitly set to null in valuesBySlot
+    private static final Object NULL_VALUE = new Object();
+
+    private static final Object[] EMPTY = new Object[0];
+
+    // Values of the variables without slot, or with a slot given after knownSlots, Slot of the others
     private final Map<String, Object> variables = new HashMap<>();
 
+    // Table giving the slots, the one of the test run in which the variables are created
+    private final VariableName.SymbolTable symbols = VariableName.getSymbolTable();
+
+    // Values of the variables whose slot is below knownSlots, null if undefined
+    private Object[] valuesBySlot = EMPTY;
+
+    private int knownSlots = 0;
+
     private int iteration = 0;
 
     // Property names to preload into JMeter variables:
@@ -52,7 +73,7 @@ public class JMeterVariables {
         for (String property : PRE_LOAD) {
             String value = JMeterUtils.getProperty(property);
             if (value != null) {
-                variables.put(property, value);
+                put(property, value);
             }
         }
     }
@@ -73,9 +94,110 @@ public class JMeterVariables {
     @Deprecated
     public void initialize() {
         variables.clear();
+        Arrays.fill(valuesBySlot, null);
         preloadVariables();
     }
 
+    /**
+     * Move to their slot the variables whose name was given a slot since the last call
+     */
+    private void updateSlots() {
+        int slotCount = symbols.getSlotCount();
+        if (slotCount != knownSlots) {
+            int previous = knownSlots;
+            knownSlots = slotCount;
+            for (int slot = previous; slot < slotCount && !variables.isEmpty(); slot++) {
+                String name = symbols.getSlotName(slot);
+                if (variables.containsKey(name)) {
+                    setSlot(slot, variables.put(name, new Slot(slot)));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param slot slot of the variable, may be -1
+     * @return true if the variable is stored in valuesBySlot
+     */
+    private boolean inSlot(int slot) {
+        return slot >= 0 && slot < knownSlots;
+    }
+
+    private Object getSlot(int slot) {
+        Object value = slot < valuesBySlot.length ? valuesBySlot[slot] : null;
+        return value == NULL_VALUE ? null : value;
+    }
+
+    private void setSlot(int slot, Object value) {
+        if (slot >= valuesBySlot.length) {
+            valuesBySlot = Arrays.copyOf(valuesBySlot, Math.min(Math.max(slot + 1, valuesBySlot.length * 2), knownSlots));
+        }
+        valuesBySlot[slot] = value == null ? NULL_VALUE : value;
+    }
+
+    private Object removeSlot(int slot) {
+        Object value = getSlot(slot);
+        if (slot < valuesBySlot.length) {
+            valuesBySlot[slot] = null;
+        }
+        return value;
+    }
+
+    private Object getValue(String key) {
+        Object value = variables.get(key);
+        return value instanceof Slot ? getSlot(((Slot) value).index) : value;
+    }
+
+    private void putValue(String key, Object value) {
+        Object previous = variables.put(key, value);
+        if (previous instanceof Slot) {
+            variables.put(key, previous);
+            setSlot(((Slot) previous).index, value);
+        } else if (previous == null) {
+            // New variable, unless it was set to null: its name may have a slot
+            updateSlots();
+            int slot = symbols.slotOf(key);
+            if (inSlot(slot)) {
+                variables.put(key, new Slot(slot));
+                setSlot(slot, value);
+            }
+        }
+    }
+
+    private Object removeValue(String key) {
+        Object value = variables.remove(key);
+        return value instanceof Slot ? removeSlot(((Slot) value).index) : value;
+    }
+
+    private Object getValue(VariableName name) {
+        updateSlots();
+        int slot = name.getSlot(symbols);
+        return inSlot(slot) ? getSlot(slot) : variables.get(name.getName());
+    }
+
+    private void putValue(VariableName name, Object value) {
+        updateSlots();
+        int slot = name.getSlot(symbols);
+        if (inSlot(slot)) {
+            if (slot >= valuesBySlot.length || valuesBySlot[slot] == null) {
+                variables.put(name.getName(), new Slot(slot));
+            }
+            setSlot(slot, value);
+        } else {
+            variables.put(name.getName(), value);
+        }
+    }
+
+    private Object removeValue(VariableName name) {
+        updateSlots();
+        int slot = name.getSlot(symbols);
+        if (inSlot(slot)) {
+            variables.remove(name.getName());
+            return removeSlot(slot);
+        }
+        return variables.remove(name.getName());
+    }
+
     /**
      * Remove a variable.
      * 
@@ -84,7 +206,19 @@ public class JMeterVariables {
      * @return the variable value, or {@code null} if there was no such variable
      */
     public Object remove(String key) {
-        return variables.remove(key);
+        return removeValue(key);
+    }
+
+    /**
+     * Remove a variable.
+     *
+     * @param name the variable name to remove
+     *
+     * @return the variable value, or {@code null} if there was no such variable
+     * @since 3.1
+     */
+    public Object remove(VariableName name) {
+        return removeValue(name);
     }
 
     /**
@@ -94,7 +228,18 @@ public class JMeterVariables {
      * @param value the variable value
      */
     public void put(String key, String value) {
-        variables.put(key, value);
+        putValue(key, value);
+    }
+
+    /**
+     * Creates or updates a variable with a String value.
+     *
+     * @param name the variable name
+     * @param value the variable value
+     * @since 3.1
+     */
+    public void put(VariableName name, String value) {
+        putValue(name, value);
     }
 
     /**
@@ -104,15 +249,28 @@ public class JMeterVariables {
      * @param value the variable value
      */
     public void putObject(String key, Object value) {
-        variables.put(key, value);
+        putValue(key, value);
+    }
+
+    /**
+     * Creates or updates a variable with a value that does not have to be a String.
+     *
+     * @param name the variable name
+     * @param value the variable value
+     * @since 3.1
+     */
+    public void putObject(VariableName name, Object value) {
+        putValue(name, value);
     }
 
     public void putAll(Map<String, ?> vars) {
-        variables.putAll(vars);
+        for (Map.Entry<String, ?> entry : vars.entrySet()) {
+            putObject(entry.getKey(), entry.getValue());
+        }
     }
 
     public void putAll(JMeterVariables vars) {
-        putAll(vars.variables);
+        putAll(vars.asMap());
     }
 
     /**
@@ -122,7 +280,18 @@ public class JMeterVariables {
      * @return the value of the variable, or {@code null} if it does not exist
      */
     public String get(String key) {
-        return (String) variables.get(key);
+        return (String) getValue(key);
+    }
+
+    /**
+     * Gets the value of a variable, coerced to a String.
+     *
+     * @param name the name of the variable
+     * @return the value of the variable, or {@code null} if it does not exist
+     * @since 3.1
+     */
+    public String get(VariableName name) {
+        return (String) getValue(name);
     }
 
     /**
@@ -132,20 +301,57 @@ public class JMeterVariables {
      * @return the value of the variable, or {@code null} if it does not exist
      */
     public Object getObject(String key) {
-        return variables.get(key);
+        return getValue(key);
+    }
+
+    /**
+     * Gets the value of a variable (not converted to String).
+     *
+     * @param name the name of the variable
+     * @return the value of the variable, or {@code null} if it does not exist
+     * @since 3.1
+     */
+    public Object getObject(VariableName name) {
+        return getValue(name);
+    }
+
+    /**
+     * @return a copy of all the variables
+     */
+    private Map<String, Object> asMap() {
+        Map<String, Object> all = new HashMap<>(variables);
+        for (Map.Entry<String, Object> entry : all.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Slot) {
+                entry.setValue(getSlot(((Slot) value).index));
+            }
+        }
+        return all;
     }
 
     /**
      * Gets a read-only Iterator over the variables.
+     * It iterates over a copy of the variables, later changes are not reflected.
      * 
      * @return the iterator
      */
     public Iterator<Entry<String, Object>> getIterator(){
-        return Collections.unmodifiableMap(variables).entrySet().iterator() ;
+        return entrySet().iterator() ;
     }
 
     // Used by DebugSampler
     public Set<Entry<String, Object>> entrySet(){
-        return Collections.unmodifiableMap(variables).entrySet();
+        return Collections.unmodifiableMap(asMap()).entrySet();
+    }
+
+    /**
+     * Marks in the map a variable whose value is stored in valuesBySlot
+     */
+    private static final class Slot {
+        private final int index;
+
+        Slot(int index) {
+            this.index = index;
+        }
     }
 }
@@ -62,13 +62,31 @@ public class ListenerNotifier {
      */
     public void notifyListeners(SampleEvent res, List<SampleListener> listeners) {
         for (SampleListener sampleListener : listeners) {
-            try {
-                TestBeanHelper.prepare((TestElement) sampleListener);
-                sampleListener.sampleOccurred(res);
-            } catch (RuntimeException e) {
-                log.error("Detected problem in Listener: ", e);
-                log.info("Continuing to process further listeners");
-            }
+            notifyListener(res, sampleListener);
+        }
+    }
+
+    /**
+     * Notify an array of listeners that a sample has occurred.
+     *
+     * @param res
+     *            the sample event that has occurred. Must be non-null.
+     * @param listeners
+     *            the listeners which should be notified. Must not be null.
+     */
+    public void notifyListeners(SampleEvent res, SampleListener[] listeners) {
+        for (SampleListener sampleListener : listeners) {
+            notifyListener(res, sampleListener);
+        }
+    }
+
+    private static void notifyListener(SampleEvent res, SampleListener sampleListener) {
+        try {
+            TestBeanHelper.prepare((TestElement) sampleListener);
+            sampleListener.sampleOccurred(res);
+        } catch (RuntimeException e) {
+            log.error("Detected problem in Listener: ", e);
+            log.info("Continuing to process further listeners");
         }
     }
 
@@ -18,14 +18,19 @@
 
 package org.apache.jmeter.threads;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.jmeter.assertions.Assertion;
 import org.apache.jmeter.config.ConfigTestElement;
 import org.apache.jmeter.control.Controller;
 import org.apache.jmeter.processor.PostProcessor;
 import org.apache.jmeter.processor.PreProcessor;
+import org.apache.jmeter.samplers.ResponseDataPrefixConsumer;
 import org.apache.jmeter.samplers.SampleListener;
+import org.apache.jmeter.samplers.SampleResultConsumer;
 import org.apache.jmeter.samplers.Sampler;
 import org.apache.jmeter.testelement.TestElement;
 import org.apache.jmeter.timers.Timer;
@@ -42,6 +47,9 @@ import org.apache.jmeter.timers.Timer;
  *  <li>ConfigTestElement(s)</li>
  *  <li>Controller(s)</li>
  * </ul>
+ * The lists are compiled into arrays when the package is created by {@link TestCompiler},
+ * so that running the sampler does not allocate nor walk lists; adding elements
+ * afterwards recompiles them on next use.
  */
 public class SamplePackage {
 
@@ -61,6 +69,39 @@ public class SamplePackage {
 
     private Sampler sampler;
 
+    // Compiled views of the lists, null when they must be rebuilt
+    private SampleListener[] sampleListenerArray;
+
+    private Timer[] timerArray;
+
+    private Assertion[] assertionArray;
+
+    private PostProcessor[] postProcessorArray;
+
+    private PreProcessor[] preProcessorArray;
+
+    private Controller[] controllerArray;
+
+    /** Distinct elements whose running version is managed by this package, sampler excluded */
+    private TestElement[] runningElements;
+
+    /** Configs merged into the sampler, null to merge all configs */
+    private ConfigTestElement[] mergedConfigs;
+
+    // Single entry cache for getSampleListenersOutside, keyed by the listeners of the transaction
+    private SampleListener[] lastTransactionListeners;
+
+    private SampleListener[] lastListenersOutside;
+
+    // Use of the results by the elements of the package, see compileConsumers
+    private boolean consumersCompiled;
+
+    private boolean responseDataNeeded;
+
+    private boolean sampleResultRetained;
+
+    private int responseDataMaxSize;
+
     public SamplePackage(
             List<ConfigTestElement> configs,
             List<SampleListener> listeners,
@@ -86,45 +127,162 @@ public class SamplePackage {
      * @see TestElement#setRunningVersion(boolean)
      */
     public void setRunningVersion(boolean running) {
-        setRunningVersion(configs, running);
-        setRunningVersion(sampleListeners, running);
-        setRunningVersion(assertions, running);
-        setRunningVersion(timers, running);
-        setRunningVersion(postProcessors, running);
-        setRunningVersion(preProcessors, running);
-        setRunningVersion(controllers, running);
+        for (TestElement te : getRunningElements()) {
+            te.setRunningVersion(running);
+        }
         sampler.setRunningVersion(running);
     }
 
-    private void setRunningVersion(List<?> list, boolean running) {
-        @SuppressWarnings("unchecked") // all implementations extend TestElement
-        List<TestElement> telist = (List<TestElement>)list;
-        for (TestElement te : telist) {
-            te.setRunningVersion(running);
+    /**
+     * Recover each member of SamplePackage to the state before the call of setRunningVersion(true)
+     * @see TestElement#recoverRunningVersion()
+     */
+    public void recoverRunningVersion() {
+        for (TestElement te : getRunningElements()) {
+            te.recoverRunningVersion();
         }
+        sampler.recoverRunningVersion();
     }
 
-    private void recoverRunningVersion(List<?> list) {
-        @SuppressWarnings("unchecked") // All implementations extend TestElement
-        List<TestElement> telist = (List<TestElement>)list;
-        for (TestElement te : telist) {
-            te.recoverRunningVersion();
+    private TestElement[] getRunningElements() {
+        TestElement[] elements = runningElements;
+        if (elements == null) {
+            // An element may be in several lists, e.g. a Timer that is also a SampleListener
+            Map<TestElement, Boolean> distinct = new IdentityHashMap<>();
+            List<TestElement> all = new ArrayList<>();
+            addRunningElements(all, distinct, configs);
+            addRunningElements(all, distinct, sampleListeners);
+            addRunningElements(all, distinct, assertions);
+            addRunningElements(all, distinct, timers);
+            addRunningElements(all, distinct, postProcessors);
+            addRunningElements(all, distinct, preProcessors);
+            addRunningElements(all, distinct, controllers);
+            elements = all.toArray(new TestElement[all.size()]);
+            runningElements = elements;
+        }
+        return elements;
+    }
+
+    private static void addRunningElements(List<TestElement> all, Map<TestElement, Boolean> distinct, List<?> list) {
+        for (Object item : list) {
+            TestElement te = (TestElement) item; // all implementations extend TestElement
+            if (distinct.put(te, Boolean.TRUE) == null) {
+                all.add(te);
+            }
         }
     }
 
     /**
-     * Recover each member of SamplePackage to the state before the call of setRunningVersion(true)
-     * @see TestElement#recoverRunningVersion()
+     * Build the arrays used while running the sampler
      */
-    public void recoverRunningVersion() {
-        recoverRunningVersion(configs);
-        recoverRunningVersion(sampleListeners);
-        recoverRunningVersion(assertions);
-        recoverRunningVersion(timers);
-        recoverRunningVersion(postProcessors);
-        recoverRunningVersion(preProcessors);
-        recoverRunningVersion(controllers);
-        sampler.recoverRunningVersion();
+    void compile() {
+        getSampleListenerArray();
+        getTimerArray();
+        getAssertionArray();
+        getPostProcessorArray();
+        getPreProcessorArray();
+        getControllerArray();
+        getRunningElements();
+    }
+
+    /**
+     * @return <code>true</code> if an assertion, post-processor or sample listener
+     *         of the package needs the response data of the sampler
+     * @see SampleResultConsumer
+     */
+    public boolean isResponseDataNeeded() {
+        compileConsumers();
+        return responseDataNeeded;
+    }
+
+    /**
+     * Only meaningful if {@link #isResponseDataNeeded()} returns <code>true</code>.
+     * @return the number of leading bytes of the response data needed by the assertions,
+     *         post-processors and sample listeners of the package, 0 if all of it is needed
+     * @see ResponseDataPrefixConsumer
+     */
+    public int getResponseDataMaxSize() {
+        compileConsumers();
+        return responseDataMaxSize;
+    }
+
+    /**
+     * @return <code>true</code> if an assertion, post-processor or sample listener
+     *         of the package may reference the result of the sampler once it has processed it
+     * @see SampleResultConsumer
+     */
+    public boolean isSampleResultRetained() {
+        compileConsumers();
+        return sampleResultRetained;
+    }
+
+    /*
+     * Not part of compile(), as listeners only know how they use the results
+     * once the test has started
+     */
+    private void compileConsumers() {
+        if (consumersCompiled) {
+            return;
+        }
+        responseDataNeeded = false;
+        sampleResultRetained = false;
+        responseDataMaxSize = -1;
+        for (Assertion assertion : assertions) {
+            addConsumer(assertion, true);
+        }
+        for (PostProcessor postProcessor : postProcessors) {
+            addConsumer(postProcessor, true);
+        }
+        for (SampleListener listener : sampleListeners) {
+            addConsumer(listener, false);
+        }
+        if (responseDataMaxSize < 0) {
+            responseDataMaxSize = 0;
+        }
+        consumersCompiled = true;
+    }
+
+    /*
+     * While compiling, responseDataMaxSize is -1 until an element needs the response data
+     */
+    private void addConsumer(Object element, boolean needsByDefault) {
+        sampleResultRetained |= retainsSampleResults(element);
+        if (!needsResponseData(element, needsByDefault)) {
+            return;
+        }
+        responseDataNeeded = true;
+        int maxSize = element instanceof ResponseDataPrefixConsumer
+                ? ((ResponseDataPrefixConsumer) element).getResponseDataMaxSize()
+                : 0;
+        responseDataMaxSize = combineResponseDataMaxSizes(responseDataMaxSize, maxSize);
+    }
+
+    /**
+     * @param maxSize1 number of leading bytes of the response data needed by a first element,
+     *            0 or less for all of it, -1 if not needed
+     * @param maxSize2 number of leading bytes of the response data needed by a second element,
+     *            0 or less for all of it
+     * @return the number of leading bytes needed by both elements, 0 for all of it
+     */
+    static int combineResponseDataMaxSizes(int maxSize1, int maxSize2) {
+        if (maxSize1 < 0) {
+            return Math.max(maxSize2, 0);
+        }
+        if (maxSize1 == 0 || maxSize2 <= 0) {
+            return 0;
+        }
+        return Math.max(maxSize1, maxSize2);
+    }
+
+    private static boolean needsResponseData(Object element, boolean byDefault) {
+        return element instanceof SampleResultConsumer
+                ? ((SampleResultConsumer) element).needsResponseData()
+                : byDefault;
+    }
+
+    private static boolean retainsSampleResults(Object element) {
+        return !(element instanceof SampleResultConsumer)
+                || ((SampleResultConsumer) element).retainsSampleResults();
     }
 
     /**
@@ -140,6 +298,10 @@ public class SamplePackage {
      */
     public void addSampleListener(SampleListener listener) {
         sampleListeners.add(listener);
+        sampleListenerArray = null;
+        consumersCompiled = false;
+        lastListenersOutside = null;
+        runningElements = null;
     }
 
     /**
@@ -156,6 +318,9 @@ public class SamplePackage {
      */
     public void addPostProcessor(PostProcessor ex) {
         postProcessors.add(ex);
+        postProcessorArray = null;
+        consumersCompiled = false;
+        runningElements = null;
     }
 
     /**
@@ -164,6 +329,8 @@ public class SamplePackage {
      */
     public void addPreProcessor(PreProcessor pre) {
         preProcessors.add(pre);
+        preProcessorArray = null;
+        runningElements = null;
     }
 
     /**
@@ -172,6 +339,8 @@ public class SamplePackage {
      */
     public void addTimer(Timer timer) {
         timers.add(timer);
+        timerArray = null;
+        runningElements = null;
     }
 
     /**
@@ -180,6 +349,9 @@ public class SamplePackage {
      */
     public void addAssertion(Assertion asser) {
         assertions.add(asser);
+        assertionArray = null;
+        consumersCompiled = false;
+        runningElements = null;
     }
 
     /**
@@ -227,4 +399,121 @@ public class SamplePackage {
         return configs;
     }
 
+    /**
+     * @return the {@link SampleListener}s as an array, to iterate without allocation
+     */
+    SampleListener[] getSampleListenerArray() {
+        SampleListener[] array = sampleListenerArray;
+        if (array == null) {
+            array = sampleListeners.toArray(new SampleListener[sampleListeners.size()]);
+            sampleListenerArray = array;
+        }
+        return array;
+    }
+
+    /**
+     * @return the {@link Timer}s as an array, to iterate without allocation
+     */
+    Timer[] getTimerArray() {
+        Timer[] array = timerArray;
+        if (array == null) {
+            array = timers.toArray(new Timer[timers.size()]);
+            timerArray = array;
+        }
+        return array;
+    }
+
+    /**
+     * @return the {@link Assertion}s as an array, to iterate without allocation
+     */
+    Assertion[] getAssertionArray() {
+        Assertion[] array = assertionArray;
+        if (array == null) {
+            array = assertions.toArray(new Assertion[assertions.size()]);
+            assertionArray = array;
+        }
+        return array;
+    }
+
+    /**
+     * @return the {@link PostProcessor}s as an array, to iterate without allocation
+     */
+    PostProcessor[] getPostProcessorArray() {
+        PostProcessor[] array = postProcessorArray;
+        if (array == null) {
+            array = postProcessors.toArray(new PostProcessor[postProcessors.size()]);
+            postProcessorArray = array;
+        }
+        return array;
+    }
+
+    /**
+     * @return the {@link PreProcessor}s as an array, to iterate without allocation
+     */
+    PreProcessor[] getPreProcessorArray() {
+        PreProcessor[] array = preProcessorArray;
+        if (array == null) {
+            array = preProcessors.toArray(new PreProcessor[preProcessors.size()]);
+            preProcessorArray = array;
+        }
+        return array;
+    }
+
+    /**
+     * @return the {@link Controller}s enclosing the sampler, from the nearest to the Thread Group
+     */
+    Controller[] getControllerArray() {
+        Controller[] array = controllerArray;
+        if (array == null) {
+            array = controllers.toArray(new Controller[controllers.size()]);
+            controllerArray = array;
+        }
+        return array;
+    }
+
+    /**
+     * @return the configs that apply to the sampler, see {@link org.apache.jmeter.engine.util.ConfigMergabilityIndicator}
+     */
+    ConfigTestElement[] getMergedConfigs() {
+        return mergedConfigs;
+    }
+
+    /**
+     * @param mergedConfigs the configs that apply to the sampler of this package
+     */
+    void setMergedConfigs(ConfigTestElement[] mergedConfigs) {
+        this.mergedConfigs = mergedConfigs;
+    }
+
+    /**
+     * Get the listeners of this package which are not listeners of a transaction,
+     * as the transaction sample is sent to the latter instead of its sub-samples.
+     * The result is cached for the last transaction, which is always the same for a given sampler.
+     * @param transactionPack {@link SamplePackage} of the enclosing transaction
+     * @return the {@link SampleListener}s which only receive the sub-samples
+     */
+    SampleListener[] getSampleListenersOutside(SamplePackage transactionPack) {
+        SampleListener[] transListeners = transactionPack.getSampleListenerArray();
+        if (transListeners == lastTransactionListeners && lastListenersOutside != null) {
+            return lastListenersOutside;
+        }
+        List<SampleListener> onlySubSamplerListeners = new ArrayList<>();
+        for (SampleListener listener : getSampleListenerArray()) {
+            // Check if this instance is present in transaction listener list
+            boolean found = false;
+            for (SampleListener trans : transListeners) {
+                // Check for the same instance
+                if (trans == listener) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                onlySubSamplerListeners.add(listener);
+            }
+        }
+        lastListenersOutside = onlySubSamplerListeners.toArray(new SampleListener[onlySubSamplerListeners.size()]);
+        lastTransactionListeners = transListeners;
+        return lastListenersOutside;
+    }
 }
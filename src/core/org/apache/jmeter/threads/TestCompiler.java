@@ -18,8 +18,9 @@
 
 package org.apache.jmeter.threads;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
@@ -52,6 +53,9 @@ import org.apache.log.Logger;
  *  <li>A map with key Sampler and as value the associated SamplePackage</li>
  *  <li>A map with key TransactionController and as value the associated SamplePackage</li>
  * </ul>
+ * This is done once when the thread starts: each SamplePackage is compiled with the
+ * configs that apply to its sampler and the controllers up to the Thread Group already resolved,
+ * so that running a sampler only needs an identity lookup.
  */
 public class TestCompiler implements HashTreeTraverser {
 
@@ -74,10 +78,11 @@ public class TestCompiler implements HashTreeTraverser {
 
     private final LinkedList<TestElement> stack = new LinkedList<>();
 
-    private final Map<Sampler, SamplePackage> samplerConfigMap = new HashMap<>();
+    // Identity maps, as TestElement#equals compares all the properties
+    private final Map<Sampler, SamplePackage> samplerConfigMap = new IdentityHashMap<>();
 
     private final Map<TransactionController, SamplePackage> transactionControllerConfigMap =
-            new HashMap<>();
+            new IdentityHashMap<>();
 
     private final HashTree testTree;
 
@@ -104,10 +109,23 @@ public class TestCompiler implements HashTreeTraverser {
     public SamplePackage configureSampler(Sampler sampler) {
         SamplePackage pack = samplerConfigMap.get(sampler);
         pack.setSampler(sampler);
-        configureWithConfigElements(sampler, pack.getConfigs());
+        sampler.clearTestElementChildren();
+        for (ConfigTestElement config : pack.getMergedConfigs()) {
+            sampler.addTestElement(config);
+        }
         return pack;
     }
 
+    /**
+     * Get the controllers enclosing a sampler, as compiled when the test tree was traversed
+     * @param sampler {@link Sampler} of the test tree
+     * @return the controllers from the nearest to the Thread Group, null if the sampler is unknown
+     */
+    Controller[] getControllersToRoot(Sampler sampler) {
+        SamplePackage pack = samplerConfigMap.get(sampler);
+        return pack != null ? pack.getControllerArray() : null;
+    }
+
     /**
      * Configures Transaction Sampler from SamplePackage extracted from Test plan and returns it
      * @param transactionSampler {@link TransactionSampler}
@@ -235,6 +253,8 @@ public class TestCompiler implements HashTreeTraverser {
         SamplePackage pack = new SamplePackage(configs, listeners, timers, assertions,
                 posts, pres, controllers);
         pack.setSampler(sam);
+        pack.setMergedConfigs(getMergedConfigs(sam, configs));
+        pack.compile();
         pack.setRunningVersion(true);
         samplerConfigMap.put(sam, pack);
     }
@@ -262,6 +282,7 @@ public class TestCompiler implements HashTreeTraverser {
         SamplePackage pack = new SamplePackage(configs, listeners, timers, assertions,
                 posts, pres, controllers);
         pack.setSampler(new TransactionSampler(tc, tc.getName()));
+        pack.compile();
         pack.setRunningVersion(true);
         transactionControllerConfigMap.put(tc, pack);
     }
@@ -303,20 +324,29 @@ public class TestCompiler implements HashTreeTraverser {
         }
     }
 
-    private void configureWithConfigElements(Sampler sam, List<ConfigTestElement> configs) {
-        sam.clearTestElementChildren();
-        for (ConfigTestElement config  : configs) {
-            if (!(config instanceof NoConfigMerge)) 
-            {
-                if(sam instanceof ConfigMergabilityIndicator) {
-                    if(((ConfigMergabilityIndicator)sam).applies(config)) {
-                        sam.addTestElement(config);
-                    }
-                } else {
-                    // Backward compatibility
-                    sam.addTestElement(config);
-                }
+    /**
+     * @param sam {@link Sampler}
+     * @param configs all the configs in scope of the sampler
+     * @return the configs to merge into the sampler
+     */
+    private static ConfigTestElement[] getMergedConfigs(Sampler sam, List<ConfigTestElement> configs) {
+        List<ConfigTestElement> merged = new ArrayList<>(configs.size());
+        for (ConfigTestElement config : configs) {
+            if (applies(sam, config)) {
+                merged.add(config);
             }
         }
+        return merged.toArray(new ConfigTestElement[merged.size()]);
+    }
+
+    private static boolean applies(Sampler sam, ConfigTestElement config) {
+        if (config instanceof NoConfigMerge) {
+            return false;
+        }
+        if (sam instanceof ConfigMergabilityIndicator) {
+            return ((ConfigMergabilityIndicator) sam).applies(config);
+        }
+        // Backward compatibility
+        return true;
     }
 }
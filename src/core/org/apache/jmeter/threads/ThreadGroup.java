@@ -76,6 +76,8 @@ public class ThreadGroup extends AbstractThreadGroup {
 
     private transient Thread threadStarter;
 
+    private transient JMeterThreadFactory threadFactory;
+
     // List of active threads
     private final Map<JMeterThread, Thread> allThreads = new ConcurrentHashMap<>();
 
@@ -272,11 +274,13 @@ public class ThreadGroup extends AbstractThreadGroup {
         float perThreadDelayInMillis = ((float) (rampUpPeriodInSeconds * 1000) / (float) getNumThreads());
 
         delayedStartup = isDelayedStartup(); // Fetch once; needs to stay constant
+        threadFactory = getThreadFactory();
         log.info("Starting thread group number " + groupCount
                 + " threads " + numThreads
                 + " ramp-up " + rampUpPeriodInSeconds
                 + " perThread " + perThreadDelayInMillis
-                + " delayedStart=" + delayedStartup);
+                + " delayedStart=" + delayedStartup
+                + " threadMode=" + threadFactory.getMode());
         if (delayedStartup) {
             threadStarter = new Thread(new ThreadStarter(groupCount, notifier, threadGroupTree, engine), getName()+"-ThreadStarter");
             threadStarter.setDaemon(true);
@@ -289,7 +293,7 @@ public class ThreadGroup extends AbstractThreadGroup {
                 JMeterThread jmThread = makeThread(groupCount, notifier, threadGroupTree, engine, i, context);
                 scheduleThread(jmThread, now); // set start and end time
                 jmThread.setInitialDelay((int)(i * perThreadDelayInMillis));
-                Thread newThread = new Thread(jmThread, jmThread.getThreadName());
+                Thread newThread = threadFactory.newThread(jmThread, jmThread.getThreadName());
                 registerStartedThread(jmThread, newThread);
                 newThread.start();
             }
@@ -572,8 +576,8 @@ public class ThreadGroup extends AbstractThreadGroup {
                     jmThread.setScheduled(true);
                     jmThread.setEndTime(endtime);
                 }
-                Thread newThread = new Thread(jmThread, jmThread.getThreadName());
-                newThread.setDaemon(false); // ThreadStarter is daemon, but we don't want sampler threads to be so too
+                // N.B. ThreadStarter is daemon, but platform sampler threads are not (virtual threads are always daemon)
+                Thread newThread = threadFactory.newThread(jmThread, jmThread.getThreadName());
                 registerStartedThread(jmThread, newThread);
                 newThread.start();
             }
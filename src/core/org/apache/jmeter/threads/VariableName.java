@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.jmeter.util.JMeterUtils;
+
+/**
+ * Name of a JMeter variable, bound to the slot in which {@link JMeterVariables}
+ * stores its value.
+ * <p>
+ * Slots come from a symbol table shared by all threads, and are given to
+ * names when they are first used to create a VariableName, typically while
+ * the test plan is compiled. Elements which create their VariableNames once
+ * and reuse them read and write variables by index instead of hashing the name.
+ * Once the table is full (property <code>jmeter.variables.max_slots</code>),
+ * new names get no slot and are looked up by name.
+ * <p>
+ * Each test run starts with an empty table, so that the names of previous
+ * runs don't fill it; names created before are then looked up by name.
+ * @since 3.1
+ */
+public final class VariableName {
+
+    private static final int MAX_SLOTS =
+            JMeterUtils.getPropDefault("jmeter.variables.max_slots", 1000); // $NON-NLS-1$
+
+    private static volatile SymbolTable symbolTable = new SymbolTable();
+
+    private final String name;
+
+    // Table in which the slot was looked up
+    private final SymbolTable table;
+
+    private final int slot;
+
+    /**
+     * Create the name, giving it a slot if it has none yet and the table is not full
+     * @param name the variable name
+     */
+    public VariableName(String name) {
+        this(name, true);
+    }
+
+    /**
+     * @param name the variable name
+     * @param register false to not give a slot to a name which has none
+     */
+    public VariableName(String name, boolean register) {
+        if (name == null) {
+            throw new IllegalArgumentException("Name cannot be null");
+        }
+        this.name = name;
+        this.table = symbolTable;
+        this.slot = register ? table.register(name) : table.slotOf(name);
+    }
+
+    /**
+     * @return the variable name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the slot of the variable in the current table, -1 if it has none
+     */
+    int getSlot() {
+        return getSlot(symbolTable);
+    }
+
+    /**
+     * @param in the table of the variables
+     * @return the slot of the variable in the table, -1 if it has none
+     */
+    int getSlot(SymbolTable in) {
+        // The name may have been given a slot since it was created
+        return in == table && slot >= 0 ? slot : in.slotOf(name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * @param name the variable name
+     * @return the slot of the name in the current table, -1 if it has none
+     */
+    static int slotOf(String name) {
+        return symbolTable.slotOf(name);
+    }
+
+    /**
+     * @return the table in which the names get their slot
+     */
+    static SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    /**
+     * Start a new table, called when a test run starts.
+     * The variables created before keep using the previous one.
+     */
+    static void resetSymbolTable() {
+        symbolTable = new SymbolTable();
+    }
+
+    /**
+     * Slots given to the variable names
+     */
+    static final class SymbolTable {
+
+        private final ConcurrentMap<String, Integer> slots = new ConcurrentHashMap<>();
+
+        private final Object lock = new Object();
+
+        // Written before slotCount, so that readers of slotCount see the names
+        private volatile String[] slotNames = new String[64];
+
+        private volatile int slotCount = 0;
+
+        private int register(String name) {
+            Integer slot = slots.get(name);
+            if (slot != null) {
+                return slot.intValue();
+            }
+            synchronized (lock) {
+                slot = slots.get(name);
+                if (slot != null) {
+                    return slot.intValue();
+                }
+                int newSlot = slotCount;
+                if (newSlot >= MAX_SLOTS) {
+                    return -1;
+                }
+                String[] names = slotNames;
+                if (newSlot == names.length) {
+                    names = Arrays.copyOf(names, Math.min(names.length * 2, MAX_SLOTS));
+                }
+                names[newSlot] = name;
+                slotNames = names;
+                slots.put(name, Integer.valueOf(newSlot));
+                slotCount = newSlot + 1;
+                return newSlot;
+            }
+        }
+
+        /**
+         * @param name the variable name
+         * @return the slot of the name, -1 if it has none
+         */
+        int slotOf(String name) {
+            Integer slot = slots.get(name);
+            return slot == null ? -1 : slot.intValue();
+        }
+
+        /**
+         * @return number of slots given so far; slots below this number have their name set
+         */
+        int getSlotCount() {
+            return slotCount;
+        }
+
+        /**
+         * @param slot a slot below {@link #getSlotCount()}
+         * @return the name bound to the slot
+         */
+        String getSlotName(int slot) {
+            return slotNames[slot];
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads.gui;
+
+import java.awt.BorderLayout;
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
+
+import javax.swing.BorderFactory;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+
+import org.apache.jmeter.control.LoopController;
+import org.apache.jmeter.gui.util.VerticalPanel;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.property.BooleanProperty;
+import org.apache.jmeter.threads.AbstractThreadGroup;
+import org.apache.jmeter.threads.ArrivalRateThreadGroup;
+import org.apache.jmeter.util.JMeterUtils;
+
+/**
+ * GUI of the {@link ArrivalRateThreadGroup}
+ * @since 3.1
+ */
+public class ArrivalRateThreadGroupGui extends AbstractThreadGroupGui implements ItemListener {
+    private static final long serialVersionUID = 1L;
+
+    // Saved values of the profiles, in the order of the combo box
+    private static final String[] PROFILES = {
+        ArrivalRateThreadGroup.PROFILE_CONSTANT,
+        ArrivalRateThreadGroup.PROFILE_RAMP,
+        ArrivalRateThreadGroup.PROFILE_STEP,
+    };
+
+    private JComboBox<String> profile;
+
+    private JTextField startRate;
+
+    private JTextField endRate;
+
+    private JTextField steps;
+
+    private JTextField duration;
+
+    private JTextField threadInput;
+
+    private JCheckBox randomArrivals;
+
+    public ArrivalRateThreadGroupGui() {
+        super();
+        init();
+        initGui();
+    }
+
+    @Override
+    public TestElement createTestElement() {
+        ArrivalRateThreadGroup tg = new ArrivalRateThreadGroup();
+        modifyTestElement(tg);
+        return tg;
+    }
+
+    /**
+     * Modifies a given TestElement to mirror the data in the gui components.
+     *
+     * @see org.apache.jmeter.gui.JMeterGUIComponent#modifyTestElement(TestElement)
+     */
+    @Override
+    public void modifyTestElement(TestElement tg) {
+        super.configureTestElement(tg);
+        if (tg instanceof AbstractThreadGroup) {
+            LoopController looper = new LoopController();
+            looper.setLoops(LoopController.INFINITE_LOOP_COUNT);
+            ((AbstractThreadGroup) tg).setSamplerController(looper);
+        }
+        tg.setProperty(ArrivalRateThreadGroup.PROFILE, PROFILES[profile.getSelectedIndex()]);
+        tg.setProperty(ArrivalRateThreadGroup.START_RATE, startRate.getText());
+        tg.setProperty(ArrivalRateThreadGroup.END_RATE, endRate.getText());
+        tg.setProperty(ArrivalRateThreadGroup.STEPS, steps.getText());
+        tg.setProperty(ArrivalRateThreadGroup.DURATION, duration.getText());
+        tg.setProperty(AbstractThreadGroup.NUM_THREADS, threadInput.getText());
+        tg.setProperty(new BooleanProperty(ArrivalRateThreadGroup.RANDOM_ARRIVALS, randomArrivals.isSelected()));
+    }
+
+    @Override
+    public void configure(TestElement tg) {
+        super.configure(tg);
+        String savedProfile = tg.getPropertyAsString(ArrivalRateThreadGroup.PROFILE);
+        profile.setSelectedIndex(0);
+        for (int i = 0; i < PROFILES.length; i++) {
+            if (PROFILES[i].equals(savedProfile)) {
+                profile.setSelectedIndex(i);
+            }
+        }
+        startRate.setText(tg.getPropertyAsString(ArrivalRateThreadGroup.START_RATE));
+        endRate.setText(tg.getPropertyAsString(ArrivalRateThreadGroup.END_RATE));
+        steps.setText(tg.getPropertyAsString(ArrivalRateThreadGroup.STEPS));
+        duration.setText(tg.getPropertyAsString(ArrivalRateThreadGroup.DURATION));
+        threadInput.setText(tg.getPropertyAsString(AbstractThreadGroup.NUM_THREADS));
+        randomArrivals.setSelected(tg.getPropertyAsBoolean(ArrivalRateThreadGroup.RANDOM_ARRIVALS));
+        toggleProfileFields();
+    }
+
+    @Override
+    public void itemStateChanged(ItemEvent ie) {
+        if (ie.getStateChange() == ItemEvent.SELECTED) {
+            toggleProfileFields();
+        }
+    }
+
+    /**
+     * Enable the fields used by the selected profile
+     */
+    private void toggleProfileFields() {
+        String selected = PROFILES[profile.getSelectedIndex()];
+        endRate.setEnabled(!ArrivalRateThreadGroup.PROFILE_CONSTANT.equals(selected));
+        steps.setEnabled(ArrivalRateThreadGroup.PROFILE_STEP.equals(selected));
+    }
+
+    @Override
+    public String getLabelResource() {
+        return "arrival_rate_thread_group_title"; // $NON-NLS-1$
+    }
+
+    @Override
+    public void clearGui(){
+        super.clearGui();
+        initGui();
+    }
+
+    // Initialise the gui field values
+    private void initGui(){
+        profile.setSelectedIndex(0);
+        startRate.setText("1"); // $NON-NLS-1$
+        endRate.setText("1"); // $NON-NLS-1$
+        steps.setText("1"); // $NON-NLS-1$
+        duration.setText("60"); // $NON-NLS-1$
+        threadInput.setText("100"); // $NON-NLS-1$
+        randomArrivals.setSelected(false);
+        toggleProfileFields();
+    }
+
+    private JTextField addField(VerticalPanel panel, String resource) {
+        JPanel fieldPanel = new JPanel(new BorderLayout(5, 0));
+        JLabel label = new JLabel(JMeterUtils.getResString(resource));
+        fieldPanel.add(label, BorderLayout.WEST);
+        JTextField field = new JTextField(5);
+        label.setLabelFor(field);
+        fieldPanel.add(field, BorderLayout.CENTER);
+        panel.add(fieldPanel);
+        return field;
+    }
+
+    private void init() { // WARNING: called from ctor so must not be overridden (i.e. must be private or final)
+        VerticalPanel arrivalPanel = new VerticalPanel();
+        arrivalPanel.setBorder(BorderFactory.createTitledBorder(BorderFactory.createEtchedBorder(),
+                JMeterUtils.getResString("arrival_rate_properties"))); // $NON-NLS-1$
+
+        // PROFILE
+        JPanel profilePanel = new JPanel(new BorderLayout(5, 0));
+        JLabel profileLabel = new JLabel(JMeterUtils.getResString("arrival_rate_profile")); // $NON-NLS-1$
+        profilePanel.add(profileLabel, BorderLayout.WEST);
+        profile = new JComboBox<>();
+        for (String p : PROFILES) {
+            profile.addItem(JMeterUtils.getResString("arrival_rate_profile_" + p)); // $NON-NLS-1$
+        }
+        profile.addItemListener(this);
+        profileLabel.setLabelFor(profile);
+        profilePanel.add(profile, BorderLayout.CENTER);
+        arrivalPanel.add(profilePanel);
+
+        startRate = addField(arrivalPanel, "arrival_rate_start"); // $NON-NLS-1$
+        endRate = addField(arrivalPanel, "arrival_rate_end"); // $NON-NLS-1$
+        steps = addField(arrivalPanel, "arrival_rate_steps"); // $NON-NLS-1$
+        duration = addField(arrivalPanel, "duration"); // $NON-NLS-1$
+
+        randomArrivals = new JCheckBox(JMeterUtils.getResString("arrival_rate_random")); // $NON-NLS-1$
+        arrivalPanel.add(randomArrivals);
+
+        // THREAD PROPERTIES
+        VerticalPanel threadPropsPanel = new VerticalPanel();
+        threadPropsPanel.setBorder(BorderFactory.createTitledBorder(BorderFactory.createEtchedBorder(),
+                JMeterUtils.getResString("thread_properties"))); // $NON-NLS-1$
+        threadInput = addField(threadPropsPanel, "arrival_rate_max_threads"); // $NON-NLS-1$
+
+        VerticalPanel intgrationPanel = new VerticalPanel();
+        intgrationPanel.add(arrivalPanel);
+        intgrationPanel.add(threadPropsPanel);
+        add(intgrationPanel, BorderLayout.CENTER);
+    }
+}
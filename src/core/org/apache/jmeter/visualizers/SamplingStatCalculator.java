@@ -20,17 +20,32 @@ package org.apache.jmeter.visualizers;
 
 import java.util.Map;
 
+import org.apache.jmeter.samplers.HistogramSampleResult;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.math.HistogramStatCalculatorLong;
+import org.apache.jorphan.math.LogLinearHistogram;
 import org.apache.jorphan.math.StatCalculatorLong;
 
 /**
  * Aggregate sample data container. Just instantiate a new instance of this
  * class, and then call {@link #addSample(SampleResult)} a few times, and pull
  * the stats out with whatever methods you prefer.
+ * <p>
+ * If the property <code>statcalculator.histogram</code> is true, the distribution
+ * is kept in a fixed size histogram (see {@link HistogramStatCalculatorLong}) so memory
+ * does not grow with the number of distinct response times.
  *
  */
 public class SamplingStatCalculator {
-    private final StatCalculatorLong calculator = new StatCalculatorLong();
+    private static final boolean USE_HISTOGRAM =
+            JMeterUtils.getPropDefault("statcalculator.histogram", false); // $NON-NLS-1$
+
+    private static final int HISTOGRAM_PRECISION =
+            JMeterUtils.getPropDefault("statcalculator.histogram.precision", // $NON-NLS-1$
+                    LogLinearHistogram.DEFAULT_PRECISION);
+
+    private final StatCalculatorLong calculator;
 
     private double maxThroughput;
 
@@ -45,7 +60,19 @@ public class SamplingStatCalculator {
     }
 
     public SamplingStatCalculator(String label) {
+        this(label, USE_HISTOGRAM);
+    }
+
+    /**
+     * @param label the label of this component
+     * @param useHistogram true to keep the distribution in a fixed size histogram
+     *  with precision <code>statcalculator.histogram.precision</code>
+     */
+    public SamplingStatCalculator(String label, boolean useHistogram) {
         this.label = label;
+        this.calculator = useHistogram
+                ? new HistogramStatCalculatorLong(HISTOGRAM_PRECISION)
+                : new StatCalculatorLong();
         init();
     }
 
@@ -156,7 +183,13 @@ public class SamplingStatCalculator {
         double throughput;
         boolean rbool;
         synchronized (calculator) {
-            calculator.addValue(res.getTime(), res.getSampleCount());
+            if (res instanceof HistogramSampleResult) {
+                HistogramSampleResult histogramResult = (HistogramSampleResult) res;
+                addEachValue(histogramResult.getOkTimes());
+                addEachValue(histogramResult.getKoTimes());
+            } else {
+                calculator.addValue(res.getTime(), res.getSampleCount());
+            }
             calculator.addBytes(res.getBytes());
             setStartTime(res);
             eCount = getCurrentSample().getErrorCount();
@@ -184,6 +217,18 @@ public class SamplingStatCalculator {
         return s;
     }
 
+    /**
+     * Add each bucket of a histogram, so percentiles of merged histograms stay correct
+     */
+    private void addEachValue(LogLinearHistogram.Recorder times) {
+        for (int i = 0; i < times.getBucketCount(); i++) {
+            long count = times.getCountAt(i);
+            if (count != 0) {
+                calculator.addEachValue(Long.valueOf(times.getValueAt(i)), count);
+            }
+        }
+    }
+
     private long getEndTime(SampleResult res) {
         long endTime = res.getEndTime();
         long lastTime = getCurrentSample().getEndTime();
@@ -33,7 +33,7 @@ import org.apache.log.Logger;
  * Function to generate chars from a list of decimal or hex values
  * @since 2.3.3
  */
-public class CharFunction extends AbstractFunction {
+public class CharFunction extends AbstractFunction implements PureFunction {
 
     private static final Logger log = LoggingManager.getLoggerForClass();
 
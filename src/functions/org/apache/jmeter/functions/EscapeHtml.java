@@ -47,7 +47,7 @@ import org.apache.jmeter.util.JMeterUtils;
  * @see StringEscapeUtils#escapeHtml4(String) (Commons Lang)
  * @since 2.3.3
  */
-public class EscapeHtml extends AbstractFunction {
+public class EscapeHtml extends AbstractFunction implements PureFunction {
 
     private static final List<String> desc = new LinkedList<>();
 
@@ -43,7 +43,7 @@ import org.apache.jmeter.util.JMeterUtils;
  * @see org.apache.commons.lang3.StringEscapeUtils#unescapeHtml4(String)
  * @since 2.3.3
  */
-public class UnEscapeHtml extends AbstractFunction {
+public class UnEscapeHtml extends AbstractFunction implements PureFunction {
 
     private static final List<String> desc = new LinkedList<>();
 
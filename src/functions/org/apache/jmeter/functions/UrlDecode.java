@@ -35,7 +35,7 @@ import org.apache.jmeter.util.JMeterUtils;
  * 
  * @since 2.10
  */
-public class UrlDecode extends AbstractFunction {
+public class UrlDecode extends AbstractFunction implements PureFunction {
 
     private static final String CHARSET_ENCODING = "UTF-8"; //$NON-NLS-1$
     
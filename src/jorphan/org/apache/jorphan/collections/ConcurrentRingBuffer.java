@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jorphan.collections;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free queue for several producer threads and a single consumer
+ * thread.
+ * <p>
+ * Producers claim a slot by incrementing a shared sequence, so they never
+ * block each other and never wait for the consumer: {@link #offer(Object)}
+ * returns false when the buffer is full and the caller decides what to do.
+ * Elements are consumed in the order their slots were claimed.
+ * <p>
+ * {@link #poll()} and {@link #drainTo(Collection, int)} must only be called by
+ * one thread at a time.
+ *
+ * @param <E> the type of the elements
+ * @since 3.1
+ */
+public class ConcurrentRingBuffer<E> {
+
+    private final int capacity;
+
+    private final int mask;
+
+    private final AtomicReferenceArray<E> elements;
+
+    /**
+     * Sequence of each slot: equal to the position of the next producer
+     * that may use it, or to that position + 1 once the element is published
+     */
+    private final AtomicLongArray sequences;
+
+    /** Position of the next slot to claim by a producer */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Position of the next slot to consume, only written by the consumer */
+    private volatile long head;
+
+    /**
+     * @param capacity
+     *            the minimum number of elements held by the buffer, rounded
+     *            up to a power of 2
+     */
+    public ConcurrentRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30, was " + capacity);
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = this.capacity - 1;
+        this.elements = new AtomicReferenceArray<>(this.capacity);
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return the number of elements the buffer can hold
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Add an element if the buffer is not full.
+     *
+     * @param element
+     *            the element to add, not null
+     * @return true if the element was added, false if the buffer is full
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("element must not be null");
+        }
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    // publishes the element to the consumer
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false; // slot not yet consumed, buffer is full
+            } else {
+                position = tail.get(); // another producer claimed the slot
+            }
+        }
+    }
+
+    /**
+     * Remove the oldest element, to be called by the consumer thread only.
+     *
+     * @return the element, null if the buffer is empty or the oldest slot is
+     *         claimed but not yet published
+     */
+    public E poll() {
+        long position = head;
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        E element = elements.get(index);
+        elements.lazySet(index, null);
+        // frees the slot for the producers of the next round
+        sequences.set(index, position + capacity);
+        head = position + 1;
+        return element;
+    }
+
+    /**
+     * Remove available elements and add them to a collection, to be called by
+     * the consumer thread only.
+     *
+     * @param collection
+     *            the collection to add elements to
+     * @param maxElements
+     *            the maximum number of elements to remove
+     * @return the number of elements removed
+     */
+    public int drainTo(Collection<? super E> collection, int maxElements) {
+        int count = 0;
+        E element;
+        while (count < maxElements && (element = poll()) != null) {
+            collection.add(element);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of claimed slots, including those whose element is
+     *         not yet published; only an estimate if producers are running
+     */
+    public int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    /**
+     * @return true if no slot is claimed; only an estimate if producers are
+     *         running
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jorphan.math;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * StatCalculator for Long values that keeps the distribution in a
+ * {@link LogLinearHistogram} instead of one map entry per distinct value.
+ * <p>
+ * Memory is constant whatever the number of samples and their spread,
+ * values are recorded without boxing, and percentiles are exact below
+ * 2<sup>precision</sup> and within the histogram relative error above.
+ * Unlike {@link StatCalculatorLong}, this class is thread-safe and does not lock.
+ * @since 3.1
+ */
+public class HistogramStatCalculatorLong extends StatCalculatorLong {
+
+    private final LogLinearHistogram histogram;
+
+    // doubles stored as raw long bits so they can be updated with CAS
+    private final AtomicLong sumBits = new AtomicLong(Double.doubleToRawLongBits(0));
+
+    private final AtomicLong sumOfSquaresBits = new AtomicLong(Double.doubleToRawLongBits(0));
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * Create a calculator using {@link LogLinearHistogram#DEFAULT_PRECISION}
+     */
+    public HistogramStatCalculatorLong() {
+        this(LogLinearHistogram.DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision number of significant bits kept for each value
+     * @see LogLinearHistogram#LogLinearHistogram(int)
+     */
+    public HistogramStatCalculatorLong(int precision) {
+        super();
+        histogram = new LogLinearHistogram(precision);
+    }
+
+    @Override
+    public void clear() {
+        histogram.reset();
+        sumBits.set(Double.doubleToRawLongBits(0));
+        sumOfSquaresBits.set(Double.doubleToRawLongBits(0));
+        bytes.set(0);
+    }
+
+    @Override
+    public void addBytes(long newValue) {
+        bytes.addAndGet(newValue);
+    }
+
+    @Override
+    public long getTotalBytes() {
+        return bytes.get();
+    }
+
+    @Override
+    public void addAll(StatCalculator<Long> calc) {
+        if (calc instanceof HistogramStatCalculatorLong) {
+            HistogramStatCalculatorLong other = (HistogramStatCalculatorLong) calc;
+            histogram.add(other.histogram.snapshot());
+            addDouble(sumBits, other.getSum());
+            addDouble(sumOfSquaresBits, Double.longBitsToDouble(other.sumOfSquaresBits.get()));
+        } else {
+            for (Number[] entry : calc.getDistribution().values()) {
+                addEachValue(Long.valueOf(entry[0].longValue()), entry[1].longValue());
+            }
+        }
+    }
+
+    @Override
+    public void addEachValue(Long val, long sampleCount) {
+        long value = val.longValue();
+        double currentVal = value;
+        histogram.recordValue(value, sampleCount);
+        addDouble(sumBits, currentVal * sampleCount);
+        addDouble(sumOfSquaresBits, currentVal * currentVal * sampleCount);
+    }
+
+    @Override
+    public void addValue(long val) {
+        addValue(val, 1L);
+    }
+
+    @Override
+    public void addValue(long val, int sampleCount) {
+        addValue(val, (long) sampleCount);
+    }
+
+    @Override
+    public void addValue(Long val) {
+        addValue(val.longValue(), 1L);
+    }
+
+    @Override
+    public void addValue(Long val, long sampleCount) {
+        addValue(val.longValue(), sampleCount);
+    }
+
+    /**
+     * Update the calculator with the value for an aggregated sample.
+     *
+     * @param val the aggregate value, normally the elapsed time
+     * @param sampleCount the number of samples contributing to the aggregate value
+     * @see StatCalculator#addValue(Number, long)
+     */
+    public void addValue(long val, long sampleCount) {
+        double currentVal = val;
+        addDouble(sumBits, currentVal);
+        long actualValue = val;
+        if (sampleCount > 1) {
+            addDouble(sumOfSquaresBits, currentVal * currentVal / sampleCount);
+            actualValue = val / sampleCount;
+        } else {
+            addDouble(sumOfSquaresBits, currentVal * currentVal);
+        }
+        histogram.recordValue(actualValue, sampleCount);
+    }
+
+    private static void addDouble(AtomicLong bits, double delta) {
+        while (true) {
+            long current = bits.get();
+            long next = Double.doubleToRawLongBits(Double.longBitsToDouble(current) + delta);
+            if (bits.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public Long getPercentPoint(double percent) {
+        return Long.valueOf(histogram.getValueAtPercent(percent));
+    }
+
+    /**
+     * Returns the distribution of the values, one entry per non-empty histogram bucket.
+     *
+     * @return map containing Long keys; entries are a Number array containing the key and the [Long] count.
+     */
+    @Override
+    public Map<Number, Number[]> getDistribution() {
+        LogLinearHistogram.Snapshot snapshot = histogram.snapshot();
+        Map<Number, Number[]> items = new HashMap<>();
+        for (int i = 0; i < snapshot.getBucketCount(); i++) {
+            long count = snapshot.getCountAt(i);
+            if (count != 0) {
+                Long key = Long.valueOf(snapshot.getValueAt(i));
+                items.put(key, new Number[] { key, Long.valueOf(count) });
+            }
+        }
+        return items;
+    }
+
+    /**
+     * @return an immutable, mergeable copy of the distribution
+     */
+    public LogLinearHistogram.Snapshot getSnapshot() {
+        return histogram.snapshot();
+    }
+
+    @Override
+    public double getMean() {
+        long count = histogram.getTotalCount();
+        if (count == 0) {
+            return 0;
+        }
+        return getSum() / count;
+    }
+
+    @Override
+    public double getStandardDeviation() {
+        long count = histogram.getTotalCount();
+        if (count == 0) {
+            return 0;
+        }
+        double mean = getSum() / count;
+        double sumOfSquares = Double.longBitsToDouble(sumOfSquaresBits.get());
+        return Math.sqrt((sumOfSquares / count) - (mean * mean));
+    }
+
+    @Override
+    public Long getMin() {
+        return Long.valueOf(histogram.getMin());
+    }
+
+    @Override
+    public Long getMax() {
+        return Long.valueOf(histogram.getMax());
+    }
+
+    @Override
+    public long getCount() {
+        return histogram.getTotalCount();
+    }
+
+    @Override
+    public double getSum() {
+        return Double.longBitsToDouble(sumBits.get());
+    }
+}
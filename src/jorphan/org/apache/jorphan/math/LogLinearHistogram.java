@@ -0,0 +1,673 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jorphan.math;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size histogram of non-negative long values using log-linear buckets.
+ * <p>
+ * Values below 2<sup>precision</sup> are recorded exactly; larger values are
+ * grouped in buckets whose width is at most 2<sup>-(precision-1)</sup> of the
+ * value, so the relative error of any reported value is bounded whatever the
+ * spread of the recorded values. Memory only depends on the precision:
+ * <code>(1 + (63 - precision) / 2) * 2<sup>precision</sup></code> longs.
+ * <p>
+ * Recording is lock-free and may be done concurrently from several threads.
+ * Reading while recording gives a consistent enough view for reporting, use
+ * {@link #snapshot()} for an immutable copy that can be merged with others.
+ * Negative values are recorded as 0.
+ * <p>
+ * A {@link Recorder} is a cheaper, single-threaded alternative for values
+ * recorded by one thread and periodically added to a histogram.
+ * @since 3.1
+ */
+public class LogLinearHistogram {
+
+    /** Smallest supported precision in bits */
+    public static final int MIN_PRECISION = 2;
+
+    /** Largest supported precision in bits */
+    public static final int MAX_PRECISION = 16;
+
+    /** Default precision, exact up to 255, relative error below 0.8% above */
+    public static final int DEFAULT_PRECISION = 8;
+
+    private final int precision;
+
+    private final AtomicLongArray counts;
+
+    private final AtomicLong totalCount = new AtomicLong();
+
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Create a histogram with {@link #DEFAULT_PRECISION}
+     */
+    public LogLinearHistogram() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision number of significant bits kept for each value,
+     *  between {@link #MIN_PRECISION} and {@link #MAX_PRECISION}
+     */
+    public LogLinearHistogram(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between " + MIN_PRECISION + " and "
+                    + MAX_PRECISION + ", was " + precision);
+        }
+        this.precision = precision;
+        this.counts = new AtomicLongArray(bucketCount(precision));
+    }
+
+    /**
+     * @return the precision in bits
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Record a single value
+     * @param value the value to record
+     */
+    public void recordValue(long value) {
+        recordValue(value, 1L);
+    }
+
+    /**
+     * Record several occurrences of the same value
+     * @param value the value to record
+     * @param occurrences number of times the value occurred
+     */
+    public void recordValue(long value, long occurrences) {
+        if (occurrences <= 0) {
+            return;
+        }
+        long v = value < 0 ? 0 : value;
+        counts.addAndGet(bucketIndex(v, precision), occurrences);
+        totalCount.addAndGet(occurrences);
+        updateMin(v);
+        updateMax(v);
+    }
+
+    private void updateMin(long v) {
+        long current;
+        while (v < (current = min.get())) {
+            if (min.compareAndSet(current, v)) {
+                return;
+            }
+        }
+    }
+
+    private void updateMax(long v) {
+        long current;
+        while (v > (current = max.get())) {
+            if (max.compareAndSet(current, v)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Add all values recorded in a snapshot to this histogram
+     * @param other {@link Snapshot} with the same precision
+     */
+    public void add(Snapshot other) {
+        checkPrecision(other.precision);
+        long[] otherCounts = other.counts;
+        for (int i = 0; i < otherCounts.length; i++) {
+            if (otherCounts[i] != 0) {
+                counts.addAndGet(i, otherCounts[i]);
+            }
+        }
+        if (other.totalCount > 0) {
+            totalCount.addAndGet(other.totalCount);
+            updateMin(other.min);
+            updateMax(other.max);
+        }
+    }
+
+    /**
+     * Add all values recorded by a recorder to this histogram
+     * @param recorder {@link Recorder} with the same precision, must not be used concurrently
+     */
+    public void add(Recorder recorder) {
+        checkPrecision(recorder.precision);
+        long[] recorderCounts = recorder.counts;
+        for (int i = 0; i < recorderCounts.length; i++) {
+            if (recorderCounts[i] != 0) {
+                counts.addAndGet(i, recorderCounts[i]);
+            }
+        }
+        if (recorder.totalCount > 0) {
+            totalCount.addAndGet(recorder.totalCount);
+            updateMin(recorder.min);
+            updateMax(recorder.max);
+        }
+    }
+
+    /**
+     * Clear all recorded values.
+     * Values recorded concurrently with the reset may be partially lost.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        min.set(Long.MAX_VALUE);
+        max.set(Long.MIN_VALUE);
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * @return smallest recorded value, {@link Long#MAX_VALUE} if none
+     */
+    public long getMin() {
+        return min.get();
+    }
+
+    /**
+     * @return largest recorded value, {@link Long#MIN_VALUE} if none
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get the value which %percent% of the values are less than or equal to.
+     * @param percent between <code>0</code> and <code>1.0</code>
+     * @return the value, 0 if no values were recorded
+     * @see StatCalculator#getPercentPoint(double)
+     */
+    public long getValueAtPercent(double percent) {
+        return snapshot().getValueAtPercent(percent);
+    }
+
+    /**
+     * @return an immutable copy of the current state
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(precision, copy, total, min.get(), max.get());
+    }
+
+    private void checkPrecision(int otherPrecision) {
+        if (otherPrecision != precision) {
+            throw new IllegalArgumentException("Cannot merge histograms with precision "
+                    + precision + " and " + otherPrecision);
+        }
+    }
+
+    /**
+     * Get the value reported for the bucket holding a value,
+     * useful to group values the way a histogram with this precision would.
+     * @param value the value, negative values are treated as 0
+     * @param precision precision in bits
+     * @return largest value of the bucket holding the value
+     */
+    public static long getEquivalentValue(long value, int precision) {
+        return highestValue(bucketIndex(value < 0 ? 0 : value, precision), precision);
+    }
+
+    /**
+     * @param precision precision in bits
+     * @return number of buckets needed to hold any non-negative long
+     */
+    static int bucketCount(int precision) {
+        int subBucketCount = 1 << precision;
+        int halfCount = subBucketCount >> 1;
+        return subBucketCount + (63 - precision) * halfCount;
+    }
+
+    /**
+     * @param value non-negative value
+     * @param precision precision in bits
+     * @return index of the bucket holding the value
+     */
+    static int bucketIndex(long value, int precision) {
+        int subBucketCount = 1 << precision;
+        if (value < subBucketCount) {
+            return (int) value;
+        }
+        int halfCount = subBucketCount >> 1;
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (precision - 1);
+        int mantissa = (int) (value >>> shift);
+        return subBucketCount + (shift - 1) * halfCount + (mantissa - halfCount);
+    }
+
+    /**
+     * @param index bucket index
+     * @param precision precision in bits
+     * @return smallest value held by the bucket
+     */
+    static long lowestValue(int index, int precision) {
+        int subBucketCount = 1 << precision;
+        if (index < subBucketCount) {
+            return index;
+        }
+        int halfCount = subBucketCount >> 1;
+        int offset = index - subBucketCount;
+        int shift = offset / halfCount + 1;
+        long mantissa = offset % halfCount + halfCount;
+        return mantissa << shift;
+    }
+
+    /**
+     * @param index bucket index
+     * @param precision precision in bits
+     * @return largest value held by the bucket
+     */
+    static long highestValue(int index, int precision) {
+        if (index + 1 >= bucketCount(precision)) {
+            return Long.MAX_VALUE;
+        }
+        return lowestValue(index + 1, precision) - 1;
+    }
+
+    /**
+     * Records values with the buckets of a {@link LogLinearHistogram}, without
+     * any synchronization. Buckets are only allocated up to the largest value
+     * recorded, so a recorder of short response times is a few hundred bytes.
+     * It also keeps the sum of the values.
+     * <p>
+     * Recorders are serialized sparsely, only non-empty buckets are written,
+     * so they are cheap to send to another JVM and merge there.
+     */
+    public static final class Recorder implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private static final long[] NO_COUNTS = new long[0];
+        private final int precision;
+        private long[] counts = NO_COUNTS;
+        private long totalCount;
+        private long sum;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+
+        /**
+         * Create a recorder with {@link LogLinearHistogram#DEFAULT_PRECISION}
+         */
+        public Recorder() {
+            this(DEFAULT_PRECISION);
+        }
+
+        /**
+         * @param precision number of significant bits kept for each value,
+         *  between {@link LogLinearHistogram#MIN_PRECISION} and {@link LogLinearHistogram#MAX_PRECISION}
+         */
+        public Recorder(int precision) {
+            if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+                throw new IllegalArgumentException("Precision must be between " + MIN_PRECISION + " and "
+                        + MAX_PRECISION + ", was " + precision);
+            }
+            this.precision = precision;
+        }
+
+        /**
+         * Record a single value
+         * @param value the value to record, negative values are recorded as 0
+         */
+        public void recordValue(long value) {
+            recordValue(value, 1L);
+        }
+
+        /**
+         * Record several occurrences of the same value
+         * @param value the value to record, negative values are recorded as 0
+         * @param occurrences number of times the value occurred
+         */
+        public void recordValue(long value, long occurrences) {
+            if (occurrences <= 0) {
+                return;
+            }
+            long v = value < 0 ? 0 : value;
+            int index = bucketIndex(v, precision);
+            ensureCapacity(index + 1);
+            counts[index] += occurrences;
+            totalCount += occurrences;
+            sum += v * occurrences;
+            if (v < min) {
+                min = v;
+            }
+            if (v > max) {
+                max = v;
+            }
+        }
+
+        /**
+         * Add all values recorded by another recorder to this one.
+         * When the precisions differ, each bucket of the other recorder
+         * is recorded as its reported value.
+         * @param other {@link Recorder} whose values are added
+         */
+        public void add(Recorder other) {
+            if (other.totalCount == 0) {
+                return;
+            }
+            if (other.precision != precision) {
+                long otherSum = other.sum;
+                for (int i = 0; i < other.counts.length; i++) {
+                    if (other.counts[i] != 0) {
+                        recordValue(other.getValueAt(i), other.counts[i]);
+                    }
+                }
+                // Keep the exact sum rather than the one of the reported values
+                sum += otherSum - other.reportedSum();
+                return;
+            }
+            ensureCapacity(other.counts.length);
+            for (int i = 0; i < other.counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            totalCount += other.totalCount;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+
+        private long reportedSum() {
+            long reported = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    reported += getValueAt(i) * counts[i];
+                }
+            }
+            return reported;
+        }
+
+        private void ensureCapacity(int length) {
+            if (length > counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(length, counts.length * 2));
+            }
+        }
+
+        /**
+         * @return the precision in bits
+         */
+        public int getPrecision() {
+            return precision;
+        }
+
+        /**
+         * @return number of recorded values
+         */
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * @return sum of the recorded values
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * @return smallest recorded value, {@link Long#MAX_VALUE} if none
+         */
+        public long getMin() {
+            return min;
+        }
+
+        /**
+         * @return largest recorded value, {@link Long#MIN_VALUE} if none
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return number of allocated buckets, buckets above are empty
+         */
+        public int getBucketCount() {
+            return counts.length;
+        }
+
+        /**
+         * @param index bucket index, below {@link #getBucketCount()}
+         * @return number of values in the bucket
+         */
+        public long getCountAt(int index) {
+            return counts[index];
+        }
+
+        /**
+         * @param index bucket index
+         * @return the value reported for the bucket, bounded by the recorded min and max
+         */
+        public long getValueAt(int index) {
+            return Math.max(min, Math.min(max, highestValue(index, precision)));
+        }
+
+        /**
+         * @return an immutable copy of the recorded values
+         */
+        public Snapshot snapshot() {
+            return new Snapshot(precision, Arrays.copyOf(counts, bucketCount(precision)),
+                    totalCount, min, max);
+        }
+
+        /**
+         * Clear all recorded values, keeping the allocated buckets
+         */
+        public void reset() {
+            if (totalCount > 0) {
+                Arrays.fill(counts, 0L);
+                totalCount = 0;
+                sum = 0;
+                min = Long.MAX_VALUE;
+                max = Long.MIN_VALUE;
+            }
+        }
+
+        private Object writeReplace() throws ObjectStreamException {
+            return new SerializedRecorder(this);
+        }
+    }
+
+    /**
+     * Serialized form of a {@link Recorder}: index and count of each non-empty bucket
+     */
+    private static final class SerializedRecorder implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final int precision;
+        private final long sum;
+        private final long min;
+        private final long max;
+        private final int[] indexes;
+        private final long[] counts;
+
+        SerializedRecorder(Recorder recorder) {
+            precision = recorder.precision;
+            sum = recorder.sum;
+            min = recorder.min;
+            max = recorder.max;
+            int used = 0;
+            for (long count : recorder.counts) {
+                if (count != 0) {
+                    used++;
+                }
+            }
+            indexes = new int[used];
+            counts = new long[used];
+            int j = 0;
+            for (int i = 0; i < recorder.counts.length; i++) {
+                if (recorder.counts[i] != 0) {
+                    indexes[j] = i;
+                    counts[j] = recorder.counts[i];
+                    j++;
+                }
+            }
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            Recorder recorder = new Recorder(precision);
+            if (indexes.length > 0) {
+                recorder.counts = new long[indexes[indexes.length - 1] + 1];
+                for (int j = 0; j < indexes.length; j++) {
+                    recorder.counts[indexes[j]] = counts[j];
+                    recorder.totalCount += counts[j];
+                }
+                recorder.min = min;
+                recorder.max = max;
+                recorder.sum = sum;
+            }
+            return recorder;
+        }
+    }
+
+    /**
+     * Immutable, mergeable copy of a {@link LogLinearHistogram}
+     */
+    public static final class Snapshot {
+        private final int precision;
+        private final long[] counts;
+        private final long totalCount;
+        private final long min;
+        private final long max;
+
+        Snapshot(int precision, long[] counts, long totalCount, long min, long max) {
+            this.precision = precision;
+            this.counts = counts;
+            this.totalCount = totalCount;
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * @param other {@link Snapshot} with the same precision
+         * @return a new {@link Snapshot} holding the values of both snapshots
+         */
+        public Snapshot merge(Snapshot other) {
+            if (other.precision != precision) {
+                throw new IllegalArgumentException("Cannot merge histograms with precision "
+                        + precision + " and " + other.precision);
+            }
+            long[] merged = new long[counts.length];
+            for (int i = 0; i < merged.length; i++) {
+                merged[i] = counts[i] + other.counts[i];
+            }
+            return new Snapshot(precision, merged, totalCount + other.totalCount,
+                    Math.min(min, other.min), Math.max(max, other.max));
+        }
+
+        /**
+         * @return the precision in bits
+         */
+        public int getPrecision() {
+            return precision;
+        }
+
+        /**
+         * @return number of recorded values
+         */
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * @return smallest recorded value, {@link Long#MAX_VALUE} if none
+         */
+        public long getMin() {
+            return min;
+        }
+
+        /**
+         * @return largest recorded value, {@link Long#MIN_VALUE} if none
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return number of buckets
+         */
+        public int getBucketCount() {
+            return counts.length;
+        }
+
+        /**
+         * @param index bucket index
+         * @return number of values in the bucket
+         */
+        public long getCountAt(int index) {
+            return counts[index];
+        }
+
+        /**
+         * @param index bucket index
+         * @return the value reported for the bucket, bounded by the recorded min and max
+         */
+        public long getValueAt(int index) {
+            long value = highestValue(index, precision);
+            if (value > max) {
+                value = max;
+            }
+            if (value < min) {
+                value = min;
+            }
+            return value;
+        }
+
+        /**
+         * Get the value which %percent% of the values are less than or equal to.
+         * @param percent between <code>0</code> and <code>1.0</code>
+         * @return the value, 0 if no values were recorded
+         * @see StatCalculator#getPercentPoint(double)
+         */
+        public long getValueAtPercent(double percent) {
+            if (totalCount <= 0) {
+                return 0;
+            }
+            if (percent >= 1.0) {
+                return max;
+            }
+            long target = Math.round(totalCount * percent);
+            for (int i = 0; i < counts.length; i++) {
+                long count = counts[i];
+                if (count != 0) {
+                    target -= count;
+                    if (target <= 0) {
+                        return getValueAt(i);
+                    }
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -210,7 +210,7 @@ public abstract class StatCalculator<T extends Number & Comparable<? super T>> {
      * @param val the common value, normally the elapsed time
      * @param sampleCount the number of samples with the same value
      */
-    void addEachValue(T val, long sampleCount) {
+    public void addEachValue(T val, long sampleCount) {
         count += sampleCount;
         double currentVal = val.doubleValue();
         sum += currentVal * sampleCount;
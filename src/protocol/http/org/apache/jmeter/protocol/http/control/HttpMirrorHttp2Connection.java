@@ -0,0 +1,369 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.control;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+import org.apache.jmeter.protocol.http.util.HTTPConstants;
+import org.apache.jmeter.protocol.http.util.HpackDecoder;
+import org.apache.jmeter.protocol.http.util.HpackEncoder;
+import org.apache.jmeter.protocol.http.util.Http2Frame;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Handles an HTTP/2 connection opened with prior knowledge (h2c) on the mirror server.
+ * <p>
+ * Each request is sent back as the body of its response, in the HTTP/1.1 text form
+ * used for other requests: request line with the HTTP/2.0 version, <code>host</code> header
+ * built from the authority, the other headers with their lower case names, a blank line and the body.
+ * The special headers and query strings of {@link HttpMirrorThread} are honoured,
+ * except X-ResponseStatus and status only use the status code.
+ * <p>
+ * Streams are answered one at a time, in the order they complete.
+ * @since 3.1
+ */
+class HttpMirrorHttp2Connection {
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final String ISO_8859_1 = "ISO-8859-1"; //$NON-NLS-1$
+    private static final byte[] CRLF = { 0x0d, 0x0a };
+
+    /** Receive window granted to the client, per stream and for the connection */
+    private static final int RECEIVE_WINDOW = 1 << 20;
+
+    private final InputStream in;
+
+    private final OutputStream out;
+
+    private final HpackDecoder decoder = new HpackDecoder();
+
+    private final HpackEncoder encoder = new HpackEncoder();
+
+    private final Map<Integer, Request> requests = new HashMap<>();
+
+    /** Requests received completely, waiting for their response */
+    private final Deque<Request> completed = new ArrayDeque<>();
+
+    /** Stream whose header block is being received, 0 if none */
+    private int continuationStream;
+
+    private ByteArrayOutputStream headerBlock;
+
+    /** Whether the header block being received ends its stream */
+    private boolean headerBlockEndsStream;
+
+    private int maxFrameSize = Http2Frame.DEFAULT_MAX_FRAME_SIZE;
+
+    private int initialWindow = Http2Frame.DEFAULT_WINDOW_SIZE;
+
+    private long connectionWindow = Http2Frame.DEFAULT_WINDOW_SIZE;
+
+    private boolean goingAway;
+
+    /**
+     * Request received on a stream
+     */
+    private static final class Request {
+        private final int streamId;
+        private final List<Header> headers = new ArrayList<>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private long sendWindow;
+
+        private Request(int streamId, long sendWindow) {
+            this.streamId = streamId;
+            this.sendWindow = sendWindow;
+        }
+    }
+
+    /**
+     * @param in client stream, positioned after the first 4 bytes of the connection preface
+     * @param out client stream
+     */
+    HttpMirrorHttp2Connection(InputStream in, OutputStream out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    /**
+     * Serve the connection until the client closes it or sends GOAWAY
+     * @throws IOException if the connection fails or the client violates the protocol
+     * @throws InterruptedException if interrupted while honouring X-Sleep
+     */
+    void serve() throws IOException, InterruptedException {
+        byte[] preface = Http2Frame.CONNECTION_PREFACE;
+        for (int i = 4; i < preface.length; i++) {
+            if (in.read() != (preface[i] & 0xff)) {
+                throw new IOException("Invalid HTTP/2 connection preface");
+            }
+        }
+        write(Http2Frame.settings(false,
+                Http2Frame.SETTINGS_INITIAL_WINDOW_SIZE, RECEIVE_WINDOW,
+                Http2Frame.SETTINGS_MAX_CONCURRENT_STREAMS, 100));
+        write(Http2Frame.windowUpdate(0, RECEIVE_WINDOW - Http2Frame.DEFAULT_WINDOW_SIZE));
+        out.flush();
+        while (!goingAway) {
+            Http2Frame frame = Http2Frame.read(in, maxFrameSize);
+            if (frame == null) {
+                break;
+            }
+            handleFrame(frame);
+            while (!completed.isEmpty()) {
+                respond(completed.poll());
+            }
+            out.flush();
+        }
+    }
+
+    private void handleFrame(Http2Frame frame) throws IOException {
+        int streamId = frame.getStreamId();
+        if (continuationStream != 0 && (frame.getType() != Http2Frame.CONTINUATION || streamId != continuationStream)) {
+            throw new IOException("Expected CONTINUATION frame, got " + frame);
+        }
+        switch (frame.getType()) {
+            case Http2Frame.HEADERS:
+                Request request = requests.get(Integer.valueOf(streamId));
+                if (request == null) {
+                    request = new Request(streamId, initialWindow);
+                    requests.put(Integer.valueOf(streamId), request);
+                }
+                headerBlock = new ByteArrayOutputStream();
+                headerBlock.write(frame.getPayload(), frame.getDataOffset(), frame.getDataLength());
+                headerBlockEndsStream = frame.hasFlag(Http2Frame.FLAG_END_STREAM);
+                continuationStream = streamId;
+                endHeaders(frame, request);
+                break;
+            case Http2Frame.CONTINUATION:
+                headerBlock.write(frame.getPayload(), 0, frame.getLength());
+                endHeaders(frame, requests.get(Integer.valueOf(streamId)));
+                break;
+            case Http2Frame.DATA:
+                Request data = requests.get(Integer.valueOf(streamId));
+                if (frame.getLength() > 0) {
+                    write(Http2Frame.windowUpdate(0, frame.getLength()));
+                }
+                if (data != null) {
+                    data.body.write(frame.getPayload(), frame.getDataOffset(), frame.getDataLength());
+                    if (frame.hasFlag(Http2Frame.FLAG_END_STREAM)) {
+                        complete(data);
+                    } else if (frame.getLength() > 0) {
+                        write(Http2Frame.windowUpdate(streamId, frame.getLength()));
+                    }
+                }
+                break;
+            case Http2Frame.SETTINGS:
+                if (!frame.hasFlag(Http2Frame.FLAG_ACK)) {
+                    applySettings(frame);
+                    write(Http2Frame.settings(true));
+                }
+                break;
+            case Http2Frame.PING:
+                if (!frame.hasFlag(Http2Frame.FLAG_ACK)) {
+                    write(new Http2Frame(Http2Frame.PING, Http2Frame.FLAG_ACK, 0, frame.getPayload()));
+                }
+                break;
+            case Http2Frame.WINDOW_UPDATE:
+                int increment = frame.getInt(0) & Integer.MAX_VALUE;
+                if (streamId == 0) {
+                    connectionWindow += increment;
+                } else {
+                    Request updated = requests.get(Integer.valueOf(streamId));
+                    if (updated != null) {
+                        updated.sendWindow += increment;
+                    }
+                }
+                break;
+            case Http2Frame.RST_STREAM:
+                Request reset = requests.remove(Integer.valueOf(streamId));
+                if (reset != null) {
+                    completed.remove(reset);
+                }
+                break;
+            case Http2Frame.GOAWAY:
+                goingAway = true;
+                break;
+            default:
+                // PRIORITY and unknown frames are ignored
+                break;
+        }
+    }
+
+    private void endHeaders(Http2Frame frame, Request request) throws IOException {
+        if (!frame.hasFlag(Http2Frame.FLAG_END_HEADERS)) {
+            return;
+        }
+        byte[] block = headerBlock.toByteArray();
+        request.headers.addAll(decoder.decode(block, 0, block.length));
+        continuationStream = 0;
+        headerBlock = null;
+        if (headerBlockEndsStream) {
+            complete(request);
+        }
+    }
+
+    private void complete(Request request) {
+        if (!completed.contains(request)) {
+            completed.add(request);
+        }
+    }
+
+    private void applySettings(Http2Frame frame) throws IOException {
+        byte[] payload = frame.getPayload();
+        for (int i = 0; i + 6 <= payload.length; i += 6) {
+            int id = ((payload[i] & 0xff) << 8) | (payload[i + 1] & 0xff);
+            int value = frame.getInt(i + 2);
+            if (id == Http2Frame.SETTINGS_INITIAL_WINDOW_SIZE) {
+                for (Request request : requests.values()) {
+                    request.sendWindow += value - initialWindow;
+                }
+                initialWindow = value;
+            } else if (id == Http2Frame.SETTINGS_MAX_FRAME_SIZE) {
+                maxFrameSize = value;
+            } else if (id == Http2Frame.SETTINGS_HEADER_TABLE_SIZE) {
+                encoder.setMaxTableSize(value);
+            }
+        }
+    }
+
+    /**
+     * Send the response to a request, reading frames while the flow control windows are exhausted
+     */
+    private void respond(Request request) throws IOException, InterruptedException {
+        String method = null;
+        String path = null;
+        String authority = null;
+        StringBuilder echo = new StringBuilder();
+        StringBuilder headers = new StringBuilder();
+        for (Header header : request.headers) {
+            String name = header.getName();
+            if (":method".equals(name)) { // $NON-NLS-1$
+                method = header.getValue();
+            } else if (":path".equals(name)) { // $NON-NLS-1$
+                path = header.getValue();
+            } else if (":authority".equals(name)) { // $NON-NLS-1$
+                authority = header.getValue();
+            } else if (!name.startsWith(":")) { // $NON-NLS-1$
+                headers.append(name).append(": ").append(header.getValue()).append("\r\n"); // $NON-NLS-1$ $NON-NLS-2$
+            }
+        }
+        echo.append(method).append(' ').append(path).append(" HTTP/2.0\r\n"); // $NON-NLS-1$
+        if (authority != null) {
+            echo.append("host: ").append(authority).append("\r\n"); // $NON-NLS-1$ $NON-NLS-2$
+        }
+        echo.append(headers).append("\r\n"); // $NON-NLS-1$
+        final String headerString = echo.toString();
+        Map<String, String> parameters = HttpMirrorThread.getParameters(method, path);
+
+        String status = HttpMirrorThread.getRequestHeaderValue(headerString, "X-ResponseStatus"); //$NON-NLS-1$
+        if (status == null) {
+            status = "200"; // $NON-NLS-1$
+        }
+        List<Header> responseHeaders = new ArrayList<>();
+        if (parameters.containsKey(HttpMirrorThread.REDIRECT)) {
+            status = "302"; // $NON-NLS-1$
+            responseHeaders.add(new BasicHeader(HTTPConstants.HEADER_LOCATION, parameters.get(HttpMirrorThread.REDIRECT)));
+        }
+        if (parameters.containsKey(HttpMirrorThread.STATUS)) {
+            status = parameters.get(HttpMirrorThread.STATUS);
+        }
+        responseHeaders.add(0, new BasicHeader(":status", status.trim().split("\\s+")[0])); // $NON-NLS-1$
+        responseHeaders.add(new BasicHeader(HTTPConstants.HEADER_CONTENT_TYPE, "text/plain")); // $NON-NLS-1$
+        String headersValue = HttpMirrorThread.getRequestHeaderValue(headerString, "X-SetHeaders"); //$NON-NLS-1$
+        if (headersValue != null) {
+            for (String header : headersValue.split("\\|")) {
+                String[] parts = header.split(":\\s*", 2);
+                if (parts.length == 2) {
+                    responseHeaders.add(new BasicHeader(parts[0].trim(), parts[1]));
+                }
+            }
+        }
+        String cookie = HttpMirrorThread.getRequestHeaderValue(headerString, "X-SetCookie"); //$NON-NLS-1$
+        if (cookie != null) {
+            responseHeaders.add(new BasicHeader(HTTPConstants.HEADER_SET_COOKIE, cookie));
+        }
+        String sleep = HttpMirrorThread.getRequestHeaderValue(headerString, "X-Sleep"); //$NON-NLS-1$
+        if (sleep != null) {
+            TimeUnit.MILLISECONDS.sleep(Integer.parseInt(sleep));
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(headerString.getBytes(ISO_8859_1));
+        request.body.writeTo(body);
+        byte[] content = body.toByteArray();
+        String responseLength = HttpMirrorThread.getRequestHeaderValue(headerString, "X-ResponseLength"); //$NON-NLS-1$
+        if (responseLength != null) {
+            content = Arrays.copyOf(content, Math.min(content.length, Integer.parseInt(responseLength)));
+        }
+
+        byte[] block = encoder.encode(responseHeaders);
+        int offset = 0;
+        int type = Http2Frame.HEADERS;
+        do {
+            int length = Math.min(maxFrameSize, block.length - offset);
+            int flags = offset + length == block.length ? Http2Frame.FLAG_END_HEADERS : 0;
+            if (type == Http2Frame.HEADERS && content.length == 0) {
+                flags |= Http2Frame.FLAG_END_STREAM;
+            }
+            write(new Http2Frame(type, flags, request.streamId, Arrays.copyOfRange(block, offset, offset + length)));
+            offset += length;
+            type = Http2Frame.CONTINUATION;
+        } while (offset < block.length);
+
+        offset = 0;
+        while (offset < content.length) {
+            while (connectionWindow <= 0 || request.sendWindow <= 0) {
+                out.flush();
+                Http2Frame frame = Http2Frame.read(in, maxFrameSize);
+                if (frame == null) {
+                    throw new IOException("Connection closed by client while sending response");
+                }
+                handleFrame(frame);
+                if (!requests.containsKey(Integer.valueOf(request.streamId))) {
+                    log.debug("Stream " + request.streamId + " reset by client");
+                    return;
+                }
+            }
+            int length = (int) Math.min(Math.min(maxFrameSize, content.length - offset),
+                    Math.min(connectionWindow, request.sendWindow));
+            int flags = offset + length == content.length ? Http2Frame.FLAG_END_STREAM : 0;
+            write(new Http2Frame(Http2Frame.DATA, flags, request.streamId, Arrays.copyOfRange(content, offset, offset + length)));
+            connectionWindow -= length;
+            request.sendWindow -= length;
+            offset += length;
+        }
+        requests.remove(Integer.valueOf(request.streamId));
+    }
+
+    private void write(Http2Frame frame) throws IOException {
+        frame.writeTo(out);
+    }
+}
@@ -25,7 +25,9 @@ import java.io.IOException;
 import java.net.Socket;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.jmeter.protocol.http.util.HTTPConstants;
@@ -53,6 +55,8 @@ import org.apache.oro.text.regex.Perl5Matcher;
  * status=nnn Message (overrides X-ResponseStatus)
  * redirect=location - sends a temporary redirect
  * v - verbose, i.e. print some details to stdout
+ *
+ * HTTP/2 connections with prior knowledge are handled by {@link HttpMirrorHttp2Connection}.
  */
 public class HttpMirrorThread implements Runnable {
     private static final Logger log = LoggingManager.getLoggerForClass();
@@ -60,9 +64,12 @@ public class HttpMirrorThread implements Runnable {
     private static final String ISO_8859_1 = "ISO-8859-1"; //$NON-NLS-1$
     private static final byte[] CRLF = { 0x0d, 0x0a };
 
-    private static final String REDIRECT = "redirect"; //$NON-NLS-1$
+    static final String REDIRECT = "redirect"; //$NON-NLS-1$
+
+    static final String STATUS = "status"; //$NON-NLS-1$
 
-    private static final String STATUS = "status"; //$NON-NLS-1$
+    /** Start of the HTTP/2 connection preface, which cannot start an HTTP/1.x request line */
+    private static final byte[] HTTP2_PREFACE_START = { 'P', 'R', 'I', ' ' };
 
     private static final String VERBOSE = "v"; // $NON-NLS-1$
 
@@ -85,6 +92,13 @@ public class HttpMirrorThread implements Runnable {
         try {
             in = new BufferedInputStream(clientSocket.getInputStream());
 
+            if (isHttp2(in)) {
+                log.debug("HTTP/2 connection");
+                out = new BufferedOutputStream(clientSocket.getOutputStream());
+                new HttpMirrorHttp2Connection(in, out).serve();
+                return;
+            }
+
             // Read the header part, we will be looking for a content-length
             // header, so we know how much we should read.
             // We assume headers are in ISO_8859_1
@@ -111,31 +125,7 @@ public class HttpMirrorThread implements Runnable {
             final String[] requestParts = firstLine.split("\\s+");
             final String requestMethod = requestParts[0];
             final String requestPath = requestParts[1];
-            final HashMap<String, String> parameters = new HashMap<>();
-            if (HTTPConstants.GET.equals(requestMethod)) {
-                int querypos = requestPath.indexOf('?');
-                if (querypos >= 0) {
-                    String query;
-                    try {
-                        URI uri = new URI(requestPath); // Use URI because it will decode the query
-                        query = uri.getQuery();
-                    } catch (URISyntaxException e) {
-                        log.warn(e.getMessage());
-                        query=requestPath.substring(querypos+1);
-                    }
-                    if (query != null) {
-                        String[] params = query.split("&");
-                        for(String param : params) {
-                            String[] parts = param.split("=",2);
-                            if (parts.length==2) {
-                                parameters.put(parts[0], parts[1]);
-                            } else { // allow for parameter name only
-                                parameters.put(parts[0], "");
-                            }
-                        }
-                    }
-                }
-            }
+            final Map<String, String> parameters = getParameters(requestMethod, requestPath);
 
             final boolean verbose = parameters.containsKey(VERBOSE);
             
@@ -283,7 +273,65 @@ public class HttpMirrorThread implements Runnable {
         log.debug("End of Thread");
     }
 
-    private static String getRequestHeaderValue(String requestHeaders, String headerName) {
+    /**
+     * @param in client stream, supporting mark
+     * @return true if the client starts an HTTP/2 connection with prior knowledge
+     * @throws IOException if reading fails
+     */
+    private static boolean isHttp2(BufferedInputStream in) throws IOException {
+        byte[] start = new byte[HTTP2_PREFACE_START.length];
+        in.mark(start.length);
+        int read = 0;
+        while (read < start.length) {
+            int length = in.read(start, read, start.length - read);
+            if (length < 0) {
+                break;
+            }
+            read += length;
+        }
+        if (read == start.length && Arrays.equals(start, HTTP2_PREFACE_START)) {
+            return true;
+        }
+        in.reset();
+        return false;
+    }
+
+    /**
+     * Parse the query string of GET requests
+     * @param requestMethod the request method
+     * @param requestPath the request path, with its query string
+     * @return the query parameters, empty if none
+     */
+    static Map<String, String> getParameters(String requestMethod, String requestPath) {
+        final Map<String, String> parameters = new HashMap<>();
+        if (HTTPConstants.GET.equals(requestMethod)) {
+            int querypos = requestPath.indexOf('?');
+            if (querypos >= 0) {
+                String query;
+                try {
+                    URI uri = new URI(requestPath); // Use URI because it will decode the query
+                    query = uri.getQuery();
+                } catch (URISyntaxException e) {
+                    log.warn(e.getMessage());
+                    query=requestPath.substring(querypos+1);
+                }
+                if (query != null) {
+                    String[] params = query.split("&");
+                    for(String param : params) {
+                        String[] parts = param.split("=",2);
+                        if (parts.length==2) {
+                            parameters.put(parts[0], parts[1]);
+                        } else { // allow for parameter name only
+                            parameters.put(parts[0], "");
+                        }
+                    }
+                }
+            }
+        }
+        return parameters;
+    }
+
+    static String getRequestHeaderValue(String requestHeaders, String headerName) {
         Perl5Matcher localMatcher = JMeterUtils.getMatcher();
         // We use multi-line mask so can prefix the line with ^
         String expression = "^" + headerName + ":\\s+([^\\r\\n]+)"; // $NON-NLS-1$ $NON-NLS-2$
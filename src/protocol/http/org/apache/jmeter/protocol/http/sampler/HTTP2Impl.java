@@ -0,0 +1,411 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.net.ssl.SSLEngine;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.message.BasicHeader;
+import org.apache.jmeter.protocol.http.control.CacheManager;
+import org.apache.jmeter.protocol.http.util.HTTPConstants;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jmeter.util.JsseSSLManager;
+import org.apache.jmeter.util.SSLManager;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * HTTP sampler speaking HTTP/2 over the non-blocking connections of {@link HTTPNioImpl}.
+ * <p>
+ * Each virtual user has one connection per server, shared by all its samplers, over
+ * which the main request and, when parallel downloads are enabled, all the embedded
+ * resources are multiplexed as a browser does: no thread pool and no extra sockets
+ * are needed. Each resource is a sub-result with its own timings.
+ * <p>
+ * HTTPS servers must select HTTP/2 through ALPN, which needs Java 8u252 or later;
+ * plain HTTP uses h2c with prior knowledge when the <code>http2.h2c</code> property is true.
+ * Other servers, and requests needing features of {@link HTTPHC4Impl}, are sent
+ * with HTTP/1.1 by {@link HTTPNioImpl}.
+ * @since 3.1
+ */
+public class HTTP2Impl extends HTTPNioImpl {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final String CONNECTIONS_TOKEN = "__jmeter.HTTP2_CONNECTIONS__"; //$NON-NLS-1$
+
+    /** HTTP/1.1 connection specific headers, which must not be sent with HTTP/2 */
+    private static final Set<String> CONNECTION_HEADERS = new HashSet<>(Arrays.asList(
+            "connection", "keep-alive", "proxy-connection", "transfer-encoding", // $NON-NLS-1$ $NON-NLS-2$ $NON-NLS-3$ $NON-NLS-4$
+            "upgrade", "host", "te")); // $NON-NLS-1$ $NON-NLS-2$ $NON-NLS-3$
+
+    /** Streams waiting for their response, to be cancelled on interrupt */
+    private final List<Exchange> inFlight = new CopyOnWriteArrayList<>();
+
+    private boolean resetSSLContext;
+
+    protected HTTP2Impl(HTTPSamplerBase testElement) {
+        super(testElement);
+    }
+
+    /**
+     * Request sent on a stream, with what is needed to send it again
+     */
+    private static final class Exchange {
+        private final URL url;
+        private final String method;
+        private final HttpRequestBase httpRequest;
+        private final InetAddress localAddress;
+        private final List<Header> headers;
+        private final byte[] body;
+        private HTTPSampleResult result;
+        private NioHttp2Connection connection;
+        private NioHttp2Stream stream;
+
+        private Exchange(URL url, String method, HTTPSampleResult result) {
+            this(url, method, null, null, null, null, result);
+        }
+
+        private Exchange(URL url, String method, HttpRequestBase httpRequest, InetAddress localAddress,
+                List<Header> headers, byte[] body, HTTPSampleResult result) {
+            this.url = url;
+            this.method = method;
+            this.httpRequest = httpRequest;
+            this.localAddress = localAddress;
+            this.headers = headers;
+            this.body = body;
+            this.result = result;
+        }
+    }
+
+    /**
+     * HTTP/2 connections of a virtual user, shared by its samplers and stored in its variables
+     */
+    private static final class UserConnections {
+        private final Map<String, NioHttp2Connection> connections = new HashMap<>();
+        private final Set<String> http11Origins = new HashSet<>();
+    }
+
+    @Override
+    protected HTTPSampleResult sample(URL url, String method,
+            boolean areFollowingRedirect, int frameDepth) {
+        if (!isHttp2Supported(url)) {
+            return super.sample(url, method, areFollowingRedirect, frameDepth);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Start : sample " + url.toString());
+            log.debug("method " + method+ " followingRedirect " + areFollowingRedirect + " depth " + frameDepth);
+        }
+        return finish(start(url, method), areFollowingRedirect, frameDepth);
+    }
+
+    /**
+     * Start all the resources served with HTTP/2 before waiting for any of them,
+     * so they are multiplexed over the connections of the user
+     */
+    @Override
+    protected List<HTTPSampleResult> sampleMultiplexed(List<URL> urls, int frameDepth) {
+        List<Exchange> started = new ArrayList<>();
+        Iterator<URL> it = urls.iterator();
+        while (it.hasNext()) {
+            URL url = it.next();
+            if (isHttp2Supported(url)) {
+                it.remove();
+                started.add(start(url, HTTPConstants.GET));
+            }
+        }
+        if (started.isEmpty()) {
+            return null;
+        }
+        List<HTTPSampleResult> results = new ArrayList<>(started.size());
+        for (Exchange exchange : started) {
+            results.add(finish(exchange, false, frameDepth));
+        }
+        return results;
+    }
+
+    /**
+     * @param url the target URL
+     * @return true if the request can be sent with HTTP/2
+     */
+    private boolean isHttp2Supported(URL url) {
+        if (!isNioSupported(url)) {
+            return false;
+        }
+        String protocol = url.getProtocol();
+        if (HTTPConstants.PROTOCOL_HTTPS.equalsIgnoreCase(protocol)) {
+            if (!NioHttp2Connection.isAlpnSupported()) {
+                return false;
+            }
+        } else if (!HTTPConstants.PROTOCOL_HTTP.equalsIgnoreCase(protocol)
+                || !JMeterUtils.getPropDefault("http2.h2c", false)) { // $NON-NLS-1$
+            return false;
+        }
+        UserConnections user = getUserConnections();
+        synchronized (user) {
+            return !user.http11Origins.contains(getOrigin(url));
+        }
+    }
+
+    /**
+     * Prepare the request and start its stream, without waiting for the response
+     * @param url the target URL
+     * @param method the HTTP method
+     * @return the exchange, without stream if its result is already known
+     */
+    private Exchange start(URL url, String method) {
+        HTTPSampleResult res = createSampleResult(url, method);
+        HttpRequestBase httpRequest = null;
+        try {
+            httpRequest = prepareRequest(url, method, res);
+        } catch (Exception e) {
+            res.sampleStart();
+            res.sampleEnd();
+            errorResult(e, res);
+            return new Exchange(url, method, res);
+        }
+
+        res.sampleStart();
+
+        final CacheManager cacheManager = getCacheManager();
+        if (cacheManager != null && HTTPConstants.GET.equalsIgnoreCase(method)) {
+           if (cacheManager.inCache(url)) {
+               return new Exchange(url, method, updateSampleResultForResourceInCache(res));
+           }
+        }
+
+        Exchange exchange = null;
+        try {
+            handleMethod(method, res, httpRequest, null);
+            byte[] body = prepareEntity(url, httpRequest);
+            res.setRequestHeaders(getConnectionHeaders(httpRequest));
+            InetAddress localAddr = getLocalAddress(httpRequest, res);
+            exchange = new Exchange(url, method, httpRequest, localAddr, createHeaders(url, httpRequest), body, res);
+            send(exchange, false);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Exception starting stream", e);
+            if (res.getEndTime() == 0) {
+                res.sampleEnd();
+            }
+            errorResult(e, res);
+            return new Exchange(url, method, res);
+        }
+        return exchange;
+    }
+
+    private void send(Exchange exchange, boolean newConnection) throws IOException {
+        int responseTimeout = getResponseTimeout() > 0 ? getResponseTimeout() : SO_TIMEOUT;
+        exchange.stream = new NioHttp2Stream(exchange.headers, exchange.body, exchange.result,
+                getConnectTimeout(), responseTimeout);
+        exchange.connection = getConnection(exchange.url, exchange.localAddress, newConnection);
+        inFlight.add(exchange);
+        exchange.connection.execute(exchange.stream);
+    }
+
+    /**
+     * Wait for the response of an exchange and process it
+     * @return the result, or its container if embedded resources were downloaded
+     */
+    private HTTPSampleResult finish(Exchange exchange, boolean areFollowingRedirect, int frameDepth) {
+        HTTPSampleResult res = exchange.result;
+        if (exchange.stream == null) {
+            return res;
+        }
+        try {
+            HttpResponse httpResponse;
+            try {
+                httpResponse = exchange.stream.await();
+            } catch (IOException e) {
+                inFlight.remove(exchange);
+                if (!exchange.stream.isRetriable()) {
+                    throw e;
+                }
+                log.debug("Stream refused or connection closed by server, retrying on a new connection", e);
+                send(exchange, true);
+                httpResponse = exchange.stream.await();
+            }
+            inFlight.remove(exchange);
+            NioHttp2Stream stream = exchange.stream;
+            res = processResponse(res, exchange.httpRequest, httpResponse, stream.getBody(),
+                    stream.getHeaderBytes(), stream.getReceivedBytes(), areFollowingRedirect, frameDepth);
+        } catch (NioHttp2Connection.ProtocolNotNegotiatedException e) {
+            log.info(e.getMessage() + ", using HTTP/1.1 for " + getOrigin(exchange.url));
+            UserConnections user = getUserConnections();
+            synchronized (user) {
+                user.http11Origins.add(getOrigin(exchange.url));
+            }
+            return super.sample(exchange.url, exchange.method, areFollowingRedirect, frameDepth);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Exception", e);
+            if (res.getEndTime() == 0) {
+                res.sampleEnd();
+            }
+            errorResult(e, res);
+        } finally {
+            inFlight.remove(exchange);
+        }
+        return res;
+    }
+
+    /**
+     * @param url the target URL
+     * @param httpRequest request with all its headers
+     * @return pseudo-headers followed by the request headers that HTTP/2 allows
+     */
+    private static List<Header> createHeaders(URL url, HttpRequestBase httpRequest) {
+        Header[] requestHeaders = httpRequest.getAllHeaders();
+        List<Header> headers = new ArrayList<>(requestHeaders.length + 4);
+        headers.add(new BasicHeader(":method", httpRequest.getMethod())); // $NON-NLS-1$
+        headers.add(new BasicHeader(":scheme", url.getProtocol().toLowerCase(Locale.ENGLISH))); // $NON-NLS-1$
+        headers.add(new BasicHeader(":authority", // $NON-NLS-1$
+                httpRequest.getFirstHeader(HTTPConstants.HEADER_HOST).getValue()));
+        headers.add(new BasicHeader(":path", getRequestTarget(httpRequest.getURI()))); // $NON-NLS-1$
+        for (Header header : requestHeaders) {
+            if (!CONNECTION_HEADERS.contains(header.getName().toLowerCase(Locale.ENGLISH))) {
+                headers.add(header);
+            }
+        }
+        return headers;
+    }
+
+    private static String getOrigin(URL url) {
+        return url.getProtocol() + "://" + url.getHost() + ":" + getPort(url); // $NON-NLS-1$ $NON-NLS-2$
+    }
+
+    /**
+     * @return the connections of the current virtual user, also used by the threads
+     * downloading embedded resources on its behalf
+     */
+    private static UserConnections getUserConnections() {
+        JMeterVariables vars = JMeterContextService.getContext().getVariables();
+        Object connections = vars.getObject(CONNECTIONS_TOKEN);
+        if (connections == null) {
+            synchronized (UserConnections.class) {
+                connections = vars.getObject(CONNECTIONS_TOKEN);
+                if (connections == null) {
+                    connections = new UserConnections();
+                    vars.putObject(CONNECTIONS_TOKEN, connections);
+                }
+            }
+        }
+        return (UserConnections) connections;
+    }
+
+    /**
+     * @param url the target URL
+     * @param localAddr local address to bind to, may be null
+     * @param newConnection true to replace the current connection to the target, if any
+     * @return a connection of the current user to the target, opened if needed
+     * @throws IOException if the connection cannot be created
+     */
+    private NioHttp2Connection getConnection(URL url, InetAddress localAddr, boolean newConnection)
+            throws IOException {
+        boolean secure = HTTPConstants.PROTOCOL_HTTPS.equalsIgnoreCase(url.getProtocol());
+        UserConnections user = getUserConnections();
+        synchronized (user) {
+            if (resetSSLContext && secure) {
+                closeConnections(user, true);
+                ((JsseSSLManager) SSLManager.getInstance()).resetContext();
+                resetSSLContext = false;
+            }
+            String key = getOrigin(url) + "@" + localAddr; // $NON-NLS-1$
+            NioHttp2Connection connection = user.connections.get(key);
+            if (connection != null && connection.isAvailable() && !newConnection) {
+                return connection;
+            }
+            String host = url.getHost();
+            int port = getPort(url);
+            SSLEngine sslEngine = secure ? createSSLEngine(host, port) : null;
+            if (log.isDebugEnabled()) {
+                log.debug("Opening HTTP/2 connection to " + url.getProtocol() + "://" + host + ":" + port);
+            }
+            connection = new NioHttp2Connection(NioSelectorPool.getInstance().nextLoop(),
+                    new InetSocketAddress(resolve(host), port), localAddr, sslEngine);
+            user.connections.put(key, connection);
+            return connection;
+        }
+    }
+
+    /**
+     * Close the connections of a user; streams in progress are failed
+     * @param user the user
+     * @param secureOnly true to only close HTTPS connections
+     */
+    private static void closeConnections(UserConnections user, boolean secureOnly) {
+        Iterator<NioHttp2Connection> it = user.connections.values().iterator();
+        while (it.hasNext()) {
+            NioHttp2Connection connection = it.next();
+            if (!secureOnly || connection.isSecure()) {
+                connection.close();
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    protected void notifyFirstSampleAfterLoopRestart() {
+        super.notifyFirstSampleAfterLoopRestart();
+        resetSSLContext = !USE_CACHED_SSL_CONTEXT;
+    }
+
+    @Override
+    protected void threadFinished() {
+        super.threadFinished();
+        JMeterVariables vars = JMeterContextService.getContext().getVariables();
+        Object connections = vars.getObject(CONNECTIONS_TOKEN);
+        if (connections != null) {
+            UserConnections user = (UserConnections) connections;
+            synchronized (user) {
+                closeConnections(user, false);
+            }
+            vars.remove(CONNECTIONS_TOKEN);
+        }
+    }
+
+    @Override
+    public boolean interrupt() {
+        boolean interrupted = false;
+        for (Exchange exchange : inFlight) {
+            inFlight.remove(exchange);
+            exchange.connection.cancel(exchange.stream, new InterruptedIOException("Request aborted"));
+            interrupted = true;
+        }
+        return super.interrupt() || interrupted;
+    }
+}
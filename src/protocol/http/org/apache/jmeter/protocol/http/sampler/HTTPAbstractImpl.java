@@ -29,6 +29,7 @@ import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.util.List;
 
 import org.apache.jmeter.config.Arguments;
 import org.apache.jmeter.protocol.http.control.AuthManager;
@@ -86,6 +87,19 @@ public abstract class HTTPAbstractImpl implements Interruptible, HTTPConstantsIn
 
     protected abstract HTTPSampleResult sample(URL url, String method, boolean areFollowingRedirect, int frameDepth);
 
+    /**
+     * Allows HTTPSamplerProxy to multiplex embedded resources over the connections of the implementation;
+     * subclasses able to do so can override it.
+     *
+     * @param urls the resources to download, those downloaded must be removed from the list
+     * @param frameDepth Depth of the resources in the frame structure
+     * @return the results of the downloaded resources, or null if nothing was downloaded
+     * @see HTTPSamplerBase#sampleMultiplexed(List, int)
+     */
+    protected List<HTTPSampleResult> sampleMultiplexed(List<URL> urls, int frameDepth) {
+        return null;
+    }
+
     // Allows HTTPSamplerProxy to call threadFinished; subclasses can override if necessary
     protected void threadFinished() {
     }
@@ -328,28 +328,7 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
 
         HttpRequestBase httpRequest = null;
         try {
-            URI uri = url.toURI();
-            if (method.equals(HTTPConstants.POST)) {
-                httpRequest = new HttpPost(uri);
-            } else if (method.equals(HTTPConstants.GET)) {
-                httpRequest = new HttpGet(uri);
-            } else if (method.equals(HTTPConstants.PUT)) {
-                httpRequest = new HttpPut(uri);
-            } else if (method.equals(HTTPConstants.HEAD)) {
-                httpRequest = new HttpHead(uri);
-            } else if (method.equals(HTTPConstants.TRACE)) {
-                httpRequest = new HttpTrace(uri);
-            } else if (method.equals(HTTPConstants.OPTIONS)) {
-                httpRequest = new HttpOptions(uri);
-            } else if (method.equals(HTTPConstants.DELETE)) {
-                httpRequest = new HttpDelete(uri);
-            } else if (method.equals(HTTPConstants.PATCH)) {
-                httpRequest = new HttpPatch(uri);
-            } else if (HttpWebdav.isWebdavMethod(method)) {
-                httpRequest = new HttpWebdav(method, uri);
-            } else {
-                throw new IllegalArgumentException("Unexpected method: '"+method+"'");
-            }
+            httpRequest = createHttpRequest(url.toURI(), method);
             setupRequest(url, httpRequest, res); // can throw IOException
         } catch (Exception e) {
             res.sampleStart();
@@ -484,6 +463,36 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
         return res;
     }
 
+    /**
+     * Create the HttpClient request for a method
+     * @param uri {@link URI} of the request
+     * @param method HTTP method
+     * @return {@link HttpRequestBase}
+     * @throws IllegalArgumentException if the method is not supported
+     */
+    protected HttpRequestBase createHttpRequest(URI uri, String method) {
+        if (method.equals(HTTPConstants.POST)) {
+            return new HttpPost(uri);
+        } else if (method.equals(HTTPConstants.GET)) {
+            return new HttpGet(uri);
+        } else if (method.equals(HTTPConstants.PUT)) {
+            return new HttpPut(uri);
+        } else if (method.equals(HTTPConstants.HEAD)) {
+            return new HttpHead(uri);
+        } else if (method.equals(HTTPConstants.TRACE)) {
+            return new HttpTrace(uri);
+        } else if (method.equals(HTTPConstants.OPTIONS)) {
+            return new HttpOptions(uri);
+        } else if (method.equals(HTTPConstants.DELETE)) {
+            return new HttpDelete(uri);
+        } else if (method.equals(HTTPConstants.PATCH)) {
+            return new HttpPatch(uri);
+        } else if (HttpWebdav.isWebdavMethod(method)) {
+            return new HttpWebdav(method, uri);
+        }
+        throw new IllegalArgumentException("Unexpected method: '"+method+"'");
+    }
+
     /**
      * Store in JMeter Variables the UserToken so that the SSL context is reused
      * See <a href="https://bz.apache.org/bugzilla/show_bug.cgi?id=57804">Bug 57804</a>
@@ -564,13 +573,17 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
 
     /**
      * Create HTTPSampleResult filling url, method and SampleLabel.
+     * The result of a previous sample is reused when the thread has recycled one.
      * Monitor field is computed calling isMonitor()
      * @param url URL
      * @param method HTTP Method
      * @return {@link HTTPSampleResult}
      */
     protected HTTPSampleResult createSampleResult(URL url, String method) {
-        HTTPSampleResult res = new HTTPSampleResult();
+        HTTPSampleResult res = JMeterContextService.getContext().takeRecycledResult(HTTPSampleResult.class);
+        if (res == null) {
+            res = new HTTPSampleResult();
+        }
         res.setMonitor(isMonitor());
 
         res.setSampleLabel(url.toString()); // May be replaced later
@@ -950,7 +963,7 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
      * @param localContext {@link HttpContext}
      * @return string containing the headers, one per line
      */
-    private String getResponseHeaders(HttpResponse response, HttpContext localContext) {
+    protected String getResponseHeaders(HttpResponse response, HttpContext localContext) {
         StringBuilder headerBuf = new StringBuilder();
         headerBuf.append(response.getStatusLine());// header[0] is not the status line...
         headerBuf.append("\n"); // $NON-NLS-1$
@@ -1072,7 +1085,7 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
      *            <code>HttpMethod</code> which represents the request
      * @return the headers as a string
      */
-    private String getConnectionHeaders(HttpRequest method) {
+    protected String getConnectionHeaders(HttpRequest method) {
         if(method != null) {
             // Get all the request headers
             StringBuilder hdrs = new StringBuilder(100);
@@ -1462,7 +1475,7 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
         }
     }
 
-    private void saveConnectionCookies(HttpResponse method, URL u, CookieManager cookieManager) {
+    protected void saveConnectionCookies(HttpResponse method, URL u, CookieManager cookieManager) {
         if (cookieManager != null) {
             Header[] hdrs = method.getHeaders(HTTPConstants.HEADER_SET_COOKIE);
             for (Header hdr : hdrs) {
@@ -0,0 +1,544 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import javax.net.ssl.SSLEngine;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.entity.DeflateInputStream;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.conn.DnsResolver;
+import org.apache.jmeter.protocol.http.control.AuthManager;
+import org.apache.jmeter.protocol.http.control.Authorization;
+import org.apache.jmeter.protocol.http.control.CacheManager;
+import org.apache.jmeter.protocol.http.util.HTTPConstants;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jmeter.util.JsseSSLManager;
+import org.apache.jmeter.util.SSLManager;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * HTTP sampler using a non-blocking java.nio client.
+ * <p>
+ * Requests are built exactly as for {@link HTTPHC4Impl} (headers, cookies, cache
+ * and post bodies), then sent over connections driven by the shared
+ * {@link NioSelectorPool}: the sampler thread only waits for the response, which
+ * makes this implementation well suited to large numbers of virtual threads.
+ * Connections are kept alive per thread and target, as for the other implementations.
+ * <p>
+ * Features that need HttpClient's blocking stack (proxies, automatic redirects,
+ * Kerberos, slow sockets) are delegated to {@link HTTPHC4Impl}.
+ * Basic authentication is sent preemptively.
+ * @since 3.1
+ */
+public class HTTPNioImpl extends HTTPHC4Impl {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final String HTTP_1_1 = "HTTP/1.1"; // $NON-NLS-1$
+
+    private static final String CRLF = "\r\n"; // $NON-NLS-1$
+
+    private static final String HTTPS_SOCKET_PROTOCOLS =
+            JMeterUtils.getPropDefault("https.socket.protocols", ""); // $NON-NLS-1$ $NON-NLS-2$
+
+    /**
+     * Open connections of the current thread, keyed by target and local address
+     */
+    private static final ThreadLocal<Map<String, NioHttpConnection>> CONNECTIONS =
+        new ThreadLocal<Map<String, NioHttpConnection>>() {
+        @Override
+        protected Map<String, NioHttpConnection> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    private volatile NioHttpConnection currentConnection; // Accessed from multiple threads
+
+    private boolean resetSSLContext;
+
+    protected HTTPNioImpl(HTTPSamplerBase testElement) {
+        super(testElement);
+    }
+
+    @Override
+    protected HTTPSampleResult sample(URL url, String method,
+            boolean areFollowingRedirect, int frameDepth) {
+        if (!isNioSupported(url)) {
+            return super.sample(url, method, areFollowingRedirect, frameDepth);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Start : sample " + url.toString());
+            log.debug("method " + method+ " followingRedirect " + areFollowingRedirect + " depth " + frameDepth);
+        }
+
+        HTTPSampleResult res = createSampleResult(url, method);
+
+        HttpRequestBase httpRequest = null;
+        try {
+            httpRequest = prepareRequest(url, method, res);
+        } catch (Exception e) {
+            res.sampleStart();
+            res.sampleEnd();
+            errorResult(e, res);
+            return res;
+        }
+
+        res.sampleStart();
+
+        final CacheManager cacheManager = getCacheManager();
+        if (cacheManager != null && HTTPConstants.GET.equalsIgnoreCase(method)) {
+           if (cacheManager.inCache(url)) {
+               return updateSampleResultForResourceInCache(res);
+           }
+        }
+
+        try {
+            handleMethod(method, res, httpRequest, null);
+            byte[] request = serializeRequest(httpRequest, prepareEntity(url, httpRequest));
+            res.setRequestHeaders(getConnectionHeaders(httpRequest));
+
+            NioHttpExchange exchange = execute(url, httpRequest, request, res);
+            HttpResponse httpResponse = exchange.await();
+            currentConnection = null;
+
+            res = processResponse(res, httpRequest, httpResponse, exchange.getBody(),
+                    exchange.getHeaderBytes(), exchange.getReceivedBytes(), areFollowingRedirect, frameDepth);
+        } catch (IOException e) {
+            log.debug("IOException", e);
+            if (res.getEndTime() == 0) {
+                res.sampleEnd();
+            }
+            errorResult(e, res);
+            return res;
+        } catch (RuntimeException e) {
+            log.debug("RuntimeException", e);
+            if (res.getEndTime() == 0) {
+                res.sampleEnd();
+            }
+            errorResult(e, res);
+            return res;
+        } finally {
+            currentConnection = null;
+        }
+        return res;
+    }
+
+    /**
+     * Create the request and set up its headers, cookies and authorization
+     * @param url the target URL
+     * @param method the HTTP method
+     * @param res the result, which gets the cookies sent
+     * @return the request, its entity is set by {@link #handleMethod(String, HTTPSampleResult, HttpRequestBase, org.apache.http.protocol.HttpContext)}
+     * @throws Exception if the request cannot be created
+     */
+    protected HttpRequestBase prepareRequest(URL url, String method, HTTPSampleResult res) throws Exception {
+        HttpRequestBase httpRequest = createHttpRequest(url.toURI(), method);
+        setupRequest(url, httpRequest, res); // can throw IOException
+        setConnectionAuthorization(httpRequest, url, getAuthManager());
+        return httpRequest;
+    }
+
+    /**
+     * Process a complete response: store its data, status, headers and sizes in the result,
+     * save cookies and cache details, then follow redirects and download embedded resources
+     * @param res the result, the sample is ended here if it was not yet
+     * @param httpRequest the request
+     * @param httpResponse the response status and headers
+     * @param body the body as received, null if none
+     * @param headerBytes number of bytes of the status line and headers
+     * @param receivedBytes number of bytes received
+     * @param areFollowingRedirect whether we are getting a redirect target
+     * @param frameDepth Depth of this target in the frame structure
+     * @return the result, or its container if embedded resources were downloaded
+     * @throws IOException if the body cannot be decoded
+     */
+    protected HTTPSampleResult processResponse(HTTPSampleResult res, HttpRequestBase httpRequest,
+            HttpResponse httpResponse, byte[] body, long headerBytes, long receivedBytes,
+            boolean areFollowingRedirect, int frameDepth) throws IOException {
+        Header contentType = httpResponse.getLastHeader(HTTPConstants.HEADER_CONTENT_TYPE);
+        if (contentType != null){
+            String ct = contentType.getValue();
+            res.setContentType(ct);
+            res.setEncodingAndType(ct);
+        }
+        if (body != null) {
+            // latency was set by the connection when the first byte arrived
+            long latency = res.getLatency();
+            res.setResponseData(readResponse(res, decode(httpResponse, body), body.length));
+            res.setLatency(latency);
+        }
+
+        if (res.getEndTime() == 0) {
+            res.sampleEnd(); // Done with the sampling proper.
+        }
+
+        // Now collect the results into the HTTPSampleResult:
+        StatusLine statusLine = httpResponse.getStatusLine();
+        int statusCode = statusLine.getStatusCode();
+        res.setResponseCode(Integer.toString(statusCode));
+        res.setResponseMessage(statusLine.getReasonPhrase());
+        res.setSuccessful(isSuccessCode(statusCode));
+
+        res.setResponseHeaders(getResponseHeaders(httpResponse, null));
+        if (res.isRedirect()) {
+            final Header headerLocation = httpResponse.getLastHeader(HTTPConstants.HEADER_LOCATION);
+            if (headerLocation == null) { // HTTP protocol violation, but avoids NPE
+                throw new IllegalArgumentException("Missing location header in redirect for " + httpRequest.getRequestLine());
+            }
+            res.setRedirectLocation(headerLocation.getValue());
+        }
+
+        // record some sizes to allow HTTPSampleResult.getBytes() with different options
+        res.setHeadersSize((int) headerBytes);
+        res.setBodySize((int) (receivedBytes - headerBytes));
+        if (log.isDebugEnabled()) {
+            log.debug("ResponseHeadersSize=" + res.getHeadersSize() + " Content-Length=" + res.getBodySize()
+                    + " Total=" + (res.getHeadersSize() + res.getBodySize()));
+        }
+
+        // Store any cookies received in the cookie manager:
+        saveConnectionCookies(httpResponse, res.getURL(), getCookieManager());
+
+        // Save cache information
+        final CacheManager cacheManager = getCacheManager();
+        if (cacheManager != null){
+            cacheManager.saveDetails(httpResponse, res);
+        }
+
+        // Follow redirects and download page resources if appropriate:
+        return resultProcessing(areFollowingRedirect, frameDepth, res);
+    }
+
+    /**
+     * @param url the target URL
+     * @return false if the request needs features only provided by {@link HTTPHC4Impl}
+     */
+    protected boolean isNioSupported(URL url) {
+        if (getAutoRedirects() || CPS_HTTP > 0 || CPS_HTTPS > 0) {
+            return false;
+        }
+        if (isStaticProxy(url.getHost()) || isDynamicProxy(getProxyHost(), getProxyPortInt())) {
+            return false;
+        }
+        AuthManager authManager = getAuthManager();
+        return authManager == null || authManager.getSubjectForUrl(url) == null;
+    }
+
+    /**
+     * Add a preemptive Basic Authorization header if the AuthManager has credentials for the URL
+     * @param request the request
+     * @param url the URL
+     * @param authManager the {@link AuthManager}, may be null
+     */
+    private void setConnectionAuthorization(HttpRequestBase request, URL url, AuthManager authManager) {
+        if (authManager != null) {
+            Authorization auth = authManager.getAuthForURL(url);
+            if (auth != null) {
+                request.setHeader(HTTPConstants.HEADER_AUTHORIZATION, auth.toBasicHeader());
+            }
+        }
+    }
+
+    /**
+     * Complete the request headers: Host, and the entity headers of requests having one
+     * @param url target URL
+     * @param httpRequest request with its headers and entity set up
+     * @return the body to send, null if none
+     * @throws IOException if the entity cannot be read
+     */
+    protected byte[] prepareEntity(URL url, HttpRequestBase httpRequest) throws IOException {
+        @SuppressWarnings("deprecation") // Set by HTTPHC4Impl in the deprecated HttpParams
+        HttpHost virtualHost = (HttpHost) httpRequest.getParams()
+                .getParameter(org.apache.http.client.params.ClientPNames.VIRTUAL_HOST);
+        String host;
+        if (virtualHost != null) {
+            host = virtualHost.toHostString();
+        } else {
+            int port = url.getPort();
+            host = port == -1 || port == url.getDefaultPort() ? url.getHost() : url.getHost() + ":" + port;
+        }
+        httpRequest.setHeader(HTTPConstants.HEADER_HOST, host);
+
+        byte[] body = null;
+        if (httpRequest instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) httpRequest).getEntity();
+            if (entity != null) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                entity.writeTo(bos);
+                body = bos.toByteArray();
+                if (entity.getContentType() != null && !httpRequest.containsHeader(HTTPConstants.HEADER_CONTENT_TYPE)) {
+                    httpRequest.addHeader(entity.getContentType());
+                }
+                if (entity.getContentEncoding() != null && !httpRequest.containsHeader(HTTPConstants.HEADER_CONTENT_ENCODING)) {
+                    httpRequest.addHeader(entity.getContentEncoding());
+                }
+            }
+            httpRequest.setHeader(HTTPConstants.HEADER_CONTENT_LENGTH, Integer.toString(body == null ? 0 : body.length));
+        }
+        return body;
+    }
+
+    /**
+     * Serialize an HTTP/1.1 request
+     * @param httpRequest request with all its headers
+     * @param body the body, may be null
+     * @return the request bytes, ready to be sent
+     */
+    private static byte[] serializeRequest(HttpRequestBase httpRequest, byte[] body) {
+        URI uri = httpRequest.getURI();
+        StringBuilder head = new StringBuilder(256);
+        head.append(httpRequest.getMethod()).append(' ');
+        head.append(getRequestTarget(uri));
+        head.append(' ').append(HTTP_1_1).append(CRLF);
+        for (Header header : httpRequest.getAllHeaders()) {
+            head.append(header.getName()).append(": ").append(header.getValue()).append(CRLF); // $NON-NLS-1$
+        }
+        head.append(CRLF);
+
+        byte[] headBytes = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+        if (body == null || body.length == 0) {
+            return headBytes;
+        }
+        byte[] request = new byte[headBytes.length + body.length];
+        System.arraycopy(headBytes, 0, request, 0, headBytes.length);
+        System.arraycopy(body, 0, request, headBytes.length, body.length);
+        return request;
+    }
+
+    /**
+     * @param uri the request URI
+     * @return path and query of the URI, in origin form
+     */
+    static String getRequestTarget(URI uri) {
+        String path = uri.getRawPath();
+        StringBuilder target = new StringBuilder(path == null || path.isEmpty() ? "/" : path); // $NON-NLS-1$
+        if (uri.getRawQuery() != null) {
+            target.append('?').append(uri.getRawQuery());
+        }
+        return target.toString();
+    }
+
+    /**
+     * @param httpRequest the request
+     * @param res the result, its request headers are completed with the local address used
+     * @return the local address to bind to, null for any
+     */
+    protected InetAddress getLocalAddress(HttpRequestBase httpRequest, HTTPSampleResult res) {
+        @SuppressWarnings("deprecation") // Set by HTTPHC4Impl in the deprecated HttpParams
+        final InetAddress localAddr = (InetAddress) httpRequest.getParams()
+                .getParameter(org.apache.http.conn.params.ConnRoutePNames.LOCAL_ADDRESS);
+        if (localAddr != null) {
+            res.setRequestHeaders(res.getRequestHeaders()
+                    + HEADER_LOCAL_ADDRESS + ": " + localAddr.toString() + "\n"); // $NON-NLS-1$ $NON-NLS-2$
+        }
+        return localAddr;
+    }
+
+    /**
+     * Run the exchange on a kept-alive connection if there is one; if that connection turns
+     * out to have been closed by the server, the exchange is retried once on a new connection.
+     */
+    private NioHttpExchange execute(URL url, HttpRequestBase httpRequest, byte[] request, HTTPSampleResult res)
+            throws IOException {
+        final InetAddress localAddr = getLocalAddress(httpRequest, res);
+        boolean head = HTTPConstants.HEAD.equals(httpRequest.getMethod());
+        int responseTimeout = getResponseTimeout() > 0 ? getResponseTimeout() : SO_TIMEOUT;
+        boolean keepAlive = getUseKeepAlive();
+        String key = url.getProtocol() + "://" + url.getHost() + ":" + getPort(url) + "@" + localAddr; // $NON-NLS-1$
+        Map<String, NioHttpConnection> connections = CONNECTIONS.get();
+        if (resetSSLContext && HTTPConstants.PROTOCOL_HTTPS.equalsIgnoreCase(url.getProtocol())) {
+            closeConnections(true);
+            ((JsseSSLManager) SSLManager.getInstance()).resetContext();
+            resetSSLContext = false;
+        }
+
+        NioHttpConnection connection = connections.get(key);
+        if (connection != null && !connection.isOpen()) {
+            connection = null;
+        }
+        while (true) {
+            if (connection == null) {
+                connection = openConnection(url, localAddr);
+                if (keepAlive) {
+                    connections.put(key, connection);
+                }
+            }
+            NioHttpExchange exchange = new NioHttpExchange(request, head, res, getConnectTimeout(), responseTimeout);
+            currentConnection = connection;
+            connection.execute(exchange);
+            try {
+                exchange.await();
+                if (!keepAlive || !connection.isOpen()) {
+                    connection.close();
+                    connections.remove(key);
+                }
+                return exchange;
+            } catch (IOException e) {
+                connections.remove(key);
+                if (!exchange.isRetriable()) {
+                    throw e;
+                }
+                log.debug("Kept-alive connection closed by server, retrying on a new connection", e);
+                connection = null;
+            }
+        }
+    }
+
+    static int getPort(URL url) {
+        return url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+    }
+
+    private NioHttpConnection openConnection(URL url, InetAddress localAddr) throws IOException {
+        String host = url.getHost();
+        int port = getPort(url);
+        SSLEngine sslEngine = null;
+        if (HTTPConstants.PROTOCOL_HTTPS.equalsIgnoreCase(url.getProtocol())) {
+            sslEngine = createSSLEngine(host, port);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Opening NIO connection to " + url.getProtocol() + "://" + host + ":" + port);
+        }
+        return new NioHttpConnection(NioSelectorPool.getInstance().nextLoop(),
+                new InetSocketAddress(resolve(host), port), localAddr, sslEngine);
+    }
+
+    /**
+     * @param host host name
+     * @return its address, resolved by the DNS Cache Manager if there is one
+     * @throws IOException if the host cannot be resolved
+     */
+    protected InetAddress resolve(String host) throws IOException {
+        DnsResolver resolver = this.testElement.getDNSResolver();
+        if (resolver != null) {
+            return resolver.resolve(host)[0];
+        }
+        return InetAddress.getByName(host);
+    }
+
+    /**
+     * Create a client mode engine from the SSL context of the current thread,
+     * which must therefore be the sampler thread
+     * @param host server host name
+     * @param port server port
+     * @return the engine, with the protocols of <code>https.socket.protocols</code> enabled
+     * @throws IOException if the SSL context cannot be created
+     */
+    protected SSLEngine createSSLEngine(String host, int port) throws IOException {
+        SSLEngine sslEngine;
+        try {
+            sslEngine = ((JsseSSLManager) SSLManager.getInstance()).getContext().createSSLEngine(host, port);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not create SSL context", e);
+        }
+        sslEngine.setUseClientMode(true);
+        if (HTTPS_SOCKET_PROTOCOLS.length() > 0) {
+            try {
+                sslEngine.setEnabledProtocols(HTTPS_SOCKET_PROTOCOLS.split(" ")); // $NON-NLS-1$
+            } catch (IllegalArgumentException e) {
+                log.warn("Could not set protocol list: " + HTTPS_SOCKET_PROTOCOLS + ".");
+            }
+        }
+        return sslEngine;
+    }
+
+    /**
+     * Decode the response body according to its Content-Encoding, as HttpClient does
+     * @param response the response
+     * @param body the body as received
+     * @return stream of the decoded body
+     * @throws IOException if the body cannot be decoded
+     */
+    static InputStream decode(HttpResponse response, byte[] body) throws IOException {
+        InputStream in = new ByteArrayInputStream(body);
+        Header contentEncoding = response.getLastHeader(HTTPConstants.HEADER_CONTENT_ENCODING);
+        if (contentEncoding == null || body.length == 0) {
+            return in;
+        }
+        String encoding = contentEncoding.getValue().trim();
+        if (HTTPConstants.ENCODING_GZIP.equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding)) { // $NON-NLS-1$
+            return new GZIPInputStream(in);
+        }
+        if ("deflate".equalsIgnoreCase(encoding)) { // $NON-NLS-1$
+            return new DeflateInputStream(in);
+        }
+        return in;
+    }
+
+    /**
+     * Close the connections of the current thread
+     * @param secureOnly true to only close HTTPS connections
+     */
+    private static void closeConnections(boolean secureOnly) {
+        Iterator<NioHttpConnection> it = CONNECTIONS.get().values().iterator();
+        while (it.hasNext()) {
+            NioHttpConnection connection = it.next();
+            if (!secureOnly || connection.isSecure()) {
+                connection.close();
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    protected void notifyFirstSampleAfterLoopRestart() {
+        super.notifyFirstSampleAfterLoopRestart();
+        resetSSLContext = !USE_CACHED_SSL_CONTEXT;
+    }
+
+    @Override
+    protected void threadFinished() {
+        super.threadFinished();
+        closeConnections(false);
+    }
+
+    @Override
+    public boolean interrupt() {
+        NioHttpConnection connection = currentConnection;
+        if (connection != null) {
+            currentConnection = null; // don't try twice
+            connection.abort(new InterruptedIOException("Request aborted"));
+            return true;
+        }
+        return super.interrupt();
+    }
+}
@@ -84,6 +84,19 @@ public class HTTPSampleResult extends SampleResult {
         redirectLocation=res.redirectLocation;
     }
 
+    /**
+     * {@inheritDoc}
+     * @since 3.1
+     */
+    @Override
+    public void recycle() {
+        super.recycle();
+        cookies = "";
+        method = null;
+        redirectLocation = null;
+        queryString = "";
+    }
+
     public void setHTTPMethod(String method) {
         this.method = method;
     }
@@ -1226,7 +1226,7 @@ public abstract class HTTPSamplerBase extends AbstractSampler
             }
 
             // For concurrent get resources
-            final List<Callable<AsynSamplerResultHolder>> list = new ArrayList<>();
+            final List<URL> concurrentUrls = new ArrayList<>();
 
             int maxConcurrentDownloads = CONCURRENT_POOL_SIZE; // init with default value
             boolean isConcurrentDwn = isConcurrentDwn();
@@ -1278,7 +1278,7 @@ public abstract class HTTPSamplerBase extends AbstractSampler
 
                         if (isConcurrentDwn) {
                             // if concurrent download emb. resources, add to a list for async gets later
-                            list.add(new ASyncSample(url, HTTPConstants.GET, false, frameDepth + 1, getCookieManager(), this));
+                            concurrentUrls.add(url);
                         } else {
                             // default: serial download embedded resources
                             HTTPSampleResult binRes = sample(url, HTTPConstants.GET, false, frameDepth + 1);
@@ -1294,7 +1294,21 @@ public abstract class HTTPSamplerBase extends AbstractSampler
             }
 
             // IF for download concurrent embedded resources
-            if (isConcurrentDwn && !list.isEmpty()) {
+            if (isConcurrentDwn && !concurrentUrls.isEmpty()) {
+                // first let the implementation multiplex what it can over its connections
+                List<HTTPSampleResult> multiplexed = sampleMultiplexed(concurrentUrls, frameDepth + 1);
+                if (multiplexed != null) {
+                    for (HTTPSampleResult binRes : multiplexed) {
+                        res.addSubResult(binRes);
+                        setParentSampleSuccess(res, res.isSuccessful() && (binRes == null || binRes.isSuccessful()));
+                    }
+                }
+            }
+            if (isConcurrentDwn && !concurrentUrls.isEmpty()) {
+                final List<Callable<AsynSamplerResultHolder>> list = new ArrayList<>(concurrentUrls.size());
+                for (URL url : concurrentUrls) {
+                    list.add(new ASyncSample(url, HTTPConstants.GET, false, frameDepth + 1, getCookieManager(), this));
+                }
 
                 ResourcesDownloader resourcesDownloader = ResourcesDownloader.getInstance();
 
@@ -1328,6 +1342,24 @@ public abstract class HTTPSamplerBase extends AbstractSampler
         return res;
     }
 
+    /**
+     * Download embedded resources concurrently over connections able to multiplex
+     * requests, such as HTTP/2 ones, instead of using the {@link ResourcesDownloader} pool.
+     * <p>
+     * This implementation downloads nothing.
+     *
+     * @param urls
+     *            the resources to download; those downloaded are removed from the list,
+     *            the remaining ones are downloaded by the pool
+     * @param frameDepth
+     *            Depth of the resources in the frame structure
+     * @return the results of the downloaded resources, which may contain null for
+     *         cached resources, or null if nothing was downloaded
+     */
+    protected List<HTTPSampleResult> sampleMultiplexed(List<URL> urls, int frameDepth) {
+        return null;
+    }
+
     /**
      * Gets parser from {@link HTTPSampleResult#getMediaType()}.
      * Returns null if no parser defined for it
@@ -1430,6 +1462,8 @@ public abstract class HTTPSamplerBase extends AbstractSampler
      */
     @Override
     public void testEnded() {
+        ResponseBufferPool.logStatistics();
+        ResponseBufferPool.clear();
     }
 
     /**
@@ -1743,6 +1777,12 @@ public abstract class HTTPSamplerBase extends AbstractSampler
      * <p>
      * For the MD5 case, the result byte count is set to the size of the original response.
      * <p>
+     * When no element in the scope of the sampler needs the response data and embedded resources
+     * are not parsed, the response is only counted: the result byte count and body size are set
+     * to the size of the response and an empty array is returned.
+     * When they only need its start, only this prefix is kept and returned, the result byte count
+     * and body size being set to the size of the whole response.
+     * <p>
      * Closes the inputStream
      *
      * @param sampleResult sample to store information about the response into
@@ -1752,10 +1792,8 @@ public abstract class HTTPSamplerBase extends AbstractSampler
      * @throws IOException if reading the result fails
      */
     public byte[] readResponse(SampleResult sampleResult, InputStream in, int length) throws IOException {
+        byte[] buffer = null;
         try {
-            byte[] readBuffer = new byte[8192]; // 8kB is the (max) size to have the latency ('the first packet')
-            int bufferSize = 32;// Enough for MD5
-
             MessageDigest md = null;
             boolean asMD5 = useMD5();
             if (asMD5) {
@@ -1765,42 +1803,91 @@ public abstract class HTTPSamplerBase extends AbstractSampler
                     log.error("Should not happen - could not find MD5 digest", e);
                     asMD5 = false;
                 }
+            }
+            // Only count the response or keep its start when that is all the elements in scope need,
+            // see SampleResultConsumer and ResponseDataPrefixConsumer
+            boolean discard = false;
+            int maxSize = 0;
+            if (!asMD5 && !isImageParser()) {
+                JMeterContext context = JMeterContextService.getContext();
+                discard = !context.isResponseDataNeeded();
+                maxSize = context.getResponseDataMaxSize();
+            }
+            boolean limited = !discard && maxSize > 0;
+            byte[] readBuffer;
+            if (asMD5 || discard) {
+                readBuffer = new byte[8192]; // 8kB is the (max) size to have the latency ('the first packet')
             } else {
-                if (length <= 0) {// may also happen if long value > int.max
-                    bufferSize = 4 * 1024;
-                } else {
-                    bufferSize = length;
+                // Read in place into a pooled buffer, so the data is only copied once
+                int bufferSize = length > 0 ? length : 4 * 1024; // length may also be <= 0 if long value > int.max
+                if (limited) {
+                    bufferSize = Math.min(bufferSize, maxSize);
                 }
+                buffer = ResponseBufferPool.acquire(bufferSize);
+                readBuffer = buffer;
             }
-            ByteArrayOutputStream w = new ByteArrayOutputStream(bufferSize);
-            int bytesRead = 0;
+            int kept = 0; // number of bytes kept at the start of the buffer
             int totalBytes = 0;
+            int bytesRead = 0;
             boolean first = true;
-            while ((bytesRead = in.read(readBuffer)) > -1) {
+            while (true) {
+                int offset = 0;
+                if (buffer != null && readBuffer == buffer) {
+                    // The bytes after the kept prefix are overwritten by the next reads
+                    offset = limited ? Math.min(kept, maxSize) : kept;
+                    if (offset == buffer.length && limited && kept == maxSize) {
+                        // The prefix is complete, only count the rest of the response
+                        readBuffer = new byte[8192];
+                        offset = 0;
+                    } else if (offset == buffer.length) {
+                        // Only grow the buffer if the response is longer than it
+                        int next = in.read();
+                        if (next < 0) {
+                            break;
+                        }
+                        buffer = ResponseBufferPool.grow(buffer, kept);
+                        readBuffer = buffer;
+                        buffer[offset] = (byte) next;
+                        totalBytes++;
+                        kept = limited ? Math.min(offset + 1, maxSize) : kept + 1;
+                        continue;
+                    }
+                }
+                bytesRead = in.read(readBuffer, offset, readBuffer.length - offset);
+                if (bytesRead < 0) {
+                    break;
+                }
                 if (first) {
                     sampleResult.latencyEnd();
                     first = false;
                 }
+                totalBytes += bytesRead;
                 if (asMD5 && md != null) {
                     md.update(readBuffer, 0, bytesRead);
-                    totalBytes += bytesRead;
-                } else {
-                    w.write(readBuffer, 0, bytesRead);
+                } else if (buffer != null && readBuffer == buffer) {
+                    kept = limited ? Math.min(offset + bytesRead, maxSize) : kept + bytesRead;
                 }
             }
             if (first) { // Bug 46838 - if there was no data, still need to set latency
                 sampleResult.latencyEnd();
             }
             in.close();
-            w.flush();
+            if (discard || limited) {
+                sampleResult.setBytes(totalBytes);
+                sampleResult.setBodySize(totalBytes);
+            }
+            if (discard) {
+                return SampleResult.EMPTY_BA;
+            }
             if (asMD5 && md != null) {
-                byte[] md5Result = md.digest();
-                w.write(JOrphanUtils.baToHexBytes(md5Result));
                 sampleResult.setBytes(totalBytes);
+                return JOrphanUtils.baToHexBytes(md.digest());
             }
-            w.close();
-            return w.toByteArray();
+            return Arrays.copyOf(buffer, kept);
         } finally {
+            if (buffer != null) {
+                ResponseBufferPool.release(buffer);
+            }
             IOUtils.closeQuietly(in);
         }
     }
@@ -42,6 +42,10 @@ public final class HTTPSamplerFactory {
     public static final String IMPL_HTTP_CLIENT3_1 = "HttpClient3.1"; // $NON-NLS-1$
     
     public static final String IMPL_JAVA = "Java"; // $NON-NLS-1$
+
+    public static final String IMPL_NIO = "Nio"; // $NON-NLS-1$
+
+    public static final String IMPL_HTTP2 = "HTTP2"; // $NON-NLS-1$
     //- JMX
 
     public static final String DEFAULT_CLASSNAME =
@@ -63,7 +67,7 @@ public final class HTTPSamplerFactory {
     /**
      * Create a new instance of the required sampler type
      *
-     * @param alias HTTP_SAMPLER or HTTP_SAMPLER_APACHE or IMPL_HTTP_CLIENT3_1 or IMPL_HTTP_CLIENT4
+     * @param alias HTTP_SAMPLER or HTTP_SAMPLER_APACHE or IMPL_HTTP_CLIENT3_1 or IMPL_HTTP_CLIENT4 or IMPL_NIO or IMPL_HTTP2
      * @return the appropriate sampler
      * @throws UnsupportedOperationException if alias is not recognised
      */
@@ -80,11 +84,17 @@ public final class HTTPSamplerFactory {
         if (alias.equals(IMPL_HTTP_CLIENT4)) {
             return new HTTPSamplerProxy(IMPL_HTTP_CLIENT4);
         }
+        if (alias.equals(IMPL_NIO)) {
+            return new HTTPSamplerProxy(IMPL_NIO);
+        }
+        if (alias.equals(IMPL_HTTP2)) {
+            return new HTTPSamplerProxy(IMPL_HTTP2);
+        }
         throw new IllegalArgumentException("Unknown sampler type: '" + alias+"'");
     }
 
     public static String[] getImplementations(){
-        return new String[]{IMPL_HTTP_CLIENT4,IMPL_HTTP_CLIENT3_1,IMPL_JAVA};
+        return new String[]{IMPL_HTTP_CLIENT4,IMPL_HTTP_CLIENT3_1,IMPL_JAVA,IMPL_NIO,IMPL_HTTP2};
     }
 
     public static HTTPAbstractImpl getImplementation(String impl, HTTPSamplerBase base){
@@ -100,6 +110,10 @@ public final class HTTPSamplerFactory {
             return new HTTPHC3Impl(base);                
         } else if (IMPL_HTTP_CLIENT4.equals(impl)) {
             return new HTTPHC4Impl(base);
+        } else if (IMPL_NIO.equals(impl)) {
+            return new HTTPNioImpl(base);
+        } else if (IMPL_HTTP2.equals(impl)) {
+            return new HTTP2Impl(base);
         } else {
             throw new IllegalArgumentException("Unknown implementation type: '"+impl+"'");
         }
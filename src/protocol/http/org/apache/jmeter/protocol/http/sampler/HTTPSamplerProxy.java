@@ -19,6 +19,7 @@
 package org.apache.jmeter.protocol.http.sampler;
 
 import java.net.URL;
+import java.util.List;
 
 import org.apache.jmeter.engine.event.LoopIterationEvent;
 import org.apache.jmeter.samplers.Interruptible;
@@ -74,6 +75,15 @@ public final class HTTPSamplerProxy extends HTTPSamplerBase implements Interrupt
         return impl.sample(u, method, areFollowingRedirect, depth);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected List<HTTPSampleResult> sampleMultiplexed(List<URL> urls, int frameDepth) {
+        if (impl == null) {
+            return null;
+        }
+        return impl.sampleMultiplexed(urls, frameDepth);
+    }
+
     // N.B. It's not po ssible to forward threadStarted() to the implementation class.
     // This is because Config items are not processed until later, and HTTPDefaults may define the implementation
 
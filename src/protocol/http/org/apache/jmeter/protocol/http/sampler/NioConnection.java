@@ -0,0 +1,531 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLHandshakeException;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.apache.log.Logger;
+
+/**
+ * Non-blocking connection, plain or TLS, driven by a {@link NioSelectorPool.SelectorLoop}.
+ * <p>
+ * This class moves bytes, subclasses implement the protocol through the
+ * <code>on*</code> callbacks. Except where noted, methods must only be called
+ * from the loop thread, where all socket and {@link SSLEngine} operations run.
+ * @since 3.1
+ */
+abstract class NioConnection {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    final NioSelectorPool.SelectorLoop loop;
+
+    private final InetSocketAddress remoteAddress;
+
+    private final InetAddress localAddress;
+
+    private final SSLEngine sslEngine; // null for plain connections
+
+    private volatile boolean closed;
+
+    // Fields below are only accessed from the loop thread
+    private SocketChannel channel;
+
+    private SelectionKey selectionKey;
+
+    private boolean channelConnected;
+
+    private boolean connected; // channel connected and TLS handshake done
+
+    private boolean endOfStream;
+
+    private boolean flushing;
+
+    private boolean flushAgain;
+
+    private int handshakeTimeout;
+
+    private long deadline;
+
+    private final Queue<ByteBuffer> outbound = new ArrayDeque<>();
+
+    private ByteBuffer readBuffer; // plain: read data; TLS: application data, both in write mode
+
+    private ByteBuffer netIn; // TLS data received, in write mode
+
+    private ByteBuffer netOut; // TLS data to send, in read mode
+
+    /**
+     * @param loop the selector loop running the connection
+     * @param remoteAddress resolved address of the server
+     * @param localAddress local address to bind to, may be null
+     * @param sslEngine client mode engine for HTTPS, null for HTTP
+     */
+    NioConnection(NioSelectorPool.SelectorLoop loop, InetSocketAddress remoteAddress,
+            InetAddress localAddress, SSLEngine sslEngine) {
+        this.loop = loop;
+        this.remoteAddress = remoteAddress;
+        this.localAddress = localAddress;
+        this.sslEngine = sslEngine;
+    }
+
+    /**
+     * Called once the connection is established and, for TLS, the handshake is done
+     * @throws IOException to fail the connection
+     */
+    abstract void onConnected() throws IOException;
+
+    /**
+     * Called with received application data, which must be consumed before returning
+     * @param data received data, in read mode
+     * @throws IOException to fail the connection
+     */
+    abstract void onData(ByteBuffer data) throws IOException;
+
+    /**
+     * Called when the server has closed the connection, which is closed on return
+     * @throws IOException to fail the connection
+     */
+    abstract void onEndOfStream() throws IOException;
+
+    /**
+     * Called once the connection has been closed because of an error
+     * @param cause the error
+     */
+    abstract void onFailure(IOException cause);
+
+    /**
+     * May be called from any thread
+     * @return false once the connection has been closed, it must then not be used any more
+     */
+    boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * May be called from any thread
+     * @return true if this is an HTTPS connection
+     */
+    boolean isSecure() {
+        return sslEngine != null;
+    }
+
+    SSLEngine getSSLEngine() {
+        return sslEngine;
+    }
+
+    InetSocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    /**
+     * @return true once {@link #connect(int, int)} has been called
+     */
+    boolean isStarted() {
+        return channel != null;
+    }
+
+    /**
+     * @return true once {@link #onConnected()} has been called
+     */
+    boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Abort the connection, may be called from any thread
+     * @param cause passed to {@link #onFailure(IOException)}
+     */
+    void abort(final IOException cause) {
+        closed = true;
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                fail(cause);
+            }
+        });
+    }
+
+    /**
+     * Close the connection, may be called from any thread
+     */
+    void close() {
+        closed = true;
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeChannel();
+            }
+        });
+    }
+
+    /**
+     * @return {@link System#nanoTime()} at which {@link #checkTimeout(long)} must be called, 0 if none
+     */
+    long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Fail the connection if its deadline has passed, called by the loop when the connection is watched
+     * @param now current {@link System#nanoTime()}
+     */
+    void checkTimeout(long now) {
+        if (deadline != 0 && now - deadline >= 0) {
+            if (channel != null && channel.isConnectionPending()) {
+                fail(new ConnectTimeoutException("Connect to " + remoteAddress + " timed out")); // $NON-NLS-1$
+            } else {
+                fail(new SocketTimeoutException("Read timed out")); // $NON-NLS-1$
+            }
+        }
+    }
+
+    /**
+     * @param timeout milliseconds from now, 0 for no deadline
+     */
+    void setDeadline(int timeout) {
+        deadline = timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+    }
+
+    /**
+     * Start connecting, {@link #onConnected()} is called when done
+     * @param connectTimeout connect timeout in milliseconds, 0 for none
+     * @param handshakeTimeout TLS handshake timeout in milliseconds, 0 for none
+     * @throws IOException if the connection cannot be started
+     */
+    void connect(int connectTimeout, int handshakeTimeout) throws IOException {
+        this.handshakeTimeout = handshakeTimeout;
+        channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, Boolean.TRUE);
+        if (localAddress != null) {
+            channel.bind(new InetSocketAddress(localAddress, 0));
+        }
+        selectionKey = channel.register(loop.getSelector(), SelectionKey.OP_CONNECT, this);
+        setDeadline(connectTimeout);
+        if (channel.connect(remoteAddress)) {
+            channelConnected();
+        }
+    }
+
+    /**
+     * Queue data to be sent, and send as much as possible without blocking
+     * @param data data to send, in read mode; must not be modified until sent
+     * @throws IOException if writing fails
+     */
+    void send(ByteBuffer data) throws IOException {
+        outbound.add(data);
+        flush();
+    }
+
+    /**
+     * Handle readiness of the channel
+     * @param readyOps ready operations of the selection key
+     */
+    void handle(int readyOps) {
+        try {
+            if ((readyOps & SelectionKey.OP_CONNECT) != 0) {
+                if (channel.finishConnect()) {
+                    channelConnected();
+                }
+                return;
+            }
+            if ((readyOps & SelectionKey.OP_READ) != 0) {
+                read();
+            }
+            flush();
+        } catch (IOException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            fail(new IOException(e));
+        }
+    }
+
+    private void channelConnected() throws IOException {
+        channelConnected = true;
+        if (sslEngine == null) {
+            readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            connected = true;
+            onConnected();
+        } else {
+            setDeadline(handshakeTimeout);
+            int packetSize = sslEngine.getSession().getPacketBufferSize();
+            netIn = ByteBuffer.allocate(packetSize);
+            netOut = ByteBuffer.allocate(packetSize);
+            netOut.flip();
+            readBuffer = ByteBuffer.allocate(sslEngine.getSession().getApplicationBufferSize());
+            sslEngine.beginHandshake();
+        }
+        flush();
+    }
+
+    private void read() throws IOException {
+        if (sslEngine == null) {
+            readBuffer.clear();
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                endOfStream = true;
+                endOfStream();
+            } else if (read > 0) {
+                readBuffer.flip();
+                onData(readBuffer);
+            }
+        } else {
+            int read = channel.read(netIn);
+            if (read < 0) {
+                endOfStream = true;
+                try {
+                    sslEngine.closeInbound();
+                } catch (SSLException e) {
+                    // server did not send close_notify, handled as a normal end of stream
+                }
+            }
+        }
+    }
+
+    /**
+     * Write queued data and, for TLS, run the engine as far as possible without blocking.
+     * Reentrant calls, from the callbacks, are deferred to the outer call.
+     */
+    private void flush() throws IOException {
+        if (flushing) {
+            flushAgain = true;
+            return;
+        }
+        flushing = true;
+        try {
+            do {
+                flushAgain = false;
+                if (closed || !channelConnected) {
+                    return;
+                }
+                if (sslEngine == null) {
+                    writePlain();
+                } else {
+                    processTls();
+                }
+            } while (flushAgain);
+        } finally {
+            flushing = false;
+        }
+        updateInterest();
+    }
+
+    private void updateInterest() {
+        if (closed || !selectionKey.isValid()) {
+            return;
+        }
+        boolean pendingWrite = sslEngine == null ? !outbound.isEmpty() : netOut.hasRemaining();
+        selectionKey.interestOps(pendingWrite ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    private void writePlain() throws IOException {
+        ByteBuffer data;
+        while ((data = outbound.peek()) != null) {
+            channel.write(data);
+            if (data.hasRemaining()) {
+                return;
+            }
+            outbound.poll();
+        }
+    }
+
+    private void processTls() throws IOException {
+        while (!closed) {
+            if (netOut.hasRemaining()) {
+                channel.write(netOut);
+                if (netOut.hasRemaining()) {
+                    return;
+                }
+            }
+            switch (sslEngine.getHandshakeStatus()) {
+                case NEED_TASK:
+                    Runnable task;
+                    while ((task = sslEngine.getDelegatedTask()) != null) {
+                        task.run();
+                    }
+                    continue;
+                case NEED_WRAP:
+                    wrap(EMPTY);
+                    continue;
+                case NEED_UNWRAP:
+                    if (!unwrap()) {
+                        checkEndOfStream();
+                        return;
+                    }
+                    continue;
+                default: // NOT_HANDSHAKING or FINISHED
+                    break;
+            }
+            if (!connected) {
+                connected = true;
+                setDeadline(0);
+                onConnected();
+                continue;
+            }
+            ByteBuffer data = outbound.peek();
+            if (data != null) {
+                wrap(data);
+                if (!data.hasRemaining()) {
+                    outbound.poll();
+                }
+            } else if (!unwrap()) {
+                checkEndOfStream();
+                return;
+            }
+        }
+    }
+
+    private void checkEndOfStream() throws IOException {
+        if (endOfStream && !closed) {
+            endOfStream();
+        }
+    }
+
+    private void wrap(ByteBuffer source) throws IOException {
+        netOut.compact();
+        SSLEngineResult result;
+        try {
+            result = sslEngine.wrap(source, netOut);
+        } finally {
+            netOut.flip();
+        }
+        if (result.getStatus() != SSLEngineResult.Status.OK) {
+            throw new SSLException("Unexpected TLS wrap status: " + result.getStatus());
+        }
+    }
+
+    /**
+     * Decrypt received data and pass the application data to {@link #onData(ByteBuffer)}
+     * @return true if some progress was made, false if more data must be read
+     */
+    private boolean unwrap() throws IOException {
+        netIn.flip();
+        SSLEngineResult result;
+        try {
+            result = sslEngine.unwrap(netIn, readBuffer);
+        } finally {
+            netIn.compact();
+        }
+        switch (result.getStatus()) {
+            case BUFFER_UNDERFLOW:
+                int packetSize = sslEngine.getSession().getPacketBufferSize();
+                if (netIn.capacity() < packetSize) {
+                    netIn = enlarge(netIn, packetSize);
+                }
+                return false;
+            case BUFFER_OVERFLOW:
+                if (!deliver()) {
+                    readBuffer = enlarge(readBuffer, sslEngine.getSession().getApplicationBufferSize());
+                }
+                return true;
+            case CLOSED:
+                deliver();
+                endOfStream = true;
+                return false;
+            default: // OK
+                deliver();
+                return result.bytesConsumed() > 0 || result.bytesProduced() > 0;
+        }
+    }
+
+    /**
+     * Pass decrypted data to {@link #onData(ByteBuffer)}
+     * @return true if some data was delivered
+     */
+    private boolean deliver() throws IOException {
+        readBuffer.flip();
+        boolean delivered = readBuffer.hasRemaining();
+        try {
+            if (delivered && !closed) {
+                onData(readBuffer);
+            }
+        } finally {
+            readBuffer.clear();
+        }
+        return delivered;
+    }
+
+    private static ByteBuffer enlarge(ByteBuffer buffer, int minCapacity) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(minCapacity, buffer.capacity() * 2));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    private void endOfStream() throws IOException {
+        if (sslEngine != null && !connected) {
+            throw new SSLHandshakeException("Remote host closed connection during handshake");
+        }
+        try {
+            onEndOfStream();
+        } finally {
+            closeChannel();
+        }
+    }
+
+    /**
+     * Close the connection and report the error to the subclass
+     * @param cause the error
+     */
+    void fail(IOException cause) {
+        closeChannel();
+        onFailure(cause);
+    }
+
+    /**
+     * Close the connection, without calling any callback
+     */
+    void closeChannel() {
+        closed = true;
+        deadline = 0;
+        loop.unwatch(this);
+        if (selectionKey != null) {
+            selectionKey.cancel();
+        }
+        if (channel != null && channel.isOpen()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Closing connection to " + remoteAddress);
+            }
+            JOrphanUtils.closeQuietly(channel);
+        }
+    }
+}
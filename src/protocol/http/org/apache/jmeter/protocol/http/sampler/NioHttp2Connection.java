@@ -0,0 +1,617 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.Header;
+import org.apache.jmeter.protocol.http.util.HpackDecoder;
+import org.apache.jmeter.protocol.http.util.HpackEncoder;
+import org.apache.jmeter.protocol.http.util.Http2Frame;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Non-blocking HTTP/2 client connection, over TLS with ALPN or in clear text
+ * with prior knowledge (h2c), driven by a {@link NioSelectorPool.SelectorLoop}.
+ * <p>
+ * Streams can be started from any thread with {@link #execute(NioHttp2Stream)};
+ * they are multiplexed over the connection within the limits set by the server,
+ * the others wait for a stream to complete.
+ * Server push is disabled; flow control windows are large, as in browsers.
+ * @since 3.1
+ */
+final class NioHttp2Connection extends NioConnection {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    /** Receive window announced for each stream */
+    static final int STREAM_WINDOW = 1 << 20;
+
+    /** Receive window of the connection */
+    static final int CONNECTION_WINDOW = 1 << 24;
+
+    private static final int INITIAL_BUFFER_SIZE = 2 * (Http2Frame.DEFAULT_MAX_FRAME_SIZE + Http2Frame.HEADER_LENGTH);
+
+    private static final Method SET_APPLICATION_PROTOCOLS;
+
+    private static final Method GET_APPLICATION_PROTOCOL;
+
+    static {
+        Method setter = null;
+        Method getter = null;
+        try {
+            // Java 9+ and 8u252+
+            setter = SSLParameters.class.getMethod("setApplicationProtocols", String[].class); // $NON-NLS-1$
+            getter = SSLEngine.class.getMethod("getApplicationProtocol"); // $NON-NLS-1$
+        } catch (NoSuchMethodException e) {
+            log.info("ALPN is not available in Java " + System.getProperty("java.version") // $NON-NLS-1$
+                    + ", HTTPS requests will use HTTP/1.1");
+        }
+        SET_APPLICATION_PROTOCOLS = setter;
+        GET_APPLICATION_PROTOCOL = getter;
+    }
+
+    /**
+     * Raised when the server did not select HTTP/2 during the TLS handshake
+     */
+    static final class ProtocolNotNegotiatedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ProtocolNotNegotiatedException(String message) {
+            super(message);
+        }
+    }
+
+    private final HpackEncoder encoder = new HpackEncoder();
+
+    private final HpackDecoder decoder = new HpackDecoder();
+
+    private volatile boolean goingAway;
+
+    // Fields below are only accessed from the loop thread
+    private final Map<Integer, NioHttp2Stream> streams = new HashMap<>();
+
+    private final Queue<NioHttp2Stream> pending = new ArrayDeque<>();
+
+    private ByteBuffer inbound = ByteBuffer.allocate(INITIAL_BUFFER_SIZE); // in write mode
+
+    private int nextStreamId = 1;
+
+    private boolean used;
+
+    private int maxConcurrentStreams = Integer.MAX_VALUE;
+
+    private int initialSendWindow = Http2Frame.DEFAULT_WINDOW_SIZE;
+
+    private int maxFrameSize = Http2Frame.DEFAULT_MAX_FRAME_SIZE;
+
+    private long sendWindow = Http2Frame.DEFAULT_WINDOW_SIZE;
+
+    private int unacknowledged;
+
+    // Header block being received
+    private ByteArrayOutputStream headerBlock;
+
+    private int headerStreamId;
+
+    private int headerFrameBytes;
+
+    private boolean headerEndStream;
+
+    private int promisedStreamId;
+
+    /**
+     * @param loop the selector loop running the connection
+     * @param remoteAddress resolved address of the server
+     * @param localAddress local address to bind to, may be null
+     * @param sslEngine client mode engine for HTTPS, null for h2c
+     */
+    NioHttp2Connection(NioSelectorPool.SelectorLoop loop, InetSocketAddress remoteAddress,
+            InetAddress localAddress, SSLEngine sslEngine) {
+        super(loop, remoteAddress, localAddress, sslEngine);
+        if (sslEngine != null) {
+            setApplicationProtocols(sslEngine, Http2Frame.ALPN_H2, "http/1.1"); // $NON-NLS-1$
+        }
+    }
+
+    /**
+     * @return true if the JVM supports ALPN, needed for HTTP/2 over TLS
+     */
+    static boolean isAlpnSupported() {
+        return SET_APPLICATION_PROTOCOLS != null;
+    }
+
+    private static void setApplicationProtocols(SSLEngine sslEngine, String... protocols) {
+        SSLParameters parameters = sslEngine.getSSLParameters();
+        try {
+            SET_APPLICATION_PROTOCOLS.invoke(parameters, (Object) protocols);
+        } catch (Exception e) { // IllegalAccessException, InvocationTargetException
+            throw new IllegalStateException("Could not set ALPN protocols", e);
+        }
+        sslEngine.setSSLParameters(parameters);
+    }
+
+    private static String getApplicationProtocol(SSLEngine sslEngine) {
+        try {
+            return (String) GET_APPLICATION_PROTOCOL.invoke(sslEngine);
+        } catch (Exception e) { // IllegalAccessException, InvocationTargetException
+            throw new IllegalStateException("Could not get ALPN protocol", e);
+        }
+    }
+
+    /**
+     * May be called from any thread
+     * @return true if new streams can be started on this connection
+     */
+    boolean isAvailable() {
+        return isOpen() && !goingAway;
+    }
+
+    /**
+     * Start a stream, the caller then waits on {@link NioHttp2Stream#await()}.
+     * May be called from any thread.
+     * @param stream the stream to run
+     */
+    void execute(final NioHttp2Stream stream) {
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                start(stream);
+            }
+        });
+    }
+
+    /**
+     * Reset a stream and report an error to its waiting thread, the connection stays open.
+     * May be called from any thread.
+     * @param stream the stream to cancel
+     * @param cause the error reported
+     */
+    void cancel(final NioHttp2Stream stream, final IOException cause) {
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    reset(stream, cause);
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+        });
+    }
+
+    private void start(NioHttp2Stream stream) {
+        if (!isAvailable()) { // closed by the server while idle, or aborted
+            stream.fail(new ConnectionClosedException("Connection closed"), isConnected());
+            return;
+        }
+        pending.add(stream);
+        loop.watch(this);
+        try {
+            if (!isStarted()) {
+                connect(stream.getConnectTimeout(), stream.getResponseTimeout());
+            } else if (isConnected()) {
+                startStreams();
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            fail(new IOException(e));
+        }
+    }
+
+    @Override
+    void onConnected() throws IOException {
+        if (isSecure()) {
+            String protocol = getApplicationProtocol(getSSLEngine());
+            if (!Http2Frame.ALPN_H2.equals(protocol)) {
+                throw new ProtocolNotNegotiatedException("Server " + getRemoteAddress()
+                        + " did not select HTTP/2 but '" + protocol + "'");
+            }
+        }
+        setDeadline(0);
+        send(ByteBuffer.wrap(Http2Frame.CONNECTION_PREFACE));
+        send(Http2Frame.settings(false,
+                Http2Frame.SETTINGS_ENABLE_PUSH, 0,
+                Http2Frame.SETTINGS_INITIAL_WINDOW_SIZE, STREAM_WINDOW).toByteBuffer());
+        send(Http2Frame.windowUpdate(0, CONNECTION_WINDOW - Http2Frame.DEFAULT_WINDOW_SIZE).toByteBuffer());
+        for (NioHttp2Stream stream : pending) {
+            stream.connectEnd();
+        }
+        startStreams();
+    }
+
+    /**
+     * Start the pending streams allowed by the server concurrency limit
+     */
+    private void startStreams() throws IOException {
+        while (!pending.isEmpty() && streams.size() < maxConcurrentStreams && !goingAway) {
+            if (nextStreamId < 0) { // stream identifiers exhausted, a new connection is needed
+                goingAway = true;
+                break;
+            }
+            NioHttp2Stream stream = pending.poll();
+            int id = nextStreamId;
+            nextStreamId += 2;
+            stream.start(id, initialSendWindow, used);
+            streams.put(Integer.valueOf(id), stream);
+            sendHeaders(id, encoder.encode(stream.getRequestHeaders()), !stream.hasRequestBody());
+            sendData(stream);
+        }
+        if (goingAway) {
+            failPending(new ConnectionClosedException("Connection closed"));
+        }
+        updateWatch();
+    }
+
+    private void sendHeaders(int id, byte[] block, boolean endStream) throws IOException {
+        int offset = 0;
+        do {
+            int length = Math.min(block.length - offset, maxFrameSize);
+            int flags = offset + length == block.length ? Http2Frame.FLAG_END_HEADERS : 0;
+            if (offset == 0 && endStream) {
+                flags |= Http2Frame.FLAG_END_STREAM;
+            }
+            send(new Http2Frame(offset == 0 ? Http2Frame.HEADERS : Http2Frame.CONTINUATION, flags, id,
+                    Arrays.copyOfRange(block, offset, offset + length)).toByteBuffer());
+            offset += length;
+        } while (offset < block.length);
+    }
+
+    /**
+     * Send as much of the request body as the flow control windows allow
+     */
+    private void sendData(NioHttp2Stream stream) throws IOException {
+        while (stream.hasPendingBody() && stream.getSendWindow() > 0 && sendWindow > 0) {
+            byte[] chunk = stream.nextBodyChunk((int) Math.min(maxFrameSize, sendWindow));
+            sendWindow -= chunk.length;
+            int flags = stream.hasPendingBody() ? 0 : Http2Frame.FLAG_END_STREAM;
+            send(new Http2Frame(Http2Frame.DATA, flags, stream.getId(), chunk).toByteBuffer());
+            stream.touch();
+        }
+    }
+
+    @Override
+    void onData(ByteBuffer data) throws IOException {
+        if (inbound.remaining() < data.remaining()) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(inbound.capacity() * 2, inbound.position() + data.remaining()));
+            inbound.flip();
+            larger.put(inbound);
+            inbound = larger;
+        }
+        inbound.put(data);
+        inbound.flip();
+        try {
+            Http2Frame frame;
+            while (isOpen() && (frame = Http2Frame.parse(inbound, Http2Frame.DEFAULT_MAX_FRAME_SIZE)) != null) {
+                handleFrame(frame);
+            }
+        } finally {
+            inbound.compact();
+        }
+    }
+
+    private void handleFrame(Http2Frame frame) throws IOException {
+        if (log.isDebugEnabled()) {
+            log.debug("Received " + frame);
+        }
+        int type = frame.getType();
+        if (headerBlock != null && type != Http2Frame.CONTINUATION) {
+            throw protocolError("Expected CONTINUATION frame, got " + frame);
+        }
+        switch (type) {
+            case Http2Frame.DATA:
+                onDataFrame(frame);
+                break;
+            case Http2Frame.HEADERS:
+                startHeaderBlock(frame, 0);
+                break;
+            case Http2Frame.PUSH_PROMISE:
+                startHeaderBlock(frame, frame.getInt(frame.getDataOffset() - 4) & Integer.MAX_VALUE);
+                break;
+            case Http2Frame.CONTINUATION:
+                if (headerBlock == null || frame.getStreamId() != headerStreamId) {
+                    throw protocolError("Unexpected " + frame);
+                }
+                continueHeaderBlock(frame);
+                break;
+            case Http2Frame.RST_STREAM:
+                onReset(frame);
+                break;
+            case Http2Frame.SETTINGS:
+                onSettings(frame);
+                break;
+            case Http2Frame.PING:
+                if (!frame.hasFlag(Http2Frame.FLAG_ACK)) {
+                    send(new Http2Frame(Http2Frame.PING, Http2Frame.FLAG_ACK, 0, frame.getPayload()).toByteBuffer());
+                }
+                break;
+            case Http2Frame.GOAWAY:
+                onGoAway(frame);
+                break;
+            case Http2Frame.WINDOW_UPDATE:
+                onWindowUpdate(frame);
+                break;
+            default: // PRIORITY and unknown frames are ignored
+                break;
+        }
+    }
+
+    private void onDataFrame(Http2Frame frame) throws IOException {
+        int length = frame.getLength();
+        NioHttp2Stream stream = streams.get(Integer.valueOf(frame.getStreamId()));
+        if (stream != null) {
+            stream.onData(frame.getPayload(), frame.getDataOffset(), frame.getDataLength(),
+                    length + Http2Frame.HEADER_LENGTH);
+            if (frame.hasFlag(Http2Frame.FLAG_END_STREAM)) {
+                complete(stream);
+            } else if (stream.addUnacknowledged(length) >= STREAM_WINDOW / 2) {
+                send(Http2Frame.windowUpdate(stream.getId(), stream.takeUnacknowledged()).toByteBuffer());
+            }
+        }
+        unacknowledged += length;
+        if (unacknowledged >= CONNECTION_WINDOW / 2) {
+            send(Http2Frame.windowUpdate(0, unacknowledged).toByteBuffer());
+            unacknowledged = 0;
+        }
+    }
+
+    private void startHeaderBlock(Http2Frame frame, int promisedId) throws IOException {
+        headerBlock = new ByteArrayOutputStream(frame.getLength());
+        headerStreamId = frame.getStreamId();
+        headerFrameBytes = 0;
+        headerEndStream = frame.hasFlag(Http2Frame.FLAG_END_STREAM);
+        promisedStreamId = promisedId;
+        continueHeaderBlock(frame);
+    }
+
+    private void continueHeaderBlock(Http2Frame frame) throws IOException {
+        headerBlock.write(frame.getPayload(), frame.getDataOffset(), frame.getDataLength());
+        headerFrameBytes += frame.getLength() + Http2Frame.HEADER_LENGTH;
+        if (frame.hasFlag(Http2Frame.FLAG_END_HEADERS)) {
+            byte[] block = headerBlock.toByteArray();
+            headerBlock = null;
+            // always decode, to keep the dynamic table in sync
+            List<Header> headers = decoder.decode(block, 0, block.length);
+            if (promisedStreamId != 0) {
+                send(Http2Frame.rstStream(promisedStreamId, Http2Frame.CANCEL).toByteBuffer());
+                return;
+            }
+            NioHttp2Stream stream = streams.get(Integer.valueOf(headerStreamId));
+            if (stream != null) {
+                stream.onHeaders(headers, headerFrameBytes);
+                if (headerEndStream) {
+                    complete(stream);
+                }
+            }
+        }
+    }
+
+    private void onReset(Http2Frame frame) throws IOException {
+        NioHttp2Stream stream = streams.remove(Integer.valueOf(frame.getStreamId()));
+        if (stream != null) {
+            int errorCode = frame.getInt(0);
+            stream.fail(new IOException("Stream reset by server: " + Http2Frame.getErrorName(errorCode)),
+                    errorCode == Http2Frame.REFUSED_STREAM);
+            startStreams();
+        }
+    }
+
+    private void onSettings(Http2Frame frame) throws IOException {
+        if (frame.hasFlag(Http2Frame.FLAG_ACK)) {
+            return;
+        }
+        if (frame.getLength() % 6 != 0) {
+            throw protocolError("Invalid SETTINGS frame length " + frame.getLength());
+        }
+        byte[] payload = frame.getPayload();
+        for (int i = 0; i < payload.length; i += 6) {
+            int identifier = ((payload[i] & 0xff) << 8) | (payload[i + 1] & 0xff);
+            int value = frame.getInt(i + 2);
+            switch (identifier) {
+                case Http2Frame.SETTINGS_HEADER_TABLE_SIZE:
+                    encoder.setMaxTableSize(value < 0 ? Integer.MAX_VALUE : value);
+                    break;
+                case Http2Frame.SETTINGS_MAX_CONCURRENT_STREAMS:
+                    maxConcurrentStreams = value < 0 ? Integer.MAX_VALUE : value;
+                    break;
+                case Http2Frame.SETTINGS_INITIAL_WINDOW_SIZE:
+                    if (value < 0) {
+                        throw protocolError("Invalid SETTINGS_INITIAL_WINDOW_SIZE " + value);
+                    }
+                    for (NioHttp2Stream stream : streams.values()) {
+                        stream.addSendWindow((long) value - initialSendWindow);
+                    }
+                    initialSendWindow = value;
+                    break;
+                case Http2Frame.SETTINGS_MAX_FRAME_SIZE:
+                    if (value < Http2Frame.DEFAULT_MAX_FRAME_SIZE || value > 0xffffff) {
+                        throw protocolError("Invalid SETTINGS_MAX_FRAME_SIZE " + value);
+                    }
+                    maxFrameSize = value;
+                    break;
+                default: // ENABLE_PUSH is not sent by servers, MAX_HEADER_LIST_SIZE is advisory
+                    break;
+            }
+        }
+        send(Http2Frame.settings(true).toByteBuffer());
+        resumeData();
+        startStreams();
+    }
+
+    private void onGoAway(Http2Frame frame) throws IOException {
+        int lastStreamId = frame.getInt(0) & Integer.MAX_VALUE;
+        String errorName = Http2Frame.getErrorName(frame.getInt(4));
+        if (log.isDebugEnabled()) {
+            log.debug("GOAWAY received from " + getRemoteAddress() + ", last stream " + lastStreamId + ", " + errorName);
+        }
+        goingAway = true;
+        IOException cause = new ConnectionClosedException("Connection closed by server: GOAWAY " + errorName);
+        for (NioHttp2Stream stream : new ArrayList<>(streams.values())) {
+            if (stream.getId() > lastStreamId) {
+                streams.remove(Integer.valueOf(stream.getId()));
+                stream.fail(cause, true);
+            }
+        }
+        failPending(cause);
+        if (streams.isEmpty()) {
+            closeChannel();
+        }
+    }
+
+    private void onWindowUpdate(Http2Frame frame) throws IOException {
+        int increment = frame.getInt(0) & Integer.MAX_VALUE;
+        if (frame.getStreamId() == 0) {
+            sendWindow += increment;
+            if (sendWindow > Http2Frame.MAX_WINDOW_SIZE) {
+                throw new IOException("HTTP/2 flow control error: connection window overflow");
+            }
+        } else {
+            NioHttp2Stream stream = streams.get(Integer.valueOf(frame.getStreamId()));
+            if (stream != null) {
+                stream.addSendWindow(increment);
+            }
+        }
+        resumeData();
+    }
+
+    /**
+     * Send the request bodies that were blocked by flow control
+     */
+    private void resumeData() throws IOException {
+        for (NioHttp2Stream stream : streams.values()) {
+            if (stream.hasPendingBody()) {
+                sendData(stream);
+            }
+        }
+    }
+
+    private void complete(NioHttp2Stream stream) throws IOException {
+        streams.remove(Integer.valueOf(stream.getId()));
+        used = true;
+        stream.complete();
+        if (goingAway && streams.isEmpty()) {
+            closeChannel();
+            return;
+        }
+        startStreams();
+    }
+
+    private void reset(NioHttp2Stream stream, IOException cause) throws IOException {
+        if (pending.remove(stream)) {
+            stream.fail(cause, true);
+        } else if (streams.remove(Integer.valueOf(stream.getId())) != null) {
+            stream.fail(cause, false);
+            if (isOpen()) {
+                send(Http2Frame.rstStream(stream.getId(), Http2Frame.CANCEL).toByteBuffer());
+                startStreams();
+            }
+        }
+        updateWatch();
+    }
+
+    private void failPending(IOException cause) {
+        NioHttp2Stream stream;
+        while ((stream = pending.poll()) != null) {
+            stream.fail(cause, true);
+        }
+    }
+
+    private void updateWatch() {
+        if (streams.isEmpty() && pending.isEmpty()) {
+            loop.unwatch(this);
+        } else {
+            loop.watch(this);
+        }
+    }
+
+    private static IOException protocolError(String message) {
+        return new IOException("HTTP/2 protocol error: " + message);
+    }
+
+    @Override
+    long getDeadline() {
+        long nearest = super.getDeadline();
+        for (NioHttp2Stream stream : streams.values()) {
+            long deadline = stream.getDeadline();
+            if (deadline != 0 && (nearest == 0 || deadline - nearest < 0)) {
+                nearest = deadline;
+            }
+        }
+        return nearest;
+    }
+
+    @Override
+    void checkTimeout(long now) {
+        super.checkTimeout(now); // connect and handshake
+        if (!isOpen()) {
+            return;
+        }
+        try {
+            for (NioHttp2Stream stream : new ArrayList<>(streams.values())) {
+                long deadline = stream.getDeadline();
+                if (deadline != 0 && now - deadline >= 0) {
+                    reset(stream, new SocketTimeoutException("Read timed out")); // $NON-NLS-1$
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    void onEndOfStream() throws IOException {
+        failStreams(new ConnectionClosedException("Connection closed by server"));
+    }
+
+    @Override
+    void onFailure(IOException cause) {
+        failStreams(cause);
+    }
+
+    private void failStreams(IOException cause) {
+        boolean unprocessed = isConnected() && !(cause instanceof ProtocolNotNegotiatedException);
+        for (NioHttp2Stream stream : streams.values()) {
+            stream.fail(cause, false);
+        }
+        streams.clear();
+        NioHttp2Stream stream;
+        while ((stream = pending.poll()) != null) {
+            stream.fail(cause, unprocessed);
+        }
+    }
+}
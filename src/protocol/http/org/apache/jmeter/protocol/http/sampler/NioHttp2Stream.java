@@ -0,0 +1,349 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.jmeter.samplers.SampleResult;
+
+/**
+ * One HTTP/2 request/response exchange run by a {@link NioHttp2Connection}.
+ * <p>
+ * The sampler thread creates the stream and waits for it with {@link #await()};
+ * everything else runs on the selector thread of the connection, which also
+ * records the connect, latency and end times of the result as frames arrive,
+ * so the timings of multiplexed streams are independent of each other.
+ * @since 3.1
+ */
+final class NioHttp2Stream {
+
+    static final ProtocolVersion HTTP_2 = new ProtocolVersion("HTTP", 2, 0); // $NON-NLS-1$
+
+    private static final String STATUS = ":status"; // $NON-NLS-1$
+
+    private final List<Header> requestHeaders;
+
+    private final byte[] requestBody; // null if none
+
+    private final SampleResult result;
+
+    private final int connectTimeout;
+
+    private final int responseTimeout;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    // Fields below are written by the loop thread, and read by the sampler thread once done
+    private int id;
+
+    private int bodyOffset;
+
+    private long sendWindow;
+
+    private long deadline;
+
+    private int unacknowledged;
+
+    private boolean reused;
+
+    private boolean firstByte = true;
+
+    private int status;
+
+    private final List<Header> responseHeaders = new ArrayList<>();
+
+    private final ByteArrayOutputStream responseBody = new ByteArrayOutputStream();
+
+    private long headerBytes;
+
+    private long receivedBytes;
+
+    private IOException failure;
+
+    private boolean retriable;
+
+    /**
+     * @param requestHeaders pseudo-headers then headers of the request
+     * @param requestBody request body, null or empty if none
+     * @param result receives the connect, latency and end times
+     * @param connectTimeout connect timeout in milliseconds, 0 for none
+     * @param responseTimeout timeout between two frames of the response, in milliseconds, 0 for none
+     */
+    NioHttp2Stream(List<Header> requestHeaders, byte[] requestBody, SampleResult result,
+            int connectTimeout, int responseTimeout) {
+        this.requestHeaders = requestHeaders;
+        this.requestBody = requestBody == null || requestBody.length == 0 ? null : requestBody;
+        this.result = result;
+        this.connectTimeout = connectTimeout;
+        this.responseTimeout = responseTimeout;
+    }
+
+    List<Header> getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    int getResponseTimeout() {
+        return responseTimeout;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    /**
+     * Called when the stream gets its identifier and its HEADERS frame is sent
+     * @param streamId stream identifier
+     * @param initialWindow initial send window of the stream
+     * @param reusedConnection true if the connection completed previous streams
+     */
+    void start(int streamId, int initialWindow, boolean reusedConnection) {
+        this.id = streamId;
+        this.sendWindow = initialWindow;
+        this.reused = reusedConnection;
+        touch();
+    }
+
+    /**
+     * Called by the connection once connected, and handshaked for TLS
+     */
+    void connectEnd() {
+        result.connectEnd();
+    }
+
+    /**
+     * Restart the response timeout, called when a frame is sent or received
+     */
+    void touch() {
+        deadline = responseTimeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(responseTimeout) : 0;
+    }
+
+    long getDeadline() {
+        return deadline;
+    }
+
+    boolean hasRequestBody() {
+        return requestBody != null;
+    }
+
+    /**
+     * @return true if some of the request body remains to be sent
+     */
+    boolean hasPendingBody() {
+        return requestBody != null && bodyOffset < requestBody.length;
+    }
+
+    long getSendWindow() {
+        return sendWindow;
+    }
+
+    /**
+     * @param delta change of the send window, from WINDOW_UPDATE or SETTINGS frames
+     */
+    void addSendWindow(long delta) {
+        sendWindow += delta;
+    }
+
+    /**
+     * Take the next part of the request body, within the send window
+     * @param maxLength largest length to take
+     * @return the data to send in a DATA frame
+     */
+    byte[] nextBodyChunk(int maxLength) {
+        int length = (int) Math.min(Math.min(maxLength, sendWindow), requestBody.length - bodyOffset);
+        byte[] chunk = Arrays.copyOfRange(requestBody, bodyOffset, bodyOffset + length);
+        bodyOffset += length;
+        sendWindow -= length;
+        return chunk;
+    }
+
+    /**
+     * @param headers decoded header block
+     * @param frameBytes size of the HEADERS and CONTINUATION frames
+     * @throws IOException if the block has no valid :status
+     */
+    void onHeaders(List<Header> headers, int frameBytes) throws IOException {
+        received(frameBytes);
+        headerBytes += frameBytes;
+        String statusValue = null;
+        List<Header> regular = new ArrayList<>(headers.size());
+        for (Header header : headers) {
+            if (STATUS.equals(header.getName())) {
+                statusValue = header.getValue();
+            } else if (!header.getName().startsWith(":")) { // $NON-NLS-1$
+                regular.add(header);
+            }
+        }
+        if (statusValue != null) {
+            int code;
+            try {
+                code = Integer.parseInt(statusValue);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid :status " + statusValue, e);
+            }
+            if (code >= 100 && code < 200) {
+                return; // informational response, the final one follows
+            }
+            status = code;
+        } else if (status == 0) {
+            throw new IOException("Response without :status on stream " + id);
+        }
+        responseHeaders.addAll(regular); // headers, or trailers
+    }
+
+    /**
+     * @param data frame payload
+     * @param offset start of the data in the payload
+     * @param length length of the data, without padding
+     * @param frameBytes size of the frame
+     */
+    void onData(byte[] data, int offset, int length, int frameBytes) {
+        received(frameBytes);
+        responseBody.write(data, offset, length);
+    }
+
+    private void received(int frameBytes) {
+        if (firstByte) {
+            firstByte = false;
+            result.latencyEnd();
+        }
+        receivedBytes += frameBytes;
+        touch();
+    }
+
+    /**
+     * @param length flow controlled length of a received DATA frame
+     * @return number of bytes received and not yet acknowledged by a WINDOW_UPDATE frame
+     */
+    int addUnacknowledged(int length) {
+        unacknowledged += length;
+        return unacknowledged;
+    }
+
+    /**
+     * @return number of bytes to acknowledge, which are then considered acknowledged
+     */
+    int takeUnacknowledged() {
+        int increment = unacknowledged;
+        unacknowledged = 0;
+        return increment;
+    }
+
+    /**
+     * Called when the response has been completely received
+     */
+    void complete() {
+        if (status == 0) {
+            failure = new NoHttpResponseException("Stream " + id + " ended without response");
+        } else {
+            result.sampleEnd();
+        }
+        deadline = 0;
+        done.countDown();
+    }
+
+    /**
+     * @param cause the error reported to the waiting thread
+     * @param unprocessed true if the server is known not to have processed the request
+     */
+    void fail(IOException cause, boolean unprocessed) {
+        if (done.getCount() == 0) {
+            return;
+        }
+        failure = cause;
+        retriable = !(cause instanceof InterruptedIOException) && (unprocessed || (reused && receivedBytes == 0));
+        deadline = 0;
+        done.countDown();
+    }
+
+    /**
+     * @return true if the stream failed before the server could process it,
+     * so it can be sent again on another connection
+     */
+    boolean isRetriable() {
+        return retriable;
+    }
+
+    /**
+     * Wait for the response
+     * @return the response status and headers
+     * @throws IOException if the stream failed or the thread was interrupted
+     */
+    HttpResponse await() throws IOException {
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        HttpResponse response = new BasicHttpResponse(new BasicStatusLine(HTTP_2, status,
+                EnglishReasonPhraseCatalog.INSTANCE.getReason(status, Locale.ENGLISH)));
+        response.setHeaders(responseHeaders.toArray(new Header[responseHeaders.size()]));
+        return response;
+    }
+
+    /**
+     * @return true once the response was received or the stream failed, may be called from any thread
+     */
+    boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    /**
+     * @return the response body, to be called once {@link #await()} returned
+     */
+    byte[] getBody() {
+        return responseBody.toByteArray();
+    }
+
+    /**
+     * @return size of the response frames, to be called once {@link #await()} returned
+     */
+    long getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    /**
+     * @return size of the response HEADERS and CONTINUATION frames, to be called once {@link #await()} returned
+     */
+    long getHeaderBytes() {
+        return headerBytes;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+import javax.net.ssl.SSLEngine;
+
+/**
+ * Non-blocking HTTP/1.1 connection, plain or TLS, driven by a
+ * {@link NioSelectorPool.SelectorLoop}.
+ * <p>
+ * A connection belongs to one sampler thread, which starts exchanges with
+ * {@link #execute(NioHttpExchange)} and waits for them; all socket and
+ * {@link SSLEngine} operations then run on the selector thread.
+ * Connections are kept open between exchanges when the response allows it.
+ * @since 3.1
+ */
+final class NioHttpConnection extends NioConnection {
+
+    // Fields below are only accessed from the loop thread
+    private NioHttpExchange exchange;
+
+    private boolean used;
+
+    /**
+     * @param loop the selector loop running the connection
+     * @param remoteAddress resolved address of the server
+     * @param localAddress local address to bind to, may be null
+     * @param sslEngine client mode engine for HTTPS, null for HTTP
+     */
+    NioHttpConnection(NioSelectorPool.SelectorLoop loop, InetSocketAddress remoteAddress,
+            InetAddress localAddress, SSLEngine sslEngine) {
+        super(loop, remoteAddress, localAddress, sslEngine);
+    }
+
+    /**
+     * Start an exchange, the caller then waits on {@link NioHttpExchange#await()}.
+     * May be called from any thread.
+     * @param newExchange the exchange to run
+     */
+    void execute(final NioHttpExchange newExchange) {
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                start(newExchange);
+            }
+        });
+    }
+
+    private void start(NioHttpExchange newExchange) {
+        if (!isOpen()) { // closed by the server while idle, or aborted
+            if (used) {
+                newExchange.setReused();
+            }
+            newExchange.fail(new IOException("Connection closed"));
+            return;
+        }
+        exchange = newExchange;
+        loop.watch(this);
+        try {
+            if (!isStarted()) {
+                connect(exchange.getConnectTimeout(), exchange.getResponseTimeout());
+            } else {
+                if (used) {
+                    exchange.setReused();
+                }
+                sendRequest();
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            fail(new IOException(e));
+        }
+    }
+
+    private void sendRequest() throws IOException {
+        setDeadline(exchange.getResponseTimeout());
+        send(exchange.getRequest());
+    }
+
+    @Override
+    void onConnected() throws IOException {
+        exchange.connectEnd();
+        sendRequest();
+    }
+
+    @Override
+    void onData(ByteBuffer data) throws IOException {
+        if (exchange == null) {
+            // Data on an idle connection, the server is sending garbage
+            closeChannel();
+            return;
+        }
+        setDeadline(exchange.getResponseTimeout());
+        if (exchange.onData(data)) {
+            complete();
+        }
+    }
+
+    @Override
+    void onEndOfStream() throws IOException {
+        if (exchange != null) {
+            exchange.onEndOfStream();
+            complete();
+        }
+    }
+
+    @Override
+    void onFailure(IOException cause) {
+        NioHttpExchange failed = exchange;
+        exchange = null;
+        if (failed != null) {
+            failed.fail(cause);
+        }
+    }
+
+    private void complete() {
+        NioHttpExchange completed = exchange;
+        exchange = null;
+        used = true;
+        setDeadline(0);
+        loop.unwatch(this);
+        if (!completed.isReusable()) {
+            closeChannel();
+        }
+        completed.complete();
+    }
+}
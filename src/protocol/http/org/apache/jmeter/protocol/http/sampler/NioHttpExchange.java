@@ -0,0 +1,411 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.MalformedChunkCodingException;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.ParseException;
+import org.apache.http.StatusLine;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicLineParser;
+import org.apache.jmeter.protocol.http.util.HTTPConstants;
+import org.apache.jmeter.samplers.SampleResult;
+
+/**
+ * One HTTP/1.1 request/response exchange run by a {@link NioHttpConnection}.
+ * <p>
+ * The request is fully serialized by the sampler thread, which then waits in
+ * {@link #await()}; the response is parsed incrementally on the selector thread
+ * as data arrives. The sample result is only touched by the selector thread
+ * (connect and latency times) while the sampler thread is waiting.
+ * @since 3.1
+ */
+final class NioHttpExchange {
+
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private enum State {
+        STATUS_LINE, HEADERS, BODY, CHUNK_SIZE, CHUNK_END, TRAILERS, DONE
+    }
+
+    private final ByteBuffer request;
+
+    private final boolean headRequest;
+
+    private final SampleResult result;
+
+    private final int connectTimeout;
+
+    private final int responseTimeout;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    // Response state, only accessed from the selector thread until done is released
+    private State state = State.STATUS_LINE;
+
+    private final StringBuilder line = new StringBuilder();
+
+    private int lineBytes;
+
+    private StatusLine statusLine;
+
+    private final List<String> headerLines = new ArrayList<>();
+
+    private BasicHttpResponse response;
+
+    private ByteArrayOutputStream body;
+
+    private long bodyRemaining;
+
+    private boolean chunked;
+
+    private boolean closeDelimited;
+
+    private long receivedBytes;
+
+    private long headerBytes;
+
+    private boolean reused;
+
+    private IOException failure;
+
+    /**
+     * @param request serialized request, headers and body
+     * @param headRequest true if the request method is HEAD, so the response has no body
+     * @param result sample result receiving the connect and latency times
+     * @param connectTimeout connect timeout in milliseconds, 0 for none
+     * @param responseTimeout maximum time without receiving data in milliseconds, 0 for none
+     */
+    NioHttpExchange(byte[] request, boolean headRequest, SampleResult result,
+            int connectTimeout, int responseTimeout) {
+        this.request = ByteBuffer.wrap(request);
+        this.headRequest = headRequest;
+        this.result = result;
+        this.connectTimeout = Math.max(0, connectTimeout);
+        this.responseTimeout = Math.max(0, responseTimeout);
+    }
+
+    int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    int getResponseTimeout() {
+        return responseTimeout;
+    }
+
+    ByteBuffer getRequest() {
+        return request;
+    }
+
+    /**
+     * Called by the connection once connected, and handshaked for TLS
+     */
+    void connectEnd() {
+        result.connectEnd();
+    }
+
+    /**
+     * Mark the exchange as run on a connection that served a previous exchange
+     */
+    void setReused() {
+        reused = true;
+    }
+
+    /**
+     * Consume response data
+     * @param buffer data received, in read mode
+     * @return true if the response is complete
+     * @throws IOException if the response is malformed
+     */
+    boolean onData(ByteBuffer buffer) throws IOException {
+        if (receivedBytes == 0 && buffer.hasRemaining()) {
+            result.latencyEnd();
+        }
+        receivedBytes += buffer.remaining();
+        while (buffer.hasRemaining() && state != State.DONE) {
+            if (state == State.BODY) {
+                readBody(buffer);
+            } else if (readLine(buffer)) {
+                String text = line.toString();
+                line.setLength(0);
+                handleLine(text);
+                lineBytes = 0;
+            }
+        }
+        return state == State.DONE;
+    }
+
+    /**
+     * Called when the server closed the connection
+     * @throws IOException if the response is incomplete
+     */
+    void onEndOfStream() throws IOException {
+        if (state == State.BODY && closeDelimited) {
+            state = State.DONE;
+        } else if (state != State.DONE) {
+            if (receivedBytes == 0) {
+                throw new NoHttpResponseException("The target server failed to respond");
+            }
+            throw new ConnectionClosedException("Premature end of response, server closed the connection");
+        }
+    }
+
+    private void readBody(ByteBuffer buffer) {
+        int count = buffer.remaining();
+        if (!closeDelimited && count > bodyRemaining) {
+            count = (int) bodyRemaining;
+        }
+        body.write(buffer.array(), buffer.arrayOffset() + buffer.position(), count);
+        buffer.position(buffer.position() + count);
+        if (!closeDelimited) {
+            bodyRemaining -= count;
+            if (bodyRemaining == 0) {
+                state = chunked ? State.CHUNK_END : State.DONE;
+            }
+        }
+    }
+
+    /**
+     * Accumulate a line terminated by LF, the line is available in {@link #line} without CR LF
+     * @return true if a complete line has been read
+     */
+    private boolean readLine(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            lineBytes++;
+            if (state == State.STATUS_LINE || state == State.HEADERS) {
+                headerBytes++;
+            }
+            if (b == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return true;
+            }
+            if (lineBytes > MAX_LINE_LENGTH) {
+                throw new IOException("Response line longer than " + MAX_LINE_LENGTH + " bytes");
+            }
+            line.append((char) (b & 0xff)); // ISO-8859-1
+        }
+        return false;
+    }
+
+    private void handleLine(String text) throws IOException {
+        switch (state) {
+            case STATUS_LINE:
+                if (text.length() > 0) { // tolerate empty lines before the status line
+                    try {
+                        statusLine = BasicLineParser.parseStatusLine(text, null);
+                    } catch (ParseException e) {
+                        throw new IOException("Invalid status line: '" + text + "'", e);
+                    }
+                    headerLines.clear();
+                    state = State.HEADERS;
+                }
+                break;
+            case HEADERS:
+                if (text.length() == 0) {
+                    headersComplete();
+                } else if ((text.charAt(0) == ' ' || text.charAt(0) == '\t') && !headerLines.isEmpty()) {
+                    int last = headerLines.size() - 1;
+                    headerLines.set(last, headerLines.get(last) + ' ' + text.trim()); // folded header
+                } else {
+                    headerLines.add(text);
+                }
+                break;
+            case CHUNK_SIZE:
+                long size = parseChunkSize(text);
+                if (size == 0) {
+                    state = State.TRAILERS;
+                } else {
+                    bodyRemaining = size;
+                    state = State.BODY;
+                }
+                break;
+            case CHUNK_END:
+                if (text.length() != 0) {
+                    throw new MalformedChunkCodingException("Unexpected content at the end of chunk");
+                }
+                state = State.CHUNK_SIZE;
+                break;
+            case TRAILERS:
+                if (text.length() == 0) {
+                    state = State.DONE;
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unexpected state " + state);
+        }
+    }
+
+    private static long parseChunkSize(String text) throws MalformedChunkCodingException {
+        int end = text.indexOf(';'); // ignore chunk extensions
+        String size = (end < 0 ? text : text.substring(0, end)).trim();
+        try {
+            long value = Long.parseLong(size, 16);
+            if (value < 0) {
+                throw new MalformedChunkCodingException("Negative chunk size: " + size);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new MalformedChunkCodingException("Bad chunk header: " + text);
+        }
+    }
+
+    private void headersComplete() throws IOException {
+        int status = statusLine.getStatusCode();
+        if (status >= HttpStatus.SC_CONTINUE && status < HttpStatus.SC_OK
+                && status != HttpStatus.SC_SWITCHING_PROTOCOLS) {
+            state = State.STATUS_LINE; // skip interim response
+            return;
+        }
+        response = new BasicHttpResponse(statusLine);
+        for (String headerLine : headerLines) {
+            try {
+                response.addHeader(BasicLineParser.parseHeader(headerLine, null));
+            } catch (ParseException e) {
+                throw new IOException("Invalid header: '" + headerLine + "'", e);
+            }
+        }
+        Header transferEncoding = response.getLastHeader(HTTPConstants.TRANSFER_ENCODING);
+        Header contentLength = response.getLastHeader(HTTPConstants.HEADER_CONTENT_LENGTH);
+        if (headRequest || status == HttpStatus.SC_NO_CONTENT || status == HttpStatus.SC_NOT_MODIFIED
+                || status == HttpStatus.SC_SWITCHING_PROTOCOLS) {
+            state = State.DONE;
+        } else if (transferEncoding != null && !"identity".equalsIgnoreCase(transferEncoding.getValue())) { // $NON-NLS-1$
+            chunked = true;
+            body = new ByteArrayOutputStream();
+            state = State.CHUNK_SIZE;
+        } else if (contentLength != null) {
+            try {
+                bodyRemaining = Long.parseLong(contentLength.getValue().trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid Content-Length: '" + contentLength.getValue() + "'", e);
+            }
+            body = new ByteArrayOutputStream((int) Math.min(bodyRemaining, 1024 * 1024));
+            state = bodyRemaining > 0 ? State.BODY : State.DONE;
+        } else {
+            closeDelimited = true;
+            body = new ByteArrayOutputStream();
+            state = State.BODY;
+        }
+    }
+
+    /**
+     * @return true if the connection can be used for another exchange
+     */
+    boolean isReusable() {
+        if (response == null || closeDelimited) {
+            return false;
+        }
+        Header connection = response.getLastHeader(HTTPConstants.HEADER_CONNECTION);
+        if (connection != null) {
+            String value = connection.getValue();
+            if (HTTPConstants.CONNECTION_CLOSE.equalsIgnoreCase(value)) {
+                return false;
+            }
+            if (HTTPConstants.KEEP_ALIVE.equalsIgnoreCase(value)) {
+                return true;
+            }
+        }
+        return statusLine.getProtocolVersion().greaterEquals(HttpVersion.HTTP_1_1);
+    }
+
+    /**
+     * @return true if the exchange failed on a reused connection before any response data,
+     * typically because the server closed the idle connection, so it can safely be retried.
+     * Timeouts and aborts are never retried.
+     */
+    boolean isRetriable() {
+        return reused && receivedBytes == 0 && !(failure instanceof InterruptedIOException);
+    }
+
+    /**
+     * Release the waiting sampler thread, called from the selector thread
+     */
+    void complete() {
+        done.countDown();
+    }
+
+    /**
+     * Release the waiting sampler thread with an error, called from the selector thread
+     * @param cause the error
+     */
+    void fail(IOException cause) {
+        if (done.getCount() > 0) {
+            failure = cause;
+            done.countDown();
+        }
+    }
+
+    /**
+     * Wait for the exchange to complete
+     * @return the response
+     * @throws IOException if the exchange failed
+     * @throws InterruptedIOException if the waiting thread was interrupted
+     */
+    HttpResponse await() throws IOException {
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return response;
+    }
+
+    /**
+     * @return the response body as received, still content encoded;
+     * null if the response has no body
+     */
+    byte[] getBody() {
+        return body == null ? null : body.toByteArray();
+    }
+
+    /**
+     * @return number of bytes received for the response, framing included
+     */
+    long getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    /**
+     * @return number of bytes of the status line and headers
+     */
+    long getHeaderBytes() {
+        return headerBytes;
+    }
+}
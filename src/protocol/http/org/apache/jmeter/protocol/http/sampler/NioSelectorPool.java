@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Pool of selector threads shared by all {@link NioConnection}s of the JVM.
+ * <p>
+ * Each connection is bound to one {@link SelectorLoop} for its whole life, all its
+ * socket operations run on that loop's thread, so a handful of threads can drive
+ * the connections of thousands of JMeter threads.
+ * The number of loops is set by the <code>httpnio.selector_threads</code> property.
+ * @since 3.1
+ */
+final class NioSelectorPool {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    /** Number of selector threads, defaults to the number of processors */
+    static final int SELECTOR_THREADS =
+            JMeterUtils.getPropDefault("httpnio.selector_threads", Runtime.getRuntime().availableProcessors()); // $NON-NLS-1$
+
+    private static NioSelectorPool instance;
+
+    private final SelectorLoop[] loops;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private NioSelectorPool(int threads) throws IOException {
+        loops = new SelectorLoop[Math.max(1, threads)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new SelectorLoop("HTTP NIO selector " + (i + 1)); // $NON-NLS-1$
+        }
+        log.info("Started " + loops.length + " HTTP NIO selector thread(s)");
+    }
+
+    /**
+     * @return the shared pool, started on first use
+     * @throws IOException if a selector cannot be opened
+     */
+    static synchronized NioSelectorPool getInstance() throws IOException {
+        if (instance == null) {
+            instance = new NioSelectorPool(SELECTOR_THREADS);
+        }
+        return instance;
+    }
+
+    /**
+     * @return the loop a new connection should be bound to, chosen round robin
+     */
+    SelectorLoop nextLoop() {
+        int index = next.getAndIncrement() & Integer.MAX_VALUE;
+        return loops[index % loops.length];
+    }
+
+    /**
+     * Single threaded event loop: runs submitted tasks, dispatches socket readiness
+     * to the connections and enforces their timeouts.
+     */
+    static final class SelectorLoop implements Runnable {
+
+        private final Selector selector;
+
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        // Connections with an exchange in progress; only accessed from the loop thread
+        private final Set<NioConnection> active = new HashSet<>();
+
+        private final Thread thread;
+
+        SelectorLoop(String name) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * Run a task on the loop thread
+         * @param task the task to run
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        Selector getSelector() {
+            return selector;
+        }
+
+        /**
+         * Start checking the timeout of a connection, called from the loop thread
+         * @param connection the connection
+         */
+        void watch(NioConnection connection) {
+            active.add(connection);
+        }
+
+        /**
+         * Stop checking the timeout of a connection, called from the loop thread
+         * @param connection the connection
+         */
+        void unwatch(NioConnection connection) {
+            active.remove(connection);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    runTasks();
+                    selector.select(nextTimeout());
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        try {
+                            ((NioConnection) key.attachment()).handle(key.readyOps());
+                        } catch (CancelledKeyException e) {
+                            // connection closed while the key was selected
+                        }
+                    }
+                    checkTimeouts();
+                } catch (Exception e) { // Loop must survive any connection failure
+                    log.error("Unexpected error in " + thread.getName(), e);
+                }
+            }
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        /**
+         * @return milliseconds until the nearest connection deadline, 0 to wait forever
+         */
+        private long nextTimeout() {
+            if (active.isEmpty()) {
+                return 0;
+            }
+            long now = System.nanoTime();
+            long nearest = Long.MAX_VALUE;
+            for (NioConnection connection : active) {
+                long deadline = connection.getDeadline();
+                if (deadline != 0) {
+                    nearest = Math.min(nearest, deadline - now);
+                }
+            }
+            if (nearest == Long.MAX_VALUE) {
+                return 0;
+            }
+            return Math.max(1L, TimeUnit.NANOSECONDS.toMillis(nearest) + 1);
+        }
+
+        private void checkTimeouts() {
+            if (active.isEmpty()) {
+                return;
+            }
+            long now = System.nanoTime();
+            // copy as timing out removes the connection from the set
+            for (NioConnection connection : active.toArray(new NioConnection[active.size()])) {
+                connection.checkTimeout(now);
+            }
+        }
+    }
+}
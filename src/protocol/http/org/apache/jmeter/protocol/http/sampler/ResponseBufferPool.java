@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Buffers into which the HTTP samplers read the responses they keep.
+ * <p>
+ * The released buffers are shared by all the threads for their next responses, as long as
+ * each is not larger than property <code>httpsampler.response_buffer.max_size</code> and all
+ * together are not larger than property <code>httpsampler.response_buffer.pool_size</code>.
+ * This avoids the arrays allocated while a response of unknown length grows, but the data
+ * is still copied once into an array of its exact size. The pool is emptied when the test ends.
+ * <p>
+ * A buffer is used by a single thread between {@link #acquire(int)} and {@link #release(byte[])}.
+ * @since 3.1
+ */
+final class ResponseBufferPool {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    /** Buffers larger than this are not kept once released */
+    private static final int MAX_SIZE =
+            JMeterUtils.getPropDefault("httpsampler.response_buffer.max_size", 1024 * 1024); // $NON-NLS-1$
+
+    /** Total size of the buffers kept once released */
+    private static final long POOL_SIZE =
+            JMeterUtils.getPropDefault("httpsampler.response_buffer.pool_size", 16L * 1024 * 1024); // $NON-NLS-1$
+
+    private static final int MIN_SIZE = 8 * 1024;
+
+    /** Released buffers, bucket i holding those of at least MIN_SIZE * 2^i bytes */
+    private static final List<Deque<byte[]>> BUCKETS = new ArrayList<>();
+
+    static {
+        for (long size = MIN_SIZE; size <= MAX_SIZE; size *= 2) {
+            BUCKETS.add(new ConcurrentLinkedDeque<byte[]>());
+        }
+    }
+
+    /** Total size of the buffers in the buckets */
+    private static final AtomicLong pooledBytes = new AtomicLong();
+
+    private static final AtomicLong hits = new AtomicLong();
+
+    private static final AtomicLong misses = new AtomicLong();
+
+    private static final AtomicInteger highWaterMark = new AtomicInteger();
+
+    private ResponseBufferPool() {
+        // Not intended to be instantiated
+    }
+
+    /**
+     * @param size expected number of bytes to read
+     * @return a released buffer if one is large enough, else a new buffer
+     */
+    static byte[] acquire(int size) {
+        // First bucket whose buffers are all large enough, only look in the next one too
+        // not to use a much larger buffer than needed
+        int first = bucketOf(Math.max(size, MIN_SIZE) * 2L - 1);
+        for (int i = first; i < Math.min(first + 2, BUCKETS.size()); i++) {
+            byte[] buffer = BUCKETS.get(i).pollFirst();
+            if (buffer != null) {
+                pooledBytes.addAndGet(-buffer.length);
+                hits.incrementAndGet();
+                return buffer;
+            }
+        }
+        misses.incrementAndGet();
+        return allocate(size);
+    }
+
+    /**
+     * @param buffer buffer which is full
+     * @param size number of bytes of the buffer to keep
+     * @return a larger buffer starting with the first <code>size</code> bytes of <code>buffer</code>
+     */
+    static byte[] grow(byte[] buffer, int size) {
+        misses.incrementAndGet();
+        byte[] larger = allocate(Math.max(2 * buffer.length, size + MIN_SIZE));
+        System.arraycopy(buffer, 0, larger, 0, size);
+        return larger;
+    }
+
+    /**
+     * Keep the buffer for the next responses, if it and the pool are not too large.
+     * @param buffer buffer acquired by the current thread, which must no longer be used
+     */
+    static void release(byte[] buffer) {
+        if (buffer.length > MAX_SIZE) {
+            return;
+        }
+        if (pooledBytes.addAndGet(buffer.length) > POOL_SIZE) {
+            pooledBytes.addAndGet(-buffer.length);
+            return;
+        }
+        BUCKETS.get(bucketOf(buffer.length)).offerFirst(buffer);
+    }
+
+    /**
+     * @param size size of a buffer
+     * @return index of the largest bucket whose buffers are not larger than <code>size</code>
+     */
+    private static int bucketOf(long size) {
+        int index = 63 - Long.numberOfLeadingZeros(Math.max(size, MIN_SIZE) / MIN_SIZE);
+        return Math.min(index, BUCKETS.size());
+    }
+
+    /**
+     * @param size minimum size
+     * @return a new buffer, rounded to a power of 2 if it may be kept
+     */
+    private static byte[] allocate(int size) {
+        size = Math.max(size, MIN_SIZE);
+        if (size <= MAX_SIZE) {
+            int rounded = Integer.highestOneBit(size);
+            if (rounded < size && rounded * 2L <= MAX_SIZE) {
+                size = rounded * 2;
+            }
+        }
+        int max = highWaterMark.get();
+        while (size > max && !highWaterMark.compareAndSet(max, size)) {
+            max = highWaterMark.get();
+        }
+        return new byte[size];
+    }
+
+    /**
+     * Drop the released buffers, so they can be garbage collected
+     */
+    static void clear() {
+        for (Deque<byte[]> bucket : BUCKETS) {
+            byte[] buffer;
+            while ((buffer = bucket.pollFirst()) != null) {
+                pooledBytes.addAndGet(-buffer.length);
+            }
+        }
+    }
+
+    /**
+     * @return number of acquisitions which reused a buffer
+     */
+    static long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of acquisitions and growths which allocated a buffer
+     */
+    static long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return size of the largest buffer allocated
+     */
+    static int getHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+    /**
+     * Log the statistics of the buffers, if any were used, then reset them
+     */
+    static void logStatistics() {
+        long hitCount = hits.getAndSet(0);
+        long missCount = misses.getAndSet(0);
+        int max = highWaterMark.getAndSet(0);
+        if (hitCount + missCount > 0 && log.isInfoEnabled()) {
+            log.info("Response buffers: hits=" + hitCount + ", misses=" + missCount // $NON-NLS-1$ $NON-NLS-2$
+                    + ", largest=" + max + " bytes"); // $NON-NLS-1$ $NON-NLS-2$
+        }
+    }
+}
@@ -0,0 +1,454 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * HPACK (RFC 7541) primitives shared by {@link HpackEncoder} and {@link HpackDecoder}:
+ * static table, Huffman code, integer and string representations and dynamic table.
+ * Header names and values are handled as ISO-8859-1, as for HTTP/1.1 headers.
+ * @since 3.1
+ */
+final class Hpack {
+
+    /** Default size of the dynamic table, in octets */
+    static final int DEFAULT_TABLE_SIZE = 4096;
+
+    /** Overhead added to the length of name and value of each dynamic table entry */
+    static final int ENTRY_OVERHEAD = 32;
+
+    /** Static table, entry i is at index i+1 */
+    static final String[][] STATIC_TABLE = {
+        { ":authority", "" },
+        { ":method", "GET" },
+        { ":method", "POST" },
+        { ":path", "/" },
+        { ":path", "/index.html" },
+        { ":scheme", "http" },
+        { ":scheme", "https" },
+        { ":status", "200" },
+        { ":status", "204" },
+        { ":status", "206" },
+        { ":status", "304" },
+        { ":status", "400" },
+        { ":status", "404" },
+        { ":status", "500" },
+        { "accept-charset", "" },
+        { "accept-encoding", "gzip, deflate" },
+        { "accept-language", "" },
+        { "accept-ranges", "" },
+        { "accept", "" },
+        { "access-control-allow-origin", "" },
+        { "age", "" },
+        { "allow", "" },
+        { "authorization", "" },
+        { "cache-control", "" },
+        { "content-disposition", "" },
+        { "content-encoding", "" },
+        { "content-language", "" },
+        { "content-length", "" },
+        { "content-location", "" },
+        { "content-range", "" },
+        { "content-type", "" },
+        { "cookie", "" },
+        { "date", "" },
+        { "etag", "" },
+        { "expect", "" },
+        { "expires", "" },
+        { "from", "" },
+        { "host", "" },
+        { "if-match", "" },
+        { "if-modified-since", "" },
+        { "if-none-match", "" },
+        { "if-range", "" },
+        { "if-unmodified-since", "" },
+        { "last-modified", "" },
+        { "link", "" },
+        { "location", "" },
+        { "max-forwards", "" },
+        { "proxy-authenticate", "" },
+        { "proxy-authorization", "" },
+        { "range", "" },
+        { "referer", "" },
+        { "refresh", "" },
+        { "retry-after", "" },
+        { "server", "" },
+        { "set-cookie", "" },
+        { "strict-transport-security", "" },
+        { "transfer-encoding", "" },
+        { "user-agent", "" },
+        { "vary", "" },
+        { "via", "" },
+        { "www-authenticate", "" }
+    };
+
+    private static final Map<String, Integer> STATIC_NAMES = new HashMap<>();
+
+    private static final Map<String, Integer> STATIC_FIELDS = new HashMap<>();
+
+    /** Huffman codes of symbols 0 to 255, right aligned */
+    private static final int[] HUFFMAN_CODES = {
+        0x1ff8, 0x7fffd8, 0xfffffe2, 0xfffffe3, 0xfffffe4, 0xfffffe5, 0xfffffe6, 0xfffffe7,
+        0xfffffe8, 0xffffea, 0x3ffffffc, 0xfffffe9, 0xfffffea, 0x3ffffffd, 0xfffffeb, 0xfffffec,
+        0xfffffed, 0xfffffee, 0xfffffef, 0xffffff0, 0xffffff1, 0xffffff2, 0x3ffffffe, 0xffffff3,
+        0xffffff4, 0xffffff5, 0xffffff6, 0xffffff7, 0xffffff8, 0xffffff9, 0xffffffa, 0xffffffb,
+        0x14, 0x3f8, 0x3f9, 0xffa, 0x1ff9, 0x15, 0xf8, 0x7fa, 0x3fa, 0x3fb, 0xf9, 0x7fb, 0xfa, 0x16,
+        0x17, 0x18, 0x0, 0x1, 0x2, 0x19, 0x1a, 0x1b, 0x1c, 0x1d, 0x1e, 0x1f, 0x5c, 0xfb, 0x7ffc,
+        0x20, 0xffb, 0x3fc, 0x1ffa, 0x21, 0x5d, 0x5e, 0x5f, 0x60, 0x61, 0x62, 0x63, 0x64, 0x65,
+        0x66, 0x67, 0x68, 0x69, 0x6a, 0x6b, 0x6c, 0x6d, 0x6e, 0x6f, 0x70, 0x71, 0x72, 0xfc, 0x73,
+        0xfd, 0x1ffb, 0x7fff0, 0x1ffc, 0x3ffc, 0x22, 0x7ffd, 0x3, 0x23, 0x4, 0x24, 0x5, 0x25, 0x26,
+        0x27, 0x6, 0x74, 0x75, 0x28, 0x29, 0x2a, 0x7, 0x2b, 0x76, 0x2c, 0x8, 0x9, 0x2d, 0x77, 0x78,
+        0x79, 0x7a, 0x7b, 0x7ffe, 0x7fc, 0x3ffd, 0x1ffd, 0xffffffc, 0xfffe6, 0x3fffd2, 0xfffe7,
+        0xfffe8, 0x3fffd3, 0x3fffd4, 0x3fffd5, 0x7fffd9, 0x3fffd6, 0x7fffda, 0x7fffdb, 0x7fffdc,
+        0x7fffdd, 0x7fffde, 0xffffeb, 0x7fffdf, 0xffffec, 0xffffed, 0x3fffd7, 0x7fffe0, 0xffffee,
+        0x7fffe1, 0x7fffe2, 0x7fffe3, 0x7fffe4, 0x1fffdc, 0x3fffd8, 0x7fffe5, 0x3fffd9, 0x7fffe6,
+        0x7fffe7, 0xffffef, 0x3fffda, 0x1fffdd, 0xfffe9, 0x3fffdb, 0x3fffdc, 0x7fffe8, 0x7fffe9,
+        0x1fffde, 0x7fffea, 0x3fffdd, 0x3fffde, 0xfffff0, 0x1fffdf, 0x3fffdf, 0x7fffeb, 0x7fffec,
+        0x1fffe0, 0x1fffe1, 0x3fffe0, 0x1fffe2, 0x7fffed, 0x3fffe1, 0x7fffee, 0x7fffef, 0xfffea,
+        0x3fffe2, 0x3fffe3, 0x3fffe4, 0x7ffff0, 0x3fffe5, 0x3fffe6, 0x7ffff1, 0x3ffffe0, 0x3ffffe1,
+        0xfffeb, 0x7fff1, 0x3fffe7, 0x7ffff2, 0x3fffe8, 0x1ffffec, 0x3ffffe2, 0x3ffffe3, 0x3ffffe4,
+        0x7ffffde, 0x7ffffdf, 0x3ffffe5, 0xfffff1, 0x1ffffed, 0x7fff2, 0x1fffe3, 0x3ffffe6,
+        0x7ffffe0, 0x7ffffe1, 0x3ffffe7, 0x7ffffe2, 0xfffff2, 0x1fffe4, 0x1fffe5, 0x3ffffe8,
+        0x3ffffe9, 0xffffffd, 0x7ffffe3, 0x7ffffe4, 0x7ffffe5, 0xfffec, 0xfffff3, 0xfffed, 0x1fffe6,
+        0x3fffe9, 0x1fffe7, 0x1fffe8, 0x7ffff3, 0x3fffea, 0x3fffeb, 0x1ffffee, 0x1ffffef, 0xfffff4,
+        0xfffff5, 0x3ffffea, 0x7ffff4, 0x3ffffeb, 0x7ffffe6, 0x3ffffec, 0x3ffffed, 0x7ffffe7,
+        0x7ffffe8, 0x7ffffe9, 0x7ffffea, 0x7ffffeb, 0xffffffe, 0x7ffffec, 0x7ffffed, 0x7ffffee,
+        0x7ffffef, 0x7fffff0, 0x3ffffee
+    };
+
+    /** Length in bits of the Huffman codes */
+    private static final byte[] HUFFMAN_LENGTHS = {
+        13, 23, 28, 28, 28, 28, 28, 28, 28, 24, 30, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 30,
+        28, 28, 28, 28, 28, 28, 28, 28, 28, 6, 10, 10, 12, 13, 6, 8, 11, 10, 10, 8, 11, 8, 6, 6, 6,
+        5, 5, 5, 6, 6, 6, 6, 6, 6, 6, 7, 8, 15, 6, 12, 10, 13, 6, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7,
+        7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 8, 7, 8, 13, 19, 13, 14, 6, 15, 5, 6, 5, 6, 5, 6, 6, 6, 5,
+        7, 7, 6, 6, 6, 5, 6, 7, 6, 5, 5, 6, 7, 7, 7, 7, 7, 15, 11, 14, 13, 28, 20, 22, 20, 20, 22,
+        22, 22, 23, 22, 23, 23, 23, 23, 23, 24, 23, 24, 24, 22, 23, 24, 23, 23, 23, 23, 21, 22, 23,
+        22, 23, 23, 24, 22, 21, 20, 22, 22, 23, 23, 21, 23, 22, 22, 24, 21, 22, 23, 23, 21, 21, 22,
+        21, 23, 22, 23, 23, 20, 22, 22, 22, 23, 22, 22, 23, 26, 26, 20, 19, 22, 23, 22, 25, 26, 26,
+        26, 27, 27, 26, 24, 25, 19, 21, 26, 27, 27, 26, 27, 24, 21, 21, 26, 26, 28, 27, 27, 27, 20,
+        24, 20, 21, 22, 21, 21, 23, 22, 22, 25, 25, 24, 24, 26, 23, 26, 27, 26, 26, 27, 27, 27, 27,
+        27, 28, 27, 27, 27, 27, 27, 26
+    };
+
+    /** Decoding tree: children of node n are at 2n and 2n+1, leaves hold -(symbol + 1) */
+    private static final int[] HUFFMAN_TREE;
+
+    static {
+        for (int i = STATIC_TABLE.length - 1; i >= 0; i--) {
+            String[] field = STATIC_TABLE[i];
+            STATIC_NAMES.put(field[0], Integer.valueOf(i + 1));
+            if (!field[1].isEmpty()) {
+                STATIC_FIELDS.put(field[0] + '\0' + field[1], Integer.valueOf(i + 1)); // $NON-NLS-1$
+            }
+        }
+        int nodes = 1;
+        int[] tree = new int[1024];
+        for (int symbol = 0; symbol < HUFFMAN_CODES.length; symbol++) {
+            int node = 0;
+            for (int bit = HUFFMAN_LENGTHS[symbol] - 1; bit >= 0; bit--) {
+                int child = 2 * node + ((HUFFMAN_CODES[symbol] >>> bit) & 1);
+                if (bit == 0) {
+                    tree[child] = -(symbol + 1);
+                } else {
+                    if (tree[child] == 0) {
+                        tree[child] = nodes++;
+                    }
+                    node = tree[child];
+                }
+            }
+        }
+        HUFFMAN_TREE = tree;
+    }
+
+    private Hpack() {
+    }
+
+    /**
+     * @param name lower case header name
+     * @return index of the first static table entry with this name, 0 if none
+     */
+    static int staticNameIndex(String name) {
+        Integer index = STATIC_NAMES.get(name);
+        return index == null ? 0 : index.intValue();
+    }
+
+    /**
+     * @param name lower case header name
+     * @param value header value
+     * @return index of the static table entry with this name and value, 0 if none
+     */
+    static int staticFieldIndex(String name, String value) {
+        Integer index = STATIC_FIELDS.get(name + '\0' + value); // $NON-NLS-1$
+        return index == null ? 0 : index.intValue();
+    }
+
+    /**
+     * Write an integer with an N-bit prefix
+     * @param out destination
+     * @param firstByte bits of the first byte above the prefix
+     * @param prefixBits number of bits of the prefix, 1 to 8
+     * @param value non-negative value
+     */
+    static void writeInt(ByteArrayOutputStream out, int firstByte, int prefixBits, int value) {
+        int max = (1 << prefixBits) - 1;
+        if (value < max) {
+            out.write(firstByte | value);
+            return;
+        }
+        out.write(firstByte | max);
+        int remaining = value - max;
+        while (remaining >= 0x80) {
+            out.write((remaining & 0x7f) | 0x80);
+            remaining >>>= 7;
+        }
+        out.write(remaining);
+    }
+
+    /**
+     * Write a string literal, Huffman encoded when that makes it shorter
+     * @param out destination
+     * @param value string to write
+     */
+    static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+        long bits = 0;
+        for (byte b : bytes) {
+            bits += HUFFMAN_LENGTHS[b & 0xff];
+        }
+        int huffmanLength = (int) ((bits + 7) / 8);
+        if (huffmanLength >= bytes.length) {
+            writeInt(out, 0, 7, bytes.length);
+            out.write(bytes, 0, bytes.length);
+            return;
+        }
+        writeInt(out, 0x80, 7, huffmanLength);
+        long pending = 0;
+        int pendingBits = 0;
+        for (byte b : bytes) {
+            int symbol = b & 0xff;
+            int length = HUFFMAN_LENGTHS[symbol];
+            pending = (pending << length) | HUFFMAN_CODES[symbol];
+            pendingBits += length;
+            while (pendingBits >= 8) {
+                pendingBits -= 8;
+                out.write((int) (pending >>> pendingBits));
+            }
+            pending &= (1L << pendingBits) - 1;
+        }
+        if (pendingBits > 0) {
+            // pad with the most significant bits of EOS, all ones
+            out.write((int) ((pending << (8 - pendingBits)) | (0xff >>> pendingBits)));
+        }
+    }
+
+    /**
+     * Reads HPACK representations from a header block
+     */
+    static final class Reader {
+        private final byte[] block;
+        private int position;
+        private final int end;
+
+        Reader(byte[] block, int offset, int length) {
+            this.block = block;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        boolean hasRemaining() {
+            return position < end;
+        }
+
+        /**
+         * @return the next byte, not consumed
+         */
+        int peek() {
+            return block[position] & 0xff;
+        }
+
+        /**
+         * Read an integer with an N-bit prefix
+         * @param prefixBits number of bits of the prefix
+         * @return the value
+         * @throws IOException if the integer is truncated or too large
+         */
+        int readInt(int prefixBits) throws IOException {
+            int max = (1 << prefixBits) - 1;
+            int value = block[position++] & max;
+            if (value < max) {
+                return value;
+            }
+            long result = value;
+            int shift = 0;
+            int b;
+            do {
+                if (position >= end) {
+                    throw new IOException("HPACK integer truncated");
+                }
+                b = block[position++] & 0xff;
+                result += (long) (b & 0x7f) << shift;
+                shift += 7;
+                if (result > Integer.MAX_VALUE) {
+                    throw new IOException("HPACK integer overflow");
+                }
+            } while ((b & 0x80) != 0);
+            return (int) result;
+        }
+
+        /**
+         * @return the string literal at the current position
+         * @throws IOException if the literal is truncated or badly encoded
+         */
+        String readString() throws IOException {
+            if (position >= end) {
+                throw new IOException("HPACK string literal truncated");
+            }
+            boolean huffman = (peek() & 0x80) != 0;
+            int length = readInt(7);
+            if (length > end - position) {
+                throw new IOException("HPACK string literal truncated");
+            }
+            String value = huffman
+                    ? decodeHuffman(block, position, length)
+                    : new String(block, position, length, StandardCharsets.ISO_8859_1);
+            position += length;
+            return value;
+        }
+    }
+
+    /**
+     * @param data Huffman encoded data
+     * @param offset start of the data
+     * @param length length of the data
+     * @return decoded string
+     * @throws IOException if the data is not a valid Huffman encoded string
+     */
+    static String decodeHuffman(byte[] data, int offset, int length) throws IOException {
+        StringBuilder sb = new StringBuilder(length * 8 / 5);
+        int node = 0;
+        int depth = 0;
+        boolean allOnes = true;
+        for (int i = offset; i < offset + length; i++) {
+            int b = data[i] & 0xff;
+            for (int bit = 7; bit >= 0; bit--) {
+                int value = (b >>> bit) & 1;
+                int next = HUFFMAN_TREE[2 * node + value];
+                if (next < 0) {
+                    sb.append((char) (-next - 1));
+                    node = 0;
+                    depth = 0;
+                    allOnes = true;
+                } else if (next == 0) {
+                    throw new IOException("Invalid Huffman code"); // only EOS leads there
+                } else {
+                    node = next;
+                    depth++;
+                    allOnes &= value == 1;
+                }
+            }
+        }
+        if (depth > 7 || !allOnes) {
+            throw new IOException("Invalid Huffman padding");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * HPACK dynamic table, newest entry first
+     */
+    static final class DynamicTable {
+        private final ArrayDeque<String[]> entries = new ArrayDeque<>();
+        private int size;
+        private int maxSize;
+
+        DynamicTable(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        int getMaxSize() {
+            return maxSize;
+        }
+
+        void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+            evict(0);
+        }
+
+        int length() {
+            return entries.size();
+        }
+
+        /**
+         * @param index 1-based index in the dynamic table
+         * @return the entry, name and value
+         */
+        String[] get(int index) {
+            Iterator<String[]> it = entries.iterator();
+            String[] entry = null;
+            for (int i = 0; i < index; i++) {
+                entry = it.next();
+            }
+            return entry;
+        }
+
+        void add(String name, String value) {
+            int entrySize = entrySize(name, value);
+            evict(entrySize);
+            if (entrySize <= maxSize) {
+                entries.addFirst(new String[] { name, value });
+                size += entrySize;
+            }
+        }
+
+        /**
+         * @param name header name
+         * @param value header value, null to only match the name
+         * @return 1-based index of the newest matching entry, 0 if none
+         */
+        int find(String name, String value) {
+            int index = 1;
+            for (String[] entry : entries) {
+                if (entry[0].equals(name) && (value == null || entry[1].equals(value))) {
+                    return index;
+                }
+                index++;
+            }
+            return 0;
+        }
+
+        private void evict(int needed) {
+            while (size + needed > maxSize && !entries.isEmpty()) {
+                String[] entry = entries.removeLast();
+                size -= entrySize(entry[0], entry[1]);
+            }
+        }
+
+        static int entrySize(String name, String value) {
+            return name.length() + value.length() + ENTRY_OVERHEAD;
+        }
+    }
+}
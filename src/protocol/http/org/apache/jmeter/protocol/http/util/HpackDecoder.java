@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+
+/**
+ * HPACK (RFC 7541) header block decoder for one HTTP/2 connection.
+ * <p>
+ * Supports all representations, Huffman coded strings and dynamic table size updates.
+ * Every header block received on the connection must be decoded, in order,
+ * to keep the dynamic table in sync with the peer.
+ * This class is not thread-safe.
+ * @since 3.1
+ */
+public class HpackDecoder {
+
+    private final Hpack.DynamicTable table;
+
+    private final int maxTableSize;
+
+    /**
+     * Create a decoder allowing the default table size of 4096 octets
+     */
+    public HpackDecoder() {
+        this(Hpack.DEFAULT_TABLE_SIZE);
+    }
+
+    /**
+     * @param maxTableSize SETTINGS_HEADER_TABLE_SIZE announced to the peer
+     */
+    public HpackDecoder(int maxTableSize) {
+        this.maxTableSize = maxTableSize;
+        this.table = new Hpack.DynamicTable(maxTableSize);
+    }
+
+    /**
+     * Decode a complete header block
+     * @param block buffer holding the block
+     * @param offset start of the block
+     * @param length length of the block
+     * @return the decoded headers, in order
+     * @throws IOException if the block is not valid, the connection must then be closed
+     */
+    public List<Header> decode(byte[] block, int offset, int length) throws IOException {
+        List<Header> headers = new ArrayList<>();
+        Hpack.Reader reader = new Hpack.Reader(block, offset, length);
+        while (reader.hasRemaining()) {
+            int b = reader.peek();
+            if ((b & 0x80) != 0) { // Indexed Header Field
+                String[] field = getField(reader.readInt(7));
+                headers.add(new BasicHeader(field[0], field[1]));
+            } else if ((b & 0x40) != 0) { // Literal Header Field with Incremental Indexing
+                int index = reader.readInt(6);
+                String name = index == 0 ? reader.readString() : getField(index)[0];
+                String value = reader.readString();
+                table.add(name, value);
+                headers.add(new BasicHeader(name, value));
+            } else if ((b & 0x20) != 0) { // Dynamic Table Size Update
+                int size = reader.readInt(5);
+                if (size > maxTableSize) {
+                    throw new IOException("HPACK table size update " + size + " exceeds " + maxTableSize);
+                }
+                table.setMaxSize(size);
+            } else { // Literal Header Field without Indexing or Never Indexed
+                int index = reader.readInt(4);
+                String name = index == 0 ? reader.readString() : getField(index)[0];
+                headers.add(new BasicHeader(name, reader.readString()));
+            }
+        }
+        return headers;
+    }
+
+    private String[] getField(int index) throws IOException {
+        if (index <= 0) {
+            throw new IOException("Invalid HPACK index " + index);
+        }
+        if (index <= Hpack.STATIC_TABLE.length) {
+            return Hpack.STATIC_TABLE[index - 1];
+        }
+        int dynamicIndex = index - Hpack.STATIC_TABLE.length;
+        if (dynamicIndex > table.length()) {
+            throw new IOException("Invalid HPACK index " + index);
+        }
+        return table.get(dynamicIndex);
+    }
+}
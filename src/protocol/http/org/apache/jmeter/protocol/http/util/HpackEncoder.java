@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Locale;
+
+import org.apache.http.Header;
+
+/**
+ * HPACK (RFC 7541) header block encoder for one HTTP/2 connection.
+ * <p>
+ * Fields are added to the dynamic table, as browsers do, so repeated headers
+ * such as User-Agent or Cookie only cost a few bytes after the first request;
+ * credentials are sent as never indexed literals.
+ * Header blocks must be sent in the order they were encoded.
+ * This class is not thread-safe.
+ * @since 3.1
+ */
+public class HpackEncoder {
+
+    private final Hpack.DynamicTable table = new Hpack.DynamicTable(Hpack.DEFAULT_TABLE_SIZE);
+
+    private int pendingSizeUpdate = -1;
+
+    /**
+     * Apply the SETTINGS_HEADER_TABLE_SIZE announced by the peer,
+     * the table never grows beyond the default size
+     * @param maxSize the maximum size allowed by the peer
+     */
+    public void setMaxTableSize(int maxSize) {
+        int newSize = Math.min(maxSize, Hpack.DEFAULT_TABLE_SIZE);
+        if (newSize != table.getMaxSize()) {
+            table.setMaxSize(newSize);
+            pendingSizeUpdate = newSize;
+        }
+    }
+
+    /**
+     * Encode a header list, names are converted to lower case
+     * @param headers the headers, pseudo-headers first
+     * @return the header block
+     */
+    public byte[] encode(Iterable<? extends Header> headers) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        if (pendingSizeUpdate >= 0) {
+            Hpack.writeInt(out, 0x20, 5, pendingSizeUpdate);
+            pendingSizeUpdate = -1;
+        }
+        for (Header header : headers) {
+            encode(out, header.getName().toLowerCase(Locale.ENGLISH), header.getValue());
+        }
+        return out.toByteArray();
+    }
+
+    private void encode(ByteArrayOutputStream out, String name, String value) {
+        int staticLength = Hpack.STATIC_TABLE.length;
+        int index = Hpack.staticFieldIndex(name, value);
+        if (index == 0) {
+            int dynamicIndex = table.find(name, value);
+            if (dynamicIndex != 0) {
+                index = staticLength + dynamicIndex;
+            }
+        }
+        if (index != 0) {
+            Hpack.writeInt(out, 0x80, 7, index); // Indexed Header Field
+            return;
+        }
+        int nameIndex = Hpack.staticNameIndex(name);
+        if (nameIndex == 0) {
+            int dynamicIndex = table.find(name, null);
+            if (dynamicIndex != 0) {
+                nameIndex = staticLength + dynamicIndex;
+            }
+        }
+        if (isSensitive(name)) {
+            Hpack.writeInt(out, 0x10, 4, nameIndex); // Literal Header Field Never Indexed
+        } else if (Hpack.DynamicTable.entrySize(name, value) <= table.getMaxSize() / 2) {
+            Hpack.writeInt(out, 0x40, 6, nameIndex); // Literal Header Field with Incremental Indexing
+            table.add(name, value);
+        } else {
+            Hpack.writeInt(out, 0x00, 4, nameIndex); // Literal Header Field without Indexing
+        }
+        if (nameIndex == 0) {
+            Hpack.writeString(out, name);
+        }
+        Hpack.writeString(out, value);
+    }
+
+    private static boolean isSensitive(String name) {
+        return "authorization".equals(name) || "proxy-authorization".equals(name); // $NON-NLS-1$ $NON-NLS-2$
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HTTP/2 (RFC 7540) frame, with the constants of the protocol.
+ * <p>
+ * Frames can be read from a blocking {@link InputStream} or parsed
+ * incrementally from a {@link ByteBuffer}, as needed by non-blocking clients.
+ * @since 3.1
+ */
+public final class Http2Frame {
+
+    /** Client connection preface, sent before the first SETTINGS frame */
+    public static final byte[] CONNECTION_PREFACE =
+            "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1); // $NON-NLS-1$
+
+    /** ALPN protocol identifier of HTTP/2 over TLS */
+    public static final String ALPN_H2 = "h2"; // $NON-NLS-1$
+
+    /** Length of the frame header */
+    public static final int HEADER_LENGTH = 9;
+
+    /** Initial value of SETTINGS_MAX_FRAME_SIZE */
+    public static final int DEFAULT_MAX_FRAME_SIZE = 16384;
+
+    /** Initial flow control window of connections and streams */
+    public static final int DEFAULT_WINDOW_SIZE = 65535;
+
+    /** Largest flow control window */
+    public static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+    // Frame types
+    public static final int DATA = 0x0;
+    public static final int HEADERS = 0x1;
+    public static final int PRIORITY = 0x2;
+    public static final int RST_STREAM = 0x3;
+    public static final int SETTINGS = 0x4;
+    public static final int PUSH_PROMISE = 0x5;
+    public static final int PING = 0x6;
+    public static final int GOAWAY = 0x7;
+    public static final int WINDOW_UPDATE = 0x8;
+    public static final int CONTINUATION = 0x9;
+
+    // Frame flags
+    public static final int FLAG_END_STREAM = 0x1;
+    public static final int FLAG_ACK = 0x1;
+    public static final int FLAG_END_HEADERS = 0x4;
+    public static final int FLAG_PADDED = 0x8;
+    public static final int FLAG_PRIORITY = 0x20;
+
+    // Settings identifiers
+    public static final int SETTINGS_HEADER_TABLE_SIZE = 0x1;
+    public static final int SETTINGS_ENABLE_PUSH = 0x2;
+    public static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+    public static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+    public static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+    public static final int SETTINGS_MAX_HEADER_LIST_SIZE = 0x6;
+
+    // Error codes
+    public static final int NO_ERROR = 0x0;
+    public static final int PROTOCOL_ERROR = 0x1;
+    public static final int INTERNAL_ERROR = 0x2;
+    public static final int FLOW_CONTROL_ERROR = 0x3;
+    public static final int SETTINGS_TIMEOUT = 0x4;
+    public static final int STREAM_CLOSED = 0x5;
+    public static final int FRAME_SIZE_ERROR = 0x6;
+    public static final int REFUSED_STREAM = 0x7;
+    public static final int CANCEL = 0x8;
+    public static final int COMPRESSION_ERROR = 0x9;
+    public static final int CONNECT_ERROR = 0xa;
+    public static final int ENHANCE_YOUR_CALM = 0xb;
+    public static final int INADEQUATE_SECURITY = 0xc;
+    public static final int HTTP_1_1_REQUIRED = 0xd;
+
+    private static final String[] ERROR_NAMES = {
+        "NO_ERROR", "PROTOCOL_ERROR", "INTERNAL_ERROR", "FLOW_CONTROL_ERROR", // $NON-NLS-1$ $NON-NLS-2$ $NON-NLS-3$ $NON-NLS-4$
+        "SETTINGS_TIMEOUT", "STREAM_CLOSED", "FRAME_SIZE_ERROR", "REFUSED_STREAM", // $NON-NLS-1$ $NON-NLS-2$ $NON-NLS-3$ $NON-NLS-4$
+        "CANCEL", "COMPRESSION_ERROR", "CONNECT_ERROR", "ENHANCE_YOUR_CALM", // $NON-NLS-1$ $NON-NLS-2$ $NON-NLS-3$ $NON-NLS-4$
+        "INADEQUATE_SECURITY", "HTTP_1_1_REQUIRED" // $NON-NLS-1$ $NON-NLS-2$
+    };
+
+    private final int type;
+
+    private final int flags;
+
+    private final int streamId;
+
+    private final byte[] payload;
+
+    /**
+     * @param type frame type
+     * @param flags frame flags
+     * @param streamId stream identifier, 0 for connection frames
+     * @param payload frame payload, not copied
+     */
+    public Http2Frame(int type, int flags, int streamId, byte[] payload) {
+        this.type = type;
+        this.flags = flags;
+        this.streamId = streamId;
+        this.payload = payload;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    /**
+     * @param flag flag to check
+     * @return true if the flag is set
+     */
+    public boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    public int getStreamId() {
+        return streamId;
+    }
+
+    /**
+     * @return the payload, including padding and priority fields
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * @return the payload length, which is also the flow controlled length of DATA frames
+     */
+    public int getLength() {
+        return payload.length;
+    }
+
+    /**
+     * @return offset in the payload of the data or header block fragment,
+     * after the pad length, priority and promised stream fields
+     * @throws IOException if the frame is too short for its fields
+     */
+    public int getDataOffset() throws IOException {
+        int offset = hasPadding() ? 1 : 0;
+        if (type == HEADERS && hasFlag(FLAG_PRIORITY)) {
+            offset += 5;
+        } else if (type == PUSH_PROMISE) {
+            offset += 4;
+        }
+        if (offset + getPadLength() > payload.length) {
+            throw new IOException("HTTP/2 frame too short: " + this);
+        }
+        return offset;
+    }
+
+    /**
+     * @return length of the data or header block fragment, without the padding
+     * @throws IOException if the frame is too short for its fields
+     */
+    public int getDataLength() throws IOException {
+        return payload.length - getDataOffset() - getPadLength();
+    }
+
+    private boolean hasPadding() {
+        return (type == DATA || type == HEADERS || type == PUSH_PROMISE) && hasFlag(FLAG_PADDED);
+    }
+
+    private int getPadLength() {
+        return hasPadding() && payload.length > 0 ? payload[0] & 0xff : 0;
+    }
+
+    /**
+     * @param offset offset in the payload
+     * @return the 32 bits integer at this offset
+     */
+    public int getInt(int offset) {
+        return ((payload[offset] & 0xff) << 24) | ((payload[offset + 1] & 0xff) << 16)
+                | ((payload[offset + 2] & 0xff) << 8) | (payload[offset + 3] & 0xff);
+    }
+
+    /**
+     * @return the frame header and payload, ready to be written
+     */
+    public ByteBuffer toByteBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + payload.length);
+        writeHeader(buffer);
+        buffer.put(payload);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @param out the stream to write the frame to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        writeHeader(header);
+        out.write(header.array());
+        out.write(payload);
+    }
+
+    private void writeHeader(ByteBuffer buffer) {
+        int length = payload.length;
+        buffer.put((byte) (length >>> 16));
+        buffer.put((byte) (length >>> 8));
+        buffer.put((byte) length);
+        buffer.put((byte) type);
+        buffer.put((byte) flags);
+        buffer.putInt(streamId & Integer.MAX_VALUE);
+    }
+
+    /**
+     * Read a frame from a blocking stream
+     * @param in stream positioned at a frame header
+     * @param maxFrameSize largest payload accepted
+     * @return the frame, null if the stream ended before the frame
+     * @throws IOException if reading fails, the frame is truncated or too large
+     */
+    public static Http2Frame read(InputStream in, int maxFrameSize) throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        int read = in.read(header);
+        if (read < 0) {
+            return null;
+        }
+        readFully(in, header, read, HEADER_LENGTH - read);
+        int length = ((header[0] & 0xff) << 16) | ((header[1] & 0xff) << 8) | (header[2] & 0xff);
+        if (length > maxFrameSize) {
+            throw new IOException("HTTP/2 frame size " + length + " exceeds " + maxFrameSize);
+        }
+        byte[] payload = new byte[length];
+        readFully(in, payload, 0, length);
+        return new Http2Frame(header[3] & 0xff, header[4] & 0xff, ByteBuffer.wrap(header, 5, 4).getInt() & Integer.MAX_VALUE, payload);
+    }
+
+    private static void readFully(InputStream in, byte[] buffer, int offset, int length) throws IOException {
+        int position = offset;
+        int end = offset + length;
+        while (position < end) {
+            int read = in.read(buffer, position, end - position);
+            if (read < 0) {
+                throw new EOFException("HTTP/2 frame truncated");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Parse a frame from received data, if it is complete
+     * @param buffer received data, in read mode; its position is only advanced
+     * when a whole frame is returned
+     * @param maxFrameSize largest payload accepted
+     * @return the frame, or null if more data is needed
+     * @throws IOException if the frame is too large
+     */
+    public static Http2Frame parse(ByteBuffer buffer, int maxFrameSize) throws IOException {
+        if (buffer.remaining() < HEADER_LENGTH) {
+            return null;
+        }
+        int start = buffer.position();
+        int length = ((buffer.get(start) & 0xff) << 16) | ((buffer.get(start + 1) & 0xff) << 8) | (buffer.get(start + 2) & 0xff);
+        if (length > maxFrameSize) {
+            throw new IOException("HTTP/2 frame size " + length + " exceeds " + maxFrameSize);
+        }
+        if (buffer.remaining() < HEADER_LENGTH + length) {
+            return null;
+        }
+        int type = buffer.get(start + 3) & 0xff;
+        int flags = buffer.get(start + 4) & 0xff;
+        int streamId = buffer.getInt(start + 5) & Integer.MAX_VALUE;
+        byte[] payload = new byte[length];
+        buffer.position(start + HEADER_LENGTH);
+        buffer.get(payload);
+        return new Http2Frame(type, flags, streamId, payload);
+    }
+
+    /**
+     * @param ack true for a SETTINGS acknowledgement, which must have no parameters
+     * @param parameters pairs of setting identifier and value
+     * @return SETTINGS frame
+     */
+    public static Http2Frame settings(boolean ack, int... parameters) {
+        ByteBuffer payload = ByteBuffer.allocate(parameters.length / 2 * 6);
+        for (int i = 0; i + 1 < parameters.length; i += 2) {
+            payload.putShort((short) parameters[i]);
+            payload.putInt(parameters[i + 1]);
+        }
+        return new Http2Frame(SETTINGS, ack ? FLAG_ACK : 0, 0, payload.array());
+    }
+
+    /**
+     * @param streamId stream identifier, 0 for the connection
+     * @param increment window size increment, 1 to 2<sup>31</sup>-1
+     * @return WINDOW_UPDATE frame
+     */
+    public static Http2Frame windowUpdate(int streamId, int increment) {
+        return new Http2Frame(WINDOW_UPDATE, 0, streamId, ByteBuffer.allocate(4).putInt(increment).array());
+    }
+
+    /**
+     * @param streamId stream identifier
+     * @param errorCode error code
+     * @return RST_STREAM frame
+     */
+    public static Http2Frame rstStream(int streamId, int errorCode) {
+        return new Http2Frame(RST_STREAM, 0, streamId, ByteBuffer.allocate(4).putInt(errorCode).array());
+    }
+
+    /**
+     * @param lastStreamId last peer initiated stream processed
+     * @param errorCode error code
+     * @return GOAWAY frame
+     */
+    public static Http2Frame goAway(int lastStreamId, int errorCode) {
+        return new Http2Frame(GOAWAY, 0, 0, ByteBuffer.allocate(8).putInt(lastStreamId).putInt(errorCode).array());
+    }
+
+    /**
+     * @param errorCode HTTP/2 error code
+     * @return name of the error code, as in RFC 7540
+     */
+    public static String getErrorName(int errorCode) {
+        if (errorCode >= 0 && errorCode < ERROR_NAMES.length) {
+            return ERROR_NAMES[errorCode];
+        }
+        return "0x" + Integer.toHexString(errorCode); // $NON-NLS-1$
+    }
+
+    @Override
+    public String toString() {
+        return "Http2Frame[type=" + type + ", flags=0x" + Integer.toHexString(flags) // $NON-NLS-1$ $NON-NLS-2$
+                + ", stream=" + streamId + ", length=" + payload.length + "]"; // $NON-NLS-1$ $NON-NLS-2$ $NON-NLS-3$
+    }
+}
@@ -247,4 +247,92 @@ public class TestCVSDataSet extends JMeterTestCase {
         csv1.iterationStart(null);
         assertEquals("a4",threadVars.get("a"));
     }
+
+    @Test
+    public void testLoadInMemory() throws Exception {
+        CSVDataSet csv = new CSVDataSet();
+        csv.setFilename(findTestPath("testfiles/testempty.csv"));
+        csv.setVariableNames("a,b,c");
+        csv.setDelimiter(",");
+        csv.setLoadMode("loadMode.memory");
+
+        csv.iterationStart(null);
+        assertEquals("",threadVars.get("a"));
+        assertEquals("b1",threadVars.get("b"));
+        assertEquals("c1",threadVars.get("c"));
+        csv.iterationStart(null);
+        csv.iterationStart(null);
+        csv.iterationStart(null);
+        assertEquals("a4",threadVars.get("a"));
+        assertEquals("b4",threadVars.get("b"));
+        assertEquals("c4",threadVars.get("c"));
+
+        csv.iterationStart(null); // Restart data
+        assertEquals("",threadVars.get("a"));
+        assertEquals("b1",threadVars.get("b"));
+        assertEquals("c1",threadVars.get("c"));
+    }
+
+    @Test
+    public void testLoadInMemoryHeaderQuotes(){
+        CSVDataSet csv = new CSVDataSet();
+        csv.setFilename(findTestPath("testfiles/testquoted.csv"));
+        csv.setDelimiter("|");
+        csv.setQuotedData(true);
+        csv.setRecycle(false);
+        csv.setStopThread(true);
+        csv.setLoadMode("loadMode.memory");
+        csv.iterationStart(null);
+        assertNull(threadVars.get("a"));
+        assertEquals("a1",threadVars.get("A"));
+        assertEquals("d1",threadVars.get("D|1"));
+        csv.iterationStart(null);
+        csv.iterationStart(null);
+        assertEquals("a3",threadVars.get("A"));
+        assertEquals("d3",threadVars.get("D|1"));
+        try {
+            csv.iterationStart(null);
+            fail("Expected JMeterStopThreadException");
+        } catch (JMeterStopThreadException expected) {
+            
+        }
+    }
+
+    @Test
+    public void testLoadInMemoryShareMode(){
+        new CSVDataSetBeanInfo(); // needs to be initialised
+        CSVDataSet csv0 = initCSV();
+        csv0.setLoadMode("loadMode.memory");
+        CSVDataSet csv1 = initCSV();
+        csv1.setLoadMode("loadMode.memory");
+        csv1.setShareMode("abc");
+        CSVDataSet csv2 = initCSV();
+        csv2.setLoadMode("loadMode.memory");
+        csv2.setShareMode("abc");
+        csv1.iterationStart(null);
+        assertEquals("a1",threadVars.get("a"));
+        csv1.iterationStart(null);
+        assertEquals("a2",threadVars.get("a"));
+        csv2.iterationStart(null);
+        assertEquals("a3",threadVars.get("a"));
+        csv0.iterationStart(null);
+        assertEquals("a1",threadVars.get("a"));
+        csv1.iterationStart(null);
+        assertEquals("a4",threadVars.get("a"));
+    }
+
+    @Test
+    public void testLoadInMemoryMissingFile() {
+        CSVDataSet csv = new CSVDataSet();
+        csv.setFilename("No.such.filename");
+        csv.setVariableNames("a,b,c");
+        csv.setDelimiter(",");
+        csv.setLoadMode("loadMode.partition");
+        try {
+            csv.iterationStart(null);
+            fail("Bad filename in CSVDataSet -> IllegalArgumentException");
+        } catch (IllegalArgumentException ignored) {
+            assertEquals("File No.such.filename must exist and be readable", ignored.getMessage());
+        }
+    }
 }
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TestRemoteCoordinator {
+
+    @Test
+    public void testEvenShares() {
+        RemoteCoordinatorImpl.Budget budget = new RemoteCoordinatorImpl.Budget(2);
+        assertEquals(300, budget.report("s1", 600, -1), 0.001);
+        assertEquals(300, budget.report("s2", 600, -1), 0.001);
+        assertEquals(300, budget.report("s1", 600, 300), 0.001);
+        assertEquals(300, budget.report("s2", 600, 295), 0.001);
+    }
+
+    @Test
+    public void testServerBehind() {
+        RemoteCoordinatorImpl.Budget budget = new RemoteCoordinatorImpl.Budget(2);
+        budget.report("s1", 600, -1);
+        budget.report("s2", 600, -1);
+        // s1 only achieves 200 of its 300, it keeps what it achieved plus some headroom
+        double behind = budget.report("s1", 600, 200);
+        assertEquals(200 * (1 + RemoteCoordinatorImpl.Budget.HEADROOM), behind, 0.001);
+        // s2 makes up for the rest
+        assertEquals(400, budget.report("s2", 600, 300), 0.001);
+        // s1 catches up with the headroom, it gets back an even share
+        assertEquals(300, budget.report("s1", 600, 220), 0.001);
+        assertEquals(300, budget.report("s2", 600, 400), 0.001);
+    }
+
+    @Test
+    public void testLateServer() {
+        RemoteCoordinatorImpl.Budget budget = new RemoteCoordinatorImpl.Budget(1);
+        assertEquals(600, budget.report("s1", 600, -1), 0.001);
+        // A server not expected joins the test
+        assertEquals(300, budget.report("s2", 600, -1), 0.001);
+        assertEquals(300, budget.report("s1", 600, 600), 0.001);
+    }
+
+    @Test
+    public void testWithoutCoordinator() {
+        ThroughputBudget.setCoordinator(null);
+        ThroughputBudget.reset();
+        try {
+            assertEquals(600, ThroughputBudget.getBudget("budget", 600).getRate(), 0.001);
+            // The throughput may vary during a test
+            assertEquals(1200, ThroughputBudget.getBudget("budget", 1200).getRate(), 0.001);
+        } finally {
+            ThroughputBudget.reset();
+        }
+    }
+}
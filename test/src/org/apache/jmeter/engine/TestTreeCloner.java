@@ -19,6 +19,7 @@
 package org.apache.jmeter.engine;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
@@ -26,6 +27,7 @@ import org.apache.jmeter.config.Argument;
 import org.apache.jmeter.config.Arguments;
 import org.apache.jmeter.control.GenericController;
 import org.apache.jmeter.reporters.ResultCollector;
+import org.apache.jmeter.testelement.TestElement;
 import org.apache.jmeter.testelement.TestPlan;
 import org.apache.jmeter.testelement.property.CollectionProperty;
 import org.apache.jmeter.testelement.property.JMeterProperty;
@@ -81,4 +83,42 @@ public class TestTreeCloner {
                 assertTrue(iter.next().isRunningVersion());
             }
         }
+
+        @Test
+        public void testRunningCloneSharesImmutableProperties() throws Exception {
+            ListedHashTree original = new ListedHashTree();
+            GenericController controller = new GenericController();
+            controller.setName("controller");
+            Arguments args = new Arguments();
+            args.addArgument("name", "value");
+            original.add(controller, args);
+            original.traverse(new TurnElementsOn());
+            TreeCloner cloner = new TreeCloner();
+            original.traverse(cloner);
+            ListedHashTree newTree = cloner.getClonedTree();
+            GenericController clonedController = (GenericController) newTree.getArray()[0];
+            Arguments clonedArgs = (Arguments) newTree.getTree(clonedController).getArray()[0];
+            assertSame(controller.getProperty(TestElement.NAME), clonedController.getProperty(TestElement.NAME));
+            assertNotSame(args.getProperty(Arguments.ARGUMENTS), clonedArgs.getProperty(Arguments.ARGUMENTS));
+
+            // Copy on write
+            clonedController.setName("changed");
+            assertEquals("changed", clonedController.getName());
+            assertEquals("controller", controller.getName());
+            assertNotSame(controller.getProperty(TestElement.NAME), clonedController.getProperty(TestElement.NAME));
+            clonedController.recoverRunningVersion();
+            assertEquals("controller", clonedController.getName());
+            controller.recoverRunningVersion();
+            assertEquals("controller", controller.getName());
+
+            // Clones made while not running are not shared
+            controller.setRunningVersion(false);
+            args.setRunningVersion(false);
+            TreeCloner editCloner = new TreeCloner(false);
+            original.traverse(editCloner);
+            GenericController editedController = (GenericController) editCloner.getClonedTree().getArray()[0];
+            assertNotSame(controller.getProperty(TestElement.NAME), editedController.getProperty(TestElement.NAME));
+            editedController.setName("edited");
+            assertEquals("controller", controller.getName());
+        }
 }
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.engine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCompoundVariable extends JMeterTestCase {
+
+    private JMeterVariables vars;
+
+    @Before
+    public void setUp() {
+        vars = new JMeterVariables();
+        vars.put("v", "1");
+        JMeterContextService.getContext().setVariables(vars);
+    }
+
+    @Test
+    public void testConstant() throws Exception {
+        CompoundVariable cv = new CompoundVariable("plain text");
+        assertFalse(cv.hasFunction());
+        assertFalse(cv.isDynamic());
+        assertEquals("plain text", cv.execute());
+        cv.clear();
+        assertFalse(cv.hasFunction());
+        assertEquals("", cv.execute());
+        assertEquals("", new CompoundVariable("").execute());
+    }
+
+    @Test
+    public void testVariables() throws Exception {
+        CompoundVariable cv = new CompoundVariable("a${v}b${undefined}c");
+        assertTrue(cv.hasFunction());
+        assertTrue(cv.isDynamic());
+        assertEquals("a1b${undefined}c", cv.execute());
+        vars.put("v", "2");
+        assertEquals("a2b${undefined}c", cv.execute());
+        assertEquals("a2b${undefined}c", cv.getFunction().execute());
+        // Compiled from the cache
+        CompoundVariable other = new CompoundVariable("a${v}b${undefined}c");
+        assertTrue(other.hasFunction());
+        assertEquals("a2b${undefined}c", other.execute());
+    }
+
+    @Test
+    public void testFunctionsAreNotShared() throws Exception {
+        CompoundVariable first = new CompoundVariable("${__counter(FALSE,)}");
+        CompoundVariable second = new CompoundVariable("${__counter(FALSE,)}");
+        assertEquals("1", first.execute());
+        assertEquals("2", first.execute());
+        assertEquals("1", second.execute());
+        // Copies made for FunctionProperty share the function
+        assertEquals("3", first.getFunction().execute());
+    }
+
+    @Test
+    public void testVariableSetByFunction() throws Exception {
+        CompoundVariable cv = new CompoundVariable("${__counter(FALSE,c)}-${c}");
+        assertEquals("1-1", cv.execute());
+        assertEquals("2-2", cv.execute());
+    }
+
+    @Test
+    public void testPureFunctionFolding() throws Exception {
+        CompoundVariable cv = new CompoundVariable("${__char(65)}${__urlencode(a b)}x");
+        assertTrue(cv.hasFunction());
+        assertFalse(cv.isDynamic());
+        assertEquals("Aa+bx", cv.execute());
+
+        cv = new CompoundVariable("${__char(${code})}");
+        assertTrue(cv.isDynamic());
+        vars.put("code", "66");
+        assertEquals("B", cv.execute());
+        vars.put("code", "67");
+        assertEquals("C", cv.execute());
+    }
+
+    @Test
+    public void testPureFunctionFailingIsNotFolded() throws Exception {
+        // URLDecoder throws an IllegalArgumentException for the invalid escape
+        CompoundVariable cv = new CompoundVariable();
+        cv.setParameters("x${__urldecode(%zz)}y");
+        assertTrue(cv.hasFunction());
+        // evaluated at each execution
+        assertTrue(cv.isDynamic());
+    }
+}
@@ -67,6 +67,23 @@ public class TestRegexExtractor {
             jmctx.setPreviousResult(result);
         }
 
+        @Test
+        public void testGroupsOfManyMatches() throws Exception {
+            StringBuilder data = new StringBuilder();
+            for (int i = 1; i <= 30; i++) {
+                data.append("<i>").append(i).append("</i>");
+            }
+            result.setResponseData(data.toString(), null);
+            extractor.setRegex("<i>(\\d+)</i>");
+            extractor.setTemplate("$1$");
+            extractor.setMatchNumber(-1);
+            extractor.process();
+            assertEquals("30", vars.get("regVal_matchNr"));
+            assertEquals("1", vars.get("regVal_25_g"));
+            assertEquals("25", vars.get("regVal_25_g1"));
+            assertEquals("<i>30</i>", vars.get("regVal_30_g0"));
+        }
+
         @Test
         public void testEmptyDefaultVariable() throws Exception {
             extractor.setRegex("<value name=\"positioncount\">(.+?)</value>");
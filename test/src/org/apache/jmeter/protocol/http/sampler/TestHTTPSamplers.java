@@ -18,13 +18,19 @@
 
 package org.apache.jmeter.protocol.http.sampler;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
 
 import org.apache.jmeter.config.Argument;
 import org.apache.jmeter.config.Arguments;
 import org.apache.jmeter.protocol.http.util.HTTPConstants;
 import org.apache.jmeter.protocol.http.util.HTTPFileArg;
+import org.apache.jmeter.threads.JMeterContext;
+import org.apache.jmeter.threads.JMeterContextService;
 import org.junit.Test;
 
 public class TestHTTPSamplers {
@@ -364,4 +370,124 @@ public class TestHTTPSamplers {
         file = sampler.getHTTPFiles()[0];
         assertEquals("mime2", file.getMimeType());
     }
+
+    @Test
+    public void testReadResponseNotNeeded() throws Exception {
+        HTTPSamplerBase sampler = new HTTPNullSampler();
+        byte[] body = new byte[20000];
+        JMeterContext context = JMeterContextService.getContext();
+        try {
+            HTTPSampleResult res = new HTTPSampleResult();
+            assertEquals(body.length, sampler.readResponse(res, new ByteArrayInputStream(body), 0).length);
+
+            context.setResponseDataNeeded(false);
+            res = new HTTPSampleResult();
+            assertEquals(0, sampler.readResponse(res, new ByteArrayInputStream(body), 0).length);
+            assertEquals(body.length, res.getBodySize());
+            assertEquals(body.length, res.getBytes());
+
+            // Embedded resources are parsed from the response
+            sampler.setImageParser(true);
+            res = new HTTPSampleResult();
+            assertEquals(body.length, sampler.readResponse(res, new ByteArrayInputStream(body), 0).length);
+        } finally {
+            context.setResponseDataNeeded(true);
+        }
+    }
+
+    @Test
+    public void testReadResponseBuffers() throws Exception {
+        HTTPSamplerBase sampler = new HTTPNullSampler();
+        byte[] body = new byte[20000];
+        body[0] = 1;
+        body[body.length - 1] = 2;
+        // Known length
+        byte[] data = sampler.readResponse(new HTTPSampleResult(), new ByteArrayInputStream(body), body.length);
+        assertArrayEquals(body, data);
+        long misses = ResponseBufferPool.getMisses();
+        long hits = ResponseBufferPool.getHits();
+        // The buffer of the previous response is reused, no buffer is allocated
+        data = sampler.readResponse(new HTTPSampleResult(), new ByteArrayInputStream(body), body.length);
+        assertArrayEquals(body, data);
+        assertEquals(misses, ResponseBufferPool.getMisses());
+        assertEquals(hits + 1, ResponseBufferPool.getHits());
+        assertTrue(ResponseBufferPool.getHighWaterMark() >= body.length);
+
+        // Unknown or wrong length
+        assertArrayEquals(body, sampler.readResponse(new HTTPSampleResult(), new ByteArrayInputStream(body), 0));
+        assertArrayEquals(body, sampler.readResponse(new HTTPSampleResult(), new ByteArrayInputStream(body), 10));
+        byte[] large = new byte[100000];
+        large[large.length - 1] = 3;
+        assertArrayEquals(large, sampler.readResponse(new HTTPSampleResult(), new ByteArrayInputStream(large), 0));
+        assertEquals(0, sampler.readResponse(new HTTPSampleResult(), new ByteArrayInputStream(new byte[0]), 0).length);
+
+        // The buffers are dropped when the test ends
+        sampler.testEnded();
+        misses = ResponseBufferPool.getMisses();
+        assertArrayEquals(body, sampler.readResponse(new HTTPSampleResult(), new ByteArrayInputStream(body), body.length));
+        assertEquals(misses + 1, ResponseBufferPool.getMisses());
+    }
+
+    @Test
+    public void testResponseBufferPoolSize() throws Exception {
+        ResponseBufferPool.clear();
+        int size = 1024 * 1024;
+        int count = 20;
+        // Only the default httpsampler.response_buffer.pool_size of 16MB is kept
+        for (int i = 0; i < count; i++) {
+            ResponseBufferPool.release(new byte[size]);
+        }
+        long hits = ResponseBufferPool.getHits();
+        for (int i = 0; i < count; i++) {
+            assertTrue(ResponseBufferPool.acquire(size).length >= size);
+        }
+        assertEquals(hits + 16, ResponseBufferPool.getHits());
+        ResponseBufferPool.clear();
+    }
+
+    @Test
+    public void testReadResponsePrefix() throws Exception {
+        HTTPSamplerBase sampler = new HTTPNullSampler();
+        byte[] body = new byte[20000];
+        body[99] = 1;
+        JMeterContext context = JMeterContextService.getContext();
+        try {
+            context.setResponseDataMaxSize(100);
+            HTTPSampleResult res = new HTTPSampleResult();
+            byte[] prefix = sampler.readResponse(res, new ByteArrayInputStream(body), body.length);
+            assertEquals(100, prefix.length);
+            assertEquals(1, prefix[99]);
+            assertEquals(body.length, res.getBodySize());
+            assertEquals(body.length, res.getBytes());
+
+            // Prefix larger than the initial buffer
+            context.setResponseDataMaxSize(30000);
+            byte[] large = new byte[100000];
+            large[29999] = 3;
+            res = new HTTPSampleResult();
+            prefix = sampler.readResponse(res, new ByteArrayInputStream(large), 0);
+            assertEquals(30000, prefix.length);
+            assertEquals(3, prefix[29999]);
+            assertEquals(large.length, res.getBodySize());
+
+            // Shorter responses are kept whole
+            res = new HTTPSampleResult();
+            assertEquals(50, sampler.readResponse(res, new ByteArrayInputStream(new byte[50]), 0).length);
+            assertEquals(50, res.getBodySize());
+
+            // The buffer does not grow once it holds the prefix
+            ResponseBufferPool.clear();
+            context.setResponseDataMaxSize(16 * 1024);
+            large[16 * 1024 - 1] = 4;
+            long misses = ResponseBufferPool.getMisses();
+            res = new HTTPSampleResult();
+            prefix = sampler.readResponse(res, new ByteArrayInputStream(large), large.length);
+            assertEquals(16 * 1024, prefix.length);
+            assertEquals(4, prefix[16 * 1024 - 1]);
+            assertEquals(large.length, res.getBodySize());
+            assertEquals(misses + 1, ResponseBufferPool.getMisses());
+        } finally {
+            context.setResponseDataMaxSize(0);
+        }
+    }
 }
@@ -60,6 +60,8 @@ public class TestHTTPSamplersAgainstHttpMirrorServer extends JMeterTestCaseJUnit
     private static final int HTTP_SAMPLER = 0;
     private static final int HTTP_SAMPLER2 = 1;
     private static final int HTTP_SAMPLER3 = 2;
+    private static final int HTTP_SAMPLER_NIO = 3;
+    private static final int HTTP_SAMPLER_HTTP2 = 4;
     
     /** The encodings used for http headers and control information */
     private static final String ISO_8859_1 = "ISO-8859-1"; // $NON-NLS-1$
@@ -92,10 +94,14 @@ public class TestHTTPSamplersAgainstHttpMirrorServer extends JMeterTestCaseJUnit
             testSuite.addTest(new TestHTTPSamplersAgainstHttpMirrorServer("itemised_testGetRequest_Parameters", i));
             testSuite.addTest(new TestHTTPSamplersAgainstHttpMirrorServer("itemised_testGetRequest_Parameters2", i));
             testSuite.addTest(new TestHTTPSamplersAgainstHttpMirrorServer("itemised_testGetRequest_Parameters3", i));
+            testSuite.addTest(new TestHTTPSamplersAgainstHttpMirrorServer("itemised_testGetRequest_ParametersNio", i));
+            testSuite.addTest(new TestHTTPSamplersAgainstHttpMirrorServer("itemised_testGetRequest_ParametersHttp2", i));
 
             testSuite.addTest(new TestHTTPSamplersAgainstHttpMirrorServer("itemised_testPostRequest_UrlEncoded", i));
             testSuite.addTest(new TestHTTPSamplersAgainstHttpMirrorServer("itemised_testPostRequest_UrlEncoded2", i));
             testSuite.addTest(new TestHTTPSamplersAgainstHttpMirrorServer("itemised_testPostRequest_UrlEncoded3", i));
+            testSuite.addTest(new TestHTTPSamplersAgainstHttpMirrorServer("itemised_testPostRequest_UrlEncodedNio", i));
+            testSuite.addTest(new TestHTTPSamplersAgainstHttpMirrorServer("itemised_testPostRequest_UrlEncodedHttp2", i));
         }
 
         TestSetup setup = new TestSetup(testSuite){
@@ -103,6 +109,8 @@ public class TestHTTPSamplersAgainstHttpMirrorServer extends JMeterTestCaseJUnit
             @Override
             protected void setUp() throws Exception {
                     httpServer = TestHTTPMirrorThread.startHttpMirror(MIRROR_PORT);
+                    // HTTP/2 over plain connections, which the mirror server supports
+                    JMeterUtils.setProperty("http2.h2c", "true");
                     // Create the test file content
                     TEST_FILE_CONTENT = "some foo content &?=01234+56789-\u007c\u2aa1\u266a\u0153\u20a1\u0115\u0364\u00c5\u2052\uc385%C3%85".getBytes("UTF-8");
 
@@ -141,6 +149,14 @@ public class TestHTTPSamplersAgainstHttpMirrorServer extends JMeterTestCaseJUnit
         testPostRequest_UrlEncoded(HTTP_SAMPLER3, US_ASCII, item);
     }
 
+    public void itemised_testPostRequest_UrlEncodedNio() throws Exception {
+        testPostRequest_UrlEncoded(HTTP_SAMPLER_NIO, US_ASCII, item);
+    }
+
+    public void itemised_testPostRequest_UrlEncodedHttp2() throws Exception {
+        testPostRequest_UrlEncoded(HTTP_SAMPLER_HTTP2, US_ASCII, item);
+    }
+
     public void testPostRequest_FormMultipart_0() throws Exception {
         testPostRequest_FormMultipart(HTTP_SAMPLER, ISO_8859_1);
     }
@@ -154,6 +170,14 @@ public class TestHTTPSamplersAgainstHttpMirrorServer extends JMeterTestCaseJUnit
         testPostRequest_FormMultipart(HTTP_SAMPLER3, US_ASCII);
     }
 
+    public void testPostRequest_FormMultipartNio() throws Exception {
+        testPostRequest_FormMultipart(HTTP_SAMPLER_NIO, US_ASCII);
+    }
+
+    public void testPostRequest_FormMultipartHttp2() throws Exception {
+        testPostRequest_FormMultipart(HTTP_SAMPLER_HTTP2, US_ASCII);
+    }
+
     public void testPostRequest_FileUpload() throws Exception {
         testPostRequest_FileUpload(HTTP_SAMPLER, ISO_8859_1);
     }
@@ -167,6 +191,14 @@ public class TestHTTPSamplersAgainstHttpMirrorServer extends JMeterTestCaseJUnit
         testPostRequest_FileUpload(HTTP_SAMPLER3, US_ASCII);
     }
 
+    public void testPostRequest_FileUploadNio() throws Exception {
+        testPostRequest_FileUpload(HTTP_SAMPLER_NIO, US_ASCII);
+    }
+
+    public void testPostRequest_FileUploadHttp2() throws Exception {
+        testPostRequest_FileUpload(HTTP_SAMPLER_HTTP2, US_ASCII);
+    }
+
     public void testPostRequest_BodyFromParameterValues() throws Exception {
         testPostRequest_BodyFromParameterValues(HTTP_SAMPLER, ISO_8859_1);
     }
@@ -179,6 +211,14 @@ public class TestHTTPSamplersAgainstHttpMirrorServer extends JMeterTestCaseJUnit
         testPostRequest_BodyFromParameterValues(HTTP_SAMPLER3, US_ASCII);
     }
 
+    public void testPostRequest_BodyFromParameterValuesNio() throws Exception {
+        testPostRequest_BodyFromParameterValues(HTTP_SAMPLER_NIO, US_ASCII);
+    }
+
+    public void testPostRequest_BodyFromParameterValuesHttp2() throws Exception {
+        testPostRequest_BodyFromParameterValues(HTTP_SAMPLER_HTTP2, US_ASCII);
+    }
+
     public void testGetRequest() throws Exception {
         testGetRequest(HTTP_SAMPLER);
     }
@@ -190,6 +230,24 @@ public class TestHTTPSamplersAgainstHttpMirrorServer extends JMeterTestCaseJUnit
     public void testGetRequest3() throws Exception {
         testGetRequest(HTTP_SAMPLER3);
     }
+
+    public void testGetRequestNio() throws Exception {
+        testGetRequest(HTTP_SAMPLER_NIO);
+    }
+
+    public void testGetRequestHttp2() throws Exception {
+        testGetRequest(HTTP_SAMPLER_HTTP2);
+    }
+
+    public void testGetRequestHttp2Version() throws Exception {
+        HTTPSamplerBase sampler = createHttpSampler(HTTP_SAMPLER_HTTP2);
+        setupUrl(sampler, "");
+        sampler.setMethod(HTTPConstants.GET);
+        HTTPSampleResult res = executeSampler(sampler);
+        assertTrue(res.getResponseHeaders(), res.getResponseHeaders().startsWith("HTTP/2.0 200"));
+        String headersSent = getHeadersSent(res.getResponseData());
+        assertTrue(headersSent, headersSent.startsWith("GET " + sampler.getPath() + " HTTP/2.0\r\n"));
+    }
     
     public void itemised_testGetRequest_Parameters() throws Exception {
         testGetRequest_Parameters(HTTP_SAMPLER, item);
@@ -203,6 +261,14 @@ public class TestHTTPSamplersAgainstHttpMirrorServer extends JMeterTestCaseJUnit
         testGetRequest_Parameters(HTTP_SAMPLER3, item);
     }   
 
+    public void itemised_testGetRequest_ParametersNio() throws Exception {
+        testGetRequest_Parameters(HTTP_SAMPLER_NIO, item);
+    }
+
+    public void itemised_testGetRequest_ParametersHttp2() throws Exception {
+        testGetRequest_Parameters(HTTP_SAMPLER_HTTP2, item);
+    }
+
     private void testPostRequest_UrlEncoded(int samplerType, String samplerDefaultEncoding, int test) throws Exception {
         String titleField = "title";
         String titleValue = "mytitle";
@@ -1443,6 +1509,10 @@ public class TestHTTPSamplersAgainstHttpMirrorServer extends JMeterTestCaseJUnit
                 return new HTTPSampler2();
             case HTTP_SAMPLER3:
                 return new HTTPSampler3();
+            case HTTP_SAMPLER_NIO:
+                return new HTTPSamplerProxy(HTTPSamplerFactory.IMPL_NIO);
+            case HTTP_SAMPLER_HTTP2:
+                return new HTTPSamplerProxy(HTTPSamplerFactory.IMPL_HTTP2);
             default:
                 break;
         }
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.HttpResponse;
+import org.apache.http.NoHttpResponseException;
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.samplers.SampleResult;
+import org.junit.Test;
+
+public class TestNioHttpExchange extends JMeterTestCase {
+
+    private static NioHttpExchange newExchange(boolean head) {
+        SampleResult result = new SampleResult();
+        result.sampleStart();
+        return new NioHttpExchange(new byte[0], head, result, 0, 0);
+    }
+
+    private static ByteBuffer buffer(String data) {
+        return ByteBuffer.wrap(data.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static String body(NioHttpExchange exchange) {
+        return new String(exchange.getBody(), StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void testContentLength() throws Exception {
+        NioHttpExchange exchange = newExchange(false);
+        String head = "HTTP/1.1 200 OK\r\nContent-Length: 5\r\nX-Folded: a\r\n b\r\n\r\n";
+        assertTrue(exchange.onData(buffer(head + "hello")));
+        exchange.complete();
+        HttpResponse response = exchange.await();
+        assertEquals(200, response.getStatusLine().getStatusCode());
+        assertEquals("a b", response.getFirstHeader("X-Folded").getValue());
+        assertEquals("hello", body(exchange));
+        assertEquals(head.length(), exchange.getHeaderBytes());
+        assertEquals(head.length() + 5, exchange.getReceivedBytes());
+        assertTrue(exchange.isReusable());
+    }
+
+    @Test
+    public void testChunkedByteByByte() throws Exception {
+        NioHttpExchange exchange = newExchange(false);
+        String data = "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "5;ext=1\r\nhello\r\n7\r\n, world\r\n0\r\nX-Trailer: t\r\n\r\n";
+        byte[] bytes = data.getBytes(StandardCharsets.ISO_8859_1);
+        for (int i = 0; i < bytes.length; i++) {
+            boolean done = exchange.onData(ByteBuffer.wrap(bytes, i, 1));
+            assertEquals("byte " + i, i == bytes.length - 1, done);
+        }
+        assertEquals("hello, world", body(exchange));
+        assertEquals(bytes.length, exchange.getReceivedBytes());
+    }
+
+    @Test
+    public void testInterimResponseSkipped() throws Exception {
+        NioHttpExchange exchange = newExchange(false);
+        assertFalse(exchange.onData(buffer("HTTP/1.1 100 Continue\r\n\r\n")));
+        assertTrue(exchange.onData(buffer("HTTP/1.1 201 Created\r\nContent-Length: 0\r\n\r\n")));
+        exchange.complete();
+        assertEquals(201, exchange.await().getStatusLine().getStatusCode());
+        assertEquals(0, exchange.getBody().length);
+    }
+
+    @Test
+    public void testHeadHasNoBody() throws Exception {
+        NioHttpExchange exchange = newExchange(true);
+        assertTrue(exchange.onData(buffer("HTTP/1.1 200 OK\r\nContent-Length: 100\r\n\r\n")));
+        assertNull(exchange.getBody());
+    }
+
+    @Test
+    public void testCloseDelimited() throws Exception {
+        NioHttpExchange exchange = newExchange(false);
+        assertFalse(exchange.onData(buffer("HTTP/1.0 200 OK\r\n\r\nsome")));
+        assertFalse(exchange.onData(buffer(" data")));
+        exchange.onEndOfStream();
+        assertEquals("some data", body(exchange));
+        assertFalse(exchange.isReusable());
+    }
+
+    @Test
+    public void testKeepAlive() throws Exception {
+        NioHttpExchange exchange = newExchange(false);
+        exchange.onData(buffer("HTTP/1.0 200 OK\r\nConnection: keep-alive\r\nContent-Length: 0\r\n\r\n"));
+        assertTrue(exchange.isReusable());
+        exchange = newExchange(false);
+        exchange.onData(buffer("HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 0\r\n\r\n"));
+        assertFalse(exchange.isReusable());
+    }
+
+    @Test(expected = ConnectionClosedException.class)
+    public void testPrematureEndOfStream() throws Exception {
+        NioHttpExchange exchange = newExchange(false);
+        exchange.onData(buffer("HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\nabc"));
+        exchange.onEndOfStream();
+    }
+
+    @Test
+    public void testNoResponseOnReusedConnectionIsRetriable() throws Exception {
+        NioHttpExchange exchange = newExchange(false);
+        exchange.setReused();
+        try {
+            exchange.onEndOfStream();
+            fail("Expected NoHttpResponseException");
+        } catch (NoHttpResponseException e) {
+            assertTrue(exchange.isRetriable());
+        }
+    }
+
+    @Test
+    public void testConnectionReusedAndTimeout() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            Thread serverThread = new Thread() {
+                @Override
+                public void run() {
+                    try (Socket socket = server.accept()) {
+                        InputStream in = socket.getInputStream();
+                        OutputStream out = socket.getOutputStream();
+                        readRequest(in);
+                        out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok".getBytes(StandardCharsets.ISO_8859_1));
+                        out.flush();
+                        readRequest(in);
+                        // never answer the second request
+                        in.read();
+                    } catch (IOException e) {
+                        // test ends
+                    }
+                }
+            };
+            serverThread.start();
+
+            NioHttpConnection connection = new NioHttpConnection(NioSelectorPool.getInstance().nextLoop(),
+                    new InetSocketAddress("localhost", server.getLocalPort()), null, null);
+            byte[] request = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+            SampleResult result = new SampleResult();
+            result.sampleStart();
+            NioHttpExchange exchange = new NioHttpExchange(request, false, result, 0, 0);
+            connection.execute(exchange);
+            exchange.await();
+            assertArrayEquals("ok".getBytes(StandardCharsets.ISO_8859_1), exchange.getBody());
+            assertTrue(connection.isOpen());
+
+            exchange = new NioHttpExchange(request, false, result, 0, 200);
+            connection.execute(exchange);
+            try {
+                exchange.await();
+                fail("Expected SocketTimeoutException");
+            } catch (SocketTimeoutException e) {
+                assertFalse(exchange.isRetriable());
+            }
+            assertFalse(connection.isOpen());
+            serverThread.join(5000);
+        }
+    }
+
+    private static void readRequest(InputStream in) throws IOException {
+        int matched = 0;
+        while (matched < 4) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("End of stream");
+            }
+            matched = (b == "\r\n\r\n".charAt(matched)) ? matched + 1 : (b == '\r' ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+import org.junit.Test;
+
+/**
+ * Checks HPACK against the examples of RFC 7541 Appendix C
+ */
+public class TestHpack {
+
+    private static final String[][] REQUEST1 = {
+        {":method", "GET"}, {":scheme", "http"}, {":path", "/"}, {":authority", "www.example.com"}};
+
+    private static final String[][] REQUEST2 = {
+        {":method", "GET"}, {":scheme", "http"}, {":path", "/"}, {":authority", "www.example.com"},
+        {"cache-control", "no-cache"}};
+
+    private static final String[][] REQUEST3 = {
+        {":method", "GET"}, {":scheme", "https"}, {":path", "/index.html"}, {":authority", "www.example.com"},
+        {"custom-key", "custom-value"}};
+
+    private static byte[] hex(String hex) {
+        String digits = hex.replace(" ", "");
+        byte[] bytes = new byte[digits.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(digits.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static List<Header> headers(String[][] pairs) {
+        List<Header> headers = new ArrayList<>();
+        for (String[] pair : pairs) {
+            headers.add(new BasicHeader(pair[0], pair[1]));
+        }
+        return headers;
+    }
+
+    private static void assertHeaders(String[][] expected, List<Header> actual) {
+        assertEquals(expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i][0], actual.get(i).getName());
+            assertEquals(expected[i][1], actual.get(i).getValue());
+        }
+    }
+
+    private static void assertDecoded(HpackDecoder decoder, String[][] expected, String block) throws IOException {
+        byte[] bytes = hex(block);
+        assertHeaders(expected, decoder.decode(bytes, 0, bytes.length));
+    }
+
+    @Test
+    public void testDecodeWithoutHuffman() throws Exception {
+        // C.3
+        HpackDecoder decoder = new HpackDecoder();
+        assertDecoded(decoder, REQUEST1, "8286 8441 0f77 7777 2e65 7861 6d70 6c65 2e63 6f6d");
+        assertDecoded(decoder, REQUEST2, "8286 84be 5808 6e6f 2d63 6163 6865");
+        assertDecoded(decoder, REQUEST3, "8287 85bf 400a 6375 7374 6f6d 2d6b 6579 0c63 7573 746f 6d2d 7661 6c75 65");
+    }
+
+    @Test
+    public void testDecodeWithHuffman() throws Exception {
+        // C.4
+        HpackDecoder decoder = new HpackDecoder();
+        assertDecoded(decoder, REQUEST1, "8286 8441 8cf1 e3c2 e5f2 3a6b a0ab 90f4 ff");
+        assertDecoded(decoder, REQUEST2, "8286 84be 5886 a8eb 1064 9cbf");
+        assertDecoded(decoder, REQUEST3, "8287 85bf 4088 25a8 49e9 5ba9 7d7f 8925 a849 e95b b8e8 b4bf");
+    }
+
+    @Test
+    public void testEncode() throws Exception {
+        // C.4, Huffman is used as it is shorter for all these strings
+        HpackEncoder encoder = new HpackEncoder();
+        assertArrayEquals(hex("8286 8441 8cf1 e3c2 e5f2 3a6b a0ab 90f4 ff"), encoder.encode(headers(REQUEST1)));
+        assertArrayEquals(hex("8286 84be 5886 a8eb 1064 9cbf"), encoder.encode(headers(REQUEST2)));
+        assertArrayEquals(hex("8287 85bf 4088 25a8 49e9 5ba9 7d7f 8925 a849 e95b b8e8 b4bf"),
+                encoder.encode(headers(REQUEST3)));
+    }
+
+    @Test
+    public void testDecodeResponsesWithEviction() throws Exception {
+        // C.6, dynamic table limited to 256 bytes
+        HpackDecoder decoder = new HpackDecoder(256);
+        assertDecoded(decoder, new String[][] {
+                {":status", "302"}, {"cache-control", "private"},
+                {"date", "Mon, 21 Oct 2013 20:13:21 GMT"}, {"location", "https://www.example.com"}},
+                "4882 6402 5885 aec3 771a 4b61 96d0 7abe 9410 54d4 44a8 2005 9504 0b81 66e0 82a6"
+                + "2d1b ff6e 919d 29ad 1718 63c7 8f0b 97c8 e9ae 82ae 43d3");
+        assertDecoded(decoder, new String[][] {
+                {":status", "307"}, {"cache-control", "private"},
+                {"date", "Mon, 21 Oct 2013 20:13:21 GMT"}, {"location", "https://www.example.com"}},
+                "4883 640e ffc1 c0bf");
+        assertDecoded(decoder, new String[][] {
+                {":status", "200"}, {"cache-control", "private"},
+                {"date", "Mon, 21 Oct 2013 20:13:22 GMT"}, {"location", "https://www.example.com"},
+                {"content-encoding", "gzip"},
+                {"set-cookie", "foo=ASDJKHQKBZXOQWEOPIUAXQWEOIU; max-age=3600; version=1"}},
+                "88c1 6196 d07a be94 1054 d444 a820 0595 040b 8166 e084 a62d 1bff c05a 839b d9ab"
+                + "77ad 94e7 821d d7f2 e6c7 b335 dfdf cd5b 3960 d5af 2708 7f36 72c1 ab27 0fb5 291f"
+                + "9587 3160 65c0 03ed 4ee5 b106 3d50 07");
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        HpackEncoder encoder = new HpackEncoder();
+        HpackDecoder decoder = new HpackDecoder();
+        String[][] request = {
+            {":method", "POST"}, {":path", "/x?é=1"}, {"authorization", "Basic dXNlcjpwYXNz"},
+            {"x-long", new String(new char[3000]).replace('\0', 'a')}, {"empty", ""}};
+        for (int i = 0; i < 3; i++) {
+            byte[] block = encoder.encode(headers(request));
+            List<Header> decoded = decoder.decode(block, 0, block.length);
+            assertEquals(request.length, decoded.size());
+            assertEquals("authorization", decoded.get(2).getName());
+            assertEquals(request[3][1], decoded.get(3).getValue());
+            assertEquals("", decoded.get(4).getValue());
+        }
+        List<Header> upper = new ArrayList<>();
+        upper.add(new BasicHeader("Content-Type", "text/plain"));
+        byte[] block = encoder.encode(upper);
+        assertEquals("content-type", decoder.decode(block, 0, block.length).get(0).getName());
+    }
+
+    @Test
+    public void testInvalidBlocks() {
+        String[] invalid = {
+            "80",                   // index 0
+            "be",                   // empty dynamic table
+            "1f ff ff ff ff ff",    // integer overflow
+            "0085 f2b2 4a87 ff",    // literal name with EOS padding longer than 7 bits
+            "0f",                   // truncated integer
+            "0003 6162",            // truncated string
+        };
+        for (String block : invalid) {
+            byte[] bytes = hex(block);
+            try {
+                new HpackDecoder().decode(bytes, 0, bytes.length);
+                fail("Expected IOException for " + block);
+            } catch (IOException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testFrames() throws Exception {
+        Http2Frame settings = Http2Frame.settings(false, Http2Frame.SETTINGS_ENABLE_PUSH, 0,
+                Http2Frame.SETTINGS_INITIAL_WINDOW_SIZE, 1 << 20);
+        ByteBuffer buffer = settings.toByteBuffer();
+        assertEquals(Http2Frame.HEADER_LENGTH + 12, buffer.remaining());
+        ByteBuffer partial = buffer.duplicate();
+        partial.limit(partial.limit() - 1);
+        assertNull(Http2Frame.parse(partial, Http2Frame.DEFAULT_MAX_FRAME_SIZE));
+        assertEquals(0, partial.position());
+        Http2Frame parsed = Http2Frame.parse(buffer, Http2Frame.DEFAULT_MAX_FRAME_SIZE);
+        assertEquals(Http2Frame.SETTINGS, parsed.getType());
+        assertEquals(0, parsed.getStreamId());
+        assertEquals(1 << 20, parsed.getInt(8));
+        assertEquals(0, buffer.remaining());
+
+        // padded DATA frame: pad length 2, 3 bytes of data, 2 bytes of padding
+        Http2Frame data = new Http2Frame(Http2Frame.DATA, Http2Frame.FLAG_PADDED | Http2Frame.FLAG_END_STREAM, 3,
+                hex("02 616263 0000"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        data.writeTo(out);
+        Http2Frame read = Http2Frame.read(new ByteArrayInputStream(out.toByteArray()),
+                Http2Frame.DEFAULT_MAX_FRAME_SIZE);
+        assertEquals(3, read.getStreamId());
+        assertEquals(1, read.getDataOffset());
+        assertEquals(3, read.getDataLength());
+        assertEquals(6, read.getLength());
+        try {
+            Http2Frame.read(new ByteArrayInputStream(out.toByteArray()), 5);
+            fail("Expected IOException for frame larger than the maximum size");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCsvSampleReader extends JMeterTestCase {
+
+    private static final String HEADER =
+            "timeStamp,elapsed,label,responseCode,responseMessage,threadName,success,bytes,grpThreads,allThreads,Latency";
+
+    private File csvFile;
+
+    @Before
+    public void setUp() throws IOException {
+        csvFile = File.createTempFile("TestCsvSampleReader", ".csv");
+    }
+
+    @After
+    public void tearDown() {
+        csvFile.delete();
+    }
+
+    private void write(String content) throws IOException {
+        try (PrintWriter writer = new PrintWriter(csvFile, "ISO8859-1")) {
+            writer.print(content);
+        }
+    }
+
+    private List<Sample> readAll(boolean memoryMapped) {
+        List<Sample> samples = new ArrayList<>();
+        try (CsvSampleReader reader = new CsvSampleReader(csvFile, ',', true, memoryMapped)) {
+            Sample s;
+            while ((s = reader.readSample()) != null) {
+                samples.add(s);
+            }
+        }
+        return samples;
+    }
+
+    @Test
+    public void testMappedSampleValues() throws IOException {
+        write(HEADER + "\r\n"
+                + "1400000000000,120,Home page,200,OK,Thread Group 1-1,true,1024,2,3,40\r\n"
+                + "1400000000100,-5,\"Log,in\",500,\"Server \"\"busy\"\"\nretry\",Thread Group 1-2,FALSE,0,2,3,0\n"
+                + "1400000000200,7,Home page,200,OK,Thread Group 1-1,TRUE,+12,2,3,99999999999999999999");
+        List<Sample> samples = readAll(true);
+        assertEquals(3, samples.size());
+
+        Sample first = samples.get(0);
+        assertEquals(1400000000000L, first.getTimestamp());
+        assertEquals(120, first.getElapsedTime());
+        assertEquals(1400000000000L - 120, first.getStartTime());
+        assertEquals("Home page", first.getName());
+        assertTrue(first.getSuccess());
+        assertEquals(1024, first.getSentBytes());
+        assertEquals(2, first.getGroupThreads());
+        assertEquals(3, first.getAllThreads());
+        assertEquals(40, first.getLatency());
+        assertEquals("OK", first.getResponseMessage());
+
+        Sample second = samples.get(1);
+        assertEquals(-5, second.getElapsedTime());
+        assertEquals("Log,in", second.getName());
+        assertEquals("Server \"busy\"\nretry", second.getResponseMessage());
+        assertFalse(second.getSuccess());
+
+        Sample third = samples.get(2);
+        assertSame(first.getName(), third.getName());
+        assertTrue(third.getSuccess());
+        assertEquals(12, third.getSentBytes());
+        try {
+            third.getLatency();
+            fail("Expected SampleException");
+        } catch (SampleException expected) {
+            // too large for a long
+        }
+    }
+
+    @Test
+    public void testMappedSamplesMatchBufferedSamples() throws IOException {
+        StringBuilder content = new StringBuilder(HEADER).append('\n');
+        for (int i = 0; i < 1000; i++) {
+            content.append(1400000000000L + i).append(',').append(i % 50)
+                    .append(",label ").append(i % 3).append(",200,")
+                    .append(i % 7 == 0 ? "\"a\r\nb,\"\"c\"\"\"" : "OK")
+                    .append(",T 1-").append(i % 5).append(",true,")
+                    .append(i).append(",1,1,").append(i % 10)
+                    .append(i % 2 == 0 ? "\n" : "\r\n");
+        }
+        write(content.toString());
+        List<Sample> buffered = readAll(false);
+        List<Sample> mapped = readAll(true);
+        assertEquals(buffered.size(), mapped.size());
+        for (int i = 0; i < buffered.size(); i++) {
+            Sample expected = buffered.get(i);
+            Sample actual = mapped.get(i);
+            assertEquals(expected.toString(), actual.toString());
+            assertEquals(expected.getTimestamp(), actual.getTimestamp());
+            assertEquals(expected.getElapsedTime(), actual.getElapsedTime());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getSuccess(), actual.getSuccess());
+            assertEquals(expected.getLatency(), actual.getLatency());
+            assertEquals(expected.getResponseMessage(), actual.getResponseMessage());
+        }
+    }
+
+    @Test
+    public void testMappedRange() throws IOException {
+        String first = "1400000000000,1,a,200,OK,T,true,1,1,1,1\n";
+        write(HEADER + "\n" + first + "1400000000001,2,b,200,OK,T,true,1,1,1,1\n");
+        long start = HEADER.length() + 1 + first.length();
+        try (MappedCsvFile file = new MappedCsvFile(csvFile, start, csvFile.length())) {
+            int[] bounds = new int[22];
+            assertEquals(11, file.nextRow(',', bounds));
+            assertEquals("b", file.intern(bounds[4], bounds[5]));
+            assertEquals(0, file.nextRow(',', bounds));
+            assertNull(file.readLine());
+        }
+    }
+
+    @Test
+    public void testSmallWindows() throws IOException {
+        String content = HEADER + "\r\n"
+                + "1400000000000,120,Home page,200,OK,Thread Group 1-1,true,1024,2,3,40\r\n"
+                + "1400000000100,5,\"Log,in\",500,\"Server \"\"busy\"\"\r\nretry\",T,false,0,2,3,0\r"
+                + "1400000000200,7,Home page,200,OK,Thread Group 1-1,true,12,2,3,9\n";
+        write(content);
+        List<Sample> buffered = readAll(false);
+        for (int windowSize = 1; windowSize < 40; windowSize++) {
+            try (MappedCsvFile file = new MappedCsvFile(csvFile, 0, -1, windowSize)) {
+                assertEquals(HEADER, file.readLine());
+                for (Sample expected : buffered) {
+                    int[] bounds = new int[22];
+                    assertEquals(11, file.nextRow(',', bounds));
+                    assertEquals(expected.getName(),
+                            file.intern(bounds[4], bounds[5]));
+                    assertEquals(expected.getResponseMessage(),
+                            MappedCsvFile.decode(file.getBuffer(), bounds[8], bounds[9]));
+                }
+                assertEquals(0, file.nextRow(',', new int[22]));
+            }
+        }
+    }
+
+    @Test
+    public void testCorrectedElapsedTime() throws IOException {
+        write(HEADER + ",IntendedStartTime\n"
+                + "1400000000000,120,a,200,OK,T,true,1,1,1,1,0\n"
+                + "1400000000000,120,a,200,OK,T,true,1,1,1,1,1399999999500\n");
+        for (boolean memoryMapped : new boolean[] { false, true }) {
+            List<Sample> samples = readAll(memoryMapped);
+            assertEquals(120, samples.get(0).getCorrectedElapsedTime());
+            assertEquals(1399999999500L, samples.get(1).getIntendedStartTime());
+            // ends at the time stamp, 500 ms after the intended start
+            assertEquals(500, samples.get(1).getCorrectedElapsedTime());
+        }
+    }
+
+    @Test(expected = SampleException.class)
+    public void testMappedColumnMismatch() throws IOException {
+        write(HEADER + "\n1400000000000,1,a\n");
+        readAll(true);
+    }
+
+    @Test(expected = SampleException.class)
+    public void testMappedMissingTrailingQuote() throws IOException {
+        write(HEADER + "\n1400000000000,1,\"a,200,OK,T,true,1,1,1,1\n");
+        readAll(true);
+    }
+}
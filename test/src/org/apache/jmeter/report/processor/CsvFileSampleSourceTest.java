@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jmeter.report.core.CsvFilePartitioner;
+import org.apache.jmeter.report.core.Sample;
+import org.apache.jmeter.report.core.SampleException;
+import org.apache.jmeter.util.JMeterUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CsvFileSampleSourceTest {
+
+    private File tempDir;
+    private File csvFile;
+
+    @Before
+    public void setUp() throws Exception {
+        JMeterUtils.loadJMeterProperties("jmeter.properties");
+        tempDir = Files.createTempDirectory("csvsource").toFile();
+        csvFile = new File(tempDir, "results.csv");
+        try (PrintWriter writer = new PrintWriter(csvFile, "ISO8859-1")) {
+            writer.print("timeStamp,elapsed,label,responseCode,responseMessage,threadName,success,bytes\r\n");
+            for (int i = 0; i < 5000; i++) {
+                writer.print(1400000000000L + i);
+                writer.print(',');
+                writer.print(i % 97);
+                writer.print(",label ");
+                writer.print(i % 7);
+                writer.print(",200,");
+                // Quoted messages with line breaks and quotes must not be split
+                if (i % 11 == 0) {
+                    writer.print("\"multi\nline, \"\"quoted\"\"\r\nmessage " + i + "\"");
+                } else {
+                    writer.print("OK");
+                }
+                writer.print(",Thread Group 1-");
+                writer.print(i % 13);
+                writer.print(",true,");
+                writer.print(i);
+                writer.print(i % 2 == 0 ? "\n" : "\r\n");
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(tempDir);
+    }
+
+    @Test
+    public void testPartitionBoundaries() throws Exception {
+        long[] offsets = CsvFilePartitioner.partition(csvFile, 4096);
+        assertTrue(offsets.length > 10);
+        assertEquals(csvFile.length(), offsets[offsets.length - 1]);
+        byte[] content = FileUtils.readFileToByteArray(csvFile);
+        for (int i = 1; i < offsets.length - 1; i++) {
+            int offset = (int) offsets[i];
+            // Each partition starts with a time stamp
+            assertEquals('1', content[offset]);
+            assertEquals('\n', content[offset - 1]);
+        }
+    }
+
+    @Test
+    public void testParallelProducesSameSamples() throws Exception {
+        List<String> serial = readAll(1, null);
+        assertEquals(5000, serial.size());
+        assertEquals(serial, readAll(4, null));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertEquals(serial, readAll(4, executor));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConsumersShareThreads() throws Exception {
+        List<String> serial = readAll(1, null);
+        // Fewer threads than consumers, also parsing the file
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CsvFileSampleSource source = new CsvFileSampleSource(csvFile, ',');
+            source.setParallelThreads(2);
+            source.setExecutor(executor);
+            source.setSampleContext(new SampleContext());
+            List<List<String>> consumed = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                List<String> samples = new ArrayList<>();
+                consumed.add(samples);
+                source.addSampleConsumer(new AsyncSampleConsumer(
+                        createConsumer(samples), "consumer" + i, executor));
+            }
+            source.run();
+            for (List<String> samples : consumed) {
+                assertEquals(serial, samples);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = SampleException.class)
+    public void testAsyncConsumerFailure() {
+        CsvFileSampleSource source = new CsvFileSampleSource(csvFile, ',');
+        source.setSampleContext(new SampleContext());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            runFailing(source, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void runFailing(CsvFileSampleSource source, ExecutorService executor) {
+        source.addSampleConsumer(new AsyncSampleConsumer(new AbstractSampleConsumer() {
+            @Override
+            public void startConsuming() {
+                // NOOP
+            }
+
+            @Override
+            public void consume(Sample s, int channel) {
+                throw new IllegalStateException("Expected failure");
+            }
+
+            @Override
+            public void stopConsuming() {
+                // NOOP
+            }
+        }, "failing", executor));
+        source.run();
+    }
+
+    /**
+     * @param executor executor running the consumer, null to call it directly
+     */
+    private List<String> readAll(int threads, ExecutorService executor) {
+        CsvFileSampleSource source = new CsvFileSampleSource(csvFile, ',');
+        source.setParallelThreads(threads);
+        source.setSampleContext(new SampleContext());
+        List<String> samples = new ArrayList<>();
+        SampleConsumer consumer = createConsumer(samples);
+        source.addSampleConsumer(executor != null
+                ? new AsyncSampleConsumer(consumer, "test", executor) : consumer);
+        source.run();
+        return samples;
+    }
+
+    private static SampleConsumer createConsumer(final List<String> samples) {
+        return new AbstractSampleConsumer() {
+            @Override
+            public void startConsuming() {
+                // NOOP
+            }
+
+            @Override
+            public void consume(Sample s, int channel) {
+                samples.add(s.toString() + "|" + s.getElapsedTime() + "|" + channel);
+            }
+
+            @Override
+            public void stopConsuming() {
+                // NOOP
+            }
+        };
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HistogramPercentileAggregatorTest {
+
+    @Test
+    public void testEmpty() {
+        HistogramPercentileAggregator aggregator = new HistogramPercentileAggregator(90, 8);
+        assertEquals(0, aggregator.getCount());
+        assertTrue(Double.isNaN(aggregator.getResult()));
+    }
+
+    @Test
+    public void testCloseToWindowAggregator() {
+        HistogramPercentileAggregator histogram = new HistogramPercentileAggregator(95, 8);
+        PercentileAggregator window = new PercentileAggregator(95);
+        long value = 7;
+        for (int i = 0; i < 20000; i++) {
+            value = (value * 1103515245L + 12345L) % 60000L;
+            histogram.addValue(value);
+            window.addValue(value);
+        }
+        assertEquals(window.getCount(), histogram.getCount());
+        double expected = window.getResult();
+        assertEquals(expected, histogram.getResult(), expected / 128 + 1);
+    }
+
+    @Test
+    public void testMergeAndReset() {
+        HistogramPercentileAggregatorFactory factory = new HistogramPercentileAggregatorFactory();
+        factory.setPercentileIndex(50);
+        factory.setPrecision(6);
+        HistogramPercentileAggregator part1 = (HistogramPercentileAggregator) factory.createValueAggregator();
+        HistogramPercentileAggregator part2 = (HistogramPercentileAggregator) factory.createValueAggregator();
+        for (int i = 1; i <= 50; i++) {
+            part1.addValue(i);
+            part2.addValue(i + 50);
+        }
+        part1.merge(part2);
+        assertEquals(100, part1.getCount());
+        assertEquals(50, part1.getResult(), 0);
+        part1.reset();
+        assertEquals(0, part1.getCount());
+    }
+
+    @Test
+    public void testSharedHistogram() {
+        HistogramPercentileAggregator median = new HistogramPercentileAggregator(50, 8);
+        HistogramPercentileAggregator p90 = new HistogramPercentileAggregator(90, median);
+        for (int i = 1; i <= 100; i++) {
+            median.addValue(i);
+        }
+        assertEquals(100, p90.getCount());
+        assertEquals(50, median.getResult(), 0);
+        assertEquals(90, p90.getResult(), 0);
+        p90.reset();
+        assertEquals(0, median.getCount());
+    }
+}
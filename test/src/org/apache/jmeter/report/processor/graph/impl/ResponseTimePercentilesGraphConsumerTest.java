@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.processor.graph.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.report.core.Sample;
+import org.apache.jmeter.report.core.SampleMetadata;
+import org.apache.jmeter.report.processor.ListResultData;
+import org.apache.jmeter.report.processor.MapResultData;
+import org.apache.jmeter.report.processor.ResultData;
+import org.apache.jmeter.report.processor.SampleContext;
+import org.apache.jmeter.report.processor.ValueResultData;
+import org.apache.jmeter.report.processor.graph.AbstractGraphConsumer;
+import org.apache.jmeter.save.CSVSaveService;
+import org.junit.Test;
+
+public class ResponseTimePercentilesGraphConsumerTest extends JMeterTestCase {
+
+    private static final SampleMetadata METADATA = new SampleMetadata(',',
+            CSVSaveService.TIME_STAMP, CSVSaveService.CSV_ELAPSED,
+            CSVSaveService.LABEL, CSVSaveService.RESPONSE_MESSAGE,
+            CSVSaveService.CSV_INTENDED_START_TIME);
+
+    @Test
+    public void testLabelLikeCorrectedSeries() {
+        ResponseTimePercentilesGraphConsumer consumer = new ResponseTimePercentilesGraphConsumer();
+        consumer.setName("percentiles");
+        SampleContext context = new SampleContext();
+        consumer.setSampleContext(context);
+        consumer.setConsumedMetadata(METADATA, 0);
+        consumer.startConsuming();
+        Sample login = new Sample(0, METADATA, "1000", "100", "Login", "OK", "600");
+        Sample loginCorrected = new Sample(1, METADATA, "2000", "50", "Login-Corrected", "OK", "1000");
+        consumer.consume(login, 0);
+        consumer.consume(loginCorrected, 0);
+        consumer.stopConsuming();
+
+        Map<String, Double> maxima = getMaxima(context.getData().get(consumer.getName()));
+        assertEquals(4, maxima.size());
+        assertEquals(Double.valueOf(100), maxima.get("Login"));
+        assertEquals(Double.valueOf(50), maxima.get("Login-Corrected"));
+        assertEquals(Double.valueOf(login.getCorrectedElapsedTime()),
+                maxima.get("Login-Corrected-Corrected"));
+        assertEquals(Double.valueOf(loginCorrected.getCorrectedElapsedTime()),
+                maxima.get("Login-Corrected-Corrected-Corrected"));
+    }
+
+    @Test
+    public void testWithoutIntendedStartTime() {
+        SampleMetadata metadata = new SampleMetadata(',',
+                CSVSaveService.TIME_STAMP, CSVSaveService.CSV_ELAPSED,
+                CSVSaveService.LABEL, CSVSaveService.RESPONSE_MESSAGE);
+        ResponseTimePercentilesGraphConsumer consumer = new ResponseTimePercentilesGraphConsumer();
+        consumer.setName("percentiles");
+        SampleContext context = new SampleContext();
+        consumer.setSampleContext(context);
+        consumer.setConsumedMetadata(metadata, 0);
+        consumer.startConsuming();
+        consumer.consume(new Sample(0, metadata, "1000", "100", "Login", "OK"), 0);
+        consumer.stopConsuming();
+
+        Map<String, Double> maxima = getMaxima(context.getData().get(consumer.getName()));
+        assertEquals(1, maxima.size());
+        assertEquals(Double.valueOf(100), maxima.get("Login"));
+        assertNull(maxima.get("Login-Corrected"));
+    }
+
+    // Gets the highest percentile of each series by name
+    private static Map<String, Double> getMaxima(Object result) {
+        ListResultData series = (ListResultData) ((MapResultData) result)
+                .getResult(AbstractGraphConsumer.RESULT_SERIES);
+        Map<String, Double> maxima = new HashMap<>();
+        for (ResultData data : series) {
+            MapResultData seriesResult = (MapResultData) data;
+            String name = (String) ((ValueResultData) seriesResult
+                    .getResult(AbstractGraphConsumer.RESULT_SERIES_NAME))
+                    .getValue();
+            ListResultData coords = (ListResultData) seriesResult
+                    .getResult(AbstractGraphConsumer.RESULT_SERIES_DATA);
+            ListResultData last = (ListResultData) coords.get(coords.getSize() - 1);
+            maxima.put(name, (Double) ((ValueResultData) last.get(1)).getValue());
+        }
+        return maxima;
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.reporters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleSaveConfiguration;
+import org.apache.jmeter.save.CSVSaveService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestAsyncResultWriter extends JMeterTestCase {
+
+    /** Writer whose writes wait until it is opened */
+    private static final class GatedWriter extends Writer {
+        private final StringWriter content = new StringWriter();
+        private final CountDownLatch gate = new CountDownLatch(1);
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            synchronized (content) {
+                content.write(cbuf, off, len);
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        void open() {
+            gate.countDown();
+        }
+
+        List<String> lines() {
+            synchronized (content) {
+                String text = content.toString();
+                return text.isEmpty() ? new ArrayList<String>()
+                        : Arrays.asList(text.split("\n"));
+            }
+        }
+    }
+
+    private SampleSaveConfiguration config;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        config = new SampleSaveConfiguration();
+        config.setFieldNames(false);
+        directory = File.createTempFile("async", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private SampleEvent createEvent(int i) {
+        SampleResult result = SampleResult.createTestSample(1000L + i, 1010L + i);
+        result.setSampleLabel("label " + i);
+        result.setThreadName("thread " + (i % 3));
+        result.setSaveConfig(config);
+        return new SampleEvent(result, "tg");
+    }
+
+    private static PrintWriter printWriter(Writer writer) {
+        return new PrintWriter(writer) {
+            @Override
+            public void println() {
+                // LF only, whatever the platform
+                write('\n');
+            }
+        };
+    }
+
+    private AsyncResultWriter createWriter(Writer writer, int queueSize, String overflow) {
+        return new AsyncResultWriter(new File(directory, "results.csv").getPath(),
+                printWriter(writer), null, queueSize, overflow);
+    }
+
+    @Test
+    public void testAllSamplesWrittenInOrder() throws Exception {
+        StringWriter content = new StringWriter();
+        AsyncResultWriter writer = createWriter(content, 16, AsyncResultWriter.OVERFLOW_BLOCK);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            SampleEvent event = createEvent(i);
+            expected.add(CSVSaveService.resultToDelimitedString(event));
+            writer.add(event, config);
+        }
+        writer.close();
+        assertEquals(expected, Arrays.asList(content.toString().split("\n")));
+        assertEquals(0, writer.getDroppedCount());
+    }
+
+    @Test
+    public void testSharedSampleWithDifferentConfigs() throws Exception {
+        SampleSaveConfiguration labels = new SampleSaveConfiguration(false);
+        labels.setLabel(true);
+        labels.setTime(true);
+        SampleSaveConfiguration threads = new SampleSaveConfiguration(false);
+        threads.setThreadName(true);
+        threads.setTimestamp(true);
+        threads.setDelimiter("|");
+        StringWriter labelContent = new StringWriter();
+        StringWriter threadContent = new StringWriter();
+        AsyncResultWriter labelWriter = createWriter(labelContent, 16, AsyncResultWriter.OVERFLOW_BLOCK);
+        AsyncResultWriter threadWriter = createWriter(threadContent, 16, AsyncResultWriter.OVERFLOW_BLOCK);
+        List<String> expectedLabels = new ArrayList<>();
+        List<String> expectedThreads = new ArrayList<>();
+        List<SampleEvent> events = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            // The same sample is received by both listeners
+            SampleEvent event = createEvent(i);
+            events.add(event);
+            expectedLabels.add(CSVSaveService.resultToDelimitedString(event, labels, labels.getDelimiter()));
+            expectedThreads.add(CSVSaveService.resultToDelimitedString(event, threads, threads.getDelimiter()));
+            labelWriter.add(event, labels);
+            threadWriter.add(event, threads);
+        }
+        labelWriter.close();
+        threadWriter.close();
+        assertEquals(expectedLabels, Arrays.asList(labelContent.toString().split("\n")));
+        assertEquals(expectedThreads, Arrays.asList(threadContent.toString().split("\n")));
+        // The writer threads do not modify the shared samples
+        for (SampleEvent event : events) {
+            assertSame(config, event.getResult().getSaveConfig());
+        }
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        GatedWriter content = new GatedWriter();
+        AsyncResultWriter writer = createWriter(content, 16, AsyncResultWriter.OVERFLOW_BLOCK);
+        writer.add(createEvent(0), config);
+        writer.add(createEvent(1), config);
+        assertTrue("flush must wait for the pending samples", !writer.flush(100));
+        content.open();
+        assertTrue(writer.flush(10000));
+        assertEquals(2, content.lines().size());
+        writer.close();
+    }
+
+    @Test
+    public void testDrop() throws Exception {
+        GatedWriter content = new GatedWriter();
+        AsyncResultWriter writer = createWriter(content, 2, AsyncResultWriter.OVERFLOW_DROP);
+        for (int i = 0; i < 10; i++) {
+            writer.add(createEvent(i), config);
+        }
+        content.open();
+        writer.close();
+        long dropped = writer.getDroppedCount();
+        assertTrue("Expected dropped samples, got " + dropped, dropped > 0);
+        assertEquals(10, content.lines().size() + dropped);
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        final GatedWriter content = new GatedWriter();
+        final AsyncResultWriter writer = createWriter(content, 2, AsyncResultWriter.OVERFLOW_BLOCK);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread sampler = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 10; i++) {
+                    writer.add(createEvent(i), config);
+                }
+                done.countDown();
+            }
+        });
+        sampler.start();
+        assertTrue("sampler thread must wait for room in the buffer",
+                !done.await(200, TimeUnit.MILLISECONDS));
+        content.open();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        writer.close();
+        assertEquals(10, content.lines().size());
+        assertEquals(0, writer.getDroppedCount());
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        GatedWriter content = new GatedWriter();
+        AsyncResultWriter writer = createWriter(content, 2, AsyncResultWriter.OVERFLOW_SPILL);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            SampleEvent event = createEvent(i);
+            expected.add(CSVSaveService.resultToDelimitedString(event));
+            writer.add(event, config);
+        }
+        assertTrue("samples must be spilled to disk",
+                directory.listFiles().length > 0);
+        content.open();
+        writer.close();
+        assertEquals(0, writer.getDroppedCount());
+        List<String> lines = new ArrayList<>(content.lines());
+        assertEquals(expected.size(), lines.size());
+        assertTrue(lines.containsAll(expected));
+        assertEquals("spill files must be deleted", 0, directory.listFiles().length);
+    }
+}
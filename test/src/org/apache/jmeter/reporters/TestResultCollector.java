@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.reporters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.samplers.ResponseDataPrefixConsumer;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleSaveConfiguration;
+import org.apache.jmeter.testelement.TestPlan;
+import org.apache.jmeter.visualizers.Visualizer;
+import org.junit.After;
+import org.junit.Test;
+
+public class TestResultCollector extends JMeterTestCase {
+
+    /** Configuration saving the response data of failed samples */
+    private static final class OnErrorConfiguration extends SampleSaveConfiguration {
+        private static final long serialVersionUID = 1L;
+
+        OnErrorConfiguration() {
+            super(false);
+        }
+
+        @Override
+        public boolean isResponseDataOnError() {
+            return true;
+        }
+    }
+
+    /** Visualizer displaying only the start of the responses */
+    private static final class PrefixVisualizer implements Visualizer, ResponseDataPrefixConsumer {
+        @Override
+        public void add(SampleResult sample) {
+        }
+
+        @Override
+        public boolean isStats() {
+            return false;
+        }
+
+        @Override
+        public boolean needsResponseData() {
+            return true;
+        }
+
+        @Override
+        public boolean retainsSampleResults() {
+            return true;
+        }
+
+        @Override
+        public int getResponseDataMaxSize() {
+            return 100;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        new TestPlan().setFunctionalMode(false);
+    }
+
+    private static ResultCollector createCollector(SampleSaveConfiguration config) {
+        ResultCollector collector = new ResultCollector();
+        collector.setSaveConfig(config);
+        return collector;
+    }
+
+    @Test
+    public void testNeedsNoResponseData() {
+        assertFalse(createCollector(new SampleSaveConfiguration(false)).needsResponseData());
+    }
+
+    @Test
+    public void testNeedsResponseDataWhenSaved() {
+        SampleSaveConfiguration config = new SampleSaveConfiguration(false);
+        config.setResponseData(true);
+        assertTrue(createCollector(config).needsResponseData());
+    }
+
+    @Test
+    public void testNeedsResponseDataInFunctionalMode() {
+        new TestPlan().setFunctionalMode(true);
+        assertTrue(createCollector(new SampleSaveConfiguration(false)).needsResponseData());
+    }
+
+    @Test
+    public void testNeedsResponseDataOnError() {
+        assertTrue(createCollector(new OnErrorConfiguration()).needsResponseData());
+    }
+
+    private static int getResponseDataMaxSize(SampleSaveConfiguration config, Visualizer visualizer) {
+        ResultCollector collector = createCollector(config);
+        collector.setListener(visualizer);
+        return collector.getResponseDataMaxSize();
+    }
+
+    @Test
+    public void testResponseDataMaxSizeOfVisualizer() {
+        PrefixVisualizer visualizer = new PrefixVisualizer();
+        assertEquals(100, getResponseDataMaxSize(new SampleSaveConfiguration(false), visualizer));
+    }
+
+    @Test
+    public void testResponseDataMaxSizeWhenSaved() {
+        PrefixVisualizer visualizer = new PrefixVisualizer();
+        SampleSaveConfiguration config = new SampleSaveConfiguration(false);
+        config.setResponseData(true);
+        assertEquals(0, getResponseDataMaxSize(config, visualizer));
+    }
+
+    @Test
+    public void testResponseDataMaxSizeInFunctionalMode() {
+        PrefixVisualizer visualizer = new PrefixVisualizer();
+        new TestPlan().setFunctionalMode(true);
+        assertEquals(0, getResponseDataMaxSize(new SampleSaveConfiguration(false), visualizer));
+    }
+
+    @Test
+    public void testResponseDataMaxSizeOnError() {
+        PrefixVisualizer visualizer = new PrefixVisualizer();
+        assertEquals(0, getResponseDataMaxSize(new OnErrorConfiguration(), visualizer));
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.samplers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jmeter.visualizers.SamplingStatCalculator;
+import org.junit.Test;
+
+public class TestHistogramSampleSender extends JMeterTestCase {
+
+    private static final long BUCKET_A = 60000L * 1000;
+
+    private static final long BUCKET_B = BUCKET_A + 60000L;
+
+    // Filled by the copy of the listener sent to the server with the sender
+    private static final List<SampleEvent> RECEIVED = new ArrayList<>();
+
+    private static SampleEvent newEvent(String label, long end, long elapsed, boolean success) {
+        SampleResult result = new SampleResult(end, elapsed); // time stamps are end times by default
+        result.setSampleLabel(label);
+        result.setThreadName("Thread Group 1-1");
+        result.setSuccessful(success);
+        result.setLatency(2);
+        return new SampleEvent(result, "Thread Group", "injector1");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T copy(T object) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (T) in.readObject();
+        }
+    }
+
+    private static HistogramSampleResult find(List<SampleEvent> events, String label, long bucket) {
+        for (SampleEvent event : events) {
+            SampleResult result = event.getResult();
+            if (result.getSampleLabel().equals(label) && result.getEndTime() >= bucket
+                    && result.getEndTime() < bucket + 60000L) {
+                return (HistogramSampleResult) result;
+            }
+        }
+        throw new AssertionError("No result for " + label + " in bucket " + bucket);
+    }
+
+    @Test
+    public void testHistograms() throws Exception {
+        JMeterUtils.setProperty("histogram.sender.interval", "60000");
+        synchronized (RECEIVED) {
+            RECEIVED.clear();
+        }
+        // Created on the client, then sent to the server
+        HistogramSampleSender serverSender = copy(new HistogramSampleSender(new TestListener()));
+        for (int i = 1; i <= 100; i++) {
+            serverSender.sampleOccurred(newEvent("a", BUCKET_A + i, i, true));
+        }
+        for (int i = 0; i < 10; i++) {
+            serverSender.sampleOccurred(newEvent("a", BUCKET_A + 200, 500, false));
+        }
+        for (int i = 0; i < 50; i++) {
+            serverSender.sampleOccurred(newEvent("a", BUCKET_B + 10, 1000, true));
+        }
+        serverSender.sampleOccurred(newEvent("b", BUCKET_A + 10, 7, true));
+        serverSender.testEnded("injector1");
+
+        List<SampleEvent> received;
+        synchronized (RECEIVED) {
+            received = new ArrayList<>(RECEIVED);
+        }
+        assertEquals(3, received.size());
+        HistogramSampleResult a = find(received, "a", BUCKET_A);
+        assertEquals(110, a.getSampleCount());
+        assertEquals(10, a.getErrorCount());
+        assertFalse(a.isSuccessful());
+        assertEquals(100, a.getOkTimes().getTotalCount());
+        assertEquals(10, a.getKoTimes().getTotalCount());
+        assertEquals(5050 + 5000, a.getTime());
+        assertEquals(1, a.getMinTime());
+        assertEquals(500, a.getMaxTime());
+        assertEquals(110, a.getHits());
+        assertEquals(220, a.getLatency());
+        HistogramSampleResult lastBucket = find(received, "a", BUCKET_B);
+        assertEquals(50, lastBucket.getSampleCount());
+        assertTrue(lastBucket.isSuccessful());
+        assertEquals(1000, lastBucket.getMinTime());
+        assertEquals(1, find(received, "b", BUCKET_A).getSampleCount());
+
+        // Result files keep the distribution, one row per histogram bucket
+        List<SampleResult> rows = a.getBucketResults();
+        assertEquals(101, rows.size());
+        int samples = 0;
+        int errors = 0;
+        long elapsed = 0;
+        for (SampleResult row : rows) {
+            samples += row.getSampleCount();
+            errors += row.getErrorCount();
+            elapsed += row.getTime();
+        }
+        assertEquals(110, samples);
+        assertEquals(10, errors);
+        assertEquals(a.getTime(), elapsed);
+        SampleResult failedRow = rows.get(rows.size() - 1);
+        assertFalse(failedRow.isSuccessful());
+        assertEquals(5000, failedRow.getTime());
+
+        // Results of several servers are merged without losing percentiles
+        SamplingStatCalculator calculator = new SamplingStatCalculator("a");
+        calculator.addSample(a);
+        calculator.addSample(copy(a));
+        calculator.addSample(lastBucket);
+        assertEquals(270, calculator.getCount());
+        assertEquals(1, calculator.getMin().longValue());
+        assertEquals(1000, calculator.getMax().longValue());
+        assertEquals(68, calculator.getPercentPoint(0.5).longValue());
+        assertEquals(1000, calculator.getPercentPoint(0.9).longValue());
+    }
+
+    private static class TestListener implements RemoteSampleListener, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void testStarted() {
+        }
+
+        @Override
+        public void testStarted(String host) {
+        }
+
+        @Override
+        public void testEnded() {
+        }
+
+        @Override
+        public void testEnded(String host) {
+        }
+
+        @Override
+        public void processBatch(List<SampleEvent> samples) {
+            try {
+                // Results are serialized by RMI
+                List<SampleEvent> copies = copy(new ArrayList<>(samples));
+                synchronized (RECEIVED) {
+                    RECEIVED.addAll(copies);
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void sampleOccurred(SampleEvent e) {
+        }
+
+        @Override
+        public void sampleStarted(SampleEvent e) {
+        }
+
+        @Override
+        public void sampleStopped(SampleEvent e) {
+        }
+    }
+}
@@ -25,6 +25,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
 
 import org.apache.jmeter.junit.JMeterTestCase;
 import org.apache.jmeter.util.Calculator;
@@ -343,5 +344,54 @@ public class TestSampleResult {
             assertEquals("aBCd",res.getDataEncodingNoDefault());
             assertEquals("text",res.getDataType());         
         }
-}
 
+        @Test
+        public void testResponseDataAsByteBuffer() throws Exception {
+            SampleResult res = new SampleResult();
+            assertEquals(0, res.getResponseDataAsByteBuffer().remaining());
+            res.setResponseData("body", "UTF-8");
+            ByteBuffer buffer = res.getResponseDataAsByteBuffer();
+            assertTrue(buffer.isReadOnly());
+            assertEquals(4, buffer.remaining());
+            assertEquals('b', buffer.get(0));
+            // A view, not a copy
+            res.getResponseData()[0] = 'B';
+            assertEquals('B', buffer.get(0));
+        }
+
+        @Test
+        public void testRecycle() throws Exception {
+            SampleResult res = new SampleResult();
+            res.sampleStart();
+            res.setSampleLabel("label");
+            res.setResponseData("body", "UTF-8");
+            res.setResponseCode("500");
+            res.setBodySize(4);
+            res.setSuccessful(true);
+            res.setStopThread(true);
+            res.addSubResult(new SampleResult());
+            res.sampleEnd();
+            assertFalse(res.markFile("file"));
+            assertTrue(res.markFile("file"));
+
+            res.recycle();
+            assertEquals("", res.getSampleLabel());
+            assertEquals(0, res.getResponseData().length);
+            assertEquals("", res.getResponseDataAsString());
+            assertEquals("", res.getResponseCode());
+            assertEquals(0, res.getBodySize());
+            assertEquals(0, res.getStartTime());
+            assertEquals(0, res.getEndTime());
+            assertEquals(0, res.getTime());
+            assertEquals(0, res.getSubResults().length);
+            assertEquals(1, res.getSampleCount());
+            assertFalse(res.isSuccessful());
+            assertFalse(res.isStopThread());
+            assertFalse(res.markFile("file"));
+
+            // times can be set again
+            res.sampleStart();
+            res.sampleEnd();
+            assertTrue(res.getEndTime() >= res.getStartTime());
+        }
+}
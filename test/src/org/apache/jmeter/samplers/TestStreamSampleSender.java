@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.samplers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.jmeter.assertions.AssertionResult;
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.junit.Test;
+
+public class TestStreamSampleSender extends JMeterTestCase {
+
+    private static SampleEvent newEvent(String label, boolean success) throws Exception {
+        SampleResult result = new SampleResult();
+        result.sampleStart();
+        result.setSampleLabel(label);
+        result.setThreadName("Thread Group 1-1");
+        result.setResponseCode(success ? "200" : "500");
+        result.setResponseMessage(success ? "OK" : "Server Error");
+        result.setDataType(SampleResult.TEXT);
+        result.setContentType("text/plain");
+        result.setURL(new URL("http://localhost/" + label));
+        result.setResponseData("body of " + label, "UTF-8");
+        result.setResponseHeaders("HTTP/1.1 " + result.getResponseCode());
+        result.setLatency(3);
+        result.setConnectTime(1);
+        result.setSuccessful(success);
+        result.setGroupThreads(2);
+        result.setAllThreads(4);
+        result.sampleEnd();
+        return new SampleEvent(result, "Thread Group", "injector1");
+    }
+
+    private static void assertSameResult(SampleResult expected, SampleResult actual) {
+        assertEquals(expected.getSampleLabel(), actual.getSampleLabel());
+        assertEquals(expected.getThreadName(), actual.getThreadName());
+        assertEquals(expected.getTimeStamp(), actual.getTimeStamp());
+        assertEquals(expected.getStartTime(), actual.getStartTime());
+        assertEquals(expected.getEndTime(), actual.getEndTime());
+        assertEquals(expected.getTime(), actual.getTime());
+        assertEquals(expected.getLatency(), actual.getLatency());
+        assertEquals(expected.getConnectTime(), actual.getConnectTime());
+        assertEquals(expected.getIntendedStartTime(), actual.getIntendedStartTime());
+        assertEquals(expected.getResponseCode(), actual.getResponseCode());
+        assertEquals(expected.getResponseMessage(), actual.getResponseMessage());
+        assertEquals(expected.getDataType(), actual.getDataType());
+        assertEquals(expected.getContentType(), actual.getContentType());
+        assertEquals(expected.getURL(), actual.getURL());
+        assertEquals(expected.isSuccessful(), actual.isSuccessful());
+        assertEquals(expected.getBytes(), actual.getBytes());
+        assertEquals(expected.getGroupThreads(), actual.getGroupThreads());
+        assertEquals(expected.getAllThreads(), actual.getAllThreads());
+        assertEquals(expected.getAssertionResults().length, actual.getAssertionResults().length);
+        assertEquals(expected.getSubResults().length, actual.getSubResults().length);
+    }
+
+    @Test
+    public void testCodec() throws Exception {
+        for (boolean compress : new boolean[] { false, true }) {
+            SampleEvent ok = newEvent("label1", true);
+            SampleEvent failed = newEvent("label2", false);
+            AssertionResult assertionResult = new AssertionResult("Response Assertion");
+            assertionResult.setFailure(true);
+            assertionResult.setFailureMessage("Test failed");
+            failed.getResult().addAssertionResult(assertionResult);
+            failed.getResult().storeSubResult(newEvent("label2-0", true).getResult());
+            failed.getResult().setIntendedStartTime(failed.getResult().getStartTime() - 250);
+
+            SampleEventStreamCodec.Encoder encoder = new SampleEventStreamCodec.Encoder(compress, 100);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(buffer);
+            encoder.writeBatch(out, Collections.singletonList(ok));
+            int firstSize = buffer.size();
+            encoder.writeBatch(out, Collections.singletonList(ok));
+            // the strings of the second batch are in the dictionary
+            assertTrue(buffer.size() - firstSize < firstSize);
+            encoder.writeBatch(out, Collections.singletonList(failed));
+            encoder.close();
+
+            SampleEventStreamCodec.Decoder decoder = new SampleEventStreamCodec.Decoder();
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+            List<SampleEvent> events = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                byte type = in.readByte();
+                assertEquals(compress ? SampleEventStreamCodec.COMPRESSED_BATCH : SampleEventStreamCodec.BATCH, type);
+                events.addAll(decoder.readBatch(in, compress));
+            }
+            decoder.close();
+            assertEquals(3, events.size());
+            assertEquals("Thread Group", events.get(0).getThreadGroup());
+            assertEquals("injector1", events.get(0).getHostname());
+            assertSameResult(ok.getResult(), events.get(0).getResult());
+            assertSameResult(ok.getResult(), events.get(1).getResult());
+            // only failed samples carry their response data
+            assertEquals(0, events.get(0).getResult().getResponseData().length);
+
+            SampleResult result = events.get(2).getResult();
+            assertSameResult(failed.getResult(), result);
+            assertArrayEquals(failed.getResult().getResponseData(), result.getResponseData());
+            assertEquals("HTTP/1.1 500", result.getResponseHeaders());
+            AssertionResult received = result.getAssertionResults()[0];
+            assertEquals("Response Assertion", received.getName());
+            assertTrue(received.isFailure());
+            assertFalse(received.isError());
+            assertEquals("Test failed", received.getFailureMessage());
+            assertEquals("label2-0", result.getSubResults()[0].getSampleLabel());
+            assertEquals(result, result.getSubResults()[0].getParent());
+        }
+    }
+
+    @Test
+    public void testStream() throws Exception {
+        JMeterUtils.setProperty("stream.receiver.host", "127.0.0.1");
+        TestListener listener = new TestListener();
+        StreamSampleSender sender = new StreamSampleSender(listener);
+        // Created on the client, then sent to the server which starts sending samples
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(sender);
+        }
+        StreamSampleSender serverSender;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            serverSender = (StreamSampleSender) in.readObject();
+        }
+        // More samples than the client grants in advance
+        int count = 25000;
+        SampleEvent event = newEvent("label", true);
+        for (int i = 0; i < count; i++) {
+            serverSender.sampleOccurred(event);
+        }
+        serverSender.testEnded("injector1");
+        // The samples are received by the listener of the client before the test ends
+        List<SampleEvent> received = listener.getEvents();
+        assertEquals(count, received.size());
+        assertSameResult(event.getResult(), received.get(count - 1).getResult());
+        assertNull(listener.getEndedHost());
+    }
+
+    @Test
+    public void testConnectionLostDuringBatch() throws Exception {
+        final int granted = 10;
+        final int count = 25;
+        final List<SampleEvent> streamed = new ArrayList<>();
+        final ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        final AtomicReference<Exception> clientFailure = new AtomicReference<>();
+        // Client receiving the first samples, then dropping the connection
+        Thread client = new Thread() {
+            @Override
+            public void run() {
+                SampleEventStreamCodec.Decoder decoder = new SampleEventStreamCodec.Decoder();
+                Socket socket = null;
+                try {
+                    socket = serverSocket.accept();
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                    in.readFully(new byte[SampleEventStreamCodec.MAGIC.length]);
+                    in.readByte(); // version
+                    in.readLong(); // stream id
+                    out.writeByte(SampleEventStreamCodec.CREDIT);
+                    out.writeInt(granted);
+                    out.flush();
+                    byte type = in.readByte();
+                    streamed.addAll(decoder.readBatch(in, type == SampleEventStreamCodec.COMPRESSED_BATCH));
+                } catch (Exception e) {
+                    clientFailure.set(e);
+                } finally {
+                    decoder.close();
+                    JOrphanUtils.closeQuietly(socket);
+                }
+            }
+        };
+        client.start();
+
+        // All the samples are sent in one batch
+        BlockingQueue<SampleEvent> queue = new ArrayBlockingQueue<>(count);
+        for (int i = 0; i < count; i++) {
+            queue.put(newEvent("label" + i, true));
+        }
+        TestListener listener = new TestListener();
+        StreamSampleSender.Worker worker = new StreamSampleSender.Worker(queue, listener,
+                "127.0.0.1", serverSocket.getLocalPort(), 1L, false);
+        try {
+            worker.start();
+            client.join(10000);
+        } finally {
+            JOrphanUtils.closeQuietly(serverSocket);
+        }
+        assertNull("Client failed: " + clientFailure.get(), clientFailure.get());
+        assertEquals(granted, streamed.size());
+        // Only the samples the client did not receive are sent through RMI
+        List<SampleEvent> received = listener.getEvents();
+        for (int i = 0; i < 100 && received.size() < count - granted; i++) {
+            Thread.sleep(50);
+            received = listener.getEvents();
+        }
+        worker.interrupt();
+        worker.join();
+        assertEquals(count - granted, received.size());
+        assertEquals("label" + (granted - 1), streamed.get(granted - 1).getResult().getSampleLabel());
+        assertEquals("label" + granted, received.get(0).getResult().getSampleLabel());
+    }
+
+    /**
+     * The listener registered on the client receives the samples, its copy on the server the test events
+     */
+    private static class TestListener implements RemoteSampleListener, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final List<SampleEvent> events = new ArrayList<>();
+
+        private String endedHost;
+
+        synchronized List<SampleEvent> getEvents() {
+            return new ArrayList<>(events);
+        }
+
+        synchronized String getEndedHost() {
+            return endedHost;
+        }
+
+        @Override
+        public void testStarted() {
+        }
+
+        @Override
+        public void testStarted(String host) {
+        }
+
+        @Override
+        public void testEnded() {
+        }
+
+        @Override
+        public synchronized void testEnded(String host) {
+            endedHost = host;
+        }
+
+        @Override
+        public synchronized void processBatch(List<SampleEvent> samples) {
+            events.addAll(samples);
+        }
+
+        @Override
+        public synchronized void sampleOccurred(SampleEvent e) {
+            events.add(e);
+        }
+
+        @Override
+        public void sampleStarted(SampleEvent e) {
+        }
+
+        @Override
+        public void sampleStopped(SampleEvent e) {
+        }
+    }
+}
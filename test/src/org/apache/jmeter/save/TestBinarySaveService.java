@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.save;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.report.core.BinarySampleReader;
+import org.apache.jmeter.report.core.CsvSampleReader;
+import org.apache.jmeter.report.core.Sample;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleSaveConfiguration;
+import org.junit.After;
+import org.junit.Test;
+
+public class TestBinarySaveService extends JMeterTestCase {
+
+    private static final String[] COLUMNS = { "timeStamp", "elapsed", "label",
+            "responseCode", "responseMessage", "threadName", "success",
+            "bytes", "grpThreads", "allThreads", "Latency", "Connect" };
+
+    private static final String CSV = "timeStamp,elapsed,label,responseCode,responseMessage,threadName,success,bytes,grpThreads,allThreads,Latency,Connect\n"
+            + "1467000000000,120,Home,200,OK,Users 1-1,true,1024,1,2,100,10\n"
+            + "1467000000050,80,\"Search, page 2\",200,OK,Users 1-2,true,2048,2,2,60,0\n"
+            + "1466999999990,5000,Home,500,\"Internal \"\"error\"\"\",Users 1-1,false,0,2,2,4999,-1\n"
+            + "1467000001000,15,Login,200,,Users 1-2,true,512,1,1,15,3\n";
+
+    private File tempFile;
+
+    private File tempFile2;
+
+    @After
+    public void tearDown() {
+        if (tempFile != null) {
+            tempFile.delete();
+        }
+        if (tempFile2 != null) {
+            tempFile2.delete();
+        }
+    }
+
+    private File createTempFile(String content) throws IOException {
+        File file = File.createTempFile("binary", ".csv");
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+
+    private static List<String> lines(File file) throws IOException {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testVarLong() throws Exception {
+        long[] values = { 0, 1, -1, 63, -64, 64, 300, Integer.MAX_VALUE,
+                Long.MIN_VALUE, Long.MAX_VALUE };
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (long value : values) {
+                BinarySaveService.writeVarLong(out, value);
+            }
+        }
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()));
+        for (long value : values) {
+            assertEquals(value, BinarySaveService.readVarLong(in));
+        }
+    }
+
+    @Test
+    public void testWriteSampleEvents() throws Exception {
+        SampleSaveConfiguration config = new SampleSaveConfiguration();
+        config.setFormatter(null);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        String[] expected = new String[10];
+        try (BinaryResultWriter writer = new BinaryResultWriter(bytes, config, true)) {
+            for (int i = 0; i < expected.length; i++) {
+                SampleResult result = SampleResult.createTestSample(1467000000000L + i * 10,
+                        1467000000000L + i * 20);
+                result.setSampleLabel(i % 2 == 0 ? "even" : "odd");
+                result.setResponseCode(i == 3 ? "500" : "200");
+                result.setSuccessful(i != 3);
+                result.setThreadName("Thread 1-" + i);
+                result.setSaveConfig(config);
+                SampleEvent event = new SampleEvent(result, "tg");
+                writer.write(event);
+                expected[i] = CSVSaveService.resultToDelimitedString(event);
+            }
+        }
+        try (BinaryResultReader reader = new BinaryResultReader(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            BinaryResultReader.Block block = reader.readBlock();
+            assertEquals(expected.length, block.getRowCount());
+            assertEquals(1467000000000L, block.getMinTimeStamp());
+            assertEquals(1467000000180L, block.getMaxTimeStamp()); // end time by default
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], StringUtils.join(block.getRow(i), config.getDelimiter()));
+            }
+            int success = block.indexOf(CSVSaveService.SUCCESSFUL);
+            assertFalse(block.getBoolean(success, 3));
+            assertTrue(block.getBoolean(success, 4));
+            assertNull(reader.readBlock());
+        }
+    }
+
+    @Test
+    public void testCsvRoundTrip() throws Exception {
+        tempFile = createTempFile(CSV);
+        tempFile2 = File.createTempFile("binary", ".jtl");
+        assertEquals(4, BinarySaveService.csvToBinary(tempFile, tempFile2));
+        assertTrue(BinarySaveService.isBinaryFile(tempFile2));
+        assertFalse(BinarySaveService.isBinaryFile(tempFile));
+        File csv = File.createTempFile("binary", ".csv");
+        try {
+            assertEquals(4, BinarySaveService.binaryToCsv(tempFile2, csv));
+            assertEquals(Arrays.asList(CSV.split("\n")), lines(csv));
+        } finally {
+            csv.delete();
+        }
+    }
+
+    @Test
+    public void testSameSamplesAsCsv() throws Exception {
+        tempFile = createTempFile(CSV);
+        tempFile2 = File.createTempFile("binary", ".jtl");
+        BinarySaveService.csvToBinary(tempFile, tempFile2);
+        try (CsvSampleReader csvReader = new CsvSampleReader(tempFile, ',', true);
+                BinarySampleReader binaryReader = new BinarySampleReader(tempFile2)) {
+            assertEquals(csvReader.getMetadata().toString(),
+                    binaryReader.getMetadata().toString());
+            Sample expected;
+            while ((expected = csvReader.readSample()) != null) {
+                Sample actual = binaryReader.readSample();
+                assertEquals(expected.getTimestamp(), actual.getTimestamp());
+                assertEquals(expected.getElapsedTime(), actual.getElapsedTime());
+                assertEquals(expected.getLatency(), actual.getLatency());
+                assertEquals(expected.getName(), actual.getName());
+                assertEquals(expected.getSuccess(), actual.getSuccess());
+                assertEquals(expected.getSentBytes(), actual.getSentBytes());
+                assertEquals(expected.getGroupThreads(), actual.getGroupThreads());
+                assertEquals(expected.getAllThreads(), actual.getAllThreads());
+                assertEquals(expected.getResponseMessage(), actual.getResponseMessage());
+                assertEquals(expected.toString(), actual.toString());
+            }
+            assertNull(binaryReader.readSample());
+        }
+    }
+
+    @Test
+    public void testBlocksAndIndex() throws Exception {
+        tempFile = File.createTempFile("binary", ".jtl");
+        try (BinaryResultWriter writer = new BinaryResultWriter(
+                new FileOutputStream(tempFile), COLUMNS, true, 3)) {
+            for (int i = 0; i < 10; i++) {
+                writer.write(new String[] { Long.toString(1000 + i * 100), "10",
+                        "label" + (i % 3), "200", "OK", "t", "true", "1", "1",
+                        "1", "5", "0" });
+            }
+        }
+        List<BinaryResultReader.BlockInfo> index = BinaryResultReader.readIndex(tempFile);
+        assertEquals(4, index.size());
+        assertEquals(3, index.get(0).getRowCount());
+        assertEquals(1000, index.get(0).getMinTimeStamp());
+        assertEquals(1200, index.get(0).getMaxTimeStamp());
+        assertEquals(1, index.get(3).getRowCount());
+        assertEquals(1900, index.get(3).getMinTimeStamp());
+    }
+
+    @Test
+    public void testAppendAndTruncated() throws Exception {
+        tempFile = File.createTempFile("binary", ".jtl");
+        String[] row = { "1000", "10", "label", "200", "OK", "t", "true", "1", "1", "1", "5", "0" };
+        try (BinaryResultWriter writer = new BinaryResultWriter(
+                new FileOutputStream(tempFile), COLUMNS, true, 2)) {
+            writer.write(row);
+            writer.write(row);
+        }
+        String[] otherColumns = { "timeStamp", "elapsed", "label" };
+        try (BinaryResultWriter writer = new BinaryResultWriter(
+                new FileOutputStream(tempFile, true), otherColumns, false, 2)) {
+            writer.write(new String[] { "2000", "20", "other" });
+            writer.write(new String[] { "3000", "30", "other" });
+            writer.write(new String[] { "4000", "40", "other" });
+        }
+        // simulate a JVM killed while writing the last block
+        byte[] content = Files.readAllBytes(tempFile.toPath());
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            out.write(content, 0, content.length - 3);
+        }
+        try (BinaryResultReader reader = new BinaryResultReader(
+                new FileInputStream(tempFile))) {
+            BinaryResultReader.Block block = reader.readBlock();
+            assertArrayEquals(COLUMNS, block.getColumnNames());
+            assertEquals(2, block.getRowCount());
+            block = reader.readBlock();
+            assertArrayEquals(otherColumns, block.getColumnNames());
+            assertArrayEquals(new String[] { "2000", "20", "other" }, block.getRow(0));
+            assertArrayEquals(new String[] { "3000", "30", "other" }, block.getRow(1));
+            assertNull(reader.readBlock());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidNumber() throws Exception {
+        try (BinaryResultWriter writer = new BinaryResultWriter(
+                new ByteArrayOutputStream(), new String[] { "timeStamp", "elapsed" }, true)) {
+            writer.write(new String[] { "1000", "ten" });
+        }
+    }
+}
@@ -26,6 +26,9 @@ import java.io.IOException;
 import java.io.StringReader;
 
 import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleSaveConfiguration;
 import org.junit.Test;
 
 public class TestCSVSaveService extends JMeterTestCase {
@@ -147,4 +150,26 @@ public class TestCSVSaveService extends JMeterTestCase {
         checkStrings(new String[]{"a"}, out);
         assertEquals("Expected to be at EOF",-1,br.read());
     }
+
+    @Test
+    public void testIntendedStartTime() throws Exception {
+        SampleSaveConfiguration saveConfig = new SampleSaveConfiguration(false);
+        saveConfig.setTimestamp(true);
+        saveConfig.setTime(true);
+        saveConfig.setLabel(true);
+        saveConfig.setIntendedStartTime(true);
+        String header = CSVSaveService.printableFieldNamesToString(saveConfig);
+        assertEquals("timeStamp,elapsed,label,IntendedStartTime", header);
+        SampleSaveConfiguration headerConfig = CSVSaveService.getSampleSaveConfiguration(header, "test");
+        assertEquals(saveConfig.saveIntendedStartTime(), headerConfig.saveIntendedStartTime());
+
+        SampleResult result = SampleResult.createTestSample(1000, 1100);
+        result.setSampleLabel("late");
+        result.setIntendedStartTime(900);
+        result.setSaveConfig(saveConfig);
+        String line = CSVSaveService.resultToDelimitedString(new SampleEvent(result, "group"));
+        assertEquals(result.getTimeStamp() + ",100,late,900", line);
+        SampleEvent event = CSVSaveService.makeResultFromDelimitedString(line.split(","), headerConfig, 1);
+        assertEquals(900, event.getResult().getIntendedStartTime());
+    }
 }
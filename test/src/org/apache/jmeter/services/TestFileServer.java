@@ -30,6 +30,9 @@ import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
 
 import org.apache.jmeter.junit.JMeterTestCase;
 import org.junit.After;
@@ -184,4 +187,53 @@ public class TestFileServer extends JMeterTestCase {
         FS.setBaseForScript(anchor);
         assertTrue(FS.getResolvedFile(anchor.getName()).exists());
     }
+
+    @Test
+    public void testWrite() throws Exception {
+        File file = File.createTempFile("fileserver", ".txt");
+        file.deleteOnExit();
+        final String alias = file.getAbsolutePath();
+        FS.reserveFile(alias, "UTF-8");
+        FS.write(alias, "line1\n");
+        assertTrue("Should have some files open",FS.filesOpen());
+        try {
+            FS.readLine(alias);// should not be able to read it ...
+            fail("Expected IOException");
+        } catch (IOException ignored){
+        }
+        for (int i = 2; i <= 10000; i++) {
+            FS.write(alias, "line" + i + "\n");
+        }
+        FS.closeFile(alias); // writes pending values
+        assertFalse("Should not have any files open",FS.filesOpen());
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(10000, lines.size());
+        assertEquals("line1", lines.get(0));
+        assertEquals("line10000", lines.get(9999));
+    }
+
+    @Test
+    public void testConcurrentHeaderReservation() throws Exception {
+        final String infile = findTestPath("testfiles/testheader.csv");
+        final String[] headers = new String[8];
+        Thread[] threads = new Thread[headers.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    headers[index] = FS.reserveFile(infile, null, "header", true);
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (String header : headers) {
+            assertEquals(headers[0], header);
+        }
+        assertTrue(headers[0].startsWith("A|B"));
+        assertEquals("a1|b1|c1|d1", FS.readLine("header", true, true));
+    }
 }
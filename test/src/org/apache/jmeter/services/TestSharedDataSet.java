@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+
+import org.junit.Test;
+
+public class TestSharedDataSet extends JMeterTestCase {
+
+    private static SharedDataSet load(String content, boolean quoted, boolean hasHeader, int slice, int sliceCount)
+            throws Exception {
+        return SharedDataSet.load(new BufferedReader(new StringReader(content)), ",", quoted, hasHeader,
+                slice, sliceCount);
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        SharedDataSet data = load("A,B\na1,b1\n\"a,2\",b2,c2\n", true, true, 0, 1);
+        assertEquals("A,B", data.getHeader());
+        assertEquals(2, data.getRowCount());
+        assertEquals(2, data.getColumnCount(0));
+        assertEquals("b1", data.getValue(0, 1));
+        assertEquals(3, data.getColumnCount(1));
+        assertEquals("a,2", data.getValue(1, 0));
+        assertEquals("c2", data.getValue(1, 2));
+    }
+
+    @Test
+    public void testValuesAreShared() throws Exception {
+        SharedDataSet data = load("x,y\nx,y\n", false, false, 0, 1);
+        assertSame(data.getValue(0, 0), data.getValue(1, 0));
+        assertSame(data.getValue(0, 1), data.getValue(1, 1));
+    }
+
+    @Test
+    public void testSlice() throws Exception {
+        SharedDataSet data = load("r0\nr1\nr2\nr3\nr4\n", false, false, 1, 2);
+        assertEquals(2, data.getRowCount());
+        assertEquals("r1", data.getValue(0, 0));
+        assertEquals("r3", data.getValue(1, 0));
+    }
+
+    @Test
+    public void testSharedCursor() throws Exception {
+        SharedDataSet data = load("r0\nr1\nr2\n", false, false, 0, 1);
+        SharedDataSet.Cursor cursor = data.getCursor("all");
+        assertSame(cursor, data.getCursor("all"));
+        assertEquals(0, cursor.nextRow(true));
+        assertEquals(1, data.getCursor("all").nextRow(true));
+        assertEquals(0, data.getCursor("other").nextRow(true));
+        assertEquals(2, cursor.nextRow(true));
+        assertEquals(0, cursor.nextRow(true));
+    }
+
+    @Test
+    public void testPartitionedCursor() throws Exception {
+        SharedDataSet data = load("r0\nr1\nr2\nr3\nr4\n", false, false, 0, 1);
+        SharedDataSet.Cursor first = new SharedDataSet.Cursor(data, 0, 2);
+        SharedDataSet.Cursor second = new SharedDataSet.Cursor(data, 1, 2);
+        assertEquals(0, first.nextRow(false));
+        assertEquals(2, first.nextRow(false));
+        assertEquals(4, first.nextRow(false));
+        assertEquals(-1, first.nextRow(false));
+        assertEquals(1, second.nextRow(true));
+        assertEquals(3, second.nextRow(true));
+        assertEquals(1, second.nextRow(true));
+        assertEquals(-1, new SharedDataSet.Cursor(data, 6, 7).nextRow(true));
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.jmeter.control.LoopController;
+import org.apache.jmeter.engine.util.NoThreadClone;
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.samplers.AbstractSampler;
+import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleListener;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.AbstractTestElement;
+import org.apache.jorphan.collections.ListedHashTree;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestArrivalRateThreadGroup extends JMeterTestCase {
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    public static class SleepSampler extends AbstractSampler {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public SampleResult sample(Entry e) {
+            SampleResult res = new SampleResult();
+            res.setSampleLabel(getName());
+            res.sampleStart();
+            try {
+                Thread.sleep(getPropertyAsLong("sleep")); // $NON-NLS-1$
+            } catch (InterruptedException ignored) {
+            }
+            res.sampleEnd();
+            res.setSuccessful(true);
+            return res;
+        }
+    }
+
+    public static class Collector extends AbstractTestElement implements SampleListener, NoThreadClone {
+        private static final long serialVersionUID = 1L;
+
+        private final List<SampleResult> results = Collections.synchronizedList(new ArrayList<SampleResult>());
+
+        @Override
+        public void sampleOccurred(SampleEvent e) {
+            results.add(e.getResult());
+        }
+
+        @Override
+        public void sampleStarted(SampleEvent e) {
+        }
+
+        @Override
+        public void sampleStopped(SampleEvent e) {
+        }
+    }
+
+    @Before
+    public void setUp() {
+        TestCompiler.initialize();
+        JMeterContextService.getContext().setVariables(new JMeterVariables());
+    }
+
+    private static List<Long> arrivals(ArrivalSchedule schedule) {
+        List<Long> arrivals = new ArrayList<>();
+        long arrival;
+        while ((arrival = schedule.take()) >= 0) {
+            arrivals.add(Long.valueOf(arrival));
+        }
+        return arrivals;
+    }
+
+    @Test
+    public void testConstantSchedule() {
+        List<Long> arrivals = arrivals(new ArrivalSchedule(ArrivalRateThreadGroup.PROFILE_CONSTANT, 10, 0, 1, 2, null));
+        assertEquals(20, arrivals.size());
+        for (int i = 0; i < arrivals.size(); i++) {
+            assertEquals(i * 100000000L, arrivals.get(i).longValue(), 1);
+        }
+    }
+
+    @Test
+    public void testRampSchedule() {
+        // From 0 to 20 per second in 10 seconds: t^2 arrivals at t
+        List<Long> arrivals = arrivals(new ArrivalSchedule(ArrivalRateThreadGroup.PROFILE_RAMP, 0, 20, 1, 10, null));
+        assertEquals(100, arrivals.size());
+        assertEquals(5 * NANOS_PER_SECOND, arrivals.get(25).longValue(), 1);
+        assertEquals(9 * NANOS_PER_SECOND, arrivals.get(81).longValue(), 1);
+        // Decreasing ramp
+        arrivals = arrivals(new ArrivalSchedule(ArrivalRateThreadGroup.PROFILE_RAMP, 10, 0, 1, 2, null));
+        assertEquals(10, arrivals.size());
+        assertTrue(arrivals.get(9) - arrivals.get(8) > arrivals.get(1) - arrivals.get(0));
+    }
+
+    @Test
+    public void testStepSchedule() {
+        // 1, 2 then 3 per second
+        List<Long> arrivals = arrivals(new ArrivalSchedule(ArrivalRateThreadGroup.PROFILE_STEP, 1, 3, 3, 3, null));
+        double[] expected = {0, 1, 1.5, 2, 2 + 1.0 / 3, 2 + 2.0 / 3};
+        assertEquals(expected.length, arrivals.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i] * NANOS_PER_SECOND, arrivals.get(i).longValue(), 1);
+        }
+    }
+
+    @Test
+    public void testRandomSchedule() {
+        ArrivalSchedule schedule = new ArrivalSchedule(ArrivalRateThreadGroup.PROFILE_CONSTANT, 1000, 0, 1, 10, new Random(42));
+        assertEquals(schedule.peek(), schedule.take());
+        List<Long> arrivals = arrivals(schedule);
+        // Poisson with a mean of 10000, standard deviation of 100
+        assertEquals(10000, arrivals.size(), 400);
+        for (int i = 1; i < arrivals.size(); i++) {
+            assertTrue(arrivals.get(i) >= arrivals.get(i - 1));
+        }
+    }
+
+    private static ArrivalRateThreadGroup createGroup(double rate, int maxThreads, long sleep, Collector collector) {
+        ArrivalRateThreadGroup group = new ArrivalRateThreadGroup();
+        group.setName("Arrivals");
+        group.setSamplerController(new LoopController());
+        group.setProfile(ArrivalRateThreadGroup.PROFILE_CONSTANT);
+        group.setStartRate(rate);
+        group.setDuration(1);
+        group.setNumThreads(maxThreads);
+        SleepSampler sampler = new SleepSampler();
+        sampler.setName("sleep");
+        sampler.setProperty("sleep", sleep); // $NON-NLS-1$
+        ListedHashTree tree = new ListedHashTree();
+        tree.add(group);
+        tree.add(group, sampler);
+        tree.add(group, collector);
+        group.setRunningVersion(true);
+        sampler.setRunningVersion(true);
+        group.start(1, new ListenerNotifier(), tree, null);
+        group.waitThreadsStopped();
+        return group;
+    }
+
+    @Test
+    public void testIterationsOnTime() {
+        Collector collector = new Collector();
+        ArrivalRateThreadGroup group = createGroup(100, 10, 5, collector);
+        assertEquals(100, collector.results.size());
+        assertEquals(0, group.numberOfActiveThreads());
+        // Most iterations are on time, a loaded machine may delay a few of them
+        long[] lateness = new long[collector.results.size()];
+        int late = 0;
+        for (int i = 0; i < lateness.length; i++) {
+            SampleResult res = collector.results.get(i);
+            if (res.getIntendedStartTime() != 0) {
+                lateness[i] = res.getStartTime() - res.getIntendedStartTime();
+            }
+            if (lateness[i] > 200) {
+                late++;
+            }
+        }
+        Arrays.sort(lateness);
+        long median = lateness[lateness.length / 2];
+        assertTrue("Iterations late by " + median + "ms", median <= 20);
+        assertTrue("Too many late iterations: " + late, late <= 5);
+    }
+
+    @Test
+    public void testIterationsBehindSchedule() {
+        // One thread can only run 50 iterations per second
+        Collector collector = new Collector();
+        createGroup(100, 1, 20, collector);
+        List<SampleResult> results = collector.results;
+        assertEquals(100, results.size());
+        SampleResult last = results.get(results.size() - 1);
+        assertTrue(last.getIntendedStartTime() > 0);
+        // The last one should have started around 1s, it starts around 2s
+        long delay = last.getStartTime() - last.getIntendedStartTime();
+        assertTrue("Unexpected delay: " + delay, delay > 500);
+    }
+}
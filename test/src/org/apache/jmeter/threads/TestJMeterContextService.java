@@ -19,7 +19,10 @@
 package org.apache.jmeter.threads;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
+import org.apache.jmeter.samplers.SampleResult;
 import org.junit.Test;
 
 public class TestJMeterContextService {
@@ -40,6 +43,23 @@ public class TestJMeterContextService {
         assertEquals(0,JMeterContextService.getNumberOfThreads());
     }
     
+    @Test
+    public void testRecycledResult() {
+        JMeterContext context = JMeterContextService.getContext();
+        assertNull(context.takeRecycledResult(SampleResult.class));
+        SampleResult result = new SampleResult();
+        result.setSampleLabel("label");
+        context.recycleSampleResult(result);
+        assertNull(context.takeRecycledResult(SubResult.class));
+        assertSame(result, context.takeRecycledResult(SampleResult.class));
+        assertEquals("", result.getSampleLabel());
+        assertNull(context.takeRecycledResult(SampleResult.class));
+    }
+
+    static class SubResult extends SampleResult {
+        private static final long serialVersionUID = 1L;
+    }
+
     // Give access to the method for test code
     public static void incrNumberOfThreads(){
         JMeterContextService.incrNumberOfThreads();
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package org.apache.jmeter.threads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.junit.Test;
+
+public class TestJMeterThreadFactory extends JMeterTestCase {
+
+    public static class DaemonThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
+    private static boolean hasVirtualThreads() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void testDefaultIsPlatform() {
+        JMeterThreadFactory factory = JMeterThreadFactory.getFactory("");
+        assertEquals(JMeterThreadFactory.MODE_PLATFORM, factory.getMode());
+        Thread t = factory.newThread(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, "TG 1-1");
+        assertEquals("TG 1-1", t.getName());
+        assertFalse(t.isDaemon());
+        assertFalse(t.isAlive());
+    }
+
+    @Test
+    public void testUnknownModeFallsBackToPlatform() {
+        assertEquals(JMeterThreadFactory.MODE_PLATFORM,
+                JMeterThreadFactory.getFactory("no.such.Factory").getMode());
+        assertEquals(JMeterThreadFactory.MODE_PLATFORM,
+                JMeterThreadFactory.getFactory(String.class.getName()).getMode());
+    }
+
+    @Test
+    public void testCustomFactory() {
+        JMeterThreadFactory factory = JMeterThreadFactory.getFactory(DaemonThreadFactory.class.getName());
+        assertEquals(DaemonThreadFactory.class.getName(), factory.getMode());
+        Thread t = factory.newThread(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, "TG 1-2");
+        assertEquals("TG 1-2", t.getName());
+        assertTrue(t.isDaemon());
+    }
+
+    @Test
+    public void testThreadGroupMode() {
+        ThreadGroup tg = new ThreadGroup();
+        assertEquals("", tg.getThreadMode());
+        tg.setThreadMode(JMeterThreadFactory.MODE_VIRTUAL);
+        assertEquals(JMeterThreadFactory.MODE_VIRTUAL, tg.getThreadMode());
+        // Either virtual or platform depending on the JVM running the test
+        assertEquals(hasVirtualThreads() ? JMeterThreadFactory.MODE_VIRTUAL : JMeterThreadFactory.MODE_PLATFORM,
+                tg.getThreadFactory().getMode());
+        tg.setThreadMode("");
+        assertEquals(JMeterThreadFactory.MODE_PLATFORM, tg.getThreadFactory().getMode());
+    }
+
+    @Test
+    public void testContextIsPerThread() throws Exception {
+        final JMeterContext mainContext = JMeterContextService.getContext();
+        final AtomicReference<JMeterContext> seen = new AtomicReference<>();
+        for (String mode : new String[]{JMeterThreadFactory.MODE_PLATFORM, JMeterThreadFactory.MODE_VIRTUAL}) {
+            seen.set(null);
+            Thread t = JMeterThreadFactory.getFactory(mode).newThread(new Runnable() {
+                @Override
+                public void run() {
+                    seen.set(JMeterContextService.getContext());
+                }
+            }, "context-" + mode);
+            t.start();
+            t.join();
+            assertNotSame(mainContext, seen.get());
+        }
+    }
+}
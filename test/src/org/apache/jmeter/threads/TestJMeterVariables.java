@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+public class TestJMeterVariables {
+
+    @Test
+    public void testSlotAndNameAccess() {
+        JMeterVariables vars = new JMeterVariables();
+        VariableName name = new VariableName("TestJMeterVariables.slot");
+        assertTrue(name.getSlot() >= 0);
+        vars.put(name, "a");
+        assertEquals("a", vars.get("TestJMeterVariables.slot"));
+        vars.put("TestJMeterVariables.slot", "b");
+        assertEquals("b", vars.get(name));
+        Object value = new Object();
+        vars.putObject(name, value);
+        assertSame(value, vars.getObject("TestJMeterVariables.slot"));
+        assertSame(value, vars.remove("TestJMeterVariables.slot"));
+        assertNull(vars.get(name));
+        assertNull(vars.remove(name));
+    }
+
+    @Test
+    public void testNameRegisteredAfterPut() {
+        JMeterVariables vars = new JMeterVariables();
+        vars.put("TestJMeterVariables.late", "value");
+        assertEquals(-1, VariableName.slotOf("TestJMeterVariables.late"));
+        VariableName name = new VariableName("TestJMeterVariables.late");
+        assertTrue(name.getSlot() >= 0);
+        assertEquals("value", vars.get(name));
+        assertEquals("value", vars.get("TestJMeterVariables.late"));
+        vars.put(name, "other");
+        assertEquals("other", vars.get("TestJMeterVariables.late"));
+        assertEquals(1, countEntries(vars, "TestJMeterVariables.late"));
+    }
+
+    @Test
+    public void testUnregisteredName() {
+        JMeterVariables vars = new JMeterVariables();
+        VariableName name = new VariableName("TestJMeterVariables.noSlot", false);
+        assertEquals(-1, name.getSlot());
+        vars.put(name, "value");
+        assertEquals("value", vars.get("TestJMeterVariables.noSlot"));
+        // Given a slot later on
+        VariableName registered = new VariableName("TestJMeterVariables.noSlot");
+        assertEquals("value", vars.get(registered));
+        vars.put(name, "other");
+        assertEquals("other", vars.get(registered));
+    }
+
+    @Test
+    public void testNullValueAndEntries() {
+        JMeterVariables vars = new JMeterVariables();
+        VariableName name = new VariableName("TestJMeterVariables.null");
+        vars.put(name, null);
+        vars.put("TestJMeterVariables.dynamic", "d");
+        Map<String, Object> entries = new HashMap<>();
+        for (Entry<String, Object> entry : vars.entrySet()) {
+            entries.put(entry.getKey(), entry.getValue());
+        }
+        assertTrue(entries.containsKey("TestJMeterVariables.null"));
+        assertNull(entries.get("TestJMeterVariables.null"));
+        assertEquals("d", entries.get("TestJMeterVariables.dynamic"));
+
+        JMeterVariables copy = new JMeterVariables();
+        copy.putAll(vars);
+        assertEquals("d", copy.get("TestJMeterVariables.dynamic"));
+        assertEquals(1, countEntries(copy, "TestJMeterVariables.null"));
+    }
+
+    @Test
+    public void testIndexedNames() {
+        IndexedVariableNames names = new IndexedVariableNames("TestJMeterVariables.ref", "_");
+        assertEquals("TestJMeterVariables.ref", names.getBaseName());
+        assertEquals("TestJMeterVariables.ref_1", names.get(1).getName());
+        assertSame(names.get(1), names.get(1));
+        assertTrue(names.get(1).getSlot() >= 0);
+        assertEquals("TestJMeterVariables.ref_1000", names.get(1000).getName());
+        JMeterVariables vars = new JMeterVariables();
+        vars.put(names.get(1000), "last");
+        assertEquals("last", vars.get("TestJMeterVariables.ref_1000"));
+    }
+
+    @Test
+    public void testIndexedNamesWithoutSlots() {
+        IndexedVariableNames names = new IndexedVariableNames("TestJMeterVariables.ref_50_g", "", false);
+        assertFalse(names.isRegistered(1));
+        assertEquals(-1, names.get(1).getSlot());
+        assertEquals(-1, VariableName.slotOf("TestJMeterVariables.ref_50_g1"));
+        IndexedVariableNames registered = new IndexedVariableNames("TestJMeterVariables.ref", "_");
+        assertTrue(registered.isRegistered(1));
+        assertFalse(registered.isRegistered(50));
+        JMeterVariables vars = new JMeterVariables();
+        vars.put(names.get(1), "group");
+        assertEquals("group", vars.get("TestJMeterVariables.ref_50_g1"));
+    }
+
+    @Test
+    public void testSymbolTableReset() {
+        VariableName before = new VariableName("TestJMeterVariables.before");
+        JMeterVariables previousRun = new JMeterVariables();
+        previousRun.put(before, "previous");
+        VariableName.resetSymbolTable();
+        assertEquals(-1, VariableName.slotOf("TestJMeterVariables.before"));
+        VariableName after = new VariableName("TestJMeterVariables.after");
+        assertEquals(0, after.getSlot());
+        assertEquals(-1, before.getSlot());
+
+        // Variables of the new run, names of both runs
+        JMeterVariables vars = new JMeterVariables();
+        vars.put(before, "b");
+        vars.put(after, "a");
+        assertEquals("b", vars.get("TestJMeterVariables.before"));
+        assertEquals("a", vars.get("TestJMeterVariables.after"));
+        assertEquals("a", vars.get(new VariableName("TestJMeterVariables.after")));
+
+        // Variables of the previous run keep their slots
+        assertEquals("previous", previousRun.get(before));
+        assertEquals("previous", previousRun.get("TestJMeterVariables.before"));
+        previousRun.put(after, "other");
+        assertEquals("other", previousRun.get("TestJMeterVariables.after"));
+        assertEquals("previous", previousRun.remove("TestJMeterVariables.before"));
+        assertNull(previousRun.get(before));
+    }
+
+    @Test
+    public void testNullValueGivenSlotLater() {
+        JMeterVariables vars = new JMeterVariables();
+        vars.put("TestJMeterVariables.lateNull", null);
+        VariableName name = new VariableName("TestJMeterVariables.lateNull");
+        assertNull(vars.get(name));
+        vars.put("TestJMeterVariables.lateNull", "value");
+        assertEquals("value", vars.get(name));
+        assertEquals(1, countEntries(vars, "TestJMeterVariables.lateNull"));
+    }
+
+    private static int countEntries(JMeterVariables vars, String name) {
+        int count = 0;
+        Iterator<Entry<String, Object>> iter = vars.getIterator();
+        while (iter.hasNext()) {
+            if (iter.next().getKey().equals(name)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
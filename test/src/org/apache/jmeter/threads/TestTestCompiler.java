@@ -18,12 +18,27 @@
 
 package org.apache.jmeter.threads;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import org.apache.jmeter.config.ConfigTestElement;
+import org.apache.jmeter.control.Controller;
 import org.apache.jmeter.control.GenericController;
+import org.apache.jmeter.control.TransactionController;
+import org.apache.jmeter.control.TransactionSampler;
+import org.apache.jmeter.engine.util.ConfigMergabilityIndicator;
+import org.apache.jmeter.engine.util.NoConfigMerge;
 import org.apache.jmeter.samplers.AbstractSampler;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleListener;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.ResponseDataPrefixConsumer;
+import org.apache.jmeter.samplers.SampleResultConsumer;
+import org.apache.jmeter.testelement.AbstractTestElement;
 import org.apache.jorphan.collections.ListedHashTree;
 import org.junit.Test;
 
@@ -48,6 +63,196 @@ public class TestTestCompiler {
             assertEquals("A test value", sampler.getPropertyAsString("test.property"));
         }
 
+        @Test
+        public void testCompiledPackage() throws Exception {
+            ListedHashTree testing = new ListedHashTree();
+            GenericController outer = new GenericController();
+            GenericController inner = new GenericController();
+            ConfigTestElement applies = new ConfigTestElement();
+            applies.setName("applies");
+            applies.setProperty("applies.property", "A");
+            ConfigTestElement ignored = new ConfigTestElement();
+            ignored.setName("ignored");
+            ignored.setProperty("ignored.property", "B");
+            NoMergeConfig noMerge = new NoMergeConfig();
+            noMerge.setProperty("nomerge.property", "C");
+            SelectiveSampler sampler = new SelectiveSampler();
+            testing.add(outer, applies);
+            testing.add(outer, ignored);
+            testing.add(outer, noMerge);
+            testing.add(outer, inner);
+            testing.add(new Object[] {outer, inner}, sampler);
+            TestCompiler.initialize();
+
+            TestCompiler compiler = new TestCompiler(testing);
+            testing.traverse(compiler);
+            SamplePackage pack = compiler.configureSampler(sampler);
+            assertEquals("A", sampler.getPropertyAsString("applies.property"));
+            assertEquals("", sampler.getPropertyAsString("ignored.property"));
+            assertEquals("", sampler.getPropertyAsString("nomerge.property"));
+            assertArrayEquals(new Controller[] {inner, outer}, compiler.getControllersToRoot(sampler));
+            assertNull(compiler.getControllersToRoot(new SelectiveSampler()));
+
+            // merged configs are removed when the package is done, and merged again on next use
+            compiler.done(pack);
+            assertEquals("", sampler.getPropertyAsString("applies.property"));
+            compiler.configureSampler(sampler);
+            assertEquals("A", sampler.getPropertyAsString("applies.property"));
+        }
+
+        @Test
+        public void testListenersOutsideTransaction() throws Exception {
+            ListedHashTree testing = new ListedHashTree();
+            TransactionController transaction = new TransactionController();
+            transaction.setGenerateParentSample(true);
+            TestListener transactionListener = new TestListener();
+            TestListener samplerListener = new TestListener();
+            TestSampler sampler = new TestSampler();
+            testing.add(transaction, transactionListener);
+            testing.add(transaction, sampler);
+            testing.add(new Object[] {transaction, sampler}, samplerListener);
+            TestCompiler.initialize();
+
+            TestCompiler compiler = new TestCompiler(testing);
+            testing.traverse(compiler);
+            SamplePackage pack = compiler.configureSampler(sampler);
+            SamplePackage transactionPack = compiler.configureTransactionSampler(
+                    new TransactionSampler(transaction, "transaction"));
+            assertArrayEquals(new SampleListener[] {samplerListener, transactionListener}, pack.getSampleListenerArray());
+            SampleListener[] outside = pack.getSampleListenersOutside(transactionPack);
+            assertArrayEquals(new SampleListener[] {samplerListener}, outside);
+            assertSame(outside, pack.getSampleListenersOutside(transactionPack));
+
+            TestListener added = new TestListener();
+            pack.addSampleListener(added);
+            assertArrayEquals(new SampleListener[] {samplerListener, transactionListener, added},
+                    pack.getSampleListenerArray());
+            assertArrayEquals(new SampleListener[] {samplerListener, added}, pack.getSampleListenersOutside(transactionPack));
+        }
+
+        @Test
+        public void testSampleResultConsumers() throws Exception {
+            ListedHashTree testing = new ListedHashTree();
+            GenericController controller = new GenericController();
+            TestSampler sampler = new TestSampler();
+            testing.add(controller, new ConsumerListener(false, false));
+            testing.add(controller, sampler);
+            TestCompiler.initialize();
+
+            TestCompiler compiler = new TestCompiler(testing);
+            testing.traverse(compiler);
+            SamplePackage pack = compiler.configureSampler(sampler);
+            assertFalse(pack.isResponseDataNeeded());
+            assertFalse(pack.isSampleResultRetained());
+
+            pack.addSampleListener(new ConsumerListener(true, false));
+            assertTrue(pack.isResponseDataNeeded());
+            assertFalse(pack.isSampleResultRetained());
+
+            // Listeners which do not declare how they use the results do not get the data but may retain it
+            pack.addSampleListener(new TestListener());
+            assertTrue(pack.isResponseDataNeeded());
+            assertTrue(pack.isSampleResultRetained());
+        }
+
+        @Test
+        public void testResponseDataPrefixConsumers() throws Exception {
+            ListedHashTree testing = new ListedHashTree();
+            GenericController controller = new GenericController();
+            TestSampler sampler = new TestSampler();
+            testing.add(controller, new PrefixListener(100));
+            testing.add(controller, new ConsumerListener(false, false));
+            testing.add(controller, sampler);
+            TestCompiler.initialize();
+
+            TestCompiler compiler = new TestCompiler(testing);
+            testing.traverse(compiler);
+            SamplePackage pack = compiler.configureSampler(sampler);
+            assertTrue(pack.isResponseDataNeeded());
+            assertEquals(100, pack.getResponseDataMaxSize());
+
+            pack.addSampleListener(new PrefixListener(1000));
+            assertEquals(1000, pack.getResponseDataMaxSize());
+
+            pack.addSampleListener(new ConsumerListener(true, false));
+            assertEquals(0, pack.getResponseDataMaxSize());
+
+            assertEquals(10, SamplePackage.combineResponseDataMaxSizes(-1, 10));
+            assertEquals(0, SamplePackage.combineResponseDataMaxSizes(-1, 0));
+            assertEquals(0, SamplePackage.combineResponseDataMaxSizes(0, 10));
+            assertEquals(20, SamplePackage.combineResponseDataMaxSizes(20, 10));
+        }
+
+        static class PrefixListener extends ConsumerListener implements ResponseDataPrefixConsumer {
+            private static final long serialVersionUID = 1L;
+            private final int maxSize;
+
+            PrefixListener(int maxSize) {
+                super(true, false);
+                this.maxSize = maxSize;
+            }
+
+            @Override
+            public int getResponseDataMaxSize() {
+                return maxSize;
+            }
+        }
+
+        static class ConsumerListener extends TestListener implements SampleResultConsumer {
+            private static final long serialVersionUID = 1L;
+            private final boolean needsResponseData;
+            private final boolean retainsSampleResults;
+
+            ConsumerListener(boolean needsResponseData, boolean retainsSampleResults) {
+                this.needsResponseData = needsResponseData;
+                this.retainsSampleResults = retainsSampleResults;
+            }
+
+            @Override
+            public boolean needsResponseData() {
+                return needsResponseData;
+            }
+
+            @Override
+            public boolean retainsSampleResults() {
+                return retainsSampleResults;
+            }
+        }
+
+        static class TestListener extends AbstractTestElement implements SampleListener {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void sampleOccurred(SampleEvent e) {
+            }
+
+            @Override
+            public void sampleStarted(SampleEvent e) {
+            }
+
+            @Override
+            public void sampleStopped(SampleEvent e) {
+            }
+        }
+
+        static class NoMergeConfig extends ConfigTestElement implements NoConfigMerge {
+            private static final long serialVersionUID = 1L;
+        }
+
+        static class SelectiveSampler extends AbstractSampler implements ConfigMergabilityIndicator {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public SampleResult sample(org.apache.jmeter.samplers.Entry e) {
+                return null;
+            }
+
+            @Override
+            public boolean applies(ConfigTestElement configElement) {
+                return !"ignored".equals(configElement.getName());
+            }
+        }
+
         class TestSampler extends AbstractSampler {
             private static final long serialVersionUID = 240L;
 
@@ -19,7 +19,9 @@
 package org.apache.jmeter.timers;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import org.apache.jmeter.threads.JMeterContext;
 import org.apache.jmeter.threads.JMeterContextService;
 import org.apache.jmeter.threads.TestJMeterContextService;
 import org.apache.jmeter.util.BeanShellInterpreter;
@@ -73,6 +75,47 @@ public class ConstantThroughputTimerTest {
         assertEquals(1,timer.calculateCurrentTarget(0)); // Should delay for 1 milli-second
     }
 
+    @Test
+    public void testTimerAllServers() throws Exception {
+        ConstantThroughputTimer timer = new ConstantThroughputTimer();
+        timer.setMode(ConstantThroughputTimer.Mode.AllActiveThreadsInAllServers_Shared);
+        assertEquals(5,timer.getCalcMode());
+        timer.setName("budget");
+        timer.setThroughput(60000.0);// 1 per milli-second
+        timer.testStarted();
+        try {
+            ConstantThroughputTimer other = (ConstantThroughputTimer) timer.clone();
+            other.setMode(ConstantThroughputTimer.Mode.AllActiveThreadsInAllServers_Shared);
+            other.setThroughput(60000.0);
+            long last = 0;
+            for(int i=0; i<100; i++){
+                last = (i % 2 == 0 ? timer : other).delay(); // Both timers share the budget
+            }
+            assertEquals("Expected delay of approx 99", 99, last, 10);
+        } finally {
+            timer.testEnded();
+        }
+    }
+
+    @Test
+    public void testIntendedStartTime() throws Exception {
+        JMeterContext context = JMeterContextService.getContext();
+        ConstantThroughputTimer timer = new ConstantThroughputTimer();
+        timer.setThroughput(600.0);// 1 per 100 milli-seconds
+        context.setIntendedStartTime(0);
+        timer.delay(); // Initialise
+        assertEquals("First sample is on time", 0, context.getIntendedStartTime());
+        long start = System.currentTimeMillis();
+        Thread.sleep(300); // Previous sample took too long
+        assertEquals(0, timer.delay());
+        long intendedStartTime = context.getIntendedStartTime();
+        assertTrue("Expected intended start time about 100ms after first sample, was "
+                + (intendedStartTime - start), intendedStartTime > start - 50 && intendedStartTime < start + 150);
+        context.setIntendedStartTime(0);
+        assertTrue(timer.delay() > 0);
+        assertEquals("Back on schedule", 0, context.getIntendedStartTime());
+    }
+
     @Test
     public void testTimerBSH() throws Exception {
         if (!BeanShellInterpreter.isInterpreterPresent()){
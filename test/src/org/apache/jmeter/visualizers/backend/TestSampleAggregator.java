@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.visualizers.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.samplers.SampleResult;
+import org.junit.Test;
+
+public class TestSampleAggregator extends JMeterTestCase {
+
+    private static SampleResult sample(String label, long time, boolean success) {
+        SampleResult result = SampleResult.createTestSample(time);
+        result.setSampleLabel(label);
+        result.setSuccessful(success);
+        return result;
+    }
+
+    @Test
+    public void testCollect() throws Exception {
+        final SampleAggregator aggregator = new SampleAggregator(6);
+        aggregator.add(sample("a", 10, true));
+        aggregator.add(sample("a", 30, false));
+        SampleResult parent = sample("b", 100, true);
+        parent.addSubResult(sample("b-0", 50, true));
+        aggregator.add(parent);
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                aggregator.add(sample("a", 20, true));
+            }
+        };
+        other.start();
+        other.join();
+
+        List<SampleAggregate> aggregates = aggregator.collect();
+        assertEquals(2, aggregates.size());
+        SampleAggregate a = aggregates.get(0);
+        assertEquals("a", a.getLabel());
+        assertEquals(2, a.getSuccesses());
+        assertEquals(1, a.getFailures());
+        assertEquals(3, a.getHits());
+        assertEquals(10, a.getOkTimes().getMin());
+        assertEquals(20, a.getOkTimes().getMax());
+        assertEquals(30, a.getOkTotalTime());
+        assertEquals(30, a.getKoTotalTime());
+        assertEquals(3, a.getAllTimes().getTotalCount());
+        SampleAggregate b = aggregates.get(1);
+        assertEquals("b", b.getLabel());
+        assertEquals(2, b.getHits());
+
+        assertTrue(aggregator.collect().isEmpty());
+        aggregator.add(sample("b", 5, true));
+        aggregates = aggregator.collect();
+        assertEquals(1, aggregates.size());
+        assertEquals(1, aggregates.get(0).getSuccesses());
+        assertEquals(5, aggregates.get(0).getOkTimes().getMax());
+    }
+
+    @Test
+    public void testSamplerMetric() throws Exception {
+        SampleAggregator aggregator = new SampleAggregator(6);
+        aggregator.add(sample("a", 10, true));
+        aggregator.add(sample("a", 20, true));
+        aggregator.add(sample("a", 40, false));
+        SamplerMetric metric = new SamplerMetric();
+        metric.add(aggregator.collect().get(0));
+        assertEquals(2, metric.getSuccesses());
+        assertEquals(1, metric.getFailures());
+        assertEquals(10, metric.getOkMinTime(), 0);
+        assertEquals(20, metric.getOkMaxTime(), 0);
+        assertEquals(15, metric.getOkMean(), 0);
+        assertEquals(40, metric.getKoMaxTime(), 0);
+        assertEquals(40, metric.getAllMaxTime(), 0);
+        assertEquals(20, metric.getAllPercentile(50), 0);
+        metric.resetForTimeInterval();
+        assertEquals(0, metric.getTotal());
+        assertTrue(Double.isNaN(metric.getOkMaxTime()));
+    }
+}
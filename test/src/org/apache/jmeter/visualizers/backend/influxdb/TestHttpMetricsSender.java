@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.visualizers.backend.influxdb;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.protocol.http.control.HttpMirrorServer;
+import org.apache.jmeter.protocol.http.control.TestHTTPMirrorThread;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.junit.Test;
+
+public class TestHttpMetricsSender extends JMeterTestCase {
+
+    private static final int MIRROR_PORT = 8183; // Different from the ports of the other mirror tests
+
+    @Test
+    public void testEscaping() throws Exception {
+        assertEquals("plain", AbstractInfluxdbMetricsSender.tagToStringValue("plain"));
+        assertEquals("a\\ b\\,c\\=d", AbstractInfluxdbMetricsSender.tagToStringValue("a b,c=d"));
+        assertEquals("a\\ b\\,c=d", AbstractInfluxdbMetricsSender.measurementToStringValue("a b,c=d"));
+    }
+
+    @Test
+    public void testPayload() throws Exception {
+        byte[] payload = HttpMetricsSender.toPayload(Arrays.asList("m,t=1 f=1i 10", "m,t=2 f=2i 20"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            byte[] buffer = new byte[256];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        assertEquals("m,t=1 f=1i 10\nm,t=2 f=2i 20\n", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void testBatches() throws Exception {
+        HttpMirrorServer server = TestHTTPMirrorThread.startHttpMirror(MIRROR_PORT);
+        try {
+            HttpMetricsSender sender = new HttpMetricsSender(10, 60000L, 10, 0, 5000);
+            sender.setup("http://localhost:" + MIRROR_PORT + "/write?db=jmeter");
+            for (int i = 0; i < 25; i++) {
+                sender.addMetric("jmeter", "transaction=t" + i, "count=" + i + "i");
+            }
+            // The last partial batch is only sent on destroy, as the batch delay has not elapsed
+            sender.writeAndSendMetrics();
+            sender.destroy();
+            assertEquals(25, sender.getSentPoints());
+            assertEquals(3, sender.getSentBatches());
+            assertEquals(0, sender.getDroppedPoints());
+        } finally {
+            server.stopServer();
+        }
+    }
+
+    @Test
+    public void testDroppedWhenUnreachable() throws Exception {
+        int port;
+        // Find a port nobody listens on
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            port = socket.getLocalPort();
+        } finally {
+            JOrphanUtils.closeQuietly(socket);
+        }
+        HttpMetricsSender sender = new HttpMetricsSender(2, 60000L, 10, 1, 1000);
+        sender.setup("http://localhost:" + port + "/write?db=jmeter");
+        for (int i = 0; i < 5; i++) {
+            sender.addMetric("jmeter", "", "count=1i");
+        }
+        sender.destroy();
+        assertEquals(0, sender.getSentPoints());
+        assertEquals(5, sender.getDroppedPoints());
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jorphan.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class TestConcurrentRingBuffer {
+
+    @Test
+    public void testCapacity() {
+        assertEquals(1, new ConcurrentRingBuffer<String>(1).capacity());
+        assertEquals(4, new ConcurrentRingBuffer<String>(3).capacity());
+        assertEquals(1024, new ConcurrentRingBuffer<String>(1024).capacity());
+        assertEquals(2048, new ConcurrentRingBuffer<String>(1025).capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new ConcurrentRingBuffer<String>(0);
+    }
+
+    @Test
+    public void testOfferPollWrapAround() {
+        ConcurrentRingBuffer<Integer> buffer = new ConcurrentRingBuffer<>(4);
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(buffer.offer(Integer.valueOf(round * 4 + i)));
+            }
+            assertFalse(buffer.offer(Integer.valueOf(-1)));
+            assertEquals(4, buffer.size());
+            for (int i = 0; i < 4; i++) {
+                assertEquals(Integer.valueOf(round * 4 + i), buffer.poll());
+            }
+            assertNull(buffer.poll());
+            assertTrue(buffer.isEmpty());
+        }
+    }
+
+    @Test
+    public void testDrainTo() {
+        ConcurrentRingBuffer<Integer> buffer = new ConcurrentRingBuffer<>(8);
+        for (int i = 0; i < 6; i++) {
+            buffer.offer(Integer.valueOf(i));
+        }
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, buffer.drainTo(drained, 4));
+        assertEquals(2, buffer.drainTo(drained, 4));
+        assertEquals(0, buffer.drainTo(drained, 4));
+        assertEquals(6, drained.size());
+        for (int i = 0; i < 6; i++) {
+            assertEquals(Integer.valueOf(i), drained.get(i));
+        }
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        final int producers = 4;
+        final int perProducer = 100000;
+        final ConcurrentRingBuffer<long[]> buffer = new ConcurrentRingBuffer<>(64);
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perProducer; i++) {
+                        long[] element = new long[] { producer, i };
+                        while (!buffer.offer(element)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        start.countDown();
+        long[] next = new long[producers];
+        long received = 0;
+        while (received < producers * (long) perProducer) {
+            long[] element = buffer.poll();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+            // each producer's elements are received once, in order
+            assertEquals(next[(int) element[0]], element[1]);
+            next[(int) element[0]]++;
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(buffer.poll());
+        for (long count : next) {
+            assertEquals(perProducer, count);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jorphan.math;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Test;
+
+public class TestLogLinearHistogram {
+
+    @Test
+    public void testBucketBoundaries() {
+        for (int precision = LogLinearHistogram.MIN_PRECISION; precision <= LogLinearHistogram.MAX_PRECISION; precision++) {
+            int count = LogLinearHistogram.bucketCount(precision);
+            assertEquals(count - 1, LogLinearHistogram.bucketIndex(Long.MAX_VALUE, precision));
+            for (int i = 0; i < count; i++) {
+                long low = LogLinearHistogram.lowestValue(i, precision);
+                long high = LogLinearHistogram.highestValue(i, precision);
+                assertTrue(low <= high);
+                assertEquals(i, LogLinearHistogram.bucketIndex(low, precision));
+                assertEquals(i, LogLinearHistogram.bucketIndex(high, precision));
+                // bucket width bounded by the relative precision
+                assertTrue((high - low) <= (low >> (precision - 1)));
+            }
+        }
+    }
+
+    @Test
+    public void testExactBelowPrecision() {
+        LogLinearHistogram histogram = new LogLinearHistogram(8);
+        StatCalculatorLong reference = new StatCalculatorLong();
+        for (int i = 1; i <= 200; i++) {
+            histogram.recordValue(i);
+            reference.addValue(i);
+        }
+        for (double p : new double[] { 0, 0.1, 0.5, 0.9, 0.95, 0.99, 1.0 }) {
+            assertEquals(reference.getPercentPoint(p).longValue(), histogram.getValueAtPercent(p));
+        }
+        assertEquals(200, histogram.getTotalCount());
+        assertEquals(1, histogram.getMin());
+        assertEquals(200, histogram.getMax());
+    }
+
+    @Test
+    public void testRelativeError() {
+        LogLinearHistogram histogram = new LogLinearHistogram(8);
+        StatCalculatorLong reference = new StatCalculatorLong();
+        long value = 1;
+        for (int i = 0; i < 10000; i++) {
+            value = (value * 31 + 17) % 5000000;
+            histogram.recordValue(value);
+            reference.addValue(value);
+        }
+        for (double p : new double[] { 0.5, 0.9, 0.95, 0.99 }) {
+            long exact = reference.getPercentPoint(p).longValue();
+            long approx = histogram.getValueAtPercent(p);
+            assertEquals(exact, approx, exact / 128.0);
+        }
+    }
+
+    @Test
+    public void testMerge() {
+        LogLinearHistogram h1 = new LogLinearHistogram(6);
+        LogLinearHistogram h2 = new LogLinearHistogram(6);
+        LogLinearHistogram all = new LogLinearHistogram(6);
+        for (int i = 0; i < 1000; i++) {
+            (i % 2 == 0 ? h1 : h2).recordValue(i * 7);
+            all.recordValue(i * 7);
+        }
+        LogLinearHistogram.Snapshot merged = h1.snapshot().merge(h2.snapshot());
+        LogLinearHistogram.Snapshot expected = all.snapshot();
+        assertEquals(expected.getTotalCount(), merged.getTotalCount());
+        assertEquals(expected.getMin(), merged.getMin());
+        assertEquals(expected.getMax(), merged.getMax());
+        for (double p : new double[] { 0.5, 0.9, 0.99 }) {
+            assertEquals(expected.getValueAtPercent(p), merged.getValueAtPercent(p));
+        }
+        h1.add(h2.snapshot());
+        assertEquals(expected.getValueAtPercent(0.9), h1.getValueAtPercent(0.9));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMergeDifferentPrecision() {
+        new LogLinearHistogram(6).snapshot().merge(new LogLinearHistogram(7).snapshot());
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        final LogLinearHistogram histogram = new LogLinearHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        histogram.recordValue(i);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000, histogram.getTotalCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(9999, histogram.getMax());
+    }
+
+    @Test
+    public void testHistogramStatCalculator() {
+        HistogramStatCalculatorLong calc = new HistogramStatCalculatorLong();
+        StatCalculatorLong reference = new StatCalculatorLong();
+        assertEquals(Long.MIN_VALUE, calc.getMax().longValue());
+        assertEquals(Long.MAX_VALUE, calc.getMin().longValue());
+        assertEquals(0, calc.getMedian().longValue());
+        long[] values = { 18, 10, 9, 11, 28, 3, 30, 15, 15, 21 };
+        for (long v : values) {
+            calc.addValue(v);
+            reference.addValue(v);
+        }
+        calc.addValue(40, 4);
+        reference.addValue(40, 4);
+        assertEquals(reference.getCount(), calc.getCount());
+        assertEquals(reference.getMean(), calc.getMean(), 1e-9);
+        assertEquals(reference.getStandardDeviation(), calc.getStandardDeviation(), 1e-9);
+        assertEquals(reference.getMin(), calc.getMin());
+        assertEquals(reference.getMax(), calc.getMax());
+        assertEquals(reference.getMedian(), calc.getMedian());
+        assertEquals(reference.getPercentPoint(0.9), calc.getPercentPoint(0.9));
+        assertEquals(reference.getDistribution().keySet(), calc.getDistribution().keySet());
+
+        HistogramStatCalculatorLong other = new HistogramStatCalculatorLong();
+        other.addAll(calc);
+        other.addAll(reference);
+        assertEquals(2 * reference.getCount(), other.getCount());
+        assertEquals(reference.getMean(), other.getMean(), 1e-9);
+        calc.clear();
+        assertEquals(0, calc.getCount());
+        assertEquals(0, calc.getSum(), 0);
+    }
+
+    @Test
+    public void testRecorder() {
+        LogLinearHistogram.Recorder recorder = new LogLinearHistogram.Recorder(5);
+        LogLinearHistogram reference = new LogLinearHistogram(5);
+        long[] values = { 3, 1000, 17, -2, 65000, 17 };
+        for (long v : values) {
+            recorder.recordValue(v);
+            reference.recordValue(v, 2);
+        }
+        assertEquals(6, recorder.getTotalCount());
+        assertEquals(3 + 1000 + 17 + 65000 + 17, recorder.getSum());
+        LogLinearHistogram histogram = new LogLinearHistogram(5);
+        histogram.add(recorder);
+        histogram.add(recorder);
+        assertEquals(12, histogram.getTotalCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(65000, histogram.getMax());
+        assertEquals(reference.getValueAtPercent(0.5), histogram.getValueAtPercent(0.5));
+        assertEquals(reference.getValueAtPercent(0.9), histogram.getValueAtPercent(0.9));
+
+        recorder.reset();
+        assertEquals(0, recorder.getTotalCount());
+        assertEquals(0, recorder.getSum());
+        histogram.add(recorder);
+        assertEquals(12, histogram.getTotalCount());
+        try {
+            new LogLinearHistogram(6).add(new LogLinearHistogram.Recorder(5));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // OK
+        }
+    }
+
+    @Test
+    public void testRecorderMergeAndSerialization() throws Exception {
+        LogLinearHistogram.Recorder recorder = new LogLinearHistogram.Recorder(5);
+        recorder.recordValue(12, 3);
+        recorder.recordValue(70000);
+        LogLinearHistogram.Recorder other = new LogLinearHistogram.Recorder(5);
+        other.recordValue(5);
+        other.add(recorder);
+        assertEquals(5, other.getTotalCount());
+        assertEquals(5 + 36 + 70000, other.getSum());
+        assertEquals(5, other.getMin());
+        assertEquals(70000, other.getMax());
+        LogLinearHistogram.Snapshot snapshot = other.snapshot();
+        assertEquals(LogLinearHistogram.bucketCount(5), snapshot.getBucketCount());
+        assertEquals(5, snapshot.getTotalCount());
+        assertEquals(12, snapshot.getValueAtPercent(0.5));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(other);
+        }
+        LogLinearHistogram.Recorder copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (LogLinearHistogram.Recorder) in.readObject();
+        }
+        assertNotSame(other, copy);
+        assertEquals(5, copy.getPrecision());
+        assertEquals(other.getTotalCount(), copy.getTotalCount());
+        assertEquals(other.getSum(), copy.getSum());
+        assertEquals(other.getMin(), copy.getMin());
+        assertEquals(other.getMax(), copy.getMax());
+        for (int i = 0; i < copy.getBucketCount(); i++) {
+            assertEquals(other.getCountAt(i), copy.getCountAt(i));
+        }
+        copy.recordValue(1);
+        assertEquals(1, copy.getMin());
+
+        // Different precisions are merged through the reported values
+        LogLinearHistogram.Recorder finer = new LogLinearHistogram.Recorder(8);
+        finer.add(other);
+        assertEquals(5, finer.getTotalCount());
+        assertEquals(other.getSum(), finer.getSum());
+        assertEquals(70000, finer.getMax());
+    }
+}